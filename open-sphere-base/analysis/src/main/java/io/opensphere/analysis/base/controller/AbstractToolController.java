@@ -276,8 +276,18 @@ public abstract class AbstractToolController extends EventListenerService
                 if (criteriaType instanceof TimeCriteria)
                 {
                     TimeCriteria timeCriteria = (TimeCriteria)criteriaType;
+                    boolean wasPrimitive = myBinner instanceof UIPrimitiveBinner;
                     timeCriteria.setBinType(timeBinType);
-                    myBinner.rebin();
+                    if (UIPrimitiveBinner.isSupported(timeCriteria) == wasPrimitive)
+                    {
+                        myBinner.rebin();
+                    }
+                    else
+                    {
+                        // Range and periodic bin types use different binners.
+                        myBinner = newBinner();
+                        reloadDataNow();
+                    }
                 }
             });
         }
@@ -440,10 +450,16 @@ public abstract class AbstractToolController extends EventListenerService
      */
     protected void handleBinSelected(UIBin bin)
     {
-        String typeKey = !bin.getData().isEmpty() ? bin.getData().get(0).getDataTypeInfo().getTypeKey() : null;
-        Set<Long> idsToSelect = TroveUtilities.toLongSet(bin.getElementCacheIds());
-        List<Long> allIds = myMantleToolbox.getDataElementLookupUtils().getDataElementCacheIds(typeKey);
-        myMantleToolbox.getDataElementUpdateUtils().setDataElementsSelectionState(idsToSelect, allIds, typeKey, this);
+        DataTypeInfo layer = getCurrentLayer();
+        String typeKey = bin.getSize() > 0 && layer != null ? layer.getTypeKey() : null;
+        // Bins that do not hold their elements look up their IDs in the
+        // binner, which is confined to the data executor.
+        DATA_EXECUTOR.execute(() ->
+        {
+            Set<Long> idsToSelect = TroveUtilities.toLongSet(bin.getElementCacheIds());
+            List<Long> allIds = myMantleToolbox.getDataElementLookupUtils().getDataElementCacheIds(typeKey);
+            myMantleToolbox.getDataElementUpdateUtils().setDataElementsSelectionState(idsToSelect, allIds, typeKey, this);
+        });
     }
 
     /**
@@ -645,7 +661,19 @@ public abstract class AbstractToolController extends EventListenerService
         }
         criteriaElement.setCriteriaType(criteriaType);
 
-        DataElementBinner binner = new UIDataElementBinner(myMantleToolbox, criteriaElement, getCurrentLayer());
+        DataElementBinner binner;
+        if (UIPrimitiveBinner.isSupported(criteriaType))
+        {
+            binner = new UIPrimitiveBinner(myMantleToolbox, criteriaElement, getCurrentLayer());
+        }
+        else if (UIUniqueCodeBinner.isSupported(criteriaType))
+        {
+            binner = new UIUniqueCodeBinner(myMantleToolbox, criteriaElement, getCurrentLayer());
+        }
+        else
+        {
+            binner = new UIDataElementBinner(myMantleToolbox, criteriaElement, getCurrentLayer());
+        }
         binner.setCreateEmptyBins(getSettingsModel().showEmptyBinsProperty().get());
         binner.setCreateNABin(getSettingsModel().showNABinProperty().get());
         return binner;
@@ -98,7 +98,7 @@ public class UIDataElementBinner extends DataElementBinner
      * @param o the object
      * @return the Date
      */
-    private Date parseDate(Object o)
+    static Date parseDate(Object o)
     {
         Date date = null;
         if (o instanceof Date)
@@ -0,0 +1,564 @@
+package io.opensphere.analysis.base.controller;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import org.apache.log4j.Logger;
+
+import gnu.trove.list.TLongList;
+import gnu.trove.list.array.TLongArrayList;
+import io.opensphere.analysis.base.model.UIBin;
+import io.opensphere.analysis.binning.algorithm.Binner;
+import io.opensphere.analysis.binning.algorithm.DataElementBinner;
+import io.opensphere.analysis.binning.algorithm.PrimitiveBinner;
+import io.opensphere.analysis.binning.bins.Bin;
+import io.opensphere.analysis.binning.bins.RangeBin;
+import io.opensphere.analysis.binning.bins.TimeBin;
+import io.opensphere.analysis.binning.criteria.BinCriteriaElement;
+import io.opensphere.analysis.binning.criteria.CriteriaType;
+import io.opensphere.analysis.binning.criteria.RangeCriteria;
+import io.opensphere.analysis.binning.criteria.TimeCriteria;
+import io.opensphere.analysis.util.DataTypeUtilities;
+import io.opensphere.core.util.ListDataEvent;
+import io.opensphere.core.util.ListDataListener;
+import io.opensphere.core.util.collections.CollectionUtilities;
+import io.opensphere.core.util.collections.New;
+import io.opensphere.core.util.fx.FXUtilities;
+import io.opensphere.mantle.MantleToolbox;
+import io.opensphere.mantle.data.DataTypeInfo;
+import io.opensphere.mantle.data.element.DataElement;
+import io.opensphere.mantle.data.element.VisualizationState;
+import io.opensphere.mantle.data.impl.specialkey.TimeKey;
+import io.opensphere.mantle.data.util.DataElementLookupException;
+import io.opensphere.mantle.data.util.DataElementLookupUtils;
+
+/**
+ * Data element binner for UIs that bins data element cache IDs by a numeric or
+ * time value with a {@link PrimitiveBinner}, without holding the data
+ * elements. It supports range criteria and time criteria with a range bin
+ * type; see {@link #isSupported(CriteriaType)}.
+ * <p>
+ * Added IDs have their values read from the data element cache, and removed
+ * IDs are taken out of the counts directly. A change of bin width or time bin
+ * type recomputes the bins from the sorted values. The bins are
+ * {@link UIBin}s that look up their IDs when they are selected.
+ */
+public class UIPrimitiveBinner extends DataElementBinner
+{
+    /** Logger reference. */
+    private static final Logger LOGGER = Logger.getLogger(UIPrimitiveBinner.class);
+
+    /** The largest number of bins for which empty bins are shown. */
+    private static final int MAX_EMPTY_BIN_COUNT = 1000;
+
+    /** The bins that are shown, by bin index, or null for hidden bins. */
+    private UIBin[] myBins = new UIBin[0];
+
+    /** The binner. */
+    private final PrimitiveBinner myBinner;
+
+    /** Whether to show empty bins. */
+    private boolean myCreateEmptyBins;
+
+    /** Whether to show the N/A bin. */
+    private boolean myCreateNABin = true;
+
+    /** The optional listener. */
+    private ListDataListener<Bin<DataElement>> myListener;
+
+    /** The mantle toolbox. */
+    private final MantleToolbox myMantleToolbox;
+
+    /** The N/A bin, or null if it is not shown. */
+    private UIBin myNABin;
+
+    /** Whether the values are times. */
+    private final boolean myTime;
+
+    /** Whether the values are the time spans of the elements. */
+    private final boolean myUseTimeSpan;
+
+    /** The class of the values, used to label range bins. */
+    private volatile Class<?> myValueClass = Double.class;
+
+    /**
+     * Gets whether the criteria can be binned by this binner.
+     *
+     * @param criteria The criteria.
+     * @return Whether the criteria are supported.
+     */
+    public static boolean isSupported(CriteriaType criteria)
+    {
+        return criteria.getClass() == RangeCriteria.class
+                || criteria.getClass() == TimeCriteria.class && ((TimeCriteria)criteria).getBinType().isRange();
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param mantleToolbox The mantle toolbox
+     * @param criteriaElement The criteria element, whose criteria must be
+     *            supported
+     * @param layer The layer
+     */
+    public UIPrimitiveBinner(MantleToolbox mantleToolbox, BinCriteriaElement criteriaElement, DataTypeInfo layer)
+    {
+        super(mantleToolbox, criteriaElement, layer);
+        myMantleToolbox = mantleToolbox;
+        CriteriaType criteria = criteriaElement.getCriteriaType();
+        if (!isSupported(criteria))
+        {
+            throw new IllegalArgumentException("Unsupported criteria: " + criteria);
+        }
+        myTime = criteria instanceof TimeCriteria;
+        myBinner = myTime ? new PrimitiveBinner((TimeCriteria)criteria) : new PrimitiveBinner((RangeCriteria)criteria);
+        myUseTimeSpan = myTime && layer.getMetaDataInfo().getSpecialTypeForKey(criteriaElement.getField()) == TimeKey.DEFAULT;
+    }
+
+    @Override
+    public Bin<DataElement> add(DataElement data)
+    {
+        long id = data.getIdInCache();
+        double value = toValue(myUseTimeSpan ? data.getTimeSpan() : data.getMetaData().getValue(getCriteriaElement().getField()));
+        change(() -> myBinner.add(id, value));
+        return getBin(value);
+    }
+
+    @Override
+    public void addAll(Collection<? extends DataElement> dataItems)
+    {
+        String field = getCriteriaElement().getField();
+        long[] ids = new long[dataItems.size()];
+        double[] values = new double[ids.length];
+        int index = 0;
+        for (DataElement data : dataItems)
+        {
+            ids[index] = data.getIdInCache();
+            values[index++] = toValue(myUseTimeSpan ? data.getTimeSpan() : data.getMetaData().getValue(field));
+        }
+        change(() -> myBinner.addAll(ids, values));
+    }
+
+    @Override
+    public Bin<DataElement> remove(DataElement data)
+    {
+        long id = data.getIdInCache();
+        if (!myBinner.contains(id))
+        {
+            return null;
+        }
+        Bin<DataElement> bin = getBin(myBinner.getValue(id));
+        change(() -> myBinner.remove(id));
+        return bin;
+    }
+
+    @Override
+    public void removeAll(Collection<? extends DataElement> dataItems)
+    {
+        change(() -> myBinner.removeAll(dataItems.stream().mapToLong(DataElement::getIdInCache).toArray()));
+    }
+
+    /**
+     * Not supported, since the data elements are not held.
+     *
+     * @param filter the filter
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void removeIf(Predicate<? super DataElement> filter)
+    {
+        throw new UnsupportedOperationException("The data elements are not held, so they cannot be filtered.");
+    }
+
+    @Override
+    public void clear()
+    {
+        List<Bin<DataElement>> removed = getBins();
+        myBinner.clear();
+        myBins = new UIBin[0];
+        myNABin = null;
+        fireEvents(removed, New.list(), New.list());
+    }
+
+    /**
+     * Not supported, since the bins are computed from the criteria.
+     *
+     * @param bin the bin
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void addBin(Bin<DataElement> bin)
+    {
+        throw new UnsupportedOperationException("Bins cannot be added.");
+    }
+
+    @Override
+    public void rebin()
+    {
+        change(() ->
+        {
+            myBinner.rebin();
+            return true;
+        });
+    }
+
+    @Override
+    public List<Bin<DataElement>> getBins()
+    {
+        List<Bin<DataElement>> bins = New.list(myBins.length + 1);
+        for (UIBin bin : myBins)
+        {
+            if (bin != null)
+            {
+                bins.add(bin);
+            }
+        }
+        if (myNABin != null)
+        {
+            bins.add(myNABin);
+        }
+        return bins;
+    }
+
+    @Override
+    public Map<Object, Bin<DataElement>> getBinsMap()
+    {
+        Map<Object, Bin<DataElement>> bins = New.map();
+        for (Bin<DataElement> bin : getBins())
+        {
+            bins.put(bin.getValueObject(), bin);
+        }
+        return bins;
+    }
+
+    @Override
+    public void setListener(ListDataListener<Bin<DataElement>> listener)
+    {
+        myListener = listener;
+    }
+
+    /**
+     * Adds the visible data elements for the given IDs. Their values are read
+     * from the data element cache without creating the data elements.
+     *
+     * @param ids the IDs
+     */
+    @Override
+    public void addIds(List<Long> ids)
+    {
+        DataElementLookupUtils lookupUtils = myMantleToolbox.getDataElementLookupUtils();
+        List<Long> visibleIds = getVisibleIds(lookupUtils, ids);
+        if (visibleIds.isEmpty())
+        {
+            return;
+        }
+
+        List<?> rawValues;
+        if (myUseTimeSpan)
+        {
+            rawValues = lookupUtils.getTimespans(visibleIds);
+        }
+        else
+        {
+            try
+            {
+                rawValues = lookupUtils.getMetaDataPropertyValues(visibleIds, getCriteriaElement().getField(), getLayer(), null);
+            }
+            catch (DataElementLookupException e)
+            {
+                LOGGER.error(e, e);
+                return;
+            }
+        }
+
+        long[] idArray = CollectionUtilities.toLongArray(visibleIds);
+        double[] values = new double[idArray.length];
+        IntStream.range(0, values.length).parallel().forEach(index -> values[index] = toValue(rawValues.get(index)));
+        change(() -> myBinner.addAll(idArray, values));
+    }
+
+    @Override
+    public void removeIds(Set<Long> ids)
+    {
+        change(() -> myBinner.removeAll(CollectionUtilities.toLongArray(ids)));
+    }
+
+    @Override
+    public void setCreateEmptyBins(boolean createEmptyBins)
+    {
+        myCreateEmptyBins = createEmptyBins;
+    }
+
+    @Override
+    public void setCreateNABin(boolean createNABin)
+    {
+        myCreateNABin = createNABin;
+    }
+
+    /**
+     * The element binners are not used.
+     *
+     * @param criteriaElement the criteria element
+     * @return null
+     */
+    @Override
+    protected Binner<DataElement> createInnerBinner(BinCriteriaElement criteriaElement)
+    {
+        return null;
+    }
+
+    /**
+     * Gets the IDs of the visible data elements.
+     *
+     * @param lookupUtils the data element lookup utilities
+     * @param ids the IDs
+     * @return the visible IDs
+     */
+    static List<Long> getVisibleIds(DataElementLookupUtils lookupUtils, List<Long> ids)
+    {
+        List<VisualizationState> states = lookupUtils.getVisualizationStates(ids);
+        List<Long> visibleIds = New.list(ids.size());
+        for (int index = 0; index < ids.size(); ++index)
+        {
+            VisualizationState state = states.get(index);
+            if (state != null && state.isVisible())
+            {
+                visibleIds.add(ids.get(index));
+            }
+        }
+        return visibleIds;
+    }
+
+    /**
+     * Gets the shown bin that contains a value.
+     *
+     * @param value the value
+     * @return the bin, or null if the bin is not shown
+     */
+    private Bin<DataElement> getBin(double value)
+    {
+        if (Double.isNaN(value))
+        {
+            return myNABin;
+        }
+        int index = myBinner.getBin(value);
+        return index == -1 ? null : myBins[index];
+    }
+
+    /**
+     * Converts a raw value to the value to bin.
+     *
+     * @param rawValue the raw value
+     * @return the value, or {@link Double#NaN} if it has no value
+     */
+    private double toValue(Object rawValue)
+    {
+        double value = Double.NaN;
+        if (myTime)
+        {
+            Date date = UIDataElementBinner.parseDate(rawValue);
+            if (date != null)
+            {
+                value = date.getTime();
+            }
+        }
+        else if (rawValue != null)
+        {
+            try
+            {
+                value = DataTypeUtilities.toDouble(rawValue);
+                myValueClass = rawValue.getClass();
+            }
+            catch (IllegalArgumentException e)
+            {
+                // The value is not a number, so it goes in the N/A bin.
+                value = Double.NaN;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Changes the binner and updates the shown bins. If the binner cannot
+     * compute its bins, for example because the bin width would make too many
+     * of them, no bins are shown until the next change.
+     *
+     * @param change the change, which returns whether the binner recomputed
+     *            its bins
+     */
+    private void change(BooleanSupplier change)
+    {
+        boolean rebinned;
+        try
+        {
+            rebinned = change.getAsBoolean();
+        }
+        catch (IllegalArgumentException e)
+        {
+            LOGGER.warn("Could not compute the bins: " + e.getMessage());
+            rebinned = true;
+        }
+        updateBins(rebinned);
+    }
+
+    /**
+     * Updates the shown bins after the binner has changed, and fires events
+     * for the bins that were added, changed, or removed.
+     *
+     * @param rebinned whether the binner recomputed its bins
+     */
+    private void updateBins(boolean rebinned)
+    {
+        List<Bin<DataElement>> added = New.list();
+        List<Bin<DataElement>> changed = New.list();
+        List<Bin<DataElement>> removed = New.list();
+        if (rebinned)
+        {
+            for (UIBin bin : myBins)
+            {
+                if (bin != null)
+                {
+                    removed.add(bin);
+                }
+            }
+            myBins = new UIBin[myBinner.getBinCount()];
+        }
+
+        boolean showEmpty = myCreateEmptyBins && myBins.length <= MAX_EMPTY_BIN_COUNT;
+        for (int index = 0; index < myBins.length; ++index)
+        {
+            int count = myBinner.getCount(index);
+            UIBin bin = myBins[index];
+            if (bin == null)
+            {
+                if (count > 0 || showEmpty)
+                {
+                    bin = createBin(myBinner.getMin(index), myBinner.getMax(index));
+                    bin.setSize(count);
+                    myBins[index] = bin;
+                    added.add(bin);
+                }
+            }
+            else if (count == 0 && !showEmpty)
+            {
+                myBins[index] = null;
+                removed.add(bin);
+            }
+            else if (count != bin.getSize())
+            {
+                bin.setSize(count);
+                changed.add(bin);
+            }
+        }
+
+        int naCount = myCreateNABin ? myBinner.getNACount() : 0;
+        if (myNABin == null)
+        {
+            if (naCount > 0)
+            {
+                myNABin = createNABin();
+                myNABin.setSize(naCount);
+                added.add(myNABin);
+            }
+        }
+        else if (naCount == 0)
+        {
+            removed.add(myNABin);
+            myNABin = null;
+        }
+        else if (naCount != myNABin.getSize())
+        {
+            myNABin.setSize(naCount);
+            changed.add(myNABin);
+        }
+
+        fireEvents(removed, added, changed);
+    }
+
+    /**
+     * Creates a UI bin for a range of values.
+     *
+     * @param min the inclusive minimum value
+     * @param max the exclusive maximum value
+     * @return the UI bin
+     */
+    private UIBin createBin(double min, double max)
+    {
+        Bin<DataElement> bin;
+        if (myTime)
+        {
+            bin = new TimeBin<>(((TimeCriteria)getCriteriaElement().getCriteriaType()).getBinType(), new Date((long)min), null);
+        }
+        else
+        {
+            bin = new RangeBin<>(min, max, DataTypeUtilities.fromDouble(min, myValueClass), null, null);
+        }
+        return createUIBin(bin, () -> new TLongArrayList(myBinner.getIds(min, max)));
+    }
+
+    /**
+     * Creates the UI bin for the elements without a value.
+     *
+     * @return the UI bin
+     */
+    private UIBin createNABin()
+    {
+        Bin<DataElement> bin;
+        if (myTime)
+        {
+            bin = new TimeBin<>(((TimeCriteria)getCriteriaElement().getCriteriaType()).getBinType(), null, null);
+        }
+        else
+        {
+            bin = new RangeBin<>(0, 0, null, null, null);
+        }
+        return createUIBin(bin, () -> new TLongArrayList(myBinner.getNAIds()));
+    }
+
+    /**
+     * Creates a UI bin that looks up its IDs.
+     *
+     * @param bin the bin that gives the value and label
+     * @param idSupplier supplies the IDs in the bin
+     * @return the UI bin
+     */
+    private UIBin createUIBin(Bin<DataElement> bin, Supplier<TLongList> idSupplier)
+    {
+        UIBin uiBin = new UIBin(bin, idSupplier);
+        uiBin.setColor(FXUtilities.fromAwtColor(getLayer().getBasicVisualizationInfo().getTypeColor()));
+        return uiBin;
+    }
+
+    /**
+     * Fires events for bins that were removed, added, or changed.
+     *
+     * @param removed the removed bins
+     * @param added the added bins
+     * @param changed the changed bins
+     */
+    private void fireEvents(List<Bin<DataElement>> removed, List<Bin<DataElement>> added, List<Bin<DataElement>> changed)
+    {
+        if (myListener != null)
+        {
+            if (!removed.isEmpty())
+            {
+                myListener.elementsRemoved(new ListDataEvent<>(this, removed));
+            }
+            if (!added.isEmpty())
+            {
+                myListener.elementsAdded(new ListDataEvent<>(this, added));
+            }
+            if (!changed.isEmpty())
+            {
+                myListener.elementsChanged(new ListDataEvent<>(this, changed));
+            }
+        }
+    }
+}
@@ -0,0 +1,555 @@
+package io.opensphere.analysis.base.controller;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.apache.log4j.Logger;
+
+import gnu.trove.list.TIntList;
+import gnu.trove.list.TLongList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import io.opensphere.analysis.base.model.UIBin;
+import io.opensphere.analysis.binning.algorithm.Binner;
+import io.opensphere.analysis.binning.algorithm.DataElementBinner;
+import io.opensphere.analysis.binning.bins.Bin;
+import io.opensphere.analysis.binning.bins.UniqueValueBin;
+import io.opensphere.analysis.binning.criteria.BinCriteriaElement;
+import io.opensphere.analysis.binning.criteria.CriteriaType;
+import io.opensphere.analysis.binning.criteria.UniqueCriteria;
+import io.opensphere.core.util.ListDataEvent;
+import io.opensphere.core.util.ListDataListener;
+import io.opensphere.core.util.collections.New;
+import io.opensphere.core.util.fx.FXUtilities;
+import io.opensphere.mantle.MantleToolbox;
+import io.opensphere.mantle.data.DataTypeInfo;
+import io.opensphere.mantle.data.cache.MetaDataCodes;
+import io.opensphere.mantle.data.element.DataElement;
+import io.opensphere.mantle.data.util.DataElementLookupException;
+import io.opensphere.mantle.data.util.DataElementLookupUtils;
+
+/**
+ * Data element binner for UIs that bins data element cache IDs by unique
+ * value, without holding the data elements. Each distinct value gets a bin
+ * number, and the elements are counted by bin number.
+ * <p>
+ * When the data element cache keeps the values of the field as dictionary
+ * codes, added IDs are binned by their codes: each distinct code is decoded
+ * once to find its bin, and the elements are never decoded. Otherwise the
+ * values are read from the cache and looked up by value. The bins are
+ * {@link UIBin}s that look up their IDs when they are selected.
+ */
+public class UIUniqueCodeBinner extends DataElementBinner
+{
+    /** Logger reference. */
+    private static final Logger LOGGER = Logger.getLogger(UIUniqueCodeBinner.class);
+
+    /** The bin number for elements without a value. */
+    private static final int NA_BIN = -1;
+
+    /** The bin number for IDs that are not binned. */
+    private static final int NO_BIN = -2;
+
+    /** The shown bins, by bin number, with nulls for empty bins. */
+    private final List<UIBin> myBins = New.list();
+
+    /** The bin numbers for the distinct values. */
+    private final Map<Object, Integer> myBinNumbers = New.map();
+
+    /** The number of elements in each bin, by bin number. */
+    private final TIntList myCounts = new TIntArrayList();
+
+    /** Whether to show the N/A bin. */
+    private boolean myCreateNABin = true;
+
+    /** The bin number of each binned element, by ID. */
+    private final TLongIntMap myIdToBin = new TLongIntHashMap(1000, .5f, -1L, NO_BIN);
+
+    /** The optional listener. */
+    private ListDataListener<Bin<DataElement>> myListener;
+
+    /** The mantle toolbox. */
+    private final MantleToolbox myMantleToolbox;
+
+    /** The N/A bin, or null if it is not shown. */
+    private UIBin myNABin;
+
+    /** The number of elements without a value. */
+    private int myNACount;
+
+    /** The distinct values, by bin number. */
+    private final List<Object> myValues = New.list();
+
+    /**
+     * Gets whether the criteria can be binned by this binner.
+     *
+     * @param criteria The criteria.
+     * @return Whether the criteria are supported.
+     */
+    public static boolean isSupported(CriteriaType criteria)
+    {
+        return criteria.getClass() == UniqueCriteria.class;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param mantleToolbox The mantle toolbox
+     * @param criteriaElement The criteria element, whose criteria must be
+     *            supported
+     * @param layer The layer
+     */
+    public UIUniqueCodeBinner(MantleToolbox mantleToolbox, BinCriteriaElement criteriaElement, DataTypeInfo layer)
+    {
+        super(mantleToolbox, criteriaElement, layer);
+        myMantleToolbox = mantleToolbox;
+        CriteriaType criteria = criteriaElement.getCriteriaType();
+        if (!isSupported(criteria))
+        {
+            throw new IllegalArgumentException("Unsupported criteria: " + criteria);
+        }
+    }
+
+    @Override
+    public Bin<DataElement> add(DataElement data)
+    {
+        int bin = getBinNumber(getValue(data));
+        setBin(data.getIdInCache(), bin);
+        updateBins();
+        return getBin(bin);
+    }
+
+    @Override
+    public void addAll(Collection<? extends DataElement> dataItems)
+    {
+        for (DataElement data : dataItems)
+        {
+            setBin(data.getIdInCache(), getBinNumber(getValue(data)));
+        }
+        updateBins();
+    }
+
+    @Override
+    public Bin<DataElement> remove(DataElement data)
+    {
+        int bin = removeId(data.getIdInCache());
+        if (bin == NO_BIN)
+        {
+            return null;
+        }
+        Bin<DataElement> removed = getBin(bin);
+        updateBins();
+        return removed;
+    }
+
+    @Override
+    public void removeAll(Collection<? extends DataElement> dataItems)
+    {
+        for (DataElement data : dataItems)
+        {
+            removeId(data.getIdInCache());
+        }
+        updateBins();
+    }
+
+    /**
+     * Not supported, since the data elements are not held.
+     *
+     * @param filter the filter
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void removeIf(Predicate<? super DataElement> filter)
+    {
+        throw new UnsupportedOperationException("The data elements are not held, so they cannot be filtered.");
+    }
+
+    @Override
+    public void clear()
+    {
+        List<Bin<DataElement>> removed = getBins();
+        myBins.clear();
+        myBinNumbers.clear();
+        myCounts.clear();
+        myIdToBin.clear();
+        myValues.clear();
+        myNABin = null;
+        myNACount = 0;
+        fireEvents(removed, New.list(), New.list());
+    }
+
+    /**
+     * Not supported, since there is a bin for each value.
+     *
+     * @param bin the bin
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void addBin(Bin<DataElement> bin)
+    {
+        throw new UnsupportedOperationException("Bins cannot be added.");
+    }
+
+    /**
+     * The bins do not depend on any settings, so this only updates the N/A
+     * bin.
+     */
+    @Override
+    public void rebin()
+    {
+        updateBins();
+    }
+
+    @Override
+    public List<Bin<DataElement>> getBins()
+    {
+        List<Bin<DataElement>> bins = New.list(myBins.size() + 1);
+        for (UIBin bin : myBins)
+        {
+            if (bin != null)
+            {
+                bins.add(bin);
+            }
+        }
+        if (myNABin != null)
+        {
+            bins.add(myNABin);
+        }
+        return bins;
+    }
+
+    @Override
+    public Map<Object, Bin<DataElement>> getBinsMap()
+    {
+        Map<Object, Bin<DataElement>> bins = New.map();
+        for (Bin<DataElement> bin : getBins())
+        {
+            bins.put(bin.getValueObject(), bin);
+        }
+        return bins;
+    }
+
+    @Override
+    public void setListener(ListDataListener<Bin<DataElement>> listener)
+    {
+        myListener = listener;
+    }
+
+    /**
+     * Adds the visible data elements for the given IDs. Their values are read
+     * from the data element cache as codes if possible, without creating the
+     * data elements.
+     *
+     * @param ids the IDs
+     */
+    @Override
+    public void addIds(List<Long> ids)
+    {
+        DataElementLookupUtils lookupUtils = myMantleToolbox.getDataElementLookupUtils();
+        List<Long> visibleIds = UIPrimitiveBinner.getVisibleIds(lookupUtils, ids);
+        if (visibleIds.isEmpty())
+        {
+            return;
+        }
+
+        String field = getCriteriaElement().getField();
+        try
+        {
+            MetaDataCodes codes = lookupUtils.getMetaDataPropertyCodes(visibleIds, field, getLayer(), null);
+            if (codes == null)
+            {
+                List<Object> values = lookupUtils.getMetaDataPropertyValues(visibleIds, field, getLayer(), null);
+                for (int index = 0; index < values.size(); ++index)
+                {
+                    setBin(visibleIds.get(index).longValue(), getBinNumber(values.get(index)));
+                }
+            }
+            else
+            {
+                int[] codeToBin = new int[codes.getDictionarySize()];
+                Arrays.fill(codeToBin, NO_BIN);
+                for (int index = 0; index < codes.size(); ++index)
+                {
+                    int code = codes.getCode(index);
+                    int bin;
+                    if (code == MetaDataCodes.NO_CODE)
+                    {
+                        bin = NA_BIN;
+                    }
+                    else
+                    {
+                        bin = codeToBin[code];
+                        if (bin == NO_BIN)
+                        {
+                            bin = getBinNumber(codes.getValue(code));
+                            codeToBin[code] = bin;
+                        }
+                    }
+                    setBin(visibleIds.get(index).longValue(), bin);
+                }
+            }
+        }
+        catch (DataElementLookupException e)
+        {
+            LOGGER.error(e, e);
+        }
+        updateBins();
+    }
+
+    @Override
+    public void removeIds(Set<Long> ids)
+    {
+        for (Long id : ids)
+        {
+            removeId(id.longValue());
+        }
+        updateBins();
+    }
+
+    /**
+     * Empty bins are never shown, since there is no bin for a value until an
+     * element has it.
+     *
+     * @param createEmptyBins ignored
+     */
+    @Override
+    public void setCreateEmptyBins(boolean createEmptyBins)
+    {
+        // intentionally blank
+    }
+
+    @Override
+    public void setCreateNABin(boolean createNABin)
+    {
+        myCreateNABin = createNABin;
+    }
+
+    /**
+     * The element binners are not used.
+     *
+     * @param criteriaElement the criteria element
+     * @return null
+     */
+    @Override
+    protected Binner<DataElement> createInnerBinner(BinCriteriaElement criteriaElement)
+    {
+        return null;
+    }
+
+    /**
+     * Gets the shown bin for a bin number.
+     *
+     * @param bin the bin number
+     * @return the bin, or null if it is not shown
+     */
+    private Bin<DataElement> getBin(int bin)
+    {
+        return bin == NA_BIN ? myNABin : myBins.get(bin);
+    }
+
+    /**
+     * Gets the bin number for a value, adding a bin for a new value.
+     *
+     * @param value the value
+     * @return the bin number
+     */
+    private int getBinNumber(Object value)
+    {
+        if (value == null)
+        {
+            return NA_BIN;
+        }
+        Integer bin = myBinNumbers.get(value);
+        if (bin == null)
+        {
+            bin = Integer.valueOf(myValues.size());
+            myBinNumbers.put(value, bin);
+            myValues.add(value);
+            myCounts.add(0);
+            myBins.add(null);
+        }
+        return bin.intValue();
+    }
+
+    /**
+     * Gets the IDs of the elements in a bin.
+     *
+     * @param bin the bin number
+     * @return the IDs
+     */
+    private TLongList getIds(int bin)
+    {
+        TLongList ids = new TLongArrayList(bin == NA_BIN ? myNACount : myCounts.get(bin));
+        myIdToBin.forEachEntry((id, idBin) ->
+        {
+            if (idBin == bin)
+            {
+                ids.add(id);
+            }
+            return true;
+        });
+        return ids;
+    }
+
+    /**
+     * Gets the value of the field for a data element.
+     *
+     * @param data the data element
+     * @return the value
+     */
+    private Object getValue(DataElement data)
+    {
+        return data.getMetaData().getValue(getCriteriaElement().getField());
+    }
+
+    /**
+     * Removes an element from its bin.
+     *
+     * @param id the ID
+     * @return the bin number it was in, or {@link #NO_BIN} if it was not
+     *         binned
+     */
+    private int removeId(long id)
+    {
+        int bin = myIdToBin.remove(id);
+        changeCount(bin, -1);
+        return bin;
+    }
+
+    /**
+     * Puts an element in a bin, taking it out of any bin it was in.
+     *
+     * @param id the ID
+     * @param bin the bin number
+     */
+    private void setBin(long id, int bin)
+    {
+        changeCount(myIdToBin.put(id, bin), -1);
+        changeCount(bin, 1);
+    }
+
+    /**
+     * Changes the number of elements in a bin.
+     *
+     * @param bin the bin number, or {@link #NO_BIN} to do nothing
+     * @param change the change
+     */
+    private void changeCount(int bin, int change)
+    {
+        if (bin == NA_BIN)
+        {
+            myNACount += change;
+        }
+        else if (bin != NO_BIN)
+        {
+            myCounts.set(bin, myCounts.get(bin) + change);
+        }
+    }
+
+    /**
+     * Updates the shown bins after the counts have changed, and fires events
+     * for the bins that were added, changed, or removed.
+     */
+    private void updateBins()
+    {
+        List<Bin<DataElement>> added = New.list();
+        List<Bin<DataElement>> changed = New.list();
+        List<Bin<DataElement>> removed = New.list();
+        for (int index = 0; index < myBins.size(); ++index)
+        {
+            int count = myCounts.get(index);
+            UIBin bin = myBins.get(index);
+            if (bin == null)
+            {
+                if (count > 0)
+                {
+                    bin = createBin(index, myValues.get(index));
+                    bin.setSize(count);
+                    myBins.set(index, bin);
+                    added.add(bin);
+                }
+            }
+            else if (count == 0)
+            {
+                myBins.set(index, null);
+                removed.add(bin);
+            }
+            else if (count != bin.getSize())
+            {
+                bin.setSize(count);
+                changed.add(bin);
+            }
+        }
+
+        int naCount = myCreateNABin ? myNACount : 0;
+        if (myNABin == null)
+        {
+            if (naCount > 0)
+            {
+                myNABin = createBin(NA_BIN, null);
+                myNABin.setSize(naCount);
+                added.add(myNABin);
+            }
+        }
+        else if (naCount == 0)
+        {
+            removed.add(myNABin);
+            myNABin = null;
+        }
+        else if (naCount != myNABin.getSize())
+        {
+            myNABin.setSize(naCount);
+            changed.add(myNABin);
+        }
+
+        fireEvents(removed, added, changed);
+    }
+
+    /**
+     * Creates a UI bin that looks up its IDs.
+     *
+     * @param bin the bin number
+     * @param value the value of the bin
+     * @return the UI bin
+     */
+    private UIBin createBin(int bin, Object value)
+    {
+        Function<DataElement, Object> dataToValue = this::getValue;
+        UIBin uiBin = new UIBin(new UniqueValueBin<>(value, dataToValue), () -> getIds(bin));
+        uiBin.setColor(FXUtilities.fromAwtColor(getLayer().getBasicVisualizationInfo().getTypeColor()));
+        return uiBin;
+    }
+
+    /**
+     * Fires events for bins that were removed, added, or changed.
+     *
+     * @param removed the removed bins
+     * @param added the added bins
+     * @param changed the changed bins
+     */
+    private void fireEvents(List<Bin<DataElement>> removed, List<Bin<DataElement>> added, List<Bin<DataElement>> changed)
+    {
+        if (myListener != null)
+        {
+            if (!removed.isEmpty())
+            {
+                myListener.elementsRemoved(new ListDataEvent<>(this, removed));
+            }
+            if (!added.isEmpty())
+            {
+                myListener.elementsAdded(new ListDataEvent<>(this, added));
+            }
+            if (!changed.isEmpty())
+            {
+                myListener.elementsChanged(new ListDataEvent<>(this, changed));
+            }
+        }
+    }
+}
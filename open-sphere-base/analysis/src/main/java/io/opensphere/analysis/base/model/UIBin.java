@@ -4,6 +4,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import javafx.application.Platform;
 import javafx.beans.property.IntegerProperty;
@@ -20,6 +21,10 @@ import io.opensphere.mantle.data.element.DataElement;
 
 /**
  * UI bin model that composes a regular bin.
+ * <p>
+ * A bin created with an ID supplier does not hold its data elements; its size
+ * is set by the binner and its data element cache IDs are looked up when they
+ * are needed.
  */
 @NotThreadSafe
 public class UIBin implements Bin<DataElement>, Comparable<UIBin>
@@ -36,14 +41,32 @@ public class UIBin implements Bin<DataElement>, Comparable<UIBin>
     /** The data element cache IDs. */
     private TLongList myElementCacheIds;
 
+    /** Supplies the data element cache IDs, or null if the bin holds its data elements. */
+    private final Supplier<TLongList> myIdSupplier;
+
+    /** The number of items in a bin that does not hold its data elements. */
+    private volatile int mySize;
+
     /**
      * Constructor.
      *
      * @param bin the delegate bin
      */
     public UIBin(Bin<DataElement> bin)
+    {
+        this(bin, null);
+    }
+
+    /**
+     * Constructor for a bin that does not hold its data elements.
+     *
+     * @param bin the delegate bin, which is only used for its value and label
+     * @param idSupplier supplies the data element cache IDs in the bin
+     */
+    public UIBin(Bin<DataElement> bin, Supplier<TLongList> idSupplier)
     {
         myDelegate = bin;
+        myIdSupplier = idSupplier;
     }
 
     /**
@@ -66,6 +89,18 @@ public class UIBin implements Bin<DataElement>, Comparable<UIBin>
         Platform.runLater(() -> myCount.set(count));
     }
 
+    /**
+     * Sets the size of a bin that does not hold its data elements, and its
+     * count.
+     *
+     * @param size the size
+     */
+    public void setSize(int size)
+    {
+        mySize = size;
+        setCount(size);
+    }
+
     /**
      * Gets the count.
      *
@@ -113,6 +148,10 @@ public class UIBin implements Bin<DataElement>, Comparable<UIBin>
      */
     public TLongList getElementCacheIds()
     {
+        if (myIdSupplier != null)
+        {
+            return myIdSupplier.get();
+        }
         if (myElementCacheIds == null)
         {
             myElementCacheIds = new TLongArrayList();
@@ -214,7 +253,7 @@ public class UIBin implements Bin<DataElement>, Comparable<UIBin>
     @Override
     public int getSize()
     {
-        return myDelegate.getSize();
+        return myIdSupplier != null ? mySize : myDelegate.getSize();
     }
 
     @Override
@@ -7,7 +7,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 import io.opensphere.analysis.binning.bins.Bin;
 import io.opensphere.core.util.ListDataEvent;
@@ -206,12 +205,29 @@ public abstract class AbstractBinner<T> implements Binner<T>
     @Override
     public void rebin()
     {
-        List<T> data = myBins.values().stream().flatMap(b -> b.getData().stream()).collect(Collectors.toList());
+        // Re-add the data straight from the old bins rather than copying it
+        // into one list first.
+        List<Bin<T>> oldBins = New.list(myBins.values());
         clear();
         // Immediately setting the bins here doesn't cause the UI to update.
         // Seems like a bug in JavaFX.
         ThreadUtilities.sleep(100);
-        addAll(data);
+        myFireEvents = false;
+        try
+        {
+            for (Bin<T> bin : oldBins)
+            {
+                for (T data : bin.getData())
+                {
+                    add(data);
+                }
+            }
+            firePendingEvents(true);
+        }
+        finally
+        {
+            myFireEvents = true;
+        }
     }
 
     @Override
@@ -0,0 +1,610 @@
+package io.opensphere.analysis.binning.algorithm;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Date;
+
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.TLongDoubleMap;
+import gnu.trove.map.hash.TLongDoubleHashMap;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+import io.opensphere.analysis.binning.criteria.CriteriaType;
+import io.opensphere.analysis.binning.criteria.RangeCriteria;
+import io.opensphere.analysis.binning.criteria.TimeBinType;
+import io.opensphere.analysis.binning.criteria.TimeCriteria;
+
+/**
+ * Bins element ids by a numeric or time value without holding references to
+ * the elements.
+ * <p>
+ * The values are kept in a sorted primitive column alongside a map of element
+ * id to value, and the bin counts are kept in an {@code int[]}. Adding or
+ * removing elements updates the counts of the affected bins. Changing the bin
+ * width or time bin type only recomputes the bin edges and then counts each
+ * bin with two binary searches, so rebinning does not touch the elements.
+ * Large batches are sorted in parallel.
+ * <p>
+ * Only {@link RangeCriteria} and {@link TimeCriteria} with a range bin type
+ * are supported. Time values are epoch milliseconds. Missing values are given
+ * as {@link Double#NaN} and are counted separately.
+ * <p>
+ * The methods that change the elements return whether the bins were
+ * recomputed, which happens when a value falls outside the current bins or
+ * the smallest or largest value is removed. Otherwise the bins keep their
+ * indices and only their counts change.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class PrimitiveBinner
+{
+    /** The maximum number of bins. */
+    static final int MAX_BIN_COUNT = 1 << 20;
+
+    /** The criteria. */
+    private final CriteriaType myCriteria;
+
+    /** The number of elements in each bin. */
+    private int[] myCounts = new int[0];
+
+    /** The edges of the bins; bin {@code i} is [edge i, edge i + 1). */
+    private double[] myEdges = new double[0];
+
+    /** The value of each element that has a value. */
+    private final TLongDoubleMap myIdValues = new TLongDoubleHashMap();
+
+    /** The ids of the elements without a value. */
+    private final TLongSet myNAIds = new TLongHashSet();
+
+    /** The number of values in the sorted column. */
+    private int mySize;
+
+    /** The values of the elements, sorted. */
+    private double[] mySorted = new double[0];
+
+    /**
+     * Creates a binner that bins by numeric ranges.
+     *
+     * @param criteria The bin criteria.
+     */
+    public PrimitiveBinner(RangeCriteria criteria)
+    {
+        myCriteria = criteria;
+    }
+
+    /**
+     * Creates a binner that bins by time.
+     *
+     * @param criteria The bin criteria, which must have a range bin type when
+     *            the bins are computed.
+     */
+    public PrimitiveBinner(TimeCriteria criteria)
+    {
+        myCriteria = criteria;
+    }
+
+    /**
+     * Gets the lowest index in the sorted values whose value is not less than
+     * a value.
+     *
+     * @param values The sorted values.
+     * @param size The number of values.
+     * @param value The value.
+     * @return The index.
+     */
+    private static int lowerBound(double[] values, int size, double value)
+    {
+        int low = 0;
+        int high = size;
+        while (low < high)
+        {
+            int mid = low + high >>> 1;
+            if (values[mid] < value)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Adds an element, replacing its value if it was already added.
+     *
+     * @param id The element id.
+     * @param value The value, or {@link Double#NaN} if it has no value.
+     * @return Whether the bins were recomputed.
+     */
+    public boolean add(long id, double value)
+    {
+        return addAll(new long[] { id }, new double[] { value });
+    }
+
+    /**
+     * Adds elements, replacing the values of elements that were already added.
+     *
+     * @param ids The element ids, which must be distinct.
+     * @param values The values, with {@link Double#NaN} for elements with no
+     *            value.
+     * @return Whether the bins were recomputed.
+     */
+    public boolean addAll(long[] ids, double[] values)
+    {
+        if (ids.length != values.length)
+        {
+            throw new IllegalArgumentException("Got " + ids.length + " ids but " + values.length + " values.");
+        }
+
+        TLongArrayList replaced = new TLongArrayList();
+        for (long id : ids)
+        {
+            if (myIdValues.containsKey(id) || myNAIds.contains(id))
+            {
+                replaced.add(id);
+            }
+        }
+        boolean rebinned = !replaced.isEmpty() && removeAll(replaced.toArray());
+
+        double[] batch = new double[ids.length];
+        int batchSize = 0;
+        for (int index = 0; index < ids.length; ++index)
+        {
+            double value = values[index];
+            if (Double.isNaN(value))
+            {
+                myNAIds.add(ids[index]);
+            }
+            else
+            {
+                myIdValues.put(ids[index], value);
+                batch[batchSize++] = value;
+            }
+        }
+        if (batchSize == 0)
+        {
+            return rebinned;
+        }
+
+        Arrays.parallelSort(batch, 0, batchSize);
+        mySorted = merge(mySorted, mySize, batch, batchSize);
+        mySize += batchSize;
+
+        if (myEdges.length == 0 || batch[0] < myEdges[0] || batch[batchSize - 1] >= myEdges[myEdges.length - 1])
+        {
+            rebin();
+            rebinned = true;
+        }
+        else
+        {
+            for (int index = 0; index < batchSize; ++index)
+            {
+                ++myCounts[getBinIndex(batch[index])];
+            }
+        }
+        return rebinned;
+    }
+
+    /**
+     * Removes elements.
+     *
+     * @param ids The element ids.
+     * @return Whether the bins were recomputed.
+     */
+    public boolean removeAll(long[] ids)
+    {
+        double[] batch = new double[ids.length];
+        int batchSize = 0;
+        for (long id : ids)
+        {
+            if (myIdValues.containsKey(id))
+            {
+                batch[batchSize++] = myIdValues.remove(id);
+            }
+            else
+            {
+                myNAIds.remove(id);
+            }
+        }
+        if (batchSize == 0)
+        {
+            return false;
+        }
+
+        Arrays.parallelSort(batch, 0, batchSize);
+        double oldMin = mySorted[0];
+        double oldMax = mySorted[mySize - 1];
+        mySize = subtract(mySorted, mySize, batch, batchSize);
+
+        boolean rebinned = myEdges.length == 0 || batch[0] == oldMin || batch[batchSize - 1] == oldMax;
+        if (rebinned)
+        {
+            // Keep the bins tight around the remaining values.
+            rebin();
+        }
+        else
+        {
+            for (int index = 0; index < batchSize; ++index)
+            {
+                --myCounts[getBinIndex(batch[index])];
+            }
+        }
+        return rebinned;
+    }
+
+    /**
+     * Removes an element.
+     *
+     * @param id The element id.
+     * @return Whether the bins were recomputed.
+     */
+    public boolean remove(long id)
+    {
+        return removeAll(new long[] { id });
+    }
+
+    /** Removes all the elements. */
+    public void clear()
+    {
+        myIdValues.clear();
+        myNAIds.clear();
+        mySorted = new double[0];
+        mySize = 0;
+        rebin();
+    }
+
+    /**
+     * Recomputes the bins using the current criteria. This does not iterate
+     * over the elements.
+     *
+     * @throws IllegalArgumentException If the criteria are not supported or
+     *             would create too many bins.
+     */
+    public void rebin()
+    {
+        // If the new edges cannot be computed, leave no bins so that the next
+        // change tries again.
+        myEdges = new double[0];
+        myCounts = new int[0];
+        if (mySize == 0)
+        {
+            return;
+        }
+
+        double[] edges = myCriteria instanceof RangeCriteria ? getRangeEdges(((RangeCriteria)myCriteria).getBinWidth())
+                : getTimeEdges(((TimeCriteria)myCriteria).getBinType());
+        int[] counts = new int[edges.length - 1];
+        int start = lowerBound(mySorted, mySize, edges[0]);
+        for (int bin = 0; bin < counts.length; ++bin)
+        {
+            int end = lowerBound(mySorted, mySize, edges[bin + 1]);
+            counts[bin] = end - start;
+            start = end;
+        }
+        myEdges = edges;
+        myCounts = counts;
+    }
+
+    /**
+     * Gets whether an element has been added.
+     *
+     * @param id The element id.
+     * @return Whether the element has been added.
+     */
+    public boolean contains(long id)
+    {
+        return myIdValues.containsKey(id) || myNAIds.contains(id);
+    }
+
+    /**
+     * Gets the value of an element.
+     *
+     * @param id The element id.
+     * @return The value, or {@link Double#NaN} if the element has no value or
+     *         has not been added.
+     */
+    public double getValue(long id)
+    {
+        return myIdValues.containsKey(id) ? myIdValues.get(id) : Double.NaN;
+    }
+
+    /**
+     * Gets the index of the bin that contains a value.
+     *
+     * @param value The value.
+     * @return The bin index, or -1 if the value is not in any bin.
+     */
+    public int getBin(double value)
+    {
+        return myEdges.length > 0 && value >= myEdges[0] && value < myEdges[myEdges.length - 1] ? getBinIndex(value) : -1;
+    }
+
+    /**
+     * Gets the number of bins. The bins span the values, so some may be empty.
+     *
+     * @return The number of bins.
+     */
+    public int getBinCount()
+    {
+        return myCounts.length;
+    }
+
+    /**
+     * Gets the number of elements in a bin.
+     *
+     * @param bin The bin index.
+     * @return The number of elements.
+     */
+    public int getCount(int bin)
+    {
+        return myCounts[bin];
+    }
+
+    /**
+     * Gets a copy of the number of elements in each bin.
+     *
+     * @return The counts.
+     */
+    public int[] getCounts()
+    {
+        return myCounts.clone();
+    }
+
+    /**
+     * Gets the inclusive minimum value of a bin.
+     *
+     * @param bin The bin index.
+     * @return The value.
+     */
+    public double getMin(int bin)
+    {
+        return myEdges[bin];
+    }
+
+    /**
+     * Gets the exclusive maximum value of a bin.
+     *
+     * @param bin The bin index.
+     * @return The value.
+     */
+    public double getMax(int bin)
+    {
+        return myEdges[bin + 1];
+    }
+
+    /**
+     * Gets the ids of the elements in a bin. This iterates over the elements.
+     *
+     * @param bin The bin index.
+     * @return The ids.
+     */
+    public long[] getIds(int bin)
+    {
+        return getIds(myEdges[bin], myEdges[bin + 1]);
+    }
+
+    /**
+     * Gets the ids of the elements with values in a range. This iterates over
+     * the elements. Unlike a bin index, the range stays valid when the bins
+     * are recomputed.
+     *
+     * @param min The inclusive minimum value.
+     * @param max The exclusive maximum value.
+     * @return The ids.
+     */
+    public long[] getIds(double min, double max)
+    {
+        int size = lowerBound(mySorted, mySize, max) - lowerBound(mySorted, mySize, min);
+        TLongArrayList ids = new TLongArrayList(size);
+        myIdValues.forEachEntry((id, value) ->
+        {
+            if (value >= min && value < max)
+            {
+                ids.add(id);
+            }
+            return true;
+        });
+        return ids.toArray();
+    }
+
+    /**
+     * Gets the number of elements without a value.
+     *
+     * @return The number of elements.
+     */
+    public int getNACount()
+    {
+        return myNAIds.size();
+    }
+
+    /**
+     * Gets the ids of the elements without a value.
+     *
+     * @return The ids.
+     */
+    public long[] getNAIds()
+    {
+        return myNAIds.toArray();
+    }
+
+    /**
+     * Gets the total number of elements, including those without a value.
+     *
+     * @return The number of elements.
+     */
+    public int size()
+    {
+        return mySize + myNAIds.size();
+    }
+
+    /**
+     * Gets the index of the bin that contains a value within the edges.
+     *
+     * @param value The value.
+     * @return The bin index.
+     */
+    private int getBinIndex(double value)
+    {
+        int index = lowerBound(myEdges, myEdges.length, value);
+        return index < myEdges.length && myEdges[index] == value ? index : index - 1;
+    }
+
+    /**
+     * Gets the edges of uniform bins spanning the values.
+     *
+     * @param binWidth The bin width.
+     * @return The edges.
+     */
+    private double[] getRangeEdges(double binWidth)
+    {
+        if (!(binWidth > 0.))
+        {
+            throw new IllegalArgumentException("Bin width must be positive: " + binWidth);
+        }
+        double first = Math.floor(round(mySorted[0] / binWidth));
+        double last = Math.floor(round(mySorted[mySize - 1] / binWidth));
+        checkBinCount(last - first + 1);
+
+        double[] edges = new double[(int)(last - first) + 2];
+        for (int index = 0; index < edges.length; ++index)
+        {
+            edges[index] = round((first + index) * binWidth);
+        }
+        // Guard against rounding putting the smallest value below the first
+        // edge or the largest value on the last edge.
+        if (edges[0] > mySorted[0])
+        {
+            edges[0] = mySorted[0];
+        }
+        if (edges[edges.length - 1] <= mySorted[mySize - 1])
+        {
+            edges[edges.length - 1] = Math.nextUp(mySorted[mySize - 1]);
+        }
+        return edges;
+    }
+
+    /**
+     * Gets the edges of calendar bins spanning the values.
+     *
+     * @param binType The time bin type.
+     * @return The edges.
+     */
+    private double[] getTimeEdges(TimeBinType binType)
+    {
+        if (binType == null || !binType.isRange())
+        {
+            throw new IllegalArgumentException("Time bin type must be a range: " + binType);
+        }
+        long last = (long)mySorted[mySize - 1];
+        TLongArrayList edges = new TLongArrayList();
+        long edge = binType.getMin(new Date((long)Math.floor(mySorted[0])));
+        edges.add(edge);
+        while (edge <= last)
+        {
+            edge = binType.getMax(new Date(edge));
+            edges.add(edge);
+            checkBinCount(edges.size() - 1);
+        }
+
+        double[] result = new double[edges.size()];
+        for (int index = 0; index < result.length; ++index)
+        {
+            result[index] = edges.get(index);
+        }
+        return result;
+    }
+
+    /**
+     * Rounds (cleans up) a bin edge the same way as {@link RangeBinner}.
+     *
+     * @param val the value
+     * @return the rounded value
+     */
+    private static double round(double val)
+    {
+        return new BigDecimal(val).setScale(10, RoundingMode.HALF_UP).doubleValue();
+    }
+
+    /**
+     * Checks that the number of bins is not too large.
+     *
+     * @param binCount The number of bins.
+     */
+    private static void checkBinCount(double binCount)
+    {
+        if (binCount > MAX_BIN_COUNT)
+        {
+            throw new IllegalArgumentException("Too many bins: " + binCount);
+        }
+    }
+
+    /**
+     * Merges sorted values into a sorted column.
+     *
+     * @param column The sorted column.
+     * @param size The number of values in the column.
+     * @param values The sorted values to add.
+     * @param count The number of values to add.
+     * @return The merged column, which may be the original column.
+     */
+    private static double[] merge(double[] column, int size, double[] values, int count)
+    {
+        double[] result = column;
+        if (size + count > column.length)
+        {
+            result = new double[Math.max(size + count, column.length + (column.length >> 1))];
+        }
+
+        // Merge from the end so that the column can be merged in place.
+        int read = size - 1;
+        int write = size + count - 1;
+        for (int index = count - 1; index >= 0; --index)
+        {
+            double value = values[index];
+            while (read >= 0 && column[read] > value)
+            {
+                result[write--] = column[read--];
+            }
+            result[write--] = value;
+        }
+        if (result != column && read >= 0)
+        {
+            System.arraycopy(column, 0, result, 0, read + 1);
+        }
+        return result;
+    }
+
+    /**
+     * Removes one occurrence of each of some sorted values from a sorted
+     * column, in place.
+     *
+     * @param column The sorted column.
+     * @param size The number of values in the column.
+     * @param values The sorted values to remove, all of which are in the
+     *            column.
+     * @param count The number of values to remove.
+     * @return The new number of values in the column.
+     */
+    private static int subtract(double[] column, int size, double[] values, int count)
+    {
+        int write = lowerBound(column, size, values[0]);
+        int read = write;
+        int index = 0;
+        while (read < size)
+        {
+            if (index < count && column[read] == values[index])
+            {
+                ++index;
+            }
+            else
+            {
+                column[write++] = column[read];
+            }
+            ++read;
+        }
+        return write;
+    }
+}
@@ -1,10 +1,10 @@
 package io.opensphere.analysis.listtool.model;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
-import java.util.function.IntFunction;
 
 import net.jcip.annotations.GuardedBy;
 import net.jcip.annotations.NotThreadSafe;
@@ -21,12 +21,11 @@ import io.opensphere.analysis.table.model.MetaColumn;
 import io.opensphere.core.model.IntegerRange;
 import io.opensphere.core.model.time.TimeSpan;
 import io.opensphere.core.model.time.TimeSpanList;
-import io.opensphere.core.util.cache.SimpleIntCache;
-import io.opensphere.core.util.collections.FixedSizeBufferMap;
 import io.opensphere.core.util.collections.New;
 import io.opensphere.core.util.swing.table.AbstractRowDataProvider;
 import io.opensphere.mantle.MantleToolbox;
 import io.opensphere.mantle.data.DataTypeInfo;
+import io.opensphere.mantle.data.cache.MetaDataCodes;
 import io.opensphere.mantle.data.element.DataElement;
 import io.opensphere.mantle.data.util.DataElementLookupException;
 import io.opensphere.mantle.data.util.DataElementLookupUtils;
@@ -69,9 +68,8 @@ class DataElementProvider extends AbstractRowDataProvider<List<?>>
     /** The maximum ID, for performance. */
     private long myMaxId;
 
-    /** The cache. */
-    @GuardedBy("this")
-    private final SimpleIntCache<List<?>> myCache;
+    /** The cache of row values, loaded in blocks. */
+    private final RowBlockCache myCache;
 
     /**
      * Constructor.
@@ -95,13 +93,28 @@ class DataElementProvider extends AbstractRowDataProvider<List<?>>
         myMetaColumns = metaColumns;
         myTimeColumnIndex = timeColumnIndex;
         myTimeSpans = TimeSpanList.emptyList();
-        myCache = new SimpleIntCache<>(new FixedSizeBufferMap<Integer, List<?>>(100), new IntFunction<List<?>>()
+        myCache = new RowBlockCache(new RowBlockCache.BlockSource()
         {
             @Override
-            public List<?> apply(int rowIndex)
+            public long[] getIds(int firstRow, int count)
+            {
+                synchronized (DataElementProvider.this)
+                {
+                    int end = Math.min(firstRow + count, myIds.size());
+                    return firstRow < end ? myIds.toArray(firstRow, end - firstRow) : new long[0];
+                }
+            }
+
+            @Override
+            public int getRowCount()
             {
-                DataElement dataElement = getDataElement(rowIndex);
-                return dataElement == null ? Collections.emptyList() : getValues(rowIndex, dataElement);
+                return DataElementProvider.this.getRowCount();
+            }
+
+            @Override
+            public List<List<?>> getValues(int firstRow, long[] ids)
+            {
+                return DataElementProvider.this.getValues(firstRow, ids);
             }
         });
 
@@ -113,9 +126,9 @@ class DataElementProvider extends AbstractRowDataProvider<List<?>>
     }
 
     @Override
-    public synchronized List<?> getData(int rowIndex)
+    public List<?> getData(int rowIndex)
     {
-        return myCache.apply(rowIndex);
+        return myCache.get(rowIndex);
     }
 
     @Override
@@ -203,6 +216,7 @@ class DataElementProvider extends AbstractRowDataProvider<List<?>>
                     myIds.addAll(filteredIds);
                     updateMaxId();
                     lastRow = myIds.size() - 1;
+                    myCache.invalidateFrom(firstRow);
                 }
 
                 fireTableRowsInserted(firstRow, lastRow);
@@ -269,14 +283,9 @@ class DataElementProvider extends AbstractRowDataProvider<List<?>>
                 int max = removedRange.getMax().intValue();
                 synchronized (this)
                 {
-                    int size = myIds.size();
-                    int rangeSize = max - min + 1;
-                    myIds.remove(min, rangeSize);
+                    myIds.remove(min, max - min + 1);
                     updateMaxId();
-                    for (int row = min; row < size; ++row)
-                    {
-                        myCache.remap(row, row + rangeSize);
-                    }
+                    myCache.invalidateFrom(min);
                 }
 
                 fireTableRowsDeleted(min, max);
@@ -303,11 +312,33 @@ class DataElementProvider extends AbstractRowDataProvider<List<?>>
     /**
      * Clears the cache.
      */
-    public final synchronized void clearCache()
+    public final void clearCache()
     {
         myCache.clear();
     }
 
+    /**
+     * Clears the cached values of the rows for some data elements, for when
+     * the elements have changed.
+     *
+     * @param ids the data element ids
+     */
+    public void invalidateIds(Collection<Long> ids)
+    {
+        assert SwingUtilities.isEventDispatchThread();
+        if (!ids.isEmpty())
+        {
+            int rowCount = getRowCount();
+            for (int firstRow : myCache.invalidateIds(ids))
+            {
+                if (firstRow < rowCount)
+                {
+                    fireTableRowsUpdated(firstRow, Math.min(firstRow + RowBlockCache.BLOCK_SIZE, rowCount) - 1);
+                }
+            }
+        }
+    }
+
     /**
      * Gets the time spans.
      *
@@ -402,6 +433,39 @@ class DataElementProvider extends AbstractRowDataProvider<List<?>>
         return result;
     }
 
+    /**
+     * Retrieves the keys to sort a column by. When the cache keeps the values
+     * of the column as dictionary codes, each key is the rank of the row's
+     * value among the distinct values, so the rows are sorted by comparing
+     * integers and each distinct value is decoded once. Otherwise the keys are
+     * the values.
+     *
+     * @param columnIndex the column index
+     * @return the sort keys
+     */
+    public List<?> getColumnSortKeys(int columnIndex)
+    {
+        if (columnIndex >= myMetaColumns.size())
+        {
+            String columnName = getModel().getColumnName(columnIndex);
+            try
+            {
+                MetaDataCodes codes = myDataElementLookupUtils.getMetaDataPropertyCodes(getDataElementIds(), columnName,
+                        myDataType, myDataType.getTypeKey());
+                List<Integer> ranks = codes == null ? null : getRanks(codes);
+                if (ranks != null)
+                {
+                    return ranks;
+                }
+            }
+            catch (DataElementLookupException e)
+            {
+                LOGGER.error(e);
+            }
+        }
+        return getColumnValues(columnIndex);
+    }
+
     /**
      * Retrieves all the values for the time column, if it needs to it will make
      * the query to the cache.
@@ -413,6 +477,48 @@ class DataElementProvider extends AbstractRowDataProvider<List<?>>
         return myDataElementLookupUtils.getTimespans(getDataElementIds());
     }
 
+    /**
+     * Gets the rank of each coded value among the distinct values, in their
+     * natural order.
+     *
+     * @param codes the codes
+     * @return the ranks, with null for rows without a value, or null if the
+     *         values are not comparable
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static List<Integer> getRanks(MetaDataCodes codes)
+    {
+        Object[] values = new Object[codes.getDictionarySize()];
+        List<Integer> presentCodes = New.list();
+        for (int index = 0; index < codes.size(); ++index)
+        {
+            int code = codes.getCode(index);
+            if (code != MetaDataCodes.NO_CODE && values[code] == null)
+            {
+                values[code] = codes.getValue(code);
+                if (!(values[code] instanceof Comparable))
+                {
+                    return null;
+                }
+                presentCodes.add(Integer.valueOf(code));
+            }
+        }
+        presentCodes.sort((c1, c2) -> ((Comparable)values[c1.intValue()]).compareTo(values[c2.intValue()]));
+
+        Integer[] codeToRank = new Integer[values.length];
+        for (int rank = 0; rank < presentCodes.size(); ++rank)
+        {
+            codeToRank[presentCodes.get(rank).intValue()] = Integer.valueOf(rank);
+        }
+        Integer[] ranks = new Integer[codes.size()];
+        for (int index = 0; index < ranks.length; ++index)
+        {
+            int code = codes.getCode(index);
+            ranks[index] = code == MetaDataCodes.NO_CODE ? null : codeToRank[code];
+        }
+        return Arrays.asList(ranks);
+    }
+
     /**
      * Gets the data element for the given row index.
      *
@@ -451,6 +557,65 @@ class DataElementProvider extends AbstractRowDataProvider<List<?>>
         return dataElement;
     }
 
+    /**
+     * Looks up the data elements for the given ids in one retrieval, falling
+     * back to {@link #lookupDataElement(long)} for each id if that fails.
+     *
+     * @param ids the ids
+     * @return the data elements, in the same order as the ids
+     */
+    public List<DataElement> lookupDataElements(List<Long> ids)
+    {
+        if (myDataElementLookupUtils != null)
+        {
+            try
+            {
+                List<DataElement> dataElements = myDataElementLookupUtils.getDataElements(ids, myDataType,
+                        myDataType.getTypeKey(), false);
+                if (dataElements.size() == ids.size())
+                {
+                    return dataElements;
+                }
+            }
+            catch (DataElementLookupException e)
+            {
+                LOGGER.error(e);
+            }
+        }
+
+        List<DataElement> dataElements = New.list(ids.size());
+        for (Long id : ids)
+        {
+            dataElements.add(lookupDataElement(id.longValue()));
+        }
+        return dataElements;
+    }
+
+    /**
+     * Gets the cell values for a block of rows.
+     *
+     * @param firstRow the index of the first row
+     * @param ids the data element ids of the rows
+     * @return the values for each row
+     */
+    private List<List<?>> getValues(int firstRow, long[] ids)
+    {
+        List<Long> idList = New.list(ids.length);
+        for (long id : ids)
+        {
+            idList.add(Long.valueOf(id));
+        }
+        List<DataElement> dataElements = lookupDataElements(idList);
+
+        List<List<?>> values = New.list(ids.length);
+        for (int index = 0; index < ids.length; ++index)
+        {
+            DataElement dataElement = dataElements.get(index);
+            values.add(dataElement == null ? Collections.emptyList() : getValues(firstRow + index, dataElement));
+        }
+        return values;
+    }
+
     /**
      * Gets the cell values for the data element, including meta columns.
      *
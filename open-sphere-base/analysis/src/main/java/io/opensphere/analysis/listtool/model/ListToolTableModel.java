@@ -165,6 +165,17 @@ public class ListToolTableModel extends AbstractColumnTableModel implements Meta
         myRowDataProvider.clearCache();
     }
 
+    /**
+     * Clears the cached values of the rows for some data elements, for when
+     * the elements have changed.
+     *
+     * @param ids the data element ids
+     */
+    public void invalidateIds(Collection<Long> ids)
+    {
+        myRowDataProvider.invalidateIds(ids);
+    }
+
     /**
      * Gets the time spans.
      *
@@ -234,6 +245,19 @@ public class ListToolTableModel extends AbstractColumnTableModel implements Meta
         return includeMetaColumns ? super.getColumnIdentifiers() : myDataType.getMetaDataInfo().getKeyNames();
     }
 
+    /**
+     * Retrieves the keys to sort a specified column by, which compare in the
+     * same order as the values.
+     *
+     * @param columnIndex the column index
+     * @return the sort keys
+     */
+    public List<?> getColumnSortKeys(int columnIndex)
+    {
+        return columnIndex == myTimeColumnIndex ? myRowDataProvider.getTimeColumnValues()
+                : myRowDataProvider.getColumnSortKeys(columnIndex);
+    }
+
     /**
      * Retrieves all the values for a specified column, if it needs to it will
      * make the query to the cache.
@@ -318,8 +342,17 @@ public class ListToolTableModel extends AbstractColumnTableModel implements Meta
     {
         if (!Objects.equals(myHighlightedId, id))
         {
+            List<Long> changedIds = New.list(2);
+            if (myHighlightedId != null)
+            {
+                changedIds.add(myHighlightedId);
+            }
+            if (id != null)
+            {
+                changedIds.add(id);
+            }
             myHighlightedId = id;
-            myRowDataProvider.clearCache();
+            myRowDataProvider.invalidateIds(changedIds);
         }
     }
 
@@ -0,0 +1,343 @@
+package io.opensphere.analysis.listtool.model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import gnu.trove.set.TIntSet;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TIntHashSet;
+import gnu.trove.set.hash.TLongHashSet;
+import io.opensphere.core.util.collections.New;
+import io.opensphere.core.util.lang.NamedThreadFactory;
+
+/**
+ * A cache of the cell values for blocks of consecutive table rows.
+ * <p>
+ * When a row is requested, the whole block containing it is loaded with one
+ * batched lookup, and the blocks on either side are loaded on a background
+ * thread so that scrolling finds them ready. The most recently used blocks are
+ * kept. Blocks can be invalidated by row or by element id, so that a change to
+ * a few elements does not drop the whole cache.
+ */
+@ThreadSafe
+class RowBlockCache
+{
+    /** The number of rows in a block. */
+    static final int BLOCK_SIZE = 256;
+
+    /** The default executor for loading blocks in the background. */
+    private static final Executor PREFETCH_EXECUTOR = Executors
+            .newSingleThreadExecutor(new NamedThreadFactory("ListToolPrefetch"));
+
+    /** The maximum number of blocks that are kept. */
+    private static final int MAX_BLOCKS = 64;
+
+    /** The number of blocks on each side of a requested block to prefetch. */
+    private static final int PREFETCH_BLOCKS = 2;
+
+    /** The loaded blocks, in least recently used order. */
+    @GuardedBy("this")
+    private final Map<Integer, Block> myBlocks = new LinkedHashMap<>(16, .75f, true);
+
+    /** The executor for loading blocks in the background. */
+    private final Executor myExecutor;
+
+    /**
+     * Incremented whenever blocks are invalidated, so that blocks loaded before
+     * the invalidation are not stored.
+     */
+    @GuardedBy("this")
+    private long myGeneration;
+
+    /** The blocks being loaded in the background. */
+    @GuardedBy("this")
+    private final TIntSet myPending = new TIntHashSet();
+
+    /** The source of the rows. */
+    private final BlockSource mySource;
+
+    /**
+     * Constructor.
+     *
+     * @param source The source of the rows.
+     */
+    public RowBlockCache(BlockSource source)
+    {
+        this(source, PREFETCH_EXECUTOR);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param source The source of the rows.
+     * @param executor The executor for loading blocks in the background.
+     */
+    public RowBlockCache(BlockSource source, Executor executor)
+    {
+        mySource = source;
+        myExecutor = executor;
+    }
+
+    /** Removes all the blocks. */
+    public synchronized void clear()
+    {
+        myBlocks.clear();
+        ++myGeneration;
+    }
+
+    /**
+     * Gets the cell values for a row, loading its block if necessary.
+     *
+     * @param rowIndex The row index.
+     * @return The values, or an empty list if the row does not exist.
+     */
+    public List<?> get(int rowIndex)
+    {
+        int blockIndex = rowIndex / BLOCK_SIZE;
+        Block block;
+        long generation;
+        synchronized (this)
+        {
+            block = myBlocks.get(Integer.valueOf(blockIndex));
+            generation = myGeneration;
+        }
+        if (block == null)
+        {
+            block = load(blockIndex, generation);
+        }
+        prefetch(blockIndex);
+
+        int offset = rowIndex - blockIndex * BLOCK_SIZE;
+        return offset < block.getValues().size() ? block.getValues().get(offset) : Collections.emptyList();
+    }
+
+    /**
+     * Removes the blocks that contain any of some element ids.
+     *
+     * @param ids The element ids.
+     * @return The indexes of the first rows of the removed blocks.
+     */
+    public synchronized int[] invalidateIds(Collection<Long> ids)
+    {
+        TLongSet idSet = new TLongHashSet(ids.size());
+        for (Long id : ids)
+        {
+            idSet.add(id.longValue());
+        }
+
+        List<Integer> removed = New.list();
+        for (Iterator<Map.Entry<Integer, Block>> iter = myBlocks.entrySet().iterator(); iter.hasNext();)
+        {
+            Map.Entry<Integer, Block> entry = iter.next();
+            for (long id : entry.getValue().getIds())
+            {
+                if (idSet.contains(id))
+                {
+                    removed.add(entry.getKey());
+                    iter.remove();
+                    break;
+                }
+            }
+        }
+        if (!removed.isEmpty())
+        {
+            ++myGeneration;
+        }
+
+        int[] firstRows = new int[removed.size()];
+        for (int index = 0; index < firstRows.length; ++index)
+        {
+            firstRows[index] = removed.get(index).intValue() * BLOCK_SIZE;
+        }
+        return firstRows;
+    }
+
+    /**
+     * Removes the blocks that contain a row or any later row, for when rows
+     * are inserted or removed.
+     *
+     * @param rowIndex The first row that changed.
+     */
+    public synchronized void invalidateFrom(int rowIndex)
+    {
+        int firstBlock = rowIndex / BLOCK_SIZE;
+        myBlocks.keySet().removeIf(blockIndex -> blockIndex.intValue() >= firstBlock);
+        ++myGeneration;
+    }
+
+    /**
+     * Determines if the block containing a row is loaded.
+     *
+     * @param rowIndex The row index.
+     * @return If the block is loaded.
+     */
+    public synchronized boolean isLoaded(int rowIndex)
+    {
+        return myBlocks.containsKey(Integer.valueOf(rowIndex / BLOCK_SIZE));
+    }
+
+    /**
+     * Loads a block and stores it if no invalidation has happened since the
+     * load started.
+     *
+     * @param blockIndex The block index.
+     * @param generation The generation when the load started.
+     * @return The block.
+     */
+    private Block load(int blockIndex, long generation)
+    {
+        int firstRow = blockIndex * BLOCK_SIZE;
+        long[] ids = mySource.getIds(firstRow, BLOCK_SIZE);
+        Block block = new Block(ids,
+                ids.length == 0 ? Collections.<List<?>>emptyList() : mySource.getValues(firstRow, ids));
+        synchronized (this)
+        {
+            if (generation == myGeneration && ids.length > 0)
+            {
+                myBlocks.put(Integer.valueOf(blockIndex), block);
+                for (Iterator<Integer> iter = myBlocks.keySet().iterator(); myBlocks.size() > MAX_BLOCKS;)
+                {
+                    iter.next();
+                    iter.remove();
+                }
+            }
+        }
+        return block;
+    }
+
+    /**
+     * Loads the blocks around a block in the background if they are not
+     * already loaded or being loaded.
+     *
+     * @param blockIndex The block index.
+     */
+    private void prefetch(int blockIndex)
+    {
+        for (int offset = 1; offset <= PREFETCH_BLOCKS; ++offset)
+        {
+            prefetchBlock(blockIndex + offset);
+            prefetchBlock(blockIndex - offset);
+        }
+    }
+
+    /**
+     * Loads a block in the background if it is not already loaded or being
+     * loaded.
+     *
+     * @param blockIndex The block index.
+     */
+    private void prefetchBlock(int blockIndex)
+    {
+        if (blockIndex < 0 || blockIndex * BLOCK_SIZE >= mySource.getRowCount())
+        {
+            return;
+        }
+
+        long generation;
+        synchronized (this)
+        {
+            if (myBlocks.containsKey(Integer.valueOf(blockIndex)) || !myPending.add(blockIndex))
+            {
+                return;
+            }
+            generation = myGeneration;
+        }
+        myExecutor.execute(() ->
+        {
+            try
+            {
+                load(blockIndex, generation);
+            }
+            finally
+            {
+                synchronized (RowBlockCache.this)
+                {
+                    myPending.remove(blockIndex);
+                }
+            }
+        });
+    }
+
+    /** The source of the rows in the blocks. */
+    interface BlockSource
+    {
+        /**
+         * Gets the element ids for some rows. This may be called from any
+         * thread.
+         *
+         * @param firstRow The first row.
+         * @param count The maximum number of rows.
+         * @return The ids, which may be fewer than the count at the end of the
+         *         table.
+         */
+        long[] getIds(int firstRow, int count);
+
+        /**
+         * Gets the number of rows. This may be called from any thread.
+         *
+         * @return The number of rows.
+         */
+        int getRowCount();
+
+        /**
+         * Gets the cell values for some rows. This may be called from any
+         * thread.
+         *
+         * @param firstRow The first row.
+         * @param ids The element ids of the rows.
+         * @return The values for each row.
+         */
+        List<List<?>> getValues(int firstRow, long[] ids);
+    }
+
+    /** A loaded block of rows. */
+    private static class Block
+    {
+        /** The element ids of the rows. */
+        private final long[] myIds;
+
+        /** The cell values of the rows. */
+        private final List<List<?>> myValues;
+
+        /**
+         * Constructor.
+         *
+         * @param ids The element ids of the rows.
+         * @param values The cell values of the rows.
+         */
+        public Block(long[] ids, List<List<?>> values)
+        {
+            myIds = ids;
+            myValues = values;
+        }
+
+        /**
+         * Gets the element ids of the rows.
+         *
+         * @return The ids.
+         */
+        public long[] getIds()
+        {
+            return myIds;
+        }
+
+        /**
+         * Gets the cell values of the rows.
+         *
+         * @return The values.
+         */
+        public List<List<?>> getValues()
+        {
+            return myValues;
+        }
+    }
+}
@@ -101,7 +101,7 @@ public class CustomTableSortControllerExtension extends TableSortController<Tabl
             @Override
             protected Void doInBackground()
             {
-                List<?> columnData = myTableModel.getColumnValues(column);
+                List<?> columnData = myTableModel.getColumnSortKeys(column);
                 mySortWrapper.setColumnData(column, columnData);
                 return null;
             }
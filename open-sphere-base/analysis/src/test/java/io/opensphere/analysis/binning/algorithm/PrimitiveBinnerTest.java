@@ -0,0 +1,201 @@
+package io.opensphere.analysis.binning.algorithm;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.opensphere.analysis.binning.criteria.RangeCriteria;
+import io.opensphere.analysis.binning.criteria.TimeBinType;
+import io.opensphere.analysis.binning.criteria.TimeCriteria;
+
+/** Tests for {@link PrimitiveBinner}. */
+public class PrimitiveBinnerTest
+{
+    /** Tests range binning, including incremental changes and rebinning. */
+    @Test
+    public void testRange()
+    {
+        RangeCriteria criteria = new RangeCriteria();
+        criteria.setBinWidth(10);
+        PrimitiveBinner binner = new PrimitiveBinner(criteria);
+        Assert.assertTrue(binner.addAll(new long[] { 1, 2, 3, 4, 5, 6 }, new double[] { 0, 3.5, 10, 33, 34, Double.NaN }));
+
+        Assert.assertArrayEquals(new int[] { 2, 1, 0, 2 }, binner.getCounts());
+        Assert.assertEquals(0., binner.getMin(0), 0.);
+        Assert.assertEquals(40., binner.getMax(3), 0.);
+        Assert.assertEquals(1, binner.getNACount());
+        Assert.assertEquals(6, binner.size());
+        assertIds(new long[] { 1, 2 }, binner.getIds(0));
+
+        // Values within the bins only change the counts.
+        Assert.assertFalse(binner.add(7, 25));
+        Assert.assertArrayEquals(new int[] { 2, 1, 1, 2 }, binner.getCounts());
+
+        // Replacing a value moves the element.
+        Assert.assertFalse(binner.add(7, 15));
+        Assert.assertArrayEquals(new int[] { 2, 2, 0, 2 }, binner.getCounts());
+        Assert.assertTrue(binner.contains(7));
+        Assert.assertEquals(15., binner.getValue(7), 0.);
+        Assert.assertEquals(1, binner.getBin(15));
+
+        Assert.assertTrue(binner.add(8, -5));
+        Assert.assertArrayEquals(new int[] { 1, 2, 2, 0, 2 }, binner.getCounts());
+        Assert.assertEquals(-10., binner.getMin(0), 0.);
+        Assert.assertEquals(-1, binner.getBin(50));
+        Assert.assertEquals(-1, binner.getBin(Double.NaN));
+
+        Assert.assertTrue(binner.removeAll(new long[] { 8, 6 }));
+        Assert.assertArrayEquals(new int[] { 2, 2, 0, 2 }, binner.getCounts());
+        Assert.assertEquals(0, binner.getNACount());
+        Assert.assertFalse(binner.contains(8));
+        Assert.assertTrue(Double.isNaN(binner.getValue(8)));
+
+        Assert.assertFalse(binner.remove(3));
+        Assert.assertArrayEquals(new int[] { 2, 1, 0, 2 }, binner.getCounts());
+        assertIds(new long[] { 7 }, binner.getIds(10., 20.));
+
+        criteria.setBinWidth(20);
+        binner.rebin();
+        Assert.assertArrayEquals(new int[] { 3, 2 }, binner.getCounts());
+        assertIds(new long[] { 4, 5 }, binner.getIds(1));
+
+        binner.clear();
+        Assert.assertEquals(0, binner.getBinCount());
+        Assert.assertEquals(0, binner.size());
+    }
+
+    /** Tests that bin edges are rounded like those of {@link RangeBinner}. */
+    @Test
+    public void testRoundedEdges()
+    {
+        RangeCriteria criteria = new RangeCriteria();
+        criteria.setBinWidth(.1);
+        PrimitiveBinner binner = new PrimitiveBinner(criteria);
+        binner.addAll(new long[] { 1, 2 }, new double[] { .3, .55 });
+
+        Assert.assertEquals(3, binner.getBinCount());
+        Assert.assertEquals(.3, binner.getMin(0), 0.);
+        Assert.assertEquals(.5, binner.getMin(2), 0.);
+        Assert.assertEquals(.6, binner.getMax(2), 0.);
+    }
+
+    /** Tests that random changes give the same counts as binning from scratch. */
+    @Test
+    public void testRandom()
+    {
+        Random random = new Random(3);
+        RangeCriteria criteria = new RangeCriteria();
+        criteria.setBinWidth(2.5);
+        PrimitiveBinner binner = new PrimitiveBinner(criteria);
+        double[] values = new double[2000];
+        Arrays.fill(values, Double.NaN);
+
+        for (int pass = 0; pass < 50; ++pass)
+        {
+            int count = 1 + random.nextInt(100);
+            long[] ids = random.longs(count, 0, values.length).distinct().toArray();
+            if (random.nextBoolean())
+            {
+                double[] batch = new double[ids.length];
+                for (int index = 0; index < ids.length; ++index)
+                {
+                    batch[index] = random.nextInt(10) == 0 ? Double.NaN : random.nextGaussian() * 100.;
+                    values[(int)ids[index]] = batch[index];
+                }
+                binner.addAll(ids, batch);
+            }
+            else
+            {
+                binner.removeAll(ids);
+                for (long id : ids)
+                {
+                    values[(int)id] = Double.NaN;
+                }
+            }
+
+            int[] expected = new int[binner.getBinCount()];
+            for (double value : values)
+            {
+                if (!Double.isNaN(value))
+                {
+                    int bin = 0;
+                    while (!(value < binner.getMax(bin)))
+                    {
+                        ++bin;
+                    }
+                    Assert.assertTrue(value >= binner.getMin(bin));
+                    ++expected[bin];
+                }
+            }
+            Assert.assertArrayEquals(expected, binner.getCounts());
+        }
+    }
+
+    /** Tests time binning. */
+    @Test
+    public void testTime()
+    {
+        TimeZone zone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        try
+        {
+            Calendar calendar = Calendar.getInstance();
+            calendar.clear();
+            calendar.set(2017, Calendar.JANUARY, 30, 12, 0);
+            long jan30 = calendar.getTimeInMillis();
+            calendar.set(2017, Calendar.MARCH, 1, 0, 0);
+            long mar1 = calendar.getTimeInMillis();
+            calendar.set(2017, Calendar.MARCH, 31, 23, 59);
+            long mar31 = calendar.getTimeInMillis();
+
+            TimeCriteria criteria = new TimeCriteria();
+            criteria.setBinType(TimeBinType.MONTH);
+            PrimitiveBinner binner = new PrimitiveBinner(criteria);
+            binner.addAll(new long[] { 1, 2, 3 }, new double[] { jan30, mar1, mar31 });
+            Assert.assertArrayEquals(new int[] { 1, 0, 2 }, binner.getCounts());
+            calendar.set(2017, Calendar.FEBRUARY, 1, 0, 0);
+            Assert.assertEquals(calendar.getTimeInMillis(), (long)binner.getMax(0));
+
+            criteria.setBinType(TimeBinType.YEAR);
+            binner.rebin();
+            Assert.assertArrayEquals(new int[] { 3 }, binner.getCounts());
+
+            criteria.setBinType(TimeBinType.DAY);
+            binner.rebin();
+            Assert.assertEquals(61, binner.getBinCount());
+            Assert.assertEquals(1, binner.getCount(30));
+
+            criteria.setBinType(TimeBinType.HOUR_OF_DAY);
+            try
+            {
+                binner.rebin();
+                Assert.fail("Expected an exception for a periodic bin type.");
+            }
+            catch (IllegalArgumentException e)
+            {
+                // expected
+            }
+        }
+        finally
+        {
+            TimeZone.setDefault(zone);
+        }
+    }
+
+    /**
+     * Asserts that two sets of ids are the same, ignoring order.
+     *
+     * @param expected The expected ids.
+     * @param actual The actual ids.
+     */
+    private static void assertIds(long[] expected, long[] actual)
+    {
+        long[] sorted = actual.clone();
+        Arrays.sort(sorted);
+        Assert.assertArrayEquals(expected, sorted);
+    }
+}
@@ -51,6 +51,31 @@ public class RangeBinnerTest
         Assert.assertEquals(33., binner.getBins().get(2).getData().get(0).x, 0.);
     }
 
+    /** Tests rebinning after the bin width changes. */
+    @Test
+    public void testRebin()
+    {
+        RangeCriteria criteria = new RangeCriteria();
+        criteria.setBinWidth(10);
+        RangeBinner<Point2D.Double> binner = new RangeBinner<>(criteria, p -> Double.valueOf(p.x), o -> ((Double)o).doubleValue(),
+                (v, c) -> Double.valueOf(v));
+        binner.setSortBins(true);
+        binner.add(new Point2D.Double(0, 0));
+        binner.add(new Point2D.Double(3.5, 0));
+        binner.add(new Point2D.Double(10, 0));
+        binner.add(new Point2D.Double(33, 0));
+        binner.add(new Point2D.Double(34, 0));
+        Assert.assertEquals(3, binner.getBins().size());
+
+        criteria.setBinWidth(20);
+        binner.rebin();
+
+        Assert.assertEquals(2, binner.getBins().size());
+        Assert.assertEquals(3, binner.getBins().get(0).getSize());
+        Assert.assertEquals(2, binner.getBins().get(1).getSize());
+        Assert.assertEquals(20., ((RangeBin<Point2D.Double>)binner.getBins().get(1)).getMin(), 0.);
+    }
+
     /** Tests custom binning. */
     @Test
     public void testCustomBin()
@@ -0,0 +1,129 @@
+package io.opensphere.analysis.listtool.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.opensphere.core.util.collections.New;
+
+/** Tests for {@link RowBlockCache}. */
+public class RowBlockCacheTest
+{
+    /** The number of rows in the test source. */
+    private static final int ROW_COUNT = 1000;
+
+    /** Tests loading, prefetching, and invalidating blocks. */
+    @Test
+    public void testGet()
+    {
+        TestSource source = new TestSource();
+        List<Runnable> tasks = New.list();
+        RowBlockCache cache = new RowBlockCache(source, tasks::add);
+
+        Assert.assertEquals(Collections.singletonList(Long.valueOf(300)), cache.get(300));
+        Assert.assertEquals(1, source.getLoadCount());
+        Assert.assertEquals(Collections.singletonList(Long.valueOf(301)), cache.get(301));
+        Assert.assertEquals(1, source.getLoadCount());
+
+        // Blocks 0, 2, and 3 are prefetched; there are no blocks before 0 or after 3.
+        Assert.assertEquals(3, tasks.size());
+        runAll(tasks);
+        Assert.assertEquals(4, source.getLoadCount());
+        Assert.assertTrue(cache.isLoaded(0));
+        Assert.assertTrue(cache.isLoaded(999));
+        Assert.assertFalse(cache.isLoaded(1024));
+        Assert.assertEquals(Collections.singletonList(Long.valueOf(999)), cache.get(999));
+        Assert.assertEquals(Collections.emptyList(), cache.get(1200));
+        Assert.assertEquals(4, source.getLoadCount());
+
+        int[] firstRows = cache.invalidateIds(Arrays.asList(Long.valueOf(5), Long.valueOf(600)));
+        Arrays.sort(firstRows);
+        Assert.assertArrayEquals(new int[] { 0, 512 }, firstRows);
+        Assert.assertFalse(cache.isLoaded(5));
+        Assert.assertTrue(cache.isLoaded(300));
+        Assert.assertTrue(cache.isLoaded(800));
+
+        cache.invalidateFrom(300);
+        Assert.assertFalse(cache.isLoaded(256));
+        Assert.assertFalse(cache.isLoaded(800));
+    }
+
+    /** Tests that a block loaded before an invalidation is not stored. */
+    @Test
+    public void testStaleLoad()
+    {
+        TestSource source = new TestSource();
+        List<Runnable> tasks = New.list();
+        RowBlockCache cache = new RowBlockCache(source, tasks::add);
+
+        cache.get(0);
+        cache.clear();
+        runAll(tasks);
+        Assert.assertEquals(3, source.getLoadCount());
+        Assert.assertFalse(cache.isLoaded(256));
+        Assert.assertFalse(cache.isLoaded(512));
+        Assert.assertFalse(cache.isLoaded(0));
+    }
+
+    /**
+     * Runs and removes the tasks.
+     *
+     * @param tasks The tasks.
+     */
+    private static void runAll(List<Runnable> tasks)
+    {
+        List<Runnable> copy = New.list(tasks);
+        tasks.clear();
+        copy.forEach(Runnable::run);
+    }
+
+    /** Source whose rows hold their own index. */
+    private static class TestSource implements RowBlockCache.BlockSource
+    {
+        /** The number of value loads. */
+        private int myLoadCount;
+
+        /**
+         * Gets the number of value loads.
+         *
+         * @return The count.
+         */
+        public int getLoadCount()
+        {
+            return myLoadCount;
+        }
+
+        @Override
+        public long[] getIds(int firstRow, int count)
+        {
+            int end = Math.min(firstRow + count, ROW_COUNT);
+            long[] ids = new long[Math.max(0, end - firstRow)];
+            for (int index = 0; index < ids.length; ++index)
+            {
+                ids[index] = firstRow + index;
+            }
+            return ids;
+        }
+
+        @Override
+        public int getRowCount()
+        {
+            return ROW_COUNT;
+        }
+
+        @Override
+        public List<List<?>> getValues(int firstRow, long[] ids)
+        {
+            ++myLoadCount;
+            List<List<?>> values = New.list(ids.length);
+            for (long id : ids)
+            {
+                values.add(Collections.singletonList(Long.valueOf(id)));
+            }
+            return values;
+        }
+    }
+}
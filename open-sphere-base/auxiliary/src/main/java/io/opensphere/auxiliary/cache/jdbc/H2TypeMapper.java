@@ -1,5 +1,6 @@
 package io.opensphere.auxiliary.cache.jdbc;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
@@ -14,6 +15,8 @@ import io.opensphere.core.cache.CacheException;
 import io.opensphere.core.cache.ClassProvider;
 import io.opensphere.core.cache.jdbc.TypeMapper;
 import io.opensphere.core.cache.jdbc.type.AbstractValueTranslator;
+import io.opensphere.core.cache.jdbc.type.CodecTranslator;
+import io.opensphere.core.cache.jdbc.type.ParameterBuffer;
 import io.opensphere.core.cache.jdbc.type.ValueTranslator;
 import io.opensphere.core.cache.matcher.PropertyMatcher;
 
@@ -78,6 +81,13 @@ public class H2TypeMapper extends TypeMapper
                 throw new CacheException("Cannot insert object [" + value + "] into prepared statement: " + e, e);
             }
         }
+
+        @Override
+        public int setValue(ParameterBuffer buffer, int column, Serializable value)
+        {
+            buffer.setObject(column, value, Types.JAVA_OBJECT);
+            return column + 1;
+        }
     };
 
     @Override
@@ -105,6 +115,24 @@ public class H2TypeMapper extends TypeMapper
         myProvider = classProvider;
     }
 
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    @Override
+    protected ValueTranslator<?> createCodecTranslator(Class<?> type)
+    {
+        return new CodecTranslator(type)
+        {
+            @Override
+            protected Serializable deserialize(byte[] bytes) throws IOException, ClassNotFoundException
+            {
+                try (CustomObjectInputStream objectStream = new CustomObjectInputStream(myProvider,
+                        new ByteArrayInputStream(bytes)))
+                {
+                    return (Serializable)objectStream.readObject();
+                }
+            }
+        };
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     protected <T> ValueTranslator<? super T> getValueTranslator(Class<T> type)
@@ -4,6 +4,7 @@ import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferByte;
 import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.WritableRaster;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectOutputStream;
@@ -192,7 +193,7 @@ public class RealtimeDDSEncoder implements DDSEncoder, DDSDecoder
             graphics.drawImage(image, 0, 0, null);
             graphics.dispose();
         }
-        sourceArray = ((DataBufferByte)abgr.getData().getDataBuffer()).getData();
+        sourceArray = getRasterBytes(abgr);
         return sourceArray;
     }
 
@@ -217,7 +218,7 @@ public class RealtimeDDSEncoder implements DDSEncoder, DDSDecoder
             graphics.drawImage(image, 0, 0, null);
             graphics.dispose();
         }
-        sourceArray = ((DataBufferByte)bgr.getData().getDataBuffer()).getData();
+        sourceArray = getRasterBytes(bgr);
         return sourceArray;
     }
 
@@ -264,6 +265,33 @@ public class RealtimeDDSEncoder implements DDSEncoder, DDSDecoder
         return compType;
     }
 
+    /**
+     * Get the bytes of an image that has a byte raster. The raster's data
+     * buffer is used directly when it holds exactly the image's pixels in
+     * order; otherwise the pixels are copied.
+     *
+     * @param image The image.
+     * @return The bytes.
+     */
+    private byte[] getRasterBytes(BufferedImage image)
+    {
+        WritableRaster raster = image.getRaster();
+        if (raster.getParent() == null && raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0
+                && raster.getDataBuffer() instanceof DataBufferByte && raster.getDataBuffer().getNumBanks() == 1
+                && raster.getSampleModel() instanceof PixelInterleavedSampleModel)
+        {
+            PixelInterleavedSampleModel sm = (PixelInterleavedSampleModel)raster.getSampleModel();
+            DataBufferByte dataBuffer = (DataBufferByte)raster.getDataBuffer();
+            int rowSize = image.getWidth() * sm.getPixelStride();
+            if (sm.getPixelStride() == sm.getNumBands() && sm.getScanlineStride() == rowSize && dataBuffer.getOffset() == 0
+                    && dataBuffer.getData().length == rowSize * image.getHeight())
+            {
+                return dataBuffer.getData();
+            }
+        }
+        return ((DataBufferByte)image.getData().getDataBuffer()).getData();
+    }
+
     /**
      * Get the size of the final DDS image.
      *
@@ -327,7 +355,7 @@ public class RealtimeDDSEncoder implements DDSEncoder, DDSDecoder
         }
         if (isRGB)
         {
-            sourceArray = ((DataBufferByte)input.getData().getDataBuffer()).getData();
+            sourceArray = getRasterBytes(input);
         }
         else if (input.getColorModel().hasAlpha())
         {
@@ -27,6 +27,7 @@ import com.vividsolutions.jts.geom.GeometryFactory;
 
 import io.opensphere.core.cache.CacheDeposit;
 import io.opensphere.core.cache.CacheException;
+import io.opensphere.core.cache.CacheIdUtilities;
 import io.opensphere.core.cache.CacheModificationListener;
 import io.opensphere.core.cache.CacheModificationReport;
 import io.opensphere.core.cache.DefaultCacheDeposit;
@@ -266,6 +267,59 @@ public class H2CacheImplTest
         cache.close();
     }
 
+    /**
+     * Test that a row inserted into a group after the group's rows were
+     * inserted in bulk gets the next data id.
+     *
+     * @throws ClassNotFoundException If the database driver cannot be loaded.
+     * @throws CacheException If there is another database error.
+     * @throws NotSerializableException If an object cannot be serialized.
+     */
+    @Test
+    public void testInsertAfterBulkInsert() throws ClassNotFoundException, CacheException, NotSerializableException
+    {
+        H2CacheImpl cache = new H2CacheImpl(DB_URL, -1, null);
+        cache.initialize(-1L);
+
+        Date expiration = new Date(System.currentTimeMillis() + 3600000L);
+        DataModelCategory category = new DataModelCategory("bulkSource", FAMILY1, CATEGORY1);
+        PropertyDescriptor<String> propertyDescriptor = new PropertyDescriptor<>("key", String.class);
+        Collection<? extends PropertyAccessor<? super String, ?>> accessors = Collections
+                .singleton(SerializableAccessor.getHomogeneousAccessor(propertyDescriptor));
+
+        int objectCount = 5000;
+        List<String> objects = new ArrayList<>(objectCount);
+        for (int i = 0; i < objectCount; ++i)
+        {
+            objects.add("A" + Integer.toString(i));
+        }
+        long[] ids = cache.put(new DefaultCacheDeposit<>(category, accessors, objects, true, expiration, true),
+                (CacheModificationListener)null);
+        Assert.assertEquals(objectCount, ids.length);
+        int groupId = CacheIdUtilities.getGroupIdFromCombinedId(ids[0]);
+        for (int i = 0; i < objectCount; ++i)
+        {
+            Assert.assertEquals(groupId, CacheIdUtilities.getGroupIdFromCombinedId(ids[i]));
+            Assert.assertEquals(i + 1, CacheIdUtilities.getDataIdFromCombinedId(ids[i]));
+        }
+
+        // A small deposit reuses the group and lets the database generate the
+        // data id.
+        long[] ids2 = cache.put(new DefaultCacheDeposit<>(category, accessors, Collections.singletonList("B"), true,
+                expiration, true), (CacheModificationListener)null);
+        Assert.assertEquals(1, ids2.length);
+        Assert.assertEquals(groupId, CacheIdUtilities.getGroupIdFromCombinedId(ids2[0]));
+        Assert.assertEquals(objectCount + 1, CacheIdUtilities.getDataIdFromCombinedId(ids2[0]));
+
+        PropertyValueMap cacheResultMap = new PropertyValueMap();
+        List<String> results = new ArrayList<>(1);
+        cacheResultMap.addResultList(propertyDescriptor, results);
+        cache.getValues(new long[] { ids[objectCount - 1], ids2[0] }, cacheResultMap, null);
+        Assert.assertEquals(Arrays.asList("A" + Integer.toString(objectCount - 1), "B"), results);
+
+        cache.close();
+    }
+
     /**
      * Test inserting and retrieving string keys.
      *
@@ -0,0 +1,103 @@
+package io.opensphere.benchmarks;
+
+import java.util.Random;
+
+import io.opensphere.core.cache.CacheIdUtilities;
+
+/**
+ * Utilities for generating the id sets and lookup batches used by the
+ * benchmarks. All generation is seeded so that two runs (or two releases)
+ * operate on identical inputs.
+ */
+public final class BenchmarkData
+{
+    /** The number of ids requested from a cache in a single batch. */
+    public static final int BATCH_SIZE = 1000;
+
+    /** The number of groups the generated ids are spread over. */
+    public static final int GROUP_COUNT = 16;
+
+    /** The number of pre-generated lookup batches cycled by the benchmarks. */
+    public static final int LOOKUP_BATCH_COUNT = 64;
+
+    /** The seed used for all random generation. */
+    private static final long SEED = 0x0badcafeL;
+
+    /**
+     * Create combined cache ids spread evenly over {@link #GROUP_COUNT}
+     * groups, laid out group by group the way the cache assigns them.
+     *
+     * @param count The number of ids.
+     * @return The combined ids.
+     */
+    public static long[] createCombinedIds(int count)
+    {
+        long[] ids = new long[count];
+        int perGroup = (count + GROUP_COUNT - 1) / GROUP_COUNT;
+        for (int index = 0; index < count; ++index)
+        {
+            ids[index] = CacheIdUtilities.getCombinedId(index / perGroup + 1, index % perGroup);
+        }
+        return ids;
+    }
+
+    /**
+     * Create random lookup batches drawn from the given ids.
+     *
+     * @param ids The ids to draw from.
+     * @param batchCount The number of batches.
+     * @param batchSize The number of ids in each batch.
+     * @return The batches.
+     */
+    public static long[][] createRandomBatches(long[] ids, int batchCount, int batchSize)
+    {
+        Random random = new Random(SEED);
+        long[][] batches = new long[batchCount][];
+        for (int batch = 0; batch < batchCount; ++batch)
+        {
+            long[] arr = new long[Math.min(batchSize, ids.length)];
+            for (int index = 0; index < arr.length; ++index)
+            {
+                arr[index] = ids[random.nextInt(ids.length)];
+            }
+            batches[batch] = arr;
+        }
+        return batches;
+    }
+
+    /**
+     * Create contiguous batches covering the given ids, in order.
+     *
+     * @param ids The ids.
+     * @param batchSize The number of ids in each batch.
+     * @return The batches.
+     */
+    public static long[][] createSequentialBatches(long[] ids, int batchSize)
+    {
+        int batchCount = (ids.length + batchSize - 1) / batchSize;
+        long[][] batches = new long[batchCount][];
+        for (int batch = 0; batch < batchCount; ++batch)
+        {
+            int start = batch * batchSize;
+            int length = Math.min(batchSize, ids.length - start);
+            batches[batch] = new long[length];
+            System.arraycopy(ids, start, batches[batch], 0, length);
+        }
+        return batches;
+    }
+
+    /**
+     * Create a seeded random number generator.
+     *
+     * @return The generator.
+     */
+    public static Random newRandom()
+    {
+        return new Random(SEED);
+    }
+
+    /** Disallow instantiation. */
+    private BenchmarkData()
+    {
+    }
+}
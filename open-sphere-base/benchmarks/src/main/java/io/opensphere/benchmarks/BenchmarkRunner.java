@@ -0,0 +1,61 @@
+package io.opensphere.benchmarks;
+
+import java.io.File;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point that runs the benchmarks and writes the results as JSON so that
+ * the numbers from two releases can be diffed.
+ * <p>
+ * Usage: {@code BenchmarkRunner [include-regex [result-file [jmh-options...]]]}.
+ * Any arguments after the result file are passed through to JMH, so for
+ * example {@code -p myElementCount=10000} restricts the run to the smallest
+ * scale.
+ */
+public final class BenchmarkRunner
+{
+    /** The default benchmark selection. */
+    private static final String DEFAULT_INCLUDE = "io\\.opensphere\\.benchmarks\\..*";
+
+    /** The default result file. */
+    private static final String DEFAULT_RESULT_FILE = "target/jmh/benchmarks.json";
+
+    /**
+     * Main method.
+     *
+     * @param args The optional include pattern, the optional result file, and
+     *            any additional JMH command line options.
+     * @throws RunnerException If the benchmarks fail.
+     * @throws CommandLineOptionException If the JMH options are not valid.
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException
+    {
+        String include = args.length > 0 ? args[0] : DEFAULT_INCLUDE;
+        String resultFile = args.length > 1 ? args[1] : DEFAULT_RESULT_FILE;
+
+        String[] jmhArgs = new String[Math.max(0, args.length - 2)];
+        System.arraycopy(args, args.length - jmhArgs.length, jmhArgs, 0, jmhArgs.length);
+
+        File parent = new File(resultFile).getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs())
+        {
+            throw new RunnerException("Could not create result directory: " + parent);
+        }
+
+        Options options = new OptionsBuilder().parent(new CommandLineOptions(jmhArgs)).include(include)
+                .resultFormat(ResultFormatType.JSON).result(resultFile).build();
+        new Runner(options).run();
+    }
+
+    /** Disallow instantiation. */
+    private BenchmarkRunner()
+    {
+    }
+}
@@ -0,0 +1,182 @@
+package io.opensphere.benchmarks.core.cache;
+
+import java.io.NotSerializableException;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import io.opensphere.core.cache.Cache;
+import io.opensphere.core.cache.CacheDeposit;
+import io.opensphere.core.cache.CacheException;
+import io.opensphere.core.cache.CacheModificationListener;
+import io.opensphere.core.cache.DefaultCacheDeposit;
+import io.opensphere.core.cache.accessor.PropertyAccessor;
+import io.opensphere.core.cache.accessor.SerializableAccessor;
+import io.opensphere.core.cache.accessor.TimeSpanAccessor;
+import io.opensphere.core.cache.util.PropertyDescriptor;
+import io.opensphere.core.data.util.DataModelCategory;
+import io.opensphere.core.model.time.TimeSpan;
+import io.opensphere.core.util.collections.New;
+
+/**
+ * A simple model deposited into the persistent caches by the benchmarks. Each
+ * record has a unique string key and a one-minute time span.
+ */
+public final class CacheBenchmarkRecord
+{
+    /** The category the records are deposited under. */
+    public static final DataModelCategory CATEGORY = new DataModelCategory("benchmark", "benchmark.family", "benchmark.category");
+
+    /** The key property. */
+    public static final PropertyDescriptor<String> KEY_PROPERTY = PropertyDescriptor.create("key", String.class);
+
+    /** The milliseconds between consecutive record start times. */
+    public static final long TIME_STEP_MS = 1000L;
+
+    /** The duration of each record. */
+    private static final long DURATION_MS = 60000L;
+
+    /** The expiration for deposits; far enough out to never expire. */
+    private static final Date EXPIRATION = new Date(Long.MAX_VALUE / 2);
+
+    /** The key. */
+    private final String myKey;
+
+    /** The time span. */
+    private final TimeSpan myTimeSpan;
+
+    /**
+     * Create the accessors for the given record range.
+     *
+     * @param extent The time extent of the records.
+     * @return The accessors.
+     */
+    public static Collection<PropertyAccessor<CacheBenchmarkRecord, ?>> createAccessors(TimeSpan extent)
+    {
+        Collection<PropertyAccessor<CacheBenchmarkRecord, ?>> accessors = New.list(2);
+        accessors.add(new SerializableAccessor<CacheBenchmarkRecord, String>(KEY_PROPERTY)
+        {
+            @Override
+            public String access(CacheBenchmarkRecord input)
+            {
+                return input.getKey();
+            }
+        });
+        accessors.add(new TimeSpanAccessor<CacheBenchmarkRecord>(extent)
+        {
+            @Override
+            public TimeSpan access(CacheBenchmarkRecord input)
+            {
+                return input.getTimeSpan();
+            }
+        });
+        return accessors;
+    }
+
+    /**
+     * Create records numbered {@code first} (inclusive) to {@code last}
+     * (exclusive).
+     *
+     * @param first The first record number.
+     * @param last The last record number.
+     * @return The records.
+     */
+    public static List<CacheBenchmarkRecord> createRecords(int first, int last)
+    {
+        List<CacheBenchmarkRecord> records = New.list(last - first);
+        for (int index = first; index < last; ++index)
+        {
+            records.add(new CacheBenchmarkRecord(index));
+        }
+        return records;
+    }
+
+    /**
+     * Deposit {@code count} records into a cache in chunks.
+     *
+     * @param cache The cache.
+     * @param count The number of records.
+     * @param chunkSize The number of records per deposit.
+     * @return The ids of the deposited records.
+     * @throws CacheException If the cache fails.
+     * @throws NotSerializableException If a value cannot be serialized.
+     */
+    public static long[] fill(Cache cache, int count, int chunkSize) throws CacheException, NotSerializableException
+    {
+        long[] ids = new long[count];
+        Collection<PropertyAccessor<CacheBenchmarkRecord, ?>> accessors = createAccessors(getExtent(count));
+        for (int first = 0; first < count; first += chunkSize)
+        {
+            int last = Math.min(count, first + chunkSize);
+            long[] chunkIds = cache.put(newDeposit(createRecords(first, last), accessors), (CacheModificationListener)null);
+            System.arraycopy(chunkIds, 0, ids, first, chunkIds.length);
+        }
+        return ids;
+    }
+
+    /**
+     * Get the time extent covering {@code count} records.
+     *
+     * @param count The number of records.
+     * @return The extent.
+     */
+    public static TimeSpan getExtent(int count)
+    {
+        return TimeSpan.get(0L, count * TIME_STEP_MS + DURATION_MS);
+    }
+
+    /**
+     * Get the key for a record number.
+     *
+     * @param index The record number.
+     * @return The key.
+     */
+    public static String getKey(int index)
+    {
+        return "key-" + index;
+    }
+
+    /**
+     * Create a deposit for some records.
+     *
+     * @param records The records.
+     * @param accessors The accessors.
+     * @return The deposit.
+     */
+    public static CacheDeposit<CacheBenchmarkRecord> newDeposit(Collection<CacheBenchmarkRecord> records,
+            Collection<PropertyAccessor<CacheBenchmarkRecord, ?>> accessors)
+    {
+        return new DefaultCacheDeposit<>(CATEGORY, accessors, records, true, EXPIRATION, true);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param index The record number.
+     */
+    public CacheBenchmarkRecord(int index)
+    {
+        myKey = getKey(index);
+        myTimeSpan = TimeSpan.get(index * TIME_STEP_MS, index * TIME_STEP_MS + DURATION_MS);
+    }
+
+    /**
+     * Get the key.
+     *
+     * @return The key.
+     */
+    public String getKey()
+    {
+        return myKey;
+    }
+
+    /**
+     * Get the time span.
+     *
+     * @return The time span.
+     */
+    public TimeSpan getTimeSpan()
+    {
+        return myTimeSpan;
+    }
+}
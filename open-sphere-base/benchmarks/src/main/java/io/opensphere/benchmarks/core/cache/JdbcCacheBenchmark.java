@@ -0,0 +1,192 @@
+package io.opensphere.benchmarks.core.cache;
+
+import java.io.NotSerializableException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import io.opensphere.auxiliary.cache.jdbc.H2CacheImpl;
+import io.opensphere.benchmarks.BenchmarkData;
+import io.opensphere.core.cache.CacheException;
+import io.opensphere.core.cache.CacheModificationListener;
+import io.opensphere.core.cache.PropertyValueMap;
+import io.opensphere.core.cache.accessor.PropertyAccessor;
+import io.opensphere.core.cache.accessor.TimeSpanAccessor;
+import io.opensphere.core.cache.jdbc.JdbcCacheImpl;
+import io.opensphere.core.cache.matcher.PropertyMatcher;
+import io.opensphere.core.cache.matcher.StringPropertyMatcher;
+import io.opensphere.core.cache.matcher.TimeSpanMatcher;
+import io.opensphere.core.data.util.OrderSpecifier;
+import io.opensphere.core.model.time.TimeSpan;
+
+/**
+ * Benchmarks for the {@link JdbcCacheImpl} deposit, query and retrieval paths,
+ * using the in-memory H2 implementation so that disk speed does not dominate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx12g" })
+public class JdbcCacheBenchmark
+{
+    /** The number of records deposited per fill chunk. */
+    private static final int FILL_CHUNK_SIZE = 50000;
+
+    /** The number of records returned by the time query. */
+    private static final int TIME_QUERY_RECORDS = 1000;
+
+    /** The number of records in the cache before measurement. */
+    @Param({ "10000", "1000000", "10000000" })
+    private int myElementCount;
+
+    /** The accessors for deposits. */
+    private Collection<PropertyAccessor<CacheBenchmarkRecord, ?>> myAccessors;
+
+    /** The cache under test. */
+    private H2CacheImpl myCache;
+
+    /** The ids deposited by the deposit benchmark during the current iteration. */
+    private final TLongArrayList myDepositedIds = new TLongArrayList();
+
+    /** The records deposited by the deposit benchmark. */
+    private List<CacheBenchmarkRecord> myDepositRecords;
+
+    /** Random batches of ids to look up. */
+    private long[][] myLookupBatches;
+
+    /** Index of the next lookup batch. */
+    private int myNextLookup;
+
+    /** Random generator for query parameters. */
+    private Random myRandom;
+
+    /**
+     * Create and fill the database.
+     *
+     * @throws ClassNotFoundException If the H2 driver is missing.
+     * @throws CacheException If the cache fails.
+     * @throws NotSerializableException If a value cannot be serialized.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws ClassNotFoundException, CacheException, NotSerializableException
+    {
+        myCache = new H2CacheImpl("mem:jdbcCacheBenchmark" + myElementCount, -1, null);
+        myCache.initialize(-1L);
+
+        long[] ids = CacheBenchmarkRecord.fill(myCache, myElementCount, FILL_CHUNK_SIZE);
+        myLookupBatches = BenchmarkData.createRandomBatches(ids, BenchmarkData.LOOKUP_BATCH_COUNT, BenchmarkData.BATCH_SIZE);
+        myAccessors = CacheBenchmarkRecord.createAccessors(CacheBenchmarkRecord.getExtent(myElementCount));
+        myDepositRecords = CacheBenchmarkRecord.createRecords(0, BenchmarkData.BATCH_SIZE);
+        myRandom = BenchmarkData.newRandom();
+    }
+
+    /**
+     * Remove the records deposited during the iteration, so that every
+     * iteration measures a database of the same size.
+     */
+    @TearDown(Level.Iteration)
+    public void removeDeposited()
+    {
+        myCache.clear(myDepositedIds.toArray());
+        myDepositedIds.clear();
+    }
+
+    /**
+     * Close the database.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        myCache.clear();
+        myCache.close();
+    }
+
+    /**
+     * Deposit one batch of new records.
+     *
+     * @return The new ids.
+     * @throws CacheException If the cache fails.
+     * @throws NotSerializableException If a value cannot be serialized.
+     */
+    @Benchmark
+    public long[] deposit() throws CacheException, NotSerializableException
+    {
+        long[] ids = myCache.put(CacheBenchmarkRecord.newDeposit(myDepositRecords, myAccessors), (CacheModificationListener)null);
+        myDepositedIds.add(ids);
+        return ids;
+    }
+
+    /**
+     * Get the values for one random batch of ids.
+     *
+     * @return The result map.
+     * @throws CacheException If the cache fails.
+     */
+    @Benchmark
+    public PropertyValueMap getValues() throws CacheException
+    {
+        long[] batch = myLookupBatches[myNextLookup];
+        myNextLookup = (myNextLookup + 1) % myLookupBatches.length;
+        PropertyValueMap resultMap = new PropertyValueMap();
+        resultMap.addResultList(CacheBenchmarkRecord.KEY_PROPERTY, batch.length);
+        resultMap.addResultList(TimeSpanAccessor.PROPERTY_DESCRIPTOR, batch.length);
+        myCache.getValues(batch, resultMap, new TIntArrayList());
+        return resultMap;
+    }
+
+    /**
+     * Query for a single record by its key.
+     *
+     * @return The matching ids.
+     * @throws CacheException If the cache fails.
+     * @throws NotSerializableException If a parameter cannot be serialized.
+     */
+    @Benchmark
+    public long[] queryByKey() throws CacheException, NotSerializableException
+    {
+        String key = CacheBenchmarkRecord.getKey(myRandom.nextInt(myElementCount));
+        List<? extends PropertyMatcher<?>> parameters = Collections
+                .singletonList(new StringPropertyMatcher(CacheBenchmarkRecord.KEY_PROPERTY, key));
+        return myCache.getIds(CacheBenchmarkRecord.CATEGORY, parameters, Collections.<OrderSpecifier>emptyList(), 0,
+                Integer.MAX_VALUE);
+    }
+
+    /**
+     * Query for the records overlapping a random time window.
+     *
+     * @return The matching ids.
+     * @throws CacheException If the cache fails.
+     * @throws NotSerializableException If a parameter cannot be serialized.
+     */
+    @Benchmark
+    public long[] queryByTime() throws CacheException, NotSerializableException
+    {
+        int window = Math.min(TIME_QUERY_RECORDS, myElementCount);
+        long start = myRandom.nextInt(myElementCount - window + 1) * CacheBenchmarkRecord.TIME_STEP_MS;
+        TimeSpan span = TimeSpan.get(start, start + window * CacheBenchmarkRecord.TIME_STEP_MS);
+        List<? extends PropertyMatcher<?>> parameters = Collections
+                .singletonList(new TimeSpanMatcher(TimeSpanAccessor.TIME_PROPERTY_NAME, span));
+        return myCache.getIds(CacheBenchmarkRecord.CATEGORY, parameters, Collections.<OrderSpecifier>emptyList(), 0,
+                Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,143 @@
+package io.opensphere.benchmarks.core.cache;
+
+import java.io.NotSerializableException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gnu.trove.list.array.TIntArrayList;
+import io.opensphere.benchmarks.BenchmarkData;
+import io.opensphere.core.cache.CacheException;
+import io.opensphere.core.cache.PropertyValueMap;
+import io.opensphere.core.cache.accessor.PropertyAccessor;
+import io.opensphere.core.cache.accessor.UnserializableAccessor;
+import io.opensphere.core.cache.mem.MemoryCache;
+import io.opensphere.core.cache.util.PropertyDescriptor;
+import io.opensphere.core.util.collections.New;
+
+/**
+ * Benchmarks for the {@link MemoryCache} deposit and retrieval paths. The
+ * cache is used without a nested cache, so only the in-memory structures are
+ * measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx12g" })
+public class MemoryCacheBenchmark
+{
+    /** The property stored in the cache. */
+    private static final PropertyDescriptor<String> PROPERTY = PropertyDescriptor.create("value", String.class);
+
+    /** The accessor used to deposit the property. */
+    private static final Collection<? extends PropertyAccessor<? super String, ?>> ACCESSORS = Collections
+            .singleton(UnserializableAccessor.getHomogeneousAccessor(PROPERTY));
+
+    /** The number of elements in the cache. */
+    @Param({ "10000", "1000000", "10000000" })
+    private int myElementCount;
+
+    /** The cache under test. */
+    private MemoryCache myCache;
+
+    /** Batches of ids to deposit, in order. */
+    private long[][] myDepositBatches;
+
+    /** The values matching {@link #myDepositBatches}. */
+    private List<List<String>> myDepositValues;
+
+    /** Random batches of ids to look up. */
+    private long[][] myLookupBatches;
+
+    /** Index of the next deposit batch. */
+    private int myNextDeposit;
+
+    /** Index of the next lookup batch. */
+    private int myNextLookup;
+
+    /**
+     * Fill the cache.
+     *
+     * @throws CacheException If the cache fails.
+     * @throws NotSerializableException If a value cannot be serialized.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws CacheException, NotSerializableException
+    {
+        myCache = new MemoryCache();
+        long[] ids = BenchmarkData.createCombinedIds(myElementCount);
+        myDepositBatches = BenchmarkData.createSequentialBatches(ids, BenchmarkData.BATCH_SIZE);
+        myDepositValues = New.list(myDepositBatches.length);
+        for (long[] batch : myDepositBatches)
+        {
+            List<String> values = New.list(batch.length);
+            for (long id : batch)
+            {
+                values.add("value-" + id);
+            }
+            myDepositValues.add(values);
+            myCache.updateValues(batch, values, ACCESSORS, null, null);
+        }
+        myLookupBatches = BenchmarkData.createRandomBatches(ids, BenchmarkData.LOOKUP_BATCH_COUNT, BenchmarkData.BATCH_SIZE);
+    }
+
+    /**
+     * Release the cache.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        myCache.clear();
+        myCache = null;
+    }
+
+    /**
+     * Deposit (overwrite) one batch of values.
+     *
+     * @return The batch that was deposited.
+     * @throws CacheException If the cache fails.
+     * @throws NotSerializableException If a value cannot be serialized.
+     */
+    @Benchmark
+    public long[] deposit() throws CacheException, NotSerializableException
+    {
+        int index = myNextDeposit;
+        myNextDeposit = (index + 1) % myDepositBatches.length;
+        myCache.updateValues(myDepositBatches[index], myDepositValues.get(index), ACCESSORS, null, null);
+        return myDepositBatches[index];
+    }
+
+    /**
+     * Get the values for one random batch of ids.
+     *
+     * @return The result map.
+     * @throws CacheException If the cache fails.
+     */
+    @Benchmark
+    public PropertyValueMap getValues() throws CacheException
+    {
+        long[] batch = myLookupBatches[myNextLookup];
+        myNextLookup = (myNextLookup + 1) % myLookupBatches.length;
+        PropertyValueMap resultMap = new PropertyValueMap();
+        resultMap.addResultList(PROPERTY, batch.length);
+        myCache.getValues(batch, resultMap, new TIntArrayList());
+        return resultMap;
+    }
+}
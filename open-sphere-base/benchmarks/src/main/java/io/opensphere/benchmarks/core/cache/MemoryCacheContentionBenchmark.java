@@ -0,0 +1,167 @@
+package io.opensphere.benchmarks.core.cache;
+
+import java.io.NotSerializableException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gnu.trove.list.array.TIntArrayList;
+import io.opensphere.benchmarks.BenchmarkData;
+import io.opensphere.core.cache.CacheException;
+import io.opensphere.core.cache.PropertyValueMap;
+import io.opensphere.core.cache.accessor.PropertyAccessor;
+import io.opensphere.core.cache.accessor.UnserializableAccessor;
+import io.opensphere.core.cache.mem.MemoryCache;
+import io.opensphere.core.cache.util.PropertyDescriptor;
+import io.opensphere.core.util.collections.New;
+
+/**
+ * Multi-threaded benchmarks for the {@link MemoryCache}, measuring how
+ * retrieval and deposit throughput scale when many threads share one cache.
+ * Run with {@code -t} or {@code -tg} to vary the thread counts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx12g" })
+public class MemoryCacheContentionBenchmark
+{
+    /** The property stored in the cache. */
+    private static final PropertyDescriptor<String> PROPERTY = PropertyDescriptor.create("value", String.class);
+
+    /** The accessor used to deposit the property. */
+    private static final Collection<? extends PropertyAccessor<? super String, ?>> ACCESSORS = Collections
+            .singleton(UnserializableAccessor.getHomogeneousAccessor(PROPERTY));
+
+    /** The number of elements in the cache. */
+    @Param({ "1000000" })
+    private int myElementCount;
+
+    /** The cache under test. */
+    private MemoryCache myCache;
+
+    /** Batches of ids to deposit. */
+    private long[][] myDepositBatches;
+
+    /** The values matching {@link #myDepositBatches}. */
+    private List<List<String>> myDepositValues;
+
+    /** Random batches of ids to look up. */
+    private long[][] myLookupBatches;
+
+    /**
+     * Fill the cache.
+     *
+     * @throws CacheException If the cache fails.
+     * @throws NotSerializableException If a value cannot be serialized.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws CacheException, NotSerializableException
+    {
+        myCache = new MemoryCache();
+        long[] ids = BenchmarkData.createCombinedIds(myElementCount);
+        myDepositBatches = BenchmarkData.createSequentialBatches(ids, BenchmarkData.BATCH_SIZE);
+        myDepositValues = New.list(myDepositBatches.length);
+        for (long[] batch : myDepositBatches)
+        {
+            List<String> values = New.list(batch.length);
+            for (long id : batch)
+            {
+                values.add("value-" + id);
+            }
+            myDepositValues.add(values);
+            myCache.updateValues(batch, values, ACCESSORS, null, null);
+        }
+        myLookupBatches = BenchmarkData.createRandomBatches(ids, BenchmarkData.LOOKUP_BATCH_COUNT, BenchmarkData.BATCH_SIZE);
+    }
+
+    /**
+     * Release the cache.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        myCache.clear();
+        myCache = null;
+    }
+
+    /**
+     * Readers sharing the cache with a writer.
+     *
+     * @return The result map.
+     * @throws CacheException If the cache fails.
+     */
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public PropertyValueMap mixedRead() throws CacheException
+    {
+        return read();
+    }
+
+    /**
+     * A writer sharing the cache with readers.
+     *
+     * @return The batch that was deposited.
+     * @throws CacheException If the cache fails.
+     * @throws NotSerializableException If a value cannot be serialized.
+     */
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public long[] mixedWrite() throws CacheException, NotSerializableException
+    {
+        int index = ThreadLocalRandom.current().nextInt(myDepositBatches.length);
+        myCache.updateValues(myDepositBatches[index], myDepositValues.get(index), ACCESSORS, null, null);
+        return myDepositBatches[index];
+    }
+
+    /**
+     * Readers on every available processor, with no writers.
+     *
+     * @return The result map.
+     * @throws CacheException If the cache fails.
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public PropertyValueMap readOnly() throws CacheException
+    {
+        return read();
+    }
+
+    /**
+     * Get the values for one random lookup batch.
+     *
+     * @return The result map.
+     * @throws CacheException If the cache fails.
+     */
+    private PropertyValueMap read() throws CacheException
+    {
+        long[] batch = myLookupBatches[ThreadLocalRandom.current().nextInt(myLookupBatches.length)];
+        PropertyValueMap resultMap = new PropertyValueMap();
+        resultMap.addResultList(PROPERTY, batch.length);
+        myCache.getValues(batch, resultMap, new TIntArrayList());
+        return resultMap;
+    }
+}
@@ -0,0 +1,152 @@
+package io.opensphere.benchmarks.core.cache;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+import io.opensphere.core.cache.jdbc.codec.ValueCodecRegistry;
+import io.opensphere.core.model.Altitude;
+import io.opensphere.core.model.LatLonAlt;
+import io.opensphere.core.model.time.TimeSpan;
+import io.opensphere.core.util.lang.Serialization;
+
+/**
+ * Compares the cache value codecs with Java serialization for the types that
+ * have built-in codecs. The encoded sizes are printed during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValueCodecBenchmark
+{
+    /** The kind of value to encode. */
+    @Param({ "timeSpan", "latLonAlt", "geometry", "doubleArray" })
+    private String myValueKind;
+
+    /** The value encoded with its codec. */
+    private byte[] myCodecBytes;
+
+    /** The value encoded with Java serialization. */
+    private byte[] mySerializedBytes;
+
+    /** The property type the value is stored as. */
+    private Class<?> myType;
+
+    /** The value. */
+    private Serializable myValue;
+
+    /**
+     * Create the value and print the encoded sizes.
+     *
+     * @throws IOException If the value cannot be encoded.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        switch (myValueKind)
+        {
+            case "timeSpan":
+                myType = TimeSpan.class;
+                myValue = TimeSpan.get(1500000000000L, 1500000060000L);
+                break;
+            case "latLonAlt":
+                myType = LatLonAlt.class;
+                myValue = LatLonAlt.createFromDegreesMeters(38.9, -77.0, 120., Altitude.ReferenceLevel.TERRAIN);
+                break;
+            case "geometry":
+                Coordinate[] coords = new Coordinate[32];
+                for (int index = 0; index < coords.length; ++index)
+                {
+                    coords[index] = new Coordinate(index * .1, index * .2);
+                }
+                myType = Geometry.class;
+                myValue = new GeometryFactory().createLineString(coords);
+                break;
+            case "doubleArray":
+                double[] arr = new double[256];
+                for (int index = 0; index < arr.length; ++index)
+                {
+                    arr[index] = index * .5;
+                }
+                myType = double[].class;
+                myValue = arr;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown value kind: " + myValueKind);
+        }
+        myCodecBytes = ValueCodecRegistry.getInstance().encode(myType, myValue);
+        mySerializedBytes = Serialization.serialize(myValue);
+        System.out.println(myValueKind + ": codec bytes " + myCodecBytes.length + ", serialized bytes "
+                + mySerializedBytes.length);
+    }
+
+    /**
+     * Decode the value with its codec.
+     *
+     * @return The value.
+     * @throws IOException If the value cannot be decoded.
+     * @throws ClassNotFoundException If a class is missing.
+     */
+    @Benchmark
+    public Serializable codecDecode() throws IOException, ClassNotFoundException
+    {
+        return ValueCodecRegistry.getInstance().decode(myCodecBytes);
+    }
+
+    /**
+     * Encode the value with its codec.
+     *
+     * @return The bytes.
+     * @throws IOException If the value cannot be encoded.
+     */
+    @Benchmark
+    public byte[] codecEncode() throws IOException
+    {
+        return ValueCodecRegistry.getInstance().encode(myType, myValue);
+    }
+
+    /**
+     * Decode the value with Java serialization.
+     *
+     * @return The value.
+     * @throws IOException If the value cannot be decoded.
+     * @throws ClassNotFoundException If a class is missing.
+     */
+    @Benchmark
+    public Serializable serializationDecode() throws IOException, ClassNotFoundException
+    {
+        return Serialization.deserialize(mySerializedBytes);
+    }
+
+    /**
+     * Encode the value with Java serialization.
+     *
+     * @return The bytes.
+     * @throws IOException If the value cannot be encoded.
+     */
+    @Benchmark
+    public byte[] serializationEncode() throws IOException
+    {
+        return Serialization.serialize(myValue);
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Benchmarks for the core caches.
+ */
+package io.opensphere.benchmarks.core.cache;
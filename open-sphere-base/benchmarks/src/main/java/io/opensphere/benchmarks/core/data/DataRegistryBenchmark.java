@@ -0,0 +1,171 @@
+package io.opensphere.benchmarks.core.data;
+
+import java.io.NotSerializableException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gnu.trove.list.array.TLongArrayList;
+import io.opensphere.auxiliary.cache.jdbc.H2CacheImpl;
+import io.opensphere.benchmarks.BenchmarkData;
+import io.opensphere.benchmarks.core.cache.CacheBenchmarkRecord;
+import io.opensphere.core.cache.CacheException;
+import io.opensphere.core.cache.accessor.PropertyAccessor;
+import io.opensphere.core.cache.matcher.StringPropertyMatcher;
+import io.opensphere.core.data.DataRegistryImpl;
+import io.opensphere.core.data.util.SimpleQuery;
+
+/**
+ * Benchmarks for the {@link DataRegistryImpl} deposit and local query paths,
+ * backed by the memory cache over an in-memory H2 cache as in the application.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx12g" })
+public class DataRegistryBenchmark
+{
+    /** The number of records deposited per fill chunk. */
+    private static final int FILL_CHUNK_SIZE = 50000;
+
+    /** The number of records in the registry before measurement. */
+    @Param({ "10000", "1000000", "10000000" })
+    private int myElementCount;
+
+    /** The accessors for deposits. */
+    private Collection<PropertyAccessor<CacheBenchmarkRecord, ?>> myAccessors;
+
+    /** The ids deposited by the deposit benchmark during the current iteration. */
+    private final TLongArrayList myDepositedIds = new TLongArrayList();
+
+    /** The records deposited by the deposit benchmark. */
+    private List<CacheBenchmarkRecord> myDepositRecords;
+
+    /** The executor for the registry's background tasks. */
+    private ExecutorService myExecutor;
+
+    /** Random batches of ids to look up. */
+    private long[][] myLookupBatches;
+
+    /** Index of the next lookup batch. */
+    private int myNextLookup;
+
+    /** Random generator for query parameters. */
+    private Random myRandom;
+
+    /** The registry under test. */
+    private DataRegistryImpl myRegistry;
+
+    /**
+     * Create and fill the registry.
+     *
+     * @throws ClassNotFoundException If the H2 driver is missing.
+     * @throws CacheException If the cache fails.
+     * @throws NotSerializableException If a value cannot be serialized.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws ClassNotFoundException, CacheException, NotSerializableException
+    {
+        H2CacheImpl cache = new H2CacheImpl("mem:dataRegistryBenchmark" + myElementCount, -1, null);
+        cache.initialize(-1L);
+        myExecutor = Executors.newFixedThreadPool(2);
+        myRegistry = new DataRegistryImpl(myExecutor, cache);
+
+        myAccessors = CacheBenchmarkRecord.createAccessors(CacheBenchmarkRecord.getExtent(myElementCount));
+        long[] ids = new long[myElementCount];
+        for (int first = 0; first < myElementCount; first += FILL_CHUNK_SIZE)
+        {
+            int last = Math.min(myElementCount, first + FILL_CHUNK_SIZE);
+            long[] chunkIds = myRegistry
+                    .addModels(CacheBenchmarkRecord.newDeposit(CacheBenchmarkRecord.createRecords(first, last), myAccessors));
+            System.arraycopy(chunkIds, 0, ids, first, chunkIds.length);
+        }
+
+        myLookupBatches = BenchmarkData.createRandomBatches(ids, BenchmarkData.LOOKUP_BATCH_COUNT, BenchmarkData.BATCH_SIZE);
+        myDepositRecords = CacheBenchmarkRecord.createRecords(0, BenchmarkData.BATCH_SIZE);
+        myRandom = BenchmarkData.newRandom();
+    }
+
+    /**
+     * Remove the records deposited during the iteration, so that every
+     * iteration measures a registry of the same size.
+     */
+    @TearDown(Level.Iteration)
+    public void removeDeposited()
+    {
+        myRegistry.removeModels(myDepositedIds.toArray());
+        myDepositedIds.clear();
+    }
+
+    /**
+     * Close the registry.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        myRegistry.close();
+        myExecutor.shutdownNow();
+    }
+
+    /**
+     * Deposit one batch of new models.
+     *
+     * @return The new ids.
+     */
+    @Benchmark
+    public long[] deposit()
+    {
+        long[] ids = myRegistry.addModels(CacheBenchmarkRecord.newDeposit(myDepositRecords, myAccessors));
+        myDepositedIds.add(ids);
+        return ids;
+    }
+
+    /**
+     * Retrieve the keys for one random batch of ids.
+     *
+     * @return The retrieved keys.
+     */
+    @Benchmark
+    public List<String> getValues()
+    {
+        long[] batch = myLookupBatches[myNextLookup];
+        myNextLookup = (myNextLookup + 1) % myLookupBatches.length;
+        SimpleQuery<String> query = new SimpleQuery<>(CacheBenchmarkRecord.CATEGORY, CacheBenchmarkRecord.KEY_PROPERTY);
+        myRegistry.performLocalQuery(batch, query);
+        return query.getResults();
+    }
+
+    /**
+     * Query for a single model by its key, retrieving the key.
+     *
+     * @return The retrieved keys.
+     */
+    @Benchmark
+    public List<String> queryByKey()
+    {
+        String key = CacheBenchmarkRecord.getKey(myRandom.nextInt(myElementCount));
+        SimpleQuery<String> query = new SimpleQuery<>(CacheBenchmarkRecord.CATEGORY, CacheBenchmarkRecord.KEY_PROPERTY,
+                new StringPropertyMatcher(CacheBenchmarkRecord.KEY_PROPERTY, key));
+        myRegistry.performLocalQuery(query);
+        return query.getResults();
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Benchmarks for the data registry.
+ */
+package io.opensphere.benchmarks.core.data;
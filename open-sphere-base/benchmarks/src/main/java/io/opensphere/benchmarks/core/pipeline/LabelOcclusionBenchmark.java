@@ -0,0 +1,126 @@
+package io.opensphere.benchmarks.core.pipeline;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.easymock.EasyMock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.opensphere.core.model.ScreenBoundingBox;
+import io.opensphere.core.model.ScreenPosition;
+import io.opensphere.core.pipeline.processor.LabelOcclusionManager;
+import io.opensphere.core.pipeline.processor.LabelProcessor;
+import io.opensphere.core.util.collections.New;
+
+/**
+ * Benchmarks for one declutter pass of the {@link LabelOcclusionManager} over
+ * labels spread over and around a 1920x1080 screen, compared with checking
+ * each label against every accepted label. These only use the CPU.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LabelOcclusionBenchmark
+{
+    /** The number of labels in a pass. */
+    @Param({ "5000", "50000" })
+    private int myLabelCount;
+
+    /** Whether the manager gives priority to the labels from the last pass. */
+    @Param({ "false", "true" })
+    private boolean myStable;
+
+    /** The label bounding boxes, in the order they are checked. */
+    private List<ScreenBoundingBox> myBoxes;
+
+    /** The manager under test. */
+    private LabelOcclusionManager myManager;
+
+    /** The processor that owns the labels. */
+    private LabelProcessor myProcessor;
+
+    /**
+     * Create the labels and the manager.
+     */
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        myProcessor = EasyMock.createMock(LabelProcessor.class);
+        myManager = new LabelOcclusionManager(myStable);
+
+        Random random = new Random(11);
+        myBoxes = New.list(myLabelCount);
+        for (int index = 0; index < myLabelCount; ++index)
+        {
+            double x = random.nextDouble() * 2200. - 140.;
+            double y = random.nextDouble() * 1200. - 60.;
+            double width = 4. + random.nextInt(24) * 6.;
+            double height = 8. + random.nextInt(3) * 4.;
+            myBoxes.add(new ScreenBoundingBox(new ScreenPosition(x, y), new ScreenPosition(x + width, y + height)));
+        }
+    }
+
+    /**
+     * Check every label with the manager, the way the label processor does
+     * for one frame.
+     *
+     * @return The number of labels that were not occluded.
+     */
+    @Benchmark
+    public int declutter()
+    {
+        int shown = 0;
+        for (ScreenBoundingBox box : myManager.prioritize(myProcessor, myBoxes))
+        {
+            if (!myManager.isOccluded(myProcessor, box, box))
+            {
+                ++shown;
+            }
+        }
+        myManager.reset(myProcessor);
+        return shown;
+    }
+
+    /**
+     * Check every label against every label accepted before it.
+     *
+     * @return The number of labels that were not occluded.
+     */
+    @Benchmark
+    public int bruteForce()
+    {
+        List<ScreenBoundingBox> accepted = New.list();
+        for (ScreenBoundingBox box : myBoxes)
+        {
+            boolean occluded = false;
+            for (ScreenBoundingBox other : accepted)
+            {
+                if (other.overlaps(box, 0.))
+                {
+                    occluded = true;
+                    break;
+                }
+            }
+            if (!occluded)
+            {
+                accepted.add(box);
+            }
+        }
+        return accepted.size();
+    }
+}
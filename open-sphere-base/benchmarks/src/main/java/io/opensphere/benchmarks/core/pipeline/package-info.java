@@ -0,0 +1,4 @@
+/**
+ * Benchmarks for the core rendering pipeline.
+ */
+package io.opensphere.benchmarks.core.pipeline;
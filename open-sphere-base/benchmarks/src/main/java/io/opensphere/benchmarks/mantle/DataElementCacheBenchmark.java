@@ -0,0 +1,256 @@
+package io.opensphere.benchmarks.mantle;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.easymock.EasyMock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.opensphere.benchmarks.BenchmarkData;
+import io.opensphere.core.MemoryManager;
+import io.opensphere.core.MemoryManager.Status;
+import io.opensphere.core.SystemToolbox;
+import io.opensphere.core.Toolbox;
+import io.opensphere.core.cache.CacheException;
+import io.opensphere.core.control.ui.MenuBarRegistry;
+import io.opensphere.core.control.ui.UIRegistry;
+import io.opensphere.core.datafilter.DataFilterRegistry;
+import io.opensphere.core.event.EventManager;
+import io.opensphere.core.metrics.impl.MetricsRegistryImpl;
+import io.opensphere.core.model.time.TimeSpan;
+import io.opensphere.core.util.collections.New;
+import io.opensphere.mantle.data.DataTypeInfo;
+import io.opensphere.mantle.data.cache.CacheConfiguration;
+import io.opensphere.mantle.data.cache.DirectAccessRetriever;
+import io.opensphere.mantle.data.cache.impl.DataElementCacheImpl;
+import io.opensphere.mantle.data.dynmeta.impl.DynamicMetadataManagerImpl;
+import io.opensphere.mantle.data.element.DataElement;
+import io.opensphere.mantle.data.element.impl.DefaultDataElement;
+import io.opensphere.mantle.data.element.impl.MDILinkedMetaDataProvider;
+import io.opensphere.mantle.data.impl.DefaultMetaDataInfo;
+import io.opensphere.mantle.util.dynenum.impl.DynamicEnumerationRegistryImpl;
+
+/**
+ * Benchmarks for {@link DataElementCacheImpl} element insertion and
+ * retrieval. The toolbox is mocked; only the cache itself is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx16g" })
+public class DataElementCacheBenchmark
+{
+    /** The layer type key. */
+    private static final String TYPE_KEY = "benchmark::layer";
+
+    /** The cache under test. */
+    private DataElementCacheImpl myCache;
+
+    /** The number of elements in the cache before measurement. */
+    @Param({ "10000", "1000000", "10000000" })
+    private int myElementCount;
+
+    /** The ids inserted by the insert benchmark during the current iteration. */
+    private final List<Long> myInsertedIds = New.list();
+
+    /** The elements inserted by the insert benchmark. */
+    private List<DataElement> myInsertElements;
+
+    /** Random batches of ids to look up. */
+    private long[][] myLookupBatches;
+
+    /** Index of the next lookup batch. */
+    private int myNextLookup;
+
+    /** The retriever used for the direct-access benchmark. */
+    private DirectAccessRetriever myRetriever;
+
+    /** The layer the elements belong to. */
+    private DataTypeInfo myType;
+
+    /**
+     * Create the elements for a range of indices.
+     *
+     * @param type The layer.
+     * @param first The first index (inclusive).
+     * @param last The last index (exclusive).
+     * @return The elements.
+     */
+    private static List<DataElement> createElements(DataTypeInfo type, int first, int last)
+    {
+        List<DataElement> elements = New.list(last - first);
+        for (int index = first; index < last; ++index)
+        {
+            TimeSpan span = TimeSpan.get(index * 1000L, index * 1000L + 60000L);
+            List<Object> values = Arrays.<Object>asList("name-" + index, Double.valueOf(index * .5), Integer.valueOf(index % 97));
+            elements.add(new DefaultDataElement(index, span, type, new MDILinkedMetaDataProvider(type.getMetaDataInfo(), values)));
+        }
+        return elements;
+    }
+
+    /**
+     * Create a toolbox with just enough behavior for the cache.
+     *
+     * @return The toolbox.
+     */
+    private static Toolbox createToolbox()
+    {
+        MemoryManager memoryManager = EasyMock.createNiceMock(MemoryManager.class);
+        EasyMock.expect(memoryManager.getMemoryStatus()).andReturn(Status.NOMINAL).anyTimes();
+        SystemToolbox systemToolbox = EasyMock.createNiceMock(SystemToolbox.class);
+        EasyMock.expect(systemToolbox.getMemoryManager()).andReturn(memoryManager).anyTimes();
+        MenuBarRegistry menuBarRegistry = EasyMock.createNiceMock(MenuBarRegistry.class);
+        UIRegistry uiRegistry = EasyMock.createNiceMock(UIRegistry.class);
+        EasyMock.expect(uiRegistry.getMenuBarRegistry()).andReturn(menuBarRegistry).anyTimes();
+
+        Toolbox toolbox = EasyMock.createNiceMock(Toolbox.class);
+        EasyMock.expect(toolbox.getMetricsRegistry()).andReturn(new MetricsRegistryImpl()).anyTimes();
+        EasyMock.expect(toolbox.getSystemToolbox()).andReturn(systemToolbox).anyTimes();
+        EasyMock.expect(toolbox.getUIRegistry()).andReturn(uiRegistry).anyTimes();
+        EasyMock.expect(toolbox.getDataFilterRegistry()).andReturn(EasyMock.createNiceMock(DataFilterRegistry.class))
+                .anyTimes();
+        EasyMock.expect(toolbox.getEventManager()).andReturn(EasyMock.createNiceMock(EventManager.class)).anyTimes();
+
+        EasyMock.replay(memoryManager, systemToolbox, menuBarRegistry, uiRegistry, toolbox);
+        return toolbox;
+    }
+
+    /**
+     * Create a layer with a three-column schema.
+     *
+     * @return The layer.
+     */
+    private static DataTypeInfo createType()
+    {
+        DefaultMetaDataInfo metaDataInfo = new DefaultMetaDataInfo();
+        metaDataInfo.addKey("NAME", String.class, DataElementCacheBenchmark.class);
+        metaDataInfo.addKey("VALUE", Double.class, DataElementCacheBenchmark.class);
+        metaDataInfo.addKey("CODE", Integer.class, DataElementCacheBenchmark.class);
+
+        DataTypeInfo type = EasyMock.createNiceMock(DataTypeInfo.class);
+        EasyMock.expect(type.getTypeKey()).andReturn(TYPE_KEY).anyTimes();
+        EasyMock.expect(type.getMetaDataInfo()).andReturn(metaDataInfo).anyTimes();
+        EasyMock.replay(type);
+        return type;
+    }
+
+    /**
+     * Create and fill the cache.
+     *
+     * @throws CacheException If the cache fails.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws CacheException
+    {
+        Toolbox toolbox = createToolbox();
+        myType = createType();
+        myCache = new DataElementCacheImpl(toolbox, CacheConfiguration.createUnlimitedInMemoryConfiguration(false),
+                new DynamicMetadataManagerImpl(toolbox), new DynamicEnumerationRegistryImpl());
+        myCache.addDataType(myType);
+
+        int blockSize = myCache.getPreferredInsertBlockSize();
+        long[] ids = new long[myElementCount];
+        for (int first = 0; first < myElementCount; first += blockSize)
+        {
+            int last = Math.min(myElementCount, first + blockSize);
+            long[] blockIds = myCache.insert(TYPE_KEY, TYPE_KEY, createElements(myType, first, last));
+            System.arraycopy(blockIds, 0, ids, first, blockIds.length);
+        }
+
+        myLookupBatches = BenchmarkData.createRandomBatches(ids, BenchmarkData.LOOKUP_BATCH_COUNT, BenchmarkData.BATCH_SIZE);
+        myInsertElements = createElements(myType, 0, BenchmarkData.BATCH_SIZE);
+        myRetriever = myCache.getDirectAccessRetriever(myType);
+    }
+
+    /**
+     * Remove the elements inserted during the iteration, so that every
+     * iteration measures a cache of the same size.
+     */
+    @TearDown(Level.Iteration)
+    public void removeInserted()
+    {
+        myCache.remove(myInsertedIds, false);
+        myInsertedIds.clear();
+    }
+
+    /**
+     * Release the cache.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        myRetriever.close();
+        myCache.removeDataType(myType);
+    }
+
+    /**
+     * Insert one batch of new elements.
+     *
+     * @return The new ids.
+     * @throws CacheException If the cache fails.
+     */
+    @Benchmark
+    public long[] insert() throws CacheException
+    {
+        long[] ids = myCache.insert(TYPE_KEY, TYPE_KEY, myInsertElements);
+        for (long id : ids)
+        {
+            myInsertedIds.add(Long.valueOf(id));
+        }
+        return ids;
+    }
+
+    /**
+     * Retrieve the metadata for one random batch of ids through the direct
+     * access retriever, as the list tool does.
+     *
+     * @param blackhole Consumes the values.
+     */
+    @Benchmark
+    public void retrieveMetaData(Blackhole blackhole)
+    {
+        for (long id : nextBatch())
+        {
+            blackhole.consume(myRetriever.getMetaData(id));
+        }
+    }
+
+    /**
+     * Retrieve the time spans for one random batch of ids.
+     *
+     * @return The time spans.
+     */
+    @Benchmark
+    public List<TimeSpan> retrieveTimeSpans()
+    {
+        return myCache.getTimeSpans(nextBatch());
+    }
+
+    /**
+     * Get the next lookup batch.
+     *
+     * @return The batch.
+     */
+    private long[] nextBatch()
+    {
+        long[] batch = myLookupBatches[myNextLookup];
+        myNextLookup = (myNextLookup + 1) % myLookupBatches.length;
+        return batch;
+    }
+}
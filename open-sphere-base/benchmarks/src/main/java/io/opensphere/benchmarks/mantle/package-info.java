@@ -0,0 +1,4 @@
+/**
+ * Benchmarks for the mantle data element cache.
+ */
+package io.opensphere.benchmarks.mantle;
@@ -0,0 +1,4 @@
+/**
+ * JMH benchmarks and the runner that writes their results.
+ */
+package io.opensphere.benchmarks;
@@ -150,7 +150,7 @@ abstract class ToolboxImpl implements Toolbox
         executorManager.setMemoryManager(mySystemToolbox.getMemoryManager());
         mySystemToolbox.getMemoryManager().addMemoryListener(myMemoryListener);
         myStatisticsManager = new StatisticsManagerImpl();
-        myEventManager = new EventManagerImpl();
+        myEventManager = new EventManagerImpl(myRegistryManager.getMetricsRegistry());
         myTimeManager = new TimeManagerImpl();
         myModuleStateManager = new ModuleStateManagerImpl(myRegistryManager.getPreferencesRegistry());
 
@@ -0,0 +1,535 @@
+package io.opensphere.core.cache.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import io.opensphere.core.cache.CacheException;
+import io.opensphere.core.cache.jdbc.type.ParameterBuffer;
+import io.opensphere.core.util.lang.NamedThreadFactory;
+
+/**
+ * Inserts rows into a newly created data table using JDBC batches. The rows
+ * are given consecutive data ids starting at 1, so no generated keys have to
+ * be read back; this is only valid for a table that nothing else inserts into
+ * until the insert is complete.
+ * <p>
+ * For large inputs the property values are translated (and serialized) on a
+ * separate thread into {@link ParameterBuffer}s, which are handed to the
+ * database thread through a bounded queue, so serialization overlaps with the
+ * database work. If the connection is in
+ * auto-commit mode, the rows are committed every
+ * {@code opensphere.db.insertCommitSize} rows rather than one at a time.
+ *
+ * @param <T> The type of the input objects.
+ */
+class BulkInserter<T>
+{
+    /** The number of rows in each JDBC batch. */
+    static final int BATCH_SIZE = Math.max(1, Integer.getInteger("opensphere.db.insertBatchSize", 500).intValue());
+
+    /** The number of rows between commits. */
+    static final int COMMIT_SIZE = Math.max(1, Integer.getInteger("opensphere.db.insertCommitSize", 20000).intValue());
+
+    /**
+     * Inputs with fewer rows than this are translated on the database thread.
+     */
+    static final int PIPELINE_THRESHOLD = Integer.getInteger("opensphere.db.insertPipelineThreshold", 2000).intValue();
+
+    /** Logger reference. */
+    private static final Logger LOGGER = Logger.getLogger(BulkInserter.class);
+
+    /** The number of translated batches that may wait for the database. */
+    private static final int QUEUE_CAPACITY = 4;
+
+    /** The binder that sets the values for an input object. */
+    private final RowBinder<? super T> myBinder;
+
+    /** The cache utilities. */
+    private final CacheUtilities myCacheUtilities;
+
+    /** If this inserter commits the rows. */
+    private boolean myCommitting;
+
+    /** The database connection. */
+    private final Connection myConnection;
+
+    /** The number of rows added so far. */
+    private int myRowCount;
+
+    /** The number of rows in the current batch. */
+    private int myRowsInBatch;
+
+    /** The number of rows inserted since the last commit. */
+    private int myRowsSinceCommit;
+
+    /** The SQL for the insert, used for error messages. */
+    private final String mySql;
+
+    /**
+     * The insert statement. The first parameter is the data id; the binder
+     * sets the rest.
+     */
+    private final PreparedStatement myStatement;
+
+    /**
+     * Constructor.
+     *
+     * @param conn The database connection.
+     * @param pstmt The insert statement.
+     * @param sql The SQL for the insert statement.
+     * @param binder The binder that sets the values for an input object.
+     * @param cacheUtilities The cache utilities.
+     */
+    public BulkInserter(Connection conn, PreparedStatement pstmt, String sql, RowBinder<? super T> binder,
+            CacheUtilities cacheUtilities)
+    {
+        myConnection = conn;
+        myStatement = pstmt;
+        mySql = sql;
+        myBinder = binder;
+        myCacheUtilities = cacheUtilities;
+    }
+
+    /**
+     * Insert the rows for some input objects.
+     *
+     * @param input The input objects.
+     * @return The data ids of the inserted rows, in the order of the input.
+     * @throws CacheException If there is a database error or the values cannot
+     *             be translated.
+     */
+    public int[] insert(Iterable<? extends T> input) throws CacheException
+    {
+        try
+        {
+            myCommitting = myConnection.getAutoCommit();
+            if (myCommitting)
+            {
+                myConnection.setAutoCommit(false);
+            }
+            boolean success = false;
+            try
+            {
+                if (input instanceof Collection && ((Collection<?>)input).size() < PIPELINE_THRESHOLD)
+                {
+                    insertInline(input);
+                }
+                else
+                {
+                    insertPipelined(input);
+                }
+                if (myCommitting)
+                {
+                    myConnection.commit();
+                }
+                success = true;
+            }
+            finally
+            {
+                if (myCommitting)
+                {
+                    restoreAutoCommit(success);
+                }
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new CacheException("Failed to insert rows with sql [" + mySql + "]: " + e, e);
+        }
+
+        final int[] dataIds = new int[myRowCount];
+        for (int index = 0; index < dataIds.length; ++index)
+        {
+            dataIds[index] = index + 1;
+        }
+        return dataIds;
+    }
+
+    /**
+     * Add the bound row to the batch, and execute the batch if it is full.
+     *
+     * @throws CacheException If there is a database error.
+     * @throws SQLException If there is a database error.
+     */
+    private void addRow() throws CacheException, SQLException
+    {
+        myStatement.addBatch();
+        if (++myRowsInBatch == BATCH_SIZE)
+        {
+            executeBatch();
+        }
+    }
+
+    /**
+     * Execute the current batch and commit if enough rows have been inserted
+     * since the last commit.
+     *
+     * @throws CacheException If there is a database error.
+     * @throws SQLException If there is a database error.
+     */
+    private void executeBatch() throws CacheException, SQLException
+    {
+        if (myRowsInBatch == 0)
+        {
+            return;
+        }
+        final int[] updateCounts = myCacheUtilities.executeBatch(myStatement, mySql);
+        if (updateCounts.length != myRowsInBatch)
+        {
+            throw new CacheException("Batch update count was " + updateCounts.length + " but " + myRowsInBatch
+                    + " was expected.");
+        }
+        for (final int count : updateCounts)
+        {
+            if (count != 1 && count != Statement.SUCCESS_NO_INFO)
+            {
+                throw new CacheException("Number of updated rows was " + count + ", but expected 1.");
+            }
+        }
+        myRowsSinceCommit += myRowsInBatch;
+        myRowsInBatch = 0;
+        if (myCommitting && myRowsSinceCommit >= COMMIT_SIZE)
+        {
+            myConnection.commit();
+            myRowsSinceCommit = 0;
+        }
+    }
+
+    /**
+     * Bind and insert the rows on the calling thread.
+     *
+     * @param input The input objects.
+     * @throws CacheException If there is a database error.
+     * @throws SQLException If there is a database error.
+     */
+    private void insertInline(Iterable<? extends T> input) throws CacheException, SQLException
+    {
+        final ParameterBuffer row = new ParameterBuffer(1, 1);
+        for (final T obj : input)
+        {
+            myBinder.bind(row, obj);
+            row.endRow();
+            myStatement.setInt(1, ++myRowCount);
+            row.applyRow(0, myStatement);
+            row.clear();
+            addRow();
+        }
+        executeBatch();
+    }
+
+    /**
+     * Translate the values on another thread and insert them on this thread.
+     *
+     * @param input The input objects.
+     * @throws CacheException If there is a database error or the values cannot
+     *             be translated.
+     * @throws SQLException If there is a database error.
+     */
+    private void insertPipelined(Iterable<? extends T> input) throws CacheException, SQLException
+    {
+        final BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        final Translator<T> translator = new Translator<>(input, myBinder, queue);
+        final ExecutorService executor = Executors.newSingleThreadExecutor(new NamedThreadFactory("CacheInsertTranslator"));
+        executor.execute(translator);
+        try
+        {
+            Chunk chunk;
+            while (!(chunk = takeChunk(queue, translator)).isLast())
+            {
+                final ParameterBuffer rows = chunk.getRows();
+                for (int row = 0; row < rows.getRowCount(); ++row)
+                {
+                    myStatement.setInt(1, ++myRowCount);
+                    rows.applyRow(row, myStatement);
+                    addRow();
+                }
+            }
+            if (chunk.getError() != null)
+            {
+                throw chunk.getError();
+            }
+            executeBatch();
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new CacheException("Interrupted while inserting rows.", e);
+        }
+        finally
+        {
+            translator.cancel();
+            queue.clear();
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Restore auto-commit on the connection, rolling back first if the insert
+     * failed.
+     *
+     * @param success If the insert succeeded.
+     * @throws SQLException If auto-commit cannot be restored.
+     */
+    private void restoreAutoCommit(boolean success) throws SQLException
+    {
+        if (!success)
+        {
+            try
+            {
+                myConnection.rollback();
+            }
+            catch (final SQLException e)
+            {
+                LOGGER.warn("Failed to roll back insert: " + e, e);
+            }
+        }
+        myConnection.setAutoCommit(true);
+    }
+
+    /**
+     * Take the next chunk from the queue, failing if the translator stopped
+     * without queuing its last chunk.
+     *
+     * @param queue The queue.
+     * @param translator The translator.
+     * @return The chunk.
+     * @throws CacheException If the translator stopped unexpectedly.
+     * @throws InterruptedException If the thread is interrupted.
+     */
+    private static Chunk takeChunk(BlockingQueue<Chunk> queue, Translator<?> translator)
+        throws CacheException, InterruptedException
+    {
+        Chunk chunk;
+        while ((chunk = queue.poll(100, TimeUnit.MILLISECONDS)) == null)
+        {
+            if (translator.isFinished() && queue.isEmpty())
+            {
+                throw new CacheException("Value translation for insert stopped unexpectedly.");
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * Sets the values for one input object in a parameter buffer.
+     *
+     * @param <T> The type of the input object.
+     */
+    @FunctionalInterface
+    public interface RowBinder<T>
+    {
+        /**
+         * Set the values for an input object. The first parameter of the
+         * statement is reserved for the data id.
+         *
+         * @param row The parameter buffer for the row.
+         * @param obj The input object.
+         * @throws CacheException If a value cannot be translated.
+         */
+        void bind(ParameterBuffer row, T obj) throws CacheException;
+    }
+
+    /** A batch of translated rows passed from the translator thread. */
+    private static final class Chunk
+    {
+        /** The error that stopped translation, if any. */
+        private final CacheException myError;
+
+        /** If this is the last chunk. */
+        private final boolean myLast;
+
+        /** The translated rows. */
+        private final ParameterBuffer myRows;
+
+        /**
+         * Constructor.
+         *
+         * @param rows The translated rows.
+         * @param last If this is the last chunk.
+         * @param error The error that stopped translation, if any.
+         */
+        public Chunk(ParameterBuffer rows, boolean last, CacheException error)
+        {
+            myRows = rows;
+            myLast = last;
+            myError = error;
+        }
+
+        /**
+         * Get the error that stopped translation.
+         *
+         * @return The error, or {@code null}.
+         */
+        public CacheException getError()
+        {
+            return myError;
+        }
+
+        /**
+         * Get the translated rows.
+         *
+         * @return The rows.
+         */
+        public ParameterBuffer getRows()
+        {
+            return myRows;
+        }
+
+        /**
+         * Get if this is the last chunk.
+         *
+         * @return {@code true} if no more chunks will follow.
+         */
+        public boolean isLast()
+        {
+            return myLast;
+        }
+    }
+
+    /**
+     * Translates input objects into parameter buffers and puts them on the
+     * queue.
+     *
+     * @param <T> The type of the input objects.
+     */
+    private static final class Translator<T> implements Runnable
+    {
+        /** The binder that sets the values for an input object. */
+        private final RowBinder<? super T> myBinder;
+
+        /** Set when the database thread no longer wants rows. */
+        private volatile boolean myCancelled;
+
+        /** Set when the translator has stopped. */
+        private volatile boolean myFinished;
+
+        /** The input objects. */
+        private final Iterable<? extends T> myInput;
+
+        /** The queue for the translated rows. */
+        private final BlockingQueue<Chunk> myQueue;
+
+        /**
+         * Constructor.
+         *
+         * @param input The input objects.
+         * @param binder The binder that sets the values for an input object.
+         * @param queue The queue for the translated rows.
+         */
+        public Translator(Iterable<? extends T> input, RowBinder<? super T> binder, BlockingQueue<Chunk> queue)
+        {
+            myInput = input;
+            myBinder = binder;
+            myQueue = queue;
+        }
+
+        /**
+         * Stop translating.
+         */
+        public void cancel()
+        {
+            myCancelled = true;
+        }
+
+        /**
+         * Get if the translator has stopped.
+         *
+         * @return {@code true} if the translator is done.
+         */
+        public boolean isFinished()
+        {
+            return myFinished;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                translate();
+            }
+            finally
+            {
+                myFinished = true;
+            }
+        }
+
+        /**
+         * Translate the input and queue the rows, followed by the last chunk.
+         */
+        private void translate()
+        {
+            CacheException error = null;
+            try
+            {
+                ParameterBuffer rows = new ParameterBuffer(BATCH_SIZE, 1);
+                for (final T obj : myInput)
+                {
+                    myBinder.bind(rows, obj);
+                    rows.endRow();
+                    if (rows.getRowCount() == BATCH_SIZE)
+                    {
+                        if (!offer(new Chunk(rows, false, null)))
+                        {
+                            return;
+                        }
+                        // Size the next buffer from the rows of this one.
+                        rows = new ParameterBuffer(BATCH_SIZE, rows.getParameterCount() / BATCH_SIZE);
+                    }
+                }
+                if (rows.getRowCount() > 0 && !offer(new Chunk(rows, false, null)))
+                {
+                    return;
+                }
+            }
+            catch (final CacheException e)
+            {
+                error = e;
+            }
+            catch (final RuntimeException e)
+            {
+                error = new CacheException("Failed to translate values for insert: " + e, e);
+            }
+            offer(new Chunk(null, true, error));
+        }
+
+        /**
+         * Put a chunk on the queue, waiting for space unless the insert has
+         * been cancelled.
+         *
+         * @param chunk The chunk.
+         * @return {@code true} if the chunk was queued.
+         */
+        private boolean offer(Chunk chunk)
+        {
+            try
+            {
+                while (!myCancelled)
+                {
+                    if (myQueue.offer(chunk, 100, TimeUnit.MILLISECONDS))
+                    {
+                        return true;
+                    }
+                }
+            }
+            catch (final InterruptedException e)
+            {
+                if (LOGGER.isDebugEnabled())
+                {
+                    LOGGER.debug("Interrupted while translating insert values.", e);
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -32,6 +32,7 @@ import io.opensphere.core.cache.accessor.PersistentPropertyAccessor;
 import io.opensphere.core.cache.accessor.PropertyAccessor;
 import io.opensphere.core.cache.jdbc.ConnectionAppropriator.ConnectionUser;
 import io.opensphere.core.cache.jdbc.StatementAppropriator.PreparedStatementUser;
+import io.opensphere.core.cache.jdbc.type.ParameterBuffer;
 import io.opensphere.core.cache.jdbc.type.ValueTranslator;
 import io.opensphere.core.cache.matcher.IntervalPropertyMatcher;
 import io.opensphere.core.cache.matcher.PropertyMatcher;
@@ -290,7 +291,8 @@ public class InsertTask<T> extends DatabaseTask implements ConnectionUser<long[]
             }
             else
             {
-                dataIds = insertData(TableNames.getDataTableName(groupId), columnNames, conn);
+                final String tableName = TableNames.getDataTableName(groupId);
+                dataIds = newGroup ? insertNewData(tableName, columnNames, conn) : insertData(tableName, columnNames, conn);
             }
 
             if (newGroup)
@@ -614,6 +616,34 @@ public class InsertTask<T> extends DatabaseTask implements ConnectionUser<long[]
         return new StatementAppropriator(conn).appropriateStatement(user, sql, "DATA_ID");
     }
 
+    /**
+     * Insert the data for a collection of models into a table that was just
+     * created for them. The data ids are assigned here rather than generated
+     * by the database, which allows the rows to be inserted in batches. The
+     * database advances the identity column past the assigned ids, so later
+     * inserts into the group still get unique ids.
+     *
+     * @param tableName The table name.
+     * @param columnNames The column names.
+     * @param conn The database connection.
+     * @return The ids for the inserted rows.
+     * @throws CacheException If the data cannot be inserted due to a database
+     *             error.
+     */
+    protected int[] insertNewData(final String tableName, Collection<String> columnNames, final Connection conn)
+        throws CacheException
+    {
+        final List<String> columns = new ArrayList<>(columnNames.size() + 1);
+        columns.add(ColumnNames.DATA_ID);
+        columns.addAll(columnNames);
+        final String sql = getSQLGenerator().generateInsert(tableName, New.array(columns, String.class));
+        final ValueTranslator<?>[] translators = getTypeMapper().getValueTranslators(getAccessors());
+        final BulkInserter.RowBinder<T> binder = (row, obj) -> setValues(row, getAccessors(), translators, obj, 2);
+        final PreparedStatementUser<int[]> user = (unused, pstmt) -> new BulkInserter<>(conn, pstmt, sql, binder,
+                getCacheUtilities()).insert(getInput());
+        return new StatementAppropriator(conn).appropriateStatement(user, sql);
+    }
+
     /**
      * Executes a data insert using the supplied SQL Query and prepared
      * statement.
@@ -1013,6 +1043,46 @@ public class InsertTask<T> extends DatabaseTask implements ConnectionUser<long[]
         }
     }
 
+    /**
+     * Set the values for an insert in a parameter buffer.
+     *
+     * @param <X> The type of the property values. This is defined internally to
+     *            this method.
+     * @param buffer The parameter buffer.
+     * @param propertyAccessors The accessors for the property values.
+     * @param translators The value translators, one for each property.
+     * @param obj The input object.
+     * @param firstColumn The index of the first column.
+     * @throws CacheException If a value cannot be translated.
+     */
+    protected <X> void setValues(ParameterBuffer buffer,
+            final Collection<? extends PersistentPropertyAccessor<? super T, ?>> propertyAccessors,
+            ValueTranslator<?>[] translators, T obj, int firstColumn)
+        throws CacheException
+    {
+        int accessorIndex = 0;
+        int columnIndex = firstColumn;
+        for (final PropertyAccessor<? super T, ?> propertyAccessor : propertyAccessors)
+        {
+            @SuppressWarnings("unchecked")
+            final PropertyAccessor<? super T, X> pa = (PropertyAccessor<? super T, X>)propertyAccessor;
+
+            final X value = pa.access(obj);
+            @SuppressWarnings("unchecked")
+            final ValueTranslator<? super X> translator = (ValueTranslator<? super X>)translators[accessorIndex++];
+
+            try
+            {
+                columnIndex = translator.setValue(buffer, columnIndex, value);
+            }
+            catch (final IllegalArgumentException e)
+            {
+                throw new IllegalArgumentException("Value provided by property accessor [" + value
+                        + "] is illegal for property descriptor [" + pa.getPropertyDescriptor() + "]:" + e, e);
+            }
+        }
+    }
+
     /**
      * Update existing data in the database. This assumes that the group id has
      * already been validated.
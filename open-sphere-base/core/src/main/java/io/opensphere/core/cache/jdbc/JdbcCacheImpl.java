@@ -59,7 +59,7 @@ import io.opensphere.core.util.lang.StringUtilities;
 public class JdbcCacheImpl implements Cache
 {
     /** Schema version. */
-    public static final String SCHEMA_VERSION = "17";
+    public static final String SCHEMA_VERSION = "18";
 
     /** Logger reference. */
     private static final Logger LOGGER = Logger.getLogger(JdbcCacheImpl.class);
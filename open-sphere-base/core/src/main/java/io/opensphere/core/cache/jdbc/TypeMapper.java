@@ -13,14 +13,19 @@ import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.vividsolutions.jts.geom.Geometry;
 
 import io.opensphere.core.cache.CacheException;
 import io.opensphere.core.cache.accessor.PropertyAccessor;
+import io.opensphere.core.cache.jdbc.codec.ValueCodec;
+import io.opensphere.core.cache.jdbc.codec.ValueCodecRegistry;
+import io.opensphere.core.cache.jdbc.type.CodecTranslator;
 import io.opensphere.core.cache.jdbc.type.GeometryTranslator;
 import io.opensphere.core.cache.jdbc.type.InputStreamTranslator;
 import io.opensphere.core.cache.jdbc.type.ObjectTranslator;
+import io.opensphere.core.cache.jdbc.type.ParameterBuffer;
 import io.opensphere.core.cache.jdbc.type.SerializableTranslator;
 import io.opensphere.core.cache.jdbc.type.StringTranslator;
 import io.opensphere.core.cache.jdbc.type.TimespanTranslator;
@@ -71,6 +76,9 @@ public class TypeMapper
     /** Map of Java types to prepared statement setters. */
     protected static final Map<Class<?>, ValueTranslator<?>> TYPES_TO_TRANSLATORS;
 
+    /** Map of property types with value codecs to their translators. */
+    private final Map<Class<?>, ValueTranslator<?>> myCodecTranslators = new ConcurrentHashMap<>();
+
     static
     {
         final Map<Class<?>, ValueTranslator<?>> map = New.map();
@@ -131,6 +139,23 @@ public class TypeMapper
         COLUMN_NAME_MAP = Collections.unmodifiableMap(map);
     }
 
+    /**
+     * Get if values of a property type are stored by a {@link CodecTranslator}.
+     *
+     * @param type The property type.
+     * @return {@code true} if the type has a value codec of its own.
+     */
+    public static boolean isCodecType(Class<?> type)
+    {
+        if (TYPES_TO_TRANSLATORS.containsKey(type) || Geometry.class.isAssignableFrom(type)
+                || !Serializable.class.isAssignableFrom(type))
+        {
+            return false;
+        }
+        ValueCodec<?> codec = ValueCodecRegistry.getInstance().getCodec(type);
+        return codec != null && codec.getType().equals(type);
+    }
+
     /**
      * Get a column name prefix for a data type.
      *
@@ -592,6 +617,27 @@ public class TypeMapper
                 return column;
             }
 
+            @Override
+            public int setValue(ParameterBuffer buffer, int startColumn, Object[] value) throws CacheException
+            {
+                Utilities.checkNull(value, "value");
+
+                if (value.length != activeColumns.length)
+                {
+                    throw new IllegalArgumentException(
+                            "Length of array provided by accessor does not match number of active columns defined by "
+                                    + "property descriptor. Active column count is " + activeColumns.length
+                                    + ",  but array length is " + value.length);
+                }
+                int column = startColumn;
+                for (int index = 0; index < translators.length; ++index)
+                {
+                    column = setColumnValue(translators[index], buffer, column, value[index]);
+                }
+
+                return column;
+            }
+
             /**
              * Helper method to get around problems with generics.
              */
@@ -613,9 +659,31 @@ public class TypeMapper
             {
                 return columnTranslator.setValue(pstmt, column, (T)value, forInsert);
             }
+
+            /**
+             * Helper method to get around problems with generics.
+             */
+            @SuppressWarnings({ "unchecked" })
+            private <T> int setColumnValue(ValueTranslator<T> columnTranslator, ParameterBuffer buffer, int column, Object value)
+                throws CacheException
+            {
+                return columnTranslator.setValue(buffer, column, (T)value);
+            }
         };
     }
 
+    /**
+     * Create the translator for a property type that has a value codec.
+     *
+     * @param type The property type.
+     * @return The translator.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    protected ValueTranslator<?> createCodecTranslator(Class<?> type)
+    {
+        return new CodecTranslator(type);
+    }
+
     /**
      * Get a property value translator for a Java type.
      *
@@ -633,6 +701,10 @@ public class TypeMapper
             {
                 return (ValueTranslator<? super T>)getValueTranslator(Geometry.class);
             }
+            else if (isCodecType(type))
+            {
+                return (ValueTranslator<? super T>)myCodecTranslators.computeIfAbsent(type, this::createCodecTranslator);
+            }
             else if (Serializable.class.isAssignableFrom(type))
             {
                 return (ValueTranslator<? super T>)getValueTranslator(Serializable.class);
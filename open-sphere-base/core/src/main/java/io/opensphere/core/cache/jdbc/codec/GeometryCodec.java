@@ -0,0 +1,118 @@
+package io.opensphere.core.cache.jdbc.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.Serializable;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKBReader;
+import com.vividsolutions.jts.io.WKBWriter;
+
+import io.opensphere.core.util.lang.Serialization;
+
+/**
+ * Codec for JTS {@link Geometry}s: the length of the WKB followed by the WKB,
+ * written with z-coordinates and the SRID, and then the length of the
+ * Java-serialized user data followed by the user data, or -1 if the geometry
+ * has no user data. Version 0 did not write the user data.
+ */
+public class GeometryCodec implements ValueCodec<Geometry>
+{
+    /** The number of dimensions written. */
+    private static final int OUTPUT_DIMENSION = 3;
+
+    /** The length written in place of the user data when there is none. */
+    private static final int NO_USER_DATA = -1;
+
+    @Override
+    public Geometry decode(DataInput in, int version) throws IOException
+    {
+        Geometry geometry;
+        try
+        {
+            geometry = new WKBReader().read(readBytes(in, in.readInt()));
+        }
+        catch (ParseException e)
+        {
+            throw new IOException("Failed to parse geometry: " + e, e);
+        }
+
+        int userDataLength = version == 0 ? NO_USER_DATA : in.readInt();
+        if (userDataLength != NO_USER_DATA)
+        {
+            try
+            {
+                geometry.setUserData(Serialization.deserialize(readBytes(in, userDataLength)));
+            }
+            catch (ClassNotFoundException e)
+            {
+                throw new IOException("Failed to find class for geometry user data: " + e, e);
+            }
+        }
+        return geometry;
+    }
+
+    @Override
+    public void encode(Geometry value, DataOutput out) throws IOException
+    {
+        byte[] wkb = new WKBWriter(OUTPUT_DIMENSION, true).write(value);
+        out.writeInt(wkb.length);
+        out.write(wkb);
+
+        Object userData = value.getUserData();
+        if (userData == null)
+        {
+            out.writeInt(NO_USER_DATA);
+        }
+        else if (userData instanceof Serializable)
+        {
+            byte[] bytes = Serialization.serialize((Serializable)userData);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        else
+        {
+            throw new NotSerializableException(userData.getClass().getName());
+        }
+    }
+
+    @Override
+    public int getId()
+    {
+        return 2;
+    }
+
+    @Override
+    public Class<Geometry> getType()
+    {
+        return Geometry.class;
+    }
+
+    @Override
+    public int getVersion()
+    {
+        return 1;
+    }
+
+    /**
+     * Read a number of bytes.
+     *
+     * @param in The input.
+     * @param length The number of bytes.
+     * @return The bytes.
+     * @throws IOException If the bytes cannot be read.
+     */
+    private static byte[] readBytes(DataInput in, int length) throws IOException
+    {
+        if (length < 0)
+        {
+            throw new IOException("Invalid length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,59 @@
+package io.opensphere.core.cache.jdbc.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import io.opensphere.core.model.Altitude;
+import io.opensphere.core.model.LatLonAlt;
+
+/**
+ * Codec for {@link LatLonAlt}s: the latitude and longitude in degrees, the
+ * altitude in meters, and the altitude reference level.
+ */
+public class LatLonAltCodec implements ValueCodec<LatLonAlt>
+{
+    /** The reference levels, in the order of their codes. */
+    private static final Altitude.ReferenceLevel[] REFERENCE_LEVELS = Altitude.ReferenceLevel.values();
+
+    @Override
+    public LatLonAlt decode(DataInput in, int version) throws IOException
+    {
+        double lat = in.readDouble();
+        double lon = in.readDouble();
+        double alt = in.readDouble();
+        int level = in.readUnsignedByte();
+        if (level >= REFERENCE_LEVELS.length)
+        {
+            throw new IOException("Unknown altitude reference level: " + level);
+        }
+        return LatLonAlt.createFromDegreesMeters(lat, lon, alt, REFERENCE_LEVELS[level]);
+    }
+
+    @Override
+    public void encode(LatLonAlt value, DataOutput out) throws IOException
+    {
+        out.writeDouble(value.getLatD());
+        out.writeDouble(value.getLonD());
+        out.writeDouble(value.getAltM());
+        out.writeByte(value.getAltitudeReference().ordinal());
+    }
+
+    @Override
+    public int getId()
+    {
+        return 3;
+    }
+
+    @Override
+    public Class<LatLonAlt> getType()
+    {
+        return LatLonAlt.class;
+    }
+
+    @Override
+    public int getVersion()
+    {
+        return 0;
+    }
+}
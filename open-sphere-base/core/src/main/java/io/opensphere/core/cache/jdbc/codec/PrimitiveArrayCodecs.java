@@ -0,0 +1,213 @@
+package io.opensphere.core.cache.jdbc.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Codecs for primitive arrays: the length followed by the elements, in the
+ * big-endian order of {@link DataOutput}. The elements are copied in bulk
+ * through a {@link ByteBuffer}.
+ */
+public final class PrimitiveArrayCodecs
+{
+    /**
+     * Read the elements of an array.
+     *
+     * @param in The input.
+     * @param length The number of elements.
+     * @param elementBytes The size of an element in bytes.
+     * @return A buffer holding the elements.
+     * @throws IOException If the elements cannot be read.
+     */
+    private static ByteBuffer readElements(DataInput in, int length, int elementBytes) throws IOException
+    {
+        long byteCount = (long)length * elementBytes;
+        if (byteCount > Integer.MAX_VALUE)
+        {
+            throw new IOException("Array length is too large: " + length);
+        }
+        byte[] bytes = new byte[(int)byteCount];
+        in.readFully(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Read an array length, checking that it is not negative.
+     *
+     * @param in The input.
+     * @return The length.
+     * @throws IOException If the length cannot be read or is negative.
+     */
+    private static int readLength(DataInput in) throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0)
+        {
+            throw new IOException("Negative array length: " + length);
+        }
+        return length;
+    }
+
+    /** Disallow instantiation. */
+    private PrimitiveArrayCodecs()
+    {
+    }
+
+    /** Codec for {@code double[]}. */
+    public static class DoubleArrayCodec implements ValueCodec<double[]>
+    {
+        @Override
+        public double[] decode(DataInput in, int version) throws IOException
+        {
+            double[] arr = new double[readLength(in)];
+            readElements(in, arr.length, Double.BYTES).asDoubleBuffer().get(arr);
+            return arr;
+        }
+
+        @Override
+        public void encode(double[] value, DataOutput out) throws IOException
+        {
+            out.writeInt(value.length);
+            ByteBuffer buffer = ByteBuffer.allocate(value.length * Double.BYTES);
+            buffer.asDoubleBuffer().put(value);
+            out.write(buffer.array());
+        }
+
+        @Override
+        public int getId()
+        {
+            return 4;
+        }
+
+        @Override
+        public Class<double[]> getType()
+        {
+            return double[].class;
+        }
+
+        @Override
+        public int getVersion()
+        {
+            return 0;
+        }
+    }
+
+    /** Codec for {@code float[]}. */
+    public static class FloatArrayCodec implements ValueCodec<float[]>
+    {
+        @Override
+        public float[] decode(DataInput in, int version) throws IOException
+        {
+            float[] arr = new float[readLength(in)];
+            readElements(in, arr.length, Float.BYTES).asFloatBuffer().get(arr);
+            return arr;
+        }
+
+        @Override
+        public void encode(float[] value, DataOutput out) throws IOException
+        {
+            out.writeInt(value.length);
+            ByteBuffer buffer = ByteBuffer.allocate(value.length * Float.BYTES);
+            buffer.asFloatBuffer().put(value);
+            out.write(buffer.array());
+        }
+
+        @Override
+        public int getId()
+        {
+            return 5;
+        }
+
+        @Override
+        public Class<float[]> getType()
+        {
+            return float[].class;
+        }
+
+        @Override
+        public int getVersion()
+        {
+            return 0;
+        }
+    }
+
+    /** Codec for {@code int[]}. */
+    public static class IntArrayCodec implements ValueCodec<int[]>
+    {
+        @Override
+        public int[] decode(DataInput in, int version) throws IOException
+        {
+            int[] arr = new int[readLength(in)];
+            readElements(in, arr.length, Integer.BYTES).asIntBuffer().get(arr);
+            return arr;
+        }
+
+        @Override
+        public void encode(int[] value, DataOutput out) throws IOException
+        {
+            out.writeInt(value.length);
+            ByteBuffer buffer = ByteBuffer.allocate(value.length * Integer.BYTES);
+            buffer.asIntBuffer().put(value);
+            out.write(buffer.array());
+        }
+
+        @Override
+        public int getId()
+        {
+            return 6;
+        }
+
+        @Override
+        public Class<int[]> getType()
+        {
+            return int[].class;
+        }
+
+        @Override
+        public int getVersion()
+        {
+            return 0;
+        }
+    }
+
+    /** Codec for {@code long[]}. */
+    public static class LongArrayCodec implements ValueCodec<long[]>
+    {
+        @Override
+        public long[] decode(DataInput in, int version) throws IOException
+        {
+            long[] arr = new long[readLength(in)];
+            readElements(in, arr.length, Long.BYTES).asLongBuffer().get(arr);
+            return arr;
+        }
+
+        @Override
+        public void encode(long[] value, DataOutput out) throws IOException
+        {
+            out.writeInt(value.length);
+            ByteBuffer buffer = ByteBuffer.allocate(value.length * Long.BYTES);
+            buffer.asLongBuffer().put(value);
+            out.write(buffer.array());
+        }
+
+        @Override
+        public int getId()
+        {
+            return 7;
+        }
+
+        @Override
+        public Class<long[]> getType()
+        {
+            return long[].class;
+        }
+
+        @Override
+        public int getVersion()
+        {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package io.opensphere.core.cache.jdbc.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import io.opensphere.core.model.time.TimeSpan;
+
+/**
+ * Codec for {@link TimeSpan}s: the start and end as longs, with
+ * {@link Long#MIN_VALUE} and {@link Long#MAX_VALUE} for unbounded ends, as in
+ * the time span columns.
+ */
+public class TimeSpanCodec implements ValueCodec<TimeSpan>
+{
+    @Override
+    public TimeSpan decode(DataInput in, int version) throws IOException
+    {
+        long start = in.readLong();
+        long end = in.readLong();
+        boolean unboundedStart = start == Long.MIN_VALUE;
+        boolean unboundedEnd = end == Long.MAX_VALUE;
+        return unboundedStart ? unboundedEnd ? TimeSpan.TIMELESS : TimeSpan.newUnboundedStartTimeSpan(end)
+                : unboundedEnd ? TimeSpan.newUnboundedEndTimeSpan(start) : TimeSpan.get(start, end);
+    }
+
+    @Override
+    public void encode(TimeSpan value, DataOutput out) throws IOException
+    {
+        out.writeLong(value.isUnboundedStart() ? Long.MIN_VALUE : value.getStart());
+        out.writeLong(value.isUnboundedEnd() ? Long.MAX_VALUE : value.getEnd());
+    }
+
+    @Override
+    public int getId()
+    {
+        return 1;
+    }
+
+    @Override
+    public Class<TimeSpan> getType()
+    {
+        return TimeSpan.class;
+    }
+
+    @Override
+    public int getVersion()
+    {
+        return 0;
+    }
+}
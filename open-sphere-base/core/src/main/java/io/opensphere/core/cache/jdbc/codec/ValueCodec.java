@@ -0,0 +1,69 @@
+package io.opensphere.core.cache.jdbc.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Encodes values of one type to a compact binary form for storage in the
+ * cache, in place of Java serialization. Implementations must not rely on
+ * reflection and must be thread-safe.
+ * <p>
+ * Additional codecs may be supplied through {@link java.util.ServiceLoader}
+ * using a {@code META-INF/services/io.opensphere.core.cache.jdbc.codec.ValueCodec}
+ * file. Ids 1 through 63 are reserved for the built-in codecs. Values cached
+ * before their type had a codec can still be read, but equality queries will
+ * not match them.
+ *
+ * @param <T> The type of the values.
+ */
+public interface ValueCodec<T>
+{
+    /**
+     * Decode a value.
+     *
+     * @param in The input, positioned after the header.
+     * @param version The codec version the value was written with, which is
+     *            never greater than {@link #getVersion()}.
+     * @return The value.
+     * @throws IOException If the value cannot be read.
+     */
+    T decode(DataInput in, int version) throws IOException;
+
+    /**
+     * Encode a value.
+     *
+     * @param value The value, never {@code null}.
+     * @param out The output.
+     * @throws IOException If the value cannot be written.
+     */
+    void encode(T value, DataOutput out) throws IOException;
+
+    /**
+     * Get the id of the codec, which is written in the header of each value
+     * so that the value can be decoded later. This must never change once
+     * values have been written.
+     *
+     * @return The id, from 1 to 255.
+     */
+    int getId();
+
+    /**
+     * Get the type of the values handled by this codec. The cache uses the
+     * codec for properties declared as exactly this type, so the codec must
+     * accept any subtype of it.
+     *
+     * @return The type.
+     */
+    Class<T> getType();
+
+    /**
+     * Get the version of the encoding written by this codec. The version must
+     * be increased whenever the encoding changes, and
+     * {@link #decode(DataInput, int)} must continue to accept the old
+     * versions.
+     *
+     * @return The version, from 0 to 255.
+     */
+    int getVersion();
+}
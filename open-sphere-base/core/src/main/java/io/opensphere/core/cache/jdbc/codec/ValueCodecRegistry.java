@@ -0,0 +1,271 @@
+package io.opensphere.core.cache.jdbc.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+
+import io.opensphere.core.util.Utilities;
+import io.opensphere.core.util.lang.Serialization;
+
+/**
+ * The codecs used to store serializable values in the cache. The codec for a
+ * value is chosen by the type of the property it is stored as, never by the
+ * class of the value. Values with a codec are written as a three-byte header
+ * (a marker byte, the codec id and the codec version) followed by the encoded
+ * value. Values without a codec are written with Java serialization. Java
+ * serialization streams always start with {@code 0xAC}, so values written
+ * before the codecs existed are still read correctly.
+ */
+public final class ValueCodecRegistry
+{
+    /** The first byte of a value written by a codec. */
+    public static final byte HEADER_MARKER = (byte)0xC5;
+
+    /** The number of header bytes before an encoded value. */
+    public static final int HEADER_SIZE_BYTES = 3;
+
+    /** Logger reference. */
+    private static final Logger LOGGER = Logger.getLogger(ValueCodecRegistry.class);
+
+    /**
+     * If codecs should be used for writing values. Values written by codecs
+     * are always readable.
+     */
+    private static final boolean WRITE_CODECS_ENABLED = !Boolean.getBoolean("opensphere.db.disableValueCodecs");
+
+    /** The shared instance. */
+    private static final ValueCodecRegistry INSTANCE = createDefault();
+
+    /** The codecs indexed by id. This is replaced, not modified. */
+    private volatile ValueCodec<?>[] myCodecsById = new ValueCodec<?>[256];
+
+    /** Map of value types to the codecs found for them, including misses. */
+    private final Map<Class<?>, Optional<ValueCodec<?>>> myCodecsByType = new ConcurrentHashMap<>();
+
+    /**
+     * Get the shared instance, which has the built-in codecs and any codecs
+     * found by the {@link ServiceLoader}.
+     *
+     * @return The registry.
+     */
+    public static ValueCodecRegistry getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Create a registry with the built-in codecs and any codecs from the
+     * service loader.
+     *
+     * @return The registry.
+     */
+    private static ValueCodecRegistry createDefault()
+    {
+        ValueCodecRegistry registry = new ValueCodecRegistry();
+        registry.register(new TimeSpanCodec());
+        registry.register(new GeometryCodec());
+        registry.register(new LatLonAltCodec());
+        registry.register(new PrimitiveArrayCodecs.DoubleArrayCodec());
+        registry.register(new PrimitiveArrayCodecs.FloatArrayCodec());
+        registry.register(new PrimitiveArrayCodecs.IntArrayCodec());
+        registry.register(new PrimitiveArrayCodecs.LongArrayCodec());
+
+        @SuppressWarnings("rawtypes")
+        Iterator<ValueCodec> iter = ServiceLoader.load(ValueCodec.class).iterator();
+        while (iter.hasNext())
+        {
+            try
+            {
+                registry.register(iter.next());
+            }
+            catch (ServiceConfigurationError | IllegalArgumentException e)
+            {
+                LOGGER.error("Failed to load value codec: " + e, e);
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * Get if some bytes were written by a codec rather than by Java
+     * serialization.
+     *
+     * @param bytes The bytes.
+     * @return {@code true} if the bytes start with a codec header.
+     */
+    public static boolean isEncoded(byte[] bytes)
+    {
+        return bytes.length >= HEADER_SIZE_BYTES && bytes[0] == HEADER_MARKER;
+    }
+
+    /**
+     * Decode a value written by {@link #encode(Class, Serializable)}, or
+     * written with Java serialization.
+     *
+     * @param bytes The bytes.
+     * @return The value.
+     * @throws IOException If the value cannot be read.
+     * @throws ClassNotFoundException If the class of a Java-serialized value
+     *             cannot be found.
+     */
+    public Serializable decode(byte[] bytes) throws IOException, ClassNotFoundException
+    {
+        if (!isEncoded(bytes))
+        {
+            return Serialization.deserialize(bytes);
+        }
+
+        int id = bytes[1] & 0xFF;
+        int version = bytes[2] & 0xFF;
+        ValueCodec<?> codec = myCodecsById[id];
+        if (codec == null)
+        {
+            throw new IOException("No value codec is registered for id " + id);
+        }
+        if (version > codec.getVersion())
+        {
+            throw new IOException("Value was written with version " + version + " of codec " + codec.getClass().getName()
+                    + ", which only supports up to version " + codec.getVersion());
+        }
+        DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(bytes, HEADER_SIZE_BYTES, bytes.length - HEADER_SIZE_BYTES));
+        return (Serializable)codec.decode(in, version);
+    }
+
+    /**
+     * Encode a value, using the codec for the property type if it has one and
+     * Java serialization otherwise.
+     *
+     * @param type The property type.
+     * @param value The value, which may be {@code null}.
+     * @return The bytes.
+     * @throws IOException If the value cannot be written.
+     */
+    @SuppressWarnings("unchecked")
+    public byte[] encode(Class<?> type, Serializable value) throws IOException
+    {
+        ValueCodec<? super Serializable> codec = (ValueCodec<? super Serializable>)getWriteCodec(type);
+        return value == null || codec == null ? Serialization.serialize(value) : encode(codec, value);
+    }
+
+    /**
+     * Encode a value with a codec, preceded by the header.
+     *
+     * @param <T> The value type.
+     * @param codec The codec.
+     * @param value The value, never {@code null}.
+     * @return The bytes.
+     * @throws IOException If the value cannot be written.
+     */
+    public <T> byte[] encode(ValueCodec<? super T> codec, T value) throws IOException
+    {
+        ByteArrayOutputStream baos = Utilities.getByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(baos);
+        out.writeByte(HEADER_MARKER);
+        out.writeByte(codec.getId());
+        out.writeByte(codec.getVersion());
+        codec.encode(value, out);
+        out.flush();
+        return baos.toByteArray();
+    }
+
+    /**
+     * Get the codec for a value type. If the type has no codec of its own,
+     * the codecs for its supertypes are used.
+     *
+     * @param <T> The value type.
+     * @param type The value type.
+     * @return The codec, or {@code null} if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ValueCodec<? super T> getCodec(Class<? extends T> type)
+    {
+        return (ValueCodec<? super T>)myCodecsByType.computeIfAbsent(type, this::findCodec).orElse(null);
+    }
+
+    /**
+     * Get the codec that values of a property type are written with. This is
+     * the same as {@link #getCodec(Class)} unless writing with codecs has been
+     * disabled.
+     *
+     * @param <T> The property type.
+     * @param type The property type.
+     * @return The codec, or {@code null} if values are written with Java
+     *         serialization.
+     */
+    public <T> ValueCodec<? super T> getWriteCodec(Class<? extends T> type)
+    {
+        return WRITE_CODECS_ENABLED ? getCodec(type) : null;
+    }
+
+    /**
+     * Add a codec.
+     *
+     * @param codec The codec.
+     * @throws IllegalArgumentException If the codec's id or version is out of
+     *             range, or another codec already has its id or type.
+     */
+    public synchronized void register(ValueCodec<?> codec)
+    {
+        int id = codec.getId();
+        if (id < 1 || id >= myCodecsById.length)
+        {
+            throw new IllegalArgumentException("Codec id " + id + " is out of range for " + codec.getClass().getName());
+        }
+        if (codec.getVersion() < 0 || codec.getVersion() > 0xFF)
+        {
+            throw new IllegalArgumentException(
+                    "Codec version " + codec.getVersion() + " is out of range for " + codec.getClass().getName());
+        }
+        if (myCodecsById[id] != null)
+        {
+            throw new IllegalArgumentException("Codec id " + id + " of " + codec.getClass().getName()
+                    + " is already used by " + myCodecsById[id].getClass().getName());
+        }
+        for (ValueCodec<?> other : myCodecsById)
+        {
+            if (other != null && other.getType().equals(codec.getType()))
+            {
+                throw new IllegalArgumentException(
+                        "Type " + codec.getType().getName() + " already has codec " + other.getClass().getName());
+            }
+        }
+        ValueCodec<?>[] codecs = myCodecsById.clone();
+        codecs[id] = codec;
+        myCodecsById = codecs;
+        myCodecsByType.clear();
+    }
+
+    /**
+     * Search for the codec for a type, trying the type and then its
+     * superclasses.
+     *
+     * @param type The type.
+     * @return The codec, if one was found.
+     */
+    private Optional<ValueCodec<?>> findCodec(Class<?> type)
+    {
+        for (Class<?> cl = type; cl != null; cl = cl.getSuperclass())
+        {
+            for (ValueCodec<?> codec : myCodecsById)
+            {
+                if (codec != null && codec.getType().equals(cl))
+                {
+                    return Optional.of(codec);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+}
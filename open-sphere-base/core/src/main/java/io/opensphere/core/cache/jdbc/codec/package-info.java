@@ -0,0 +1,4 @@
+/**
+ * Compact binary codecs for values stored in the JDBC cache.
+ */
+package io.opensphere.core.cache.jdbc.codec;
@@ -0,0 +1,157 @@
+package io.opensphere.core.cache.jdbc.type;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+
+import io.opensphere.core.cache.CacheException;
+import io.opensphere.core.cache.jdbc.codec.ValueCodec;
+import io.opensphere.core.cache.jdbc.codec.ValueCodecRegistry;
+import io.opensphere.core.cache.matcher.PropertyMatcher;
+import io.opensphere.core.util.lang.Serialization;
+
+/**
+ * A translator for serializable property types that have a codec in the
+ * {@link ValueCodecRegistry}. Values are written in the codec's compact form.
+ * Values written with Java serialization before the codec existed are still
+ * read, but query parameters are only set in the codec's form, so equality
+ * queries do not match such values.
+ *
+ * @param <T> The property type.
+ */
+public class CodecTranslator<T extends Serializable> extends AbstractValueTranslator<T>
+{
+    /** The property type. */
+    private final Class<T> myType;
+
+    /**
+     * Constructor.
+     *
+     * @param type The property type, which must have a codec of its own.
+     */
+    public CodecTranslator(Class<T> type)
+    {
+        ValueCodec<?> codec = ValueCodecRegistry.getInstance().getCodec(type);
+        if (codec == null || !codec.getType().equals(type))
+        {
+            throw new IllegalArgumentException("Type " + type.getName() + " does not have a value codec.");
+        }
+        myType = type;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see io.opensphere.core.cache.jdbc.type.ValueTranslator#getType()
+     */
+    @Override
+    public Class<T> getType()
+    {
+        return myType;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see io.opensphere.core.cache.jdbc.type.ValueTranslator#getValue(java.lang.Class,
+     *      long, int, java.sql.ResultSet,
+     *      io.opensphere.core.cache.matcher.PropertyMatcher,
+     *      java.util.Collection)
+     */
+    @Override
+    public int getValue(Class<? extends T> type, long sizeBytes, int column, ResultSet rs, PropertyMatcher<? extends T> filter,
+            Collection<? super T> results) throws CacheException
+    {
+        try
+        {
+            byte[] bytes = rs.getBytes(column);
+            Object object;
+            if (bytes == null)
+            {
+                object = null;
+            }
+            else if (ValueCodecRegistry.isEncoded(bytes))
+            {
+                object = ValueCodecRegistry.getInstance().decode(bytes);
+            }
+            else
+            {
+                object = deserialize(bytes);
+            }
+            if (filter == null || filter.matches(object))
+            {
+                results.add(type.isInstance(object) ? type.cast(object) : null);
+            }
+            return column + 1;
+        }
+        catch (IOException e)
+        {
+            throw new CacheException("Failed to decode object: " + e, e);
+        }
+        catch (ClassNotFoundException e)
+        {
+            throw new CacheException("Failed to find class for object: " + e, e);
+        }
+        catch (SQLException e)
+        {
+            throw new CacheException("Failed to get value from result set: " + e, e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see io.opensphere.core.cache.jdbc.type.ValueTranslator#setValue(java.sql.PreparedStatement,
+     *      int, java.lang.Object, boolean)
+     */
+    @Override
+    public int setValue(PreparedStatement pstmt, int column, T value, boolean forInsert) throws CacheException, SQLException
+    {
+        try
+        {
+            pstmt.setBytes(column, ValueCodecRegistry.getInstance().encode(myType, value));
+            return column + 1;
+        }
+        catch (IOException e)
+        {
+            throw new CacheException("Cannot insert object into prepared statement: " + e, e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see io.opensphere.core.cache.jdbc.type.ValueTranslator#setValue(io.opensphere.core.cache.jdbc.type.ParameterBuffer,
+     *      int, java.lang.Object)
+     */
+    @Override
+    public int setValue(ParameterBuffer buffer, int column, T value) throws CacheException
+    {
+        try
+        {
+            buffer.setBytes(column, ValueCodecRegistry.getInstance().encode(myType, value));
+            return column + 1;
+        }
+        catch (IOException e)
+        {
+            throw new CacheException("Cannot encode object: " + e, e);
+        }
+    }
+
+    /**
+     * Read a value that was written with Java serialization.
+     *
+     * @param bytes The bytes.
+     * @return The value.
+     * @throws IOException If the value cannot be read.
+     * @throws ClassNotFoundException If the class of the value cannot be
+     *             found.
+     */
+    protected Serializable deserialize(byte[] bytes) throws IOException, ClassNotFoundException
+    {
+        return Serialization.deserialize(bytes);
+    }
+}
@@ -76,4 +76,20 @@ public class GeometryTranslator extends AbstractValueTranslator<Geometry>
 
         return column + 1;
     }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see io.opensphere.core.cache.jdbc.type.ValueTranslator#setValue(io.opensphere.core.cache.jdbc.type.ParameterBuffer,
+     *      int, java.lang.Object)
+     */
+    @Override
+    public int setValue(ParameterBuffer buffer, int column, Geometry value)
+    {
+        Utilities.checkNull(value, "value");
+
+        buffer.setBytes(column, new WKBWriter().write(value));
+
+        return column + 1;
+    }
 }
@@ -72,4 +72,17 @@ public class InputStreamTranslator extends AbstractValueTranslator<InputStream>
         pstmt.setBinaryStream(column, value);
         return column + 1;
     }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see io.opensphere.core.cache.jdbc.type.ValueTranslator#setValue(io.opensphere.core.cache.jdbc.type.ParameterBuffer,
+     *      int, java.lang.Object)
+     */
+    @Override
+    public int setValue(ParameterBuffer buffer, int column, InputStream value)
+    {
+        buffer.setBinaryStream(column, value);
+        return column + 1;
+    }
 }
@@ -63,4 +63,17 @@ public class ObjectTranslator extends AbstractValueTranslator<Object>
         pstmt.setObject(column, value);
         return column + 1;
     }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see io.opensphere.core.cache.jdbc.type.ValueTranslator#setValue(io.opensphere.core.cache.jdbc.type.ParameterBuffer,
+     *      int, java.lang.Object)
+     */
+    @Override
+    public int setValue(ParameterBuffer buffer, int column, Object value)
+    {
+        buffer.setObject(column, value);
+        return column + 1;
+    }
 }
@@ -0,0 +1,252 @@
+package io.opensphere.core.cache.jdbc.type;
+
+import java.io.InputStream;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Holds the statement parameters for a number of rows, so that values can be
+ * translated on one thread and set in a statement on another. Primitive
+ * parameters are kept in a primitive array, and each parameter is set with
+ * the matching typed setter.
+ */
+public class ParameterBuffer
+{
+    /** Parameter kind for {@link PreparedStatement#setBinaryStream}. */
+    private static final byte KIND_BINARY_STREAM = 0;
+
+    /** Parameter kind for {@link PreparedStatement#setBytes}. */
+    private static final byte KIND_BYTES = 1;
+
+    /** Parameter kind for {@link PreparedStatement#setLong}. */
+    private static final byte KIND_LONG = 2;
+
+    /** Parameter kind for {@link PreparedStatement#setObject(int, Object)}. */
+    private static final byte KIND_OBJECT = 3;
+
+    /**
+     * Parameter kind for {@link PreparedStatement#setObject(int, Object, int)}.
+     */
+    private static final byte KIND_OBJECT_WITH_TYPE = 4;
+
+    /** Parameter kind for {@link PreparedStatement#setString}. */
+    private static final byte KIND_STRING = 5;
+
+    /** The column index of each parameter. */
+    private int[] myColumns;
+
+    /** The kind of each parameter. */
+    private byte[] myKinds;
+
+    /**
+     * The value of each long parameter, and the SQL type of each object
+     * parameter that has one.
+     */
+    private long[] myLongs;
+
+    /** The value of each parameter that is not a long. */
+    private Object[] myObjects;
+
+    /** The number of parameters. */
+    private int myParameterCount;
+
+    /** The number of rows. */
+    private int myRowCount;
+
+    /** The index after the last parameter of each row. */
+    private int[] myRowEnds;
+
+    /**
+     * Constructor.
+     *
+     * @param rowCapacity The expected number of rows.
+     * @param parametersPerRow The expected number of parameters in each row.
+     */
+    public ParameterBuffer(int rowCapacity, int parametersPerRow)
+    {
+        int capacity = Math.max(1, rowCapacity * parametersPerRow);
+        myColumns = new int[capacity];
+        myKinds = new byte[capacity];
+        myLongs = new long[capacity];
+        myObjects = new Object[capacity];
+        myRowEnds = new int[Math.max(1, rowCapacity)];
+    }
+
+    /**
+     * Set the parameters of a row in a statement.
+     *
+     * @param row The row index.
+     * @param pstmt The statement.
+     * @throws SQLException If a parameter cannot be set.
+     */
+    public void applyRow(int row, PreparedStatement pstmt) throws SQLException
+    {
+        if (row < 0 || row >= myRowCount)
+        {
+            throw new IndexOutOfBoundsException("Row " + row + " is not within [0, " + myRowCount + ")");
+        }
+        for (int index = row == 0 ? 0 : myRowEnds[row - 1]; index < myRowEnds[row]; ++index)
+        {
+            int column = myColumns[index];
+            switch (myKinds[index])
+            {
+                case KIND_BINARY_STREAM:
+                    pstmt.setBinaryStream(column, (InputStream)myObjects[index]);
+                    break;
+                case KIND_BYTES:
+                    pstmt.setBytes(column, (byte[])myObjects[index]);
+                    break;
+                case KIND_LONG:
+                    pstmt.setLong(column, myLongs[index]);
+                    break;
+                case KIND_OBJECT:
+                    pstmt.setObject(column, myObjects[index]);
+                    break;
+                case KIND_OBJECT_WITH_TYPE:
+                    pstmt.setObject(column, myObjects[index], (int)myLongs[index]);
+                    break;
+                case KIND_STRING:
+                    pstmt.setString(column, (String)myObjects[index]);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown parameter kind: " + myKinds[index]);
+            }
+        }
+    }
+
+    /**
+     * Remove all of the rows.
+     */
+    public void clear()
+    {
+        Arrays.fill(myObjects, 0, myParameterCount, null);
+        myParameterCount = 0;
+        myRowCount = 0;
+    }
+
+    /**
+     * End the current row. The parameters set after this belong to the next
+     * row.
+     */
+    public void endRow()
+    {
+        if (myRowCount == myRowEnds.length)
+        {
+            myRowEnds = Arrays.copyOf(myRowEnds, myRowEnds.length * 2);
+        }
+        myRowEnds[myRowCount++] = myParameterCount;
+    }
+
+    /**
+     * Get the number of parameters that have been set.
+     *
+     * @return The number of parameters.
+     */
+    public int getParameterCount()
+    {
+        return myParameterCount;
+    }
+
+    /**
+     * Get the number of rows that have been ended.
+     *
+     * @return The number of rows.
+     */
+    public int getRowCount()
+    {
+        return myRowCount;
+    }
+
+    /**
+     * Set a binary stream parameter.
+     *
+     * @param column The column index.
+     * @param value The value.
+     */
+    public void setBinaryStream(int column, InputStream value)
+    {
+        add(column, KIND_BINARY_STREAM, 0L, value);
+    }
+
+    /**
+     * Set a byte array parameter.
+     *
+     * @param column The column index.
+     * @param value The value.
+     */
+    public void setBytes(int column, byte[] value)
+    {
+        add(column, KIND_BYTES, 0L, value);
+    }
+
+    /**
+     * Set a long parameter.
+     *
+     * @param column The column index.
+     * @param value The value.
+     */
+    public void setLong(int column, long value)
+    {
+        add(column, KIND_LONG, value, null);
+    }
+
+    /**
+     * Set an object parameter.
+     *
+     * @param column The column index.
+     * @param value The value.
+     */
+    public void setObject(int column, Object value)
+    {
+        add(column, KIND_OBJECT, 0L, value);
+    }
+
+    /**
+     * Set an object parameter with an SQL type.
+     *
+     * @param column The column index.
+     * @param value The value.
+     * @param sqlType The SQL type, from {@link java.sql.Types}.
+     */
+    public void setObject(int column, Object value, int sqlType)
+    {
+        add(column, KIND_OBJECT_WITH_TYPE, sqlType, value);
+    }
+
+    /**
+     * Set a string parameter.
+     *
+     * @param column The column index.
+     * @param value The value.
+     */
+    public void setString(int column, String value)
+    {
+        add(column, KIND_STRING, 0L, value);
+    }
+
+    /**
+     * Add a parameter.
+     *
+     * @param column The column index.
+     * @param kind The kind of parameter.
+     * @param longValue The long value or SQL type.
+     * @param value The object value.
+     */
+    private void add(int column, byte kind, long longValue, Object value)
+    {
+        if (myParameterCount == myKinds.length)
+        {
+            int capacity = myKinds.length * 2;
+            myColumns = Arrays.copyOf(myColumns, capacity);
+            myKinds = Arrays.copyOf(myKinds, capacity);
+            myLongs = Arrays.copyOf(myLongs, capacity);
+            myObjects = Arrays.copyOf(myObjects, capacity);
+        }
+        myColumns[myParameterCount] = column;
+        myKinds[myParameterCount] = kind;
+        myLongs[myParameterCount] = longValue;
+        myObjects[myParameterCount] = value;
+        ++myParameterCount;
+    }
+}
@@ -8,11 +8,13 @@ import java.sql.SQLException;
 import java.util.Collection;
 
 import io.opensphere.core.cache.CacheException;
+import io.opensphere.core.cache.jdbc.codec.ValueCodecRegistry;
 import io.opensphere.core.cache.matcher.PropertyMatcher;
 import io.opensphere.core.util.lang.Serialization;
 
 /**
- * A translator used to handle serialized Java objects.
+ * A translator used to handle serialized Java objects. Property types with a
+ * value codec use a {@link CodecTranslator} instead.
  */
 public class SerializableTranslator extends AbstractValueTranslator<Serializable>
 {
@@ -41,7 +43,7 @@ public class SerializableTranslator extends AbstractValueTranslator<Serializable
     {
         try
         {
-            Object object = Serialization.deserialize(rs.getBytes(column));
+            Object object = ValueCodecRegistry.getInstance().decode(rs.getBytes(column));
             if (filter == null || filter.matches(object))
             {
                 results.add(type.isInstance(object) ? (Serializable)object : null);
@@ -82,4 +84,24 @@ public class SerializableTranslator extends AbstractValueTranslator<Serializable
             throw new CacheException("Cannot insert object into prepared statement: " + e, e);
         }
     }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see io.opensphere.core.cache.jdbc.type.ValueTranslator#setValue(io.opensphere.core.cache.jdbc.type.ParameterBuffer,
+     *      int, java.lang.Object)
+     */
+    @Override
+    public int setValue(ParameterBuffer buffer, int column, Serializable value) throws CacheException
+    {
+        try
+        {
+            buffer.setBytes(column, Serialization.serialize(value));
+            return column + 1;
+        }
+        catch (IOException e)
+        {
+            throw new CacheException("Cannot serialize object: " + e, e);
+        }
+    }
 }
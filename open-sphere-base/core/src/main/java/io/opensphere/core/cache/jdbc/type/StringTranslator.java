@@ -61,4 +61,17 @@ public class StringTranslator extends AbstractValueTranslator<String>
         pstmt.setString(column, value);
         return column + 1;
     }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see io.opensphere.core.cache.jdbc.type.ValueTranslator#setValue(io.opensphere.core.cache.jdbc.type.ParameterBuffer,
+     *      int, java.lang.Object)
+     */
+    @Override
+    public int setValue(ParameterBuffer buffer, int column, String value)
+    {
+        buffer.setString(column, value);
+        return column + 1;
+    }
 }
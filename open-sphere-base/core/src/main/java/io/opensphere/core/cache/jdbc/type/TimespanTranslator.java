@@ -90,4 +90,19 @@ public class TimespanTranslator extends AbstractValueTranslator<TimeSpan>
         }
         return index;
     }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see io.opensphere.core.cache.jdbc.type.ValueTranslator#setValue(io.opensphere.core.cache.jdbc.type.ParameterBuffer,
+     *      int, java.lang.Object)
+     */
+    @Override
+    public int setValue(ParameterBuffer buffer, int column, TimeSpan value)
+    {
+        Utilities.checkNull(value, "value");
+        buffer.setLong(column, value.isUnboundedStart() ? Long.MIN_VALUE : value.getStart());
+        buffer.setLong(column + 1, value.isUnboundedEnd() ? Long.MAX_VALUE : value.getEnd());
+        return column + 2;
+    }
 }
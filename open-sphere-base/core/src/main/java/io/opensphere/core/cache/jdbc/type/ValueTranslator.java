@@ -66,4 +66,16 @@ public interface ValueTranslator<T>
      * @throws SQLException If there is a database error.
      */
     int setValue(PreparedStatement pstmt, int column, T value, boolean forInsert) throws CacheException, SQLException;
+
+    /**
+     * Set a value for an insert in a parameter buffer, in the same form that
+     * {@link #setValue(PreparedStatement, int, Object, boolean)} would set it.
+     *
+     * @param buffer The parameter buffer.
+     * @param column The column index.
+     * @param value The value to set.
+     * @return The new column index.
+     * @throws CacheException If the value cannot be translated.
+     */
+    int setValue(ParameterBuffer buffer, int column, T value) throws CacheException;
 }
@@ -0,0 +1,379 @@
+package io.opensphere.core.cache.mem;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.opensphere.core.cache.CacheIdUtilities;
+import io.opensphere.core.cache.util.PropertyDescriptor;
+import io.opensphere.core.util.collections.New;
+
+/**
+ * In-memory storage for cached property values, organized by cache group and
+ * then by property, with the values of each property in a group held in
+ * arrays indexed by data id. Each group has its own lock, so groups can be
+ * read and written independently, and a whole group can be dropped without
+ * touching any other group.
+ * <p>
+ * Softly referenced values are counted against a byte budget. When a deposit
+ * takes the total over the budget, the soft values of the least recently used
+ * groups are dropped until the total is back under the budget.
+ */
+class GroupColumnStore
+{
+    /**
+     * The size assumed for a value when its property descriptor does not have
+     * an estimate.
+     */
+    private static final long DEFAULT_VALUE_SIZE_BYTES = Long
+            .getLong("opensphere.db.memoryCache.defaultValueSizeBytes", 64L).longValue();
+
+    /** The maximum number of soft bytes. */
+    private volatile long myBudgetBytes = Long.MAX_VALUE;
+
+    /** The properties that have ever been stored. */
+    private final Set<PropertyDescriptor<?>> myDescriptors = ConcurrentHashMap.newKeySet();
+
+    /** Lock held by the thread doing an eviction. */
+    private final ReentrantLock myEvictionLock = new ReentrantLock();
+
+    /** Map of group ids to the columns for those groups. */
+    private final Map<Integer, GroupColumns> myGroups = new ConcurrentHashMap<>();
+
+    /** The queue that soft pages are put on when they are cleared. */
+    private final ReferenceQueue<Object[]> myQueue = new ReferenceQueue<>();
+
+    /** The number of soft bytes currently accounted. */
+    private final AtomicLong mySoftBytes = new AtomicLong();
+
+    /**
+     * Find the end of the run of ids in the same group starting at an index.
+     *
+     * @param ids The ids.
+     * @param start The start of the run.
+     * @return The end of the run (exclusive).
+     */
+    private static int endOfGroup(long[] ids, int start)
+    {
+        int groupId = CacheIdUtilities.getGroupIdFromCombinedId(ids[start]);
+        int end = start + 1;
+        while (end < ids.length && CacheIdUtilities.getGroupIdFromCombinedId(ids[end]) == groupId)
+        {
+            ++end;
+        }
+        return end;
+    }
+
+    /**
+     * Remove all the values.
+     */
+    public void clear()
+    {
+        for (Integer groupId : myGroups.keySet())
+        {
+            removeGroup(groupId.intValue());
+        }
+        myDescriptors.clear();
+    }
+
+    /**
+     * Look up the values of a property for some ids.
+     *
+     * @param desc The property descriptor.
+     * @param ids The ids.
+     * @return The values, in the same order as the ids, with {@code null}s
+     *         for missing values, or {@code null} if the property has never
+     *         been stored.
+     */
+    public Object[] get(PropertyDescriptor<?> desc, long[] ids)
+    {
+        if (!myDescriptors.contains(desc))
+        {
+            return null;
+        }
+
+        drainQueue();
+        Object[] results = new Object[ids.length];
+        for (int start = 0, end; start < ids.length; start = end)
+        {
+            end = endOfGroup(ids, start);
+            GroupColumns group = myGroups.get(Integer.valueOf(CacheIdUtilities.getGroupIdFromCombinedId(ids[start])));
+            if (group == null)
+            {
+                continue;
+            }
+            Lock lock = group.getLock().readLock();
+            lock.lock();
+            try
+            {
+                group.touch();
+                ValueColumn column = group.getColumn(desc);
+                if (column != null)
+                {
+                    for (int index = start; index < end; ++index)
+                    {
+                        results[index] = column.get(CacheIdUtilities.getDataIdFromCombinedId(ids[index]));
+                    }
+                }
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Get the number of bytes accounted for soft values.
+     *
+     * @return The number of bytes.
+     */
+    public long getSoftBytes()
+    {
+        drainQueue();
+        return mySoftBytes.get();
+    }
+
+    /**
+     * Store the values of a property.
+     *
+     * @param desc The property descriptor.
+     * @param ids The ids. Ids of {@code -1} are skipped.
+     * @param values The values, in the same order as the ids.
+     * @param overwrite If existing values should be replaced.
+     * @param soft If the values should be softly referenced and counted
+     *            against the budget.
+     */
+    public void put(PropertyDescriptor<?> desc, long[] ids, List<? extends Object> values, boolean overwrite, boolean soft)
+    {
+        myDescriptors.add(desc);
+        drainQueue();
+        for (int start = 0, end; start < ids.length; start = end)
+        {
+            end = endOfGroup(ids, start);
+            Integer groupId = Integer.valueOf(CacheIdUtilities.getGroupIdFromCombinedId(ids[start]));
+            boolean stored = false;
+            while (!stored)
+            {
+                GroupColumns group = myGroups.computeIfAbsent(groupId, k -> new GroupColumns());
+                Lock lock = group.getLock().writeLock();
+                lock.lock();
+                try
+                {
+                    // A group removed since it was looked up must not be
+                    // revived, so look it up again.
+                    if (!group.isRemoved())
+                    {
+                        group.touch();
+                        ValueColumn column = group.getColumns().computeIfAbsent(desc,
+                            k -> new ValueColumn(getValueSizeBytes(k), myQueue, mySoftBytes));
+                        for (int index = start; index < end; ++index)
+                        {
+                            if (ids[index] != -1)
+                            {
+                                column.put(CacheIdUtilities.getDataIdFromCombinedId(ids[index]), values.get(index), overwrite,
+                                        soft);
+                            }
+                        }
+                        stored = true;
+                    }
+                }
+                finally
+                {
+                    lock.unlock();
+                }
+            }
+        }
+
+        if (soft)
+        {
+            evictIfOverBudget();
+        }
+    }
+
+    /**
+     * Remove all the values for some ids.
+     *
+     * @param ids The ids.
+     * @return Map of property descriptors to the removed values, in the same
+     *         order as the ids, with {@code null}s for values that were not
+     *         present. Properties with no removed values are omitted.
+     */
+    public Map<PropertyDescriptor<?>, Object[]> remove(long[] ids)
+    {
+        Map<PropertyDescriptor<?>, Object[]> removed = New.map();
+        for (int start = 0, end; start < ids.length; start = end)
+        {
+            end = endOfGroup(ids, start);
+            GroupColumns group = myGroups.get(Integer.valueOf(CacheIdUtilities.getGroupIdFromCombinedId(ids[start])));
+            if (group == null)
+            {
+                continue;
+            }
+            Lock lock = group.getLock().writeLock();
+            lock.lock();
+            try
+            {
+                for (Map.Entry<PropertyDescriptor<?>, ValueColumn> entry : group.getColumns().entrySet())
+                {
+                    ValueColumn column = entry.getValue();
+                    for (int index = start; index < end; ++index)
+                    {
+                        Object value = column.remove(CacheIdUtilities.getDataIdFromCombinedId(ids[index]));
+                        if (value != null)
+                        {
+                            removed.computeIfAbsent(entry.getKey(), k -> new Object[ids.length])[index] = value;
+                        }
+                    }
+                }
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Remove all the values for some groups.
+     *
+     * @param groupIds The group ids.
+     */
+    public void removeGroups(int[] groupIds)
+    {
+        for (int groupId : groupIds)
+        {
+            removeGroup(groupId);
+        }
+    }
+
+    /**
+     * Remove all the softly referenced values.
+     */
+    public void removeSoftValues()
+    {
+        for (GroupColumns group : myGroups.values())
+        {
+            Lock lock = group.getLock().writeLock();
+            lock.lock();
+            try
+            {
+                group.releaseSoftPages();
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Set the maximum number of bytes for soft values, dropping values if the
+     * current total is over the new budget.
+     *
+     * @param bytes The number of bytes.
+     */
+    public void setSoftBudgetBytes(long bytes)
+    {
+        myBudgetBytes = bytes;
+        evictIfOverBudget();
+    }
+
+    /**
+     * Release the bytes for soft pages cleared by the garbage collector.
+     */
+    private void drainQueue()
+    {
+        Reference<? extends Object[]> ref;
+        while ((ref = myQueue.poll()) != null)
+        {
+            ((ValueColumn.SoftPage)ref).release(mySoftBytes);
+        }
+    }
+
+    /**
+     * If the soft values are over budget, drop the soft values of the least
+     * recently used groups until the total is at least a tenth under the
+     * budget. Only one thread evicts at a time; others return immediately.
+     */
+    private void evictIfOverBudget()
+    {
+        drainQueue();
+        long budget = myBudgetBytes;
+        if (mySoftBytes.get() <= budget || !myEvictionLock.tryLock())
+        {
+            return;
+        }
+        try
+        {
+            List<GroupColumns> groups = New.list(myGroups.values());
+            groups.sort(Comparator.comparingLong(GroupColumns::getLastAccessNanos));
+            long target = budget - budget / 10;
+            for (GroupColumns group : groups)
+            {
+                if (mySoftBytes.get() <= target)
+                {
+                    break;
+                }
+                Lock lock = group.getLock().writeLock();
+                lock.lock();
+                try
+                {
+                    group.releaseSoftPages();
+                }
+                finally
+                {
+                    lock.unlock();
+                }
+            }
+        }
+        finally
+        {
+            myEvictionLock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of bytes to account for each value of a property.
+     *
+     * @param desc The property descriptor.
+     * @return The number of bytes.
+     */
+    private long getValueSizeBytes(PropertyDescriptor<?> desc)
+    {
+        long estimate = desc.getEstimatedValueSizeBytes();
+        return estimate > 0L ? estimate : DEFAULT_VALUE_SIZE_BYTES;
+    }
+
+    /**
+     * Remove one group.
+     *
+     * @param groupId The group id.
+     */
+    private void removeGroup(int groupId)
+    {
+        GroupColumns group = myGroups.remove(Integer.valueOf(groupId));
+        if (group != null)
+        {
+            Lock lock = group.getLock().writeLock();
+            lock.lock();
+            try
+            {
+                group.remove();
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+    }
+}
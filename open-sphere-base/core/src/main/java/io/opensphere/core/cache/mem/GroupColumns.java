@@ -0,0 +1,112 @@
+package io.opensphere.core.cache.mem;
+
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import io.opensphere.core.cache.util.PropertyDescriptor;
+import io.opensphere.core.util.collections.New;
+
+/**
+ * The cached values for one cache group: a {@link ValueColumn} for each
+ * property, all indexed by data id. Callers must hold the appropriate side of
+ * {@link #getLock()} while using the columns.
+ */
+class GroupColumns
+{
+    /** The columns for the properties in the group. */
+    private final Map<PropertyDescriptor<?>, ValueColumn> myColumns = New.map();
+
+    /** The last time the group was used, from {@link System#nanoTime()}. */
+    private volatile long myLastAccessNanos = System.nanoTime();
+
+    /** The lock that guards the columns. */
+    private final ReadWriteLock myLock = new ReentrantReadWriteLock();
+
+    /** If the group has been removed from the cache. */
+    private boolean myRemoved;
+
+    /**
+     * Get the column for a property.
+     *
+     * @param desc The property descriptor.
+     * @return The column, or {@code null} if there is none.
+     */
+    public ValueColumn getColumn(PropertyDescriptor<?> desc)
+    {
+        return myColumns.get(desc);
+    }
+
+    /**
+     * Get the columns in the group. The caller must hold the lock.
+     *
+     * @return The columns.
+     */
+    public Map<PropertyDescriptor<?>, ValueColumn> getColumns()
+    {
+        return myColumns;
+    }
+
+    /**
+     * Get the last time the group was used.
+     *
+     * @return The access time in nanoseconds.
+     */
+    public long getLastAccessNanos()
+    {
+        return myLastAccessNanos;
+    }
+
+    /**
+     * Get the lock that guards the group.
+     *
+     * @return The lock.
+     */
+    public ReadWriteLock getLock()
+    {
+        return myLock;
+    }
+
+    /**
+     * Determine if the group has been removed from the cache. Writers that
+     * find a removed group must look it up again. The caller must hold the
+     * lock.
+     *
+     * @return {@code true} if the group is removed.
+     */
+    public boolean isRemoved()
+    {
+        return myRemoved;
+    }
+
+    /**
+     * Drop the soft pages from all the columns. The caller must hold the write
+     * lock.
+     */
+    public void releaseSoftPages()
+    {
+        for (ValueColumn column : myColumns.values())
+        {
+            column.releaseSoftPages();
+        }
+    }
+
+    /**
+     * Mark the group removed and drop its soft pages. The caller must hold the
+     * write lock.
+     */
+    public void remove()
+    {
+        myRemoved = true;
+        releaseSoftPages();
+        myColumns.clear();
+    }
+
+    /**
+     * Record that the group was used.
+     */
+    public void touch()
+    {
+        myLastAccessNanos = System.nanoTime();
+    }
+}
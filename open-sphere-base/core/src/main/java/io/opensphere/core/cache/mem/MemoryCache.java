@@ -15,11 +15,9 @@ import java.util.concurrent.Executor;
 import org.apache.log4j.Logger;
 
 import gnu.trove.iterator.TIntIterator;
-import gnu.trove.iterator.TLongObjectIterator;
 import gnu.trove.list.TIntList;
 import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.map.hash.TIntObjectHashMap;
-import gnu.trove.map.hash.TLongObjectHashMap;
 import gnu.trove.set.TLongSet;
 import gnu.trove.set.hash.TLongHashSet;
 import io.opensphere.core.cache.Cache;
@@ -49,9 +47,6 @@ import io.opensphere.core.util.collections.New;
 import io.opensphere.core.util.lang.ImpossibleException;
 import io.opensphere.core.util.lang.Pair;
 import io.opensphere.core.util.lang.StringUtilities;
-import io.opensphere.core.util.ref.Reference;
-import io.opensphere.core.util.ref.SoftReference;
-import io.opensphere.core.util.ref.StrongReference;
 
 /**
  * Implementation of the {@link Cache} interface that uses the VM memory.
@@ -66,10 +61,8 @@ public class MemoryCache implements Cache
     private static final long MAX_SOFT_CACHE_VALUE_BYTES = Long
             .getLong("opensphere.db.memoryCache.maxValueSizeBytes", Constants.BYTES_PER_KILOBYTE).longValue();
 
-    /** A map of property descriptors to primary keys to property values. */
-    // TODO: Change this to be a map of group ids to descriptors to arrays of
-    // values
-    private final Map<PropertyDescriptor<?>, TLongObjectHashMap<Reference<Object>>> myCacheMap = New.map();
+    /** The property values, by group id, then property, then data id. */
+    private final GroupColumnStore myStore = new GroupColumnStore();
 
     /** Flag indicating if caching for persistent deposits is enabled. */
     private volatile boolean myCachingForPersistentDepositsEnabled = true;
@@ -112,10 +105,7 @@ public class MemoryCache implements Cache
     @Override
     public void clear()
     {
-        synchronized (myCacheMap)
-        {
-            myCacheMap.clear();
-        }
+        myStore.clear();
         if (myNestedCache != null)
         {
             myNestedCache.clear();
@@ -192,12 +182,6 @@ public class MemoryCache implements Cache
             myNestedCache.clear(ids, listener);
         }
 
-        Map<PropertyDescriptor<?>, TLongObjectHashMap<Reference<Object>>> cacheCopy;
-        synchronized (myCacheMap)
-        {
-            cacheCopy = new HashMap<>(myCacheMap);
-        }
-
         Map<PropertyDescriptor, Pair<TLongSet, List<Object>>> removed;
         if (listener == null)
         {
@@ -218,21 +202,19 @@ public class MemoryCache implements Cache
                     New.<PropertyDescriptor, Pair<TLongSet, List<Object>>>map(), PropertyDescriptor.class, factory);
         }
 
-        for (final Entry<PropertyDescriptor<?>, TLongObjectHashMap<Reference<Object>>> entry : cacheCopy.entrySet())
+        for (final Entry<PropertyDescriptor<?>, Object[]> entry : myStore.remove(ids).entrySet())
         {
             final PropertyDescriptor<?> key = entry.getKey();
-            final TLongObjectHashMap<Reference<Object>> map = entry.getValue();
-            synchronized (map)
+            final Object[] objs = entry.getValue();
+            if (removed != null)
             {
                 for (int index = 0; index < ids.length; ++index)
                 {
-                    final Reference<Object> remove = map.remove(ids[index]);
-                    final Object obj = remove == null ? null : remove.get();
-                    if (obj != null && removed != null)
+                    if (objs[index] != null)
                     {
                         final Pair<TLongSet, List<Object>> pair = removed.get(key);
                         pair.getFirstObject().add(ids[index]);
-                        removed.get(key).getSecondObject().add(obj);
+                        pair.getSecondObject().add(objs[index]);
                     }
                 }
             }
@@ -251,32 +233,7 @@ public class MemoryCache implements Cache
     @Override
     public void clearGroups(int[] groupIds) throws CacheException
     {
-        Map<PropertyDescriptor<?>, TLongObjectHashMap<Reference<Object>>> cacheCopy;
-        synchronized (myCacheMap)
-        {
-            cacheCopy = new HashMap<>(myCacheMap);
-        }
-
-        // TODO: This would be much faster if it were indexed by group.
-        final Collection<TLongObjectHashMap<Reference<Object>>> values = cacheCopy.values();
-        for (final TLongObjectHashMap<Reference<Object>> map : values)
-        {
-            synchronized (map)
-            {
-                for (final TLongObjectIterator<Reference<Object>> iterator = map.iterator(); iterator.hasNext();)
-                {
-                    iterator.advance();
-                    for (int index = 0; index < groupIds.length; ++index)
-                    {
-                        if (CacheIdUtilities.getGroupIdFromCombinedId(iterator.key()) == groupIds[index])
-                        {
-                            iterator.remove();
-                            break;
-                        }
-                    }
-                }
-            }
-        }
+        myStore.removeGroups(groupIds);
     }
 
     @Override
@@ -459,7 +416,7 @@ public class MemoryCache implements Cache
             {
                 for (final PropertyDescriptor<?> desc : resultMap.getPropertyDescriptors())
                 {
-                    if (desc.getEstimatedValueSizeBytes() <= MAX_SOFT_CACHE_VALUE_BYTES)
+                    if (myCachingForPersistentDepositsEnabled && desc.getEstimatedValueSizeBytes() <= MAX_SOFT_CACHE_VALUE_BYTES)
                     {
                         final boolean overwrite = true;
                         final boolean soft = true;
@@ -549,33 +506,15 @@ public class MemoryCache implements Cache
     @Override
     public void setInMemorySizeBytes(long bytes) throws CacheException
     {
-        // This cache does not track in-memory size, but if the setting is zero,
-        // disable the cache for soft reference values.
+        // Soft reference values are limited to the in-memory size. If the
+        // setting is zero, disable the cache for soft reference values.
         final boolean wasEnabled = myCachingForPersistentDepositsEnabled;
         myCachingForPersistentDepositsEnabled = bytes > 0;
         if (wasEnabled && bytes <= 0)
         {
-            Collection<TLongObjectHashMap<Reference<Object>>> values;
-            synchronized (myCacheMap)
-            {
-                values = New.collection(myCacheMap.values());
-            }
-
-            for (final TLongObjectHashMap<Reference<Object>> map : values)
-            {
-                synchronized (map)
-                {
-                    for (final TLongObjectIterator<Reference<Object>> iterator = map.iterator(); iterator.hasNext();)
-                    {
-                        iterator.advance();
-                        if (iterator.value() instanceof SoftReference)
-                        {
-                            iterator.remove();
-                        }
-                    }
-                }
-            }
+            myStore.removeSoftValues();
         }
+        myStore.setSoftBudgetBytes(bytes > 0 ? bytes : 0L);
 
         myNestedCache.setInMemorySizeBytes(bytes);
     }
@@ -677,12 +616,8 @@ public class MemoryCache implements Cache
 
         int missingIndex = missingCount;
 
-        TLongObjectHashMap<Reference<Object>> cache;
-        synchronized (myCacheMap)
-        {
-            cache = myCacheMap.get(propertyDescriptor);
-        }
-        if (cache == null)
+        final Object[] found = myStore.get(propertyDescriptor, ids);
+        if (found == null)
         {
             for (int index = 0; index < ids.length; ++index)
             {
@@ -700,65 +635,47 @@ public class MemoryCache implements Cache
         }
         else
         {
-            synchronized (cache)
+            for (int index = 0; index < ids.length; ++index)
             {
-                for (int index = 0; index < ids.length; ++index)
+                @SuppressWarnings("unchecked")
+                T obj = (T)found[index];
+                if (obj == null)
                 {
-                    final Reference<Object> ref = cache.get(ids[index]);
-                    T obj;
-                    if (ref == null)
-                    {
-                        obj = null;
-                    }
-                    else
+                    if (missingFlags != null && !missingFlags[index] && missingIndex < ids.length)
                     {
-                        @SuppressWarnings("unchecked")
-                        final
-                        T cast = (T)ref.get();
-                        obj = cast;
-                        if (obj == null)
+                        missingFlags[index] = true;
+                        if (missingIndices != null)
                         {
-                            cache.remove(ids[index]);
+                            missingIndices[missingIndex] = index;
                         }
-                    }
-                    if (obj == null)
-                    {
-                        if (missingFlags != null && !missingFlags[index] && missingIndex < ids.length)
+                        if (missingIds != null)
                         {
-                            missingFlags[index] = true;
-                            if (missingIndices != null)
-                            {
-                                missingIndices[missingIndex] = index;
-                            }
-                            if (missingIds != null)
-                            {
-                                missingIds[missingIndex] = ids[index];
-                            }
-                            ++missingIndex;
+                            missingIds[missingIndex] = ids[index];
                         }
+                        ++missingIndex;
                     }
-                    else if (propertyDescriptor instanceof PropertyArrayDescriptor)
+                }
+                else if (propertyDescriptor instanceof PropertyArrayDescriptor)
+                {
+                    // Only put in the requested values, to be consistent
+                    // with the persistent cache behavior.
+                    final Object[] arr = (Object[])obj;
+                    final PropertyArrayDescriptor pad = (PropertyArrayDescriptor)propertyDescriptor;
+                    final int[] activeColumns = pad.getActiveColumns();
+                    if (activeColumns.length < arr.length)
                     {
-                        // Only put in the requested values, to be consistent
-                        // with the persistent cache behavior.
-                        final Object[] arr = (Object[])obj;
-                        final PropertyArrayDescriptor pad = (PropertyArrayDescriptor)propertyDescriptor;
-                        final int[] activeColumns = pad.getActiveColumns();
-                        if (activeColumns.length < arr.length)
+                        final Object[] filtered = new Object[activeColumns.length];
+                        for (int ix = 0; ix < activeColumns.length; ++ix)
                         {
-                            final Object[] filtered = new Object[activeColumns.length];
-                            for (int ix = 0; ix < activeColumns.length; ++ix)
-                            {
-                                filtered[ix] = arr[activeColumns[ix]];
-                            }
-                            @SuppressWarnings("unchecked")
-                            final
-                            T cast = (T)filtered;
-                            obj = cast;
+                            filtered[ix] = arr[activeColumns[ix]];
                         }
+                        @SuppressWarnings("unchecked")
+                        final
+                        T cast = (T)filtered;
+                        obj = cast;
                     }
-                    result.add(obj);
                 }
+                result.add(obj);
             }
         }
         return missingIndex;
@@ -903,31 +820,7 @@ public class MemoryCache implements Cache
             return;
         }
 
-        // Get the value map for this property name.
-        TLongObjectHashMap<Reference<Object>> map;
-        synchronized (myCacheMap)
-        {
-            map = myCacheMap.get(propertyDescriptor);
-            if (map == null)
-            {
-                map = new TLongObjectHashMap<>();
-                myCacheMap.put(propertyDescriptor, map);
-            }
-        }
-
-        synchronized (map)
-        {
-            for (int index = 0; index < ids.length; ++index)
-            {
-                final long id = ids[index];
-                if (id != -1 && (overwrite || !map.containsKey(id)))
-                {
-                    final Object value = values.get(index);
-                    final Reference<Object> ref = soft ? new SoftReference<>(value) : new StrongReference<>(value);
-                    map.put(id, ref);
-                }
-            }
-        }
+        myStore.put(propertyDescriptor, ids, values, overwrite, soft);
     }
 
     /**
@@ -1039,31 +932,18 @@ public class MemoryCache implements Cache
      */
     private Map<PropertyDescriptor<?>, Iterable<?>> removeValues(DataModelCategory dataModelCategory, long[] ids)
     {
-        Map<PropertyDescriptor<?>, TLongObjectHashMap<Reference<Object>>> transientCache;
-        synchronized (myCacheMap)
-        {
-            transientCache = new HashMap<>(myCacheMap);
-        }
-
         final Map<PropertyDescriptor<?>, Iterable<?>> removedValues = new HashMap<>();
-        for (final Entry<PropertyDescriptor<?>, TLongObjectHashMap<Reference<Object>>> entry : transientCache.entrySet())
+        for (final Entry<PropertyDescriptor<?>, Object[]> entry : myStore.remove(ids).entrySet())
         {
             @SuppressWarnings("unchecked")
             final
             PropertyDescriptor<Object> propertyDescriptor = (PropertyDescriptor<Object>)entry.getKey();
-            final TLongObjectHashMap<Reference<Object>> map = entry.getValue();
             final List<Object> values = new ArrayList<>(ids.length);
-            synchronized (map)
+            for (final Object value : entry.getValue())
             {
-                for (int index = 0; index < ids.length; ++index)
+                if (value != null)
                 {
-                    final long id = ids[index];
-                    final Reference<Object> obj = map.remove(id);
-                    final Object value = obj == null ? null : obj.get();
-                    if (value != null)
-                    {
-                        values.add(value);
-                    }
+                    values.add(value);
                 }
             }
 
@@ -0,0 +1,327 @@
+package io.opensphere.core.cache.mem;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.opensphere.core.util.Constants;
+
+/**
+ * The values of one property for one cache group, stored in fixed-size pages
+ * of object arrays indexed by data id. Values deposited by transient accessors
+ * are kept in strongly referenced pages; values that can be re-read from a
+ * persistent cache are kept in softly referenced pages, so that the garbage
+ * collector can reclaim them a page at a time.
+ * <p>
+ * This class is not thread-safe; the owning {@link GroupColumns} guards it
+ * with its lock.
+ */
+class ValueColumn
+{
+    /** The number of bits in the index of a value within a page. */
+    static final int PAGE_BITS = 10;
+
+    /** The number of values in a page. */
+    static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    /** The mask for the index of a value within a page. */
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    /** The accounted size of a value slot, beyond the value itself. */
+    private static final long SLOT_SIZE_BYTES = Constants.REFERENCE_SIZE_BYTES;
+
+    /** The number of accounted bytes for each soft value in this column. */
+    private final long myBytesPerValue;
+
+    /** The queue the soft pages are registered with. */
+    private final ReferenceQueue<Object[]> myQueue;
+
+    /** The total number of accounted soft bytes for the whole cache. */
+    private final AtomicLong mySoftBytes;
+
+    /** The softly referenced pages, indexed by page number. */
+    private SoftPage[] mySoftPages = new SoftPage[0];
+
+    /** The strongly referenced pages, indexed by page number. */
+    private Object[][] myStrongPages = new Object[0][];
+
+    /**
+     * Constructor.
+     *
+     * @param bytesPerValue The estimated size of a value in this column.
+     * @param queue The queue to register soft pages with.
+     * @param softBytes The soft byte counter for the whole cache.
+     */
+    public ValueColumn(long bytesPerValue, ReferenceQueue<Object[]> queue, AtomicLong softBytes)
+    {
+        myBytesPerValue = bytesPerValue + SLOT_SIZE_BYTES;
+        myQueue = queue;
+        mySoftBytes = softBytes;
+    }
+
+    /**
+     * Get a value.
+     *
+     * @param dataId The data id of the value.
+     * @return The value, or {@code null} if it is not present.
+     */
+    public Object get(int dataId)
+    {
+        int page = dataId >>> PAGE_BITS;
+        int slot = dataId & PAGE_MASK;
+        if (page < myStrongPages.length && myStrongPages[page] != null && myStrongPages[page][slot] != null)
+        {
+            return myStrongPages[page][slot];
+        }
+        if (page < mySoftPages.length && mySoftPages[page] != null)
+        {
+            Object[] values = mySoftPages[page].get();
+            return values == null ? null : values[slot];
+        }
+        return null;
+    }
+
+    /**
+     * Determine if this column holds no pages at all.
+     *
+     * @return {@code true} if the column is empty.
+     */
+    public boolean isEmpty()
+    {
+        return myStrongPages.length == 0 && mySoftPages.length == 0;
+    }
+
+    /**
+     * Store a value.
+     *
+     * @param dataId The data id of the value.
+     * @param value The value.
+     * @param overwrite If an existing value should be replaced.
+     * @param soft If the value should be softly referenced.
+     */
+    public void put(int dataId, Object value, boolean overwrite, boolean soft)
+    {
+        if (!overwrite && get(dataId) != null)
+        {
+            return;
+        }
+        if (soft)
+        {
+            removeStrong(dataId);
+            putSoft(dataId, value);
+        }
+        else
+        {
+            removeSoft(dataId);
+            putStrong(dataId, value);
+        }
+    }
+
+    /**
+     * Drop all the soft pages.
+     */
+    public void releaseSoftPages()
+    {
+        for (SoftPage page : mySoftPages)
+        {
+            if (page != null)
+            {
+                page.clear();
+                page.release(mySoftBytes);
+            }
+        }
+        mySoftPages = new SoftPage[0];
+    }
+
+    /**
+     * Remove a value.
+     *
+     * @param dataId The data id of the value.
+     * @return The removed value, or {@code null} if it was not present.
+     */
+    public Object remove(int dataId)
+    {
+        Object strong = removeStrong(dataId);
+        Object soft = removeSoft(dataId);
+        return strong == null ? soft : strong;
+    }
+
+    /**
+     * Store a soft value.
+     *
+     * @param dataId The data id of the value.
+     * @param value The value.
+     */
+    private void putSoft(int dataId, Object value)
+    {
+        int page = dataId >>> PAGE_BITS;
+        if (page >= mySoftPages.length)
+        {
+            if (value == null)
+            {
+                return;
+            }
+            mySoftPages = Arrays.copyOf(mySoftPages, newLength(mySoftPages.length, page));
+        }
+        Object[] values = mySoftPages[page] == null ? null : mySoftPages[page].get();
+        if (values == null)
+        {
+            if (value == null)
+            {
+                return;
+            }
+            values = new Object[PAGE_SIZE];
+            mySoftPages[page] = new SoftPage(values, myQueue);
+        }
+        int slot = dataId & PAGE_MASK;
+        if (values[slot] == null && value != null)
+        {
+            mySoftPages[page].addBytes(myBytesPerValue, mySoftBytes);
+        }
+        else if (values[slot] != null && value == null)
+        {
+            mySoftPages[page].addBytes(-myBytesPerValue, mySoftBytes);
+        }
+        values[slot] = value;
+    }
+
+    /**
+     * Store a strong value.
+     *
+     * @param dataId The data id of the value.
+     * @param value The value.
+     */
+    private void putStrong(int dataId, Object value)
+    {
+        int page = dataId >>> PAGE_BITS;
+        if (page >= myStrongPages.length)
+        {
+            if (value == null)
+            {
+                return;
+            }
+            myStrongPages = Arrays.copyOf(myStrongPages, newLength(myStrongPages.length, page));
+        }
+        if (myStrongPages[page] == null)
+        {
+            if (value == null)
+            {
+                return;
+            }
+            myStrongPages[page] = new Object[PAGE_SIZE];
+        }
+        myStrongPages[page][dataId & PAGE_MASK] = value;
+    }
+
+    /**
+     * Remove a soft value.
+     *
+     * @param dataId The data id of the value.
+     * @return The removed value, or {@code null} if it was not present.
+     */
+    private Object removeSoft(int dataId)
+    {
+        int page = dataId >>> PAGE_BITS;
+        if (page >= mySoftPages.length || mySoftPages[page] == null)
+        {
+            return null;
+        }
+        Object[] values = mySoftPages[page].get();
+        if (values == null)
+        {
+            return null;
+        }
+        int slot = dataId & PAGE_MASK;
+        Object value = values[slot];
+        if (value != null)
+        {
+            values[slot] = null;
+            mySoftPages[page].addBytes(-myBytesPerValue, mySoftBytes);
+        }
+        return value;
+    }
+
+    /**
+     * Remove a strong value.
+     *
+     * @param dataId The data id of the value.
+     * @return The removed value, or {@code null} if it was not present.
+     */
+    private Object removeStrong(int dataId)
+    {
+        int page = dataId >>> PAGE_BITS;
+        if (page >= myStrongPages.length || myStrongPages[page] == null)
+        {
+            return null;
+        }
+        int slot = dataId & PAGE_MASK;
+        Object value = myStrongPages[page][slot];
+        myStrongPages[page][slot] = null;
+        return value;
+    }
+
+    /**
+     * Get the new length for a page directory that must hold a page index.
+     *
+     * @param length The current length.
+     * @param page The page index.
+     * @return The new length.
+     */
+    private static int newLength(int length, int page)
+    {
+        return Math.max(page + 1, length + (length >> 1));
+    }
+
+    /**
+     * A softly referenced page that remembers how many bytes were accounted
+     * for it, so they can be released exactly once whether the page is
+     * dropped explicitly or cleared by the garbage collector.
+     */
+    static final class SoftPage extends SoftReference<Object[]>
+    {
+        /** The accounted bytes. Only changed while the page is reachable. */
+        private volatile long myBytes;
+
+        /** If the accounted bytes have been released. */
+        private final AtomicBoolean myReleased = new AtomicBoolean();
+
+        /**
+         * Constructor.
+         *
+         * @param values The page values.
+         * @param queue The queue to register with.
+         */
+        SoftPage(Object[] values, ReferenceQueue<Object[]> queue)
+        {
+            super(values, queue);
+        }
+
+        /**
+         * Release the accounted bytes from the cache total, unless they have
+         * already been released.
+         *
+         * @param total The cache total.
+         */
+        public void release(AtomicLong total)
+        {
+            if (myReleased.compareAndSet(false, true))
+            {
+                total.addAndGet(-myBytes);
+            }
+        }
+
+        /**
+         * Account for bytes added to or removed from the page.
+         *
+         * @param bytes The change in bytes.
+         * @param total The cache total.
+         */
+        void addBytes(long bytes, AtomicLong total)
+        {
+            myBytes += bytes;
+            total.addAndGet(bytes);
+        }
+    }
+}
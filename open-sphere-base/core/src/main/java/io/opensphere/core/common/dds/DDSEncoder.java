@@ -6,6 +6,8 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /* This code is a pure Java implementation of the DXT compression algorithm
  * described in the paper "Real-Time DXT Compression" dated May 20th 2006 by
@@ -48,6 +50,15 @@ public class DDSEncoder
 
     public static final int DDS_HEADER_SIZE = 128;
 
+    /**
+     * The approximate number of blocks encoded by one task when an image is
+     * compressed in parallel.
+     */
+    private static final int BLOCKS_PER_TASK = 1024;
+
+    /** Scratch arrays for encoding blocks, reused by each thread. */
+    private static final ThreadLocal<BlockScratch> SCRATCH = ThreadLocal.withInitial(BlockScratch::new);
+
     public enum CompressionType
     {
         DXT1, DXT1_Transparent, DXT5, UNCOMPRESSED
@@ -155,7 +166,7 @@ public class DDSEncoder
             buffer.order(ByteOrder.LITTLE_ENDIAN);
             buildHeaderDxt1(width, height, buffer);
             outFile.write(buffer.array());
-            compressImageDXT1(width, height, inRaster, outFile);
+            compressImageDXTn(width, height, type, inRaster, outFile);
         }
         else if (type == CompressionType.DXT1_Transparent)
         {
@@ -165,7 +176,7 @@ public class DDSEncoder
             buffer.order(ByteOrder.LITTLE_ENDIAN);
             buildHeaderDxt1(width, height, buffer);
             outFile.write(buffer.array());
-            compressImageDXT1_alpha(width, height, inRaster, outFile);
+            compressImageDXTn(width, height, type, inRaster, outFile);
         }
         else if (type == CompressionType.DXT5)
         {
@@ -175,7 +186,7 @@ public class DDSEncoder
             buffer.order(ByteOrder.LITTLE_ENDIAN);
             buildHeaderDxt5(width, height, buffer);
             outFile.write(buffer.array());
-            compressImageDXT5(width, height, inRaster, outFile);
+            compressImageDXTn(width, height, type, inRaster, outFile);
         }
         else if (type == CompressionType.UNCOMPRESSED)
         {
@@ -192,20 +203,15 @@ public class DDSEncoder
 
     public void encodeDDS(int width, int height, CompressionType type, byte[] inRaster, ByteBuffer outFile)
     {
-        if (type == CompressionType.DXT1)
+        if (type == CompressionType.DXT1 || type == CompressionType.DXT1_Transparent)
         {
             buildHeaderDxt1(width, height, outFile);
-            compressImageDXT1(width, height, inRaster, outFile);
-        }
-        else if (type == CompressionType.DXT1_Transparent)
-        {
-            buildHeaderDxt1(width, height, outFile);
-            compressImageDXT1_alpha(width, height, inRaster, outFile);
+            compressImageDXTn(width, height, type, inRaster, outFile);
         }
         else if (type == CompressionType.DXT5)
         {
             buildHeaderDxt5(width, height, outFile);
-            compressImageDXT5(width, height, inRaster, outFile);
+            compressImageDXTn(width, height, type, inRaster, outFile);
         }
         else if (type == CompressionType.UNCOMPRESSED)
         {
@@ -223,17 +229,9 @@ public class DDSEncoder
         }
         else
         {
-            if (type == CompressionType.DXT1)
+            if (type == CompressionType.DXT1 || type == CompressionType.DXT1_Transparent || type == CompressionType.DXT5)
             {
-                compressImageDXT1(width, height, inRaster, outFile);
-            }
-            else if (type == CompressionType.DXT1_Transparent)
-            {
-                compressImageDXT1_alpha(width, height, inRaster, outFile);
-            }
-            else if (type == CompressionType.DXT5)
-            {
-                compressImageDXT5(width, height, inRaster, outFile);
+                compressImageDXTn(width, height, type, inRaster, outFile);
             }
             else if (type == CompressionType.UNCOMPRESSED)
             {
@@ -520,13 +518,12 @@ public class DDSEncoder
 
         if (colorTo565Int(maxColor) < colorTo565Int(minColor))
         {
-            int[] temp = minColor.clone();
-            minColor[0] = maxColor[0];
-            minColor[1] = maxColor[1];
-            minColor[2] = maxColor[2];
-            maxColor[0] = temp[0];
-            maxColor[1] = temp[1];
-            maxColor[2] = temp[2];
+            for (int i = 0; i < 3; ++i)
+            {
+                int temp = minColor[i];
+                minColor[i] = maxColor[i];
+                maxColor[i] = temp;
+            }
         }
     }
 
@@ -1125,6 +1122,224 @@ public class DDSEncoder
 
     }
 
+    /**
+     * Compress an image to DXTn, encoding rows of blocks in parallel on the
+     * common fork-join pool. The result is the same as from the sequential
+     * {@code compressImageDXT1}, {@code compressImageDXT1_alpha} and
+     * {@code compressImageDXT5} methods. Images with dimensions that are not
+     * multiples of 4 are compressed sequentially.
+     *
+     * @param width The width of the image in pixels.
+     * @param height The height of the image in pixels.
+     * @param type The compression type, which must be a DXT type.
+     * @param raster The image raster, with 3 or 4 bytes per pixel.
+     * @param dxt The output buffer.
+     */
+    public void compressImageDXTn(int width, int height, CompressionType type, byte[] raster, ByteBuffer dxt)
+    {
+        if (!isParallelizable(width, height))
+        {
+            compressImageSequential(width, height, type, raster, dxt);
+        }
+        else if (dxt.hasArray())
+        {
+            int size = getCompressedSize(width, height, type);
+            compressImageDXTn(width, height, type, raster, dxt.array(), dxt.arrayOffset() + dxt.position());
+            dxt.position(dxt.position() + size);
+        }
+        else
+        {
+            byte[] data = new byte[getCompressedSize(width, height, type)];
+            compressImageDXTn(width, height, type, raster, data, 0);
+            dxt.put(data);
+        }
+    }
+
+    /**
+     * Compress an image to DXTn, encoding rows of blocks in parallel on the
+     * common fork-join pool, and write the result to a stream.
+     *
+     * @param width The width of the image in pixels.
+     * @param height The height of the image in pixels.
+     * @param type The compression type, which must be a DXT type.
+     * @param raster The image raster, with 3 or 4 bytes per pixel.
+     * @param dxt The output stream.
+     * @throws IOException If the stream cannot be written.
+     */
+    public void compressImageDXTn(int width, int height, CompressionType type, byte[] raster, OutputStream dxt)
+        throws IOException
+    {
+        if (!isParallelizable(width, height))
+        {
+            if (type == CompressionType.DXT1)
+            {
+                compressImageDXT1(width, height, raster, dxt);
+            }
+            else if (type == CompressionType.DXT1_Transparent)
+            {
+                compressImageDXT1_alpha(width, height, raster, dxt);
+            }
+            else
+            {
+                compressImageDXT5(width, height, raster, dxt);
+            }
+        }
+        else
+        {
+            byte[] data = new byte[getCompressedSize(width, height, type)];
+            compressImageDXTn(width, height, type, raster, data, 0);
+            dxt.write(data);
+        }
+    }
+
+    /**
+     * Compress an image to DXTn, encoding rows of blocks in parallel on the
+     * common fork-join pool.
+     *
+     * @param width The width of the image in pixels, a multiple of 4.
+     * @param height The height of the image in pixels, a multiple of 4.
+     * @param type The compression type, which must be a DXT type.
+     * @param raster The image raster, with 3 or 4 bytes per pixel.
+     * @param dxt The output array.
+     * @param offset The index in the output array of the first block.
+     */
+    public void compressImageDXTn(int width, int height, CompressionType type, byte[] raster, byte[] dxt, int offset)
+    {
+        // protect against a missing alpha channel
+        int pixelSize = raster.length / (width * height);
+        int blockRows = height / 4;
+        int rowsPerTask = Math.max(1, BLOCKS_PER_TASK / Math.max(1, width / 4));
+        BlockRowAction action = new BlockRowAction(0, blockRows, rowsPerTask, width, pixelSize, type, raster, dxt, offset);
+        if (blockRows <= rowsPerTask)
+        {
+            action.compute();
+        }
+        else
+        {
+            ForkJoinPool.commonPool().invoke(action);
+        }
+    }
+
+    /**
+     * Get the size of the compressed blocks for an image.
+     *
+     * @param width The width of the image in pixels.
+     * @param height The height of the image in pixels.
+     * @param type The compression type, which must be a DXT type.
+     * @return The size in bytes, not including the header.
+     */
+    public static int getCompressedSize(int width, int height, CompressionType type)
+    {
+        return (width + 3) / 4 * ((height + 3) / 4) * (type == CompressionType.DXT5 ? 16 : 8);
+    }
+
+    /**
+     * Determine if an image can be compressed in parallel.
+     *
+     * @param width The width of the image in pixels.
+     * @param height The height of the image in pixels.
+     * @return true if both dimensions are multiples of 4.
+     */
+    private static boolean isParallelizable(int width, int height)
+    {
+        return width % 4 == 0 && height % 4 == 0 && width > 0 && height > 0;
+    }
+
+    /**
+     * Compress an image to DXTn on the calling thread.
+     *
+     * @param width The width of the image in pixels.
+     * @param height The height of the image in pixels.
+     * @param type The compression type, which must be a DXT type.
+     * @param raster The image raster.
+     * @param dxt The output buffer.
+     */
+    private void compressImageSequential(int width, int height, CompressionType type, byte[] raster, ByteBuffer dxt)
+    {
+        if (type == CompressionType.DXT1)
+        {
+            compressImageDXT1(width, height, raster, dxt);
+        }
+        else if (type == CompressionType.DXT1_Transparent)
+        {
+            compressImageDXT1_alpha(width, height, raster, dxt);
+        }
+        else
+        {
+            compressImageDXT5(width, height, raster, dxt);
+        }
+    }
+
+    /**
+     * Encode one 4x4 block of an image.
+     *
+     * @param type The compression type.
+     * @param raster The image raster.
+     * @param position The index in the raster of the first byte of the block.
+     * @param width The width of the image in pixels.
+     * @param pixelSize The number of bytes per pixel in the raster.
+     * @param scratch The scratch arrays.
+     * @param dxt The output array.
+     * @param offset The index in the output array for the block.
+     */
+    private void encodeBlock(CompressionType type, byte[] raster, int position, int width, int pixelSize, BlockScratch scratch,
+            byte[] dxt, int offset)
+    {
+        int[][] block = scratch.myBlock;
+        int[] minColor = scratch.myMinColor;
+        int[] maxColor = scratch.myMaxColor;
+        if (pixelSize == 3)
+        {
+            extractBlock_noAlpha(raster, block, position, width);
+        }
+        else
+        {
+            extractBlock(raster, block, position, width);
+        }
+        getMinMaxColors_luminance(block, minColor, maxColor);
+
+        int index = offset;
+        if (type == CompressionType.DXT5)
+        {
+            int[] indices = scratch.myIndices;
+            dxt[index++] = (byte)maxColor[3];
+            dxt[index++] = (byte)minColor[3];
+            getAlphaIndices(block, indices, minColor[3], maxColor[3]);
+            dxt[index++] = (byte)(indices[0] >> 0 | indices[1] << 3 | indices[2] << 6);
+            dxt[index++] = (byte)(indices[2] >> 2 | indices[3] << 1 | indices[4] << 4 | indices[5] << 7);
+            dxt[index++] = (byte)(indices[5] >> 1 | indices[6] << 2 | indices[7] << 5);
+            dxt[index++] = (byte)(indices[8] >> 0 | indices[9] << 3 | indices[10] << 6);
+            dxt[index++] = (byte)(indices[10] >> 2 | indices[11] << 1 | indices[12] << 4 | indices[13] << 7);
+            dxt[index++] = (byte)(indices[13] >> 1 | indices[14] << 2 | indices[15] << 5);
+        }
+
+        int color0;
+        int color1;
+        int colorIndices;
+        if (type == CompressionType.DXT1_Transparent)
+        {
+            color0 = colorTo565Int(minColor);
+            color1 = colorTo565Int(maxColor);
+            colorIndices = getColorIndices_dxt1_alpha(block, minColor, maxColor);
+        }
+        else
+        {
+            color0 = colorTo565Int(maxColor);
+            color1 = colorTo565Int(minColor);
+            colorIndices = getColorIndices(block, minColor, maxColor);
+        }
+
+        // DANGER, LITTLE ENDIAN ASSUMED!
+        dxt[index++] = (byte)color0;
+        dxt[index++] = (byte)(color0 >> 8);
+        dxt[index++] = (byte)color1;
+        dxt[index++] = (byte)(color1 >> 8);
+        dxt[index++] = (byte)colorIndices;
+        dxt[index++] = (byte)(colorIndices >> 8);
+        dxt[index++] = (byte)(colorIndices >> 16);
+        dxt[index] = (byte)(colorIndices >> 24);
+    }
+
     /**
      * Decode a DDS image to an RGB or RGBA byte array, depending on the type of
      * compression.
@@ -1586,4 +1801,121 @@ public class DDSEncoder
         // 3 unused double-words
         buffer.position(buffer.position() + 12);
     }
+
+    /** Scratch arrays used to encode a block. */
+    private static class BlockScratch
+    {
+        /** The pixels of the block, (row x column) x rgba. */
+        private final int[][] myBlock = new int[16][4];
+
+        /** The alpha indices. */
+        private final int[] myIndices = new int[16];
+
+        /** The maximum color. */
+        private final int[] myMaxColor = new int[4];
+
+        /** The minimum color. */
+        private final int[] myMinColor = new int[4];
+    }
+
+    /** Encodes a range of block rows, splitting the range across tasks. */
+    private class BlockRowAction extends RecursiveAction
+    {
+        /** serialVersionUID. */
+        private static final long serialVersionUID = 1L;
+
+        /** The output array. */
+        private final byte[] myDxt;
+
+        /** The block row after the last row to encode. */
+        private final int myEnd;
+
+        /** The index in the output array of the first block of the image. */
+        private final int myOffset;
+
+        /** The image raster. */
+        private final byte[] myRaster;
+
+        /** The number of bytes per pixel in the raster. */
+        private final int myPixelSize;
+
+        /** The maximum number of block rows encoded without splitting. */
+        private final int myRowsPerTask;
+
+        /** The first block row to encode. */
+        private final int myStart;
+
+        /** The compression type. */
+        private final CompressionType myType;
+
+        /** The width of the image in pixels. */
+        private final int myWidth;
+
+        /**
+         * Constructor.
+         *
+         * @param start The first block row to encode.
+         * @param end The block row after the last row to encode.
+         * @param rowsPerTask The maximum number of block rows encoded
+         *            without splitting.
+         * @param width The width of the image in pixels.
+         * @param pixelSize The number of bytes per pixel in the raster.
+         * @param type The compression type.
+         * @param raster The image raster.
+         * @param dxt The output array.
+         * @param offset The index in the output array of the first block of
+         *            the image.
+         */
+        public BlockRowAction(int start, int end, int rowsPerTask, int width, int pixelSize, CompressionType type, byte[] raster,
+                byte[] dxt, int offset)
+        {
+            myStart = start;
+            myEnd = end;
+            myRowsPerTask = rowsPerTask;
+            myWidth = width;
+            myPixelSize = pixelSize;
+            myType = type;
+            myRaster = raster;
+            myDxt = dxt;
+            myOffset = offset;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (myEnd - myStart > myRowsPerTask)
+            {
+                int middle = myStart + myEnd >>> 1;
+                invokeAll(split(myStart, middle), split(middle, myEnd));
+                return;
+            }
+
+            BlockScratch scratch = SCRATCH.get();
+            int blocksPerRow = myWidth / 4;
+            int blockSize = myType == CompressionType.DXT5 ? 16 : 8;
+            for (int row = myStart; row < myEnd; ++row)
+            {
+                int position = row * 4 * myWidth * myPixelSize;
+                int offset = myOffset + row * blocksPerRow * blockSize;
+                for (int column = 0; column < blocksPerRow; ++column)
+                {
+                    encodeBlock(myType, myRaster, position, myWidth, myPixelSize, scratch, myDxt, offset);
+                    position += 4 * myPixelSize;
+                    offset += blockSize;
+                }
+            }
+        }
+
+        /**
+         * Create an action for part of my range.
+         *
+         * @param start The first block row to encode.
+         * @param end The block row after the last row to encode.
+         * @return The action.
+         */
+        private BlockRowAction split(int start, int end)
+        {
+            return new BlockRowAction(start, end, myRowsPerTask, myWidth, myPixelSize, myType, myRaster, myDxt, myOffset);
+        }
+    }
 }
@@ -1,69 +1,157 @@
 package io.opensphere.core.event;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
-import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 
 import io.opensphere.core.event.Event.State;
+import io.opensphere.core.metrics.MetricsRegistry;
+import io.opensphere.core.metrics.impl.DefaultMetricsProvider;
+import io.opensphere.core.metrics.impl.DefaultNumberMetricsProvider;
+import io.opensphere.core.util.Constants;
+import io.opensphere.core.util.concurrent.CommonTimer;
 import io.opensphere.core.util.concurrent.FixedThreadPoolExecutor;
 import io.opensphere.core.util.lang.NamedThreadFactory;
-import io.opensphere.core.util.lang.StringUtilities;
 import io.opensphere.core.util.ref.WeakReference;
 
 /**
  * Implementation of {@link EventManager}.
+ * <p>
+ * The subscribers for each published event class are looked up once and kept
+ * in a dispatch table until a subscription changes. Each listener has its own
+ * queue, so that it gets its events in the order they were published, but
+ * different listeners are notified concurrently by a small thread pool and a
+ * slow listener only holds up its own events.
  */
 public class EventManagerImpl implements EventManager
 {
     /** Logger reference. */
     private static final Logger LOGGER = Logger.getLogger(EventManagerImpl.class);
 
-    /** Executor used to publish events. */
+    /** The number of threads used to notify listeners. */
+    private static final int DELIVERY_THREADS = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * The number of events a listener is given before its queue goes to the
+     * back of the line.
+     */
+    private static final int EVENTS_PER_TURN = 16;
+
+    /** A listener gets a latency metric once it takes this long for an event. */
+    private static final long LATENCY_METRIC_THRESHOLD_NS = 10_000_000L;
+
+    /** The topic for the metrics. */
+    private static final String METRICS_TOPIC = "Events";
+
+    /** The sub-topic for the listener latency metrics. */
+    private static final String LATENCY_SUB_TOPIC = "Listener Latency";
+
+    /** The period between metrics updates. */
+    private static final long METRICS_PERIOD_MS = 1000L;
+
+    /** An empty dispatch table. */
+    private static final ListenerQueue[] NO_LISTENERS = new ListenerQueue[0];
+
+    /**
+     * The dispatch tables, which are the queues of the listeners for each
+     * published event class. These are cleared when a subscription changes.
+     */
+    private final Map<Class<?>, ListenerQueue[]> myDispatchTables = new ConcurrentHashMap<>();
+
+    /** Executor used to notify the listeners. */
     private final Executor myExecutor;
 
-    /** My event listeners. */
-    private final Map<Class<? extends Event>, Collection<WeakReference<EventListener<?>>>> mySubscribers = Collections
-            .synchronizedMap(new HashMap<Class<? extends Event>, Collection<WeakReference<EventListener<?>>>>());
+    /** The latency statistics for each listener name. */
+    private final Map<String, ListenerStats> myListenerStats = new ConcurrentHashMap<>();
+
+    /** The optional metrics registry. */
+    private final MetricsRegistry myMetricsRegistry;
+
+    /** The number of events delivered. */
+    private final LongAdder myDeliveredCount = new LongAdder();
+
+    /** Optional metric for the number of events delivered. */
+    private final DefaultNumberMetricsProvider myDeliveredMetric;
+
+    /** The largest number of events that have been waiting for delivery. */
+    private final AtomicInteger myMaxQueueDepth = new AtomicInteger();
+
+    /** Optional metric for the largest number of events waiting. */
+    private final DefaultNumberMetricsProvider myMaxQueueDepthMetric;
+
+    /** The number of events waiting for delivery. */
+    private final AtomicInteger myQueueDepth = new AtomicInteger();
+
+    /** Optional metric for the number of events waiting. */
+    private final DefaultNumberMetricsProvider myQueueDepthMetric;
+
+    /** The queues of the subscribers for each event type. */
+    private final Map<Class<? extends Event>, Collection<ListenerQueue>> mySubscribers = new HashMap<>();
 
     /** Constructor. */
     public EventManagerImpl()
+    {
+        this(null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param metricsRegistry The optional registry for the queue depth and
+     *            listener latency metrics.
+     */
+    public EventManagerImpl(MetricsRegistry metricsRegistry)
     {
         int priority = 1;
         int maxPriority = 1;
         NamedThreadFactory factory = new NamedThreadFactory("EventManager", priority, maxPriority);
-        myExecutor = new FixedThreadPoolExecutor(1, factory);
+        myExecutor = new FixedThreadPoolExecutor(DELIVERY_THREADS, factory);
+
+        myMetricsRegistry = metricsRegistry;
+        if (metricsRegistry == null)
+        {
+            myQueueDepthMetric = null;
+            myMaxQueueDepthMetric = null;
+            myDeliveredMetric = null;
+        }
+        else
+        {
+            String subTopic = "Delivery";
+            myQueueDepthMetric = new DefaultNumberMetricsProvider(1, METRICS_TOPIC, subTopic, "Queued", Integer.valueOf(0));
+            myMaxQueueDepthMetric = new DefaultNumberMetricsProvider(2, METRICS_TOPIC, subTopic, "Max Queued",
+                    Integer.valueOf(0));
+            myDeliveredMetric = new DefaultNumberMetricsProvider(3, METRICS_TOPIC, subTopic, "Delivered", Long.valueOf(0L));
+            metricsRegistry.addMetricsProvider(myQueueDepthMetric);
+            metricsRegistry.addMetricsProvider(myMaxQueueDepthMetric);
+            metricsRegistry.addMetricsProvider(myDeliveredMetric);
+            CommonTimer.scheduleAtFixedRate(this::updateMetrics, METRICS_PERIOD_MS, METRICS_PERIOD_MS);
+        }
     }
 
     @Override
     public <T extends Event> void publishEvent(final T event)
     {
-        Class<?> type = event.getClass();
-
-        // Start with the concrete event type
-        while (Event.class.isAssignableFrom(type))
+        boolean collected = false;
+        for (ListenerQueue queue : getDispatchTable(event.getClass()))
         {
-            @SuppressWarnings("unchecked")
-            Class<? extends Event> typedType = (Class<? extends Event>)type;
-            publishEvent(event, typedType);
-
-            for (Class<?> intf : type.getInterfaces())
-            {
-                if (Event.class.isAssignableFrom(intf))
-                {
-                    @SuppressWarnings("unchecked")
-                    Class<? extends Event> typedIntf = (Class<? extends Event>)intf;
-                    publishEvent(event, typedIntf);
-                }
-            }
-
-            type = type.getSuperclass();
+            collected |= !queue.add(event);
+        }
+        if (collected)
+        {
+            removeCollectedSubscribers();
         }
     }
 
@@ -77,36 +165,32 @@ public class EventManagerImpl implements EventManager
     @Override
     public <T extends Event> void subscribe(Class<T> type, EventListener<? super T> subscriber)
     {
-        Collection<WeakReference<EventListener<?>>> subscribers;
         synchronized (mySubscribers)
         {
-            subscribers = mySubscribers.get(type);
-            if (subscribers == null)
+            ListenerQueue queue = findQueue(subscriber);
+            if (queue == null)
             {
-                subscribers = new ArrayList<>();
-                mySubscribers.put(type, subscribers);
+                queue = new ListenerQueue(subscriber);
             }
-        }
-        synchronized (subscribers)
-        {
-            subscribers.add(new WeakReference<EventListener<?>>(subscriber));
+            mySubscribers.computeIfAbsent(type, k -> new ArrayList<>()).add(queue);
+            myDispatchTables.clear();
         }
     }
 
     @Override
     public <T extends Event> void unsubscribe(Class<T> type, EventListener<? super T> subscriber)
     {
-        Collection<WeakReference<EventListener<?>>> subscribers = mySubscribers.get(type);
-        if (subscribers != null)
+        synchronized (mySubscribers)
         {
-            synchronized (subscribers)
+            Collection<ListenerQueue> subscribers = mySubscribers.get(type);
+            if (subscribers != null)
             {
-                for (Iterator<WeakReference<EventListener<?>>> iter = subscribers.iterator(); iter.hasNext();)
+                for (Iterator<ListenerQueue> iter = subscribers.iterator(); iter.hasNext();)
                 {
-                    WeakReference<EventListener<?>> ref = iter.next();
-                    if (ref.get() == subscriber)
+                    if (iter.next().getListener() == subscriber)
                     {
                         iter.remove();
+                        myDispatchTables.clear();
                         break;
                     }
                 }
@@ -123,86 +207,338 @@ public class EventManagerImpl implements EventManager
      */
     protected <T extends Event> Collection<EventListener<T>> getSubscribers(Class<T> type)
     {
-        // Remove any that have been garbage-collected.
         Collection<EventListener<T>> subscribers;
-        Collection<WeakReference<EventListener<?>>> refs = mySubscribers.get(type);
-        if (refs != null)
+        synchronized (mySubscribers)
         {
-            synchronized (refs)
+            Collection<ListenerQueue> queues = mySubscribers.get(type);
+            if (queues != null)
             {
-                subscribers = new ArrayList<>(refs.size());
-                for (Iterator<WeakReference<EventListener<?>>> iter = refs.iterator(); iter.hasNext();)
+                subscribers = new ArrayList<>(queues.size());
+                for (ListenerQueue queue : queues)
                 {
-                    WeakReference<EventListener<?>> ref = iter.next();
                     @SuppressWarnings("unchecked")
-                    EventListener<T> subscriber = (EventListener<T>)ref.get();
-                    if (subscriber == null)
+                    EventListener<T> subscriber = (EventListener<T>)queue.getListener();
+                    if (subscriber != null)
                     {
-                        iter.remove();
+                        subscribers.add(subscriber);
                     }
-                    else
+                }
+            }
+            else
+            {
+                subscribers = Collections.emptySet();
+            }
+        }
+        return subscribers;
+    }
+
+    /**
+     * Get the dispatch table for an event class, building it if necessary.
+     * The table has the queues of the subscribers to the class, then its
+     * interfaces, then the same for each superclass that is an event.
+     *
+     * @param eventClass The event class.
+     * @return The queues of the subscribers.
+     */
+    private ListenerQueue[] getDispatchTable(Class<?> eventClass)
+    {
+        ListenerQueue[] table = myDispatchTables.get(eventClass);
+        if (table == null)
+        {
+            synchronized (mySubscribers)
+            {
+                List<ListenerQueue> queues = new ArrayList<>();
+                Class<?> type = eventClass;
+                while (Event.class.isAssignableFrom(type))
+                {
+                    addSubscribers(type, queues);
+                    for (Class<?> intf : type.getInterfaces())
                     {
-                        subscribers.add(subscriber);
+                        if (Event.class.isAssignableFrom(intf))
+                        {
+                            addSubscribers(intf, queues);
+                        }
                     }
+                    type = type.getSuperclass();
                 }
+                table = queues.isEmpty() ? NO_LISTENERS : queues.toArray(new ListenerQueue[queues.size()]);
+                myDispatchTables.put(eventClass, table);
             }
         }
-        else
+        return table;
+    }
+
+    /**
+     * Add the queues of the subscribers to an event type to a list. Must be
+     * called while synchronized on the subscribers.
+     *
+     * @param type The event type.
+     * @param queues The list.
+     */
+    private void addSubscribers(Class<?> type, List<ListenerQueue> queues)
+    {
+        Collection<ListenerQueue> subscribers = mySubscribers.get(type);
+        if (subscribers != null)
         {
-            subscribers = Collections.emptySet();
+            queues.addAll(subscribers);
         }
-        return subscribers;
     }
 
     /**
-     * Publish an event to a specific set of subscribers.
+     * Find the queue of a listener that is already subscribed, so that it
+     * gets all its events in order. Must be called while synchronized on the
+     * subscribers.
      *
-     * @param <S> The declared type of the event.
-     * @param <T> The type of listener. This must be assignable from S.
-     * @param event The event.
-     * @param type The type of listener.
+     * @param listener The listener.
+     * @return The queue, or {@code null} if the listener is not subscribed.
      */
-    protected <S extends Event, T extends Event> void publishEvent(final S event, Class<T> type)
+    private ListenerQueue findQueue(EventListener<?> listener)
     {
-        final Collection<EventListener<T>> subscribers = getSubscribers(type);
+        for (Collection<ListenerQueue> subscribers : mySubscribers.values())
+        {
+            for (ListenerQueue queue : subscribers)
+            {
+                if (queue.getListener() == listener)
+                {
+                    return queue;
+                }
+            }
+        }
+        return null;
+    }
 
-        if (!subscribers.isEmpty())
+    /**
+     * Get the latency statistics for a listener.
+     *
+     * @param listener The listener.
+     * @return The statistics.
+     */
+    private ListenerStats getListenerStats(EventListener<?> listener)
+    {
+        // Lambdas from the same class share their statistics.
+        String name = listener.getClass().getName();
+        int lambdaIndex = name.indexOf("$$Lambda");
+        if (lambdaIndex > 0)
+        {
+            name = name.substring(0, lambdaIndex);
+        }
+        return myListenerStats.computeIfAbsent(name, ListenerStats::new);
+    }
+
+    /** Remove the subscriptions of listeners that have been garbage-collected. */
+    private void removeCollectedSubscribers()
+    {
+        synchronized (mySubscribers)
+        {
+            for (Collection<ListenerQueue> subscribers : mySubscribers.values())
+            {
+                subscribers.removeIf(queue -> queue.getListener() == null);
+            }
+            myDispatchTables.clear();
+        }
+    }
+
+    /** Update the metrics from the current counts. */
+    private void updateMetrics()
+    {
+        myQueueDepthMetric.setValue(Integer.valueOf(myQueueDepth.get()));
+        myMaxQueueDepthMetric.setValue(Integer.valueOf(myMaxQueueDepth.get()));
+        myDeliveredMetric.setValue(Long.valueOf(myDeliveredCount.sum()));
+        for (ListenerStats stats : myListenerStats.values())
+        {
+            stats.updateMetric();
+        }
+    }
+
+    /**
+     * The events waiting for a listener. The queue is run on the delivery
+     * executor while it has events, so the listener is notified in order.
+     */
+    private final class ListenerQueue implements Runnable
+    {
+        /** The events waiting for the listener. */
+        private final Queue<Event> myEvents = new ArrayDeque<>();
+
+        /** The listener, which may be garbage-collected. */
+        private final WeakReference<EventListener<?>> myListener;
+
+        /** Whether the queue is waiting for or running on the executor. */
+        private boolean myScheduled;
+
+        /** The latency statistics for the listener. */
+        private final ListenerStats myStats;
+
+        /**
+         * Constructor.
+         *
+         * @param listener The listener.
+         */
+        public ListenerQueue(EventListener<?> listener)
+        {
+            myListener = new WeakReference<EventListener<?>>(listener);
+            myStats = getListenerStats(listener);
+        }
+
+        /**
+         * Add an event to the queue.
+         *
+         * @param event The event.
+         * @return {@code false} if the listener has been garbage-collected.
+         */
+        public boolean add(Event event)
+        {
+            if (myListener.get() == null)
+            {
+                return false;
+            }
+
+            boolean schedule;
+            synchronized (this)
+            {
+                myEvents.add(event);
+                schedule = !myScheduled;
+                myScheduled = true;
+            }
+            int depth = myQueueDepth.incrementAndGet();
+            if (depth > myMaxQueueDepth.get())
+            {
+                myMaxQueueDepth.accumulateAndGet(depth, Math::max);
+            }
+            if (schedule)
+            {
+                myExecutor.execute(this);
+            }
+            return true;
+        }
+
+        /**
+         * Get the listener.
+         *
+         * @return The listener, or {@code null} if it has been
+         *         garbage-collected.
+         */
+        public EventListener<?> getListener()
+        {
+            return myListener.get();
+        }
+
+        @Override
+        public void run()
         {
-            for (final EventListener<? super T> subscriber : subscribers)
+            for (int count = 0; count < EVENTS_PER_TURN; ++count)
             {
-                Runnable command = new Runnable()
+                Event event;
+                synchronized (this)
                 {
-                    @Override
-                    public void run()
+                    event = myEvents.poll();
+                    if (event == null)
                     {
-                        try
-                        {
-                            long start = System.nanoTime();
-
-                            // This is safe as long as T is assignable from S.
-                            @SuppressWarnings("unchecked")
-                            T castEvent = (T)event;
-                            subscriber.notify(castEvent);
-
-                            /* Check for subscribers that take a long time to
-                             * handle the event */
-                            long deltaNS = System.nanoTime() - start;
-                            if (deltaNS > 200_000_000)
-                            {
-                                Object subscriberMsgProxy = LOGGER.isTraceEnabled() ? subscriber
-                                        : subscriber.getClass().getName();
-                                String message = StringUtilities.formatTimingMessage(subscriberMsgProxy + " took ", deltaNS)
-                                        + " to handle event notification for " + castEvent;
-                                LOGGER.log(deltaNS > 1_000_000_000 ? Level.ERROR : Level.WARN, message);
-                            }
-                        }
-                        catch (RuntimeException e)
-                        {
-                            LOGGER.error("Exception while publishing an event: " + e, e);
-                        }
+                        myScheduled = false;
+                        return;
                     }
-                };
-                myExecutor.execute(command);
+                }
+                notifyListener(event);
+            }
+
+            // Let the other listeners have a turn.
+            boolean schedule;
+            synchronized (this)
+            {
+                schedule = !myEvents.isEmpty();
+                myScheduled = schedule;
+            }
+            if (schedule)
+            {
+                myExecutor.execute(this);
+            }
+        }
+
+        /**
+         * Notify the listener of an event.
+         *
+         * @param event The event.
+         */
+        private void notifyListener(Event event)
+        {
+            myQueueDepth.decrementAndGet();
+            @SuppressWarnings("unchecked")
+            EventListener<Event> listener = (EventListener<Event>)myListener.get();
+            if (listener != null)
+            {
+                try
+                {
+                    long start = System.nanoTime();
+                    listener.notify(event);
+                    myStats.record(System.nanoTime() - start);
+                }
+                catch (RuntimeException e)
+                {
+                    LOGGER.error("Exception while publishing an event: " + e, e);
+                }
+                myDeliveredCount.increment();
+            }
+        }
+    }
+
+    /** The latency statistics for the listeners with the same name. */
+    private final class ListenerStats
+    {
+        /** The number of events handled. */
+        private final LongAdder myCount = new LongAdder();
+
+        /** The longest time taken for an event. */
+        private final AtomicLong myMaxNanos = new AtomicLong();
+
+        /** The optional metric, created once the listener is slow. */
+        private volatile DefaultMetricsProvider myMetric;
+
+        /** The name of the listeners. */
+        private final String myName;
+
+        /** The total time taken for the events. */
+        private final LongAdder myTotalNanos = new LongAdder();
+
+        /**
+         * Constructor.
+         *
+         * @param name The name of the listeners.
+         */
+        public ListenerStats(String name)
+        {
+            myName = name;
+        }
+
+        /**
+         * Record the time taken for an event.
+         *
+         * @param nanos The time in nanoseconds.
+         */
+        public void record(long nanos)
+        {
+            myCount.increment();
+            myTotalNanos.add(nanos);
+            if (nanos > myMaxNanos.get())
+            {
+                myMaxNanos.accumulateAndGet(nanos, Math::max);
+            }
+        }
+
+        /** Update the metric, creating it if the listener has become slow. */
+        public void updateMetric()
+        {
+            long maxNanos = myMaxNanos.get();
+            if (myMetric == null && maxNanos >= LATENCY_METRIC_THRESHOLD_NS)
+            {
+                String label = myName.substring(myName.lastIndexOf('.') + 1);
+                myMetric = new DefaultMetricsProvider(myListenerStats.size(), METRICS_TOPIC, LATENCY_SUB_TOPIC, label);
+                myMetricsRegistry.addMetricsProvider(myMetric);
+            }
+            if (myMetric != null)
+            {
+                long count = myCount.sum();
+                double averageMS = count == 0 ? 0. : (double)myTotalNanos.sum() / count / Constants.NANO_PER_MILLI;
+                myMetric.setValue(String.format("%.2f ms avg, %.1f ms max, %d events", Double.valueOf(averageMS),
+                        Double.valueOf((double)maxNanos / Constants.NANO_PER_MILLI), Long.valueOf(count)));
             }
         }
     }
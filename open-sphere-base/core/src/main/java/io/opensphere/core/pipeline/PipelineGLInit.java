@@ -42,6 +42,7 @@ import io.opensphere.core.pipeline.processor.TextureDisposalHelper;
 import io.opensphere.core.pipeline.renderer.GeometryRenderer;
 import io.opensphere.core.pipeline.util.DisposalHelper;
 import io.opensphere.core.pipeline.util.RenderContext;
+import io.opensphere.core.pipeline.util.TextureHandle;
 import io.opensphere.core.preferences.Preferences;
 import io.opensphere.core.preferences.PreferencesRegistry;
 import io.opensphere.core.util.Utilities;
@@ -352,6 +353,13 @@ public class PipelineGLInit
         cache.setLowWaterBytesGPU(cacheLowBytesGPU);
         cache.setMaxSizeBytesGPU(cacheSizeBytesGPU);
 
+        // Keep textures from filling the cache so that they cannot push out
+        // everything else, such as terrain tiles.
+        final double defaultTextureFraction = .75;
+        final double textureFraction = Utilities.parseSystemProperty("opensphere.geometryCache.gpuTextureFraction",
+                defaultTextureFraction);
+        cache.setMaxSizeBytesGPU(TextureHandle.class, (long)(cacheSizeBytesGPU * textureFraction));
+
         cache.initialize();
     }
 
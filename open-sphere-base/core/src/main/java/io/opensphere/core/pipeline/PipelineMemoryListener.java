@@ -4,6 +4,7 @@ import io.opensphere.core.MemoryManager;
 import io.opensphere.core.MemoryManager.MemoryListener;
 import io.opensphere.core.MemoryManager.Status;
 import io.opensphere.core.pipeline.cache.LRUMemoryCache;
+import io.opensphere.core.pipeline.util.TextureDataGroup;
 import io.opensphere.core.util.Utilities;
 
 /**
@@ -55,5 +56,12 @@ public class PipelineMemoryListener implements MemoryListener
 
         myCache.setLowWaterBytesVM((int)(maxSizeBytesVM * lowWaterFraction));
         myCache.setMaxSizeBytesVM(maxSizeBytesVM);
+
+        // Keep image data from filling the cache so that it cannot push out
+        // everything else, such as terrain tiles.
+        final double defaultTextureFraction = .5;
+        final double textureFraction = Utilities.parseSystemProperty("opensphere.geometryCache.vmTextureFraction",
+                defaultTextureFraction);
+        myCache.setMaxSizeBytesVM(TextureDataGroup.class, (long)(maxSizeBytesVM * textureFraction));
     }
 }
@@ -5,6 +5,9 @@ package io.opensphere.core.pipeline.cache;
  */
 class CacheNode
 {
+    /** The hash code of the key that the object is cached with. */
+    private final int myKeyHash;
+
     /** The cached object. */
     private final Object myObject;
 
@@ -14,21 +17,39 @@ class CacheNode
     /** The size of the cached object in bytes. */
     private final long mySizeVM;
 
+    /** The type that the object is cached as. */
+    private final Class<?> myType;
+
     /**
      * Construct a node.
      *
+     * @param keyHash the hash code of the key that the object is cached with
      * @param object the cached object
+     * @param type the type that the object is cached as
      * @param sizeVM the amount of VM memory used by the cached object in bytes
      * @param sizeGPU the amount of video card memory used by the cached object
      *            in bytes
      */
-    public CacheNode(Object object, long sizeVM, long sizeGPU)
+    public CacheNode(int keyHash, Object object, Class<?> type, long sizeVM, long sizeGPU)
     {
+        myKeyHash = keyHash;
         myObject = object;
+        myType = type;
         mySizeVM = sizeVM;
         mySizeGPU = sizeGPU;
     }
 
+    /**
+     * Accessor for the hash code of the key that the object is cached with.
+     * The key itself is not kept so that it can still be garbage collected.
+     *
+     * @return the hash code
+     */
+    public int getKeyHash()
+    {
+        return myKeyHash;
+    }
+
     /**
      * Accessor for the cached object.
      *
@@ -59,6 +80,16 @@ class CacheNode
         return mySizeVM;
     }
 
+    /**
+     * Accessor for the type that the object is cached as.
+     *
+     * @return the type
+     */
+    public Class<?> getType()
+    {
+        return myType;
+    }
+
     @Override
     public String toString()
     {
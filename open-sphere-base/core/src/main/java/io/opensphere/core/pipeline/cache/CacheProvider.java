@@ -156,10 +156,33 @@ public interface CacheProvider
      */
     void setMaxSizeBytesGPU(long maxSizeBytesGPU);
 
+    /**
+     * Set the amount of video card memory that objects cached as a type may
+     * use before they are removed, even if the cache as a whole is not full.
+     * The sizes used are the sizes given when the objects are put in the
+     * cache.
+     *
+     * @param type The type that the objects are cached as.
+     * @param maxSizeBytesGPU The max size bytes, or {@link Long#MAX_VALUE} for
+     *            no limit.
+     */
+    void setMaxSizeBytesGPU(Class<?> type, long maxSizeBytesGPU);
+
     /**
      * Set the size at which cache cleaning will be triggered.
      *
      * @param maxSizeBytesVM The max size bytes.
      */
     void setMaxSizeBytesVM(long maxSizeBytesVM);
+
+    /**
+     * Set the amount of VM memory that objects cached as a type may use before
+     * they are removed, even if the cache as a whole is not full. The sizes
+     * used are the sizes given when the objects are put in the cache.
+     *
+     * @param type The type that the objects are cached as.
+     * @param maxSizeBytesVM The max size bytes, or {@link Long#MAX_VALUE} for
+     *            no limit.
+     */
+    void setMaxSizeBytesVM(Class<?> type, long maxSizeBytesVM);
 }
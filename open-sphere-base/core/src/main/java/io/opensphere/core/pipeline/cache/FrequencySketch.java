@@ -0,0 +1,177 @@
+package io.opensphere.core.pipeline.cache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A TinyLFU frequency sketch: a count-min sketch of four-bit counters that
+ * estimates how often each hash has been seen recently. Each hash has a counter
+ * in four rows and its estimate is the smallest of them, so collisions can only
+ * make an estimate too high. Once the number of increments reaches ten times
+ * the capacity, every counter is halved so that old uses count for less.
+ * <p>
+ * This is thread-safe. Counters are updated with compare-and-set, and an
+ * increment that races with the halving may be lost, which only makes the
+ * estimates approximate.
+ */
+class FrequencySketch
+{
+    /** The largest value of a counter. */
+    private static final int MAX_COUNT = 15;
+
+    /** The minimum number of longs in the table. */
+    private static final int MIN_TABLE_LENGTH = 64;
+
+    /** A mask that keeps the low three bits of each four-bit counter. */
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    /** The seeds used to choose the counters for a hash. */
+    private static final int[] SEEDS = { 0x97cb3127, 0xb492b66f, 0x9ae16a3b, 0xc3a5c85c };
+
+    /** The number of increments since the counters were last halved. */
+    private final AtomicInteger myIncrements = new AtomicInteger();
+
+    /** The number of increments after which the counters are halved. */
+    private final int mySampleSize;
+
+    /** The counters, sixteen to a long. */
+    private final AtomicLongArray myTable;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity The number of hashes expected to be tracked at once.
+     */
+    public FrequencySketch(int capacity)
+    {
+        int length = Math.max(MIN_TABLE_LENGTH, Integer.highestOneBit(Math.max(1, Math.min(capacity, 1 << 28)) - 1) << 1);
+        myTable = new AtomicLongArray(length);
+        mySampleSize = 10 * length;
+    }
+
+    /**
+     * Get the estimated number of times a hash has been seen recently.
+     *
+     * @param hash The hash.
+     * @return The estimate, from 0 to 15.
+     */
+    public int frequency(int hash)
+    {
+        int spread = spread(hash);
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < SEEDS.length; ++row)
+        {
+            int slot = slot(spread, row);
+            int shift = shift(spread, row);
+            frequency = Math.min(frequency, (int)(myTable.get(slot) >>> shift & MAX_COUNT));
+        }
+        return frequency;
+    }
+
+    /**
+     * Get the number of hashes that the sketch was sized for.
+     *
+     * @return The capacity.
+     */
+    public int getCapacity()
+    {
+        return myTable.length();
+    }
+
+    /**
+     * Record that a hash has been seen.
+     *
+     * @param hash The hash.
+     */
+    public void increment(int hash)
+    {
+        int spread = spread(hash);
+        boolean added = false;
+        for (int row = 0; row < SEEDS.length; ++row)
+        {
+            added |= incrementAt(slot(spread, row), shift(spread, row));
+        }
+        if (added && myIncrements.incrementAndGet() == mySampleSize)
+        {
+            reset();
+        }
+    }
+
+    /**
+     * Increment one counter if it is not already at its largest value.
+     *
+     * @param slot The index of the long that holds the counter.
+     * @param shift The position of the counter in the long.
+     * @return If the counter was incremented.
+     */
+    private boolean incrementAt(int slot, int shift)
+    {
+        long mask = (long)MAX_COUNT << shift;
+        while (true)
+        {
+            long value = myTable.get(slot);
+            if ((value & mask) == mask)
+            {
+                return false;
+            }
+            if (myTable.compareAndSet(slot, value, value + (1L << shift)))
+            {
+                return true;
+            }
+        }
+    }
+
+    /** Halve every counter. */
+    private void reset()
+    {
+        for (int slot = 0; slot < myTable.length(); ++slot)
+        {
+            long value;
+            do
+            {
+                value = myTable.get(slot);
+            }
+            while (!myTable.compareAndSet(slot, value, value >>> 1 & RESET_MASK));
+        }
+        myIncrements.addAndGet(-mySampleSize / 2);
+    }
+
+    /**
+     * Get the position of the counter for a hash in one row.
+     *
+     * @param spread The spread hash.
+     * @param row The row.
+     * @return The shift of the counter within its long.
+     */
+    private int shift(int spread, int row)
+    {
+        return ((spread >>> (row << 3)) & 3) + (row << 2) << 2;
+    }
+
+    /**
+     * Get the index of the long that holds the counter for a hash in one row.
+     *
+     * @param spread The spread hash.
+     * @param row The row.
+     * @return The index.
+     */
+    private int slot(int spread, int row)
+    {
+        int hash = (spread + SEEDS[row]) * SEEDS[row];
+        hash += hash >>> 16;
+        return hash & myTable.length() - 1;
+    }
+
+    /**
+     * Mix the bits of a hash so that similar hashes use different counters.
+     *
+     * @param hash The hash.
+     * @return The spread hash.
+     */
+    private static int spread(int hash)
+    {
+        int x = (hash >>> 16 ^ hash) * 0x45d9f3b;
+        x = (x >>> 16 ^ x) * 0x45d9f3b;
+        return x >>> 16 ^ x;
+    }
+}
@@ -3,7 +3,6 @@ package io.opensphere.core.pipeline.cache;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -27,8 +26,8 @@ import io.opensphere.core.util.lang.Pair;
 /**
  * This is a facility that allows objects to be associated with keys by object
  * type. This cache implementation is fully in-memory, and tracks its memory
- * usage. Once the cache contents reach the configured limit, blocks of the
- * least-recently-used references are cleared.
+ * usage. Once the cache contents reach the configured limit, the objects whose
+ * keys are used least often are cleared.
  * <p>
  * In order to handle cache entries that have memory impacts that the JRE is not
  * aware of, the size of objects placed in the cache may be specified. The total
@@ -37,11 +36,14 @@ import io.opensphere.core.util.lang.Pair;
 @SuppressWarnings("PMD.GodClass")
 public class LRUMemoryCache implements CacheProvider
 {
+    /** The number of separately locked segments in the map for a type. */
+    private static final int SEGMENT_COUNT = 16;
+
     /**
      * The map of cached object types to maps of keys to cached object nodes.
+     * A map of keys that has been removed from this map must not be modified.
      */
-    @GuardedBy("myCacheMap")
-    private final Map<Class<?>, Map<Object, CacheNode>> myCacheMap = new HashMap<>(32);
+    private final Map<Class<?>, KeyMap> myCacheMap = New.concurrentMap(32);
 
     /** The timer for the cleanup monitor. */
     @GuardedBy("this")
@@ -86,18 +88,15 @@ public class LRUMemoryCache implements CacheProvider
     @Override
     public <T> T clearCacheAssociation(Object key, Class<T> type)
     {
-        Map<Object, CacheNode> map;
-        synchronized (myCacheMap)
-        {
-            map = myCacheMap.get(type);
-        }
+        KeyMap keyMap = myCacheMap.get(type);
         CacheNode node;
-        if (map == null)
+        if (keyMap == null)
         {
             node = null;
         }
         else
         {
+            Map<Object, CacheNode> map = keyMap.getSegment(key);
             Collection<CacheNode> removes;
             synchronized (map)
             {
@@ -123,23 +122,18 @@ public class LRUMemoryCache implements CacheProvider
     @Override
     public <T> void clearCacheAssociations(Class<T> type, LazyCollectionProvider<? super T> clearedCollectionProvider)
     {
-        Map<Object, CacheNode> map;
-        synchronized (myCacheMap)
-        {
-            map = myCacheMap.remove(type);
-        }
-        if (map != null)
-        {
-            List<CacheNode> removes;
-            synchronized (map)
+        // Remove the map first so that puts will not add to it while its
+        // segments are being cleared.
+        KeyMap keyMap = myCacheMap.remove(type);
+        if (keyMap != null)
+        {
+            List<CacheNode> removes = new ArrayList<>();
+            boolean empty = true;
+            for (Map<Object, CacheNode> map : keyMap.getSegments())
             {
-                if (map.isEmpty())
+                synchronized (map)
                 {
-                    removes = null;
-                }
-                else
-                {
-                    removes = new ArrayList<>(map.values().size());
+                    empty &= map.isEmpty();
                     for (CacheNode node : map.values())
                     {
                         if (node.getSizeGPU() != 0L || node.getSizeVM() != 0L)
@@ -151,14 +145,14 @@ public class LRUMemoryCache implements CacheProvider
                             clearedCollectionProvider.get().add((T)node.getObject());
                         }
                     }
-                    if (!removes.isEmpty())
-                    {
-                        myLRUObjectManager.remove(removes);
-                    }
                     map.clear();
                 }
             }
-            if (removes != null)
+            if (!removes.isEmpty())
+            {
+                myLRUObjectManager.remove(removes);
+            }
+            if (!empty)
             {
                 notifyContentsChanged(removes, ContentChangeType.REMOVAL, type);
             }
@@ -188,36 +182,33 @@ public class LRUMemoryCache implements CacheProvider
     public <T> void clearCacheAssociations(Collection<? extends Object> keys, Class<T> type,
             LazyCollectionProvider<? super T> clearedCollectionProvider)
     {
-        Map<Object, CacheNode> map;
-        synchronized (myCacheMap)
-        {
-            map = myCacheMap.get(type);
-        }
-        if (map != null)
+        KeyMap keyMap = myCacheMap.get(type);
+        if (keyMap != null)
         {
-            CacheNode node;
             List<CacheNode> removedNodes = null;
-            synchronized (map)
+            for (Object key : keys)
             {
-                if (!map.isEmpty())
+                Map<Object, CacheNode> map = keyMap.getSegment(key);
+                CacheNode node;
+                synchronized (map)
                 {
-                    for (Object key : keys)
+                    node = map.remove(key);
+                    if (node != null)
                     {
-                        node = map.remove(key);
-                        if (node != null)
-                        {
-                            if (removedNodes == null)
-                            {
-                                removedNodes = new ArrayList<>(keys.size());
-                            }
-                            removedNodes.add(node);
-                            removeFromLRUOM(node);
-
-                            if (clearedCollectionProvider != null)
-                            {
-                                clearedCollectionProvider.get().add((T)node.getObject());
-                            }
-                        }
+                        removeFromLRUOM(node);
+                    }
+                }
+                if (node != null)
+                {
+                    if (removedNodes == null)
+                    {
+                        removedNodes = new ArrayList<>(keys.size());
+                    }
+                    removedNodes.add(node);
+
+                    if (clearedCollectionProvider != null)
+                    {
+                        clearedCollectionProvider.get().add((T)node.getObject());
                     }
                 }
             }
@@ -268,36 +259,27 @@ public class LRUMemoryCache implements CacheProvider
     @SuppressWarnings("unchecked")
     public <T> T getCacheAssociation(Object key, Class<T> type)
     {
-        T object;
-        Map<Object, CacheNode> map;
-        synchronized (myCacheMap)
-        {
-            map = myCacheMap.get(type);
-        }
-        if (map == null)
+        CacheNode node;
+        KeyMap keyMap = myCacheMap.get(type);
+        if (keyMap == null)
         {
-            object = null;
+            node = null;
         }
         else
         {
+            Map<Object, CacheNode> map = keyMap.getSegment(key);
             synchronized (map)
             {
-                CacheNode node = map.get(key);
-                if (node == null)
-                {
-                    object = null;
-                }
-                else
-                {
-                    object = (T)node.getObject();
-                    if (object != null)
-                    {
-                        myLRUObjectManager.recordUse(object);
-                    }
-                }
+                node = map.get(key);
             }
         }
-        return object;
+        if (node == null)
+        {
+            myLRUObjectManager.recordMiss();
+            return null;
+        }
+        myLRUObjectManager.recordHit(node);
+        return (T)node.getObject();
     }
 
     @Override
@@ -305,23 +287,22 @@ public class LRUMemoryCache implements CacheProvider
     public <T> Set<Pair<Object, T>> getCacheAssociationEntries(Class<T> type)
     {
         Set<Pair<Object, T>> results = New.set();
-        Set<T> used = new HashSet<>();
-        Map<Object, CacheNode> map;
-        synchronized (myCacheMap)
-        {
-            map = myCacheMap.get(type);
-        }
-        if (map != null)
+        KeyMap keyMap = myCacheMap.get(type);
+        if (keyMap != null)
         {
-            synchronized (map)
+            List<CacheNode> used = new ArrayList<>();
+            for (Map<Object, CacheNode> map : keyMap.getSegments())
             {
-                Collection<Entry<Object, CacheNode>> values = map.entrySet();
-                for (Entry<Object, CacheNode> node : values)
+                synchronized (map)
                 {
-                    results.add(new Pair<Object, T>(node.getKey(), (T)node.getValue().getObject()));
+                    for (Entry<Object, CacheNode> entry : map.entrySet())
+                    {
+                        results.add(new Pair<Object, T>(entry.getKey(), (T)entry.getValue().getObject()));
+                        used.add(entry.getValue());
+                    }
                 }
-                myLRUObjectManager.recordUse((Set<Object>)used);
             }
+            myLRUObjectManager.recordUse(used);
         }
         return results;
     }
@@ -331,22 +312,22 @@ public class LRUMemoryCache implements CacheProvider
     public <T> Set<T> getCacheAssociations(Class<T> type)
     {
         Set<T> results = new HashSet<>();
-        Map<Object, CacheNode> map;
-        synchronized (myCacheMap)
-        {
-            map = myCacheMap.get(type);
-        }
-        if (map != null)
+        KeyMap keyMap = myCacheMap.get(type);
+        if (keyMap != null)
         {
-            synchronized (map)
+            List<CacheNode> used = new ArrayList<>();
+            for (Map<Object, CacheNode> map : keyMap.getSegments())
             {
-                Collection<CacheNode> values = map.values();
-                for (CacheNode node : values)
+                synchronized (map)
                 {
-                    results.add((T)node.getObject());
+                    for (CacheNode node : map.values())
+                    {
+                        results.add((T)node.getObject());
+                        used.add(node);
+                    }
                 }
-                myLRUObjectManager.recordUse((Set<Object>)results);
             }
+            myLRUObjectManager.recordUse(used);
         }
         return results;
     }
@@ -356,12 +337,9 @@ public class LRUMemoryCache implements CacheProvider
      */
     public synchronized void initialize()
     {
-        synchronized (myCacheMap)
+        if (!myCacheMap.isEmpty())
         {
-            if (!myCacheMap.isEmpty())
-            {
-                clearCacheAssociations(New.array(myCacheMap.keySet(), Class.class));
-            }
+            clearCacheAssociations(New.array(myCacheMap.keySet(), Class.class));
         }
 
         if (myCleanupTimer == null)
@@ -371,7 +349,7 @@ public class LRUMemoryCache implements CacheProvider
                 @Override
                 public void run()
                 {
-                    myLRUObjectManager.cleanup();
+                    cleanup();
                 }
             };
             final long milliseconds = 1000L;
@@ -384,30 +362,31 @@ public class LRUMemoryCache implements CacheProvider
     @Override
     public <T> T putCacheAssociation(Object key, T object, Class<? super T> type, long sizeVM, long sizeGPU)
     {
-        Map<Object, CacheNode> map;
-        CacheNode node = new CacheNode(object, sizeVM, sizeGPU);
-        synchronized (myCacheMap)
-        {
-            map = myCacheMap.get(type);
-            if (map == null)
-            {
-                map = New.weakMap(1024);
-                myCacheMap.put(type, map);
-            }
-        }
+        CacheNode node = new CacheNode(key.hashCode(), object, type, sizeVM, sizeGPU);
         CacheNode old;
-        synchronized (map)
+        while (true)
         {
-            old = map.put(key, node);
-            if (old == null || !Utilities.sameInstance(old.getObject(), object) || old.getSizeGPU() != sizeGPU
-                    || old.getSizeVM() != sizeVM)
+            KeyMap keyMap = myCacheMap.computeIfAbsent(type, t -> new KeyMap());
+            Map<Object, CacheNode> map = keyMap.getSegment(key);
+            synchronized (map)
             {
-                addToLRUOM(node);
-                if (old != null && (old.getSizeGPU() | old.getSizeVM()) != 0L)
+                // The map may have been removed while waiting for the lock.
+                if (myCacheMap.get(type) != keyMap)
+                {
+                    continue;
+                }
+                old = map.put(key, node);
+                if (old == null || !Utilities.sameInstance(old.getObject(), object) || old.getSizeGPU() != sizeGPU
+                        || old.getSizeVM() != sizeVM)
                 {
-                    removeFromLRUOM(old);
+                    addToLRUOM(node);
+                    if (old != null && (old.getSizeGPU() | old.getSizeVM()) != 0L)
+                    {
+                        removeFromLRUOM(old);
+                    }
                 }
             }
+            break;
         }
         if (old == null || !Utilities.sameInstance(old.getObject(), object))
         {
@@ -464,18 +443,39 @@ public class LRUMemoryCache implements CacheProvider
         myLRUObjectManager.setLowWaterBytesVM(lowWaterBytesVM);
     }
 
+    @Override
+    public void setMaxSizeBytesGPU(Class<?> type, long maxSizeBytesGPU)
+    {
+        myLRUObjectManager.setMaxSizeBytesGPU(type, maxSizeBytesGPU);
+    }
+
     @Override
     public void setMaxSizeBytesGPU(long maxSizeBytesGPU)
     {
         myLRUObjectManager.setMaxSizeBytesGPU(maxSizeBytesGPU);
     }
 
+    @Override
+    public void setMaxSizeBytesVM(Class<?> type, long maxSizeBytesVM)
+    {
+        myLRUObjectManager.setMaxSizeBytesVM(type, maxSizeBytesVM);
+    }
+
     @Override
     public void setMaxSizeBytesVM(long maxSizeBytesVM)
     {
         myLRUObjectManager.setMaxSizeBytesVM(maxSizeBytesVM);
     }
 
+    /**
+     * Remove objects from the cache if it is over its limits. This is called
+     * periodically once the cache is initialized.
+     */
+    void cleanup()
+    {
+        myLRUObjectManager.cleanup();
+    }
+
     @Override
     protected synchronized void finalize() throws Throwable
     {
@@ -554,53 +554,32 @@ public class LRUMemoryCache implements CacheProvider
     /**
      * Helper method that removes nodes from the cache map. This is only called
      * from the cache cleaning thread, so it's less important to be fast and
-     * more important to not block operations occurring on other threads.
+     * more important to not block operations occurring on other threads. Empty
+     * maps are left in place, since a put may be waiting to add to them.
      *
      * @param nodes The nodes to be removed.
-     * @param objectType The type of object referenced by the nodes, used as a
-     *            filter so that the whole cache doesn't have to be searched.
+     * @param type The type that the nodes' objects are cached as.
      */
-    private void removeFromCache(Set<CacheNode> nodes, Class<? extends Object> objectType)
+    private void removeFromCache(Set<CacheNode> nodes, Class<? extends Object> type)
     {
-        Iterable<Class<?>> cacheTypes;
-        synchronized (myCacheMap)
+        KeyMap keyMap = myCacheMap.get(type);
+        if (keyMap != null)
         {
-            cacheTypes = new ArrayList<>(myCacheMap.keySet());
-        }
-
-        for (Class<?> type : cacheTypes)
-        {
-            if (type.isAssignableFrom(objectType))
+            for (Map<Object, CacheNode> map : keyMap.getSegments())
             {
-                Map<Object, CacheNode> map;
-                synchronized (myCacheMap)
+                synchronized (map)
                 {
-                    map = myCacheMap.get(type);
-                }
-                if (map != null)
-                {
-                    synchronized (map)
+                    for (Iterator<CacheNode> nodeIter = map.values().iterator(); nodeIter.hasNext();)
                     {
-                        for (Iterator<CacheNode> nodeIter = map.values().iterator(); nodeIter.hasNext();)
+                        if (nodes.contains(nodeIter.next()))
                         {
-                            CacheNode node = nodeIter.next();
-                            if (nodes.contains(node))
-                            {
-                                nodeIter.remove();
-                            }
-                        }
-                    }
-                    if (map.isEmpty())
-                    {
-                        synchronized (myCacheMap)
-                        {
-                            myCacheMap.remove(type);
+                            nodeIter.remove();
                         }
                     }
                 }
-                notifyContentsChanged(nodes, ContentChangeType.REMOVAL, type);
             }
         }
+        notifyContentsChanged(nodes, ContentChangeType.REMOVAL, type);
     }
 
     /**
@@ -616,4 +595,46 @@ public class LRUMemoryCache implements CacheProvider
             myLRUObjectManager.remove(node);
         }
     }
+
+    /**
+     * The keys and nodes for one type, split into segments that are each
+     * synchronized on themselves so that lookups of different keys do not
+     * contend.
+     */
+    private static class KeyMap
+    {
+        /** The segments. */
+        private final List<Map<Object, CacheNode>> mySegments = new ArrayList<>(SEGMENT_COUNT);
+
+        /** Constructor. */
+        public KeyMap()
+        {
+            for (int index = 0; index < SEGMENT_COUNT; ++index)
+            {
+                mySegments.add(New.<Object, CacheNode>weakMap(1024 / SEGMENT_COUNT));
+            }
+        }
+
+        /**
+         * Get the segment that holds a key.
+         *
+         * @param key The key.
+         * @return The segment, which must be synchronized on to be used.
+         */
+        public Map<Object, CacheNode> getSegment(Object key)
+        {
+            int hash = key.hashCode();
+            return mySegments.get((hash ^ hash >>> 16) & SEGMENT_COUNT - 1);
+        }
+
+        /**
+         * Get all of the segments.
+         *
+         * @return The segments, which must each be synchronized on to be used.
+         */
+        public List<Map<Object, CacheNode>> getSegments()
+        {
+            return mySegments;
+        }
+    }
 }
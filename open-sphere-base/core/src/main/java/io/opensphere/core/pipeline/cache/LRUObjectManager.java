@@ -1,20 +1,24 @@
 package io.opensphere.core.pipeline.cache;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.log4j.Logger;
 
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.opensphere.core.metrics.MetricsRegistry;
 import io.opensphere.core.metrics.impl.DefaultNumberMetricsProvider;
 import io.opensphere.core.metrics.impl.DefaultPercentageMetricsProvider;
@@ -24,8 +28,19 @@ import io.opensphere.core.util.collections.TinySet;
 import io.opensphere.core.util.lang.StringUtilities;
 
 /**
- * Class responsible for keeping track of a set of cached objects in
- * least-recently-used order.
+ * Class responsible for keeping track of a set of cached objects and choosing
+ * which of them to remove when the cache is too large.
+ * <p>
+ * Uses of the cache keys are counted in a {@link FrequencySketch}, and each
+ * object records when it was last used. Neither takes a lock. When the cache
+ * must be cleaned, objects are removed one at a time: a small random sample of
+ * the objects is taken and the one whose keys have been used least often
+ * recently is removed, the least recently used breaking ties. This is the
+ * TinyLFU policy applied to choosing victims, so a burst of objects that are
+ * used once does not push out objects that are used repeatedly.
+ * <p>
+ * Limits may also be set for the objects cached as a particular type. Those
+ * limits are enforced the same way, considering only the objects of that type.
  */
 @SuppressWarnings("PMD.GodClass")
 abstract class LRUObjectManager
@@ -33,6 +48,22 @@ abstract class LRUObjectManager
     /** Logger reference. */
     private static final Logger LOGGER = Logger.getLogger(LRUObjectManager.class);
 
+    /** The number of objects in the sample from which each victim is chosen. */
+    private static final int SAMPLE_SIZE = 16;
+
+    /** The number of keys the frequency sketch is initially sized for. */
+    private static final int INITIAL_SKETCH_CAPACITY = 1024;
+
+    /**
+     * The fraction of a type's limit to which the type is reduced when it
+     * exceeds the limit.
+     */
+    private static final double TYPE_LOW_WATER_FRACTION = .9;
+
+    /** Orders candidates for removal from least to most valuable. */
+    private static final Comparator<Candidate> VALUE_ORDER = (c1, c2) -> c1.getFrequency() != c2.getFrequency()
+            ? Integer.compare(c1.getFrequency(), c2.getFrequency()) : Long.compare(c1.getLastUse(), c2.getLastUse());
+
     /** The video card cache information. */
     private final CacheStatus myCacheStatusGPU;
 
@@ -42,14 +73,30 @@ abstract class LRUObjectManager
     /** Lock that ensures that the cleanup method is not reentrant. */
     private final Lock myCleanupLock = new ReentrantLock();
 
+    /** The number of objects removed to reduce the size of the cache. */
+    private final LongAdder myEvictionCount = new LongAdder();
+
+    /** Optional metric tracking the number of evictions. */
+    private DefaultNumberMetricsProvider myEvictionsMetric;
+
     /** Optional metric tracking the GPU cache size. */
     private DefaultNumberMetricsProvider myGPUCacheMetric;
 
     /** Optional metric tracking the GPU cache percentage. */
     private DefaultPercentageMetricsProvider myGPUPctCacheMetric;
 
-    /** The map that keeps track of which node set was last referenced. */
-    private final Map<Object, LRUNodeSet> myLRUMap = new LinkedHashMap<>(16, .75f, true);
+    /** The number of cache lookups that found an object. */
+    private final LongAdder myHitCount = new LongAdder();
+
+    /** Optional metric tracking the number of hits. */
+    private DefaultNumberMetricsProvider myHitsMetric;
+
+    /**
+     * The map of cached objects to their node sets. Changes to an object's
+     * node set and to the sizes are made while computing the object's entry,
+     * so they only contend with changes to the same object.
+     */
+    private final ConcurrentHashMap<Object, LRUNodeSet> myLRUMap = new ConcurrentHashMap<>();
 
     /** Metric for the max GPU size. */
     private DefaultNumberMetricsProvider myMaxGPUmetric;
@@ -57,6 +104,21 @@ abstract class LRUObjectManager
     /** Metric for the max VM size. */
     private DefaultNumberMetricsProvider myMaxVMmetric;
 
+    /** The number of cache lookups that did not find an object. */
+    private final LongAdder myMissCount = new LongAdder();
+
+    /** Optional metric tracking the number of misses. */
+    private DefaultNumberMetricsProvider myMissesMetric;
+
+    /**
+     * The estimates of how often the cache keys have been used. This is
+     * replaced with a larger sketch when the cache outgrows it.
+     */
+    private volatile FrequencySketch mySketch = new FrequencySketch(INITIAL_SKETCH_CAPACITY);
+
+    /** The sizes and limits of the objects cached as each type. */
+    private final Map<Class<?>, TypeStatus> myTypeStatus = new ConcurrentHashMap<>();
+
     /** Optional metric tracking the VM cache size. */
     private DefaultNumberMetricsProvider myVMCacheMetric;
 
@@ -90,6 +152,9 @@ abstract class LRUObjectManager
             myMaxVMmetric.setNumberValueFormatter("%d");
             myMaxVMmetric.setPostfix(" MB");
             myVMPctCacheMetric = new DefaultPercentageMetricsProvider(3, topic, vmSubTopic, "Usage");
+            myHitsMetric = new DefaultNumberMetricsProvider(4, topic, vmSubTopic, "Hits", Long.valueOf(0L));
+            myMissesMetric = new DefaultNumberMetricsProvider(5, topic, vmSubTopic, "Misses", Long.valueOf(0L));
+            myEvictionsMetric = new DefaultNumberMetricsProvider(6, topic, vmSubTopic, "Evictions", Long.valueOf(0L));
 
             String gpuSubTopic = "GPU Memory";
             myGPUCacheMetric = new DefaultNumberMetricsProvider(1, topic, gpuSubTopic, "Current");
@@ -104,6 +169,9 @@ abstract class LRUObjectManager
             metricsRegistry.addMetricsProvider(myVMCacheMetric);
             metricsRegistry.addMetricsProvider(myMaxVMmetric);
             metricsRegistry.addMetricsProvider(myVMPctCacheMetric);
+            metricsRegistry.addMetricsProvider(myHitsMetric);
+            metricsRegistry.addMetricsProvider(myMissesMetric);
+            metricsRegistry.addMetricsProvider(myEvictionsMetric);
             metricsRegistry.addMetricsProvider(myGPUCacheMetric);
             metricsRegistry.addMetricsProvider(myMaxGPUmetric);
             metricsRegistry.addMetricsProvider(myGPUPctCacheMetric);
@@ -118,43 +186,34 @@ abstract class LRUObjectManager
      */
     public void add(CacheNode node)
     {
-        Object object = node.getObject();
-        long sizeVM = node.getSizeVM();
-        long sizeGPU = node.getSizeGPU();
-
-        synchronized (myLRUMap)
+        mySketch.increment(node.getKeyHash());
+        myLRUMap.compute(node.getObject(), (object, existing) ->
         {
-            LRUNodeSet lruNodeSet = myLRUMap.get(object);
+            LRUNodeSet lruNodeSet = existing;
             if (lruNodeSet == null)
             {
                 lruNodeSet = new LRUNodeSet();
-                myLRUMap.put(object, lruNodeSet);
-                myCacheStatusVM.addToCurrent(sizeVM);
-                myCacheStatusGPU.addToCurrent(sizeGPU);
             }
             else
             {
-                long maxSizeVM = lruNodeSet.getMaxNodeSizeVM();
-                if (maxSizeVM < sizeVM)
-                {
-                    myCacheStatusVM.addToCurrent(sizeVM - maxSizeVM);
-                }
-
-                long maxSizeGPU = lruNodeSet.getMaxNodeSizeGPU();
-                if (maxSizeGPU < sizeGPU)
-                {
-                    myCacheStatusGPU.addToCurrent(sizeGPU - maxSizeGPU);
-                }
+                lruNodeSet.recordUse();
             }
-            lruNodeSet.addNode(node);
-        }
+            long maxSizeVM = lruNodeSet.getMaxNodeSizeVM();
+            long maxSizeGPU = lruNodeSet.getMaxNodeSizeGPU();
+            if (lruNodeSet.addNode(node))
+            {
+                getTypeStatus(node.getType()).add(node.getSizeVM(), node.getSizeGPU());
+            }
+            myCacheStatusVM.addToCurrent(lruNodeSet.getMaxNodeSizeVM() - maxSizeVM);
+            myCacheStatusGPU.addToCurrent(lruNodeSet.getMaxNodeSizeGPU() - maxSizeGPU);
+            return lruNodeSet;
+        });
     }
 
     /**
      * Cleaning routine. This should be called periodically. When called, check
-     * the cache size. If the size is too high compared with the JRE maximum
-     * memory footprint, clear some portion of the least-recently-used cached
-     * objects.
+     * the sizes of the types that have limits and of the whole cache. If a size
+     * is too high, remove objects until it is below its low water mark.
      */
     public void cleanup()
     {
@@ -163,25 +222,21 @@ abstract class LRUObjectManager
             long t0 = System.nanoTime();
             try
             {
-                int sizeBefore;
-                long sizeBeforeGPU;
-                long sizeBeforeVM;
-                synchronized (myLRUMap)
+                int sizeBefore = myLRUMap.size();
+                long sizeBeforeGPU = myCacheStatusGPU.getCurrentSizeBytes();
+                long sizeBeforeVM = myCacheStatusVM.getCurrentSizeBytes();
+
+                if (sizeBefore > mySketch.getCapacity())
                 {
-                    sizeBefore = myLRUMap.size();
-                    sizeBeforeGPU = myCacheStatusGPU.getCurrentSizeBytes();
-                    sizeBeforeVM = myCacheStatusVM.getCurrentSizeBytes();
+                    mySketch = new FrequencySketch(sizeBefore << 1);
                 }
 
-                boolean cleaned = cleanup(myCacheStatusGPU, true) || cleanup(myCacheStatusVM, false);
+                boolean cleaned = cleanupTypes();
+                cleaned |= cleanup(myCacheStatusGPU, true) || cleanup(myCacheStatusVM, false);
 
                 if (cleaned && LOGGER.isDebugEnabled())
                 {
-                    int sizeAfter;
-                    synchronized (myLRUMap)
-                    {
-                        sizeAfter = myLRUMap.size();
-                    }
+                    int sizeAfter = myLRUMap.size();
                     long t1 = System.nanoTime();
                     String msg = new StringBuilder(192).append("Cleaned cache (count before/after: ").append(sizeBefore)
                             .append('/').append(sizeAfter).append(", GPU size before/after: ").append(sizeBeforeGPU).append('/')
@@ -223,6 +278,12 @@ abstract class LRUObjectManager
             myGPUPctCacheMetric.setValue(
                     Double.valueOf((double)myCacheStatusGPU.getCurrentSizeBytes() / myCacheStatusGPU.getMaxSizeBytes()));
         }
+        if (myHitsMetric != null)
+        {
+            myHitsMetric.setValue(Long.valueOf(myHitCount.sum()));
+            myMissesMetric.setValue(Long.valueOf(myMissCount.sum()));
+            myEvictionsMetric.setValue(Long.valueOf(myEvictionCount.sum()));
+        }
     }
 
     /**
@@ -230,14 +291,10 @@ abstract class LRUObjectManager
      */
     public void clear()
     {
-        Map<Object, Set<CacheNode>> toBeRemovedMap;
-        synchronized (myLRUMap)
+        Map<Object, Set<CacheNode>> toBeRemovedMap = new HashMap<>(myLRUMap.size());
+        for (Entry<Object, LRUNodeSet> entry : myLRUMap.entrySet())
         {
-            toBeRemovedMap = new HashMap<>(myLRUMap.size());
-            for (Entry<Object, LRUNodeSet> entry : myLRUMap.entrySet())
-            {
-                toBeRemovedMap.put(entry.getKey(), new HashSet<CacheNode>(entry.getValue().getNodes()));
-            }
+            toBeRemovedMap.put(entry.getKey(), entry.getValue().getNodes());
         }
 
         doRemoveFromCache(toBeRemovedMap);
@@ -252,19 +309,16 @@ abstract class LRUObjectManager
     public String getDetailedCacheStatusString()
     {
         Map<Class<?>, long[]> map = New.map();
-        synchronized (myLRUMap)
+        for (Entry<Object, LRUNodeSet> entry : myLRUMap.entrySet())
         {
-            for (Entry<Object, LRUNodeSet> entry : myLRUMap.entrySet())
+            long[] arr = map.get(entry.getKey().getClass());
+            if (arr == null)
             {
-                long[] arr = map.get(entry.getKey().getClass());
-                if (arr == null)
-                {
-                    arr = new long[2];
-                    map.put(entry.getKey().getClass(), arr);
-                }
-                arr[0] += entry.getValue().getMaxNodeSizeVM();
-                arr[1] += entry.getValue().getMaxNodeSizeGPU();
+                arr = new long[2];
+                map.put(entry.getKey().getClass(), arr);
             }
+            arr[0] += entry.getValue().getMaxNodeSizeVM();
+            arr[1] += entry.getValue().getMaxNodeSizeGPU();
         }
 
         final StringBuilder sb = new StringBuilder(32);
@@ -278,36 +332,83 @@ abstract class LRUObjectManager
     }
 
     /**
-     * Record use of objects.
+     * Get the number of objects that have been removed to reduce the size of
+     * the cache.
+     *
+     * @return The number of evictions.
+     */
+    public long getEvictionCount()
+    {
+        return myEvictionCount.sum();
+    }
+
+    /**
+     * Get the number of cache lookups that found an object.
      *
-     * @param objects The objects accessed.
+     * @return The number of hits.
      */
-    @SuppressFBWarnings("RV_RETURN_VALUE_IGNORED_NO_SIDE_EFFECT")
-    public void recordUse(Collection<Object> objects)
+    public long getHitCount()
     {
-        synchronized (myLRUMap)
+        return myHitCount.sum();
+    }
+
+    /**
+     * Get the number of cache lookups that did not find an object.
+     *
+     * @return The number of misses.
+     */
+    public long getMissCount()
+    {
+        return myMissCount.sum();
+    }
+
+    /**
+     * Record a cache lookup that found a node.
+     *
+     * @param node The node found.
+     */
+    public void recordHit(CacheNode node)
+    {
+        myHitCount.increment();
+        recordUse(node);
+    }
+
+    /**
+     * Record a cache lookup that did not find an object.
+     */
+    public void recordMiss()
+    {
+        myMissCount.increment();
+    }
+
+    /**
+     * Record use of nodes.
+     *
+     * @param nodes The nodes accessed.
+     */
+    public void recordUse(Collection<CacheNode> nodes)
+    {
+        for (CacheNode node : nodes)
         {
-            for (Object object : objects)
-            {
-                // It's possible that the LRU map no longer contains the object
-                // if the object was cleared in a different thread.
-                myLRUMap.get(object);
-            }
+            recordUse(node);
         }
     }
 
     /**
-     * Record use of an object.
+     * Record use of a node.
      *
-     * @param object The object accessed.
+     * @param node The node accessed.
      */
-    public void recordUse(Object object)
+    public void recordUse(CacheNode node)
     {
-        synchronized (myLRUMap)
+        mySketch.increment(node.getKeyHash());
+
+        // It's possible that the LRU map no longer contains the object
+        // if the object was cleared in a different thread.
+        LRUNodeSet lruNodeSet = myLRUMap.get(node.getObject());
+        if (lruNodeSet != null)
         {
-            // It's possible that the LRU map no longer contains the object
-            // if the object was cleared in a different thread.
-            myLRUMap.get(object);
+            lruNodeSet.recordUse();
         }
     }
 
@@ -332,7 +433,7 @@ abstract class LRUObjectManager
         Map<Object, Set<CacheNode>> map = new HashMap<>(nodes.size());
         for (CacheNode node : nodes)
         {
-            map.put(node.getObject(), Collections.singleton(node));
+            map.computeIfAbsent(node.getObject(), k -> new HashSet<>()).add(node);
         }
         removeFromLRUMap(map);
     }
@@ -359,6 +460,21 @@ abstract class LRUObjectManager
         myCacheStatusVM.setLowWaterBytes(lowWaterBytesVM);
     }
 
+    /**
+     * Set the amount of video card memory at which objects cached as a type
+     * will be removed, even if the cache as a whole is not full.
+     *
+     * @param type The type.
+     * @param maxSizeBytesGPU The max size bytes, or {@link Long#MAX_VALUE} for
+     *            no limit.
+     */
+    public void setMaxSizeBytesGPU(Class<?> type, long maxSizeBytesGPU)
+    {
+        LOGGER.info("Setting GPU geometry cache size for " + type.getSimpleName() + " to "
+                + maxSizeBytesGPU / Constants.BYTES_PER_MEGABYTE + "MB");
+        getTypeStatus(type).setMaxSizeBytesGPU(maxSizeBytesGPU);
+    }
+
     /**
      * Set the size at which cache cleaning will be triggered.
      *
@@ -374,6 +490,21 @@ abstract class LRUObjectManager
         }
     }
 
+    /**
+     * Set the amount of VM memory at which objects cached as a type will be
+     * removed, even if the cache as a whole is not full.
+     *
+     * @param type The type.
+     * @param maxSizeBytesVM The max size bytes, or {@link Long#MAX_VALUE} for
+     *            no limit.
+     */
+    public void setMaxSizeBytesVM(Class<?> type, long maxSizeBytesVM)
+    {
+        LOGGER.info("Setting VM geometry cache size for " + type.getSimpleName() + " to "
+                + maxSizeBytesVM / Constants.BYTES_PER_MEGABYTE + "MB");
+        getTypeStatus(type).setMaxSizeBytesVM(maxSizeBytesVM);
+    }
+
     /**
      * Set the size at which cache cleaning will be triggered.
      *
@@ -395,7 +526,7 @@ abstract class LRUObjectManager
      * {@link #cleanup()} routine.
      *
      * @param nodes The nodes to be removed from the cache.
-     * @param type The type of object cached by the nodes.
+     * @param type The type that the nodes' objects are cached as.
      */
     protected abstract void removeFromCache(Set<CacheNode> nodes, Class<? extends Object> type);
 
@@ -420,38 +551,7 @@ abstract class LRUObjectManager
             return false;
         }
 
-        Map<Object, Set<CacheNode>> toBeRemovedMap = new HashMap<>();
-        synchronized (myLRUMap)
-        {
-            long toBeRemovedBytes = 0;
-            for (Iterator<Entry<Object, LRUNodeSet>> lruIter = myLRUMap.entrySet().iterator(); lruIter.hasNext()
-                    && needToRemoveBytes > toBeRemovedBytes;)
-            {
-                Entry<Object, LRUNodeSet> entry = lruIter.next();
-                Object key = entry.getKey();
-                Set<CacheNode> entryNodes = entry.getValue().getNodes();
-
-                // Only remove nodes if they will reduce the cache footprint for
-                // the cache type we are checking.
-                int checkedCacheSize = 0;
-                for (CacheNode node : entryNodes)
-                {
-                    if (gpuCache)
-                    {
-                        checkedCacheSize += node.getSizeGPU();
-                    }
-                    else
-                    {
-                        checkedCacheSize += node.getSizeVM();
-                    }
-                }
-                if (checkedCacheSize > 0)
-                {
-                    toBeRemovedBytes += checkedCacheSize;
-                    toBeRemovedMap.put(key, new HashSet<CacheNode>(entryNodes));
-                }
-            }
-        }
+        Map<Object, Set<CacheNode>> toBeRemovedMap = selectForRemoval(needToRemoveBytes, gpuCache, null);
         if (LOGGER.isTraceEnabled() && !toBeRemovedMap.isEmpty())
         {
             LOGGER.trace(" Removing classes from the LRU cache");
@@ -477,6 +577,37 @@ abstract class LRUObjectManager
         return true;
     }
 
+    /**
+     * If necessary, remove objects cached as types that are over their
+     * limits.
+     *
+     * @return If any objects were removed.
+     */
+    private boolean cleanupTypes()
+    {
+        boolean cleaned = false;
+        for (Entry<Class<?>, TypeStatus> entry : myTypeStatus.entrySet())
+        {
+            TypeStatus status = entry.getValue();
+            long overVM = status.getCurrentSizeBytesVM() > status.getMaxSizeBytesVM()
+                    ? status.getCurrentSizeBytesVM() - (long)(status.getMaxSizeBytesVM() * TYPE_LOW_WATER_FRACTION) : 0L;
+            long overGPU = status.getCurrentSizeBytesGPU() > status.getMaxSizeBytesGPU()
+                    ? status.getCurrentSizeBytesGPU() - (long)(status.getMaxSizeBytesGPU() * TYPE_LOW_WATER_FRACTION) : 0L;
+            if (overVM > 0L || overGPU > 0L)
+            {
+                if (LOGGER.isDebugEnabled())
+                {
+                    LOGGER.debug("Cleaning cache of " + entry.getKey().getName() + " (VM/GPU bytes over limit: " + overVM + "/"
+                            + overGPU + ")");
+                }
+                boolean gpuCache = overGPU > overVM;
+                doRemoveFromCache(selectForRemoval(gpuCache ? overGPU : overVM, gpuCache, entry.getKey()));
+                cleaned = true;
+            }
+        }
+        return cleaned;
+    }
+
     /**
      * Remove the nodes from the LRU map and from the cache.
      *
@@ -493,16 +624,18 @@ abstract class LRUObjectManager
         removeFromLRUMap(toBeRemovedMap);
 
         Map<Class<? extends Object>, Set<CacheNode>> typeToNodeMap = new HashMap<>();
-        for (Entry<Object, Set<CacheNode>> toBeRemoved : toBeRemovedMap.entrySet())
+        for (Set<CacheNode> toBeRemoved : toBeRemovedMap.values())
         {
-            Class<? extends Object> keyType = toBeRemoved.getKey().getClass();
-            Set<CacheNode> nodes = typeToNodeMap.get(keyType);
-            if (nodes == null)
+            for (CacheNode node : toBeRemoved)
             {
-                nodes = new HashSet<>();
-                typeToNodeMap.put(keyType, nodes);
+                Set<CacheNode> nodes = typeToNodeMap.get(node.getType());
+                if (nodes == null)
+                {
+                    nodes = new HashSet<>();
+                    typeToNodeMap.put(node.getType(), nodes);
+                }
+                nodes.add(node);
             }
-            nodes.addAll(toBeRemoved.getValue());
         }
 
         for (Entry<Class<? extends Object>, Set<CacheNode>> entry : typeToNodeMap.entrySet())
@@ -511,6 +644,17 @@ abstract class LRUObjectManager
         }
     }
 
+    /**
+     * Get the status for a type, creating it if necessary.
+     *
+     * @param type The type.
+     * @return The status.
+     */
+    private TypeStatus getTypeStatus(Class<?> type)
+    {
+        return myTypeStatus.computeIfAbsent(type, t -> new TypeStatus());
+    }
+
     /**
      * Remove nodes from the LRU map. Adjust the current cache size.
      *
@@ -518,41 +662,188 @@ abstract class LRUObjectManager
      */
     private void removeFromLRUMap(Map<Object, Set<CacheNode>> nodeMap)
     {
-        synchronized (myLRUMap)
+        for (Entry<Object, Set<CacheNode>> entry : nodeMap.entrySet())
         {
-            Set<Entry<Object, Set<CacheNode>>> entrySet = nodeMap.entrySet();
-            for (Entry<Object, Set<CacheNode>> entry : entrySet)
+            myLRUMap.computeIfPresent(entry.getKey(), (object, lruSet) ->
             {
-                Object object = entry.getKey();
-                LRUNodeSet lruSet = myLRUMap.get(object);
-                if (lruSet != null)
+                long maxSizeVM = lruSet.getMaxNodeSizeVM();
+                long maxSizeGPU = lruSet.getMaxNodeSizeGPU();
+                for (CacheNode node : lruSet.removeAll(entry.getValue()))
                 {
-                    Set<CacheNode> nodes = entry.getValue();
-                    long maxSizeRemovedVM = lruSet.getMaxNodeSizeVM();
-                    long maxSizeRemovedGL = lruSet.getMaxNodeSizeGPU();
-                    lruSet.removeAll(nodes);
-                    if (lruSet.isEmpty())
+                    getTypeStatus(node.getType()).add(-node.getSizeVM(), -node.getSizeGPU());
+                }
+                myCacheStatusVM.addToCurrent(lruSet.getMaxNodeSizeVM() - maxSizeVM);
+                myCacheStatusGPU.addToCurrent(lruSet.getMaxNodeSizeGPU() - maxSizeGPU);
+                return lruSet.isEmpty() ? null : lruSet;
+            });
+        }
+    }
+
+    /**
+     * Choose objects to remove from the cache. Each victim is the least
+     * valuable of a random sample of the remaining candidates.
+     *
+     * @param needToRemoveBytes The number of bytes to remove.
+     * @param gpuCache true when video card memory is being freed, false when
+     *            VM memory is being freed.
+     * @param type If not {@code null}, only nodes cached as this type are
+     *            removed.
+     * @return The map of objects to the nodes to be removed.
+     */
+    private Map<Object, Set<CacheNode>> selectForRemoval(long needToRemoveBytes, boolean gpuCache, Class<?> type)
+    {
+        FrequencySketch sketch = mySketch;
+        List<Candidate> candidates = new ArrayList<>(myLRUMap.size());
+        for (Entry<Object, LRUNodeSet> entry : myLRUMap.entrySet())
+        {
+            LRUNodeSet lruNodeSet = entry.getValue();
+            Set<CacheNode> nodes = lruNodeSet.getNodes();
+
+            // Only remove nodes if they will reduce the cache footprint for
+            // the cache type we are checking.
+            long bytes;
+            if (type == null)
+            {
+                bytes = gpuCache ? lruNodeSet.getMaxNodeSizeGPU() : lruNodeSet.getMaxNodeSizeVM();
+            }
+            else
+            {
+                Set<CacheNode> typeNodes = new HashSet<>();
+                bytes = 0L;
+                for (CacheNode node : nodes)
+                {
+                    long size = gpuCache ? node.getSizeGPU() : node.getSizeVM();
+                    if (node.getType() == type && size > 0L)
                     {
-                        myLRUMap.remove(object);
-                        myCacheStatusVM.addToCurrent(-maxSizeRemovedVM);
-                        myCacheStatusGPU.addToCurrent(-maxSizeRemovedGL);
+                        bytes += size;
+                        typeNodes.add(node);
                     }
-                    else
-                    {
-                        long maxSizeRemainingVM = lruSet.getMaxNodeSizeVM();
-                        if (maxSizeRemainingVM < maxSizeRemovedVM)
-                        {
-                            myCacheStatusVM.addToCurrent(maxSizeRemainingVM - maxSizeRemovedVM);
-                        }
+                }
+                nodes = typeNodes;
+            }
+            if (bytes > 0L)
+            {
+                int frequency = 0;
+                for (CacheNode node : nodes)
+                {
+                    frequency = Math.max(frequency, sketch.frequency(node.getKeyHash()));
+                }
+                candidates.add(new Candidate(entry.getKey(), nodes, bytes, frequency, lruNodeSet.getLastUse()));
+            }
+        }
 
-                        long maxSizeRemainingGL = lruSet.getMaxNodeSizeGPU();
-                        if (maxSizeRemainingGL < maxSizeRemovedGL)
-                        {
-                            myCacheStatusGPU.addToCurrent(maxSizeRemainingGL - maxSizeRemovedGL);
-                        }
-                    }
+        Map<Object, Set<CacheNode>> toBeRemovedMap = new HashMap<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long toBeRemovedBytes = 0L;
+        for (int remaining = candidates.size(); remaining > 0 && needToRemoveBytes > toBeRemovedBytes; --remaining)
+        {
+            // Shuffle a sample into the front of the remaining candidates and
+            // move the least valuable of it to the end.
+            int sampleSize = Math.min(SAMPLE_SIZE, remaining);
+            int victim = 0;
+            for (int index = 0; index < sampleSize; ++index)
+            {
+                Collections.swap(candidates, index, index + random.nextInt(remaining - index));
+                if (VALUE_ORDER.compare(candidates.get(index), candidates.get(victim)) < 0)
+                {
+                    victim = index;
                 }
             }
+            Collections.swap(candidates, victim, remaining - 1);
+
+            Candidate candidate = candidates.get(remaining - 1);
+            toBeRemovedBytes += candidate.getBytes();
+            toBeRemovedMap.put(candidate.getObject(), candidate.getNodes());
+        }
+        myEvictionCount.add(toBeRemovedMap.size());
+        return toBeRemovedMap;
+    }
+
+    /** An object which may be removed from the cache. */
+    private static class Candidate
+    {
+        /** The number of bytes that removing the nodes will free. */
+        private final long myBytes;
+
+        /** The estimated recent use count of the object's keys. */
+        private final int myFrequency;
+
+        /** The time of the last use of the object. */
+        private final long myLastUse;
+
+        /** The nodes to be removed. */
+        private final Set<CacheNode> myNodes;
+
+        /** The cached object. */
+        private final Object myObject;
+
+        /**
+         * Constructor.
+         *
+         * @param object The cached object.
+         * @param nodes The nodes to be removed.
+         * @param bytes The number of bytes that removing the nodes will free.
+         * @param frequency The estimated recent use count of the object's
+         *            keys.
+         * @param lastUse The time of the last use of the object.
+         */
+        public Candidate(Object object, Set<CacheNode> nodes, long bytes, int frequency, long lastUse)
+        {
+            myObject = object;
+            myNodes = nodes;
+            myBytes = bytes;
+            myFrequency = frequency;
+            myLastUse = lastUse;
+        }
+
+        /**
+         * Get the number of bytes that removing the nodes will free.
+         *
+         * @return The number of bytes.
+         */
+        public long getBytes()
+        {
+            return myBytes;
+        }
+
+        /**
+         * Get the estimated recent use count of the object's keys.
+         *
+         * @return The estimate.
+         */
+        public int getFrequency()
+        {
+            return myFrequency;
+        }
+
+        /**
+         * Get the time of the last use of the object.
+         *
+         * @return The time in nanoseconds.
+         */
+        public long getLastUse()
+        {
+            return myLastUse;
+        }
+
+        /**
+         * Get the nodes to be removed.
+         *
+         * @return The nodes.
+         */
+        public Set<CacheNode> getNodes()
+        {
+            return myNodes;
+        }
+
+        /**
+         * Get the cached object.
+         *
+         * @return The object.
+         */
+        public Object getObject()
+        {
+            return myObject;
         }
     }
 
@@ -560,7 +851,7 @@ abstract class LRUObjectManager
     private static class CacheStatus
     {
         /** The overall cache size. */
-        private volatile long myCurrentSizeBytes;
+        private final AtomicLong myCurrentSizeBytes = new AtomicLong();
 
         /**
          * The size to which to reduce the cache when the max bytes is exceeded.
@@ -591,7 +882,10 @@ abstract class LRUObjectManager
          */
         public void addToCurrent(long sizeBytes)
         {
-            myCurrentSizeBytes += sizeBytes;
+            if (sizeBytes != 0L)
+            {
+                myCurrentSizeBytes.addAndGet(sizeBytes);
+            }
         }
 
         /**
@@ -601,7 +895,7 @@ abstract class LRUObjectManager
          */
         public long getCurrentSizeBytes()
         {
-            return myCurrentSizeBytes;
+            return myCurrentSizeBytes.get();
         }
 
         /**
@@ -650,10 +944,15 @@ abstract class LRUObjectManager
      * A class used to manage the objects cached with a single key. As nodes are
      * added to the set, the set keeps track of the largest node added. This
      * size is then subtracted from the overall cache size if the set is removed
-     * from the cache.
+     * from the cache. Changes are made while the set's entry in the LRU map is
+     * being computed, and are synchronized so that the nodes can be read from
+     * other threads.
      */
     private static class LRUNodeSet
     {
+        /** The time of the last use of the nodes. */
+        private volatile long myLastUse = System.nanoTime();
+
         /** The maximum video card size of the nodes in this set. */
         private long myMaxNodeSizeGPU;
 
@@ -667,12 +966,25 @@ abstract class LRUObjectManager
          * Add a node to the set.
          *
          * @param node the node added
+         * @return {@code true} if the node was not already in the set.
          */
-        public void addNode(CacheNode node)
+        public synchronized boolean addNode(CacheNode node)
         {
+            int oldSize = myNodes.size();
             myNodes = TinySet.add(myNodes, node);
             myMaxNodeSizeVM = Math.max(myMaxNodeSizeVM, node.getSizeVM());
             myMaxNodeSizeGPU = Math.max(myMaxNodeSizeGPU, node.getSizeGPU());
+            return oldSize != myNodes.size();
+        }
+
+        /**
+         * Get the time of the last use of the nodes.
+         *
+         * @return The time in nanoseconds.
+         */
+        public long getLastUse()
+        {
+            return myLastUse;
         }
 
         /**
@@ -680,7 +992,7 @@ abstract class LRUObjectManager
          *
          * @return the max size of my nodes
          */
-        public long getMaxNodeSizeGPU()
+        public synchronized long getMaxNodeSizeGPU()
         {
             return myMaxNodeSizeGPU;
         }
@@ -690,19 +1002,19 @@ abstract class LRUObjectManager
          *
          * @return the max size of my nodes
          */
-        public long getMaxNodeSizeVM()
+        public synchronized long getMaxNodeSizeVM()
         {
             return myMaxNodeSizeVM;
         }
 
         /**
-         * Get my nodes.
+         * Get a copy of my nodes.
          *
          * @return the nodes
          */
-        public Set<CacheNode> getNodes()
+        public synchronized Set<CacheNode> getNodes()
         {
-            return myNodes;
+            return new HashSet<>(myNodes);
         }
 
         /**
@@ -710,26 +1022,39 @@ abstract class LRUObjectManager
          *
          * @return <code>true</code> if empty
          */
-        public boolean isEmpty()
+        public synchronized boolean isEmpty()
         {
             return myNodes.isEmpty();
         }
 
+        /** Record a use of the nodes. */
+        public void recordUse()
+        {
+            myLastUse = System.nanoTime();
+        }
+
         /**
          * Remove nodes from this node set.
          *
          * @param nodes the nodes to be removed
+         * @return The nodes that were in the set.
          */
-        public void removeAll(Set<CacheNode> nodes)
+        public synchronized Collection<CacheNode> removeAll(Set<CacheNode> nodes)
         {
-            int oldSize = myNodes.size();
-            myNodes = TinySet.removeAll(myNodes, nodes);
-            boolean changed = oldSize != myNodes.size();
-
-            if (changed)
+            List<CacheNode> removed = new ArrayList<>(nodes.size());
+            for (CacheNode node : nodes)
             {
-                determineMaxNodeSize(nodes);
+                if (myNodes.contains(node))
+                {
+                    removed.add(node);
+                }
             }
+            if (!removed.isEmpty())
+            {
+                myNodes = TinySet.removeAll(myNodes, removed);
+                determineMaxNodeSize(removed);
+            }
+            return removed;
         }
 
         /**
@@ -790,4 +1115,92 @@ abstract class LRUObjectManager
             }
         }
     }
+
+    /** The sizes and limits of the objects cached as a single type. */
+    private static class TypeStatus
+    {
+        /** The GPU size of the objects. */
+        private final AtomicLong myCurrentSizeBytesGPU = new AtomicLong();
+
+        /** The VM size of the objects. */
+        private final AtomicLong myCurrentSizeBytesVM = new AtomicLong();
+
+        /** The GPU size at which the objects will be cleaned. */
+        private volatile long myMaxSizeBytesGPU = Long.MAX_VALUE;
+
+        /** The VM size at which the objects will be cleaned. */
+        private volatile long myMaxSizeBytesVM = Long.MAX_VALUE;
+
+        /**
+         * Add to the current sizes.
+         *
+         * @param sizeBytesVM The VM bytes to add.
+         * @param sizeBytesGPU The GPU bytes to add.
+         */
+        public void add(long sizeBytesVM, long sizeBytesGPU)
+        {
+            myCurrentSizeBytesVM.addAndGet(sizeBytesVM);
+            myCurrentSizeBytesGPU.addAndGet(sizeBytesGPU);
+        }
+
+        /**
+         * Get the GPU size of the objects.
+         *
+         * @return The size in bytes.
+         */
+        public long getCurrentSizeBytesGPU()
+        {
+            return myCurrentSizeBytesGPU.get();
+        }
+
+        /**
+         * Get the VM size of the objects.
+         *
+         * @return The size in bytes.
+         */
+        public long getCurrentSizeBytesVM()
+        {
+            return myCurrentSizeBytesVM.get();
+        }
+
+        /**
+         * Get the GPU size at which the objects will be cleaned.
+         *
+         * @return The size in bytes.
+         */
+        public long getMaxSizeBytesGPU()
+        {
+            return myMaxSizeBytesGPU;
+        }
+
+        /**
+         * Get the VM size at which the objects will be cleaned.
+         *
+         * @return The size in bytes.
+         */
+        public long getMaxSizeBytesVM()
+        {
+            return myMaxSizeBytesVM;
+        }
+
+        /**
+         * Set the GPU size at which the objects will be cleaned.
+         *
+         * @param maxSizeBytesGPU The size in bytes.
+         */
+        public void setMaxSizeBytesGPU(long maxSizeBytesGPU)
+        {
+            myMaxSizeBytesGPU = maxSizeBytesGPU;
+        }
+
+        /**
+         * Set the VM size at which the objects will be cleaned.
+         *
+         * @param maxSizeBytesVM The size in bytes.
+         */
+        public void setMaxSizeBytesVM(long maxSizeBytesVM)
+        {
+            myMaxSizeBytesVM = maxSizeBytesVM;
+        }
+    }
 }
@@ -1,22 +1,60 @@
 package io.opensphere.core.pipeline.processor;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import gnu.trove.map.hash.TIntObjectHashMap;
 import io.opensphere.core.model.ScreenBoundingBox;
 import io.opensphere.core.util.collections.New;
 
 /**
  * Manager for handling occlusion of label geometries. This manager can be used
  * to ensure that labels' bounding boxes do not overlap.
+ * <p>
+ * The accepted bounding boxes for each processor are bucketed in a uniform
+ * screen-space grid, so that a new label is only checked against the labels
+ * near it.
+ * <p>
+ * When declutter is stable, labels that were accepted in the previous pass
+ * for a processor are given priority over labels that were occluded, so that
+ * the set of labels shown does not change much when the view moves a little.
+ * Stable declutter is off by default; it is turned on with the
+ * {@code opensphere.pipeline.stableLabelDeclutter} system property.
  */
 public class LabelOcclusionManager
 {
+    /** The size of a grid cell in pixels. */
+    static final int CELL_SIZE = 64;
+
+    /** Whether declutter is stable by default. */
+    private static final boolean STABLE_DECLUTTER = Boolean.getBoolean("opensphere.pipeline.stableLabelDeclutter");
+
+    /** The grid of label bounding boxes for each participating processor. */
+    private final Map<LabelProcessor, OcclusionGrid> myGrids = New.concurrentMap();
+
+    /** Whether labels accepted in the previous pass are given priority. */
+    private final boolean myStable;
+
+    /**
+     * Constructor that uses the default declutter mode.
+     */
+    public LabelOcclusionManager()
+    {
+        this(STABLE_DECLUTTER);
+    }
+
     /**
-     * A collection of label bounding boxes for each participating label
-     * processor.
+     * Constructor.
+     *
+     * @param stable When true, labels accepted in the previous pass are given
+     *            priority over the other labels.
      */
-    private final Map<LabelProcessor, Collection<ScreenBoundingBox>> myLabelBounds = New.map();
+    public LabelOcclusionManager(boolean stable)
+    {
+        myStable = stable;
+    }
 
     /**
      * Determine whether the location is occluded. If the label is not occluded,
@@ -29,32 +67,298 @@ public class LabelOcclusionManager
      */
     public boolean isOccluded(LabelProcessor processor, ScreenBoundingBox location)
     {
-        Collection<ScreenBoundingBox> bounds = myLabelBounds.get(processor);
-        if (bounds == null)
+        return isOccluded(processor, null, location);
+    }
+
+    /**
+     * Determine whether the location is occluded. If the label is not occluded,
+     * the location is saved and future requests which overlap this location
+     * will be occluded, and the label is remembered so that it may be given
+     * priority in the next pass.
+     *
+     * @param processor The processor which owns the label.
+     * @param label The label, or {@code null} if it should not be remembered.
+     * @param location The location of the label on screen.
+     * @return true when the label is occluded.
+     */
+    public boolean isOccluded(LabelProcessor processor, Object label, ScreenBoundingBox location)
+    {
+        OcclusionGrid grid = myGrids.computeIfAbsent(processor, p -> new OcclusionGrid());
+        if (grid.overlaps(location))
+        {
+            return true;
+        }
+
+        grid.add(location);
+        if (label != null && myStable)
+        {
+            grid.getAccepted().add(label);
+        }
+        return false;
+    }
+
+    /**
+     * Get whether labels accepted in the previous pass are given priority.
+     *
+     * @return true when declutter is stable.
+     */
+    public boolean isStable()
+    {
+        return myStable;
+    }
+
+    /**
+     * Order labels so that the labels which were accepted in the previous pass
+     * for the processor are checked first. The relative order of the labels is
+     * otherwise preserved. If declutter is not stable, the labels are returned
+     * unchanged.
+     *
+     * @param <T> The type of the labels.
+     * @param processor The processor which owns the labels.
+     * @param labels The labels.
+     * @return The labels in priority order.
+     */
+    public <T> Collection<? extends T> prioritize(LabelProcessor processor, Collection<? extends T> labels)
+    {
+        OcclusionGrid grid = myGrids.get(processor);
+        if (!myStable || grid == null || grid.getPreviouslyAccepted().isEmpty())
         {
-            bounds = New.collection();
-            myLabelBounds.put(processor, bounds);
+            return labels;
         }
 
-        for (ScreenBoundingBox box : bounds)
+        Set<Object> previous = grid.getPreviouslyAccepted();
+        List<T> result = New.list(labels.size());
+        for (T label : labels)
         {
-            if (box.overlaps(location, 0.))
+            if (previous.contains(label))
             {
-                return true;
+                result.add(label);
             }
         }
+        for (T label : labels)
+        {
+            if (!previous.contains(label))
+            {
+                result.add(label);
+            }
+        }
+        return result;
+    }
 
-        bounds.add(location);
-        return false;
+    /**
+     * Remove all state for the processor.
+     *
+     * @param processor The processor.
+     */
+    public void remove(LabelProcessor processor)
+    {
+        myGrids.remove(processor);
     }
 
     /**
-     * Reset all occlusion regions for the processor.
+     * Reset all occlusion regions for the processor. The labels accepted since
+     * the last reset become the labels given priority in the next pass.
      *
      * @param processor The processor for which to reset all occlusion regions.
      */
     public void reset(LabelProcessor processor)
     {
-        myLabelBounds.remove(processor);
+        OcclusionGrid grid = myGrids.get(processor);
+        if (grid != null)
+        {
+            grid.reset();
+        }
+    }
+
+    /** A uniform grid of the bounding boxes accepted for one processor. */
+    private static class OcclusionGrid
+    {
+        /** The maximum magnitude of a cell index in either dimension. */
+        private static final int MAX_CELL = Short.MAX_VALUE;
+
+        /** The labels accepted since the last reset. */
+        private Set<Object> myAccepted = New.set();
+
+        /**
+         * All of the accepted bounding boxes, used when a query covers more
+         * cells than there are boxes.
+         */
+        private final List<ScreenBoundingBox> myAll = New.list();
+
+        /** The accepted bounding boxes which intersect each cell. */
+        private final TIntObjectHashMap<List<ScreenBoundingBox>> myCells = new TIntObjectHashMap<>();
+
+        /** The labels accepted before the last reset. */
+        private Set<Object> myPreviouslyAccepted = New.set();
+
+        /**
+         * Bounding boxes that cannot be bucketed because they wrap
+         * horizontally.
+         */
+        private final List<ScreenBoundingBox> myUnbucketed = New.list();
+
+        /**
+         * Get the cell index for a screen coordinate.
+         *
+         * @param coordinate The coordinate in pixels.
+         * @return The cell index.
+         */
+        private static int cell(double coordinate)
+        {
+            return (int)Math.max(-MAX_CELL, Math.min(MAX_CELL, Math.floor(coordinate / CELL_SIZE)));
+        }
+
+        /**
+         * Get the key for a cell.
+         *
+         * @param x The x index of the cell.
+         * @param y The y index of the cell.
+         * @return The key.
+         */
+        private static int key(int x, int y)
+        {
+            return x << 16 | y & 0xFFFF;
+        }
+
+        /**
+         * Add an accepted bounding box.
+         *
+         * @param box The bounding box.
+         */
+        public void add(ScreenBoundingBox box)
+        {
+            myAll.add(box);
+            if (isWrapped(box))
+            {
+                myUnbucketed.add(box);
+                return;
+            }
+
+            int minX = cell(box.getUpperLeft().getX());
+            int maxX = cell(box.getLowerRight().getX());
+            int minY = cell(box.getUpperLeft().getY());
+            int maxY = cell(box.getLowerRight().getY());
+            for (int x = minX; x <= maxX; ++x)
+            {
+                for (int y = minY; y <= maxY; ++y)
+                {
+                    int key = key(x, y);
+                    List<ScreenBoundingBox> boxes = myCells.get(key);
+                    if (boxes == null)
+                    {
+                        boxes = New.list();
+                        myCells.put(key, boxes);
+                    }
+                    boxes.add(box);
+                }
+            }
+        }
+
+        /**
+         * Get the labels accepted since the last reset.
+         *
+         * @return The labels.
+         */
+        public Set<Object> getAccepted()
+        {
+            return myAccepted;
+        }
+
+        /**
+         * Get the labels accepted before the last reset.
+         *
+         * @return The labels.
+         */
+        public Set<Object> getPreviouslyAccepted()
+        {
+            return myPreviouslyAccepted;
+        }
+
+        /**
+         * Determine if a bounding box overlaps any accepted bounding box.
+         *
+         * @param location The bounding box.
+         * @return true if there is an overlap.
+         */
+        public boolean overlaps(ScreenBoundingBox location)
+        {
+            if (overlaps(myUnbucketed, location))
+            {
+                return true;
+            }
+            if (isWrapped(location))
+            {
+                return overlaps(myAll, location);
+            }
+
+            int minX = cell(location.getUpperLeft().getX());
+            int maxX = cell(location.getLowerRight().getX());
+            int minY = cell(location.getUpperLeft().getY());
+            int maxY = cell(location.getLowerRight().getY());
+            if ((long)(maxX - minX + 1) * (maxY - minY + 1) > myAll.size())
+            {
+                return overlaps(myAll, location);
+            }
+
+            for (int x = minX; x <= maxX; ++x)
+            {
+                for (int y = minY; y <= maxY; ++y)
+                {
+                    List<ScreenBoundingBox> boxes = myCells.get(key(x, y));
+                    if (boxes != null && overlaps(boxes, location))
+                    {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Remove the accepted bounding boxes, and make the accepted labels the
+         * previously accepted labels.
+         */
+        public void reset()
+        {
+            myAll.clear();
+            myCells.clear();
+            myUnbucketed.clear();
+            Set<Object> previous = myPreviouslyAccepted;
+            myPreviouslyAccepted = myAccepted;
+            previous.clear();
+            myAccepted = previous;
+        }
+
+        /**
+         * Determine if a bounding box wraps horizontally, in which case it
+         * cannot be bucketed.
+         *
+         * @param box The bounding box.
+         * @return true if the box wraps.
+         */
+        private boolean isWrapped(ScreenBoundingBox box)
+        {
+            return !(box.getUpperLeft().getX() <= box.getLowerRight().getX()
+                    && box.getUpperLeft().getY() <= box.getLowerRight().getY());
+        }
+
+        /**
+         * Determine if a bounding box overlaps any of some other boxes.
+         *
+         * @param boxes The other boxes.
+         * @param location The bounding box.
+         * @return true if there is an overlap.
+         */
+        private boolean overlaps(List<ScreenBoundingBox> boxes, ScreenBoundingBox location)
+        {
+            for (int index = 0; index < boxes.size(); ++index)
+            {
+                if (boxes.get(index).overlaps(location, 0.))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
     }
 }
@@ -90,6 +90,13 @@ public class LabelProcessor extends AbstractProcessor<LabelGeometry>
         });
     }
 
+    @Override
+    public void close()
+    {
+        super.close();
+        myLabelOcclusionManager.remove(this);
+    }
+
     @Override
     public void generateDryRunGeometries()
     {
@@ -208,7 +215,9 @@ public class LabelProcessor extends AbstractProcessor<LabelGeometry>
     @Override
     protected List<LabelGeometry> filterOnscreen(Collection<? extends LabelGeometry> objects)
     {
-        List<LabelGeometry> onScreen = super.filterOnscreen(objects);
+        // Labels shown in the last pass are checked first so that they are not
+        // displaced by labels that were occluded.
+        List<LabelGeometry> onScreen = super.filterOnscreen(myLabelOcclusionManager.prioritize(this, objects));
         myLabelOcclusionManager.reset(this);
         return onScreen;
     }
@@ -283,7 +292,7 @@ public class LabelProcessor extends AbstractProcessor<LabelGeometry>
                 ScreenBoundingBox box = getCache().getCacheAssociation(geom, ScreenBoundingBox.class);
                 if (box != null)
                 {
-                    onScreen = !myLabelOcclusionManager.isOccluded(this, box);
+                    onScreen = !myLabelOcclusionManager.isOccluded(this, geom, box);
                 }
             }
 
@@ -0,0 +1,212 @@
+package io.opensphere.core.cache.jdbc;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.opensphere.core.cache.CacheException;
+
+/**
+ * Test for {@link BulkInserter}.
+ */
+public class BulkInserterTest
+{
+    /** The insert SQL. */
+    private static final String SQL = "insert into t (DATA_ID, VALUE) values (?, ?)";
+
+    /** The committed rows. */
+    private final List<List<Object>> myCommittedRows = new ArrayList<>();
+
+    /** The current auto-commit state of the fake connection. */
+    private boolean myAutoCommit = true;
+
+    /** The number of commits. */
+    private int myCommitCount;
+
+    /** The parameters of the row being bound. */
+    private final List<Object> myCurrentRow = new ArrayList<>();
+
+    /** The rows added to the current batch. */
+    private final List<List<Object>> myBatch = new ArrayList<>();
+
+    /** The rows executed but not yet committed. */
+    private final List<List<Object>> myPendingRows = new ArrayList<>();
+
+    /**
+     * Test inserting a small collection on the calling thread.
+     *
+     * @throws CacheException If the test fails.
+     */
+    @Test
+    public void testInsertInline() throws CacheException
+    {
+        List<String> input = createInput(3);
+        int[] ids = new BulkInserter<String>(createConnection(), createStatement(), SQL, (row, obj) -> row.setString(2, obj),
+                new CacheUtilities("test", new ReentrantLock())).insert(input);
+
+        Assert.assertArrayEquals(new int[] { 1, 2, 3 }, ids);
+        Assert.assertEquals(Arrays.asList(Arrays.asList(1, "0"), Arrays.asList(2, "1"), Arrays.asList(3, "2")),
+                myCommittedRows);
+        Assert.assertTrue(myAutoCommit);
+    }
+
+    /**
+     * Test inserting enough rows to use the translator thread, with
+     * intermediate commits.
+     *
+     * @throws CacheException If the test fails.
+     */
+    @Test
+    public void testInsertPipelined() throws CacheException
+    {
+        int count = Math.max(BulkInserter.PIPELINE_THRESHOLD, BulkInserter.COMMIT_SIZE) * 2 + 7;
+        List<String> input = createInput(count);
+        int[] ids = new BulkInserter<String>(createConnection(), createStatement(), SQL, (row, obj) -> row.setString(2, obj),
+                new CacheUtilities("test", new ReentrantLock())).insert(input);
+
+        Assert.assertEquals(count, ids.length);
+        Assert.assertEquals(count, myCommittedRows.size());
+        for (int index = 0; index < count; ++index)
+        {
+            Assert.assertEquals(index + 1, ids[index]);
+            Assert.assertEquals(Arrays.asList(index + 1, String.valueOf(index)), myCommittedRows.get(index));
+        }
+        Assert.assertTrue(myCommitCount > 2);
+        Assert.assertTrue(myAutoCommit);
+    }
+
+    /**
+     * Test that a failure translating a value rolls back the rows that were
+     * not yet committed.
+     */
+    @Test
+    public void testTranslateFailure()
+    {
+        int count = BulkInserter.PIPELINE_THRESHOLD + 1;
+        List<String> input = createInput(count);
+        try
+        {
+            new BulkInserter<String>(createConnection(), createStatement(), SQL, (row, obj) ->
+            {
+                if (obj.equals(String.valueOf(count - 1)))
+                {
+                    throw new CacheException("Bad value");
+                }
+                row.setString(2, obj);
+            }, new CacheUtilities("test", new ReentrantLock())).insert(input);
+            Assert.fail("Expected exception.");
+        }
+        catch (CacheException e)
+        {
+            Assert.assertEquals("Bad value", e.getMessage());
+        }
+        Assert.assertTrue(myPendingRows.isEmpty());
+        Assert.assertTrue(myAutoCommit);
+    }
+
+    /**
+     * Create a fake connection that tracks the commits.
+     *
+     * @return The connection.
+     */
+    private Connection createConnection()
+    {
+        return (Connection)Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+            (proxy, method, args) ->
+            {
+                switch (method.getName())
+                {
+                    case "getAutoCommit":
+                        return Boolean.valueOf(myAutoCommit);
+                    case "setAutoCommit":
+                        myAutoCommit = ((Boolean)args[0]).booleanValue();
+                        if (myAutoCommit)
+                        {
+                            commit();
+                        }
+                        return null;
+                    case "commit":
+                        commit();
+                        return null;
+                    case "rollback":
+                        myPendingRows.clear();
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+
+    /**
+     * Create input strings.
+     *
+     * @param count The number of strings.
+     * @return The strings.
+     */
+    private List<String> createInput(int count)
+    {
+        List<String> input = new ArrayList<>(count);
+        for (int index = 0; index < count; ++index)
+        {
+            input.add(String.valueOf(index));
+        }
+        return input;
+    }
+
+    /**
+     * Create a fake statement that tracks the batches.
+     *
+     * @return The statement.
+     */
+    private PreparedStatement createStatement()
+    {
+        return (PreparedStatement)Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] { PreparedStatement.class }, (proxy, method, args) ->
+            {
+                switch (method.getName())
+                {
+                    case "setInt":
+                    case "setString":
+                        int index = ((Integer)args[0]).intValue() - 1;
+                        while (myCurrentRow.size() <= index)
+                        {
+                            myCurrentRow.add(null);
+                        }
+                        myCurrentRow.set(index, args[1]);
+                        return null;
+                    case "addBatch":
+                        myBatch.add(new ArrayList<>(myCurrentRow));
+                        return null;
+                    case "executeBatch":
+                        int[] counts = new int[myBatch.size()];
+                        Arrays.fill(counts, 1);
+                        myPendingRows.addAll(myBatch);
+                        myBatch.clear();
+                        if (myAutoCommit)
+                        {
+                            commit();
+                        }
+                        return counts;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+
+    /**
+     * Commit the pending rows.
+     */
+    private void commit()
+    {
+        ++myCommitCount;
+        myCommittedRows.addAll(myPendingRows);
+        myPendingRows.clear();
+    }
+}
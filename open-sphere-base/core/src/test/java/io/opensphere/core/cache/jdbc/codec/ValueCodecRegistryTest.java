@@ -0,0 +1,267 @@
+package io.opensphere.core.cache.jdbc.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.io.WKBWriter;
+
+import io.opensphere.core.cache.jdbc.TypeMapper;
+import io.opensphere.core.model.Altitude;
+import io.opensphere.core.model.LatLonAlt;
+import io.opensphere.core.model.time.TimeSpan;
+import io.opensphere.core.util.lang.Serialization;
+
+/**
+ * Test for {@link ValueCodecRegistry}.
+ */
+public class ValueCodecRegistryTest
+{
+    /**
+     * Test round trips through the built-in codecs.
+     *
+     * @throws IOException If the test fails.
+     * @throws ClassNotFoundException If the test fails.
+     */
+    @Test
+    public void testBuiltInCodecs() throws IOException, ClassNotFoundException
+    {
+        ValueCodecRegistry registry = ValueCodecRegistry.getInstance();
+
+        assertRoundTrip(registry, TimeSpan.class, TimeSpan.get(1000L, 2000L));
+        assertRoundTrip(registry, TimeSpan.class, TimeSpan.TIMELESS);
+        assertRoundTrip(registry, TimeSpan.class, TimeSpan.newUnboundedStartTimeSpan(5L));
+        assertRoundTrip(registry, TimeSpan.class, TimeSpan.newUnboundedEndTimeSpan(5L));
+        assertRoundTrip(registry, LatLonAlt.class,
+                LatLonAlt.createFromDegreesMeters(10., -20., 300., Altitude.ReferenceLevel.TERRAIN));
+        assertRoundTrip(registry, LatLonAlt.class, LatLonAlt.createFromDegrees(45., 90.));
+
+        Geometry geom = new GeometryFactory().createLineString(
+                new Coordinate[] { new Coordinate(1., 2., 3.), new Coordinate(4., 5., 6.) });
+        geom.setUserData("user data");
+        byte[] bytes = registry.encode(Geometry.class, geom);
+        Assert.assertEquals(ValueCodecRegistry.HEADER_MARKER, bytes[0]);
+        Geometry decoded = (Geometry)registry.decode(bytes);
+        Assert.assertTrue(geom.equalsExact(decoded));
+        Assert.assertEquals(6., decoded.getCoordinates()[1].z, 0.);
+        Assert.assertEquals("user data", decoded.getUserData());
+
+        geom.setUserData(null);
+        decoded = (Geometry)registry.decode(registry.encode(Geometry.class, geom));
+        Assert.assertTrue(geom.equalsExact(decoded));
+        Assert.assertNull(decoded.getUserData());
+
+        double[] doubles = new double[] { 1., Double.NaN, -3.5 };
+        Assert.assertTrue(Arrays.equals(doubles, (double[])registry.decode(registry.encode(double[].class, doubles))));
+        float[] floats = new float[] { 1f, 2f };
+        Assert.assertTrue(Arrays.equals(floats, (float[])registry.decode(registry.encode(float[].class, floats))));
+        int[] ints = new int[] { Integer.MIN_VALUE, 0, 7 };
+        Assert.assertTrue(Arrays.equals(ints, (int[])registry.decode(registry.encode(int[].class, ints))));
+        long[] longs = new long[0];
+        Assert.assertTrue(Arrays.equals(longs, (long[])registry.decode(registry.encode(long[].class, longs))));
+    }
+
+    /**
+     * Test that geometries written by version 0 of the codec, which did not
+     * write user data, are still read.
+     *
+     * @throws IOException If the test fails.
+     * @throws ClassNotFoundException If the test fails.
+     */
+    @Test
+    public void testGeometryVersion0() throws IOException, ClassNotFoundException
+    {
+        Geometry geom = new GeometryFactory().createPoint(new Coordinate(1., 2., 3.));
+        byte[] wkb = new WKBWriter(3, true).write(geom);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(baos);
+        out.writeByte(ValueCodecRegistry.HEADER_MARKER);
+        out.writeByte(new GeometryCodec().getId());
+        out.writeByte(0);
+        out.writeInt(wkb.length);
+        out.write(wkb);
+
+        Geometry decoded = (Geometry)ValueCodecRegistry.getInstance().decode(baos.toByteArray());
+        Assert.assertTrue(geom.equalsExact(decoded));
+        Assert.assertNull(decoded.getUserData());
+    }
+
+    /**
+     * Test that the codec is chosen by the property type rather than the
+     * class of the value.
+     *
+     * @throws IOException If the test fails.
+     */
+    @Test
+    public void testPropertyType() throws IOException
+    {
+        ValueCodecRegistry registry = ValueCodecRegistry.getInstance();
+        TimeSpan span = TimeSpan.get(10L, 20L);
+        Assert.assertArrayEquals(Serialization.serialize(span), registry.encode(Serializable.class, span));
+        Assert.assertArrayEquals(Serialization.serialize(span), registry.encode(Object.class, span));
+        Assert.assertEquals(ValueCodecRegistry.HEADER_MARKER, registry.encode(TimeSpan.class, span)[0]);
+
+        Assert.assertTrue(TypeMapper.isCodecType(LatLonAlt.class));
+        Assert.assertTrue(TypeMapper.isCodecType(double[].class));
+        Assert.assertFalse(TypeMapper.isCodecType(Serializable.class));
+        Assert.assertFalse(TypeMapper.isCodecType(String.class));
+        // Time spans and geometries have columns of their own.
+        Assert.assertFalse(TypeMapper.isCodecType(TimeSpan.class));
+        Assert.assertFalse(TypeMapper.isCodecType(Geometry.class));
+    }
+
+    /**
+     * Test that values without a codec, and values written before the codecs
+     * existed, use Java serialization.
+     *
+     * @throws IOException If the test fails.
+     * @throws ClassNotFoundException If the test fails.
+     */
+    @Test
+    public void testJavaSerialization() throws IOException, ClassNotFoundException
+    {
+        ValueCodecRegistry registry = ValueCodecRegistry.getInstance();
+
+        byte[] bytes = registry.encode(String.class, "text");
+        Assert.assertArrayEquals(Serialization.serialize("text"), bytes);
+        Assert.assertEquals("text", registry.decode(bytes));
+        Assert.assertNull(registry.decode(registry.encode(LatLonAlt.class, null)));
+
+        TimeSpan span = TimeSpan.get(10L, 20L);
+        Assert.assertEquals(span, registry.decode(Serialization.serialize(span)));
+    }
+
+    /**
+     * Test codec versioning and registration errors.
+     *
+     * @throws IOException If the test fails.
+     * @throws ClassNotFoundException If the test fails.
+     */
+    @Test
+    public void testVersions() throws IOException, ClassNotFoundException
+    {
+        ValueCodecRegistry registry = new ValueCodecRegistry();
+        registry.register(new PointCodec(1));
+        byte[] bytes = registry.encode(Point.class, new Point(3));
+        Assert.assertEquals(100, bytes[1]);
+        Assert.assertEquals(1, bytes[2]);
+        Assert.assertEquals(3, ((Point)registry.decode(bytes)).myValue);
+
+        bytes[2] = 2;
+        try
+        {
+            registry.decode(bytes);
+            Assert.fail("Expected exception for newer version.");
+        }
+        catch (IOException e)
+        {
+            Assert.assertTrue(e.getMessage().contains("version 2"));
+        }
+
+        try
+        {
+            registry.register(new PointCodec(0));
+            Assert.fail("Expected exception for duplicate id.");
+        }
+        catch (IllegalArgumentException e)
+        {
+            Assert.assertTrue(e.getMessage().contains("100"));
+        }
+    }
+
+    /**
+     * Assert that a value survives encoding and decoding using a codec.
+     *
+     * @param registry The registry.
+     * @param type The property type.
+     * @param value The value.
+     * @throws IOException If the test fails.
+     * @throws ClassNotFoundException If the test fails.
+     */
+    private static void assertRoundTrip(ValueCodecRegistry registry, Class<?> type, Serializable value)
+        throws IOException, ClassNotFoundException
+    {
+        byte[] bytes = registry.encode(type, value);
+        Assert.assertEquals(ValueCodecRegistry.HEADER_MARKER, bytes[0]);
+        Assert.assertTrue(bytes.length < Serialization.serialize(value).length);
+        Assert.assertEquals(value, registry.decode(bytes));
+    }
+
+    /** A value for the test codec. */
+    private static class Point implements Serializable
+    {
+        /** Serial version UID. */
+        private static final long serialVersionUID = 1L;
+
+        /** The value. */
+        private final int myValue;
+
+        /**
+         * Constructor.
+         *
+         * @param value The value.
+         */
+        Point(int value)
+        {
+            myValue = value;
+        }
+    }
+
+    /** A test codec. */
+    private static class PointCodec implements ValueCodec<Point>
+    {
+        /** The version. */
+        private final int myVersion;
+
+        /**
+         * Constructor.
+         *
+         * @param version The version.
+         */
+        PointCodec(int version)
+        {
+            myVersion = version;
+        }
+
+        @Override
+        public Point decode(DataInput in, int version) throws IOException
+        {
+            return new Point(in.readInt());
+        }
+
+        @Override
+        public void encode(Point value, DataOutput out) throws IOException
+        {
+            out.writeInt(value.myValue);
+        }
+
+        @Override
+        public int getId()
+        {
+            return 100;
+        }
+
+        @Override
+        public Class<Point> getType()
+        {
+            return Point.class;
+        }
+
+        @Override
+        public int getVersion()
+        {
+            return myVersion;
+        }
+    }
+}
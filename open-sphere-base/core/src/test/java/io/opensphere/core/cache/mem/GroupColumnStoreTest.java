@@ -0,0 +1,129 @@
+package io.opensphere.core.cache.mem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.opensphere.core.cache.CacheIdUtilities;
+import io.opensphere.core.cache.util.PropertyDescriptor;
+
+/**
+ * Test for {@link GroupColumnStore}.
+ */
+public class GroupColumnStoreTest
+{
+    /** A property with an estimated value size of 100 bytes. */
+    private static final PropertyDescriptor<String> PROPERTY = PropertyDescriptor.create("prop", String.class, 100L);
+
+    /**
+     * Test that soft values are evicted from the least recently used groups
+     * when the budget is exceeded.
+     */
+    @Test
+    public void testBudgetEviction()
+    {
+        GroupColumnStore store = new GroupColumnStore();
+        long[] group1 = createIds(1, 100);
+        long[] group2 = createIds(2, 100);
+        store.put(PROPERTY, group1, createValues(100), true, true);
+        store.put(PROPERTY, group2, createValues(100), true, true);
+        long bytesPerGroup = store.getSoftBytes() / 2;
+        Assert.assertTrue(bytesPerGroup >= 100L * 100L);
+
+        // Use group 2 so that group 1 is the least recently used.
+        store.get(PROPERTY, group2);
+        store.setSoftBudgetBytes(bytesPerGroup + bytesPerGroup / 2);
+
+        Assert.assertEquals(bytesPerGroup, store.getSoftBytes());
+        Assert.assertNull(store.get(PROPERTY, group1)[0]);
+        Assert.assertEquals("0", store.get(PROPERTY, group2)[0]);
+    }
+
+    /**
+     * Test that strong values survive removing the soft values, and that the
+     * soft byte count follows puts and removals.
+     */
+    @Test
+    public void testSoftAndStrong()
+    {
+        GroupColumnStore store = new GroupColumnStore();
+        long[] ids = createIds(7, 3000);
+        store.put(PROPERTY, ids, createValues(ids.length), true, false);
+        Assert.assertEquals(0L, store.getSoftBytes());
+
+        long[] softIds = createIds(8, 10);
+        store.put(PROPERTY, softIds, createValues(softIds.length), true, true);
+        long bytes = store.getSoftBytes();
+        Assert.assertTrue(bytes > 0L);
+
+        Map<PropertyDescriptor<?>, Object[]> removed = store.remove(new long[] { softIds[3], ids[2500] });
+        Assert.assertArrayEquals(new Object[] { "3", "2500" }, removed.get(PROPERTY));
+        Assert.assertEquals(bytes - bytes / softIds.length, store.getSoftBytes());
+
+        store.removeSoftValues();
+        Assert.assertEquals(0L, store.getSoftBytes());
+        Assert.assertNull(store.get(PROPERTY, softIds)[0]);
+        Object[] values = store.get(PROPERTY, ids);
+        Assert.assertEquals("2999", values[2999]);
+        Assert.assertNull(values[2500]);
+    }
+
+    /**
+     * Test removing whole groups.
+     */
+    @Test
+    public void testRemoveGroups()
+    {
+        GroupColumnStore store = new GroupColumnStore();
+        Assert.assertNull(store.get(PROPERTY, createIds(1, 1)));
+
+        long[] ids = new long[] { CacheIdUtilities.getCombinedId(1, 5), CacheIdUtilities.getCombinedId(2, 5),
+            CacheIdUtilities.getCombinedId(1, 6), };
+        store.put(PROPERTY, ids, createValues(ids.length), true, true);
+        long bytes = store.getSoftBytes();
+        store.removeGroups(new int[] { 1 });
+
+        Assert.assertArrayEquals(new Object[] { null, "1", null }, store.get(PROPERTY, ids));
+        Assert.assertEquals(bytes / ids.length, store.getSoftBytes());
+
+        store.clear();
+        Assert.assertEquals(0L, store.getSoftBytes());
+        Assert.assertNull(store.get(PROPERTY, ids));
+    }
+
+    /**
+     * Create consecutive ids in a group.
+     *
+     * @param groupId The group id.
+     * @param count The number of ids.
+     * @return The ids.
+     */
+    private static long[] createIds(int groupId, int count)
+    {
+        long[] ids = new long[count];
+        for (int index = 0; index < count; ++index)
+        {
+            ids[index] = CacheIdUtilities.getCombinedId(groupId, index);
+        }
+        return ids;
+    }
+
+    /**
+     * Create values that are the string forms of their indices.
+     *
+     * @param count The number of values.
+     * @return The values.
+     */
+    private static List<String> createValues(int count)
+    {
+        List<String> values = new ArrayList<>(count);
+        for (int index = 0; index < count; ++index)
+        {
+            values.add(String.valueOf(index));
+        }
+        return values;
+    }
+}
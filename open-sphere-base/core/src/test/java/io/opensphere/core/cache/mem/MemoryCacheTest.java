@@ -0,0 +1,283 @@
+package io.opensphere.core.cache.mem;
+
+import java.io.NotSerializableException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Test;
+
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TIntArrayList;
+import io.opensphere.core.cache.Cache;
+import io.opensphere.core.cache.CacheException;
+import io.opensphere.core.cache.CacheIdUtilities;
+import io.opensphere.core.cache.PropertyValueMap;
+import io.opensphere.core.cache.accessor.PropertyAccessor;
+import io.opensphere.core.cache.accessor.SerializableAccessor;
+import io.opensphere.core.cache.accessor.UnserializableAccessor;
+import io.opensphere.core.cache.util.PropertyDescriptor;
+
+/**
+ * Test for {@link MemoryCache}.
+ */
+public class MemoryCacheTest
+{
+    /** A property that is held by strong references. */
+    private static final PropertyDescriptor<Integer> STRONG_PROPERTY = PropertyDescriptor.create("strong", Integer.class);
+
+    /** A property that is held by soft references. */
+    private static final PropertyDescriptor<String> SOFT_PROPERTY = PropertyDescriptor.create("soft", String.class);
+
+    /**
+     * Test for {@link MemoryCache#clear(long[])}.
+     *
+     * @throws CacheException If the test fails.
+     * @throws NotSerializableException If the test fails.
+     */
+    @Test
+    public void testClearIds() throws CacheException, NotSerializableException
+    {
+        MemoryCache cache = createCache();
+        long[] ids = createIds(1, 10);
+        deposit(cache, ids, STRONG_PROPERTY, false);
+
+        cache.clear(new long[] { ids[2], ids[7] });
+
+        TIntList failed = new TIntArrayList();
+        List<Integer> results = getValues(cache, ids, STRONG_PROPERTY, failed);
+        failed.sort();
+        Assert.assertArrayEquals(new int[] { 2, 7 }, failed.toArray());
+        Assert.assertEquals(Integer.valueOf(3), results.get(3));
+    }
+
+    /**
+     * Test for {@link MemoryCache#clearGroups(int[])}.
+     *
+     * @throws CacheException If the test fails.
+     * @throws NotSerializableException If the test fails.
+     */
+    @Test
+    public void testClearGroups() throws CacheException, NotSerializableException
+    {
+        MemoryCache cache = createCache();
+        long[] group1 = createIds(1, 5);
+        long[] group2 = createIds(2, 5);
+        deposit(cache, group1, STRONG_PROPERTY, false);
+        deposit(cache, group2, STRONG_PROPERTY, false);
+
+        cache.clearGroups(new int[] { 1 });
+
+        TIntList failed = new TIntArrayList();
+        getValues(cache, group1, STRONG_PROPERTY, failed);
+        Assert.assertEquals(group1.length, failed.size());
+
+        failed.clear();
+        List<Integer> results = getValues(cache, group2, STRONG_PROPERTY, failed);
+        Assert.assertTrue(failed.isEmpty());
+        Assert.assertEquals(Integer.valueOf(4), results.get(4));
+    }
+
+    /**
+     * Test that many threads can deposit and retrieve values at the same time.
+     *
+     * @throws Exception If the test fails.
+     */
+    @Test
+    public void testConcurrentAccess() throws Exception
+    {
+        final MemoryCache cache = createCache();
+        int threadCount = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try
+        {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int thread = 0; thread < threadCount; ++thread)
+            {
+                final long[] ids = createIds(thread, 1000);
+                futures.add(executor.submit(new Callable<Boolean>()
+                {
+                    @Override
+                    public Boolean call() throws Exception
+                    {
+                        for (int pass = 0; pass < 20; ++pass)
+                        {
+                            deposit(cache, ids, STRONG_PROPERTY, false);
+                            TIntList failed = new TIntArrayList();
+                            List<Integer> results = getValues(cache, ids, STRONG_PROPERTY, failed);
+                            if (!failed.isEmpty() || !Integer.valueOf(999).equals(results.get(999)))
+                            {
+                                return Boolean.FALSE;
+                            }
+                        }
+                        return Boolean.TRUE;
+                    }
+                }));
+            }
+            for (Future<Boolean> future : futures)
+            {
+                Assert.assertTrue(future.get().booleanValue());
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Test for {@link MemoryCache#setInMemorySizeBytes(long)} dropping the
+     * softly referenced values when it is set to zero.
+     *
+     * @throws CacheException If the test fails.
+     * @throws NotSerializableException If the test fails.
+     */
+    @Test
+    public void testSetInMemorySizeBytesZero() throws CacheException, NotSerializableException
+    {
+        MemoryCache cache = createCache();
+        long[] ids = createIds(3, 5);
+        deposit(cache, ids, STRONG_PROPERTY, false);
+        deposit(cache, ids, SOFT_PROPERTY, true);
+
+        TIntList failed = new TIntArrayList();
+        getValues(cache, ids, SOFT_PROPERTY, failed);
+        Assert.assertTrue(failed.isEmpty());
+
+        cache.setInMemorySizeBytes(0L);
+
+        // Check the strong values first, since a failed retrieval clears the
+        // ids from the cache.
+        List<Integer> results = getValues(cache, ids, STRONG_PROPERTY, failed);
+        Assert.assertTrue(failed.isEmpty());
+        Assert.assertEquals(Integer.valueOf(1), results.get(1));
+
+        getValues(cache, ids, SOFT_PROPERTY, failed);
+        Assert.assertEquals(ids.length, failed.size());
+    }
+
+    /**
+     * Test depositing and retrieving values.
+     *
+     * @throws CacheException If the test fails.
+     * @throws NotSerializableException If the test fails.
+     */
+    @Test
+    public void testUpdateValues() throws CacheException, NotSerializableException
+    {
+        MemoryCache cache = createCache();
+        long[] ids = createIds(1, 100);
+        deposit(cache, ids, STRONG_PROPERTY, false);
+        deposit(cache, ids, SOFT_PROPERTY, true);
+
+        TIntList failed = new TIntArrayList();
+        List<Integer> strong = getValues(cache, ids, STRONG_PROPERTY, failed);
+        List<String> soft = getValues(cache, ids, SOFT_PROPERTY, failed);
+        Assert.assertTrue(failed.isEmpty());
+        for (int index = 0; index < ids.length; ++index)
+        {
+            Assert.assertEquals(Integer.valueOf(index), strong.get(index));
+            Assert.assertEquals(String.valueOf(index), soft.get(index));
+        }
+
+        deposit(cache, new long[] { ids[5] }, STRONG_PROPERTY, false);
+        Assert.assertEquals(Integer.valueOf(0), getValues(cache, new long[] { ids[5] }, STRONG_PROPERTY, failed).get(0));
+    }
+
+    /**
+     * Create a memory cache with a nested cache that has nothing in it.
+     *
+     * @return The cache.
+     */
+    private static MemoryCache createCache()
+    {
+        Cache nested = EasyMock.createNiceMock(Cache.class);
+        EasyMock.replay(nested);
+        return new MemoryCache(nested);
+    }
+
+    /**
+     * Create consecutive ids in a group.
+     *
+     * @param groupId The group id.
+     * @param count The number of ids.
+     * @return The ids.
+     */
+    private static long[] createIds(int groupId, int count)
+    {
+        long[] ids = new long[count];
+        for (int index = 0; index < count; ++index)
+        {
+            ids[index] = CacheIdUtilities.getCombinedId(groupId, index);
+        }
+        return ids;
+    }
+
+    /**
+     * Deposit values for some ids. Each value is derived from the index of its
+     * id.
+     *
+     * @param <T> The property type.
+     * @param cache The cache.
+     * @param ids The ids.
+     * @param desc The property.
+     * @param persistent If the values should be deposited using a persistent
+     *            accessor, which makes them softly referenced.
+     * @throws CacheException If the cache fails.
+     * @throws NotSerializableException If a value cannot be serialized.
+     */
+    private static <T> void deposit(MemoryCache cache, long[] ids, PropertyDescriptor<T> desc, boolean persistent)
+        throws CacheException, NotSerializableException
+    {
+        List<Integer> input = new ArrayList<>(ids.length);
+        for (int index = 0; index < ids.length; ++index)
+        {
+            input.add(Integer.valueOf(index));
+        }
+
+        PropertyAccessor<Integer, ?> accessor;
+        if (persistent)
+        {
+            accessor = new SerializableAccessor<Integer, String>(SOFT_PROPERTY)
+            {
+                @Override
+                public String access(Integer in)
+                {
+                    return String.valueOf(in);
+                }
+            };
+        }
+        else
+        {
+            accessor = UnserializableAccessor.getHomogeneousAccessor(STRONG_PROPERTY);
+        }
+        Assert.assertEquals(desc, accessor.getPropertyDescriptor());
+        cache.updateValues(ids, input, Collections.singleton(accessor), null, null);
+    }
+
+    /**
+     * Get the values for some ids.
+     *
+     * @param <T> The property type.
+     * @param cache The cache.
+     * @param ids The ids.
+     * @param desc The property.
+     * @param failed Return collection of indices that could not be retrieved.
+     * @return The values.
+     * @throws CacheException If the cache fails.
+     */
+    private static <T> List<T> getValues(MemoryCache cache, long[] ids, PropertyDescriptor<T> desc, TIntList failed)
+        throws CacheException
+    {
+        PropertyValueMap resultMap = new PropertyValueMap();
+        resultMap.addResultList(desc, ids.length);
+        cache.getValues(ids, resultMap, failed);
+        return resultMap.getResultList(desc);
+    }
+}
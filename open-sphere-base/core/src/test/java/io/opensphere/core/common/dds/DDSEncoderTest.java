@@ -0,0 +1,215 @@
+package io.opensphere.core.common.dds;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.opensphere.core.common.dds.DDSEncoder.CompressionType;
+
+/** Tests for {@link DDSEncoder}. */
+public class DDSEncoderTest
+{
+    /** Logger reference. */
+    private static final Logger LOGGER = Logger.getLogger(DDSEncoderTest.class);
+
+    /** The compressed types that are tested. */
+    private static final CompressionType[] TYPES = { CompressionType.DXT1, CompressionType.DXT1_Transparent,
+        CompressionType.DXT5, };
+
+    /**
+     * Test that parallel compression gives the same blocks as sequential
+     * compression.
+     */
+    @Test
+    public void testParallelMatchesSequential()
+    {
+        Random random = new Random(3);
+        int[][] sizes = { { 4, 4 }, { 256, 256 }, { 512, 64 }, { 36, 1028 } };
+        for (int[] size : sizes)
+        {
+            byte[] rgba = createRaster(random, size[0], size[1], 4);
+            for (CompressionType type : TYPES)
+            {
+                Assert.assertArrayEquals(type + " " + size[0] + "x" + size[1], compressSequential(type, size[0], size[1], rgba),
+                        compressParallel(new DDSEncoder(), type, size[0], size[1], rgba));
+            }
+
+            DDSEncoder abgr = new DDSEncoder();
+            abgr.setABGR();
+            DDSEncoder sequential = new DDSEncoder();
+            sequential.setABGR();
+            ByteBuffer expected = allocate(CompressionType.DXT5, size[0], size[1]);
+            sequential.compressImageDXT5(size[0], size[1], rgba, expected);
+            Assert.assertArrayEquals(expected.array(), compressParallel(abgr, CompressionType.DXT5, size[0], size[1], rgba));
+
+            byte[] bgr = createRaster(random, size[0], size[1], 3);
+            DDSEncoder parallel = new DDSEncoder();
+            parallel.setBGR();
+            sequential = new DDSEncoder();
+            sequential.setBGR();
+            expected = allocate(CompressionType.DXT1, size[0], size[1]);
+            sequential.compressImageDXT1(size[0], size[1], bgr, expected);
+            Assert.assertArrayEquals(expected.array(), compressParallel(parallel, CompressionType.DXT1, size[0], size[1], bgr));
+        }
+    }
+
+    /**
+     * Test that the stream and buffer encodings match.
+     *
+     * @throws IOException If the stream cannot be written.
+     */
+    @Test
+    public void testEncodeDDS() throws IOException
+    {
+        Random random = new Random(5);
+        int[][] sizes = { { 64, 32 }, { 1024, 4 } };
+        for (int[] size : sizes)
+        {
+            byte[] rgba = createRaster(random, size[0], size[1], 4);
+            for (CompressionType type : TYPES)
+            {
+                ByteBuffer buffer = ByteBuffer.allocate(DDSEncoder.DDS_HEADER_SIZE
+                        + DDSEncoder.getCompressedSize(size[0], size[1], type));
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                new DDSEncoder().encodeDDS(size[0], size[1], type, rgba, buffer);
+                Assert.assertFalse(buffer.hasRemaining());
+
+                ByteArrayOutputStream stream = new ByteArrayOutputStream();
+                new DDSEncoder().encodeDDS(size[0], size[1], type, rgba, stream);
+                Assert.assertArrayEquals(type.toString(), buffer.array(), stream.toByteArray());
+            }
+        }
+    }
+
+    /**
+     * Benchmark compressing standard tile sizes sequentially and in parallel.
+     * This only checks the results; the times are logged at debug level.
+     */
+    @Test
+    public void testBenchmark()
+    {
+        Random random = new Random(7);
+        for (int size = 256; size <= 1024; size *= 2)
+        {
+            byte[] rgba = createRaster(random, size, size, 4);
+            for (CompressionType type : TYPES)
+            {
+                long sequentialTime = Long.MAX_VALUE;
+                long parallelTime = Long.MAX_VALUE;
+                for (int pass = 0; pass < 5; ++pass)
+                {
+                    long t0 = System.nanoTime();
+                    byte[] expected = compressSequential(type, size, size, rgba);
+                    long t1 = System.nanoTime();
+                    byte[] actual = compressParallel(new DDSEncoder(), type, size, size, rgba);
+                    long t2 = System.nanoTime();
+                    Assert.assertArrayEquals(expected, actual);
+                    sequentialTime = Math.min(sequentialTime, t1 - t0);
+                    parallelTime = Math.min(parallelTime, t2 - t1);
+                }
+                if (LOGGER.isDebugEnabled())
+                {
+                    LOGGER.debug(type + " " + size + "x" + size + ": sequential " + sequentialTime / 1000000. + " ms, parallel "
+                            + parallelTime / 1000000. + " ms");
+                }
+            }
+        }
+    }
+
+    /**
+     * Allocate a little-endian buffer for compressed blocks.
+     *
+     * @param type The compression type.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @return The buffer.
+     */
+    private static ByteBuffer allocate(CompressionType type, int width, int height)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(DDSEncoder.getCompressedSize(width, height, type));
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    /**
+     * Compress an image in parallel.
+     *
+     * @param encoder The encoder.
+     * @param type The compression type.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param raster The image raster.
+     * @return The compressed blocks.
+     */
+    private static byte[] compressParallel(DDSEncoder encoder, CompressionType type, int width, int height, byte[] raster)
+    {
+        ByteBuffer buffer = allocate(type, width, height);
+        encoder.compressImageDXTn(width, height, type, raster, buffer);
+        Assert.assertFalse(buffer.hasRemaining());
+        return buffer.array();
+    }
+
+    /**
+     * Compress an RGBA image with the sequential methods.
+     *
+     * @param type The compression type.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param rgba The image raster.
+     * @return The compressed blocks.
+     */
+    private static byte[] compressSequential(CompressionType type, int width, int height, byte[] rgba)
+    {
+        DDSEncoder encoder = new DDSEncoder();
+        ByteBuffer buffer = allocate(type, width, height);
+        if (type == CompressionType.DXT1)
+        {
+            encoder.compressImageDXT1(width, height, rgba, buffer);
+        }
+        else if (type == CompressionType.DXT1_Transparent)
+        {
+            encoder.compressImageDXT1_alpha(width, height, rgba, buffer);
+        }
+        else
+        {
+            encoder.compressImageDXT5(width, height, rgba, buffer);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Create an image raster with smooth gradients, noise, and some
+     * transparent pixels.
+     *
+     * @param random The random number generator.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param pixelSize The number of bytes per pixel.
+     * @return The raster.
+     */
+    private static byte[] createRaster(Random random, int width, int height, int pixelSize)
+    {
+        byte[] raster = new byte[width * height * pixelSize];
+        int index = 0;
+        for (int y = 0; y < height; ++y)
+        {
+            for (int x = 0; x < width; ++x)
+            {
+                raster[index++] = (byte)(x + random.nextInt(16));
+                raster[index++] = (byte)(y + random.nextInt(16));
+                raster[index++] = (byte)(x ^ y);
+                if (pixelSize == 4)
+                {
+                    raster[index++] = (byte)(random.nextInt(8) == 0 ? 0 : x * y);
+                }
+            }
+        }
+        return raster;
+    }
+}
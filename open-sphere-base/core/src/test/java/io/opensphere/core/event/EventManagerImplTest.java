@@ -0,0 +1,199 @@
+package io.opensphere.core.event;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.opensphere.core.util.collections.New;
+
+/**
+ * Test for {@link EventManagerImpl}.
+ */
+public class EventManagerImplTest
+{
+    /**
+     * Test that a listener gets its events in order, including events of
+     * different types.
+     *
+     * @throws InterruptedException If the test is interrupted.
+     */
+    @Test
+    public void testOrdering() throws InterruptedException
+    {
+        EventManagerImpl eventManager = new EventManagerImpl();
+        int count = 1000;
+        CountDownLatch latch = new CountDownLatch(count);
+        List<String> received = Collections.synchronizedList(New.<String>list());
+        EventListener<Event> listener = event ->
+        {
+            received.add(event.getDescription());
+            latch.countDown();
+        };
+        eventManager.subscribe(TestEvent.class, listener);
+        eventManager.subscribe(SeparateTestEvent.class, listener);
+
+        List<String> expected = New.list(count);
+        for (int index = 0; index < count; ++index)
+        {
+            Event event = index % 3 == 0 ? new SeparateTestEvent(index) : new TestEvent(index);
+            expected.add(event.getDescription());
+            eventManager.publishEvent(event);
+        }
+
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(expected, received);
+    }
+
+    /**
+     * Test that a slow listener does not hold up the events for other
+     * listeners.
+     *
+     * @throws InterruptedException If the test is interrupted.
+     */
+    @Test
+    public void testSlowListener() throws InterruptedException
+    {
+        EventManagerImpl eventManager = new EventManagerImpl();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch slowDone = new CountDownLatch(2);
+        EventListener<TestEvent> slowListener = event ->
+        {
+            try
+            {
+                release.await(5, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e)
+            {
+                Assert.fail(e.toString());
+            }
+            slowDone.countDown();
+        };
+        CountDownLatch fastDone = new CountDownLatch(2);
+        EventListener<TestEvent> fastListener = event -> fastDone.countDown();
+        eventManager.subscribe(TestEvent.class, slowListener);
+        eventManager.subscribe(TestEvent.class, fastListener);
+
+        eventManager.publishEvent(new TestEvent(1));
+        eventManager.publishEvent(new TestEvent(2));
+
+        Assert.assertTrue(fastDone.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(2, slowDone.getCount());
+        release.countDown();
+        Assert.assertTrue(slowDone.await(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Test that subscribing and unsubscribing update the dispatch tables,
+     * including for listeners of super types.
+     *
+     * @throws InterruptedException If the test is interrupted.
+     */
+    @Test
+    public void testSubscriptionChanges() throws InterruptedException
+    {
+        EventManagerImpl eventManager = new EventManagerImpl();
+        List<String> received = Collections.synchronizedList(New.<String>list());
+        EventListener<Event> eventListener = event -> received.add("event" + ((TestEvent)event).getNumber());
+        EventListener<OtherTestEvent> otherListener = event -> received.add("other" + event.getNumber());
+
+        eventManager.subscribe(Event.class, eventListener);
+        eventManager.publishEvent(new OtherTestEvent(1));
+        eventManager.subscribe(OtherTestEvent.class, otherListener);
+        eventManager.publishEvent(new OtherTestEvent(2));
+        eventManager.unsubscribe(Event.class, eventListener);
+        eventManager.publishEvent(new OtherTestEvent(3));
+
+        CountDownLatch latch = new CountDownLatch(1);
+        eventManager.subscribe(OtherTestEvent.class, event -> latch.countDown());
+        eventManager.publishEvent(new OtherTestEvent(4));
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+        // Give the other listeners time to finish.
+        long end = System.currentTimeMillis() + 5000;
+        while (received.size() < 5 && System.currentTimeMillis() < end)
+        {
+            Thread.sleep(10);
+        }
+        synchronized (received)
+        {
+            Assert.assertEquals(New.set("event1", "event2", "other2", "other3", "other4"), New.set(received));
+            Assert.assertEquals(5, received.size());
+        }
+        Assert.assertTrue(eventManager.getSubscribers(Event.class).isEmpty());
+        Assert.assertEquals(2, eventManager.getSubscribers(OtherTestEvent.class).size());
+    }
+
+    /** An event for testing. */
+    private static class TestEvent extends AbstractSingleStateEvent
+    {
+        /** The number of the event. */
+        private final int myNumber;
+
+        /**
+         * Constructor.
+         *
+         * @param number The number of the event.
+         */
+        public TestEvent(int number)
+        {
+            myNumber = number;
+        }
+
+        @Override
+        public String getDescription()
+        {
+            return "Test event " + myNumber;
+        }
+
+        /**
+         * Get the number of the event.
+         *
+         * @return The number.
+         */
+        public int getNumber()
+        {
+            return myNumber;
+        }
+    }
+
+    /** An event for testing that is not related to the other test events. */
+    private static class SeparateTestEvent extends AbstractSingleStateEvent
+    {
+        /** The number of the event. */
+        private final int myNumber;
+
+        /**
+         * Constructor.
+         *
+         * @param number The number of the event.
+         */
+        public SeparateTestEvent(int number)
+        {
+            myNumber = number;
+        }
+
+        @Override
+        public String getDescription()
+        {
+            return "Separate test event " + myNumber;
+        }
+    }
+
+    /** A subclass of the test event. */
+    private static class OtherTestEvent extends TestEvent
+    {
+        /**
+         * Constructor.
+         *
+         * @param number The number of the event.
+         */
+        public OtherTestEvent(int number)
+        {
+            super(number);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package io.opensphere.core.pipeline.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Tests for {@link FrequencySketch}. */
+public class FrequencySketchTest
+{
+    /** Test counting a few hashes. */
+    @Test
+    public void testIncrement()
+    {
+        FrequencySketch sketch = new FrequencySketch(64);
+        for (int count = 0; count < 5; ++count)
+        {
+            sketch.increment("a".hashCode());
+        }
+        sketch.increment("b".hashCode());
+
+        Assert.assertEquals(5, sketch.frequency("a".hashCode()));
+        Assert.assertEquals(1, sketch.frequency("b".hashCode()));
+        Assert.assertEquals(0, sketch.frequency("c".hashCode()));
+    }
+
+    /** Test that the counts stop at 15. */
+    @Test
+    public void testSaturation()
+    {
+        FrequencySketch sketch = new FrequencySketch(64);
+        for (int count = 0; count < 20; ++count)
+        {
+            sketch.increment(7);
+        }
+        Assert.assertEquals(15, sketch.frequency(7));
+    }
+
+    /** Test that the counts are halved after enough increments. */
+    @Test
+    public void testReset()
+    {
+        FrequencySketch sketch = new FrequencySketch(64);
+        for (int count = 0; count < 15; ++count)
+        {
+            sketch.increment(7);
+        }
+
+        int increments = 15;
+        for (int hash = 1000; sketch.frequency(7) == 15; ++hash)
+        {
+            sketch.increment(hash);
+            ++increments;
+            Assert.assertTrue(increments <= 10 * sketch.getCapacity());
+        }
+        Assert.assertEquals(7, sketch.frequency(7));
+    }
+}
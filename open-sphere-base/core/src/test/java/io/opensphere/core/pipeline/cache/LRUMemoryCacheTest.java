@@ -0,0 +1,94 @@
+package io.opensphere.core.pipeline.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Tests for {@link LRUMemoryCache}. */
+public class LRUMemoryCacheTest
+{
+    /** The size of each test object. */
+    private static final long SIZE = 100L;
+
+    /**
+     * Test that terrain tiles used every frame stay in the cache while each
+     * frame brings more imagery that is used once. Removing the least
+     * recently used objects would remove the terrain, since it is used before
+     * the new imagery is added.
+     */
+    @Test
+    public void testOneOffImageryDoesNotEvictHotTerrain()
+    {
+        LRUMemoryCache cache = new LRUMemoryCache(null);
+        cache.setMaxSizeBytesVM(15 * SIZE);
+        cache.setLowWaterBytesVM(10 * SIZE);
+
+        for (int index = 0; index < 5; ++index)
+        {
+            cache.putCacheAssociation("terrain" + index, new TerrainTile(), TerrainTile.class, SIZE, 0L);
+        }
+
+        for (int frame = 0; frame < 10; ++frame)
+        {
+            for (int index = 0; index < 5; ++index)
+            {
+                Assert.assertNotNull(cache.getCacheAssociation("terrain" + index, TerrainTile.class));
+            }
+            for (int index = 0; index < 10; ++index)
+            {
+                cache.putCacheAssociation("image" + frame + "-" + index, new Imagery(), Imagery.class, SIZE, 0L);
+            }
+            cache.cleanup();
+        }
+
+        Assert.assertEquals(5, cache.getCacheAssociations(TerrainTile.class).size());
+        Assert.assertEquals(5, cache.getCacheAssociations(Imagery.class).size());
+    }
+
+    /**
+     * Test that a type limit keeps imagery from filling the cache when the
+     * cache as a whole is not full.
+     */
+    @Test
+    public void testTypeLimit()
+    {
+        LRUMemoryCache cache = new LRUMemoryCache(null);
+        cache.setMaxSizeBytesVM(Imagery.class, 10 * SIZE);
+
+        for (int index = 0; index < 20; ++index)
+        {
+            cache.putCacheAssociation("terrain" + index, new TerrainTile(), TerrainTile.class, SIZE, 0L);
+            cache.putCacheAssociation("image" + index, new Imagery(), Imagery.class, SIZE, 0L);
+        }
+        cache.cleanup();
+
+        Assert.assertEquals(20, cache.getCacheAssociations(TerrainTile.class).size());
+        Assert.assertEquals(9, cache.getCacheAssociations(Imagery.class).size());
+    }
+
+    /** Test putting, getting, and clearing associations. */
+    @Test
+    public void testPutGetAndClear()
+    {
+        LRUMemoryCache cache = new LRUMemoryCache(null);
+        TerrainTile tile = new TerrainTile();
+        Assert.assertNull(cache.putCacheAssociation("a", tile, TerrainTile.class, SIZE, 0L));
+        Assert.assertSame(tile, cache.getCacheAssociation("a", TerrainTile.class));
+        Assert.assertNull(cache.getCacheAssociation("a", Imagery.class));
+
+        cache.clearCacheAssociations(TerrainTile.class);
+        Assert.assertNull(cache.getCacheAssociation("a", TerrainTile.class));
+        Assert.assertNull(cache.putCacheAssociation("a", tile, TerrainTile.class, SIZE, 0L));
+        Assert.assertSame(tile, cache.clearCacheAssociation("a", TerrainTile.class));
+        Assert.assertTrue(cache.getCacheAssociations(TerrainTile.class).isEmpty());
+    }
+
+    /** A cached terrain tile. */
+    private static class TerrainTile
+    {
+    }
+
+    /** A cached image. */
+    private static class Imagery
+    {
+    }
+}
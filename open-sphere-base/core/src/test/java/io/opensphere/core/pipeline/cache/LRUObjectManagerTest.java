@@ -0,0 +1,162 @@
+package io.opensphere.core.pipeline.cache;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.opensphere.core.util.collections.New;
+
+/** Tests for {@link LRUObjectManager}. */
+public class LRUObjectManagerTest
+{
+    /** The size of each test object. */
+    private static final long SIZE = 100L;
+
+    /**
+     * Test that objects which are used repeatedly survive a burst of objects
+     * that are used once.
+     */
+    @Test
+    public void testFrequentSurvivesBurst()
+    {
+        TestManager manager = new TestManager();
+        manager.setMaxSizeBytesVM(20 * SIZE);
+        manager.setLowWaterBytesVM(10 * SIZE);
+
+        List<CacheNode> hot = New.list();
+        for (int index = 0; index < 5; ++index)
+        {
+            CacheNode node = createNode("hot" + index, String.class);
+            hot.add(node);
+            manager.add(node);
+        }
+        for (int use = 0; use < 3; ++use)
+        {
+            for (CacheNode node : hot)
+            {
+                manager.recordHit(node);
+            }
+        }
+        for (int index = 0; index < 20; ++index)
+        {
+            manager.add(createNode("cold" + index, String.class));
+        }
+
+        manager.cleanup();
+
+        Assert.assertEquals(15, manager.getRemoved().size());
+        Assert.assertEquals(15L, manager.getEvictionCount());
+        for (CacheNode node : manager.getRemoved())
+        {
+            Assert.assertFalse(hot.contains(node));
+            Assert.assertSame(String.class, node.getType());
+        }
+    }
+
+    /**
+     * Test that a type over its limit is reduced without removing objects of
+     * other types, even when the whole cache is not full.
+     */
+    @Test
+    public void testTypeLimit()
+    {
+        TestManager manager = new TestManager();
+        manager.setMaxSizeBytesVM(Integer.class, 10 * SIZE);
+
+        for (int index = 0; index < 5; ++index)
+        {
+            manager.add(createNode("other" + index, String.class));
+        }
+        for (int index = 0; index < 10; ++index)
+        {
+            manager.add(createNode("limited" + index, Integer.class));
+        }
+
+        // At the limit, nothing is removed.
+        manager.cleanup();
+        Assert.assertTrue(manager.getRemoved().isEmpty());
+
+        for (int index = 10; index < 20; ++index)
+        {
+            manager.add(createNode("limited" + index, Integer.class));
+        }
+        manager.cleanup();
+
+        // The type is reduced to 90% of its limit.
+        Assert.assertEquals(11, manager.getRemoved().size());
+        for (CacheNode node : manager.getRemoved())
+        {
+            Assert.assertSame(Integer.class, node.getType());
+        }
+
+        manager.getRemoved().clear();
+        manager.cleanup();
+        Assert.assertTrue(manager.getRemoved().isEmpty());
+    }
+
+    /** Test the hit and miss counts. */
+    @Test
+    public void testHitsAndMisses()
+    {
+        TestManager manager = new TestManager();
+        CacheNode node = createNode("a", String.class);
+        manager.add(node);
+        manager.recordHit(node);
+        manager.recordHit(createNode("b", String.class));
+        manager.recordMiss();
+
+        Assert.assertEquals(2L, manager.getHitCount());
+        Assert.assertEquals(1L, manager.getMissCount());
+        Assert.assertEquals(0L, manager.getEvictionCount());
+
+        manager.clear();
+        Assert.assertEquals(1, manager.getRemoved().size());
+    }
+
+    /**
+     * Create a node for an object cached with itself as the key.
+     *
+     * @param object The object.
+     * @param type The type the object is cached as.
+     * @return The node.
+     */
+    private static CacheNode createNode(String object, Class<?> type)
+    {
+        return new CacheNode(object.hashCode(), object, type, SIZE, 0L);
+    }
+
+    /** Manager that records the nodes it removes. */
+    private static class TestManager extends LRUObjectManager
+    {
+        /** The removed nodes. */
+        private final Set<CacheNode> myRemoved = New.set();
+
+        /** Constructor. */
+        public TestManager()
+        {
+            super(null);
+        }
+
+        /**
+         * Get the removed nodes.
+         *
+         * @return The nodes.
+         */
+        public Set<CacheNode> getRemoved()
+        {
+            return myRemoved;
+        }
+
+        @Override
+        protected void removeFromCache(Set<CacheNode> nodes, Class<? extends Object> type)
+        {
+            for (CacheNode node : nodes)
+            {
+                Assert.assertSame(type, node.getType());
+            }
+            myRemoved.addAll(nodes);
+        }
+    }
+}
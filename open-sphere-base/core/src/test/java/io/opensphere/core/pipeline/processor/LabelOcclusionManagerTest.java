@@ -0,0 +1,166 @@
+package io.opensphere.core.pipeline.processor;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.opensphere.core.model.ScreenBoundingBox;
+import io.opensphere.core.model.ScreenPosition;
+import io.opensphere.core.util.collections.New;
+
+/** Tests for {@link LabelOcclusionManager}. */
+public class LabelOcclusionManagerTest
+{
+    /**
+     * Test that the manager gives the same results as checking every accepted
+     * box, including for boxes that are large, off-screen, or wrapped.
+     */
+    @Test
+    public void testMatchesBruteForce()
+    {
+        LabelProcessor processor = EasyMock.createMock(LabelProcessor.class);
+        LabelOcclusionManager manager = new LabelOcclusionManager(false);
+        Random random = new Random(7);
+        for (int pass = 0; pass < 3; ++pass)
+        {
+            List<ScreenBoundingBox> boxes = createBoxes(random, 5000);
+            boxes.add(box(-70000, -70000, 80000, 10));
+            boxes.add(box(500, 300, 400, 330));
+            boxes.add(box(0, 0, LabelOcclusionManager.CELL_SIZE, LabelOcclusionManager.CELL_SIZE));
+
+            boolean[] expected = bruteForce(boxes);
+            for (int index = 0; index < boxes.size(); ++index)
+            {
+                Assert.assertEquals(boxes.get(index).toString(), Boolean.valueOf(expected[index]),
+                        Boolean.valueOf(manager.isOccluded(processor, boxes.get(index))));
+            }
+            manager.reset(processor);
+        }
+    }
+
+    /** Test that resetting clears the occlusion regions. */
+    @Test
+    public void testReset()
+    {
+        LabelProcessor processor1 = EasyMock.createMock(LabelProcessor.class);
+        LabelProcessor processor2 = EasyMock.createMock(LabelProcessor.class);
+        LabelOcclusionManager manager = new LabelOcclusionManager();
+
+        Assert.assertFalse(manager.isOccluded(processor1, box(10, 10, 50, 20)));
+        Assert.assertTrue(manager.isOccluded(processor1, box(40, 15, 90, 25)));
+        Assert.assertFalse(manager.isOccluded(processor2, box(40, 15, 90, 25)));
+
+        manager.reset(processor1);
+        Assert.assertFalse(manager.isOccluded(processor1, box(40, 15, 90, 25)));
+        Assert.assertTrue(manager.isOccluded(processor2, box(10, 10, 50, 20)));
+
+        manager.remove(processor2);
+        Assert.assertFalse(manager.isOccluded(processor2, box(10, 10, 50, 20)));
+    }
+
+    /**
+     * Test that stable declutter keeps the labels from the previous pass when
+     * the labels move a little.
+     */
+    @Test
+    public void testStable()
+    {
+        LabelProcessor processor = EasyMock.createMock(LabelProcessor.class);
+        LabelOcclusionManager manager = new LabelOcclusionManager(true);
+        Assert.assertTrue(manager.isStable());
+        List<String> labels = Arrays.asList("a", "b", "c");
+
+        // "b" overlaps "a" and "c", which do not overlap each other.
+        Assert.assertSame(labels, manager.prioritize(processor, labels));
+        Assert.assertFalse(manager.isOccluded(processor, "a", box(0, 0, 100, 10)));
+        Assert.assertTrue(manager.isOccluded(processor, "b", box(90, 0, 190, 10)));
+        Assert.assertFalse(manager.isOccluded(processor, "c", box(180, 0, 280, 10)));
+        manager.reset(processor);
+
+        // Shifting the view makes "b" first, but "a" and "c" keep priority.
+        Collection<? extends String> ordered = manager.prioritize(processor, Arrays.asList("b", "c", "a"));
+        Assert.assertEquals(Arrays.asList("c", "a", "b"), ordered);
+        for (String label : ordered)
+        {
+            int offset = 5 + 90 * (label.charAt(0) - 'a');
+            boolean occluded = manager.isOccluded(processor, label, box(offset, 0, offset + 100, 10));
+            Assert.assertEquals(label, Boolean.valueOf("b".equals(label)), Boolean.valueOf(occluded));
+        }
+        manager.reset(processor);
+
+        LabelOcclusionManager unstable = new LabelOcclusionManager(false);
+        Assert.assertFalse(unstable.isOccluded(processor, "a", box(0, 0, 100, 10)));
+        unstable.reset(processor);
+        List<String> unordered = Arrays.asList("b", "a");
+        Assert.assertSame(unordered, unstable.prioritize(processor, unordered));
+    }
+
+    /**
+     * Create a bounding box.
+     *
+     * @param minX The left edge.
+     * @param minY The top edge.
+     * @param maxX The right edge.
+     * @param maxY The bottom edge.
+     * @return The bounding box.
+     */
+    private static ScreenBoundingBox box(double minX, double minY, double maxX, double maxY)
+    {
+        return new ScreenBoundingBox(new ScreenPosition(minX, minY), new ScreenPosition(maxX, maxY));
+    }
+
+    /**
+     * Determine which boxes are occluded by checking every accepted box.
+     *
+     * @param boxes The boxes in order.
+     * @return Whether each box is occluded.
+     */
+    private static boolean[] bruteForce(List<ScreenBoundingBox> boxes)
+    {
+        boolean[] occluded = new boolean[boxes.size()];
+        List<ScreenBoundingBox> accepted = New.list();
+        for (int index = 0; index < boxes.size(); ++index)
+        {
+            ScreenBoundingBox box = boxes.get(index);
+            for (ScreenBoundingBox other : accepted)
+            {
+                if (other.overlaps(box, 0.))
+                {
+                    occluded[index] = true;
+                    break;
+                }
+            }
+            if (!occluded[index])
+            {
+                accepted.add(box);
+            }
+        }
+        return occluded;
+    }
+
+    /**
+     * Create label boxes spread over and around a 1920x1080 screen.
+     *
+     * @param random The random number generator.
+     * @param count The number of boxes.
+     * @return The boxes.
+     */
+    private static List<ScreenBoundingBox> createBoxes(Random random, int count)
+    {
+        List<ScreenBoundingBox> boxes = New.list(count);
+        for (int index = 0; index < count; ++index)
+        {
+            double x = random.nextDouble() * 2200. - 140.;
+            double y = random.nextDouble() * 1200. - 60.;
+            double width = 4. + random.nextInt(24) * 6.;
+            double height = 8. + random.nextInt(3) * 4.;
+            boxes.add(box(x, y, x + width, y + height));
+        }
+        return boxes;
+    }
+}
@@ -55,6 +55,49 @@ public final class CacheConfiguration
                 removeFromStoreOnRemove, useEncryption, useDynamicClasses);
     }
 
+    /**
+     * Creates the configuration for a cache that stores elements in
+     * memory-mapped segment files.
+     *
+     * @param maxInMemory the max allowed elements in memory
+     * @param inMemoryPoolSize the preferred number of elements in memory
+     * @param diskCacheLocation the location for the segment files
+     * @param removeFromStoreOnRemove the remove from store on remove
+     * @param useDynamicClasses the use dynamic classes
+     * @return the cache configuration
+     */
+    public static CacheConfiguration createMappedCachedConfiguration(int maxInMemory, int inMemoryPoolSize,
+            File diskCacheLocation, boolean removeFromStoreOnRemove, boolean useDynamicClasses)
+    {
+        if (inMemoryPoolSize > maxInMemory)
+        {
+            throw new IllegalArgumentException("inMemoryPoolSize must be <= maxInMemory");
+        }
+        return new CacheConfiguration(CacheStoreType.MAPPED, maxInMemory, inMemoryPoolSize, diskCacheLocation,
+                removeFromStoreOnRemove, false, useDynamicClasses);
+    }
+
+    /**
+     * Creates the configuration for a cache that stores elements in off-heap
+     * columns.
+     *
+     * @param maxInMemory the max allowed elements in memory
+     * @param inMemoryPoolSize the preferred number of elements in memory
+     * @param removeFromStoreOnRemove the remove from store on remove
+     * @param useDynamicClasses the use dynamic classes
+     * @return the cache configuration
+     */
+    public static CacheConfiguration createColumnarCachedConfiguration(int maxInMemory, int inMemoryPoolSize,
+            boolean removeFromStoreOnRemove, boolean useDynamicClasses)
+    {
+        if (inMemoryPoolSize > maxInMemory)
+        {
+            throw new IllegalArgumentException("inMemoryPoolSize must be <= maxInMemory");
+        }
+        return new CacheConfiguration(CacheStoreType.COLUMNAR, maxInMemory, inMemoryPoolSize, null, removeFromStoreOnRemove,
+                false, useDynamicClasses);
+    }
+
     /**
      * Creates the registry cached configuration.
      *
@@ -198,7 +241,7 @@ public final class CacheConfiguration
         sb.append("Cache Configuration Summary: \n" + "  Store Type       : ").append(myStoreType)
                 .append("\n" + "  Encryption       : ").append(myUseDiskEncryption).append("\n" + "  RemoveOnRemove   : ")
                 .append(myRemoveFromStoreOnRemove).append('\n');
-        if (myStoreType == CacheStoreType.DISK)
+        if (myStoreType == CacheStoreType.DISK || myStoreType == CacheStoreType.MAPPED)
         {
             sb.append("  DiskCacheLocation: ")
                     .append(myDiskCacheLocation == null ? "NULL" : myDiskCacheLocation.getAbsolutePath()).append('\n');
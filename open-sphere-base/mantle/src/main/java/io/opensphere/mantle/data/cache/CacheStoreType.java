@@ -8,6 +8,12 @@ public enum CacheStoreType
     /** The DISK. */
     DISK,
 
+    /** Off-heap columns, one per meta data key. */
+    COLUMNAR,
+
+    /** Memory-mapped, append-only segment files. */
+    MAPPED,
+
     /** The NONE. */
     NONE,
 
@@ -131,6 +131,21 @@ public interface DataElementCache
      */
     RangedLongSet getElementIdsForTypeAsRangedLongSet(DataTypeInfo type);
 
+    /**
+     * Gets the meta data values of a key for elements of one data type as
+     * codes into a dictionary of the distinct values. This is only possible
+     * when the cache store keeps the values of the key as codes, as the
+     * columnar store does for low-cardinality string columns and for dynamic
+     * enumerations.
+     *
+     * @param elementIds the element cache ids
+     * @param type the {@link DataTypeInfo} of the elements
+     * @param key the meta data key
+     * @return the codes, or null if the values are not kept as codes, in
+     *         which case the values must be retrieved instead
+     */
+    MetaDataCodes getMetaDataCodes(List<Long> elementIds, DataTypeInfo type, String key);
+
     /**
      * Gets the preferred insert block size.
      *
@@ -0,0 +1,80 @@
+package io.opensphere.mantle.data.cache;
+
+import java.util.function.IntFunction;
+
+/**
+ * The values of one meta data key for a list of elements, as codes into a
+ * dictionary of the distinct values. Elements with equal values have equal
+ * codes, so the values can be grouped and compared by code, and each distinct
+ * value needs to be decoded only once.
+ */
+public final class MetaDataCodes
+{
+    /** The code for an element that has no value. */
+    public static final int NO_CODE = -1;
+
+    /** The code for each element. */
+    private final int[] myCodes;
+
+    /** The decoder from a code to its value. */
+    private final IntFunction<Object> myDecoder;
+
+    /** One more than the largest code. */
+    private final int myDictionarySize;
+
+    /**
+     * Constructor.
+     *
+     * @param codes The code for each element, or {@link #NO_CODE}.
+     * @param dictionarySize One more than the largest code.
+     * @param decoder The decoder from a code to its value.
+     */
+    public MetaDataCodes(int[] codes, int dictionarySize, IntFunction<Object> decoder)
+    {
+        myCodes = codes;
+        myDictionarySize = dictionarySize;
+        myDecoder = decoder;
+    }
+
+    /**
+     * Get the code for an element.
+     *
+     * @param index The index of the element.
+     * @return The code, or {@link #NO_CODE} if the element has no value.
+     */
+    public int getCode(int index)
+    {
+        return myCodes[index];
+    }
+
+    /**
+     * Get the size of the dictionary. All codes are less than this.
+     *
+     * @return The dictionary size.
+     */
+    public int getDictionarySize()
+    {
+        return myDictionarySize;
+    }
+
+    /**
+     * Decode a code.
+     *
+     * @param code The code.
+     * @return The value.
+     */
+    public Object getValue(int code)
+    {
+        return myDecoder.apply(code);
+    }
+
+    /**
+     * Get the number of elements.
+     *
+     * @return The number of elements.
+     */
+    public int size()
+    {
+        return myCodes.length;
+    }
+}
@@ -265,9 +265,7 @@ class AddElementsWorker implements Priority
         if (led.getMetaData() != null)
         {
             baos.reset();
-            ObjectOutputStream oos = new ObjectOutputStream(baos);
-            DiskCacheEncodeHelper.encodeMetaDataList(oos, led.getMetaData());
-            oos.flush();
+            DiskCacheEncodeHelper.encodeMetaDataList(baos, led.getMetaData());
             numWritten = write(myDiskCacheAssistant.isUsingEncryption(), bos, baos.toByteArray());
         }
         return numWritten;
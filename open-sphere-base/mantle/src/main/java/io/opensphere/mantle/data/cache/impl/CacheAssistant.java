@@ -8,6 +8,7 @@ import gnu.trove.list.TLongList;
 import io.opensphere.mantle.data.DataTypeInfo;
 import io.opensphere.mantle.data.cache.CacheQuery;
 import io.opensphere.mantle.data.cache.DirectAccessRetriever;
+import io.opensphere.mantle.data.cache.MetaDataCodes;
 import io.opensphere.mantle.data.dynmeta.impl.DynamicMetadataManagerImpl;
 
 /**
@@ -56,6 +57,22 @@ public interface CacheAssistant
     DirectAccessRetriever getDirectAccessRetriever(DataTypeInfo dti, LongFunction<CacheEntry> cacheRefMap,
             DynamicMetadataManagerImpl dcm);
 
+    /**
+     * Gets the meta data values of a key for some elements as dictionary
+     * codes, if the assistant stores that key's values as codes.
+     *
+     * @param type the data type of the elements
+     * @param keyIndex the index of the meta data key
+     * @param cacheIds the element cache ids
+     * @param entries the cache entries for the ids, with null for ids that
+     *            are not in the cache
+     * @return the codes, or null if the values are not stored as codes
+     */
+    default MetaDataCodes getMetaDataCodes(DataTypeInfo type, int keyIndex, List<Long> cacheIds, List<CacheEntry> entries)
+    {
+        return null;
+    }
+
     /**
      * Gets the preferred insert block size for the assistant or -1 if no
      * preference.
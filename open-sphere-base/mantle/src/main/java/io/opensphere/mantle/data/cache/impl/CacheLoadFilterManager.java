@@ -8,17 +8,20 @@ import io.opensphere.core.datafilter.impl.DataFilterRegistryAdapter;
 import io.opensphere.core.util.Utilities;
 import io.opensphere.core.util.collections.New;
 import io.opensphere.mantle.data.DataTypeInfo;
+import io.opensphere.mantle.data.MetaDataInfo;
 import io.opensphere.mantle.data.element.mdfilter.MetaDataFilter;
 import io.opensphere.mantle.data.element.mdfilter.impl.DataFilterEvaluator;
 import io.opensphere.mantle.util.dynenum.DynamicEnumerationRegistry;
 
 /**
- * The Class CacheLoadFilterManager.
+ * The Class CacheLoadFilterManager. Load filters are usually added before the
+ * type's columns are known, so each filter is compiled again for the
+ * {@link MetaDataInfo} of its type when it is first used for that type.
  */
 public class CacheLoadFilterManager extends DataFilterRegistryAdapter
 {
     /** The DTI key to load filter map. */
-    private final Map<String, MetaDataFilter> myDTIKeyToLoadFilterMap;
+    private final Map<String, DataFilterEvaluator> myDTIKeyToLoadFilterMap;
 
     /** The dynamic enumeration registry. */
     private final DynamicEnumerationRegistry myDynEnumReg;
@@ -43,8 +46,19 @@ public class CacheLoadFilterManager extends DataFilterRegistryAdapter
      */
     public MetaDataFilter getFilter(DataTypeInfo dti, boolean onlyIfNotFilteredByProvider)
     {
-        return dti == null || onlyIfNotFilteredByProvider && dti.providerFiltersMetaData() ? null
-                : myDTIKeyToLoadFilterMap.get(dti.getTypeKey());
+        if (dti == null || onlyIfNotFilteredByProvider && dti.providerFiltersMetaData())
+        {
+            return null;
+        }
+        String dtiKey = dti.getTypeKey();
+        DataFilterEvaluator filter = myDTIKeyToLoadFilterMap.get(dtiKey);
+        MetaDataInfo metaDataInfo = dti.getMetaDataInfo();
+        if (filter != null && metaDataInfo != null && filter.getMetaDataInfo() != metaDataInfo)
+        {
+            DataFilterEvaluator compiled = filter.forMetaDataInfo(metaDataInfo, myDynEnumReg);
+            filter = myDTIKeyToLoadFilterMap.replace(dtiKey, filter, compiled) ? compiled : myDTIKeyToLoadFilterMap.get(dtiKey);
+        }
+        return filter;
     }
 
     /**
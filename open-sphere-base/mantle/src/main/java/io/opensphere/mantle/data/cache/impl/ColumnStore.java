@@ -0,0 +1,566 @@
+package io.opensphere.mantle.data.cache.impl;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import io.opensphere.mantle.data.cache.MetaDataCodes;
+import io.opensphere.mantle.util.dynenum.DynamicEnumerationRegistry;
+
+/**
+ * A store of element data for one data type, kept in columns rather than in
+ * an object per element. Each element id is mapped to a row; the meta data
+ * values of the row are kept in one {@link StoreColumn} per meta data key,
+ * typed by the class of the key, so numbers, dates, and strings are held in
+ * off-heap memory without an object per value. The map geometry support is
+ * kept as encoded bytes.
+ * <p>
+ * The meta data for an element is returned as a list that reads each value
+ * from the columns when it is asked for. The list is tied to the row version,
+ * so it returns {@code null} values once its element has been removed rather
+ * than the values of an element that reuses the row.
+ */
+class ColumnStore
+{
+    /** The value in the index for ids that are not present. */
+    private static final int NO_ROW = -1;
+
+    /** The number of bytes for each row in the row header buffer. */
+    private static final int ROW_HEADER_BYTES = 2 * Integer.BYTES;
+
+    /** The meta data size of a row without meta data. */
+    private static final int NO_META_DATA = -1;
+
+    /** If the store has been closed. */
+    private boolean myClosed;
+
+    /** The meta data columns, by key index. */
+    private StoreColumn[] myColumns = new StoreColumn[0];
+
+    /** Rows that have been freed and can be reused. */
+    private final TIntList myFreeRows = new TIntArrayList();
+
+    /** The encoded map geometry supports. */
+    private final StoreColumn.BytesColumn myGeometries = new StoreColumn.BytesColumn();
+
+    /** Map of element ids to rows. */
+    private final TLongIntMap myIndex = new TLongIntHashMap(1000, .5f, NO_ROW, NO_ROW);
+
+    /** The declared classes of the meta data keys, by key index. */
+    private final List<Class<?>> myKeyTypes;
+
+    /** Lock that guards the index and the columns. */
+    private final ReadWriteLock myLock = new ReentrantReadWriteLock();
+
+    /** The origin ids. */
+    private final StoreColumn myOriginIds = new StoreColumn.PrimitiveColumn(StoreColumn.Kind.LONG);
+
+    /** The number of rows that have been used, including freed rows. */
+    private int myRowCount;
+
+    /** The version and meta data size of each row. */
+    private final OffHeapBuffer myRowHeaders = new OffHeapBuffer();
+
+    /**
+     * Constructor.
+     *
+     * @param keyTypes The declared classes of the meta data keys, by key
+     *            index. Columns for keys without a supported class are typed
+     *            by their first value.
+     */
+    public ColumnStore(List<Class<?>> keyTypes)
+    {
+        myKeyTypes = keyTypes;
+    }
+
+    /**
+     * Close the store and release its memory.
+     */
+    public void close()
+    {
+        Lock lock = myLock.writeLock();
+        lock.lock();
+        try
+        {
+            myClosed = true;
+            myIndex.clear();
+            myFreeRows.clear();
+            myRowCount = 0;
+            myRowHeaders.release();
+            myOriginIds.release();
+            myGeometries.release();
+            for (StoreColumn column : myColumns)
+            {
+                if (column != null)
+                {
+                    column.release();
+                }
+            }
+            myColumns = new StoreColumn[0];
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the class of the column that holds the meta data values for a key.
+     *
+     * @param keyIndex The key index.
+     * @return The column class, or {@code null} if the key has no values yet.
+     */
+    public Class<? extends StoreColumn> getColumnType(int keyIndex)
+    {
+        Lock lock = myLock.readLock();
+        lock.lock();
+        try
+        {
+            return keyIndex < myColumns.length && myColumns[keyIndex] != null ? myColumns[keyIndex].getClass() : null;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the meta data values of a key for some elements as dictionary
+     * codes, if the column for the key keeps its values as codes. Strings are
+     * coded by the column's own dictionary, and dynamic enumeration keys by
+     * their value ids, which the registry decodes.
+     *
+     * @param ids The element ids.
+     * @param keyIndex The key index.
+     * @param registry The registry that decodes dynamic enumeration keys.
+     * @return The codes, or {@code null} if the column does not keep codes.
+     */
+    public MetaDataCodes getCodes(long[] ids, int keyIndex, DynamicEnumerationRegistry registry)
+    {
+        Lock lock = myLock.readLock();
+        lock.lock();
+        try
+        {
+            StoreColumn column = keyIndex < myColumns.length ? myColumns[keyIndex] : null;
+            if (!(column instanceof StoreColumn.DictionaryColumn) && !(column instanceof StoreColumn.EnumerationColumn))
+            {
+                return null;
+            }
+
+            int[] codes = new int[ids.length];
+            Arrays.fill(codes, MetaDataCodes.NO_CODE);
+            int dictionarySize = 0;
+            for (int index = 0; index < ids.length; ++index)
+            {
+                int row = myIndex.get(ids[index]);
+                if (row != NO_ROW && getMetaDataSize(row) > keyIndex && column.isPresent(row))
+                {
+                    codes[index] = column instanceof StoreColumn.DictionaryColumn
+                            ? ((StoreColumn.DictionaryColumn)column).getCode(row)
+                            : ((StoreColumn.EnumerationColumn)column).getCode(row);
+                    dictionarySize = Math.max(dictionarySize, codes[index] + 1);
+                }
+            }
+
+            if (column instanceof StoreColumn.DictionaryColumn)
+            {
+                List<String> dictionary = ((StoreColumn.DictionaryColumn)column).getDictionary();
+                return new MetaDataCodes(codes, dictionarySize, dictionary::get);
+            }
+            short typeId = ((StoreColumn.EnumerationColumn)column).getTypeId();
+            short metaDataKeyId = ((StoreColumn.EnumerationColumn)column).getMetaDataKeyId();
+            return new MetaDataCodes(codes, dictionarySize,
+                    code -> registry.getEnumerationValue(typeId, metaDataKeyId, (short)code));
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the encoded map geometry support for an element.
+     *
+     * @param id The element id.
+     * @return A read-only buffer holding the encoded map geometry support, or
+     *         {@code null} if there is none.
+     */
+    public ByteBuffer getGeometry(long id)
+    {
+        Lock lock = myLock.readLock();
+        lock.lock();
+        try
+        {
+            int row = myIndex.get(id);
+            return row == NO_ROW ? null : myGeometries.getBytes(row);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the meta data for an element. The values are read from the columns
+     * when they are accessed.
+     *
+     * @param id The element id.
+     * @return The meta data, or {@code null} if there is none.
+     */
+    public List<Object> getMetaData(long id)
+    {
+        Lock lock = myLock.readLock();
+        lock.lock();
+        try
+        {
+            int row = myIndex.get(id);
+            if (row == NO_ROW)
+            {
+                return null;
+            }
+            int size = getMetaDataSize(row);
+            return size == NO_META_DATA ? null : new ColumnarMetaDataList(row, getVersion(row), size);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of off-heap bytes used by the store.
+     *
+     * @return The number of bytes.
+     */
+    public long getOffHeapBytes()
+    {
+        Lock lock = myLock.readLock();
+        lock.lock();
+        try
+        {
+            long bytes = myRowHeaders.getCapacity() + myOriginIds.getOffHeapBytes() + myGeometries.getOffHeapBytes();
+            for (StoreColumn column : myColumns)
+            {
+                if (column != null)
+                {
+                    bytes += column.getOffHeapBytes();
+                }
+            }
+            return bytes;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the origin id for an element.
+     *
+     * @param id The element id.
+     * @return The origin id, or {@code null} if there is none.
+     */
+    public Long getOriginId(long id)
+    {
+        Lock lock = myLock.readLock();
+        lock.lock();
+        try
+        {
+            int row = myIndex.get(id);
+            return row == NO_ROW ? null : (Long)myOriginIds.get(row);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Add the data for an element, replacing any data for the same id.
+     *
+     * @param id The element id.
+     * @param originId The origin id, or {@code null}.
+     * @param metaData The meta data values, or {@code null}.
+     * @param geometry The encoded map geometry support, or {@code null}.
+     */
+    public void put(long id, Long originId, List<Object> metaData, byte[] geometry)
+    {
+        // Copy the values first, since the list may be a view of this store.
+        Object[] values = metaData == null ? null : metaData.toArray();
+
+        Lock lock = myLock.writeLock();
+        lock.lock();
+        try
+        {
+            if (myClosed)
+            {
+                return;
+            }
+            removeInternal(id);
+
+            int row = myFreeRows.isEmpty() ? myRowCount++ : myFreeRows.removeAt(myFreeRows.size() - 1);
+            myRowHeaders.ensureCapacity((long)myRowCount * ROW_HEADER_BYTES);
+            myRowHeaders.putInt((long)row * ROW_HEADER_BYTES + Integer.BYTES, values == null ? NO_META_DATA : values.length);
+            myIndex.put(id, row);
+
+            myOriginIds.set(row, originId);
+            myGeometries.set(row, geometry);
+            if (values != null)
+            {
+                if (values.length > myColumns.length)
+                {
+                    myColumns = Arrays.copyOf(myColumns, values.length);
+                }
+                for (int index = 0; index < values.length; ++index)
+                {
+                    setValue(index, row, values[index]);
+                }
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove elements.
+     *
+     * @param ids The element ids.
+     * @return The number of elements removed.
+     */
+    public int remove(long... ids)
+    {
+        Lock lock = myLock.writeLock();
+        lock.lock();
+        try
+        {
+            int count = 0;
+            for (long id : ids)
+            {
+                if (removeInternal(id))
+                {
+                    ++count;
+                }
+            }
+            if (count > 0)
+            {
+                myGeometries.compactIfNeeded(myRowCount);
+                for (StoreColumn column : myColumns)
+                {
+                    if (column instanceof StoreColumn.BytesColumn)
+                    {
+                        ((StoreColumn.BytesColumn)column).compactIfNeeded(myRowCount);
+                    }
+                }
+            }
+            return count;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of elements in the store.
+     *
+     * @return The number of elements.
+     */
+    public int size()
+    {
+        Lock lock = myLock.readLock();
+        lock.lock();
+        try
+        {
+            return myIndex.size();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the meta data size of a row.
+     *
+     * @param row The row.
+     * @return The size, or {@link #NO_META_DATA}.
+     */
+    private int getMetaDataSize(int row)
+    {
+        return myRowHeaders.getInt((long)row * ROW_HEADER_BYTES + Integer.BYTES);
+    }
+
+    /**
+     * Get a meta data value.
+     *
+     * @param row The row.
+     * @param version The version of the row that the caller expects.
+     * @param keyIndex The key index.
+     * @return The value, or {@code null} if there is none or the row has been
+     *         removed since.
+     */
+    private Object getValue(int row, int version, int keyIndex)
+    {
+        Lock lock = myLock.readLock();
+        lock.lock();
+        try
+        {
+            if (row >= myRowCount || getVersion(row) != version || keyIndex >= myColumns.length)
+            {
+                return null;
+            }
+            StoreColumn column = myColumns[keyIndex];
+            return column == null ? null : column.get(row);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the version of a row, which changes each time the row is freed.
+     *
+     * @param row The row.
+     * @return The version.
+     */
+    private int getVersion(int row)
+    {
+        return myRowHeaders.getInt((long)row * ROW_HEADER_BYTES);
+    }
+
+    /**
+     * Remove an element. Must be called with the write lock held.
+     *
+     * @param id The element id.
+     * @return If the element was present.
+     */
+    private boolean removeInternal(long id)
+    {
+        int row = myIndex.remove(id);
+        if (row == NO_ROW)
+        {
+            return false;
+        }
+        long offset = (long)row * ROW_HEADER_BYTES;
+        myRowHeaders.putInt(offset, myRowHeaders.getInt(offset) + 1);
+        myRowHeaders.putInt(offset + Integer.BYTES, NO_META_DATA);
+        myOriginIds.clear(row);
+        myGeometries.clear(row);
+        for (StoreColumn column : myColumns)
+        {
+            if (column != null)
+            {
+                column.clear(row);
+            }
+        }
+        myFreeRows.add(row);
+        return true;
+    }
+
+    /**
+     * Set a meta data value, creating the column or converting it to a more
+     * general column if necessary. Must be called with the write lock held.
+     *
+     * @param keyIndex The key index.
+     * @param row The row.
+     * @param value The value.
+     */
+    private void setValue(int keyIndex, int row, Object value)
+    {
+        StoreColumn column = myColumns[keyIndex];
+        if (value == null)
+        {
+            if (column != null)
+            {
+                column.clear(row);
+            }
+            return;
+        }
+
+        if (column == null)
+        {
+            column = StoreColumn.create(keyIndex < myKeyTypes.size() ? myKeyTypes.get(keyIndex) : null);
+            if (column == null)
+            {
+                column = StoreColumn.create(value.getClass());
+            }
+            if (column == null)
+            {
+                column = new StoreColumn.ObjectColumn();
+            }
+            myColumns[keyIndex] = column;
+        }
+        if (!column.accepts(value))
+        {
+            StoreColumn general = column instanceof StoreColumn.DictionaryColumn && value instanceof String
+                    ? new StoreColumn.TextColumn() : new StoreColumn.ObjectColumn();
+            for (int index = 0; index < myRowCount; ++index)
+            {
+                if (column.isPresent(index))
+                {
+                    general.set(index, column.get(index));
+                }
+            }
+            column.release();
+            column = general;
+            myColumns[keyIndex] = column;
+        }
+        column.set(row, value);
+    }
+
+    /**
+     * A meta data list that reads its values from the columns.
+     */
+    private class ColumnarMetaDataList extends AbstractList<Object>
+    {
+        /** The row. */
+        private final int myRow;
+
+        /** The number of values. */
+        private final int mySize;
+
+        /** The version of the row when the list was created. */
+        private final int myVersion;
+
+        /**
+         * Constructor.
+         *
+         * @param row The row.
+         * @param version The version of the row.
+         * @param size The number of values.
+         */
+        public ColumnarMetaDataList(int row, int version, int size)
+        {
+            myRow = row;
+            myVersion = version;
+            mySize = size;
+        }
+
+        @Override
+        public Object get(int index)
+        {
+            if (index < 0 || index >= mySize)
+            {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mySize);
+            }
+            return getValue(myRow, myVersion, index);
+        }
+
+        @Override
+        public int size()
+        {
+            return mySize;
+        }
+    }
+}
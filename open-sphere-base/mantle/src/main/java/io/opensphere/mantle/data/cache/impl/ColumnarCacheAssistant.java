@@ -0,0 +1,634 @@
+package io.opensphere.mantle.data.cache.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+
+import org.apache.log4j.Logger;
+
+import gnu.trove.iterator.TLongIterator;
+import gnu.trove.list.TLongList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import io.opensphere.core.util.collections.New;
+import io.opensphere.core.util.io.ByteBufferInputStream;
+import io.opensphere.core.util.lang.NamedThreadFactory;
+import io.opensphere.core.util.lang.StringUtilities;
+import io.opensphere.mantle.data.DataTypeInfo;
+import io.opensphere.mantle.data.MetaDataInfo;
+import io.opensphere.mantle.data.cache.CacheQuery;
+import io.opensphere.mantle.data.cache.DirectAccessRetriever;
+import io.opensphere.mantle.data.cache.MetaDataCodes;
+import io.opensphere.mantle.data.cache.Priority;
+import io.opensphere.mantle.data.dynmeta.impl.DynamicMetaDataListViewProxy;
+import io.opensphere.mantle.data.dynmeta.impl.DynamicMetadataManagerImpl;
+import io.opensphere.mantle.data.geom.MapGeometrySupport;
+import io.opensphere.mantle.data.impl.encoder.DiskDecodeHelper;
+import io.opensphere.mantle.data.impl.encoder.DiskEncodeHelper;
+import io.opensphere.mantle.util.dynenum.DynamicEnumerationRegistry;
+
+/**
+ * A cache assistant that stores element data in off-heap columns, with one
+ * {@link ColumnStore} per data type. Meta data values are kept in a column per
+ * meta data key, typed by the class of the key, instead of in a list of boxed
+ * values per element. Retrieved meta data is a view that reads each value
+ * from the columns when it is accessed.
+ */
+public class ColumnarCacheAssistant implements CacheAssistant
+{
+    /** Logger reference. */
+    private static final Logger LOGGER = Logger.getLogger(ColumnarCacheAssistant.class);
+
+    /** The preferred number of elements per insert. */
+    private static final int INSERT_BLOCK_SIZE = 20000;
+
+    /** The executor for writes and removes. */
+    private static final ThreadPoolExecutor WRITE_EXECUTOR_SERVICE = new ThreadPoolExecutor(1, 1, 20, TimeUnit.SECONDS,
+            new PriorityBlockingQueue<>(10, new RunnablePriorityComparator()),
+            new NamedThreadFactory("DataElementCache:ColumnarWriteWorker"));
+
+    /** The data element cache. */
+    private final DataElementCacheImpl myDataElementCache;
+
+    /** The Dynamic column manager. */
+    private final DynamicMetadataManagerImpl myDynamicColumnManager;
+
+    /** The Dynamic enumeration registry. */
+    private final DynamicEnumerationRegistry myDynamicEnumerationRegistry;
+
+    /** The number for the next store. */
+    private int myNextStoreNumber;
+
+    /** The stores by number. */
+    private final TIntObjectMap<ColumnStore> myNumberToStoreMap = new TIntObjectHashMap<>();
+
+    /** The store numbers by data type key. */
+    private final Map<String, Integer> myTypeToStoreNumberMap = New.map();
+
+    static
+    {
+        WRITE_EXECUTOR_SERVICE.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Instantiates a new columnar cache assistant.
+     *
+     * @param dec the data element cache
+     * @param dcMan the dynamic metadata manager
+     * @param deReg the dynamic enumeration registry
+     */
+    public ColumnarCacheAssistant(DataElementCacheImpl dec, DynamicMetadataManagerImpl dcMan, DynamicEnumerationRegistry deReg)
+    {
+        myDataElementCache = dec;
+        myDynamicColumnManager = dcMan;
+        myDynamicEnumerationRegistry = deReg;
+    }
+
+    /**
+     * Decode an encoded map geometry support.
+     *
+     * @param encoded the encoded map geometry support
+     * @return the map geometry support
+     * @throws IOException If the map geometry support cannot be decoded.
+     */
+    static MapGeometrySupport decodeGeometry(ByteBuffer encoded) throws IOException
+    {
+        return DiskDecodeHelper.decodeMapGeometrySupport(new ObjectInputStream(new ByteBufferInputStream(encoded)));
+    }
+
+    /**
+     * Encode a map geometry support.
+     *
+     * @param mgs the map geometry support
+     * @param baos a stream to use for encoding
+     * @return the encoded map geometry support
+     * @throws IOException If the map geometry support cannot be encoded.
+     */
+    static byte[] encodeGeometry(MapGeometrySupport mgs, ByteArrayOutputStream baos) throws IOException
+    {
+        baos.reset();
+        ObjectOutputStream oos = new ObjectOutputStream(baos);
+        DiskEncodeHelper.encodeMapGeometrySupport(oos, mgs);
+        oos.flush();
+        return baos.toByteArray();
+    }
+
+    /**
+     * Get the declared classes of the meta data keys of a data type, by key
+     * index.
+     *
+     * @param type the data type
+     * @return the classes, with {@code null} for keys without a class
+     */
+    private static List<Class<?>> getKeyTypes(DataTypeInfo type)
+    {
+        MetaDataInfo mdi = type.getMetaDataInfo();
+        if (mdi == null)
+        {
+            return New.list();
+        }
+        List<String> keys = mdi.getKeyNames();
+        List<Class<?>> keyTypes = New.list(keys.size());
+        for (String key : keys)
+        {
+            keyTypes.add(mdi.getKeyClassType(key));
+        }
+        return keyTypes;
+    }
+
+    /**
+     * Copy retrieved values into the loaded element data of a cache entry.
+     *
+     * @param ece the cache entry
+     * @param ledRetrieved the retrieved values
+     */
+    private static void updateCacheEntry(CacheEntry ece, LoadedElementData ledRetrieved)
+    {
+        LoadedElementData led = ece.getLoadedElementData();
+        if (led == null)
+        {
+            led = new LoadedElementData();
+            ece.setLoadedElementData(led);
+        }
+        if (ledRetrieved.getOriginId() != null)
+        {
+            led.setOriginId(ledRetrieved.getOriginId());
+        }
+        if (ledRetrieved.getMapGeometrySupport() != null)
+        {
+            led.setMapGeometrySupport(ledRetrieved.getMapGeometrySupport());
+        }
+        if (ledRetrieved.getMetaData() != null)
+        {
+            led.setMetaData(ledRetrieved.getMetaData());
+        }
+    }
+
+    @Override
+    public void cacheElement(String source, String category, long id, DataTypeInfo type, CacheEntry ce)
+    {
+        LinkedList<CacheEntry> ceList = new LinkedList<>();
+        ceList.add(ce);
+        cacheElements(source, category, new TLongArrayList(new long[] { id }), type, ceList);
+    }
+
+    @Override
+    public void cacheElements(String source, String category, TLongList ids, DataTypeInfo type, LinkedList<CacheEntry> ceList)
+    {
+        int storeNumber = getStoreNumber(type);
+        ColumnStore store = getStore(storeNumber);
+        TLongList idList = new TLongArrayList(ids);
+        List<CacheEntry> entryList = new ArrayList<>(ceList);
+        ceList.clear();
+        WRITE_EXECUTOR_SERVICE.execute(new AddElementsWorker(store, storeNumber, idList, entryList));
+    }
+
+    @Override
+    public void dataTypeRemoved(DataTypeInfo dti)
+    {
+        final ColumnStore store;
+        synchronized (myTypeToStoreNumberMap)
+        {
+            Integer storeNumber = myTypeToStoreNumberMap.remove(dti.getTypeKey());
+            store = storeNumber == null ? null : myNumberToStoreMap.remove(storeNumber.intValue());
+        }
+        if (store != null)
+        {
+            WRITE_EXECUTOR_SERVICE.execute(new Priority()
+            {
+                @Override
+                public int getPriority()
+                {
+                    return 5;
+                }
+
+                @Override
+                public void run()
+                {
+                    store.close();
+                }
+            });
+        }
+    }
+
+    @Override
+    public DirectAccessRetriever getDirectAccessRetriever(DataTypeInfo dti, LongFunction<CacheEntry> cacheRefMap,
+            DynamicMetadataManagerImpl dcm)
+    {
+        return new ColumnarDirectAccessRetriever(dti, cacheRefMap, dcm);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * String values are coded when their column is dictionary-encoded, which
+     * the column decides from the cardinality of the values it has been
+     * given, and dynamic enumeration keys are coded by their value ids.
+     */
+    @Override
+    public MetaDataCodes getMetaDataCodes(DataTypeInfo type, int keyIndex, List<Long> cacheIds, List<CacheEntry> entries)
+    {
+        Integer storeNumber;
+        synchronized (myTypeToStoreNumberMap)
+        {
+            storeNumber = myTypeToStoreNumberMap.get(type.getTypeKey());
+        }
+        ColumnStore store = storeNumber == null ? null : getStore(storeNumber.intValue());
+        if (store == null)
+        {
+            return null;
+        }
+
+        long[] ids = new long[cacheIds.size()];
+        int index = 0;
+        for (CacheEntry ce : entries)
+        {
+            // Elements that are still waiting to be written are not in the
+            // store yet, so their values cannot be coded.
+            if (ce != null && !(ce.getCacheReference() instanceof ColumnarCacheReference))
+            {
+                return null;
+            }
+            ids[index] = cacheIds.get(index).longValue();
+            ++index;
+        }
+        return store.getCodes(ids, keyIndex, myDynamicEnumerationRegistry);
+    }
+
+    @Override
+    public int getPreferredInsertBlockSize()
+    {
+        return INSERT_BLOCK_SIZE;
+    }
+
+    @Override
+    public void removeElement(long cacheId, CacheReference ref)
+    {
+        List<Long> cacheIds = New.list(1);
+        cacheIds.add(Long.valueOf(cacheId));
+        List<CacheReference> refs = New.list(1);
+        refs.add(ref);
+        removeElements(cacheIds, refs);
+    }
+
+    @Override
+    public void removeElements(List<Long> cacheIds, List<CacheReference> refs)
+    {
+        if (!cacheIds.isEmpty())
+        {
+            WRITE_EXECUTOR_SERVICE.execute(new RemoveElementsWorker(cacheIds, refs));
+        }
+    }
+
+    @Override
+    public void retrieveAndUpdateElementCacheEntries(CacheQuery query, List<Long> cacheIds, List<CacheEntry> entries,
+            boolean updateEntries)
+    {
+        CacheEntryViewProxy proxy = new CacheEntryViewProxy(myDynamicColumnManager, myDynamicEnumerationRegistry);
+        LoadedElementData led = new LoadedElementData();
+        long currTime = System.currentTimeMillis();
+        Iterator<Long> idItr = cacheIds.iterator();
+        for (CacheEntry ce : entries)
+        {
+            Long id = idItr.next();
+            if (query.isComplete())
+            {
+                break;
+            }
+            if (!(ce.getCacheReference() instanceof ColumnarCacheReference))
+            {
+                continue;
+            }
+            ColumnarCacheReference ref = (ColumnarCacheReference)ce.getCacheReference();
+            ColumnStore store = getStore(ref.getStoreNumber());
+            if (store == null)
+            {
+                continue;
+            }
+
+            led.setAll(null, null, null);
+            if (query.isRetrieveOriginId() && ref.isOriginIdCached())
+            {
+                led.setOriginId(store.getOriginId(id.longValue()));
+            }
+            if (query.isRetrieveMetaDataProvider() && ref.isMetaDataInfoCached())
+            {
+                led.setMetaData(store.getMetaData(id.longValue()));
+            }
+            if (query.isRetrieveMapGeometrySupport() && ref.isMapGeometrySupportCached())
+            {
+                ByteBuffer geometry = store.getGeometry(id.longValue());
+                try
+                {
+                    led.setMapGeometrySupport(geometry == null ? null : decodeGeometry(geometry));
+                }
+                catch (IOException e)
+                {
+                    LOGGER.error("Failed to decode cached element " + id + ": " + e, e);
+                    continue;
+                }
+            }
+
+            proxy.setParts(id.longValue(), ce, led);
+            if (query.acceptsInternal(proxy))
+            {
+                if (updateEntries)
+                {
+                    ce.setLastUsedTime(currTime);
+                }
+                query.processInternal(id, proxy);
+            }
+            if (updateEntries)
+            {
+                updateCacheEntry(ce, led);
+            }
+        }
+    }
+
+    /**
+     * Get a store by number.
+     *
+     * @param storeNumber the store number
+     * @return the store, or {@code null} if its data type has been removed
+     */
+    private ColumnStore getStore(int storeNumber)
+    {
+        synchronized (myTypeToStoreNumberMap)
+        {
+            return myNumberToStoreMap.get(storeNumber);
+        }
+    }
+
+    /**
+     * Get the number of the store for a data type, creating the store if
+     * necessary.
+     *
+     * @param type the data type
+     * @return the store number
+     */
+    private int getStoreNumber(DataTypeInfo type)
+    {
+        synchronized (myTypeToStoreNumberMap)
+        {
+            Integer storeNumber = myTypeToStoreNumberMap.get(type.getTypeKey());
+            if (storeNumber == null)
+            {
+                storeNumber = Integer.valueOf(myNextStoreNumber++);
+                myTypeToStoreNumberMap.put(type.getTypeKey(), storeNumber);
+                myNumberToStoreMap.put(storeNumber.intValue(), new ColumnStore(getKeyTypes(type)));
+            }
+            return storeNumber.intValue();
+        }
+    }
+
+    /**
+     * Writes elements to a store.
+     */
+    private class AddElementsWorker implements Priority
+    {
+        /** The element cache ids. */
+        private final TLongList myElementCacheIds;
+
+        /** The elements. */
+        private final List<CacheEntry> myElements;
+
+        /** The store. */
+        private final ColumnStore myStore;
+
+        /** The store number. */
+        private final int myStoreNumber;
+
+        /**
+         * Instantiates a new add elements worker.
+         *
+         * @param store the store
+         * @param storeNumber the store number
+         * @param elementIds the element ids
+         * @param elements the elements
+         */
+        public AddElementsWorker(ColumnStore store, int storeNumber, TLongList elementIds, List<CacheEntry> elements)
+        {
+            myStore = store;
+            myStoreNumber = storeNumber;
+            myElementCacheIds = elementIds;
+            myElements = elements;
+        }
+
+        @Override
+        public int getPriority()
+        {
+            return 2;
+        }
+
+        @Override
+        public void run()
+        {
+            TLongObjectHashMap<CacheReference> idToCRMap = new TLongObjectHashMap<>();
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(2000);
+            long start = System.nanoTime();
+            TLongIterator idItr = myElementCacheIds.iterator();
+            for (CacheEntry ce : myElements)
+            {
+                long id = idItr.next();
+                LoadedElementData led = ce.getLoadedElementData();
+                if (led == null)
+                {
+                    continue;
+                }
+                try
+                {
+                    byte[] geometry = led.getMapGeometrySupport() == null ? null
+                            : encodeGeometry(led.getMapGeometrySupport(), baos);
+                    myStore.put(id, led.getOriginId(), led.getMetaData(), geometry);
+
+                    ColumnarCacheReference ref = new ColumnarCacheReference(myStoreNumber);
+                    ref.setOriginIdCached(led.getOriginId() != null);
+                    ref.setMetaDataInfoCached(led.getMetaData() != null);
+                    ref.setMapGeometrySupportCached(geometry != null);
+                    idToCRMap.put(id, ref);
+                }
+                catch (IOException e)
+                {
+                    LOGGER.error("Failed to encode map geometry support", e);
+                }
+            }
+
+            if (LOGGER.isTraceEnabled())
+            {
+                LOGGER.trace(StringUtilities.formatTimingMessage("Stored " + idToCRMap.size() + " elements in ",
+                        System.nanoTime() - start));
+            }
+            myDataElementCache.cacheAssistantStoreComplete(idToCRMap);
+        }
+    }
+
+    /**
+     * A direct access retriever that reads from the column stores.
+     */
+    private class ColumnarDirectAccessRetriever extends DefaultDirectAccessRetriever
+    {
+        /**
+         * Instantiates a new columnar direct access retriever.
+         *
+         * @param dti the dti
+         * @param cacheRefMap the cache ref map
+         * @param dcm the dcm
+         */
+        public ColumnarDirectAccessRetriever(DataTypeInfo dti, LongFunction<CacheEntry> cacheRefMap,
+                DynamicMetadataManagerImpl dcm)
+        {
+            super(dti, cacheRefMap, dcm);
+        }
+
+        @Override
+        public MapGeometrySupport getMapGeometrySupport(long cacheId)
+        {
+            MapGeometrySupport result = null;
+            CacheEntry ce = getCacheEntry(cacheId);
+            if (ce != null)
+            {
+                result = extractMGSFromEntryIfAvailable(ce);
+                if (result == null && ce.isMapGeometrySupportCached())
+                {
+                    ColumnStore store = getStore(ce);
+                    ByteBuffer geometry = store == null ? null : store.getGeometry(cacheId);
+                    try
+                    {
+                        result = geometry == null ? null : decodeGeometry(geometry);
+                    }
+                    catch (IOException e)
+                    {
+                        LOGGER.error("Failed to decode cached element " + cacheId + ": " + e, e);
+                    }
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public List<Object> getMetaData(long cacheId)
+        {
+            List<Object> result = null;
+            CacheEntry ce = getCacheEntry(cacheId);
+            if (ce != null)
+            {
+                result = extractMetaDataFromEntryIfAvailable(ce);
+                if (result == null && ce.isMetaDataInfoCached())
+                {
+                    ColumnStore store = getStore(ce);
+                    result = store == null ? null : store.getMetaData(cacheId);
+                }
+                result = result == null ? null : DynamicEnumDecoder.decode(myDynamicEnumerationRegistry, result);
+                result = new DynamicMetaDataListViewProxy(cacheId, result, getDynamicColumnCoordinator());
+            }
+            return result;
+        }
+
+        @Override
+        public Long getOriginId(long cacheId)
+        {
+            Long result = null;
+            CacheEntry ce = getCacheEntry(cacheId);
+            if (ce != null)
+            {
+                result = extractOriginIdFromEntryIfAvailable(ce);
+                if (result == null && ce.isOriginIdCached())
+                {
+                    ColumnStore store = getStore(ce);
+                    result = store == null ? null : store.getOriginId(cacheId);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Get the store that holds an element.
+         *
+         * @param ce the cache entry
+         * @return the store, or {@code null} if the element is not stored
+         */
+        private ColumnStore getStore(CacheEntry ce)
+        {
+            return ce.getCacheReference() instanceof ColumnarCacheReference
+                    ? ColumnarCacheAssistant.this.getStore(((ColumnarCacheReference)ce.getCacheReference()).getStoreNumber())
+                    : null;
+        }
+    }
+
+    /**
+     * Removes elements from their stores.
+     */
+    private class RemoveElementsWorker implements Priority
+    {
+        /** The cache ids to remove. */
+        private final List<Long> myCacheIdsToRemove;
+
+        /** The references for the elements to remove. */
+        private final List<CacheReference> myRefsToRemove;
+
+        /**
+         * Instantiates a new remove elements worker.
+         *
+         * @param cacheIds the cache ids
+         * @param refsToRemove the refs to remove
+         */
+        public RemoveElementsWorker(List<Long> cacheIds, List<CacheReference> refsToRemove)
+        {
+            myCacheIdsToRemove = cacheIds;
+            myRefsToRemove = refsToRemove;
+        }
+
+        @Override
+        public int getPriority()
+        {
+            return 3;
+        }
+
+        @Override
+        public void run()
+        {
+            TIntObjectMap<TLongList> storeToIdsMap = new TIntObjectHashMap<>();
+            Iterator<CacheReference> refItr = myRefsToRemove.iterator();
+            for (Long id : myCacheIdsToRemove)
+            {
+                CacheReference ref = refItr.next();
+                if (ref instanceof ColumnarCacheReference)
+                {
+                    int storeNumber = ((ColumnarCacheReference)ref).getStoreNumber();
+                    TLongList ids = storeToIdsMap.get(storeNumber);
+                    if (ids == null)
+                    {
+                        ids = new TLongArrayList();
+                        storeToIdsMap.put(storeNumber, ids);
+                    }
+                    ids.add(id.longValue());
+                }
+            }
+
+            storeToIdsMap.forEachEntry((storeNumber, ids) ->
+            {
+                ColumnStore store = getStore(storeNumber);
+                if (store != null)
+                {
+                    store.remove(ids.toArray());
+                }
+                return true;
+            });
+
+            myDataElementCache.cacheAssistantRemoveComplete(myCacheIdsToRemove);
+        }
+    }
+}
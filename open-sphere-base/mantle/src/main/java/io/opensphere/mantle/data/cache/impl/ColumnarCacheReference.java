@@ -0,0 +1,69 @@
+package io.opensphere.mantle.data.cache.impl;
+
+import io.opensphere.mantle.data.cache.CacheStoreType;
+
+/**
+ * A reference to an element stored by the {@link ColumnarCacheAssistant}. The
+ * location of the element is kept in the index of its column store, so the
+ * reference only needs to identify the store.
+ */
+public class ColumnarCacheReference extends CacheReference
+{
+    /**
+     * serialVersionUID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /** The number of the column store that holds the element. */
+    private final int myStoreNumber;
+
+    /**
+     * Instantiates a new mapped cache reference.
+     *
+     * @param storeNumber the number of the column store that holds the
+     *            element
+     */
+    public ColumnarCacheReference(int storeNumber)
+    {
+        myStoreNumber = storeNumber;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+        {
+            return true;
+        }
+        if (!super.equals(obj) || getClass() != obj.getClass())
+        {
+            return false;
+        }
+        return myStoreNumber == ((ColumnarCacheReference)obj).myStoreNumber;
+    }
+
+    /**
+     * Gets the number of the column store that holds the element.
+     *
+     * @return the store number
+     */
+    public int getStoreNumber()
+    {
+        return myStoreNumber;
+    }
+
+    @Override
+    public CacheStoreType getType()
+    {
+        return CacheStoreType.COLUMNAR;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        final int prime = 31;
+        int result = super.hashCode();
+        result = prime * result + myStoreNumber;
+        return result;
+    }
+}
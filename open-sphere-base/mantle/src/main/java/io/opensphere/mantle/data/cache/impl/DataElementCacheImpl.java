@@ -42,6 +42,7 @@ import io.opensphere.mantle.data.cache.CacheQuery;
 import io.opensphere.mantle.data.cache.CacheStoreType;
 import io.opensphere.mantle.data.cache.DataElementCache;
 import io.opensphere.mantle.data.cache.DirectAccessRetriever;
+import io.opensphere.mantle.data.cache.MetaDataCodes;
 import io.opensphere.mantle.data.dynmeta.DynamicDataElementMetadataManager;
 import io.opensphere.mantle.data.dynmeta.DynamicMetadataDataTypeController;
 import io.opensphere.mantle.data.dynmeta.impl.DynamicMetadataManagerImpl;
@@ -149,6 +150,15 @@ public class DataElementCacheImpl implements DataElementCache
             myCacheAssistant = new DiskCacheAssistant(myToolbox, this, myDynamicMetadataManager, myDynamicEnumerationRegistry,
                     myCacheConfiguration.getDiskCacheLocation(), myCacheConfiguration.isUseDiskEncryption());
         }
+        else if (myCacheConfiguration.getCacheStoreType() == CacheStoreType.MAPPED)
+        {
+            myCacheAssistant = new MappedCacheAssistant(this, myDynamicMetadataManager, myDynamicEnumerationRegistry,
+                    myCacheConfiguration.getDiskCacheLocation());
+        }
+        else if (myCacheConfiguration.getCacheStoreType() == CacheStoreType.COLUMNAR)
+        {
+            myCacheAssistant = new ColumnarCacheAssistant(this, myDynamicMetadataManager, myDynamicEnumerationRegistry);
+        }
         else if (myCacheConfiguration.getCacheStoreType() == CacheStoreType.REGISTRY)
         {
             myCacheAssistant = new RegistryCacheAssistant(tb, this, myDynamicMetadataManager, myDynamicEnumerationRegistry);
@@ -385,6 +395,27 @@ public class DataElementCacheImpl implements DataElementCache
                 : myDataTypeToIdMap.getIdsForTypeAsRangedLongSet(type);
     }
 
+    @Override
+    public MetaDataCodes getMetaDataCodes(List<Long> elementIds, DataTypeInfo type, String key)
+    {
+        Utilities.checkNull(elementIds, IDS_STRING);
+        int keyIndex = type.getMetaDataInfo() == null ? -1 : type.getMetaDataInfo().getKeyIndex(key);
+        DynamicMetadataDataTypeController dynamicController = myDynamicMetadataManager == null ? null
+                : myDynamicMetadataManager.getController(type.getTypeKey());
+        if (myCacheAssistant == null || keyIndex == -1 || dynamicController != null && dynamicController.isDynamicColumn(key))
+        {
+            // Dynamic column values are not kept by the cache assistant.
+            return null;
+        }
+
+        List<CacheEntry> entries = New.list(elementIds.size());
+        for (Long id : elementIds)
+        {
+            entries.add(getCacheEntry(id));
+        }
+        return myCacheAssistant.getMetaDataCodes(type, keyIndex, elementIds, entries);
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -1,11 +1,11 @@
 package io.opensphere.mantle.data.cache.impl;
 
+import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.util.List;
 
-import org.apache.log4j.Logger;
-
 import io.opensphere.mantle.data.element.DynamicMetaDataList;
 import io.opensphere.mantle.data.impl.encoder.DiskDecodeHelper;
 import io.opensphere.mantle.data.impl.encoder.EncodeType;
@@ -15,9 +15,6 @@ import io.opensphere.mantle.data.impl.encoder.EncodeType;
  */
 public final class DiskCacheDecodeHelper
 {
-    /** The Constant LOGGER. */
-    private static final Logger LOGGER = Logger.getLogger(DiskCacheDecodeHelper.class);
-
     /**
      * Decode dynamic meta data list.
      *
@@ -27,21 +24,8 @@ public final class DiskCacheDecodeHelper
      */
     public static DynamicMetaDataList decodeDynamicMetaDataList(ObjectInputStream ois) throws IOException
     {
-        DynamicMetaDataList dmdl = null;
-        int typeHashCode = ois.readInt();
-        Class<DynamicMetaDataList> cl = DynamicMetaDataClassRegistry.getInstance().getDynamicClassForHashCode(typeHashCode);
-        try
-        {
-            dmdl = cl.getDeclaredConstructor().newInstance();
-        }
-        catch (ReflectiveOperationException e)
-        {
-            LOGGER.error("Failed to create DynamicMetaDataList", e);
-        }
-        if (dmdl != null)
-        {
-            dmdl.decode(ois);
-        }
+        DynamicMetaDataList dmdl = newDynamicMetaDataList(ois.readInt());
+        dmdl.decode(ois);
         return dmdl;
     }
 
@@ -107,6 +91,56 @@ public final class DiskCacheDecodeHelper
         return null;
     }
 
+    /**
+     * Decode meta data list as a stand-alone object written by
+     * {@link DiskCacheEncodeHelper#encodeMetaDataList(java.io.OutputStream, List)}.
+     * The stream must support mark and reset.
+     *
+     * @param is the input stream
+     * @return the list
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public static List<Object> decodeMetaDataList(InputStream is) throws IOException
+    {
+        is.mark(1);
+        if (is.read() == (EncodeType.DYNAMIC_METADATALIST_TYPED.code() & 0xff))
+        {
+            DataInputStream dis = new DataInputStream(is);
+            DynamicMetaDataList dmdl = newDynamicMetaDataList(dis.readInt());
+            dmdl.read(dis);
+            return dmdl;
+        }
+        is.reset();
+        return decodeMetaDataList(new ObjectInputStream(is));
+    }
+
+    /**
+     * Create an empty dynamic meta data list of the class for a type hash
+     * code.
+     *
+     * @param typeHashCode the type hash code
+     * @return the dynamic meta data list
+     * @throws IOException If there is no class for the hash code or it could
+     *             not be instantiated, since the columns cannot be read
+     *             without it.
+     */
+    private static DynamicMetaDataList newDynamicMetaDataList(int typeHashCode) throws IOException
+    {
+        Class<DynamicMetaDataList> cl = DynamicMetaDataClassRegistry.getInstance().getDynamicClassForHashCode(typeHashCode);
+        if (cl == null)
+        {
+            throw new IOException("No DynamicMetaDataList class found for type hash code " + typeHashCode);
+        }
+        try
+        {
+            return cl.getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new IOException("Failed to create DynamicMetaDataList: " + e, e);
+        }
+    }
+
     /**
      * Instantiates a new disk encode helper.
      */
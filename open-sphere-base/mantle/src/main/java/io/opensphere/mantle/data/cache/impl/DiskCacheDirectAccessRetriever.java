@@ -322,9 +322,7 @@ public class DiskCacheDirectAccessRetriever extends DefaultDirectAccessRetriever
         }
 
         ByteArrayInputStream elementBAIS = decodeIfNecessary(myDiskCacheAssistant.isUsingEncryption(), size);
-        ObjectInputStream ois = new ObjectInputStream(elementBAIS);
-
-        return DiskCacheDecodeHelper.decodeMetaDataList(ois);
+        return DiskCacheDecodeHelper.decodeMetaDataList(elementBAIS);
     }
 
     /**
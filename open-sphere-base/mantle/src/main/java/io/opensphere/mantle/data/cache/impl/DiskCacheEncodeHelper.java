@@ -1,7 +1,9 @@
 package io.opensphere.mantle.data.cache.impl;
 
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.util.List;
 
 import io.opensphere.mantle.data.element.DynamicMetaDataList;
@@ -54,6 +56,38 @@ public final class DiskCacheEncodeHelper
         }
     }
 
+    /**
+     * Encode meta data list as a stand-alone item. Dynamic meta data lists
+     * are written with their typed write method directly to the stream,
+     * which avoids the cost of setting up an object stream; other lists are
+     * written to an object stream as in
+     * {@link #encodeMetaDataList(ObjectOutputStream, List)}. Either form can
+     * be read by
+     * {@link DiskCacheDecodeHelper#decodeMetaDataList(java.io.InputStream)}.
+     *
+     * @param os the output stream
+     * @param aList the a list
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public static void encodeMetaDataList(OutputStream os, List<Object> aList) throws IOException
+    {
+        if (aList instanceof DynamicMetaDataList)
+        {
+            DynamicMetaDataList dmdl = (DynamicMetaDataList)aList;
+            DataOutputStream dos = new DataOutputStream(os);
+            dos.writeByte(EncodeType.DYNAMIC_METADATALIST_TYPED.code());
+            dos.writeInt(dmdl.getTypeHashCode());
+            dmdl.write(dos);
+            dos.flush();
+        }
+        else
+        {
+            ObjectOutputStream oos = new ObjectOutputStream(os);
+            encodeMetaDataList(oos, aList);
+            oos.flush();
+        }
+    }
+
     /**
      * Encode dynamic meta data list.
      *
@@ -1,5 +1,7 @@
 package io.opensphere.mantle.data.cache.impl;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
@@ -290,6 +292,8 @@ public class DynamicMetaDataListCodeGenerator
         sb.append("import ").append(IOException.class.getName()).append(";\n");
         sb.append("import ").append(ObjectOutputStream.class.getName()).append(";\n");
         sb.append("import ").append(ObjectInputStream.class.getName()).append(";\n");
+        sb.append("import ").append(DataOutput.class.getName()).append(";\n");
+        sb.append("import ").append(DataInput.class.getName()).append(";\n");
         sb.append("import ").append(Collections.class.getName()).append(";\n");
         sb.append("import ").append(Serializable.class.getName()).append(";\n");
         sb.append("import ").append(EncodeType.class.getName()).append(";\n");
@@ -361,6 +365,10 @@ public class DynamicMetaDataListCodeGenerator
         sb.append('\n');
         generateDecodeFunction(sb);
         sb.append('\n');
+        generateWriteFunction(sb);
+        sb.append('\n');
+        generateReadFunction(sb);
+        sb.append('\n');
         generateEqualsFunction(sb);
         sb.append('\n');
         generateHashCodeFunction(sb);
@@ -1085,6 +1093,64 @@ public class DynamicMetaDataListCodeGenerator
         sb.append(SINGLE_INDENT).append(CLOSE_BRACKET_NEWLINE);
     }
 
+    /**
+     * Generate read function, the counterpart of the write function.
+     *
+     * @param sb the sb
+     */
+    private void generateReadFunction(StringBuilder sb)
+    {
+        sb.append("  @Override\n");
+        sb.append("  public void read(DataInput in) throws IOException\n");
+        sb.append(SINGLE_INDENT).append(OPEN_BRACKET_NEWLINE);
+        sb.append("    int length;\n");
+        for (int i = 0; i < myNumKeys; i++)
+        {
+            String fieldName = myFieldNameList.get(i);
+            switch (myFieldNameToFieldDecleratorMap.get(fieldName))
+            {
+                case BOOLEAN:
+                    sb.append("    ").append(fieldName).append(" = in.readByte();\n");
+                    break;
+                case DOUBLE:
+                    sb.append("    ").append(fieldName).append(" = in.readDouble();\n");
+                    break;
+                case FLOAT:
+                    sb.append("    ").append(fieldName).append(" = in.readFloat();\n");
+                    break;
+                case BYTE:
+                case SHORT:
+                    sb.append("    ").append(fieldName).append(" = in.readShort();\n");
+                    break;
+                case INTEGER:
+                case DYNAMIC_ENUMERATION_KEY:
+                    sb.append("    ").append(fieldName).append(" = in.readInt();\n");
+                    break;
+                case DATE:
+                case LONG:
+                    sb.append("    ").append(fieldName).append(" = in.readLong();\n");
+                    break;
+                case OBJECT:
+                    sb.append("    ").append(fieldName).append(" = readObjectValue(in, \"")
+                            .append(myFieldNameToKeyNameMap.get(fieldName).replace("\\", "\\\\").replace("\"", "\\\""))
+                            .append("\");\n");
+                    break;
+                case STRING:
+                case BYTE_STRING:
+                    sb.append("    length = in.readInt();\n");
+                    sb.append("    ").append(fieldName).append(" = length < 0 ? null : new byte[length];\n");
+                    sb.append("    if( length > 0 )\n");
+                    sb.append("    {\n");
+                    sb.append("      in.readFully(").append(fieldName).append(");\n");
+                    sb.append("    }\n");
+                    break;
+                default:
+                    break;
+            }
+        }
+        sb.append(SINGLE_INDENT).append(CLOSE_BRACKET_NEWLINE);
+    }
+
     /**
      * Generate set equal to method.
      *
@@ -1251,7 +1317,7 @@ public class DynamicMetaDataListCodeGenerator
         sb.append(" : val instanceof ByteString ? ((ByteString)val).getData() : ByteString.getBytes(val.toString());\n");
         genSetPortionForType(sb, "      ", DecleratorType.BYTE_STRING, "valToAssign");
         sb.append("    }\n");
-        // Object generic
+        // Object generic
         sb.append("    else\n");
         sb.append("    {\n");
         genSetPortionForType(sb, "      ", DecleratorType.OBJECT, "val");
@@ -1415,6 +1481,66 @@ public class DynamicMetaDataListCodeGenerator
         sb.append(SINGLE_INDENT).append(CLOSE_BRACKET_NEWLINE);
     }
 
+    /**
+     * Generate write function. Unlike the encode function, this writes each
+     * column directly as a primitive to a {@link DataOutput}, so no object
+     * stream is needed unless the type has columns of unknown class.
+     *
+     * @param sb the sb
+     */
+    private void generateWriteFunction(StringBuilder sb)
+    {
+        sb.append("  @Override\n");
+        sb.append("  public void write(DataOutput out) throws IOException\n");
+        sb.append(SINGLE_INDENT).append(OPEN_BRACKET_NEWLINE);
+        for (int i = 0; i < myNumKeys; i++)
+        {
+            String fieldName = myFieldNameList.get(i);
+            switch (myFieldNameToFieldDecleratorMap.get(fieldName))
+            {
+                case BOOLEAN:
+                    sb.append("    out.writeByte(").append(fieldName).append(");\n");
+                    break;
+                case DOUBLE:
+                    sb.append("    out.writeDouble(").append(fieldName).append(");\n");
+                    break;
+                case FLOAT:
+                    sb.append("    out.writeFloat(").append(fieldName).append(");\n");
+                    break;
+                case BYTE:
+                case SHORT:
+                    sb.append("    out.writeShort(").append(fieldName).append(");\n");
+                    break;
+                case INTEGER:
+                case DYNAMIC_ENUMERATION_KEY:
+                    sb.append("    out.writeInt(").append(fieldName).append(");\n");
+                    break;
+                case DATE:
+                case LONG:
+                    sb.append("    out.writeLong(").append(fieldName).append(");\n");
+                    break;
+                case OBJECT:
+                    sb.append("    writeObjectValue(out, ").append(fieldName).append(");\n");
+                    break;
+                case STRING:
+                case BYTE_STRING:
+                    sb.append("    if( ").append(fieldName).append(" == null )\n");
+                    sb.append("    {\n");
+                    sb.append("      out.writeInt(-1);\n");
+                    sb.append("    }\n");
+                    sb.append("    else\n");
+                    sb.append("    {\n");
+                    sb.append("      out.writeInt(").append(fieldName).append(".length);\n");
+                    sb.append("      out.write(").append(fieldName).append(");\n");
+                    sb.append("    }\n");
+                    break;
+                default:
+                    break;
+            }
+        }
+        sb.append(SINGLE_INDENT).append(CLOSE_BRACKET_NEWLINE);
+    }
+
     /**
      * Gen set portion for numeric type.
      *
@@ -0,0 +1,776 @@
+package io.opensphere.mantle.data.cache.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamConstants;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+
+import org.apache.log4j.Logger;
+
+import gnu.trove.iterator.TLongIterator;
+import gnu.trove.list.TLongList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import io.opensphere.core.util.collections.New;
+import io.opensphere.core.util.filesystem.FileUtilities;
+import io.opensphere.core.util.io.ByteBufferInputStream;
+import io.opensphere.core.util.lang.NamedThreadFactory;
+import io.opensphere.core.util.lang.StringUtilities;
+import io.opensphere.mantle.data.DataTypeInfo;
+import io.opensphere.mantle.data.cache.CacheQuery;
+import io.opensphere.mantle.data.cache.DirectAccessRetriever;
+import io.opensphere.mantle.data.cache.Priority;
+import io.opensphere.mantle.data.dynmeta.impl.DynamicMetaDataListViewProxy;
+import io.opensphere.mantle.data.dynmeta.impl.DynamicMetadataManagerImpl;
+import io.opensphere.mantle.data.element.DynamicMetaDataList;
+import io.opensphere.mantle.data.geom.MapGeometrySupport;
+import io.opensphere.mantle.data.impl.encoder.DiskDecodeHelper;
+import io.opensphere.mantle.data.impl.encoder.DiskEncodeHelper;
+import io.opensphere.mantle.util.dynenum.DynamicEnumerationRegistry;
+
+/**
+ * A cache assistant that stores element data in memory-mapped, append-only
+ * segment files, with one {@link SegmentStore} per data type. Each element is
+ * one record holding its origin id, meta data, and map geometry support, so a
+ * direct lookup of an element is an index lookup and a decode of just the
+ * part that is needed. Removed elements are dropped from the index and their
+ * space is reclaimed by compacting the store.
+ */
+public class MappedCacheAssistant implements CacheAssistant
+{
+    /** Logger reference. */
+    private static final Logger LOGGER = Logger.getLogger(MappedCacheAssistant.class);
+
+    /** The number of bytes at the start of a record for the part lengths. */
+    private static final int RECORD_HEADER_BYTES = 3 * Integer.BYTES;
+
+    /** The preferred number of elements per insert. */
+    private static final int INSERT_BLOCK_SIZE = 20000;
+
+    /** The size of each segment file. */
+    private static final int SEGMENT_SIZE_BYTES = Integer.getInteger("opensphere.mantle.elementCache.segmentSizeMB", 64)
+            .intValue() << 20;
+
+    /** The executor for writes, removes and compaction. */
+    private static final ThreadPoolExecutor WRITE_EXECUTOR_SERVICE = new ThreadPoolExecutor(1, 1, 20, TimeUnit.SECONDS,
+            new PriorityBlockingQueue<>(10, new RunnablePriorityComparator()),
+            new NamedThreadFactory("DataElementCache:MappedWriteWorker"));
+
+    /** The location for the segment files. */
+    private final File myCacheLocation;
+
+    /** The data element cache. */
+    private final DataElementCacheImpl myDataElementCache;
+
+    /** The Dynamic column manager. */
+    private final DynamicMetadataManagerImpl myDynamicColumnManager;
+
+    /** The Dynamic enumeration registry. */
+    private final DynamicEnumerationRegistry myDynamicEnumerationRegistry;
+
+    /** The number for the next store. */
+    private int myNextStoreNumber;
+
+    /** The stores by number. */
+    private final TIntObjectMap<SegmentStore> myNumberToStoreMap = new TIntObjectHashMap<>();
+
+    /** The store numbers by data type key. */
+    private final Map<String, Integer> myTypeToStoreNumberMap = New.map();
+
+    static
+    {
+        WRITE_EXECUTOR_SERVICE.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Instantiates a new mapped cache assistant.
+     *
+     * @param dec the data element cache
+     * @param dcMan the dynamic metadata manager
+     * @param deReg the dynamic enumeration registry
+     * @param cacheLocation the location for the segment files
+     */
+    public MappedCacheAssistant(DataElementCacheImpl dec, DynamicMetadataManagerImpl dcMan, DynamicEnumerationRegistry deReg,
+            File cacheLocation)
+    {
+        myDataElementCache = dec;
+        myDynamicColumnManager = dcMan;
+        myDynamicEnumerationRegistry = deReg;
+        myCacheLocation = cacheLocation;
+        FileUtilities.deleteDirRecursive(myCacheLocation);
+        if (!myCacheLocation.mkdirs())
+        {
+            LOGGER.error("Failed to make data element cache location: " + myCacheLocation.getAbsolutePath());
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> FileUtilities.deleteDirRecursive(myCacheLocation)));
+    }
+
+    /**
+     * Decode one part of a record.
+     *
+     * @param record the record
+     * @param fetchType the part to decode
+     * @return the decoded part, or {@code null} if the record does not
+     *         contain the part
+     * @throws IOException If the part cannot be decoded.
+     */
+    static Object decodeRecordPart(ByteBuffer record, DiskCacheFetchType fetchType) throws IOException
+    {
+        int originIdLength = record.getInt(0);
+        int metaDataLength = record.getInt(Integer.BYTES);
+        int mgsLength = record.getInt(2 * Integer.BYTES);
+
+        int offset = RECORD_HEADER_BYTES;
+        int length;
+        if (fetchType == DiskCacheFetchType.ORIGIN_ID)
+        {
+            length = originIdLength;
+        }
+        else if (fetchType == DiskCacheFetchType.META_DATA)
+        {
+            offset += originIdLength;
+            length = metaDataLength;
+        }
+        else
+        {
+            offset += originIdLength + metaDataLength;
+            length = mgsLength;
+        }
+        if (length == 0)
+        {
+            return null;
+        }
+
+        ByteBuffer part = record.duplicate();
+        part.position(offset);
+        part.limit(offset + length);
+        ByteBufferInputStream is = new ByteBufferInputStream(part.slice());
+        if (fetchType == DiskCacheFetchType.ORIGIN_ID)
+        {
+            return DiskDecodeHelper.decodeOriginId(new ObjectInputStream(is));
+        }
+        else if (fetchType == DiskCacheFetchType.META_DATA)
+        {
+            return DiskCacheDecodeHelper.decodeMetaDataList(is);
+        }
+        return DiskDecodeHelper.decodeMapGeometrySupport(new ObjectInputStream(is));
+    }
+
+    /**
+     * Copy retrieved values into the loaded element data of a cache entry.
+     *
+     * @param ece the cache entry
+     * @param ledRetrieved the retrieved values
+     */
+    private static void updateCacheEntry(CacheEntry ece, LoadedElementData ledRetrieved)
+    {
+        LoadedElementData led = ece.getLoadedElementData();
+        if (led == null)
+        {
+            led = new LoadedElementData();
+            ece.setLoadedElementData(led);
+        }
+        if (ledRetrieved.getOriginId() != null)
+        {
+            led.setOriginId(ledRetrieved.getOriginId());
+        }
+        if (ledRetrieved.getMapGeometrySupport() != null)
+        {
+            led.setMapGeometrySupport(ledRetrieved.getMapGeometrySupport());
+        }
+        if (ledRetrieved.getMetaData() != null)
+        {
+            led.setMetaData(ledRetrieved.getMetaData());
+        }
+    }
+
+    @Override
+    public void cacheElement(String source, String category, long id, DataTypeInfo type, CacheEntry ce)
+    {
+        LinkedList<CacheEntry> ceList = new LinkedList<>();
+        ceList.add(ce);
+        cacheElements(source, category, new TLongArrayList(new long[] { id }), type, ceList);
+    }
+
+    @Override
+    public void cacheElements(String source, String category, TLongList ids, DataTypeInfo type, LinkedList<CacheEntry> ceList)
+    {
+        int storeNumber = getStoreNumber(type.getTypeKey());
+        SegmentStore store = getStore(storeNumber);
+        TLongList idList = new TLongArrayList(ids);
+        List<CacheEntry> entryList = new ArrayList<>(ceList);
+        ceList.clear();
+        WRITE_EXECUTOR_SERVICE.execute(new AddElementsWorker(store, storeNumber, idList, entryList));
+    }
+
+    @Override
+    public void dataTypeRemoved(DataTypeInfo dti)
+    {
+        final SegmentStore store;
+        synchronized (myTypeToStoreNumberMap)
+        {
+            Integer storeNumber = myTypeToStoreNumberMap.remove(dti.getTypeKey());
+            store = storeNumber == null ? null : myNumberToStoreMap.remove(storeNumber.intValue());
+        }
+        if (store != null)
+        {
+            WRITE_EXECUTOR_SERVICE.execute(new Priority()
+            {
+                @Override
+                public int getPriority()
+                {
+                    return 5;
+                }
+
+                @Override
+                public void run()
+                {
+                    store.close();
+                }
+            });
+        }
+    }
+
+    @Override
+    public DirectAccessRetriever getDirectAccessRetriever(DataTypeInfo dti, LongFunction<CacheEntry> cacheRefMap,
+            DynamicMetadataManagerImpl dcm)
+    {
+        return new MappedDirectAccessRetriever(dti, cacheRefMap, dcm);
+    }
+
+    @Override
+    public int getPreferredInsertBlockSize()
+    {
+        return INSERT_BLOCK_SIZE;
+    }
+
+    @Override
+    public void removeElement(long cacheId, CacheReference ref)
+    {
+        List<Long> cacheIds = New.list(1);
+        cacheIds.add(Long.valueOf(cacheId));
+        List<CacheReference> refs = New.list(1);
+        refs.add(ref);
+        removeElements(cacheIds, refs);
+    }
+
+    @Override
+    public void removeElements(List<Long> cacheIds, List<CacheReference> refs)
+    {
+        if (!cacheIds.isEmpty())
+        {
+            WRITE_EXECUTOR_SERVICE.execute(new RemoveElementsWorker(cacheIds, refs));
+        }
+    }
+
+    @Override
+    public void retrieveAndUpdateElementCacheEntries(CacheQuery query, List<Long> cacheIds, List<CacheEntry> entries,
+            boolean updateEntries)
+    {
+        CacheEntryViewProxy proxy = new CacheEntryViewProxy(myDynamicColumnManager, myDynamicEnumerationRegistry);
+        LoadedElementData led = new LoadedElementData();
+        long currTime = System.currentTimeMillis();
+        Iterator<Long> idItr = cacheIds.iterator();
+        for (CacheEntry ce : entries)
+        {
+            Long id = idItr.next();
+            if (query.isComplete())
+            {
+                break;
+            }
+            if (!(ce.getCacheReference() instanceof MappedCacheReference))
+            {
+                continue;
+            }
+            MappedCacheReference ref = (MappedCacheReference)ce.getCacheReference();
+            SegmentStore store = getStore(ref.getStoreNumber());
+            if (store == null)
+            {
+                continue;
+            }
+
+            led.setAll(null, null, null);
+            try
+            {
+                Boolean found = store.read(id.longValue(), record ->
+                {
+                    if (query.isRetrieveOriginId() && ref.isOriginIdCached())
+                    {
+                        led.setOriginId((Long)decodeRecordPart(record, DiskCacheFetchType.ORIGIN_ID));
+                    }
+                    if (query.isRetrieveMetaDataProvider() && ref.isMetaDataInfoCached())
+                    {
+                        @SuppressWarnings("unchecked")
+                        List<Object> metaData = (List<Object>)decodeRecordPart(record, DiskCacheFetchType.META_DATA);
+                        led.setMetaData(metaData);
+                    }
+                    if (query.isRetrieveMapGeometrySupport() && ref.isMapGeometrySupportCached())
+                    {
+                        led.setMapGeometrySupport(
+                                (MapGeometrySupport)decodeRecordPart(record, DiskCacheFetchType.MAP_GEOMETRY_SUPPORT));
+                    }
+                    return Boolean.TRUE;
+                });
+                if (found == null)
+                {
+                    continue;
+                }
+            }
+            catch (IOException e)
+            {
+                LOGGER.error("Failed to decode cached element " + id + ": " + e, e);
+                continue;
+            }
+
+            proxy.setParts(id.longValue(), ce, led);
+            if (query.acceptsInternal(proxy))
+            {
+                if (updateEntries)
+                {
+                    ce.setLastUsedTime(currTime);
+                }
+                query.processInternal(id, proxy);
+            }
+            if (updateEntries)
+            {
+                updateCacheEntry(ce, led);
+            }
+        }
+    }
+
+    /**
+     * Get a store by number.
+     *
+     * @param storeNumber the store number
+     * @return the store, or {@code null} if its data type has been removed
+     */
+    private SegmentStore getStore(int storeNumber)
+    {
+        synchronized (myTypeToStoreNumberMap)
+        {
+            return myNumberToStoreMap.get(storeNumber);
+        }
+    }
+
+    /**
+     * Get the number of the store for a data type, creating the store if
+     * necessary.
+     *
+     * @param typeKey the data type key
+     * @return the store number
+     */
+    private int getStoreNumber(String typeKey)
+    {
+        synchronized (myTypeToStoreNumberMap)
+        {
+            Integer storeNumber = myTypeToStoreNumberMap.get(typeKey);
+            if (storeNumber == null)
+            {
+                storeNumber = Integer.valueOf(myNextStoreNumber++);
+                myTypeToStoreNumberMap.put(typeKey, storeNumber);
+                myNumberToStoreMap.put(storeNumber.intValue(),
+                        new SegmentStore(new File(myCacheLocation, storeNumber.toString()), SEGMENT_SIZE_BYTES));
+            }
+            return storeNumber.intValue();
+        }
+    }
+
+    /**
+     * Writes elements to a store.
+     */
+    private class AddElementsWorker implements Priority
+    {
+        /** The element cache ids. */
+        private final TLongList myElementCacheIds;
+
+        /** The elements. */
+        private final List<CacheEntry> myElements;
+
+        /** The store. */
+        private final SegmentStore myStore;
+
+        /** The store number. */
+        private final int myStoreNumber;
+
+        /**
+         * Instantiates a new add elements worker.
+         *
+         * @param store the store
+         * @param storeNumber the store number
+         * @param elementIds the element ids
+         * @param elements the elements
+         */
+        public AddElementsWorker(SegmentStore store, int storeNumber, TLongList elementIds, List<CacheEntry> elements)
+        {
+            myStore = store;
+            myStoreNumber = storeNumber;
+            myElementCacheIds = elementIds;
+            myElements = elements;
+        }
+
+        @Override
+        public int getPriority()
+        {
+            return 2;
+        }
+
+        @Override
+        public void run()
+        {
+            TLongObjectHashMap<CacheReference> idToCRMap = new TLongObjectHashMap<>();
+            RecordEncoder encoder;
+            try
+            {
+                encoder = new RecordEncoder();
+            }
+            catch (IOException e)
+            {
+                LOGGER.error("Failed to create record encoder", e);
+                myDataElementCache.cacheAssistantStoreComplete(idToCRMap);
+                return;
+            }
+            long start = System.nanoTime();
+            TLongIterator idItr = myElementCacheIds.iterator();
+            for (CacheEntry ce : myElements)
+            {
+                long id = idItr.next();
+                LoadedElementData led = ce.getLoadedElementData();
+                if (led == null)
+                {
+                    continue;
+                }
+                try
+                {
+                    myStore.append(id, encoder.encode(led));
+
+                    MappedCacheReference ref = new MappedCacheReference(myStoreNumber);
+                    ref.setOriginIdCached(led.getOriginId() != null);
+                    ref.setMetaDataInfoCached(led.getMetaData() != null);
+                    ref.setMapGeometrySupportCached(led.getMapGeometrySupport() != null);
+                    idToCRMap.put(id, ref);
+                }
+                catch (IOException e)
+                {
+                    LOGGER.error("Failed to write record", e);
+                }
+            }
+
+            if (LOGGER.isTraceEnabled())
+            {
+                LOGGER.trace(StringUtilities.formatTimingMessage("Stored " + idToCRMap.size() + " records in ",
+                        System.nanoTime() - start));
+            }
+            myDataElementCache.cacheAssistantStoreComplete(idToCRMap);
+        }
+    }
+
+    /**
+     * A direct access retriever that reads from the segment stores.
+     */
+    private class MappedDirectAccessRetriever extends DefaultDirectAccessRetriever
+    {
+        /**
+         * Instantiates a new mapped direct access retriever.
+         *
+         * @param dti the dti
+         * @param cacheRefMap the cache ref map
+         * @param dcm the dcm
+         */
+        public MappedDirectAccessRetriever(DataTypeInfo dti, LongFunction<CacheEntry> cacheRefMap,
+                DynamicMetadataManagerImpl dcm)
+        {
+            super(dti, cacheRefMap, dcm);
+        }
+
+        @Override
+        public MapGeometrySupport getMapGeometrySupport(long cacheId)
+        {
+            MapGeometrySupport result = null;
+            CacheEntry ce = getCacheEntry(cacheId);
+            if (ce != null)
+            {
+                result = extractMGSFromEntryIfAvailable(ce);
+                if (result == null && ce.isMapGeometrySupportCached())
+                {
+                    result = (MapGeometrySupport)retrieve(cacheId, ce, DiskCacheFetchType.MAP_GEOMETRY_SUPPORT);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public List<Object> getMetaData(long cacheId)
+        {
+            List<Object> result = null;
+            CacheEntry ce = getCacheEntry(cacheId);
+            if (ce != null)
+            {
+                result = extractMetaDataFromEntryIfAvailable(ce);
+                if (result == null && ce.isMetaDataInfoCached())
+                {
+                    result = (List<Object>)retrieve(cacheId, ce, DiskCacheFetchType.META_DATA);
+                }
+                result = result == null ? null : DynamicEnumDecoder.decode(myDynamicEnumerationRegistry, result);
+                result = new DynamicMetaDataListViewProxy(cacheId, result, getDynamicColumnCoordinator());
+            }
+            return result;
+        }
+
+        @Override
+        public Long getOriginId(long cacheId)
+        {
+            Long result = null;
+            CacheEntry ce = getCacheEntry(cacheId);
+            if (ce != null)
+            {
+                result = extractOriginIdFromEntryIfAvailable(ce);
+                if (result == null && ce.isOriginIdCached())
+                {
+                    result = (Long)retrieve(cacheId, ce, DiskCacheFetchType.ORIGIN_ID);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Read part of an element from its store.
+         *
+         * @param cacheId the cache id
+         * @param ce the cache entry
+         * @param fetchType the part to read
+         * @return the part, or {@code null} if it is not available
+         */
+        private Object retrieve(long cacheId, CacheEntry ce, DiskCacheFetchType fetchType)
+        {
+            if (!(ce.getCacheReference() instanceof MappedCacheReference))
+            {
+                return null;
+            }
+            SegmentStore store = getStore(((MappedCacheReference)ce.getCacheReference()).getStoreNumber());
+            if (store == null)
+            {
+                return null;
+            }
+            try
+            {
+                return store.read(cacheId, record -> decodeRecordPart(record, fetchType));
+            }
+            catch (IOException e)
+            {
+                LOGGER.error("Failed to decode cached element " + cacheId + ": " + e, e);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Removes elements from their stores and compacts the stores if enough
+     * space can be reclaimed.
+     */
+    private class RemoveElementsWorker implements Priority
+    {
+        /** The cache ids to remove. */
+        private final List<Long> myCacheIdsToRemove;
+
+        /** The references for the elements to remove. */
+        private final List<CacheReference> myRefsToRemove;
+
+        /**
+         * Instantiates a new remove elements worker.
+         *
+         * @param cacheIds the cache ids
+         * @param refsToRemove the refs to remove
+         */
+        public RemoveElementsWorker(List<Long> cacheIds, List<CacheReference> refsToRemove)
+        {
+            myCacheIdsToRemove = cacheIds;
+            myRefsToRemove = refsToRemove;
+        }
+
+        @Override
+        public int getPriority()
+        {
+            return 3;
+        }
+
+        @Override
+        public void run()
+        {
+            TIntObjectMap<TLongList> storeToIdsMap = new TIntObjectHashMap<>();
+            Iterator<CacheReference> refItr = myRefsToRemove.iterator();
+            for (Long id : myCacheIdsToRemove)
+            {
+                CacheReference ref = refItr.next();
+                if (ref instanceof MappedCacheReference)
+                {
+                    int storeNumber = ((MappedCacheReference)ref).getStoreNumber();
+                    TLongList ids = storeToIdsMap.get(storeNumber);
+                    if (ids == null)
+                    {
+                        ids = new TLongArrayList();
+                        storeToIdsMap.put(storeNumber, ids);
+                    }
+                    ids.add(id.longValue());
+                }
+            }
+
+            storeToIdsMap.forEachEntry((storeNumber, ids) ->
+            {
+                SegmentStore store = getStore(storeNumber);
+                if (store != null)
+                {
+                    store.remove(ids.toArray());
+                    if (store.isCompactionNeeded())
+                    {
+                        try
+                        {
+                            store.compact();
+                        }
+                        catch (IOException e)
+                        {
+                            LOGGER.error("Failed to compact element cache store: " + e, e);
+                        }
+                    }
+                }
+                return true;
+            });
+
+            myDataElementCache.cacheAssistantRemoveComplete(myCacheIdsToRemove);
+        }
+    }
+
+    /**
+     * Encodes element data into records. One buffer and one object stream are
+     * reused for all of the records; the object stream is reset after each
+     * part, so each part can still be read with a new object input stream.
+     */
+    static final class RecordEncoder
+    {
+        /** The bytes that start a new object stream. */
+        private static final byte[] STREAM_HEADER = ByteBuffer.allocate(2 * Short.BYTES)
+                .putShort(ObjectStreamConstants.STREAM_MAGIC).putShort(ObjectStreamConstants.STREAM_VERSION).array();
+
+        /** The buffer for the record being encoded. */
+        private final RecordBuffer myBuffer = new RecordBuffer();
+
+        /** The object stream that writes to the buffer. */
+        private final ObjectOutputStream myObjectStream;
+
+        /**
+         * Constructor.
+         *
+         * @throws IOException If the object stream cannot be created.
+         */
+        public RecordEncoder() throws IOException
+        {
+            myObjectStream = new ObjectOutputStream(myBuffer);
+            myObjectStream.flush();
+        }
+
+        /**
+         * Encode the data for an element into a record.
+         *
+         * @param led the loaded element data
+         * @return the record
+         * @throws IOException If the data cannot be encoded.
+         */
+        public byte[] encode(LoadedElementData led) throws IOException
+        {
+            myBuffer.reset();
+            myBuffer.write(new byte[RECORD_HEADER_BYTES], 0, RECORD_HEADER_BYTES);
+
+            startObjectPart();
+            DiskEncodeHelper.encodeOriginId(myObjectStream, led.getOriginId());
+            endObjectPart();
+            int originIdLength = myBuffer.size() - RECORD_HEADER_BYTES;
+
+            int metaDataLength = 0;
+            if (led.getMetaData() instanceof DynamicMetaDataList)
+            {
+                DiskCacheEncodeHelper.encodeMetaDataList(myBuffer, led.getMetaData());
+                metaDataLength = myBuffer.size() - RECORD_HEADER_BYTES - originIdLength;
+            }
+            else if (led.getMetaData() != null)
+            {
+                startObjectPart();
+                DiskCacheEncodeHelper.encodeMetaDataList(myObjectStream, led.getMetaData());
+                endObjectPart();
+                metaDataLength = myBuffer.size() - RECORD_HEADER_BYTES - originIdLength;
+            }
+
+            int mgsLength = 0;
+            if (led.getMapGeometrySupport() != null)
+            {
+                startObjectPart();
+                DiskEncodeHelper.encodeMapGeometrySupport(myObjectStream, led.getMapGeometrySupport());
+                endObjectPart();
+                mgsLength = myBuffer.size() - RECORD_HEADER_BYTES - originIdLength - metaDataLength;
+            }
+
+            byte[] record = myBuffer.toByteArray();
+            ByteBuffer.wrap(record).putInt(originIdLength).putInt(metaDataLength).putInt(mgsLength);
+            return record;
+        }
+
+        /**
+         * Finish a part written with the object stream, and reset the stream
+         * so the next part does not refer to objects in this one.
+         *
+         * @throws IOException If the stream cannot be flushed.
+         */
+        private void endObjectPart() throws IOException
+        {
+            myObjectStream.flush();
+            int size = myBuffer.size();
+            myObjectStream.reset();
+            myObjectStream.flush();
+
+            // Drop the reset marker, since the reader starts a new stream.
+            myBuffer.truncate(size);
+        }
+
+        /**
+         * Start a part written with the object stream.
+         */
+        private void startObjectPart()
+        {
+            myBuffer.write(STREAM_HEADER, 0, STREAM_HEADER.length);
+        }
+    }
+
+    /** A byte array output stream that can be truncated. */
+    private static final class RecordBuffer extends ByteArrayOutputStream
+    {
+        /** Constructor. */
+        public RecordBuffer()
+        {
+            super(2000);
+        }
+
+        /**
+         * Discard the bytes after a size.
+         *
+         * @param size The size to keep.
+         */
+        public void truncate(int size)
+        {
+            count = size;
+        }
+    }
+}
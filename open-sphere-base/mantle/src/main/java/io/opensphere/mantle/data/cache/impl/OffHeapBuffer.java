@@ -0,0 +1,223 @@
+package io.opensphere.mantle.data.cache.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * A growable region of direct (off-heap) memory, addressed by a long offset.
+ * The memory is allocated in fixed-size chunks so that growing the buffer
+ * never copies what is already there. Values whose size is a power of two no
+ * larger than eight bytes never straddle a chunk when they are aligned to
+ * their size.
+ * <p>
+ * This class is not thread-safe.
+ */
+class OffHeapBuffer
+{
+    /** The base 2 log of the chunk size. */
+    private static final int CHUNK_SHIFT = 16;
+
+    /** The number of bytes in a chunk. */
+    private static final int CHUNK_BYTES = 1 << CHUNK_SHIFT;
+
+    /** The mask for the offset within a chunk. */
+    private static final long CHUNK_MASK = CHUNK_BYTES - 1;
+
+    /** The number of chunks that have been allocated. */
+    private int myChunkCount;
+
+    /** The chunks, followed by empty slots for more chunks. */
+    private ByteBuffer[] myChunks = new ByteBuffer[0];
+
+    /**
+     * Make sure that the buffer has at least the given number of bytes.
+     *
+     * @param bytes The number of bytes.
+     */
+    public void ensureCapacity(long bytes)
+    {
+        int chunkCount = (int)(bytes + CHUNK_MASK >>> CHUNK_SHIFT);
+        if (chunkCount > myChunks.length)
+        {
+            myChunks = Arrays.copyOf(myChunks, Math.max(chunkCount, myChunks.length + (myChunks.length >> 1)));
+        }
+        while (myChunkCount < chunkCount)
+        {
+            myChunks[myChunkCount++] = ByteBuffer.allocateDirect(CHUNK_BYTES).order(ByteOrder.nativeOrder());
+        }
+    }
+
+    /**
+     * Get a byte.
+     *
+     * @param offset The offset.
+     * @return The byte.
+     */
+    public byte get(long offset)
+    {
+        return chunk(offset).get(position(offset));
+    }
+
+    /**
+     * Get the number of bytes allocated.
+     *
+     * @return The number of bytes.
+     */
+    public long getCapacity()
+    {
+        return (long)myChunkCount << CHUNK_SHIFT;
+    }
+
+    /**
+     * Get a double.
+     *
+     * @param offset The offset, which must be a multiple of eight.
+     * @return The double.
+     */
+    public double getDouble(long offset)
+    {
+        return chunk(offset).getDouble(position(offset));
+    }
+
+    /**
+     * Get a float.
+     *
+     * @param offset The offset, which must be a multiple of four.
+     * @return The float.
+     */
+    public float getFloat(long offset)
+    {
+        return chunk(offset).getFloat(position(offset));
+    }
+
+    /**
+     * Get an int.
+     *
+     * @param offset The offset, which must be a multiple of four.
+     * @return The int.
+     */
+    public int getInt(long offset)
+    {
+        return chunk(offset).getInt(position(offset));
+    }
+
+    /**
+     * Get a long.
+     *
+     * @param offset The offset, which must be a multiple of eight.
+     * @return The long.
+     */
+    public long getLong(long offset)
+    {
+        return chunk(offset).getLong(position(offset));
+    }
+
+    /**
+     * Get a short.
+     *
+     * @param offset The offset, which must be a multiple of two.
+     * @return The short.
+     */
+    public short getShort(long offset)
+    {
+        return chunk(offset).getShort(position(offset));
+    }
+
+    /**
+     * Put a byte.
+     *
+     * @param offset The offset.
+     * @param value The byte.
+     */
+    public void put(long offset, byte value)
+    {
+        chunk(offset).put(position(offset), value);
+    }
+
+    /**
+     * Put a double.
+     *
+     * @param offset The offset, which must be a multiple of eight.
+     * @param value The double.
+     */
+    public void putDouble(long offset, double value)
+    {
+        chunk(offset).putDouble(position(offset), value);
+    }
+
+    /**
+     * Put a float.
+     *
+     * @param offset The offset, which must be a multiple of four.
+     * @param value The float.
+     */
+    public void putFloat(long offset, float value)
+    {
+        chunk(offset).putFloat(position(offset), value);
+    }
+
+    /**
+     * Put an int.
+     *
+     * @param offset The offset, which must be a multiple of four.
+     * @param value The int.
+     */
+    public void putInt(long offset, int value)
+    {
+        chunk(offset).putInt(position(offset), value);
+    }
+
+    /**
+     * Put a long.
+     *
+     * @param offset The offset, which must be a multiple of eight.
+     * @param value The long.
+     */
+    public void putLong(long offset, long value)
+    {
+        chunk(offset).putLong(position(offset), value);
+    }
+
+    /**
+     * Put a short.
+     *
+     * @param offset The offset, which must be a multiple of two.
+     * @param value The short.
+     */
+    public void putShort(long offset, short value)
+    {
+        chunk(offset).putShort(position(offset), value);
+    }
+
+    /**
+     * Release the memory. The buffer is empty afterward.
+     */
+    public void release()
+    {
+        myChunks = new ByteBuffer[0];
+        myChunkCount = 0;
+    }
+
+    /**
+     * Get the chunk that holds an offset.
+     *
+     * @param offset The offset.
+     * @return The chunk.
+     */
+    private ByteBuffer chunk(long offset)
+    {
+        return myChunks[(int)(offset >>> CHUNK_SHIFT)];
+    }
+
+    /**
+     * Get the position within its chunk of an offset.
+     *
+     * @param offset The offset.
+     * @return The position.
+     */
+    private static int position(long offset)
+    {
+        return (int)(offset & CHUNK_MASK);
+    }
+}
@@ -206,7 +206,7 @@ public class RetrieveAndUpdateWorker implements Priority
                     {
                         elementBAIS = decodeIfNecessary(myDiskCacheAssistant.isUsingEncryption(),
                                 retrieveBytesRead + curRef.getMDIOffset(), curRef.getMDISize());
-                        led.setMetaData(DiskCacheDecodeHelper.decodeMetaDataList(new ObjectInputStream(elementBAIS)));
+                        led.setMetaData(DiskCacheDecodeHelper.decodeMetaDataList(elementBAIS));
                     }
 
                     if (myQuery.isRetrieveMapGeometrySupport() && curRef.isMapGeometrySupportCached())
@@ -0,0 +1,722 @@
+package io.opensphere.mantle.data.cache.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.log4j.Logger;
+
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.TLongLongMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TLongLongHashMap;
+import io.opensphere.core.util.collections.New;
+
+/**
+ * An append-only store of byte records in memory-mapped segment files, with an
+ * in-memory index from record id to the location of the record. Reading a
+ * record is an index lookup and a slice of the mapped segment; nothing is
+ * copied by the store. The slice is only valid during the call to
+ * {@link #read(long, RecordReader)}.
+ * <p>
+ * Removing a record only drops it from the index. Once enough of the store is
+ * taken up by removed records, {@link #compact()} copies the live records out
+ * of the emptiest segments. A few of the emptied segments are kept to be
+ * appended to again; the others are unmapped and deleted, so their disk space
+ * is freed right away.
+ */
+class SegmentStore
+{
+    /**
+     * The fraction of the bytes in the store that must belong to removed
+     * records before compaction is worthwhile.
+     */
+    static final double COMPACTION_THRESHOLD = .5;
+
+    /** Logger reference. */
+    private static final Logger LOGGER = Logger.getLogger(SegmentStore.class);
+
+    /** The maximum number of emptied segments kept for reuse. */
+    private static final int MAX_FREE_SEGMENTS = 2;
+
+    /** The value in the index for ids that are not present. */
+    private static final long NO_ADDRESS = -1L;
+
+    /** The number of bytes before each record: the id and the length. */
+    private static final int RECORD_HEADER_BYTES = Long.BYTES + Integer.BYTES;
+
+    /** The segment that records are appended to. */
+    private Segment myAppendSegment;
+
+    /** If the store has been closed. */
+    private boolean myClosed;
+
+    /** The directory for the segment files. */
+    private final File myDirectory;
+
+    /** Emptied segments that can be appended to again. */
+    private final Deque<Segment> myFreeSegments = New.deque();
+
+    /** Map of record ids to addresses (segment number and offset). */
+    private final TLongLongMap myIndex = new TLongLongHashMap(1000, .5f, NO_ADDRESS, NO_ADDRESS);
+
+    /** The number of bytes taken by live records, including headers. */
+    private long myLiveBytes;
+
+    /** Lock that guards the index and the segments. */
+    private final ReadWriteLock myLock = new ReentrantReadWriteLock();
+
+    /** The number for the next segment created. */
+    private int myNextSegmentNumber;
+
+    /** The segments by number. */
+    private final TIntObjectMap<Segment> mySegments = new TIntObjectHashMap<>();
+
+    /** The size of new segments. */
+    private final int mySegmentSizeBytes;
+
+    /** The number of bytes written to the segments, including headers. */
+    private long myTotalBytes;
+
+    /**
+     * Get the segment number from an address.
+     *
+     * @param address The address.
+     * @return The segment number.
+     */
+    private static int getSegmentNumber(long address)
+    {
+        return (int)(address >>> 32);
+    }
+
+    /**
+     * Get the offset in the segment from an address.
+     *
+     * @param address The address.
+     * @return The offset.
+     */
+    private static int getOffset(long address)
+    {
+        return (int)address;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param directory The directory for the segment files, which will be
+     *            created if necessary.
+     * @param segmentSizeBytes The size of each segment file. Records larger
+     *            than this get a segment of their own.
+     */
+    public SegmentStore(File directory, int segmentSizeBytes)
+    {
+        myDirectory = directory;
+        mySegmentSizeBytes = segmentSizeBytes;
+    }
+
+    /**
+     * Add a record, replacing any record with the same id.
+     *
+     * @param id The record id.
+     * @param record The record bytes.
+     * @throws IOException If a segment cannot be created.
+     */
+    public void append(long id, byte[] record) throws IOException
+    {
+        Lock lock = myLock.writeLock();
+        lock.lock();
+        try
+        {
+            if (myClosed)
+            {
+                return;
+            }
+            removeInternal(id);
+            appendInternal(id, ByteBuffer.wrap(record));
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Close the store and delete its segment files.
+     */
+    public void close()
+    {
+        Lock lock = myLock.writeLock();
+        lock.lock();
+        try
+        {
+            myClosed = true;
+            myIndex.clear();
+            for (Segment segment : mySegments.valueCollection())
+            {
+                release(segment);
+            }
+            mySegments.clear();
+            for (Segment segment : myFreeSegments)
+            {
+                release(segment);
+            }
+            myFreeSegments.clear();
+            myAppendSegment = null;
+            myLiveBytes = 0L;
+            myTotalBytes = 0L;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Copy the live records out of the segments that are mostly removed
+     * records, and reuse or delete those segments.
+     *
+     * @return The number of segments emptied.
+     * @throws IOException If a segment cannot be created.
+     */
+    public int compact() throws IOException
+    {
+        Lock lock = myLock.writeLock();
+        lock.lock();
+        try
+        {
+            List<Segment> toCompact = New.list();
+            for (Segment segment : mySegments.valueCollection())
+            {
+                if (segment != myAppendSegment && segment.getLiveBytes() < segment.getWritePosition() * COMPACTION_THRESHOLD)
+                {
+                    toCompact.add(segment);
+                }
+            }
+            for (Segment segment : toCompact)
+            {
+                ByteBuffer buffer = segment.getBuffer();
+                int offset = 0;
+                while (offset < segment.getWritePosition())
+                {
+                    long id = buffer.getLong(offset);
+                    int length = buffer.getInt(offset + Long.BYTES);
+                    if (myIndex.get(id) == getAddress(segment, offset))
+                    {
+                        ByteBuffer source = buffer.duplicate();
+                        source.position(offset + RECORD_HEADER_BYTES);
+                        source.limit(offset + RECORD_HEADER_BYTES + length);
+                        myLiveBytes -= RECORD_HEADER_BYTES + length;
+                        appendInternal(id, source);
+                    }
+                    offset += RECORD_HEADER_BYTES + length;
+                }
+                myTotalBytes -= segment.getWritePosition();
+                mySegments.remove(segment.getNumber());
+                if (segment.getCapacity() == mySegmentSizeBytes && myFreeSegments.size() < MAX_FREE_SEGMENTS)
+                {
+                    myFreeSegments.push(segment);
+                }
+                else
+                {
+                    release(segment);
+                }
+            }
+            if (LOGGER.isDebugEnabled() && !toCompact.isEmpty())
+            {
+                LOGGER.debug("Compacted " + toCompact.size() + " segments in " + myDirectory.getAbsolutePath());
+            }
+            return toCompact.size();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Get the number of bytes used by live records.
+     *
+     * @return The number of bytes.
+     */
+    public long getLiveBytes()
+    {
+        Lock lock = myLock.readLock();
+        lock.lock();
+        try
+        {
+            return myLiveBytes;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of segment files.
+     *
+     * @return The number of segments.
+     */
+    public int getSegmentCount()
+    {
+        Lock lock = myLock.readLock();
+        lock.lock();
+        try
+        {
+            return mySegments.size();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of bytes written to the segments, including removed
+     * records.
+     *
+     * @return The number of bytes.
+     */
+    public long getTotalBytes()
+    {
+        Lock lock = myLock.readLock();
+        lock.lock();
+        try
+        {
+            return myTotalBytes;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Determine if enough of the store is taken by removed records that
+     * {@link #compact()} should be called.
+     *
+     * @return {@code true} if the store should be compacted.
+     */
+    public boolean isCompactionNeeded()
+    {
+        Lock lock = myLock.readLock();
+        lock.lock();
+        try
+        {
+            return mySegments.size() > 1 && myTotalBytes - myLiveBytes >= myTotalBytes * COMPACTION_THRESHOLD;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Read a record. The reader is given a read-only slice of the mapped
+     * segment, which must not be used after the reader returns, since the
+     * segment may then be reused or unmapped.
+     *
+     * @param <R> The type of the result.
+     * @param id The record id.
+     * @param reader The reader for the record.
+     * @return The result of the reader, or {@code null} if there is no record
+     *         for the id.
+     * @throws IOException If the reader fails.
+     */
+    public <R> R read(long id, RecordReader<R> reader) throws IOException
+    {
+        Lock lock = myLock.readLock();
+        lock.lock();
+        try
+        {
+            long address = myIndex.get(id);
+            if (address == NO_ADDRESS)
+            {
+                return null;
+            }
+            Segment segment = mySegments.get(getSegmentNumber(address));
+            int offset = getOffset(address);
+            ByteBuffer buffer = segment.getBuffer().duplicate();
+            int length = buffer.getInt(offset + Long.BYTES);
+            buffer.position(offset + RECORD_HEADER_BYTES);
+            buffer.limit(offset + RECORD_HEADER_BYTES + length);
+            return reader.read(buffer.slice().asReadOnlyBuffer());
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove records.
+     *
+     * @param ids The record ids.
+     * @return The number of records removed.
+     */
+    public int remove(long... ids)
+    {
+        Lock lock = myLock.writeLock();
+        lock.lock();
+        try
+        {
+            int count = 0;
+            for (long id : ids)
+            {
+                if (removeInternal(id))
+                {
+                    ++count;
+                }
+            }
+            return count;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write a record to the append segment. The caller must hold the write
+     * lock.
+     *
+     * @param id The record id.
+     * @param record The record bytes.
+     * @throws IOException If a segment cannot be created.
+     */
+    private void appendInternal(long id, ByteBuffer record) throws IOException
+    {
+        int length = record.remaining();
+        Segment segment = getAppendSegment(length);
+        int offset = segment.getWritePosition();
+        ByteBuffer target = segment.getBuffer().duplicate();
+        target.position(offset);
+        target.putLong(id).putInt(length).put(record);
+        recordAppended(id, segment, offset, length);
+    }
+
+
+    /**
+     * Get the address for an offset in a segment.
+     *
+     * @param segment The segment.
+     * @param offset The offset.
+     * @return The address.
+     */
+    private long getAddress(Segment segment, int offset)
+    {
+        return (long)segment.getNumber() << 32 | offset & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Get a segment with room for a record, creating a new segment if the
+     * current one is full. The caller must hold the write lock.
+     *
+     * @param length The length of the record.
+     * @return The segment.
+     * @throws IOException If a segment cannot be created.
+     */
+    private Segment getAppendSegment(int length) throws IOException
+    {
+        int required = RECORD_HEADER_BYTES + length;
+        if (myAppendSegment == null || myAppendSegment.getCapacity() - myAppendSegment.getWritePosition() < required)
+        {
+            if (!myDirectory.isDirectory() && !myDirectory.mkdirs())
+            {
+                throw new IOException("Failed to create segment directory: " + myDirectory.getAbsolutePath());
+            }
+            int number = myNextSegmentNumber++;
+            int capacity = Math.max(mySegmentSizeBytes, required);
+            Segment segment;
+            if (capacity == mySegmentSizeBytes && !myFreeSegments.isEmpty())
+            {
+                // The segment gets a new number so no old address refers to it.
+                Segment free = myFreeSegments.pop();
+                segment = new Segment(number, free.getFile(), free.getBuffer());
+            }
+            else
+            {
+                File file = new File(myDirectory, "segment_" + number + ".seg");
+                MappedByteBuffer buffer;
+                try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+                {
+                    buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+                }
+                segment = new Segment(number, file, buffer);
+            }
+            mySegments.put(number, segment);
+
+            // A record that needs a segment to itself does not replace the
+            // segment being appended to unless that segment is nearly full.
+            if (myAppendSegment != null && capacity > mySegmentSizeBytes
+                    && myAppendSegment.getCapacity() - myAppendSegment.getWritePosition() > mySegmentSizeBytes / 2)
+            {
+                return segment;
+            }
+            myAppendSegment = segment;
+        }
+        return myAppendSegment;
+    }
+
+    /**
+     * Update the index and the counts after a record is written. The caller
+     * must hold the write lock.
+     *
+     * @param id The record id.
+     * @param segment The segment.
+     * @param offset The offset of the record header.
+     * @param length The length of the record.
+     */
+    private void recordAppended(long id, Segment segment, int offset, int length)
+    {
+        int size = RECORD_HEADER_BYTES + length;
+        segment.setWritePosition(offset + size);
+        segment.addLiveBytes(size);
+        myIndex.put(id, getAddress(segment, offset));
+        myLiveBytes += size;
+        myTotalBytes += size;
+    }
+
+    /**
+     * Unmap a segment and delete its file. The caller must hold the write
+     * lock. If the segment cannot be unmapped, the file is deleted when the VM
+     * exits.
+     *
+     * @param segment The segment.
+     */
+    private void release(Segment segment)
+    {
+        if (!(Unmapper.unmap(segment.getBuffer()) && segment.getFile().delete()))
+        {
+            segment.getFile().deleteOnExit();
+        }
+    }
+
+    /**
+     * Remove a record from the index. The caller must hold the write lock.
+     *
+     * @param id The record id.
+     * @return {@code true} if the record was present.
+     */
+    private boolean removeInternal(long id)
+    {
+        long address = myIndex.remove(id);
+        if (address == NO_ADDRESS)
+        {
+            return false;
+        }
+        Segment segment = mySegments.get(getSegmentNumber(address));
+        int size = RECORD_HEADER_BYTES + segment.getBuffer().getInt(getOffset(address) + Long.BYTES);
+        segment.addLiveBytes(-size);
+        myLiveBytes -= size;
+        return true;
+    }
+
+    /**
+     * Reads a record.
+     *
+     * @param <R> The type of the result.
+     */
+    @FunctionalInterface
+    public interface RecordReader<R>
+    {
+        /**
+         * Read a record.
+         *
+         * @param record The record, which is only valid during the call.
+         * @return The result.
+         * @throws IOException If the record cannot be read.
+         */
+        R read(ByteBuffer record) throws IOException;
+    }
+
+    /**
+     * Releases the memory mapping of a buffer before it would be garbage
+     * collected, which on some platforms is required before the file can be
+     * deleted.
+     */
+    private static final class Unmapper
+    {
+        /** The Unsafe instance, or {@code null} if it is not available. */
+        private static final Object UNSAFE;
+
+        /** The method that runs the cleaner of a direct buffer. */
+        private static final Method INVOKE_CLEANER;
+
+        static
+        {
+            Object unsafe = null;
+            Method invokeCleaner = null;
+            try
+            {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field field = unsafeClass.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                unsafe = field.get(null);
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            }
+            catch (ReflectiveOperationException | RuntimeException e)
+            {
+                LOGGER.warn("Mapped segments cannot be unmapped and will be deleted on exit: " + e);
+                unsafe = null;
+                invokeCleaner = null;
+            }
+            UNSAFE = unsafe;
+            INVOKE_CLEANER = invokeCleaner;
+        }
+
+        /**
+         * Unmap a buffer. The buffer must not be used afterwards.
+         *
+         * @param buffer The buffer.
+         * @return {@code true} if the buffer was unmapped.
+         */
+        public static boolean unmap(MappedByteBuffer buffer)
+        {
+            if (INVOKE_CLEANER == null)
+            {
+                return false;
+            }
+            try
+            {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+                return true;
+            }
+            catch (ReflectiveOperationException | RuntimeException e)
+            {
+                LOGGER.warn("Failed to unmap segment: " + e, e);
+                return false;
+            }
+        }
+
+        /** Disallow instantiation. */
+        private Unmapper()
+        {
+        }
+    }
+
+    /** A mapped segment file. */
+    private static final class Segment
+    {
+        /** The mapped file contents. */
+        private final MappedByteBuffer myBuffer;
+
+        /** The segment file. */
+        private final File myFile;
+
+        /** The number of bytes taken by live records. */
+        private long myLiveBytes;
+
+        /** The segment number. */
+        private final int myNumber;
+
+        /** The offset where the next record will be written. */
+        private int myWritePosition;
+
+        /**
+         * Constructor.
+         *
+         * @param number The segment number.
+         * @param file The segment file.
+         * @param buffer The mapped file contents.
+         */
+        public Segment(int number, File file, MappedByteBuffer buffer)
+        {
+            myNumber = number;
+            myFile = file;
+            myBuffer = buffer;
+        }
+
+        /**
+         * Add to the number of live bytes.
+         *
+         * @param bytes The number of bytes, which may be negative.
+         */
+        public void addLiveBytes(long bytes)
+        {
+            myLiveBytes += bytes;
+        }
+
+        /**
+         * Get the mapped file contents. Callers must not change the position
+         * or limit of the returned buffer.
+         *
+         * @return The buffer.
+         */
+        public MappedByteBuffer getBuffer()
+        {
+            return myBuffer;
+        }
+
+        /**
+         * Get the size of the segment.
+         *
+         * @return The number of bytes.
+         */
+        public int getCapacity()
+        {
+            return myBuffer.capacity();
+        }
+
+        /**
+         * Get the segment file.
+         *
+         * @return The file.
+         */
+        public File getFile()
+        {
+            return myFile;
+        }
+
+        /**
+         * Get the number of bytes taken by live records.
+         *
+         * @return The number of bytes.
+         */
+        public long getLiveBytes()
+        {
+            return myLiveBytes;
+        }
+
+        /**
+         * Get the segment number.
+         *
+         * @return The number.
+         */
+        public int getNumber()
+        {
+            return myNumber;
+        }
+
+        /**
+         * Get the offset where the next record will be written.
+         *
+         * @return The offset.
+         */
+        public int getWritePosition()
+        {
+            return myWritePosition;
+        }
+
+        /**
+         * Set the offset where the next record will be written.
+         *
+         * @param position The offset.
+         */
+        public void setWritePosition(int position)
+        {
+            myWritePosition = position;
+        }
+    }
+}
@@ -0,0 +1,859 @@
+package io.opensphere.mantle.data.cache.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import io.opensphere.core.util.collections.New;
+import io.opensphere.mantle.util.dynenum.DynamicEnumerationKey;
+import io.opensphere.mantle.util.dynenum.impl.DynamicEnumerationKeyFactory;
+
+/**
+ * One column of values in a {@link ColumnStore}, indexed by row. Values of
+ * the supported primitive wrapper types are kept in off-heap memory without
+ * boxing, strings are dictionary-encoded or kept as UTF-8 bytes, dynamic
+ * enumeration keys are kept as their value ids, and any other values fall
+ * back to an on-heap array.
+ * <p>
+ * This class is not thread-safe; the store guards its columns.
+ */
+abstract class StoreColumn
+{
+    /**
+     * The maximum number of distinct strings in a dictionary-encoded column.
+     * Past this the column is converted to a {@link TextColumn}.
+     */
+    static final int MAX_DICTIONARY_SIZE = 1 << 16;
+
+    /**
+     * The number of strings a dictionary-encoded column takes before it
+     * decides whether its values repeat enough to keep the dictionary.
+     */
+    static final int CARDINALITY_SAMPLE_SIZE = 1024;
+
+    /** Bit flags for the rows that have values. */
+    private final OffHeapBuffer myPresent = new OffHeapBuffer();
+
+    /**
+     * Create a column for values of a type.
+     *
+     * @param type The type.
+     * @return The column, or {@code null} if the type does not determine the
+     *         column.
+     */
+    public static StoreColumn create(Class<?> type)
+    {
+        if (type == String.class)
+        {
+            return new DictionaryColumn();
+        }
+        if (type == DynamicEnumerationKey.class)
+        {
+            return new EnumerationColumn();
+        }
+        for (Kind kind : Kind.values())
+        {
+            if (kind.getType() == type)
+            {
+                return new PrimitiveColumn(kind);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Determine if this column can hold a value.
+     *
+     * @param value The value, which is not {@code null}.
+     * @return If the value can be held.
+     */
+    public abstract boolean accepts(Object value);
+
+    /**
+     * Clear the value in a row.
+     *
+     * @param row The row.
+     */
+    public final void clear(int row)
+    {
+        if (isPresent(row))
+        {
+            setPresent(row, false);
+            release(row);
+        }
+    }
+
+    /**
+     * Get the value in a row.
+     *
+     * @param row The row.
+     * @return The value, or {@code null} if the row has no value.
+     */
+    public final Object get(int row)
+    {
+        return isPresent(row) ? read(row) : null;
+    }
+
+    /**
+     * Get the number of off-heap bytes used by the column.
+     *
+     * @return The number of bytes.
+     */
+    public long getOffHeapBytes()
+    {
+        return myPresent.getCapacity();
+    }
+
+    /**
+     * Determine if a row has a value.
+     *
+     * @param row The row.
+     * @return If the row has a value.
+     */
+    public final boolean isPresent(int row)
+    {
+        long offset = row >>> 3;
+        return offset < myPresent.getCapacity() && (myPresent.get(offset) & 1 << (row & 7)) != 0;
+    }
+
+    /**
+     * Release the memory used by the column.
+     */
+    public void release()
+    {
+        myPresent.release();
+    }
+
+    /**
+     * Set the value in a row.
+     *
+     * @param row The row.
+     * @param value The value, which must be {@code null} or accepted by the
+     *            column.
+     */
+    public final void set(int row, Object value)
+    {
+        clear(row);
+        if (value != null)
+        {
+            write(row, value);
+            setPresent(row, true);
+        }
+    }
+
+    /**
+     * Read the value in a row that has a value.
+     *
+     * @param row The row.
+     * @return The value.
+     */
+    protected abstract Object read(int row);
+
+    /**
+     * Release anything held for the value in a row that is being cleared.
+     *
+     * @param row The row.
+     */
+    protected void release(int row)
+    {
+    }
+
+    /**
+     * Write a value to a row.
+     *
+     * @param row The row.
+     * @param value The value.
+     */
+    protected abstract void write(int row, Object value);
+
+    /**
+     * Set whether a row has a value.
+     *
+     * @param row The row.
+     * @param present If the row has a value.
+     */
+    private void setPresent(int row, boolean present)
+    {
+        long offset = row >>> 3;
+        myPresent.ensureCapacity(offset + 1);
+        int bits = myPresent.get(offset);
+        bits = present ? bits | 1 << (row & 7) : bits & ~(1 << (row & 7));
+        myPresent.put(offset, (byte)bits);
+    }
+
+    /** The fixed-width types that are stored without boxing. */
+    enum Kind
+    {
+        /** Doubles. */
+        DOUBLE(Double.class, Double.BYTES)
+        {
+            @Override
+            public Object read(OffHeapBuffer buffer, long offset)
+            {
+                return Double.valueOf(buffer.getDouble(offset));
+            }
+
+            @Override
+            public void write(OffHeapBuffer buffer, long offset, Object value)
+            {
+                buffer.putDouble(offset, ((Double)value).doubleValue());
+            }
+        },
+
+        /** Floats. */
+        FLOAT(Float.class, Float.BYTES)
+        {
+            @Override
+            public Object read(OffHeapBuffer buffer, long offset)
+            {
+                return Float.valueOf(buffer.getFloat(offset));
+            }
+
+            @Override
+            public void write(OffHeapBuffer buffer, long offset, Object value)
+            {
+                buffer.putFloat(offset, ((Float)value).floatValue());
+            }
+        },
+
+        /** Longs. */
+        LONG(Long.class, Long.BYTES)
+        {
+            @Override
+            public Object read(OffHeapBuffer buffer, long offset)
+            {
+                return Long.valueOf(buffer.getLong(offset));
+            }
+
+            @Override
+            public void write(OffHeapBuffer buffer, long offset, Object value)
+            {
+                buffer.putLong(offset, ((Long)value).longValue());
+            }
+        },
+
+        /** Integers. */
+        INTEGER(Integer.class, Integer.BYTES)
+        {
+            @Override
+            public Object read(OffHeapBuffer buffer, long offset)
+            {
+                return Integer.valueOf(buffer.getInt(offset));
+            }
+
+            @Override
+            public void write(OffHeapBuffer buffer, long offset, Object value)
+            {
+                buffer.putInt(offset, ((Integer)value).intValue());
+            }
+        },
+
+        /** Shorts. */
+        SHORT(Short.class, Short.BYTES)
+        {
+            @Override
+            public Object read(OffHeapBuffer buffer, long offset)
+            {
+                return Short.valueOf(buffer.getShort(offset));
+            }
+
+            @Override
+            public void write(OffHeapBuffer buffer, long offset, Object value)
+            {
+                buffer.putShort(offset, ((Short)value).shortValue());
+            }
+        },
+
+        /** Bytes. */
+        BYTE(Byte.class, Byte.BYTES)
+        {
+            @Override
+            public Object read(OffHeapBuffer buffer, long offset)
+            {
+                return Byte.valueOf(buffer.get(offset));
+            }
+
+            @Override
+            public void write(OffHeapBuffer buffer, long offset, Object value)
+            {
+                buffer.put(offset, ((Byte)value).byteValue());
+            }
+        },
+
+        /** Booleans. */
+        BOOLEAN(Boolean.class, Byte.BYTES)
+        {
+            @Override
+            public Object read(OffHeapBuffer buffer, long offset)
+            {
+                return Boolean.valueOf(buffer.get(offset) != 0);
+            }
+
+            @Override
+            public void write(OffHeapBuffer buffer, long offset, Object value)
+            {
+                buffer.put(offset, (byte)(((Boolean)value).booleanValue() ? 1 : 0));
+            }
+        },
+
+        /** Dates, stored as epoch milliseconds. */
+        DATE(Date.class, Long.BYTES)
+        {
+            @Override
+            public Object read(OffHeapBuffer buffer, long offset)
+            {
+                return new Date(buffer.getLong(offset));
+            }
+
+            @Override
+            public void write(OffHeapBuffer buffer, long offset, Object value)
+            {
+                buffer.putLong(offset, ((Date)value).getTime());
+            }
+        };
+
+        /** The size of a value in bytes. */
+        private final int myBytes;
+
+        /** The type of the values. */
+        private final Class<?> myType;
+
+        /**
+         * Constructor.
+         *
+         * @param type The type of the values.
+         * @param bytes The size of a value in bytes.
+         */
+        Kind(Class<?> type, int bytes)
+        {
+            myType = type;
+            myBytes = bytes;
+        }
+
+        /**
+         * Get the size of a value in bytes.
+         *
+         * @return The number of bytes.
+         */
+        public int getBytes()
+        {
+            return myBytes;
+        }
+
+        /**
+         * Get the type of the values.
+         *
+         * @return The type.
+         */
+        public Class<?> getType()
+        {
+            return myType;
+        }
+
+        /**
+         * Read a value.
+         *
+         * @param buffer The buffer.
+         * @param offset The offset of the value.
+         * @return The value.
+         */
+        public abstract Object read(OffHeapBuffer buffer, long offset);
+
+        /**
+         * Write a value.
+         *
+         * @param buffer The buffer.
+         * @param offset The offset of the value.
+         * @param value The value.
+         */
+        public abstract void write(OffHeapBuffer buffer, long offset, Object value);
+    }
+
+    /** A column of variable-length byte values in off-heap memory. */
+    static class BytesColumn extends StoreColumn
+    {
+        /**
+         * The size of the chunks that hold the values. Larger values get a
+         * chunk of their own.
+         */
+        private static final int HEAP_CHUNK_BYTES = 1 << 20;
+
+        /** The address (chunk and position) of the value in each row. */
+        private final OffHeapBuffer myAddresses = new OffHeapBuffer();
+
+        /** The chunks that hold the values. */
+        private final List<ByteBuffer> myChunks = New.list();
+
+        /** The number of bytes held by values that have been cleared. */
+        private long myDeadBytes;
+
+        /** The length of the value in each row. */
+        private final OffHeapBuffer myLengths = new OffHeapBuffer();
+
+        @Override
+        public boolean accepts(Object value)
+        {
+            return value instanceof byte[];
+        }
+
+        /**
+         * Copy the live values into new chunks if more than half of the bytes
+         * belong to values that have been cleared. Buffers returned by
+         * {@link #getBytes(int)} remain valid.
+         *
+         * @param rowCount The number of rows in the store.
+         */
+        public void compactIfNeeded(int rowCount)
+        {
+            long totalBytes = getHeapBytes();
+            if (myDeadBytes < HEAP_CHUNK_BYTES || myDeadBytes * 2 < totalBytes)
+            {
+                return;
+            }
+
+            List<ByteBuffer> oldChunks = New.list(myChunks);
+            myChunks.clear();
+            myDeadBytes = 0;
+            for (int row = 0; row < rowCount; ++row)
+            {
+                if (isPresent(row))
+                {
+                    long address = myAddresses.getLong((long)row * Long.BYTES);
+                    ByteBuffer value = oldChunks.get((int)(address >>> 32)).duplicate();
+                    value.position((int)address);
+                    value.limit((int)address + myLengths.getInt((long)row * Integer.BYTES));
+                    writeBytes(row, value);
+                }
+            }
+        }
+
+        /**
+         * Get the bytes in a row as a read-only buffer.
+         *
+         * @param row The row.
+         * @return The bytes, or {@code null} if the row has no value.
+         */
+        public ByteBuffer getBytes(int row)
+        {
+            if (!isPresent(row))
+            {
+                return null;
+            }
+            long address = myAddresses.getLong((long)row * Long.BYTES);
+            ByteBuffer value = myChunks.get((int)(address >>> 32)).asReadOnlyBuffer();
+            value.position((int)address);
+            value.limit((int)address + myLengths.getInt((long)row * Integer.BYTES));
+            return value.slice();
+        }
+
+        @Override
+        public long getOffHeapBytes()
+        {
+            return super.getOffHeapBytes() + myAddresses.getCapacity() + myLengths.getCapacity() + getHeapBytes();
+        }
+
+        @Override
+        public void release()
+        {
+            super.release();
+            myAddresses.release();
+            myLengths.release();
+            myChunks.clear();
+            myDeadBytes = 0;
+        }
+
+        @Override
+        protected Object read(int row)
+        {
+            ByteBuffer buffer = getBytes(row);
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return bytes;
+        }
+
+        @Override
+        protected void release(int row)
+        {
+            myDeadBytes += myLengths.getInt((long)row * Integer.BYTES);
+        }
+
+        @Override
+        protected void write(int row, Object value)
+        {
+            writeBytes(row, ByteBuffer.wrap((byte[])value));
+        }
+
+        /**
+         * Write the remaining bytes in a buffer to a row.
+         *
+         * @param row The row.
+         * @param value The bytes.
+         */
+        protected final void writeBytes(int row, ByteBuffer value)
+        {
+            int length = value.remaining();
+            ByteBuffer chunk = myChunks.isEmpty() ? null : myChunks.get(myChunks.size() - 1);
+            if (chunk == null || chunk.remaining() < length)
+            {
+                chunk = ByteBuffer.allocateDirect(Math.max(HEAP_CHUNK_BYTES, length));
+                myChunks.add(chunk);
+            }
+            long address = (long)(myChunks.size() - 1) << 32 | chunk.position();
+            chunk.put(value);
+
+            myAddresses.ensureCapacity((row + 1L) * Long.BYTES);
+            myAddresses.putLong((long)row * Long.BYTES, address);
+            myLengths.ensureCapacity((row + 1L) * Integer.BYTES);
+            myLengths.putInt((long)row * Integer.BYTES, length);
+        }
+
+        /**
+         * Get the number of bytes in the chunks that hold the values.
+         *
+         * @return The number of bytes.
+         */
+        private long getHeapBytes()
+        {
+            long bytes = 0;
+            for (ByteBuffer chunk : myChunks)
+            {
+                bytes += chunk.capacity();
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * A column of strings stored as codes into a dictionary of the distinct
+     * values. The dictionary only grows; it is meant for columns with few
+     * distinct values.
+     * <p>
+     * The column detects its cardinality as it is written: once it has taken
+     * {@link #CARDINALITY_SAMPLE_SIZE} strings, it stops accepting new
+     * distinct values if more than half of the strings it has taken were
+     * distinct, so that columns of mostly unique values, such as identifiers,
+     * are converted to a {@link TextColumn} instead of growing a dictionary.
+     */
+    static class DictionaryColumn extends StoreColumn
+    {
+        /** The code for each row. */
+        private final OffHeapBuffer myCodes = new OffHeapBuffer();
+
+        /** The codes for the distinct values. */
+        private final Map<String, Integer> myCodeMap = New.map();
+
+        /** The distinct values, by code. */
+        private final List<String> myValues = New.list();
+
+        /** The number of strings written. */
+        private int myWriteCount;
+
+        @Override
+        public boolean accepts(Object value)
+        {
+            return value instanceof String && (myCodeMap.containsKey(value)
+                    || myValues.size() < MAX_DICTIONARY_SIZE && !isHighCardinality());
+        }
+
+        /**
+         * Get the code for a row that has a value.
+         *
+         * @param row The row.
+         * @return The code.
+         */
+        public int getCode(int row)
+        {
+            return myCodes.getInt((long)row * Integer.BYTES);
+        }
+
+        /**
+         * Get a copy of the distinct values, by code.
+         *
+         * @return The values.
+         */
+        public List<String> getDictionary()
+        {
+            return New.list(myValues);
+        }
+
+        /**
+         * Get the number of distinct values.
+         *
+         * @return The number of values.
+         */
+        public int getDictionarySize()
+        {
+            return myValues.size();
+        }
+
+        /**
+         * Determine if enough strings have been written to tell that the
+         * values are mostly distinct.
+         *
+         * @return If the column has high cardinality.
+         */
+        public boolean isHighCardinality()
+        {
+            return myWriteCount >= CARDINALITY_SAMPLE_SIZE && myValues.size() > myWriteCount / 2;
+        }
+
+        @Override
+        public long getOffHeapBytes()
+        {
+            return super.getOffHeapBytes() + myCodes.getCapacity();
+        }
+
+        @Override
+        public void release()
+        {
+            super.release();
+            myCodes.release();
+            myCodeMap.clear();
+            myValues.clear();
+            myWriteCount = 0;
+        }
+
+        @Override
+        protected Object read(int row)
+        {
+            return myValues.get(getCode(row));
+        }
+
+        @Override
+        protected void write(int row, Object value)
+        {
+            ++myWriteCount;
+            String string = (String)value;
+            Integer code = myCodeMap.get(string);
+            if (code == null)
+            {
+                code = Integer.valueOf(myValues.size());
+                myCodeMap.put(string, code);
+                myValues.add(string);
+            }
+            myCodes.ensureCapacity((row + 1L) * Integer.BYTES);
+            myCodes.putInt((long)row * Integer.BYTES, code.intValue());
+        }
+    }
+
+    /**
+     * A column of dynamic enumeration keys that all belong to one enumeration,
+     * stored as their value ids. The registry that issued the keys is the
+     * dictionary, so the codes are shared with every other store.
+     */
+    @SuppressWarnings("PMD.AvoidUsingShortType")
+    static class EnumerationColumn extends StoreColumn
+    {
+        /** The meta data key id of the enumeration. */
+        private short myMetaDataKeyId;
+
+        /** The type id of the enumeration. */
+        private short myTypeId;
+
+        /** Whether the enumeration ids have been set by the first value. */
+        private boolean myTyped;
+
+        /** The value id for each row. */
+        private final OffHeapBuffer myValueIds = new OffHeapBuffer();
+
+        @Override
+        public boolean accepts(Object value)
+        {
+            if (!(value instanceof DynamicEnumerationKey))
+            {
+                return false;
+            }
+            DynamicEnumerationKey key = (DynamicEnumerationKey)value;
+            return !myTyped || key.getTypeId() == myTypeId && key.getMetaDataKeyId() == myMetaDataKeyId;
+        }
+
+        /**
+         * Get the code for a row that has a value, which is its value id as
+         * an unsigned number.
+         *
+         * @param row The row.
+         * @return The code.
+         */
+        public int getCode(int row)
+        {
+            return Short.toUnsignedInt(myValueIds.getShort((long)row * Short.BYTES));
+        }
+
+        /**
+         * Get the meta data key id of the enumeration.
+         *
+         * @return The meta data key id.
+         */
+        public short getMetaDataKeyId()
+        {
+            return myMetaDataKeyId;
+        }
+
+        @Override
+        public long getOffHeapBytes()
+        {
+            return super.getOffHeapBytes() + myValueIds.getCapacity();
+        }
+
+        /**
+         * Get the type id of the enumeration.
+         *
+         * @return The type id.
+         */
+        public short getTypeId()
+        {
+            return myTypeId;
+        }
+
+        @Override
+        public void release()
+        {
+            super.release();
+            myValueIds.release();
+            myTyped = false;
+        }
+
+        @Override
+        protected Object read(int row)
+        {
+            return DynamicEnumerationKeyFactory.createKey(myTypeId, myMetaDataKeyId,
+                    myValueIds.getShort((long)row * Short.BYTES));
+        }
+
+        @Override
+        protected void write(int row, Object value)
+        {
+            DynamicEnumerationKey key = (DynamicEnumerationKey)value;
+            if (!myTyped)
+            {
+                myTypeId = key.getTypeId();
+                myMetaDataKeyId = key.getMetaDataKeyId();
+                myTyped = true;
+            }
+            myValueIds.ensureCapacity((row + 1L) * Short.BYTES);
+            myValueIds.putShort((long)row * Short.BYTES, key.getValueId());
+        }
+    }
+
+    /**
+     * A column of arbitrary values, kept on the heap. This is the fallback for
+     * values that have no off-heap form.
+     */
+    static class ObjectColumn extends StoreColumn
+    {
+        /** The values. */
+        private Object[] myValues = new Object[16];
+
+        @Override
+        public boolean accepts(Object value)
+        {
+            return true;
+        }
+
+        @Override
+        public void release()
+        {
+            super.release();
+            myValues = new Object[16];
+        }
+
+        @Override
+        protected Object read(int row)
+        {
+            return myValues[row];
+        }
+
+        @Override
+        protected void release(int row)
+        {
+            myValues[row] = null;
+        }
+
+        @Override
+        protected void write(int row, Object value)
+        {
+            if (row >= myValues.length)
+            {
+                myValues = Arrays.copyOf(myValues, Math.max(row + 1, myValues.length + (myValues.length >> 1)));
+            }
+            myValues[row] = value;
+        }
+    }
+
+    /** A column of fixed-width values in off-heap memory. */
+    static class PrimitiveColumn extends StoreColumn
+    {
+        /** The kind of values. */
+        private final Kind myKind;
+
+        /** The values. */
+        private final OffHeapBuffer myValues = new OffHeapBuffer();
+
+        /**
+         * Constructor.
+         *
+         * @param kind The kind of values.
+         */
+        public PrimitiveColumn(Kind kind)
+        {
+            myKind = kind;
+        }
+
+        @Override
+        public boolean accepts(Object value)
+        {
+            return value.getClass() == myKind.getType();
+        }
+
+        @Override
+        public long getOffHeapBytes()
+        {
+            return super.getOffHeapBytes() + myValues.getCapacity();
+        }
+
+        @Override
+        public void release()
+        {
+            super.release();
+            myValues.release();
+        }
+
+        @Override
+        protected Object read(int row)
+        {
+            return myKind.read(myValues, (long)row * myKind.getBytes());
+        }
+
+        @Override
+        protected void write(int row, Object value)
+        {
+            myValues.ensureCapacity((row + 1L) * myKind.getBytes());
+            myKind.write(myValues, (long)row * myKind.getBytes(), value);
+        }
+    }
+
+    /** A column of strings stored as UTF-8 bytes in off-heap memory. */
+    static class TextColumn extends BytesColumn
+    {
+        @Override
+        public boolean accepts(Object value)
+        {
+            return value instanceof String;
+        }
+
+        @Override
+        protected Object read(int row)
+        {
+            return StandardCharsets.UTF_8.decode(getBytes(row)).toString();
+        }
+
+        @Override
+        protected void write(int row, Object value)
+        {
+            writeBytes(row, StandardCharsets.UTF_8.encode((String)value));
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package io.opensphere.mantle.data.element;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
@@ -85,6 +87,14 @@ public interface DynamicMetaDataList extends List<Object>, MetaDataProvider, Ser
      */
     DynamicMetaDataList newInstance();
 
+    /**
+     * Reads the values written by {@link #write(DataOutput)}.
+     *
+     * @param in the input
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    void read(DataInput in) throws IOException;
+
     /**
      * Sets all the values in this DynamicMetaDataList that have keys in the
      * provided provider.
@@ -92,4 +102,14 @@ public interface DynamicMetaDataList extends List<Object>, MetaDataProvider, Ser
      * @param provider the provider of the values
      */
     void setEqualTo(MetaDataProvider provider);
+
+    /**
+     * Writes the values as typed primitives, one per column, without the
+     * object stream header or class descriptors written by
+     * {@link #encode(ObjectOutputStream)}.
+     *
+     * @param out the output
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    void write(DataOutput out) throws IOException;
 }
@@ -18,6 +18,9 @@ public abstract class AbstractEvaluator implements Evaluator
     /** The value to compare against the data. */
     private final Object myValue;
 
+    /** The value as a date, parsed once since it is used for every element. */
+    private final Date myValueAsDate;
+
     /** The value as double. */
     private Double myValueAsDouble;
 
@@ -43,6 +46,17 @@ public abstract class AbstractEvaluator implements Evaluator
         {
             myValueAsDouble = null;
         }
+
+        Date date;
+        try
+        {
+            date = DateTimeUtilities.parseISO8601Date(myValueAsString);
+        }
+        catch (ParseException e)
+        {
+            date = null;
+        }
+        myValueAsDate = date;
     }
 
     /**
@@ -52,14 +66,7 @@ public abstract class AbstractEvaluator implements Evaluator
      */
     public Date getAsDate()
     {
-        try
-        {
-            return DateTimeUtilities.parseISO8601Date(getValueAsString());
-        }
-        catch (ParseException e)
-        {
-            return null;
-        }
+        return myValueAsDate;
     }
 
     /**
@@ -0,0 +1,398 @@
+package io.opensphere.mantle.data.element.mdfilter.impl;
+
+import java.util.Arrays;
+import java.util.List;
+
+import io.opensphere.core.datafilter.DataFilterCriteria;
+import io.opensphere.core.datafilter.DataFilterOperators.Conditional;
+import io.opensphere.mantle.data.MetaDataInfo;
+import io.opensphere.mantle.data.element.DataElement;
+import io.opensphere.mantle.data.element.DynamicMetaDataList;
+import io.opensphere.mantle.data.element.MetaDataProvider;
+import io.opensphere.mantle.data.element.impl.MDILinkedMetaDataProvider;
+import io.opensphere.mantle.data.impl.specialkey.TimeKey;
+import io.opensphere.mantle.util.dynenum.DynamicEnumerationKey;
+import io.opensphere.mantle.util.dynenum.DynamicEnumerationRegistry;
+
+/**
+ * A compiled {@link DataFilterCriteria}. The comparison itself is done by a
+ * {@link DataFilterCriteriaEvaluator}, so the results are the same, but the
+ * column index of the field is resolved once and then reused for every
+ * element whose meta data is stored in column order, instead of searching the
+ * keys of each element twice. Values that are dynamic enumeration keys are
+ * only decoded the first time each code is seen; after that the result is
+ * looked up by the code. The results are kept separately for each
+ * enumeration, so keys from different enumerations do not displace each
+ * other.
+ */
+final class CompiledCriteriaFilter implements CompiledDataFilter
+{
+    /** The results when no enumerated values have been seen. */
+    private static final EnumerationResults[] NO_ENUMERATION_RESULTS = new EnumerationResults[0];
+
+    /** The value returned when an element does not have the field. */
+    private static final Object NO_KEY = new Object();
+
+    /** The dynamic enumeration registry. */
+    private final DynamicEnumerationRegistry myDynamicEnumRegistry;
+
+    /**
+     * The results for the enumeration codes of the field, one for each
+     * enumeration that has been seen. This is replaced rather than modified.
+     */
+    private volatile EnumerationResults[] myEnumerationResults = NO_ENUMERATION_RESULTS;
+
+    /** The evaluator that performs the comparison. */
+    private final DataFilterCriteriaEvaluator myEvaluator;
+
+    /** The field. */
+    private final String myField;
+
+    /** The relative cost of evaluating this criteria. */
+    private final int myCost;
+
+    /**
+     * Whether the field is the time key, or {@code null} if no meta data info
+     * was available when compiling, in which case it is looked up per element.
+     */
+    private final Boolean myTimeField;
+
+    /**
+     * The last column index found for the field. This is only a hint; it is
+     * verified against the keys of each element before it is used.
+     */
+    private volatile int myColumnIndex;
+
+    /**
+     * Gets the relative cost of evaluating a conditional.
+     *
+     * @param conditional the conditional
+     * @return the cost
+     */
+    private static int getConditionalCost(Conditional conditional)
+    {
+        int cost;
+        switch (conditional)
+        {
+            case EMPTY:
+            case NOT_EMPTY:
+                cost = 1;
+                break;
+            case EQ:
+            case NEQ:
+                cost = 2;
+                break;
+            case GT:
+            case GTE:
+            case LT:
+            case LTE:
+            case BETWEEN:
+                cost = 3;
+                break;
+            default:
+                cost = 10;
+                break;
+        }
+        return cost;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param criteria the criteria
+     * @param metaDataInfo the meta data info of the elements to be filtered,
+     *            or {@code null} if it is not known
+     * @param dynamicEnumRegistry the dynamic enumeration registry
+     */
+    CompiledCriteriaFilter(DataFilterCriteria criteria, MetaDataInfo metaDataInfo,
+            DynamicEnumerationRegistry dynamicEnumRegistry)
+    {
+        myDynamicEnumRegistry = dynamicEnumRegistry;
+        myEvaluator = new DataFilterCriteriaEvaluator(criteria, dynamicEnumRegistry);
+        myField = myEvaluator.getField();
+        if (myEvaluator.isEvaluable())
+        {
+            int cost = getConditionalCost(myEvaluator.getConditional());
+            myCost = myEvaluator.hasFieldFunction() ? cost + 20 : cost;
+        }
+        else
+        {
+            myCost = 0;
+        }
+        if (metaDataInfo == null)
+        {
+            myTimeField = null;
+            myColumnIndex = -1;
+        }
+        else
+        {
+            myTimeField = Boolean.valueOf(metaDataInfo.getSpecialTypeForKey(myField) == TimeKey.DEFAULT);
+            myColumnIndex = metaDataInfo.getKeyIndex(myField);
+        }
+    }
+
+    @Override
+    public boolean accepts(DataElement element)
+    {
+        if (!myEvaluator.isEvaluable())
+        {
+            return false;
+        }
+        Object value = getValue(element.getMetaData());
+        if (value == NO_KEY)
+        {
+            return false;
+        }
+        if (value instanceof DynamicEnumerationKey && myDynamicEnumRegistry != null)
+        {
+            return acceptsEnumerationKey((DynamicEnumerationKey)value);
+        }
+        if (value == null && isTimeField(element))
+        {
+            value = element.getTimeSpan();
+        }
+        return myEvaluator.acceptsValue(value);
+    }
+
+    @Override
+    public int getCost()
+    {
+        return myCost;
+    }
+
+    /**
+     * Determines if a dynamic enumeration key passes the criteria, using the
+     * result for its code if the code has been seen before.
+     *
+     * @param key the key
+     * @return true, if successful
+     */
+    private boolean acceptsEnumerationKey(DynamicEnumerationKey key)
+    {
+        EnumerationResults results = getEnumerationResults(key);
+        byte result = results.get(key);
+        if (result == EnumerationResults.UNKNOWN)
+        {
+            boolean accepted = myEvaluator.acceptsValue(key);
+            results.put(key, accepted);
+            return accepted;
+        }
+        return result == EnumerationResults.ACCEPTED;
+    }
+
+    /**
+     * Gets the results for a key's enumeration, starting them if they do not
+     * exist. Results started before the registry was last modified are
+     * dropped.
+     *
+     * @param key the key
+     * @return the results
+     */
+    private EnumerationResults getEnumerationResults(DynamicEnumerationKey key)
+    {
+        int modificationCount = myDynamicEnumRegistry.getModificationCount();
+        for (EnumerationResults results : myEnumerationResults)
+        {
+            if (results.isFor(key, modificationCount))
+            {
+                return results;
+            }
+        }
+
+        synchronized (this)
+        {
+            EnumerationResults[] current = myEnumerationResults;
+            EnumerationResults[] updated = new EnumerationResults[current.length + 1];
+            int count = 0;
+            for (EnumerationResults results : current)
+            {
+                if (results.isFor(key, modificationCount))
+                {
+                    return results;
+                }
+                if (results.getModificationCount() == modificationCount)
+                {
+                    updated[count++] = results;
+                }
+            }
+            EnumerationResults results = new EnumerationResults(key, modificationCount);
+            updated[count++] = results;
+            myEnumerationResults = count == updated.length ? updated : Arrays.copyOf(updated, count);
+            return results;
+        }
+    }
+
+    /**
+     * Gets the value of the field from a meta data provider.
+     *
+     * @param provider the meta data provider
+     * @return the value, or {@link #NO_KEY} if the provider does not have the
+     *         field
+     */
+    private Object getValue(MetaDataProvider provider)
+    {
+        Object value;
+        if (provider instanceof DynamicMetaDataList)
+        {
+            DynamicMetaDataList list = (DynamicMetaDataList)provider;
+            int index = getColumnIndex(list.getKeys());
+            value = index < 0 ? NO_KEY : list.get(index);
+        }
+        else if (provider instanceof MDILinkedMetaDataProvider)
+        {
+            int index = getColumnIndex(provider.getKeys());
+            if (index < 0)
+            {
+                value = NO_KEY;
+            }
+            else
+            {
+                List<Object> values = provider.getValues();
+                value = index < values.size() ? values.get(index) : null;
+            }
+        }
+        else
+        {
+            value = provider.hasKey(myField) ? provider.getValue(myField) : NO_KEY;
+        }
+        return value;
+    }
+
+    /**
+     * Gets the index of the field in some keys, using the cached index if it
+     * is still correct.
+     *
+     * @param keys the keys, in column order
+     * @return the index, or -1 if the field is not one of the keys
+     */
+    private int getColumnIndex(List<String> keys)
+    {
+        int index = myColumnIndex;
+        if (index < 0 || index >= keys.size() || !myField.equals(keys.get(index)))
+        {
+            index = keys.indexOf(myField);
+            if (index >= 0)
+            {
+                myColumnIndex = index;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Determines if the field is the time key of an element's type.
+     *
+     * @param element the element
+     * @return true, if the field is the time key
+     */
+    private boolean isTimeField(DataElement element)
+    {
+        return myTimeField == null
+                ? element.getDataTypeInfo().getMetaDataInfo().getSpecialTypeForKey(myField) == TimeKey.DEFAULT
+                : myTimeField.booleanValue();
+    }
+
+    /**
+     * The criteria results for the value ids of one enumeration. The results
+     * grow to fit the largest value id seen. Threads that evaluate the same
+     * code at the same time may both decode it, and a result stored while the
+     * results grow may be lost, but the results stored are always the same,
+     * so no locking is needed.
+     */
+    private static final class EnumerationResults
+    {
+        /** The result for a code that passes the criteria. */
+        static final byte ACCEPTED = 1;
+
+        /** The result for a code that does not pass the criteria. */
+        static final byte REJECTED = 2;
+
+        /** The result for a code that has not been evaluated. */
+        static final byte UNKNOWN = 0;
+
+        /** The initial number of results. */
+        private static final int INITIAL_SIZE = 64;
+
+        /** The number of value ids. */
+        private static final int MAX_SIZE = 1 << Short.SIZE;
+
+        /** The meta data key id of the enumeration. */
+        private final int myMetaDataKeyId;
+
+        /** The registry modification count when the results were started. */
+        private final int myModificationCount;
+
+        /** The results, indexed by unsigned value id. */
+        private volatile byte[] myResults = new byte[INITIAL_SIZE];
+
+        /** The type id of the enumeration. */
+        private final int myTypeId;
+
+        /**
+         * Constructor.
+         *
+         * @param key a key in the enumeration
+         * @param modificationCount the registry modification count
+         */
+        EnumerationResults(DynamicEnumerationKey key, int modificationCount)
+        {
+            myTypeId = key.getTypeId();
+            myMetaDataKeyId = key.getMetaDataKeyId();
+            myModificationCount = modificationCount;
+        }
+
+        /**
+         * Gets the result for a key.
+         *
+         * @param key the key
+         * @return {@link #ACCEPTED}, {@link #REJECTED}, or {@link #UNKNOWN}
+         */
+        byte get(DynamicEnumerationKey key)
+        {
+            byte[] results = myResults;
+            int index = key.getValueId() & 0xFFFF;
+            return index < results.length ? results[index] : UNKNOWN;
+        }
+
+        /**
+         * Gets the registry modification count when the results were started.
+         *
+         * @return the modification count
+         */
+        int getModificationCount()
+        {
+            return myModificationCount;
+        }
+
+        /**
+         * Determines if these are the results for a key's enumeration.
+         *
+         * @param key the key
+         * @param modificationCount the current registry modification count
+         * @return true, if the key's value id can be looked up
+         */
+        boolean isFor(DynamicEnumerationKey key, int modificationCount)
+        {
+            return myModificationCount == modificationCount && myTypeId == key.getTypeId()
+                    && myMetaDataKeyId == key.getMetaDataKeyId();
+        }
+
+        /**
+         * Stores the result for a key.
+         *
+         * @param key the key
+         * @param accepted whether the key's value passes the criteria
+         */
+        void put(DynamicEnumerationKey key, boolean accepted)
+        {
+            byte[] results = myResults;
+            int index = key.getValueId() & 0xFFFF;
+            if (index >= results.length)
+            {
+                results = Arrays.copyOf(results, Math.min(MAX_SIZE, Integer.highestOneBit(index) << 1));
+            }
+            results[index] = accepted ? ACCEPTED : REJECTED;
+            myResults = results;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package io.opensphere.mantle.data.element.mdfilter.impl;
+
+import java.util.BitSet;
+import java.util.List;
+
+import io.opensphere.mantle.data.element.DataElement;
+
+/**
+ * A filter predicate that has been compiled for a particular column layout by
+ * the {@link DataFilterCompiler}.
+ */
+public interface CompiledDataFilter
+{
+    /**
+     * Determines if an element passes the filter.
+     *
+     * @param element the data element
+     * @return true, if successful
+     */
+    boolean accepts(DataElement element);
+
+    /**
+     * Filters a batch of elements. Only the elements whose indices are set in
+     * the candidates are evaluated, and the bits for the elements that do not
+     * pass the filter are cleared.
+     *
+     * @param elements the elements
+     * @param candidates the indices of the elements to evaluate, which is
+     *            modified to contain the indices of the passing elements
+     */
+    default void filter(List<? extends DataElement> elements, BitSet candidates)
+    {
+        for (int index = candidates.nextSetBit(0); index >= 0; index = candidates.nextSetBit(index + 1))
+        {
+            if (!accepts(elements.get(index)))
+            {
+                candidates.clear(index);
+            }
+        }
+    }
+
+    /**
+     * Gets the relative cost of evaluating the filter for one element, used to
+     * evaluate cheaper filters first.
+     *
+     * @return the cost
+     */
+    int getCost();
+}
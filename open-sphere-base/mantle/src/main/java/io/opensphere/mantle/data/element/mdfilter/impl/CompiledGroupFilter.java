@@ -0,0 +1,122 @@
+package io.opensphere.mantle.data.element.mdfilter.impl;
+
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+import io.opensphere.core.datafilter.DataFilterOperators.Logical;
+import io.opensphere.mantle.data.element.DataElement;
+
+/**
+ * A compiled {@link io.opensphere.core.datafilter.DataFilterGroup}. For AND and
+ * OR groups the children are evaluated cheapest first, so that the expensive
+ * children are only evaluated for the elements that the cheap ones do not
+ * decide.
+ */
+final class CompiledGroupFilter implements CompiledDataFilter
+{
+    /** The children, ordered by cost for AND and OR groups. */
+    private final List<CompiledDataFilter> myChildren;
+
+    /** The total cost of the children. */
+    private final int myCost;
+
+    /** The operator. */
+    private final Logical myOperator;
+
+    /**
+     * Constructor.
+     *
+     * @param operator the operator
+     * @param children the children, with the criteria before the groups
+     */
+    CompiledGroupFilter(Logical operator, List<CompiledDataFilter> children)
+    {
+        myOperator = operator;
+        myChildren = children;
+        if (operator == Logical.AND || operator == Logical.OR)
+        {
+            myChildren.sort(Comparator.comparingInt(CompiledDataFilter::getCost));
+        }
+        else if (operator != Logical.NOT)
+        {
+            // Without an operator, every element is accepted.
+            myChildren.clear();
+        }
+        else if (myChildren.size() > 1)
+        {
+            // NOT only considers its first child.
+            myChildren.subList(1, myChildren.size()).clear();
+        }
+        int cost = 0;
+        for (CompiledDataFilter child : myChildren)
+        {
+            cost += child.getCost();
+        }
+        myCost = cost;
+    }
+
+    @Override
+    public boolean accepts(DataElement element)
+    {
+        boolean accepts;
+        if (myOperator == Logical.AND)
+        {
+            accepts = true;
+            for (int index = 0; index < myChildren.size() && accepts; ++index)
+            {
+                accepts = myChildren.get(index).accepts(element);
+            }
+        }
+        else if (myOperator == Logical.OR)
+        {
+            accepts = false;
+            for (int index = 0; index < myChildren.size() && !accepts; ++index)
+            {
+                accepts = myChildren.get(index).accepts(element);
+            }
+        }
+        else
+        {
+            accepts = myChildren.isEmpty() || !myChildren.get(0).accepts(element);
+        }
+        return accepts;
+    }
+
+    @Override
+    public void filter(List<? extends DataElement> elements, BitSet candidates)
+    {
+        if (myOperator == Logical.AND)
+        {
+            for (int index = 0; index < myChildren.size() && !candidates.isEmpty(); ++index)
+            {
+                myChildren.get(index).filter(elements, candidates);
+            }
+        }
+        else if (myOperator == Logical.OR)
+        {
+            BitSet undecided = (BitSet)candidates.clone();
+            BitSet accepted = new BitSet(candidates.length());
+            for (int index = 0; index < myChildren.size() && !undecided.isEmpty(); ++index)
+            {
+                BitSet childAccepted = (BitSet)undecided.clone();
+                myChildren.get(index).filter(elements, childAccepted);
+                accepted.or(childAccepted);
+                undecided.andNot(childAccepted);
+            }
+            candidates.and(accepted);
+        }
+        else if (!myChildren.isEmpty())
+        {
+            BitSet childAccepted = (BitSet)candidates.clone();
+            myChildren.get(0).filter(elements, childAccepted);
+            candidates.andNot(childAccepted);
+        }
+    }
+
+    @Override
+    public int getCost()
+    {
+        return myCost;
+    }
+}
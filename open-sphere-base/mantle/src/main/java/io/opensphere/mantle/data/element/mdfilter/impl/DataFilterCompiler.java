@@ -0,0 +1,57 @@
+package io.opensphere.mantle.data.element.mdfilter.impl;
+
+import java.util.List;
+
+import io.opensphere.core.datafilter.DataFilterCriteria;
+import io.opensphere.core.datafilter.DataFilterGroup;
+import io.opensphere.core.util.Utilities;
+import io.opensphere.core.util.collections.New;
+import io.opensphere.mantle.data.MetaDataInfo;
+import io.opensphere.mantle.util.dynenum.DynamicEnumerationRegistry;
+
+/**
+ * Compiles filter groups into {@link CompiledDataFilter}s. The compiled filters
+ * accept the same elements as a {@link DataFilterGroupEvaluator}, but they
+ * resolve the columns of the fields once, evaluate the cheapest criteria
+ * first, and can filter a batch of elements at a time.
+ */
+public final class DataFilterCompiler
+{
+    /**
+     * Compiles a filter group.
+     *
+     * @param group the group
+     * @param metaDataInfo the meta data info of the elements to be filtered,
+     *            or {@code null} if it is not known
+     * @param dynEnumReg the dynamic enumeration registry
+     * @return the compiled filter
+     */
+    public static CompiledDataFilter compile(DataFilterGroup group, MetaDataInfo metaDataInfo,
+            DynamicEnumerationRegistry dynEnumReg)
+    {
+        Utilities.checkNull(group, "group");
+        int size = (group.getCriteria() == null ? 0 : group.getCriteria().size())
+                + (group.getGroups() == null ? 0 : group.getGroups().size());
+        List<CompiledDataFilter> children = New.list(size);
+        if (group.getCriteria() != null)
+        {
+            for (DataFilterCriteria criteria : group.getCriteria())
+            {
+                children.add(new CompiledCriteriaFilter(criteria, metaDataInfo, dynEnumReg));
+            }
+        }
+        if (group.getGroups() != null)
+        {
+            for (DataFilterGroup child : group.getGroups())
+            {
+                children.add(compile(child, metaDataInfo, dynEnumReg));
+            }
+        }
+        return new CompiledGroupFilter(group.getLogicOperator(), children);
+    }
+
+    /** Disallow instantiation. */
+    private DataFilterCompiler()
+    {
+    }
+}
@@ -100,19 +100,34 @@ public class DataFilterCriteriaEvaluator
             return false;
         }
         Object value = metaDataProvider.getValue(myField);
-        if (value instanceof DynamicEnumerationKey)
+        if (value == null && element.getDataTypeInfo().getMetaDataInfo().getSpecialTypeForKey(myField) == TimeKey.DEFAULT)
         {
-            value = myDynamicEnumRegistry.getEnumerationValue((DynamicEnumerationKey)value);
+            value = element.getTimeSpan();
         }
-        else if (value == null && element.getDataTypeInfo().getMetaDataInfo().getSpecialTypeForKey(myField) == TimeKey.DEFAULT)
+        return acceptsValue(value);
+    }
+
+    /**
+     * Determines if a value that has already been retrieved from an element
+     * passes this criteria. The caller is responsible for checking
+     * {@link #isEvaluable()} and for substituting the element's time span for
+     * a missing time value.
+     *
+     * @param value the value of the field
+     * @return true, if successful
+     */
+    boolean acceptsValue(Object value)
+    {
+        Object resolved = value;
+        if (resolved instanceof DynamicEnumerationKey)
         {
-            value = element.getTimeSpan();
+            resolved = myDynamicEnumRegistry.getEnumerationValue((DynamicEnumerationKey)resolved);
         }
         if (myFieldFunction != null)
         {
-            value = applyFunction(value);
+            resolved = applyFunction(resolved);
         }
-        return myEvaluator.evaluate(value);
+        return myEvaluator.evaluate(resolved);
     }
 
     /**
@@ -145,6 +160,28 @@ public class DataFilterCriteriaEvaluator
         return myValue;
     }
 
+    /**
+     * Gets whether a function is applied to the field value before it is
+     * evaluated.
+     *
+     * @return true, if there is a field function
+     */
+    public boolean hasFieldFunction()
+    {
+        return myFieldFunction != null;
+    }
+
+    /**
+     * Gets whether an evaluator exists for the conditional. If not, no element
+     * will pass this criteria.
+     *
+     * @return true, if the criteria can be evaluated
+     */
+    public boolean isEvaluable()
+    {
+        return myEvaluator != null;
+    }
+
     /**
      * Creates an evaluator.
      *
@@ -1,5 +1,6 @@
 package io.opensphere.mantle.data.element.mdfilter.impl;
 
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
@@ -7,6 +8,7 @@ import java.util.Objects;
 import io.opensphere.core.datafilter.DataFilter;
 import io.opensphere.core.util.Utilities;
 import io.opensphere.core.util.collections.New;
+import io.opensphere.mantle.data.MetaDataInfo;
 import io.opensphere.mantle.data.element.DataElement;
 import io.opensphere.mantle.data.element.mdfilter.MetaDataFilter;
 import io.opensphere.mantle.util.dynenum.DynamicEnumerationRegistry;
@@ -22,8 +24,14 @@ public class DataFilterEvaluator implements MetaDataFilter
     /** The DTI key. */
     private final String myDTIKey;
 
-    /** The Evaluator. */
-    private final DataFilterGroupEvaluator myEvaluator;
+    /** The compiled filter. */
+    private final CompiledDataFilter myEvaluator;
+
+    /** The filter that was compiled. */
+    private final DataFilter myFilter;
+
+    /** The meta data info the filter was compiled for, or {@code null}. */
+    private final MetaDataInfo myMetaDataInfo;
 
     /** The Name. */
     private final String myName;
@@ -35,12 +43,28 @@ public class DataFilterEvaluator implements MetaDataFilter
      * @param dynEnumReg the dynamic enumeration registry
      */
     public DataFilterEvaluator(DataFilter aFilter, DynamicEnumerationRegistry dynEnumReg)
+    {
+        this(aFilter, null, dynEnumReg);
+    }
+
+    /**
+     * Instantiates a new data filter evaluator that is compiled for the
+     * columns of the filtered type.
+     *
+     * @param aFilter the a filter
+     * @param metaDataInfo the meta data info of the filtered type, or
+     *            {@code null} if it is not known
+     * @param dynEnumReg the dynamic enumeration registry
+     */
+    public DataFilterEvaluator(DataFilter aFilter, MetaDataInfo metaDataInfo, DynamicEnumerationRegistry dynEnumReg)
     {
         Utilities.checkNull(aFilter, "aFilter");
+        myFilter = aFilter;
+        myMetaDataInfo = metaDataInfo;
         myDTIKey = aFilter.getTypeKey();
         myName = aFilter.getName();
         myColumns = aFilter.getColumns() == null ? Collections.<String>emptyList() : New.list(aFilter.getColumns());
-        myEvaluator = new DataFilterGroupEvaluator(aFilter.getFilterGroup(), dynEnumReg);
+        myEvaluator = DataFilterCompiler.compile(aFilter.getFilterGroup(), metaDataInfo, dynEnumReg);
     }
 
     @Override
@@ -55,6 +79,46 @@ public class DataFilterEvaluator implements MetaDataFilter
         return accepts;
     }
 
+    /**
+     * Filters a batch of elements.
+     *
+     * @param elements the elements
+     * @return the indices of the elements that pass the filter
+     */
+    public BitSet filter(List<? extends DataElement> elements)
+    {
+        BitSet accepted = new BitSet(elements.size());
+        for (int index = 0; index < elements.size(); ++index)
+        {
+            DataElement element = elements.get(index);
+            if (element != null && element.getDataTypeInfo() != null
+                    && Objects.equals(myDTIKey, element.getDataTypeInfo().getTypeKey()))
+            {
+                accepted.set(index);
+            }
+        }
+        if (!accepted.isEmpty())
+        {
+            myEvaluator.filter(elements, accepted);
+        }
+        return accepted;
+    }
+
+    /**
+     * Gets an evaluator for the same filter that is compiled for the columns
+     * of a type.
+     *
+     * @param metaDataInfo the meta data info of the filtered type
+     * @param dynEnumReg the dynamic enumeration registry
+     * @return this evaluator if it was compiled for the meta data info,
+     *         otherwise a new evaluator
+     */
+    public DataFilterEvaluator forMetaDataInfo(MetaDataInfo metaDataInfo, DynamicEnumerationRegistry dynEnumReg)
+    {
+        return metaDataInfo == null || metaDataInfo == myMetaDataInfo ? this
+                : new DataFilterEvaluator(myFilter, metaDataInfo, dynEnumReg);
+    }
+
     /**
      * Gets the columns.
      *
@@ -65,6 +129,17 @@ public class DataFilterEvaluator implements MetaDataFilter
         return Collections.unmodifiableList(myColumns);
     }
 
+    /**
+     * Gets the meta data info the filter was compiled for.
+     *
+     * @return the meta data info, or {@code null} if the filter was compiled
+     *         without one
+     */
+    public MetaDataInfo getMetaDataInfo()
+    {
+        return myMetaDataInfo;
+    }
+
     /**
      * Gets the name.
      *
@@ -1,7 +1,12 @@
 package io.opensphere.mantle.data.impl;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -45,6 +50,34 @@ public abstract class AbstractDynamicMetaDataList implements DynamicMetaDataList
         return ourDynamicEnumerationRegistry;
     }
 
+    /**
+     * Reads an object column value written by
+     * {@link #writeObjectValue(DataOutput, Object)}.
+     *
+     * @param in the input
+     * @param columnName the column name, for error reporting
+     * @return the value, possibly {@code null}
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    protected static Object readObjectValue(DataInput in, String columnName) throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0)
+        {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes)))
+        {
+            return ois.readObject();
+        }
+        catch (ClassNotFoundException e)
+        {
+            throw new IOException("Unknown class found while decoding metadata field [" + columnName + "].", e);
+        }
+    }
+
     /**
      * Sets the dynamic enum registry.
      *
@@ -55,6 +88,34 @@ public abstract class AbstractDynamicMetaDataList implements DynamicMetaDataList
         ourDynamicEnumerationRegistry = reg;
     }
 
+    /**
+     * Writes an object column value. Columns without a primitive
+     * representation still have to be serialized, so the value is written as
+     * a length-prefixed object stream, or a length of -1 if it is
+     * {@code null}.
+     *
+     * @param out the output
+     * @param value the value
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    protected static void writeObjectValue(DataOutput out, Object value) throws IOException
+    {
+        if (value == null)
+        {
+            out.writeInt(-1);
+        }
+        else
+        {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try (ObjectOutputStream oos = new ObjectOutputStream(baos))
+            {
+                oos.writeObject(value);
+            }
+            out.writeInt(baos.size());
+            out.write(baos.toByteArray());
+        }
+    }
+
     @Override
     public void add(int arg0, Object arg1)
     {
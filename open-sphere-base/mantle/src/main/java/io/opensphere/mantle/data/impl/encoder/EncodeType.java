@@ -67,6 +67,12 @@ public enum EncodeType
     /** DYNAMIC_METADATALIST. */
     DYNAMIC_METADATALIST(100),
 
+    /**
+     * DYNAMIC_METADATALIST written with its typed write method, without an
+     * object stream.
+     */
+    DYNAMIC_METADATALIST_TYPED(103),
+
     /** The FLOAT. */
     FLOAT_OBJ(11),
 
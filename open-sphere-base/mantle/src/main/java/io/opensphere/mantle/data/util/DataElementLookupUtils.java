@@ -9,6 +9,7 @@ import io.opensphere.core.model.time.TimeSpan;
 import io.opensphere.core.model.time.TimeSpanList;
 import io.opensphere.core.util.rangeset.RangedLongSet;
 import io.opensphere.mantle.data.DataTypeInfo;
+import io.opensphere.mantle.data.cache.MetaDataCodes;
 import io.opensphere.mantle.data.element.DataElement;
 import io.opensphere.mantle.data.element.MapDataElement;
 import io.opensphere.mantle.data.element.MetaDataProvider;
@@ -145,12 +146,12 @@ public interface DataElementLookupUtils
     List<DataElement> getDataElements(List<Long> dataElementIds, DataTypeInfo dtiHint, String dataTypeInfoKeyHint,
             boolean ignoreMapGeometrySupport) throws DataElementLookupException;
 
-    /**
-     * Gets all data elements for the given data type.
-     *
-     * @param type the data type
-     * @return the data elements
-     */
+    /**
+     * Gets all data elements for the given data type.
+     *
+     * @param type the data type
+     * @return the data elements
+     */
     List<DataElement> getDataElements(DataTypeInfo type);
 
     /**
@@ -253,6 +254,28 @@ public interface DataElementLookupUtils
      */
     List<Object> getMetaData(long dataElementId);
 
+    /**
+     * Retrieve meta data property values for a key name of a specific type of
+     * data element as codes into a dictionary of the distinct values, if the
+     * cache keeps the values of the key as codes. Equal values have equal
+     * codes, so callers can group and compare the elements by code and decode
+     * each distinct value once.
+     *
+     * @param dataElementIds the data element ids to lookup
+     * @param keyName the key name
+     * @param dtiHint the {@link DataTypeInfo} for the point if known ( null if
+     *            not known is okay )
+     * @param dataTypeInfoKeyHint the key for the DataTypeInfo if known ( null
+     *            if not known is okay )
+     * @return the codes, or null if the values are not kept as codes, in which
+     *         case {@link #getMetaDataPropertyValues} must be used
+     * @throws DataElementLookupException if there is a problem determining the
+     *             type or if the keyName is invalid.
+     */
+    MetaDataCodes getMetaDataPropertyCodes(List<Long> dataElementIds, String keyName, DataTypeInfo dtiHint,
+            String dataTypeInfoKeyHint)
+        throws DataElementLookupException;
+
     /**
      * Retrieve meta data property values for a key name of a specific type of
      * data element.
@@ -22,6 +22,7 @@ import io.opensphere.mantle.MantleToolbox;
 import io.opensphere.mantle.data.DataTypeInfo;
 import io.opensphere.mantle.data.cache.CacheEntryView;
 import io.opensphere.mantle.data.cache.CacheQueryException;
+import io.opensphere.mantle.data.cache.MetaDataCodes;
 import io.opensphere.mantle.data.cache.QueryAccessConstraint;
 import io.opensphere.mantle.data.cache.query.SimpleListResultCacheIdQuery;
 import io.opensphere.mantle.data.cache.query.SimpleResultCacheIdQuery;
@@ -450,6 +451,25 @@ public class DataElementLookupUtilsImpl implements DataElementLookupUtils
         return query.getResult();
     }
 
+    @Override
+    public MetaDataCodes getMetaDataPropertyCodes(List<Long> dataElementIds, String keyName, DataTypeInfo dtiHint,
+            String dataTypeInfoKeyHint)
+        throws DataElementLookupException
+    {
+        Utilities.checkNull(dataElementIds, DATA_ELEMENT_IDS);
+        if (dataElementIds.isEmpty())
+        {
+            return new MetaDataCodes(new int[0], 0, code -> null);
+        }
+
+        DataTypeInfo dti = dtiHint == null ? getDataTypeInfo(dataElementIds.get(0).longValue(), dataTypeInfoKeyHint) : dtiHint;
+
+        screenDataTypeInfoBeforeMetaDataRetrieve(dti, keyName);
+
+        return MantleToolboxUtils.getMantleToolbox(myToolbox).getDataElementCache().getMetaDataCodes(dataElementIds, dti,
+                keyName);
+    }
+
     @Override
     public List<Object> getMetaDataPropertySamples(String keyName, DataTypeInfo dtiHint, String dataTypeInfoKeyHint,
             final int maxSamples, final int maxToQuery)
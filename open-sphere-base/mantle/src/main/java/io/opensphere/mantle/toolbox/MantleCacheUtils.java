@@ -46,7 +46,7 @@ final class MantleCacheUtils
         final boolean useDynamicClassStorageInCache = "true".equalsIgnoreCase(useDynamicClassesStr);
 
         final String elementCacheType = pluginProperties.getProperty("elementCacheType", "MEMORY");
-        if ("DISK".equalsIgnoreCase(elementCacheType))
+        if ("DISK".equalsIgnoreCase(elementCacheType) || "MAPPED".equalsIgnoreCase(elementCacheType))
         {
             final int inMemPoolSize = getElementCacheInMemPoolSize(pluginProperties);
             int maxElements = getElementCacheMaxElements(pluginProperties);
@@ -65,8 +65,27 @@ final class MantleCacheUtils
             final String diskCacheLocation = pluginProperties.getProperty("elementDiskCacheLocation",
                     diskCacheParent.getAbsolutePath());
             diskCacheParent = new File(diskCacheLocation);
-            cacheCfg = CacheConfiguration.createDiskCachedConfiguration(maxElements, inMemPoolSize, diskCacheParent, false,
-                    useEncryption, useDynamicClassStorageInCache);
+            if ("MAPPED".equalsIgnoreCase(elementCacheType) && !useEncryption)
+            {
+                cacheCfg = CacheConfiguration.createMappedCachedConfiguration(maxElements, inMemPoolSize, diskCacheParent, true,
+                        useDynamicClassStorageInCache);
+            }
+            else
+            {
+                if (useEncryption && "MAPPED".equalsIgnoreCase(elementCacheType))
+                {
+                    LOGGER.warn("The MAPPED element cache does not support encryption, using the DISK element cache instead.");
+                }
+                cacheCfg = CacheConfiguration.createDiskCachedConfiguration(maxElements, inMemPoolSize, diskCacheParent, false,
+                        useEncryption, useDynamicClassStorageInCache);
+            }
+        }
+        else if ("COLUMNAR".equalsIgnoreCase(elementCacheType))
+        {
+            final int inMemPoolSize = getElementCacheInMemPoolSize(pluginProperties);
+            final int maxElements = getElementCacheMaxElements(pluginProperties);
+            cacheCfg = CacheConfiguration.createColumnarCachedConfiguration(maxElements, inMemPoolSize, true,
+                    useDynamicClassStorageInCache);
         }
         else if ("REGISTRY".equalsIgnoreCase(elementCacheType))
         {
@@ -6,6 +6,8 @@ import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.log4j.Logger;
 
+import com.vividsolutions.jts.geom.Envelope;
+
 import gnu.trove.map.hash.TLongLongHashMap;
 import gnu.trove.set.TLongSet;
 import gnu.trove.set.hash.TLongHashSet;
@@ -31,6 +33,7 @@ import io.opensphere.mantle.transformer.impl.worker.DefaultBuildAndPublishGeomet
 import io.opensphere.mantle.transformer.impl.worker.RemoveDataElementsWorker;
 import io.opensphere.mantle.transformer.impl.worker.ShutdownTransformerWorker;
 import io.opensphere.mantle.transformer.util.GeometrySetUtil;
+import io.opensphere.mantle.transformer.util.SpatialGeometrySet;
 import io.opensphere.mantle.util.MantleToolboxUtils;
 
 /**
@@ -47,7 +50,7 @@ public class DefaultMapDataElementTransformer extends AbstractMapDataElementTran
     static final boolean PUBLISH_CHANGES_TO_GEOMETRY_REGISTRY = true;
 
     /** The my geometry set. */
-    private final Set<Geometry> myGeometrySet;
+    private final SpatialGeometrySet myGeometrySet;
 
     /** The geometry set lock. */
     private final ReentrantLock myGeometrySetLock;
@@ -83,7 +86,7 @@ public class DefaultMapDataElementTransformer extends AbstractMapDataElementTran
         myIdSet = new TLongHashSet();
         myGeomRegUpdateActivity = activity;
         myGeometrySetLock = new ReentrantLock();
-        myGeometrySet = New.set();
+        myGeometrySet = new SpatialGeometrySet();
         myHiddenGeometrySet = New.set();
         MantleToolbox mtb = MantleToolboxUtils.getMantleToolbox(aToolbox);
         myMapGeometrySupportGeometryFactory = new MapGeometrySupportGeometryFactory(mtb);
@@ -277,6 +280,12 @@ public class DefaultMapDataElementTransformer extends AbstractMapDataElementTran
         return resultMap;
     }
 
+    @Override
+    public Collection<Geometry> getGeometryCandidates(Envelope envelope)
+    {
+        return myGeometrySet.query(envelope);
+    }
+
     /**
      * {@inheritDoc}
      *
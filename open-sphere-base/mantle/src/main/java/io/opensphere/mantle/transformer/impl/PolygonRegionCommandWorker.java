@@ -1,10 +1,13 @@
 package io.opensphere.mantle.transformer.impl;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.locks.ReentrantLock;
 
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.Polygon;
 
@@ -167,18 +170,37 @@ public abstract class PolygonRegionCommandWorker implements Runnable
     }
 
     /**
-     * Determine intersecting sets.
+     * Determine intersecting sets. Only the geometries that the provider
+     * reports as candidates for the bounds of the regions are tested; the
+     * rest cannot intersect and are added to the non-intersecting set
+     * directly.
      *
      * @param useTimeConstraints true to use time constraints as part of the
      *            intersection check.
      */
     private void determineIntersectingSets(boolean useTimeConstraints)
     {
+        Envelope bounds = new Envelope();
+        if (myRegions != null)
+        {
+            for (Polygon region : myRegions)
+            {
+                bounds.expandToInclude(region.getEnvelopeInternal());
+            }
+        }
+        Collection<Geometry> candidates = myProvider.getGeometryCandidates(bounds);
+        Set<Geometry> candidateSet = null;
+        if (candidates != myProvider.getGeometrySet())
+        {
+            candidateSet = Collections.newSetFromMap(new IdentityHashMap<>(candidates.size()));
+            candidateSet.addAll(candidates);
+        }
+
         GeometryFactory gf = new GeometryFactory();
         for (Geometry g : myProvider.getGeometrySet())
         {
-            boolean intersecting = true;
-            if (useTimeConstraints)
+            boolean intersecting = candidateSet == null || candidateSet.contains(g);
+            if (intersecting && useTimeConstraints)
             {
                 intersecting = passesTimeConstraintCheck(g);
             }
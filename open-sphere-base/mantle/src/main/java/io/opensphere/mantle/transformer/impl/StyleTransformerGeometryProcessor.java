@@ -7,6 +7,7 @@ import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.locks.ReentrantLock;
 
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Polygon;
 
 import gnu.trove.map.hash.TLongLongHashMap;
@@ -43,6 +44,7 @@ import io.opensphere.mantle.transformer.impl.worker.StyleBasedDeriveColorUpdateG
 import io.opensphere.mantle.transformer.impl.worker.StyleBasedUpdateGeometriesWorker;
 import io.opensphere.mantle.transformer.impl.worker.StyleDataElementTransformerWorkerDataProvider;
 import io.opensphere.mantle.transformer.util.GeometrySetUtil;
+import io.opensphere.mantle.transformer.util.SpatialGeometrySet;
 import io.opensphere.mantle.util.MantleToolboxUtils;
 import io.opensphere.mantle.util.bitmanip.BitMaskGenerator;
 
@@ -62,7 +64,7 @@ public class StyleTransformerGeometryProcessor implements StyleDataElementTransf
     private final DataTypeInfo myDataTypeInfo;
 
     /** The my geometry set. */
-    private final Set<Geometry> myGeometrySet;
+    private final SpatialGeometrySet myGeometrySet;
 
     /** The geometry set lock. */
     private final ReentrantLock myGeometrySetLock;
@@ -101,7 +103,7 @@ public class StyleTransformerGeometryProcessor implements StyleDataElementTransf
         myDataTypeInfo = dti;
         myIdSet = new TLongHashSet();
         myGeometrySetLock = new ReentrantLock();
-        myGeometrySet = New.set();
+        myGeometrySet = new SpatialGeometrySet();
         myHiddenGeometrySet = New.set();
         myStyleManager = new StyleTransformerStyleManager(myToolbox, myDataTypeInfo, this);
     }
@@ -184,6 +186,12 @@ public class StyleTransformerGeometryProcessor implements StyleDataElementTransf
         return resultMap;
     }
 
+    @Override
+    public Collection<Geometry> getGeometryCandidates(Envelope envelope)
+    {
+        return myGeometrySet.query(envelope);
+    }
+
     @Override
     public Set<Geometry> getGeometrySet()
     {
@@ -1,9 +1,12 @@
 package io.opensphere.mantle.transformer.impl.worker;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.locks.ReentrantLock;
 
+import com.vividsolutions.jts.geom.Envelope;
+
 import gnu.trove.set.TLongSet;
 import io.opensphere.core.Toolbox;
 import io.opensphere.core.geometry.Geometry;
@@ -30,6 +33,21 @@ public interface DataElementTransformerWorkerDataProvider
      */
     DataTypeInfo getDataType();
 
+    /**
+     * Gets the geometries in the geometry set whose bounds may intersect an
+     * envelope. The result may include geometries that do not intersect the
+     * envelope. The default implementation returns the whole geometry set.
+     * The geometry set lock should be held by the caller.
+     *
+     * @param envelope the envelope, in the coordinates used by
+     *            {@link Geometry#jtsIntersectionTests}
+     * @return the candidate geometries
+     */
+    default Collection<Geometry> getGeometryCandidates(Envelope envelope)
+    {
+        return getGeometrySet();
+    }
+
     /**
      * Gets the geometry set.
      *
@@ -0,0 +1,189 @@
+package io.opensphere.mantle.transformer.util;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.index.quadtree.Quadtree;
+
+import io.opensphere.core.geometry.Geometry;
+import io.opensphere.core.geometry.PointGeometry;
+import io.opensphere.core.geometry.PolylineGeometry;
+import io.opensphere.core.math.Vector3d;
+import io.opensphere.core.model.Position;
+import io.opensphere.core.util.collections.New;
+
+/**
+ * A set of geometries that keeps a quadtree of the geometry bounds up to date
+ * as geometries are added and removed, so that region queries only need to
+ * test the geometries near the region.
+ * <p>
+ * The bounds are computed in the same coordinates that
+ * {@link Geometry#jtsIntersectionTests} uses. Geometries whose bounds cannot
+ * be determined are not indexed and are always returned as candidates.
+ * <p>
+ * Like the set it replaces, this class is not thread-safe.
+ */
+public class SpatialGeometrySet extends AbstractSet<Geometry>
+{
+    /** The geometries. */
+    private final Set<Geometry> myGeometries = New.set();
+
+    /** The index of the geometries that have bounds. */
+    private Quadtree myIndex = new Quadtree();
+
+    /** The geometries that are not in the index. */
+    private final Set<Geometry> myUnindexedGeometries = New.set();
+
+    /**
+     * Get the bounds of a geometry, if it is a type that can be indexed.
+     *
+     * @param geom the geometry
+     * @return the bounds, or {@code null} if the geometry cannot be indexed
+     */
+    static Envelope getEnvelope(Geometry geom)
+    {
+        Envelope envelope = null;
+        if (geom instanceof PointGeometry)
+        {
+            Vector3d vec = ((PointGeometry)geom).getPosition().asVector3d();
+            envelope = new Envelope(vec.getX(), vec.getX(), vec.getY(), vec.getY());
+        }
+        else if (geom instanceof PolylineGeometry && !((PolylineGeometry)geom).getVertices().isEmpty())
+        {
+            envelope = new Envelope();
+            for (Position position : ((PolylineGeometry)geom).getVertices())
+            {
+                Vector3d vec = position.asVector3d();
+                envelope.expandToInclude(vec.getX(), vec.getY());
+            }
+        }
+        return envelope;
+    }
+
+    @Override
+    public boolean add(Geometry geom)
+    {
+        if (!myGeometries.add(geom))
+        {
+            return false;
+        }
+        Envelope envelope = getEnvelope(geom);
+        if (envelope == null)
+        {
+            myUnindexedGeometries.add(geom);
+        }
+        else
+        {
+            myIndex.insert(envelope, geom);
+        }
+        return true;
+    }
+
+    @Override
+    public void clear()
+    {
+        myGeometries.clear();
+        myUnindexedGeometries.clear();
+        myIndex = new Quadtree();
+    }
+
+    @Override
+    public boolean contains(Object o)
+    {
+        return myGeometries.contains(o);
+    }
+
+    @Override
+    public Iterator<Geometry> iterator()
+    {
+        final Iterator<Geometry> iter = myGeometries.iterator();
+        return new Iterator<Geometry>()
+        {
+            /** The last geometry returned. */
+            private Geometry myLast;
+
+            @Override
+            public boolean hasNext()
+            {
+                return iter.hasNext();
+            }
+
+            @Override
+            public Geometry next()
+            {
+                myLast = iter.next();
+                return myLast;
+            }
+
+            @Override
+            public void remove()
+            {
+                iter.remove();
+                removeFromIndex(myLast);
+            }
+        };
+    }
+
+    /**
+     * Get the geometries whose bounds may intersect an envelope. The result
+     * may include geometries that do not intersect the envelope, but it will
+     * not omit any that do.
+     *
+     * @param envelope the envelope
+     * @return the candidate geometries
+     */
+    public Collection<Geometry> query(Envelope envelope)
+    {
+        @SuppressWarnings("unchecked")
+        List<Geometry> indexed = myIndex.query(envelope);
+        List<Geometry> result = New.list(indexed.size() + myUnindexedGeometries.size());
+        for (Geometry geom : indexed)
+        {
+            if (envelope.intersects(getEnvelope(geom)))
+            {
+                result.add(geom);
+            }
+        }
+        result.addAll(myUnindexedGeometries);
+        return result;
+    }
+
+    @Override
+    public boolean remove(Object o)
+    {
+        if (!myGeometries.remove(o))
+        {
+            return false;
+        }
+        removeFromIndex((Geometry)o);
+        return true;
+    }
+
+    @Override
+    public int size()
+    {
+        return myGeometries.size();
+    }
+
+    /**
+     * Remove a geometry that has been removed from the set from the index.
+     *
+     * @param geom the geometry
+     */
+    private void removeFromIndex(Geometry geom)
+    {
+        Envelope envelope = getEnvelope(geom);
+        if (envelope == null)
+        {
+            myUnindexedGeometries.remove(geom);
+        }
+        else
+        {
+            myIndex.remove(envelope, geom);
+        }
+    }
+}
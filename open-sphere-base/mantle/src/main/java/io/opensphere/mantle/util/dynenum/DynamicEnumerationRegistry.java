@@ -67,4 +67,14 @@ public interface DynamicEnumerationRegistry
      * @return the enumeration value
      */
     Object getEnumerationValue(int typeId, int mdikeyId, int valueId);
+
+    /**
+     * Gets a count that changes whenever an enumeration is destroyed. Value
+     * ids may be reused after an enumeration is destroyed and created again,
+     * so anything cached by value id is only valid while this count is
+     * unchanged.
+     *
+     * @return the modification count
+     */
+    int getModificationCount();
 }
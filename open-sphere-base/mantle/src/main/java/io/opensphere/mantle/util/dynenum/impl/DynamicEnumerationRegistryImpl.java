@@ -25,6 +25,9 @@ import io.opensphere.mantle.util.dynenum.KeyIdExhaustionException;
 @SuppressWarnings("PMD.AvoidUsingShortType")
 public class DynamicEnumerationRegistryImpl implements DynamicEnumerationRegistry
 {
+    /** The number of times enumerations have been destroyed. */
+    private final AtomicInteger myModificationCount;
+
     /** The Read write lock. */
     private final ReentrantReadWriteLock myReadWriteLock;
 
@@ -46,6 +49,7 @@ public class DynamicEnumerationRegistryImpl implements DynamicEnumerationRegistr
     public DynamicEnumerationRegistryImpl()
     {
         myTypeIdCounter = new AtomicInteger();
+        myModificationCount = new AtomicInteger();
         myTypeToTypeIdMapLock = new ReentrantLock();
         myTypeToTypeIdMap = new TObjectShortHashMap<>();
         myTypeIdToDataMap = new TShortObjectHashMap<>();
@@ -97,6 +101,7 @@ public class DynamicEnumerationRegistryImpl implements DynamicEnumerationRegistr
         if (typeManager != null)
         {
             typeManager.removeEnumerationDataForMdiKey(metaDataKeyName);
+            myModificationCount.incrementAndGet();
         }
     }
 
@@ -115,6 +120,7 @@ public class DynamicEnumerationRegistryImpl implements DynamicEnumerationRegistr
             {
                 myReadWriteLock.writeLock().unlock();
             }
+            myModificationCount.incrementAndGet();
         }
     }
 
@@ -155,6 +161,12 @@ public class DynamicEnumerationRegistryImpl implements DynamicEnumerationRegistr
         return result;
     }
 
+    @Override
+    public int getModificationCount()
+    {
+        return myModificationCount.get();
+    }
+
     @Override
     public String toString()
     {
@@ -0,0 +1,226 @@
+package io.opensphere.mantle.data.cache.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import io.opensphere.core.util.collections.New;
+import io.opensphere.mantle.data.cache.MetaDataCodes;
+import io.opensphere.mantle.util.dynenum.DynamicEnumerationKey;
+import io.opensphere.mantle.util.dynenum.DynamicEnumerationRegistry;
+import io.opensphere.mantle.util.dynenum.impl.DynamicEnumerationKeyFactory;
+
+/**
+ * Test for {@link ColumnStore}.
+ */
+public class ColumnStoreTest
+{
+    /**
+     * Test storing and reading elements with typed columns.
+     */
+    @Test
+    public void testPutAndGet()
+    {
+        ColumnStore store = new ColumnStore(Arrays.<Class<?>>asList(Double.class, String.class, Date.class, Object.class));
+
+        for (long id = 0; id < 1000; ++id)
+        {
+            List<Object> metaData = Arrays.<Object>asList(Double.valueOf(id / 2.), "type" + id % 3, new Date(id * 1000),
+                    id % 2 == 0 ? Integer.valueOf((int)id) : null);
+            store.put(id, Long.valueOf(id + 5000), metaData, new byte[] { (byte)id, 2, 3 });
+        }
+        assertEquals(1000, store.size());
+
+        List<Object> metaData = store.getMetaData(10);
+        assertEquals(4, metaData.size());
+        assertEquals(Double.valueOf(5.), metaData.get(0));
+        assertEquals("type1", metaData.get(1));
+        assertEquals(new Date(10000), metaData.get(2));
+        assertEquals(Integer.valueOf(10), metaData.get(3));
+        assertNull(store.getMetaData(11).get(3));
+        assertEquals(Long.valueOf(5010), store.getOriginId(10));
+
+        ByteBuffer geometry = store.getGeometry(10);
+        byte[] bytes = new byte[geometry.remaining()];
+        geometry.get(bytes);
+        assertArrayEquals(new byte[] { 10, 2, 3 }, bytes);
+
+        assertSame(StoreColumn.PrimitiveColumn.class, store.getColumnType(0));
+        assertSame(StoreColumn.DictionaryColumn.class, store.getColumnType(1));
+        assertSame(StoreColumn.PrimitiveColumn.class, store.getColumnType(3));
+        assertTrue(store.getOffHeapBytes() > 0);
+
+        assertNull(store.getMetaData(1000));
+        assertNull(store.getOriginId(1000));
+        assertNull(store.getGeometry(1000));
+    }
+
+    /**
+     * Test that a column is converted when it gets a value it cannot hold.
+     */
+    @Test
+    public void testConversion()
+    {
+        ColumnStore store = new ColumnStore(Arrays.<Class<?>>asList(Double.class, String.class));
+        for (long id = 0; id < StoreColumn.MAX_DICTIONARY_SIZE + 10; ++id)
+        {
+            store.put(id, null, Arrays.<Object>asList(Double.valueOf(id), "value" + id), null);
+        }
+        store.put(-1, null, Arrays.<Object>asList("not a number", "last"), null);
+
+        assertSame(StoreColumn.ObjectColumn.class, store.getColumnType(0));
+        assertSame(StoreColumn.TextColumn.class, store.getColumnType(1));
+        assertEquals(Arrays.asList(Double.valueOf(7.), "value7"), New.list(store.getMetaData(7)));
+        assertEquals(Arrays.asList("not a number", "last"), New.list(store.getMetaData(-1)));
+        assertNull(store.getOriginId(7));
+        assertNull(store.getGeometry(7));
+    }
+
+    /**
+     * Test that a string column of mostly distinct values is converted to
+     * text once its cardinality is known, while a column of repeated values
+     * keeps its dictionary.
+     */
+    @Test
+    public void testCardinality()
+    {
+        ColumnStore store = new ColumnStore(Arrays.<Class<?>>asList(String.class, String.class));
+        for (long id = 0; id < StoreColumn.CARDINALITY_SAMPLE_SIZE * 2; ++id)
+        {
+            store.put(id, null, Arrays.<Object>asList("id" + id, "country" + id % 200), null);
+        }
+
+        assertSame(StoreColumn.TextColumn.class, store.getColumnType(0));
+        assertSame(StoreColumn.DictionaryColumn.class, store.getColumnType(1));
+        assertEquals(Arrays.asList("id1500", "country100"), New.list(store.getMetaData(1500)));
+        assertNull(store.getCodes(new long[] { 1500 }, 0, null));
+    }
+
+    /**
+     * Test getting the codes of dictionary and enumeration columns.
+     */
+    @Test
+    public void testCodes()
+    {
+        ColumnStore store = new ColumnStore(Arrays.<Class<?>>asList(String.class, DynamicEnumerationKey.class, Double.class));
+        for (long id = 0; id < 10; ++id)
+        {
+            store.put(id, null, Arrays.<Object>asList(id == 5 ? null : "type" + id % 3,
+                    DynamicEnumerationKeyFactory.createKey((short)3, (short)4, (short)(id % 2)), Double.valueOf(id)), null);
+        }
+        long[] ids = { 0, 3, 4, 5, 100 };
+
+        MetaDataCodes codes = store.getCodes(ids, 0, null);
+        assertEquals(ids.length, codes.size());
+        assertEquals(codes.getCode(0), codes.getCode(1));
+        assertEquals(MetaDataCodes.NO_CODE, codes.getCode(3));
+        assertEquals(MetaDataCodes.NO_CODE, codes.getCode(4));
+        assertEquals("type0", codes.getValue(codes.getCode(0)));
+        assertEquals("type1", codes.getValue(codes.getCode(2)));
+        assertTrue(codes.getCode(2) < codes.getDictionarySize());
+
+        DynamicEnumerationRegistry registry = EasyMock.createMock(DynamicEnumerationRegistry.class);
+        EasyMock.expect(registry.getEnumerationValue(3, 4, 1)).andReturn("odd");
+        EasyMock.replay(registry);
+        codes = store.getCodes(ids, 1, registry);
+        assertEquals(0, codes.getCode(0));
+        assertEquals(1, codes.getCode(1));
+        assertEquals(2, codes.getDictionarySize());
+        assertEquals("odd", codes.getValue(1));
+        EasyMock.verify(registry);
+
+        assertNull(store.getCodes(ids, 2, registry));
+    }
+
+    /**
+     * Test that dynamic enumeration keys are stored as value ids, and that a
+     * key from another enumeration converts the column.
+     */
+    @Test
+    public void testEnumeration()
+    {
+        ColumnStore store = new ColumnStore(Arrays.<Class<?>>asList(DynamicEnumerationKey.class));
+        for (long id = 0; id < 300; ++id)
+        {
+            store.put(id, null, Arrays.<Object>asList(DynamicEnumerationKeyFactory.createKey((short)3, (short)4, (short)id)),
+                    null);
+        }
+        assertSame(StoreColumn.EnumerationColumn.class, store.getColumnType(0));
+        DynamicEnumerationKey key = (DynamicEnumerationKey)store.getMetaData(200).get(0);
+        assertEquals(3, key.getTypeId());
+        assertEquals(4, key.getMetaDataKeyId());
+        assertEquals(200, key.getValueId());
+
+        store.put(-1, null, Arrays.<Object>asList(DynamicEnumerationKeyFactory.createKey((short)5, (short)4, (short)1)), null);
+        assertSame(StoreColumn.ObjectColumn.class, store.getColumnType(0));
+        assertEquals(200, ((DynamicEnumerationKey)store.getMetaData(200).get(0)).getValueId());
+        assertEquals(5, ((DynamicEnumerationKey)store.getMetaData(-1).get(0)).getTypeId());
+    }
+
+    /**
+     * Test removing and replacing elements, and that meta data views do not
+     * see elements that reuse their rows.
+     */
+    @Test
+    public void testRemove()
+    {
+        ColumnStore store = new ColumnStore(Arrays.<Class<?>>asList(Long.class));
+        store.put(1, null, Arrays.<Object>asList(Long.valueOf(1)), null);
+        store.put(2, null, Arrays.<Object>asList(Long.valueOf(2)), null);
+        List<Object> view = store.getMetaData(1);
+
+        assertEquals(1, store.remove(1, 3));
+        assertEquals(1, store.size());
+        assertNull(store.getMetaData(1));
+
+        store.put(4, null, Arrays.<Object>asList(Long.valueOf(4)), null);
+        assertNull(view.get(0));
+        assertEquals(Long.valueOf(4), store.getMetaData(4).get(0));
+
+        // Replacing an element with a view of itself.
+        store.put(4, Long.valueOf(44), store.getMetaData(4), null);
+        assertEquals(Long.valueOf(4), store.getMetaData(4).get(0));
+        assertEquals(Long.valueOf(44), store.getOriginId(4));
+        store.put(2, null, null, null);
+        assertNull(store.getMetaData(2));
+
+        store.close();
+        assertEquals(0, store.size());
+    }
+
+    /**
+     * Test that removing many large text values compacts their storage.
+     */
+    @Test
+    public void testCompaction()
+    {
+        ColumnStore store = new ColumnStore(Arrays.<Class<?>>asList(Object.class));
+        char[] chars = new char[1000];
+        Arrays.fill(chars, 'x');
+        String text = new String(chars);
+        for (long id = 0; id < 5000; ++id)
+        {
+            store.put(id, null, null, text.getBytes());
+        }
+        long before = store.getOffHeapBytes();
+        long[] ids = new long[4000];
+        for (int index = 0; index < ids.length; ++index)
+        {
+            ids[index] = index;
+        }
+        store.remove(ids);
+
+        assertTrue(store.getOffHeapBytes() < before);
+        assertEquals(1000, store.getGeometry(4500).remaining());
+    }
+}
@@ -0,0 +1,233 @@
+package io.opensphere.mantle.data.cache.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.opensphere.core.util.lang.ByteString;
+import io.opensphere.mantle.data.element.DynamicMetaDataList;
+import io.opensphere.mantle.data.impl.DefaultDataTypeInfo;
+import io.opensphere.mantle.data.impl.DefaultMetaDataInfo;
+import io.opensphere.mantle.data.impl.encoder.EncodeType;
+import io.opensphere.mantle.util.compiler.DynamicCompiler;
+import io.opensphere.mantle.util.compiler.DynamicCompilerUnavailableException;
+import io.opensphere.mantle.util.dynenum.DynamicEnumerationKey;
+import io.opensphere.mantle.util.dynenum.impl.DynamicEnumerationCombinedLongKey;
+
+/**
+ * Tests for the typed serialized form of generated {@link DynamicMetaDataList}
+ * classes, written by {@link DynamicMetaDataList#write(java.io.DataOutput)} and
+ * read by {@link DynamicMetaDataList#read(java.io.DataInput)}.
+ */
+public class DynamicMetaDataListSerializationTest
+{
+    /** The column classes, one for each kind of generated field. */
+    private static final List<Class<?>> COLUMN_CLASSES = Arrays.asList(Boolean.class, Byte.class, Short.class, Integer.class,
+            Long.class, Float.class, Double.class, Date.class, String.class, ByteString.class, DynamicEnumerationKey.class,
+            BigDecimal.class);
+
+    /** A value for each column. */
+    private static final List<Object> VALUES = Arrays.asList(Boolean.TRUE, Byte.valueOf((byte)-3), Short.valueOf((short)1234),
+            Integer.valueOf(-56789), Long.valueOf(1L << 40), Float.valueOf(1.5f), Double.valueOf(-2.25), new Date(1500000000000L),
+            "text \u00e9", new ByteString("bytes"), new DynamicEnumerationCombinedLongKey((short)1, (short)10, (short)3),
+            new BigDecimal("12.5"));
+
+    /** The generated list class. */
+    private static Class<?> ourListClass;
+
+    /**
+     * Generate and compile a list class with a column of each kind.
+     *
+     * @throws ClassNotFoundException If the class cannot be compiled.
+     */
+    @BeforeClass
+    public static void compileListClass() throws ClassNotFoundException
+    {
+        DynamicCompiler compiler;
+        try
+        {
+            compiler = new DynamicCompiler();
+        }
+        catch (DynamicCompilerUnavailableException e)
+        {
+            compiler = null;
+        }
+        Assume.assumeNotNull(compiler);
+
+        DefaultMetaDataInfo metaDataInfo = new DefaultMetaDataInfo();
+        for (int index = 0; index < COLUMN_CLASSES.size(); ++index)
+        {
+            metaDataInfo.addKey("column" + index, COLUMN_CLASSES.get(index), null);
+        }
+        DefaultDataTypeInfo dataType = new DefaultDataTypeInfo(null, "test", "serializationTest", "Serialization Test",
+                "Serialization Test", false, metaDataInfo);
+        DynamicMetaDataListCodeGenerator generator = new DynamicMetaDataListCodeGenerator("SerializationTest", 0, dataType,
+                123456);
+        ourListClass = compiler.compileToClass(generator.getFullyQualifiedClassName(), generator.generateSource());
+        assertNotNull(ourListClass);
+    }
+
+    /**
+     * Test writing and reading a list with a value in every column.
+     *
+     * @throws ReflectiveOperationException If the list cannot be created.
+     * @throws IOException If the test fails.
+     */
+    @Test
+    public void testRoundTrip() throws ReflectiveOperationException, IOException
+    {
+        DynamicMetaDataList list = newList();
+        for (int index = 0; index < VALUES.size(); ++index)
+        {
+            list.set(index, VALUES.get(index));
+        }
+        assertValues(VALUES, list.getValues());
+
+        DynamicMetaDataList copy = newList();
+        copy.read(new DataInputStream(new ByteArrayInputStream(write(list))));
+        assertValues(VALUES, copy.getValues());
+    }
+
+    /**
+     * Test writing and reading a list with no values set.
+     *
+     * @throws ReflectiveOperationException If the list cannot be created.
+     * @throws IOException If the test fails.
+     */
+    @Test
+    public void testRoundTripEmpty() throws ReflectiveOperationException, IOException
+    {
+        DynamicMetaDataList list = newList();
+        DynamicMetaDataList copy = newList();
+        for (int index = 0; index < VALUES.size(); ++index)
+        {
+            copy.set(index, VALUES.get(index));
+        }
+        copy.read(new DataInputStream(new ByteArrayInputStream(write(list))));
+        assertValues(list.getValues(), copy.getValues());
+    }
+
+    /**
+     * Test that lists written one after another are each read back with
+     * exactly the bytes that were written for them.
+     *
+     * @throws ReflectiveOperationException If the list cannot be created.
+     * @throws IOException If the test fails.
+     */
+    @Test
+    public void testConsecutiveLists() throws ReflectiveOperationException, IOException
+    {
+        DynamicMetaDataList full = newList();
+        for (int index = 0; index < VALUES.size(); ++index)
+        {
+            full.set(index, VALUES.get(index));
+        }
+        DynamicMetaDataList empty = newList();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(baos);
+        full.write(out);
+        empty.write(out);
+        full.write(out);
+        out.writeInt(42);
+        out.flush();
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(baos.toByteArray()));
+        DynamicMetaDataList copy = newList();
+        copy.read(in);
+        assertValues(VALUES, copy.getValues());
+        copy.read(in);
+        assertValues(empty.getValues(), copy.getValues());
+        copy.read(in);
+        assertValues(VALUES, copy.getValues());
+        assertEquals(42, in.readInt());
+    }
+
+    /**
+     * Test that decoding a typed list whose class is not registered fails
+     * instead of returning a partly read list.
+     *
+     * @throws IOException If the test fails.
+     */
+    @Test(expected = IOException.class)
+    public void testUnknownTypeHashCode() throws IOException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(baos);
+        out.writeByte(EncodeType.DYNAMIC_METADATALIST_TYPED.code());
+        out.writeInt(-987654321);
+        out.writeLong(0L);
+        out.flush();
+
+        DiskCacheDecodeHelper.decodeMetaDataList(new ByteArrayInputStream(baos.toByteArray()));
+    }
+
+    /**
+     * Verify the values of a list. Dynamic enumeration keys are compared by
+     * their ids, since they do not implement equals.
+     *
+     * @param expected The expected values.
+     * @param actual The actual values.
+     */
+    private static void assertValues(List<?> expected, List<?> actual)
+    {
+        assertEquals(expected.size(), actual.size());
+        for (int index = 0; index < expected.size(); ++index)
+        {
+            Object expectedValue = expected.get(index);
+            Object actualValue = actual.get(index);
+            if (expectedValue instanceof DynamicEnumerationKey && actualValue instanceof DynamicEnumerationKey)
+            {
+                DynamicEnumerationKey expectedKey = (DynamicEnumerationKey)expectedValue;
+                DynamicEnumerationKey actualKey = (DynamicEnumerationKey)actualValue;
+                assertEquals(expectedKey.getTypeId(), actualKey.getTypeId());
+                assertEquals(expectedKey.getMetaDataKeyId(), actualKey.getMetaDataKeyId());
+                assertEquals(expectedKey.getValueId(), actualKey.getValueId());
+            }
+            else
+            {
+                assertEquals("Column " + index, expectedValue, actualValue);
+            }
+        }
+    }
+
+    /**
+     * Create an instance of the generated list class.
+     *
+     * @return The list.
+     * @throws ReflectiveOperationException If the list cannot be created.
+     */
+    private static DynamicMetaDataList newList() throws ReflectiveOperationException
+    {
+        return (DynamicMetaDataList)ourListClass.getDeclaredConstructor().newInstance();
+    }
+
+    /**
+     * Write a list in its typed form.
+     *
+     * @param list The list.
+     * @return The bytes.
+     * @throws IOException If the list cannot be written.
+     */
+    private static byte[] write(DynamicMetaDataList list) throws IOException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(baos);
+        list.write(out);
+        out.flush();
+        return baos.toByteArray();
+    }
+}
@@ -0,0 +1,209 @@
+package io.opensphere.mantle.data.cache.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for {@link SegmentStore}.
+ */
+public class SegmentStoreTest
+{
+    /** The size of the segments used by the tests. */
+    private static final int SEGMENT_SIZE = 1024;
+
+    /** The directory for the segment files. */
+    private File myDirectory;
+
+    /** The store under test. */
+    private SegmentStore myStore;
+
+    /**
+     * Create the store.
+     *
+     * @throws IOException If the directory cannot be created.
+     */
+    @Before
+    public void setUp() throws IOException
+    {
+        myDirectory = Files.createTempDirectory("segmentStoreTest").toFile();
+        myStore = new SegmentStore(myDirectory, SEGMENT_SIZE);
+    }
+
+    /**
+     * Close the store.
+     */
+    @After
+    public void tearDown()
+    {
+        myStore.close();
+        myDirectory.delete();
+    }
+
+    /**
+     * Test appending and reading records, including replacing a record and
+     * rolling over to a new segment.
+     *
+     * @throws IOException If the test fails.
+     */
+    @Test
+    public void testAppendAndGet() throws IOException
+    {
+        for (long id = 0; id < 20; ++id)
+        {
+            myStore.append(id, createRecord(id, 100));
+        }
+        assertTrue(myStore.getSegmentCount() > 1);
+        for (long id = 0; id < 20; ++id)
+        {
+            assertRecord(id, 100, get(id));
+        }
+        assertNull(get(20));
+
+        myStore.append(3, createRecord(33, 10));
+        assertRecord(33, 10, get(3));
+    }
+
+    /**
+     * Test removing records and compacting the store.
+     *
+     * @throws IOException If the test fails.
+     */
+    @Test
+    public void testRemoveAndCompact() throws IOException
+    {
+        for (long id = 0; id < 40; ++id)
+        {
+            myStore.append(id, createRecord(id, 100));
+        }
+        int segmentCount = myStore.getSegmentCount();
+        assertFalse(myStore.isCompactionNeeded());
+
+        long[] removeIds = new long[30];
+        for (int index = 0; index < removeIds.length; ++index)
+        {
+            removeIds[index] = index;
+        }
+        assertEquals(30, myStore.remove(removeIds));
+        assertEquals(0, myStore.remove(0L));
+        assertNull(get(0));
+        assertTrue(myStore.isCompactionNeeded());
+
+        assertTrue(myStore.compact() > 0);
+        assertTrue(myStore.getSegmentCount() < segmentCount);
+        assertEquals(myStore.getLiveBytes(), 10 * (100 + Long.BYTES + Integer.BYTES));
+        for (long id = 30; id < 40; ++id)
+        {
+            assertRecord(id, 100, get(id));
+        }
+    }
+
+    /**
+     * Test that emptied segments are reused or deleted, so the number of
+     * segment files stays the same while records are replaced.
+     *
+     * @throws IOException If the test fails.
+     */
+    @Test
+    public void testSegmentReuse() throws IOException
+    {
+        for (long id = 0; id < 40; ++id)
+        {
+            myStore.append(id, createRecord(id, 100));
+        }
+        int fileCount = -1;
+        for (int round = 0; round < 3; ++round)
+        {
+            long[] removeIds = new long[40];
+            for (int index = 0; index < removeIds.length; ++index)
+            {
+                removeIds[index] = round * 40 + index;
+            }
+            myStore.remove(removeIds);
+            for (long id = (round + 1) * 40; id < (round + 2) * 40; ++id)
+            {
+                myStore.append(id, createRecord(id, 100));
+            }
+            myStore.compact();
+            if (fileCount == -1)
+            {
+                fileCount = myDirectory.list().length;
+            }
+            assertEquals(fileCount, myDirectory.list().length);
+        }
+        for (long id = 120; id < 160; ++id)
+        {
+            assertRecord(id, 100, get(id));
+        }
+    }
+
+    /**
+     * Test that closing the store deletes the segment files.
+     *
+     * @throws IOException If the test fails.
+     */
+    @Test
+    public void testClose() throws IOException
+    {
+        myStore.append(1, createRecord(1, 10));
+        assertTrue(myDirectory.list().length > 0);
+        myStore.close();
+        assertEquals(0, myDirectory.list().length);
+    }
+
+    /**
+     * Verify the contents of a record.
+     *
+     * @param seed The seed used to create the record.
+     * @param length The expected length of the record.
+     * @param actual The record.
+     */
+    private void assertRecord(long seed, int length, ByteBuffer actual)
+    {
+        assertEquals(ByteBuffer.wrap(createRecord(seed, length)), actual);
+    }
+
+    /**
+     * Get a copy of a record from the store.
+     *
+     * @param id The record id.
+     * @return The record, or {@code null} if it is not in the store.
+     * @throws IOException If the record cannot be read.
+     */
+    private ByteBuffer get(long id) throws IOException
+    {
+        return myStore.read(id, record ->
+        {
+            ByteBuffer copy = ByteBuffer.allocate(record.remaining());
+            copy.put(record).flip();
+            return copy;
+        });
+    }
+
+    /**
+     * Create a record.
+     *
+     * @param seed The seed for the contents.
+     * @param length The length of the record.
+     * @return The record.
+     */
+    private byte[] createRecord(long seed, int length)
+    {
+        byte[] record = new byte[length];
+        for (int index = 0; index < length; ++index)
+        {
+            record[index] = (byte)(seed + index);
+        }
+        return record;
+    }
+}
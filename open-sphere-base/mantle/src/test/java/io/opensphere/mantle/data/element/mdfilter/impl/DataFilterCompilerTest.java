@@ -0,0 +1,234 @@
+package io.opensphere.mantle.data.element.mdfilter.impl;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.opensphere.core.datafilter.DataFilterCriteria;
+import io.opensphere.core.datafilter.DataFilterGroup;
+import io.opensphere.core.datafilter.DataFilterOperators.Conditional;
+import io.opensphere.core.datafilter.DataFilterOperators.Logical;
+import io.opensphere.core.datafilter.impl.ImmutableDataFilterCriteria;
+import io.opensphere.core.datafilter.impl.ImmutableDataFilterGroup;
+import io.opensphere.core.util.collections.New;
+import io.opensphere.mantle.data.MetaDataInfo;
+import io.opensphere.mantle.data.element.DataElement;
+import io.opensphere.mantle.data.element.impl.DefaultDataElement;
+import io.opensphere.mantle.data.element.impl.MDILinkedMetaDataProvider;
+import io.opensphere.mantle.data.element.impl.SimpleMetaDataProvider;
+import io.opensphere.mantle.data.impl.DefaultMetaDataInfo;
+import io.opensphere.mantle.util.dynenum.impl.DynamicEnumerationRegistryImpl;
+
+/** Tests for {@link DataFilterCompiler}. */
+public class DataFilterCompilerTest
+{
+    /** The name column. */
+    private static final String NAME = "NAME";
+
+    /** The speed column. */
+    private static final String SPEED = "SPEED";
+
+    /** The column layout. */
+    private static final MetaDataInfo META_DATA_INFO = new DefaultMetaDataInfo(Arrays.asList(NAME, SPEED));
+
+    /** Test an AND group. */
+    @Test
+    public void testAnd()
+    {
+        DataFilterGroup group = group(Logical.AND, criteria(NAME, Conditional.LIKE, "*b*"),
+                criteria(SPEED, Conditional.GT, "10"));
+        assertMatchesEvaluator(group, 0b0010_1000);
+    }
+
+    /** Test an OR group containing a nested group. */
+    @Test
+    public void testOrWithNestedGroup()
+    {
+        DataFilterGroup nested = group(Logical.AND, criteria(SPEED, Conditional.GTE, "40"),
+                criteria(SPEED, Conditional.LT, "60"));
+        DataFilterGroup group = new ImmutableDataFilterGroup("or", Logical.OR,
+                Collections.singletonList(criteria(NAME, Conditional.EQ, "abe")), Collections.singletonList(nested), null);
+        assertMatchesEvaluator(group, 0b0011_0001);
+    }
+
+    /** Test a NOT group and a criteria on a column that does not exist. */
+    @Test
+    public void testNotAndMissingColumn()
+    {
+        assertMatchesEvaluator(group(Logical.NOT, criteria(NAME, Conditional.CONTAINS, "b")), 0b1101_0100);
+        assertMatchesEvaluator(group(Logical.AND, criteria("MISSING", Conditional.EMPTY, "")), 0);
+        assertMatchesEvaluator(group(Logical.NOT, criteria("MISSING", Conditional.EMPTY, "")), 0b1111_1111);
+    }
+
+    /** Test that the cheapest criteria are evaluated first. */
+    @Test
+    public void testCostOrder()
+    {
+        CompiledDataFilter like = DataFilterCompiler.compile(group(Logical.AND, criteria(NAME, Conditional.LIKE, "*b*")),
+                META_DATA_INFO, null);
+        CompiledDataFilter equals = DataFilterCompiler.compile(group(Logical.AND, criteria(NAME, Conditional.EQ, "b")),
+                META_DATA_INFO, null);
+        CompiledDataFilter function = DataFilterCompiler
+                .compile(group(Logical.AND, criteria("HOUR(" + NAME + ")", Conditional.EQ, "1")), META_DATA_INFO, null);
+        Assert.assertTrue(equals.getCost() < like.getCost());
+        Assert.assertTrue(like.getCost() < function.getCost());
+    }
+
+    /**
+     * Test a criteria on a column of dynamic enumeration keys, including after
+     * the enumeration is recreated with the value ids reassigned.
+     */
+    @Test
+    public void testEnumerationValues()
+    {
+        DynamicEnumerationRegistryImpl registry = new DynamicEnumerationRegistryImpl();
+        CompiledDataFilter compiled = DataFilterCompiler.compile(group(Logical.AND, criteria(NAME, Conditional.EQ, "abe")),
+                META_DATA_INFO, registry);
+        for (String[] names : Arrays.asList(new String[] { "abe", "bo", "abe", "cy", "bo" }, new String[] { "cy", "abe", "cy" }))
+        {
+            registry.destroyEnumerations("type");
+            registry.createEnumeration("type", NAME, String.class);
+            for (int pass = 0; pass < 2; ++pass)
+            {
+                for (String name : names)
+                {
+                    DataElement element = new DefaultDataElement(0, null, null, new MDILinkedMetaDataProvider(META_DATA_INFO,
+                            Arrays.<Object>asList(registry.addValue("type", NAME, name), Double.valueOf(1))));
+                    Assert.assertEquals(Boolean.valueOf("abe".equals(name)), Boolean.valueOf(compiled.accepts(element)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Test a criteria on a column whose keys alternate between two
+     * enumerations that reuse the same value ids, and on an enumeration with
+     * more values than the results start with.
+     */
+    @Test
+    public void testEnumerationValuesFromTwoTypes()
+    {
+        DynamicEnumerationRegistryImpl registry = new DynamicEnumerationRegistryImpl();
+        CompiledDataFilter compiled = DataFilterCompiler.compile(group(Logical.AND, criteria(NAME, Conditional.EQ, "abe")),
+                META_DATA_INFO, registry);
+        registry.createEnumeration("type1", NAME, String.class);
+        registry.createEnumeration("type2", NAME, String.class);
+        List<String> names1 = New.list();
+        List<String> names2 = New.list();
+        for (int index = 0; index < 200; ++index)
+        {
+            names1.add(index % 2 == 0 ? "abe" : "name" + index);
+            names2.add(index % 2 == 0 ? "name" + index : "abe");
+        }
+        for (int pass = 0; pass < 2; ++pass)
+        {
+            for (int index = 0; index < names1.size(); ++index)
+            {
+                for (String type : Arrays.asList("type1", "type2"))
+                {
+                    String name = ("type1".equals(type) ? names1 : names2).get(index);
+                    DataElement element = new DefaultDataElement(0, null, null, new MDILinkedMetaDataProvider(META_DATA_INFO,
+                            Arrays.<Object>asList(registry.addValue(type, NAME, name), Double.valueOf(1))));
+                    Assert.assertEquals(name, Boolean.valueOf("abe".equals(name)), Boolean.valueOf(compiled.accepts(element)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Verifies that the compiled filter accepts the same elements as a
+     * {@link DataFilterGroupEvaluator}, both one at a time and as a batch, and
+     * with and without the column layout.
+     *
+     * @param group the group
+     * @param expectedBits the indices of the elements expected to pass, as bits
+     */
+    private static void assertMatchesEvaluator(DataFilterGroup group, long expectedBits)
+    {
+        List<DataElement> linkedElements = elements(true);
+        List<DataElement> simpleElements = elements(false);
+        BitSet expected = BitSet.valueOf(new long[] { expectedBits });
+
+        DataFilterGroupEvaluator evaluator = new DataFilterGroupEvaluator(group, null);
+        for (MetaDataInfo metaDataInfo : Arrays.asList(META_DATA_INFO, null))
+        {
+            CompiledDataFilter compiled = DataFilterCompiler.compile(group, metaDataInfo, null);
+            for (List<DataElement> elements : Arrays.asList(linkedElements, simpleElements))
+            {
+                for (int index = 0; index < elements.size(); ++index)
+                {
+                    DataElement element = elements.get(index);
+                    Assert.assertEquals(Boolean.valueOf(expected.get(index)), Boolean.valueOf(evaluator.accepts(element)));
+                    Assert.assertEquals(Boolean.valueOf(expected.get(index)), Boolean.valueOf(compiled.accepts(element)));
+                }
+
+                BitSet candidates = new BitSet();
+                candidates.set(0, elements.size());
+                compiled.filter(elements, candidates);
+                Assert.assertEquals(expected, candidates);
+            }
+        }
+    }
+
+    /**
+     * Creates a criteria.
+     *
+     * @param field the field
+     * @param conditional the conditional
+     * @param value the value
+     * @return the criteria
+     */
+    private static DataFilterCriteria criteria(String field, Conditional conditional, String value)
+    {
+        return new ImmutableDataFilterCriteria(field, value, conditional, null);
+    }
+
+    /**
+     * Creates the test elements.
+     *
+     * @param linked whether the meta data should be linked to the column
+     *            layout
+     * @return the elements
+     */
+    private static List<DataElement> elements(boolean linked)
+    {
+        String[] names = { "abe", "bo", "cy", "bob", "dee", "rob", "al", "ed" };
+        Double[] speeds = { Double.valueOf(5), Double.valueOf(10), Double.valueOf(15), Double.valueOf(20),
+            Double.valueOf(40), Double.valueOf(50), Double.valueOf(60), Double.valueOf(70), };
+        List<DataElement> elements = New.list(names.length);
+        for (int index = 0; index < names.length; ++index)
+        {
+            if (linked)
+            {
+                elements.add(new DefaultDataElement(index, null, null,
+                        new MDILinkedMetaDataProvider(META_DATA_INFO, Arrays.asList(names[index], speeds[index]))));
+            }
+            else
+            {
+                Map<String, Serializable> dataMap = New.map();
+                dataMap.put(NAME, names[index]);
+                dataMap.put(SPEED, speeds[index]);
+                elements.add(new DefaultDataElement(index, null, null, new SimpleMetaDataProvider(dataMap)));
+            }
+        }
+        return elements;
+    }
+
+    /**
+     * Creates a group of criteria.
+     *
+     * @param operator the operator
+     * @param criteria the criteria
+     * @return the group
+     */
+    private static DataFilterGroup group(Logical operator, DataFilterCriteria... criteria)
+    {
+        return new ImmutableDataFilterGroup("group", operator, Arrays.asList(criteria), null, null);
+    }
+}
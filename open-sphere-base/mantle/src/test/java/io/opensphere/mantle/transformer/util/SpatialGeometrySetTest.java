@@ -0,0 +1,156 @@
+package io.opensphere.mantle.transformer.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+import io.opensphere.core.geometry.Geometry;
+import io.opensphere.core.geometry.PointGeometry;
+import io.opensphere.core.geometry.PolylineGeometry;
+import io.opensphere.core.geometry.renderproperties.DefaultPointRenderProperties;
+import io.opensphere.core.geometry.renderproperties.PolylineRenderProperties;
+import io.opensphere.core.math.Vector3d;
+import io.opensphere.core.model.GeographicPosition;
+import io.opensphere.core.model.LatLonAlt;
+import io.opensphere.core.util.collections.New;
+
+/**
+ * Test for {@link SpatialGeometrySet}.
+ */
+public class SpatialGeometrySetTest
+{
+    /**
+     * Test adding, querying, and removing points.
+     */
+    @Test
+    public void testPoints()
+    {
+        SpatialGeometrySet set = new SpatialGeometrySet();
+        PointGeometry[][] points = new PointGeometry[10][10];
+        for (int lat = 0; lat < 10; ++lat)
+        {
+            for (int lon = 0; lon < 10; ++lon)
+            {
+                points[lat][lon] = createPoint(lat, lon);
+                assertTrue(set.add(points[lat][lon]));
+            }
+        }
+        assertFalse(set.add(points[0][0]));
+        assertEquals(100, set.size());
+
+        Envelope bounds = createEnvelope(2, 2, 4, 4);
+        Collection<Geometry> result = set.query(bounds);
+        assertEquals(9, result.size());
+        for (int lat = 2; lat <= 4; ++lat)
+        {
+            for (int lon = 2; lon <= 4; ++lon)
+            {
+                assertTrue(result.contains(points[lat][lon]));
+            }
+        }
+
+        assertTrue(set.remove(points[3][3]));
+        assertFalse(set.remove(points[3][3]));
+        set.removeAll(Arrays.asList(points[2][2], points[2][3]));
+        for (Iterator<Geometry> iter = set.iterator(); iter.hasNext();)
+        {
+            if (iter.next() == points[4][4])
+            {
+                iter.remove();
+            }
+        }
+        assertEquals(96, set.size());
+        assertEquals(5, set.query(bounds).size());
+
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertTrue(set.query(bounds).isEmpty());
+    }
+
+    /**
+     * Test querying polylines and geometries that cannot be indexed.
+     */
+    @Test
+    public void testPolylinesAndUnindexed()
+    {
+        SpatialGeometrySet set = new SpatialGeometrySet();
+        PolylineGeometry inside = createLine(1, 1, 3, 3);
+        PolylineGeometry crossing = createLine(0, 0, 9, 9);
+        PolylineGeometry outside = createLine(7, 7, 9, 8);
+        Geometry unindexed = EasyMock.createNiceMock(Geometry.class);
+        EasyMock.replay(unindexed);
+        set.addAll(Arrays.asList(inside, crossing, outside, unindexed));
+
+        Collection<Geometry> result = set.query(createEnvelope(2, 2, 4, 4));
+        assertEquals(3, result.size());
+        assertTrue(result.contains(inside));
+        assertTrue(result.contains(crossing));
+        assertTrue(result.contains(unindexed));
+
+        set.remove(unindexed);
+        assertEquals(2, set.query(createEnvelope(2, 2, 4, 4)).size());
+    }
+
+    /**
+     * Create an envelope from the coordinates of two positions.
+     *
+     * @param lat1 the latitude of the first position
+     * @param lon1 the longitude of the first position
+     * @param lat2 the latitude of the second position
+     * @param lon2 the longitude of the second position
+     * @return the envelope
+     */
+    private Envelope createEnvelope(double lat1, double lon1, double lat2, double lon2)
+    {
+        Vector3d vec1 = new GeographicPosition(LatLonAlt.createFromDegrees(lat1, lon1)).asVector3d();
+        Vector3d vec2 = new GeographicPosition(LatLonAlt.createFromDegrees(lat2, lon2)).asVector3d();
+        return new Envelope(vec1.getX(), vec2.getX(), vec1.getY(), vec2.getY());
+    }
+
+    /**
+     * Create a polyline.
+     *
+     * @param lat1 the latitude of the first vertex
+     * @param lon1 the longitude of the first vertex
+     * @param lat2 the latitude of the second vertex
+     * @param lon2 the longitude of the second vertex
+     * @return the polyline
+     */
+    private PolylineGeometry createLine(double lat1, double lon1, double lat2, double lon2)
+    {
+        List<GeographicPosition> vertices = New.list(2);
+        vertices.add(new GeographicPosition(LatLonAlt.createFromDegrees(lat1, lon1)));
+        vertices.add(new GeographicPosition(LatLonAlt.createFromDegrees(lat2, lon2)));
+        PolylineGeometry.Builder<GeographicPosition> builder = new PolylineGeometry.Builder<>();
+        builder.setVertices(vertices);
+
+        PolylineRenderProperties renderProperties = EasyMock.createNiceMock(PolylineRenderProperties.class);
+        EasyMock.expect(Float.valueOf(renderProperties.getWidth())).andReturn(Float.valueOf(1f)).anyTimes();
+        EasyMock.replay(renderProperties);
+        return new PolylineGeometry(builder, renderProperties, null);
+    }
+
+    /**
+     * Create a point.
+     *
+     * @param lat the latitude
+     * @param lon the longitude
+     * @return the point
+     */
+    private PointGeometry createPoint(double lat, double lon)
+    {
+        PointGeometry.Builder<GeographicPosition> builder = new PointGeometry.Builder<>();
+        builder.setPosition(new GeographicPosition(LatLonAlt.createFromDegrees(lat, lon)));
+        return new PointGeometry(builder, new DefaultPointRenderProperties(10, true, true, false), null);
+    }
+}
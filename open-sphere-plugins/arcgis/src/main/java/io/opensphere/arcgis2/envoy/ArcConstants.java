@@ -29,6 +29,9 @@ public final class ArcConstants
     /** The Constant DATE_FORMAT_3. */
     public static final String DATE_FORMAT_3 = "yyyy-MM-dd HH:mm:ss";
 
+    /** The default maximum number of feature requests in flight for a layer. */
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+
     /** The Constant FEATURES_KEY. */
     public static final String FEATURES_KEY = "features";
 
@@ -44,6 +47,13 @@ public final class ArcConstants
     /** The Constant GEOMETRY_TYPE_KEY. */
     public static final String GEOMETRY_TYPE_KEY = "geometryType";
 
+    /**
+     * The preference key for the maximum number of feature requests in flight
+     * for a layer. The key suffixed with "." and the host and port of a server
+     * overrides it for that server.
+     */
+    public static final String MAX_CONCURRENT_REQUESTS_PREFERENCE = "ArcGIS.MaxConcurrentRequests";
+
     /** The Constant time zone for GMT. */
     public static final TimeZone TIME_ZONE_GMT00 = TimeZone.getTimeZone("GMT+00:00");
 
@@ -0,0 +1,202 @@
+package io.opensphere.arcgis2.envoy;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+
+import io.opensphere.core.cache.CacheException;
+import io.opensphere.core.util.collections.New;
+
+/**
+ * Fetches a sequence of batches, keeping a fixed number of batch requests in
+ * flight. Each batch is requested and parsed on a thread of the executor, so
+ * the parsing of one batch overlaps with the downloading of the others. The
+ * results are handed to the receiver on the calling thread, in batch order, as
+ * soon as all the batches before them are done.
+ *
+ * @param <T> The type of the batch results.
+ */
+public class ArcRestBatchFetcher<T>
+{
+    /** The executor that runs the requests. */
+    private final Executor myExecutor;
+
+    /** The maximum number of requests in flight. */
+    private final int myMaxInFlight;
+
+    /**
+     * Constructor.
+     *
+     * @param executor The executor that runs the requests. It must be able to
+     *            run {@code maxInFlight} requests at once for them to overlap.
+     * @param maxInFlight The maximum number of requests in flight.
+     */
+    public ArcRestBatchFetcher(Executor executor, int maxInFlight)
+    {
+        if (maxInFlight < 1)
+        {
+            throw new IllegalArgumentException("The maximum number of requests must be positive: " + maxInFlight);
+        }
+        myExecutor = executor;
+        myMaxInFlight = maxInFlight;
+    }
+
+    /**
+     * Fetches the batches. If a request fails or the calling thread is
+     * interrupted, the outstanding requests are cancelled; the results
+     * received before that are kept by the receiver.
+     *
+     * @param batchCount The number of batches.
+     * @param request The request for one batch.
+     * @param receiver The receiver of the results.
+     * @throws IOException If a request fails, or {@link InterruptedIOException}
+     *             if the calling thread is interrupted.
+     * @throws CacheException If the receiver fails.
+     */
+    public void fetch(int batchCount, BatchRequest<? extends T> request, BatchReceiver<? super T> receiver)
+        throws IOException, CacheException
+    {
+        CompletionService<T> completionService = new ExecutorCompletionService<>(myExecutor);
+        Map<Future<T>, Integer> pending = New.map();
+        Map<Integer, T> completed = New.map();
+        int submitted = 0;
+        int received = 0;
+        try
+        {
+            for (; submitted < Math.min(myMaxInFlight, batchCount); ++submitted)
+            {
+                submit(completionService, request, submitted, pending);
+            }
+
+            while (received < batchCount)
+            {
+                Future<T> future = completionService.take();
+                Integer batchIndex = pending.remove(future);
+                completed.put(batchIndex, getResult(future));
+                if (submitted < batchCount)
+                {
+                    submit(completionService, request, submitted++, pending);
+                }
+
+                List<T> ready = New.list();
+                for (Integer next = Integer.valueOf(received); completed.containsKey(next); next = Integer.valueOf(received))
+                {
+                    ready.add(completed.remove(next));
+                    ++received;
+                }
+                if (!ready.isEmpty())
+                {
+                    receiver.receive(ready);
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            InterruptedIOException ex = new InterruptedIOException("Interrupted after receiving " + received + " of "
+                    + batchCount + " batches.");
+            ex.initCause(e);
+            throw ex;
+        }
+        finally
+        {
+            for (Future<T> future : pending.keySet())
+            {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Gets the result of a finished request.
+     *
+     * @param future The future for the request.
+     * @return The result.
+     * @throws IOException If the request failed.
+     */
+    private T getResult(Future<T> future) throws IOException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException e)
+        {
+            // The future is done, so this cannot happen.
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException)cause;
+            }
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException)cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error)cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Submits the request for a batch.
+     *
+     * @param completionService The completion service.
+     * @param request The request.
+     * @param batchIndex The index of the batch.
+     * @param pending The batch indices of the pending requests.
+     */
+    private void submit(CompletionService<T> completionService, BatchRequest<? extends T> request, int batchIndex,
+            Map<Future<T>, Integer> pending)
+    {
+        pending.put(completionService.submit(() -> request.request(batchIndex)), Integer.valueOf(batchIndex));
+    }
+
+    /**
+     * The request for one batch.
+     *
+     * @param <T> The type of the result.
+     */
+    @FunctionalInterface
+    public interface BatchRequest<T>
+    {
+        /**
+         * Requests and parses a batch.
+         *
+         * @param batchIndex The index of the batch.
+         * @return The result.
+         * @throws IOException If the request fails.
+         */
+        T request(int batchIndex) throws IOException;
+    }
+
+    /**
+     * The receiver of the batch results.
+     *
+     * @param <T> The type of the results.
+     */
+    @FunctionalInterface
+    public interface BatchReceiver<T>
+    {
+        /**
+         * Receives the next results, in batch order.
+         *
+         * @param results The results.
+         * @throws CacheException If the results cannot be stored.
+         */
+        void receive(List<? extends T> results) throws CacheException;
+    }
+}
@@ -1,11 +1,14 @@
 package io.opensphere.arcgis2.envoy;
 
 import java.io.IOException;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import com.vividsolutions.jts.geom.Geometry;
 
@@ -33,11 +36,13 @@ import io.opensphere.core.data.util.Query;
 import io.opensphere.core.data.util.Satisfaction;
 import io.opensphere.core.datafilter.DataFilter;
 import io.opensphere.core.model.time.TimeSpan;
+import io.opensphere.core.preferences.Preferences;
 import io.opensphere.core.server.HttpServer;
 import io.opensphere.core.server.ServerProvider;
 import io.opensphere.core.util.collections.CollectionUtilities;
 import io.opensphere.core.util.collections.New;
 import io.opensphere.core.util.io.CancellableInputStream;
+import io.opensphere.core.util.lang.NamedThreadFactory;
 import io.opensphere.core.util.net.HttpUtilities;
 import io.opensphere.core.util.taskactivity.TaskActivity;
 import io.opensphere.server.util.JsonUtils;
@@ -47,6 +52,16 @@ import io.opensphere.server.util.JsonUtils;
  */
 public class ArcRestEnvoy extends AbstractEnvoy implements DataRegistryDataProvider
 {
+    /** The number of features requested at a time. */
+    private static final int BATCH_SIZE = 200;
+
+    /**
+     * The executor for the feature requests. Each query limits how many of its
+     * requests are in flight, so this does not limit the number of threads.
+     */
+    private final ExecutorService myRequestExecutor = Executors
+            .newCachedThreadPool(new NamedThreadFactory("ArcGIS-Request"));
+
     /** The server provider. */
     private final ServerProvider<HttpServer> myServerProvider;
 
@@ -61,6 +76,13 @@ public class ArcRestEnvoy extends AbstractEnvoy implements DataRegistryDataProvi
         myServerProvider = toolbox != null ? toolbox.getServerProviderRegistry().getProvider(HttpServer.class) : null;
     }
 
+    @Override
+    public void close()
+    {
+        myRequestExecutor.shutdownNow();
+        super.close();
+    }
+
     @Override
     public void open()
     {
@@ -124,7 +146,8 @@ public class ArcRestEnvoy extends AbstractEnvoy implements DataRegistryDataProvi
     }
 
     /**
-     * Performs the query.
+     * Performs the query. The features are requested in batches, several at
+     * a time, and deposited in batch order as the batches arrive.
      *
      * @param category The data model category.
      * @param geometry The geometry to query.
@@ -138,7 +161,6 @@ public class ArcRestEnvoy extends AbstractEnvoy implements DataRegistryDataProvi
             CacheDepositReceiver queryReceiver) throws QueryException
     {
         String baseUrl = ArcGISRegistryUtils.getLayerUrl(category);
-        final int batchSize = 200;
 
         try
         {
@@ -146,13 +168,6 @@ public class ArcRestEnvoy extends AbstractEnvoy implements DataRegistryDataProvi
 
             if (objectIds != null && objectIds.length > 0)
             {
-                Collection<Response> results = New.list();
-                for (int startId = 0; startId < objectIds.length; startId += batchSize)
-                {
-                    Response response = queryFeatures(baseUrl, objectIds, startId, batchSize);
-                    results.add(response);
-                }
-
                 Collection<PropertyAccessor<Response, ?>> accessors = New.list(2);
                 accessors.add(UnserializableAccessor.getHomogeneousAccessor(ArcGISRegistryUtils.FEATURE_DESCRIPTOR));
                 accessors.add(new TimeSpanAccessor<Response>(timeSpan)
@@ -163,7 +178,13 @@ public class ArcRestEnvoy extends AbstractEnvoy implements DataRegistryDataProvi
                         return timeSpan;
                     }
                 });
-                queryReceiver.receive(new DefaultCacheDeposit<>(category, accessors, results, true, new Date(), false));
+
+                int batchCount = (objectIds.length + BATCH_SIZE - 1) / BATCH_SIZE;
+                ArcRestBatchFetcher<Response> fetcher = new ArcRestBatchFetcher<>(myRequestExecutor,
+                        getMaxConcurrentRequests(baseUrl));
+                fetcher.fetch(batchCount, batch -> queryFeatures(baseUrl, objectIds, batch * BATCH_SIZE, BATCH_SIZE),
+                        results -> queryReceiver
+                                .receive(new DefaultCacheDeposit<>(category, accessors, results, true, new Date(), false)));
             }
         }
         catch (IOException | CacheException e)
@@ -172,6 +193,25 @@ public class ArcRestEnvoy extends AbstractEnvoy implements DataRegistryDataProvi
         }
     }
 
+    /**
+     * Gets the maximum number of feature requests in flight for a layer from
+     * the preferences, using the setting for the layer's server if there is
+     * one.
+     *
+     * @param layerUrl The layer URL.
+     * @return The maximum number of requests.
+     * @throws MalformedURLException If the layer URL is not valid.
+     */
+    private int getMaxConcurrentRequests(String layerUrl) throws MalformedURLException
+    {
+        Preferences preferences = getToolbox().getPreferencesRegistry().getPreferences(ArcRestEnvoy.class);
+        int maxRequests = preferences.getInt(ArcConstants.MAX_CONCURRENT_REQUESTS_PREFERENCE,
+                ArcConstants.DEFAULT_MAX_CONCURRENT_REQUESTS);
+        String server = new URL(layerUrl).getAuthority();
+        maxRequests = preferences.getInt(ArcConstants.MAX_CONCURRENT_REQUESTS_PREFERENCE + "." + server, maxRequests);
+        return Math.max(1, maxRequests);
+    }
+
     /**
      * Queries the object IDs for the given items.
      *
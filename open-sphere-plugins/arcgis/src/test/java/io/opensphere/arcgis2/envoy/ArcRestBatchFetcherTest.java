@@ -0,0 +1,122 @@
+package io.opensphere.arcgis2.envoy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import io.opensphere.core.cache.CacheException;
+import io.opensphere.core.util.collections.New;
+
+/**
+ * Unit test for {@link ArcRestBatchFetcher}.
+ */
+public class ArcRestBatchFetcherTest
+{
+    /**
+     * Tests that the results are received in batch order when the requests
+     * finish out of order, and that no more than the maximum number of
+     * requests are in flight.
+     *
+     * @throws IOException Bad IO.
+     * @throws CacheException Bad cache.
+     * @throws InterruptedException If the test is interrupted.
+     */
+    @Test
+    public void testFetch() throws IOException, CacheException, InterruptedException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try
+        {
+            AtomicInteger inFlight = new AtomicInteger();
+            AtomicInteger maxInFlight = new AtomicInteger();
+            List<Integer> results = New.list();
+
+            ArcRestBatchFetcher<Integer> fetcher = new ArcRestBatchFetcher<>(executor, 3);
+            fetcher.fetch(20, batch ->
+            {
+                int count = inFlight.incrementAndGet();
+                maxInFlight.accumulateAndGet(count, Math::max);
+                try
+                {
+                    // Later batches in each group of three finish first.
+                    Thread.sleep((3 - batch % 3) * 10L);
+                }
+                catch (InterruptedException e)
+                {
+                    throw new IOException(e);
+                }
+                finally
+                {
+                    inFlight.decrementAndGet();
+                }
+                return Integer.valueOf(batch);
+            }, batchResults -> results.addAll(batchResults));
+
+            assertEquals(20, results.size());
+            for (int index = 0; index < results.size(); ++index)
+            {
+                assertEquals(index, results.get(index).intValue());
+            }
+            assertEquals(3, maxInFlight.get());
+        }
+        finally
+        {
+            executor.shutdownNow();
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Tests that a failed request stops the fetch after the results of the
+     * batches before it have been received.
+     *
+     * @throws CacheException Bad cache.
+     * @throws InterruptedException If the test is interrupted.
+     */
+    @Test
+    public void testFailure() throws CacheException, InterruptedException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            List<Integer> results = New.list();
+            ArcRestBatchFetcher<Integer> fetcher = new ArcRestBatchFetcher<>(executor, 2);
+            try
+            {
+                fetcher.fetch(10, batch ->
+                {
+                    if (batch == 5)
+                    {
+                        throw new IOException("Batch " + batch);
+                    }
+                    return Integer.valueOf(batch);
+                }, batchResults -> results.addAll(batchResults));
+                fail("Expected an exception.");
+            }
+            catch (IOException e)
+            {
+                assertEquals("Batch 5", e.getMessage());
+            }
+
+            assertTrue(results.size() <= 5);
+            for (int index = 0; index < results.size(); ++index)
+            {
+                assertEquals(index, results.get(index).intValue());
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        }
+    }
+}
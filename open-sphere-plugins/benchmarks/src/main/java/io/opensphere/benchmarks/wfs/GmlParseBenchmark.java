@@ -0,0 +1,224 @@
+package io.opensphere.benchmarks.wfs;
+
+import java.awt.Color;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.easymock.EasyMock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xml.sax.SAXException;
+
+import io.opensphere.mantle.data.BasicVisualizationInfo;
+import io.opensphere.mantle.data.LoadsTo;
+import io.opensphere.mantle.data.element.MapDataElement;
+import io.opensphere.mantle.data.impl.DefaultMetaDataInfo;
+import io.opensphere.wfs.consumer.FeatureConsumer;
+import io.opensphere.wfs.gml311.GmlCoordinateTokenizer;
+import io.opensphere.wfs.gml311.GmlSaxFeatureResponseHandler;
+import io.opensphere.wfs.layer.WFSDataType;
+
+/**
+ * Benchmarks for parsing GML 3.1.1 GetFeature responses with
+ * {@link GmlSaxFeatureResponseHandler}. The document is a generated feature
+ * collection of polygons; the layer is mocked and the features are discarded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx4g" })
+public class GmlParseBenchmark
+{
+    /** The number of features in the document. */
+    private static final int FEATURE_COUNT = 1000;
+
+    /** The name of the geometry column. */
+    private static final String GEOMETRY_COLUMN = "GEOM";
+
+    /** The name of the layer element. */
+    private static final String LAYER_NAME = "layer";
+
+    /** The generated document. */
+    private byte[] myDocument;
+
+    /** The parser factory. */
+    private SAXParserFactory myParserFactory;
+
+    /** The characters of one position list. */
+    private char[] myPositionList;
+
+    /** The layer. */
+    private WFSDataType myType;
+
+    /** The number of vertices in each polygon. */
+    @Param({ "10", "100", "1000" })
+    private int myVertexCount;
+
+    /**
+     * Create a feature collection of polygons.
+     *
+     * @param features The number of features.
+     * @param vertices The number of vertices in each polygon.
+     * @return The document text.
+     */
+    private static String createDocument(int features, int vertices)
+    {
+        Random random = new Random(1L);
+        StringBuilder document = new StringBuilder(features * (vertices * 40 + 400));
+        document.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<wfs:FeatureCollection"
+                + " xmlns:wfs=\"http://www.opengis.net/wfs\" xmlns:gml=\"http://www.opengis.net/gml\""
+                + " xmlns:bm=\"http://opensphere.io/benchmark\">\n");
+        for (int feature = 0; feature < features; ++feature)
+        {
+            document.append("<gml:featureMember><bm:").append(LAYER_NAME).append(" gml:id=\"").append(LAYER_NAME).append('.')
+                    .append(feature + 1).append("\"><bm:NAME>feature ").append(feature).append("</bm:NAME><bm:")
+                    .append(GEOMETRY_COLUMN).append("><gml:Polygon srsName=\"EPSG:4326\"><gml:exterior><gml:LinearRing>")
+                    .append("<gml:posList srsDimension=\"2\">");
+            appendRing(document, vertices, (random.nextDouble() - .5) * 340., (random.nextDouble() - .5) * 160., random);
+            document.append("</gml:posList></gml:LinearRing></gml:exterior></gml:Polygon></bm:").append(GEOMETRY_COLUMN)
+                    .append("></bm:").append(LAYER_NAME).append("></gml:featureMember>\n");
+        }
+        document.append("</wfs:FeatureCollection>\n");
+        return document.toString();
+    }
+
+    /**
+     * Append a closed ring of positions in longitude/latitude order.
+     *
+     * @param sb The string builder.
+     * @param vertices The number of vertices.
+     * @param centerLon The longitude of the center of the ring.
+     * @param centerLat The latitude of the center of the ring.
+     * @param random The random number generator.
+     */
+    private static void appendRing(StringBuilder sb, int vertices, double centerLon, double centerLat, Random random)
+    {
+        String first = null;
+        for (int vertex = 0; vertex < vertices - 1; ++vertex)
+        {
+            double angle = 2. * Math.PI * vertex / (vertices - 1);
+            double radius = .5 + random.nextDouble() * .5;
+            String position = String.format(Locale.US, "%.8f %.8f", Double.valueOf(centerLon + radius * Math.cos(angle)),
+                    Double.valueOf(centerLat + radius * Math.sin(angle)));
+            sb.append(position).append(' ');
+            if (first == null)
+            {
+                first = position;
+            }
+        }
+        sb.append(first);
+    }
+
+    /**
+     * Create a mock layer with a name column and a geometry column.
+     *
+     * @return The layer.
+     */
+    private static WFSDataType createType()
+    {
+        DefaultMetaDataInfo metaDataInfo = new DefaultMetaDataInfo();
+        metaDataInfo.addKey("NAME", String.class, GmlParseBenchmark.class);
+        metaDataInfo.setGeometryColumn(GEOMETRY_COLUMN);
+
+        BasicVisualizationInfo visInfo = EasyMock.createNiceMock(BasicVisualizationInfo.class);
+        EasyMock.expect(visInfo.getTypeColor()).andReturn(Color.WHITE).anyTimes();
+        EasyMock.expect(visInfo.getSupportedLoadsToTypes()).andReturn(EnumSet.of(LoadsTo.STATIC)).anyTimes();
+
+        WFSDataType type = EasyMock.createNiceMock(WFSDataType.class);
+        EasyMock.expect(type.getMetaDataInfo()).andReturn(metaDataInfo).anyTimes();
+        EasyMock.expect(type.getBasicVisualizationInfo()).andReturn(visInfo).anyTimes();
+        EasyMock.expect(Boolean.valueOf(type.isLatBeforeLon())).andReturn(Boolean.FALSE).anyTimes();
+        EasyMock.replay(visInfo, type);
+        return type;
+    }
+
+    /**
+     * Generate the document.
+     */
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        myType = createType();
+        myParserFactory = SAXParserFactory.newInstance();
+        myParserFactory.setNamespaceAware(true);
+        myDocument = createDocument(FEATURE_COUNT, myVertexCount).getBytes(StandardCharsets.UTF_8);
+
+        StringBuilder positionList = new StringBuilder();
+        appendRing(positionList, myVertexCount, 0., 0., new Random(2L));
+        myPositionList = positionList.toString().toCharArray();
+    }
+
+    /**
+     * Parse the whole document into data elements.
+     *
+     * @param blackhole The sink for the parsed features.
+     * @return The number of features parsed.
+     * @throws ParserConfigurationException If the parser cannot be created.
+     * @throws SAXException If the document cannot be parsed.
+     * @throws IOException If the document cannot be read.
+     */
+    @Benchmark
+    public int parseDocument(Blackhole blackhole) throws ParserConfigurationException, SAXException, IOException
+    {
+        FeatureConsumer consumer = new FeatureConsumer(Integer.MAX_VALUE)
+        {
+            @Override
+            public void addFeature(MapDataElement feature)
+            {
+                blackhole.consume(feature);
+            }
+
+            @Override
+            public void flush()
+            {
+            }
+        };
+        GmlSaxFeatureResponseHandler handler = new GmlSaxFeatureResponseHandler(myType, consumer);
+        SAXParser parser = myParserFactory.newSAXParser();
+        parser.parse(new ByteArrayInputStream(myDocument), handler);
+        return handler.getProcessedCount();
+    }
+
+    /**
+     * Tokenize the position list of every feature, without the XML parsing
+     * or the creation of the data elements.
+     *
+     * @return The number of values parsed.
+     */
+    @Benchmark
+    public int tokenizePositionLists()
+    {
+        GmlCoordinateTokenizer tokenizer = new GmlCoordinateTokenizer();
+        int count = 0;
+        for (int feature = 0; feature < FEATURE_COUNT; ++feature)
+        {
+            tokenizer.reset();
+            tokenizer.append(myPositionList, 0, myPositionList.length);
+            tokenizer.finish();
+            count += tokenizer.size();
+        }
+        return count;
+    }
+}
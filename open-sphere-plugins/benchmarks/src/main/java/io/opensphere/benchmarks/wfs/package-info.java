@@ -0,0 +1,4 @@
+/**
+ * Benchmarks for the WFS GML parser.
+ */
+package io.opensphere.benchmarks.wfs;
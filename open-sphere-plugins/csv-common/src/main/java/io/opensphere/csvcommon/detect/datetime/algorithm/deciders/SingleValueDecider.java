@@ -15,6 +15,7 @@ import io.opensphere.csvcommon.detect.datetime.model.PotentialColumn;
 import io.opensphere.csvcommon.detect.datetime.model.SuccessfulFormat;
 import io.opensphere.csvcommon.detect.datetime.util.Constants;
 import io.opensphere.csvcommon.detect.datetime.util.PotentialColumnUtils;
+import io.opensphere.csvcommon.format.datetime.CompiledDateParser;
 
 /**
  * Abstract class that contains all common functionality for a decider that only
@@ -72,7 +73,7 @@ public abstract class SingleValueDecider implements Decider
 
                             if (canProceed)
                             {
-                                Date date = format.getFormat().getFormat().parse(cellValue);
+                                Date date = CompiledDateParser.get(format.getFormat().getSdf()).parse(cellValue);
 
                                 if (date.getTime() - System.currentTimeMillis() < ourFiftyYearsInMilliseconds)
                                 {
@@ -1,12 +1,11 @@
 package io.opensphere.csvcommon.detect.datetime.util;
 
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
 
-import io.opensphere.core.util.DateTimeUtilities;
 import io.opensphere.csvcommon.common.datetime.DateColumn;
+import io.opensphere.csvcommon.format.datetime.CompiledDateParser;
 
 /**
  * Gets the values from a sample row for a given column.
@@ -39,16 +38,6 @@ public class DateColumnValueProvider
             formatStringBuilder.append(column.getSecondaryColumnFormat());
         }
 
-        String formatString = formatStringBuilder.toString();
-
-        String dateString = dateStringBuilder.toString();
-        if (formatString.contains("S"))
-        {
-            dateString = DateTimeUtilities.fixMillis(dateString);
-        }
-
-        SimpleDateFormat format = new SimpleDateFormat(formatString);
-
-        return format.parse(dateString);
+        return CompiledDateParser.get(formatStringBuilder.toString()).parse(dateStringBuilder.toString());
     }
 }
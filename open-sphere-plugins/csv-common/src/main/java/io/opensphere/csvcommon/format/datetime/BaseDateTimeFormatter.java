@@ -15,7 +15,6 @@ import io.opensphere.core.common.configuration.date.DateFormatsConfig;
 import io.opensphere.core.common.configuration.date.DateFormat.Type;
 import io.opensphere.core.preferences.ListToolPreferences;
 import io.opensphere.core.preferences.PreferencesRegistry;
-import io.opensphere.core.util.DateTimeUtilities;
 import io.opensphere.core.util.collections.New;
 import io.opensphere.csvcommon.common.datetime.ConfigurationProvider;
 import io.opensphere.csvcommon.common.datetime.ConfigurationProviderImpl;
@@ -63,16 +62,9 @@ public abstract class BaseDateTimeFormatter implements CellFormatter, CellFormat
     {
         Date formattedValue = null;
 
-        String valueToParse = cellValue;
-
-        if (StringUtils.isNotEmpty(format) && format.contains("S"))
-        {
-            valueToParse = DateTimeUtilities.fixMillis(valueToParse);
-        }
-
         if (StringUtils.isNotEmpty(format))
         {
-            formattedValue = getDateParser(format).parse(valueToParse);
+            formattedValue = CompiledDateParser.get(format).parse(cellValue);
         }
 
         return formattedValue;
@@ -0,0 +1,518 @@
+package io.opensphere.csvcommon.format.datetime;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import io.opensphere.core.util.DateTimeUtilities;
+import io.opensphere.core.util.collections.New;
+
+/**
+ * A parser for one {@link SimpleDateFormat} pattern that may be shared by any
+ * number of threads. A value is parsed the way {@link BaseDateTimeFormatter}
+ * always has: {@link DateTimeUtilities#fixMillis(String)} is applied if the
+ * pattern has milliseconds, and the result is parsed by a lenient
+ * {@link SimpleDateFormat} in the default time zone. Each parser is for the
+ * default time zone at the time it was obtained, so a parser should be
+ * obtained for each use rather than kept.
+ * <p>
+ * Patterns made of numeric year, month, day, hour, minute, second and
+ * millisecond fields separated by literals, which includes the ISO-8601 style
+ * formats, are compiled to a scanner that does not allocate anything but the
+ * returned date. Values that the scanner cannot parse exactly as
+ * {@link SimpleDateFormat} would, such as fields that a lenient format rolls
+ * over, and all other patterns are parsed by a {@link SimpleDateFormat} that
+ * is confined to the calling thread.
+ */
+public final class CompiledDateParser
+{
+    /** The first year that the scanner parses, after the Gregorian cutover. */
+    private static final int FIRST_YEAR = 1583;
+
+    /** The maximum number of digits in a numeric field. */
+    private static final int MAX_DIGITS = 9;
+
+    /** The number of fraction digits used when milliseconds are fixed. */
+    private static final int FIXED_MILLIS_DIGITS = 4;
+
+    /** Milliseconds per day. */
+    private static final long MILLIS_PER_DAY = 86400000L;
+
+    /** Milliseconds per hour. */
+    private static final long MILLIS_PER_HOUR = 3600000L;
+
+    /** Milliseconds per minute. */
+    private static final long MILLIS_PER_MINUTE = 60000L;
+
+    /** Milliseconds per second. */
+    private static final long MILLIS_PER_SECOND = 1000L;
+
+    /** The result of a scan that has to be parsed by the date format. */
+    private static final long NO_RESULT = Long.MIN_VALUE;
+
+    /** The field letters supported by the scanner. */
+    private static final String SCANNED_LETTERS = "yMdHmsS";
+
+    /** The parsers, by time zone id and pattern. */
+    private static final Map<String, Map<String, CompiledDateParser>> ourParsers = New.concurrentMap();
+
+    /**
+     * The fields of the pattern for the scanner, or {@code null} if the
+     * pattern cannot be scanned.
+     */
+    private final Field[] myFields;
+
+    /** The date format used by each thread. */
+    private final ThreadLocal<SimpleDateFormat> myFormat;
+
+    /** If the pattern has milliseconds. */
+    private final boolean myHasMillis;
+
+    /** The time zone offset in milliseconds. */
+    private final long myOffset;
+
+    /** The pattern. */
+    private final String myPattern;
+
+    /**
+     * Gets the parser for a pattern in the default time zone, compiling it the
+     * first time it is used in that zone.
+     *
+     * @param pattern the {@link SimpleDateFormat} pattern
+     * @return the parser
+     */
+    public static CompiledDateParser get(String pattern)
+    {
+        TimeZone timeZone = TimeZone.getDefault();
+        return ourParsers.computeIfAbsent(timeZone.getID(), k -> New.concurrentMap()).computeIfAbsent(pattern,
+            k -> new CompiledDateParser(pattern, timeZone));
+    }
+
+    /**
+     * Gets the epoch day of a date.
+     *
+     * @param year the year
+     * @param month the month, starting at 1
+     * @param day the day of the month
+     * @return the number of days since 1970-01-01
+     */
+    private static long getEpochDay(int year, int month, int day)
+    {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * ((month + 9) % 12) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Gets the length of a month.
+     *
+     * @param year the year
+     * @param month the month, starting at 1
+     * @return the number of days
+     */
+    private static int getMonthLength(int year, int month)
+    {
+        int length;
+        if (month == 2)
+        {
+            length = year % 4 == 0 && (year % 100 != 0 || year % 400 == 0) ? 29 : 28;
+        }
+        else
+        {
+            length = month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+        }
+        return length;
+    }
+
+    /**
+     * Find the fraction that {@link DateTimeUtilities#fixMillis(String)} would
+     * replace.
+     *
+     * @param text the text
+     * @return the index of the decimal point, or -1 if the text would not be
+     *         changed
+     */
+    private static int findLongFraction(String text)
+    {
+        int index = -1;
+        for (int i = 0; i < text.length(); ++i)
+        {
+            char ch = text.charAt(i);
+            if (ch == '\n' || ch == '\r' || ch == '\u0085' || ch == '\u2028' || ch == '\u2029')
+            {
+                // The expression used by fixMillis does not match across lines.
+                return -1;
+            }
+            if (index == -1 && ch == '.' && i + FIXED_MILLIS_DIGITS < text.length())
+            {
+                boolean digits = true;
+                for (int j = i + 1; j <= i + FIXED_MILLIS_DIGITS && digits; ++j)
+                {
+                    digits = text.charAt(j) >= '0' && text.charAt(j) <= '9';
+                }
+                if (digits)
+                {
+                    index = i;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Compiles a pattern into fields for the scanner.
+     *
+     * @param pattern the pattern
+     * @return the fields, or {@code null} if the pattern cannot be scanned
+     */
+    private static Field[] compile(String pattern)
+    {
+        List<Field> fields = New.list();
+        StringBuilder literal = new StringBuilder();
+        int index = 0;
+        while (index < pattern.length())
+        {
+            char ch = pattern.charAt(index);
+            if (ch == '\'')
+            {
+                index = appendQuoted(pattern, index, literal);
+                if (index < 0)
+                {
+                    return null;
+                }
+            }
+            else if (ch >= 'a' && ch <= 'z' || ch >= 'A' && ch <= 'Z')
+            {
+                int count = 1;
+                while (index + count < pattern.length() && pattern.charAt(index + count) == ch)
+                {
+                    ++count;
+                }
+                if (SCANNED_LETTERS.indexOf(ch) == -1 || ch == 'y' && count <= 2 || ch == 'M' && count > 2
+                        || count > MAX_DIGITS)
+                {
+                    return null;
+                }
+                if (literal.length() > 0)
+                {
+                    fields.add(new Field(literal.toString()));
+                    literal.setLength(0);
+                }
+                else if (!fields.isEmpty() && fields.get(fields.size() - 1).getLetter() != 0)
+                {
+                    // Adjacent numeric fields are parsed with fixed widths.
+                    Field previous = fields.get(fields.size() - 1);
+                    if (previous.getLetter() == 'S')
+                    {
+                        return null;
+                    }
+                    previous.setFixedWidth();
+                }
+                fields.add(new Field(ch, count));
+                index += count;
+            }
+            else
+            {
+                literal.append(ch);
+                ++index;
+            }
+        }
+        if (literal.length() > 0)
+        {
+            fields.add(new Field(literal.toString()));
+        }
+        return New.array(fields, Field.class);
+    }
+
+    /**
+     * Appends a quoted section of a pattern, or a pair of single quotes, to a
+     * literal.
+     *
+     * @param pattern the pattern
+     * @param start the index of the opening quote
+     * @param literal the literal
+     * @return the index after the closing quote, or -1 if the quote is not
+     *         closed
+     */
+    private static int appendQuoted(String pattern, int start, StringBuilder literal)
+    {
+        if (start + 1 < pattern.length() && pattern.charAt(start + 1) == '\'')
+        {
+            literal.append('\'');
+            return start + 2;
+        }
+        int index = start + 1;
+        while (index < pattern.length())
+        {
+            char ch = pattern.charAt(index);
+            if (ch != '\'')
+            {
+                literal.append(ch);
+                ++index;
+            }
+            else if (index + 1 < pattern.length() && pattern.charAt(index + 1) == '\'')
+            {
+                literal.append('\'');
+                index += 2;
+            }
+            else
+            {
+                return index + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param pattern the {@link SimpleDateFormat} pattern
+     * @param timeZone the time zone
+     */
+    private CompiledDateParser(String pattern, TimeZone timeZone)
+    {
+        myPattern = pattern;
+        myHasMillis = pattern.contains("S");
+        myOffset = timeZone.getRawOffset();
+        myFields = timeZone.toZoneId().getRules().isFixedOffset() ? compile(pattern) : null;
+        myFormat = ThreadLocal.withInitial(() ->
+        {
+            SimpleDateFormat format = new SimpleDateFormat(pattern);
+            format.setTimeZone(timeZone);
+            return format;
+        });
+    }
+
+    /**
+     * Gets the pattern.
+     *
+     * @return the pattern
+     */
+    public String getPattern()
+    {
+        return myPattern;
+    }
+
+    /**
+     * Parses a value.
+     *
+     * @param text the value
+     * @return the date
+     * @throws ParseException if the value does not match the pattern
+     */
+    public Date parse(String text) throws ParseException
+    {
+        long time = myFields == null ? NO_RESULT : scan(text);
+        if (time == NO_RESULT)
+        {
+            return myFormat.get().parse(myHasMillis ? DateTimeUtilities.fixMillis(text) : text);
+        }
+        return new Date(time);
+    }
+
+    /**
+     * Determines if the scanner is used for this pattern.
+     *
+     * @return true if the pattern is scanned
+     */
+    boolean isScanned()
+    {
+        return myFields != null;
+    }
+
+    /**
+     * Scans a value.
+     *
+     * @param text the value
+     * @return the time in milliseconds, or {@link #NO_RESULT} if the value has
+     *         to be parsed by the date format
+     */
+    private long scan(String text)
+    {
+        int longFraction = myHasMillis ? findLongFraction(text) : -1;
+        int year = 1970;
+        int month = 1;
+        int day = 1;
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        long millis = 0;
+        int position = 0;
+        for (Field field : myFields)
+        {
+            if (field.getLetter() == 0)
+            {
+                if (!text.startsWith(field.getLiteral(), position))
+                {
+                    return NO_RESULT;
+                }
+                position += field.getLiteral().length();
+            }
+            else
+            {
+                int start = position;
+                int limit = field.isFixedWidth() ? Math.min(text.length(), start + field.getCount()) : text.length();
+                long value = 0;
+                int leadingDigits = 0;
+                while (position < limit && text.charAt(position) >= '0' && text.charAt(position) <= '9')
+                {
+                    int digit = text.charAt(position) - '0';
+                    if (position - start < FIXED_MILLIS_DIGITS)
+                    {
+                        leadingDigits = leadingDigits * 10 + digit;
+                    }
+                    if (position - start < MAX_DIGITS)
+                    {
+                        value = value * 10 + digit;
+                    }
+                    ++position;
+                }
+                int digits = position - start;
+                if (digits == 0 || field.isFixedWidth() && digits != field.getCount())
+                {
+                    return NO_RESULT;
+                }
+                if (field.getLetter() == 'S' && longFraction != -1 && longFraction == start - 1)
+                {
+                    // Round to milliseconds like fixMillis does.
+                    value = Math.round((float)leadingDigits / 10);
+                    longFraction = -1;
+                }
+                else if (digits > MAX_DIGITS)
+                {
+                    return NO_RESULT;
+                }
+
+                switch (field.getLetter())
+                {
+                    case 'y':
+                        year = (int)value;
+                        break;
+                    case 'M':
+                        month = (int)value;
+                        break;
+                    case 'd':
+                        day = (int)value;
+                        break;
+                    case 'H':
+                        hour = (int)value;
+                        break;
+                    case 'm':
+                        minute = (int)value;
+                        break;
+                    case 's':
+                        second = (int)value;
+                        break;
+                    default:
+                        millis = value;
+                        break;
+                }
+            }
+        }
+
+        if (longFraction != -1 || year < FIRST_YEAR || month < 1 || month > 12 || day < 1
+                || day > getMonthLength(year, month) || hour > 23 || minute > 59 || second > 59)
+        {
+            return NO_RESULT;
+        }
+        return getEpochDay(year, month, day) * MILLIS_PER_DAY + hour * MILLIS_PER_HOUR + minute * MILLIS_PER_MINUTE
+                + second * MILLIS_PER_SECOND + millis - myOffset;
+    }
+
+    /** A numeric field or a literal in a pattern. */
+    private static final class Field
+    {
+        /** The number of pattern letters. */
+        private final int myCount;
+
+        /** If the field is followed by another numeric field. */
+        private boolean myFixedWidth;
+
+        /** The pattern letter, or 0 for a literal. */
+        private final char myLetter;
+
+        /** The literal text. */
+        private final String myLiteral;
+
+        /**
+         * Constructor for a numeric field.
+         *
+         * @param letter the pattern letter
+         * @param count the number of pattern letters
+         */
+        public Field(char letter, int count)
+        {
+            myLetter = letter;
+            myCount = count;
+            myLiteral = null;
+        }
+
+        /**
+         * Constructor for a literal.
+         *
+         * @param literal the literal text
+         */
+        public Field(String literal)
+        {
+            myLetter = 0;
+            myCount = 0;
+            myLiteral = literal;
+        }
+
+        /**
+         * Gets the number of pattern letters.
+         *
+         * @return the count
+         */
+        public int getCount()
+        {
+            return myCount;
+        }
+
+        /**
+         * Gets the pattern letter.
+         *
+         * @return the letter, or 0 for a literal
+         */
+        public char getLetter()
+        {
+            return myLetter;
+        }
+
+        /**
+         * Gets the literal text.
+         *
+         * @return the literal
+         */
+        public String getLiteral()
+        {
+            return myLiteral;
+        }
+
+        /**
+         * Gets if the field has to have exactly as many digits as pattern
+         * letters.
+         *
+         * @return true if the field has a fixed width
+         */
+        public boolean isFixedWidth()
+        {
+            return myFixedWidth;
+        }
+
+        /**
+         * Sets that the field has to have exactly as many digits as pattern
+         * letters.
+         */
+        public void setFixedWidth()
+        {
+            myFixedWidth = true;
+        }
+    }
+}
@@ -2,9 +2,11 @@ package io.opensphere.csvcommon.parse;
 
 import java.io.Serializable;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Date;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
 
 import io.opensphere.core.preferences.PreferencesRegistry;
@@ -12,23 +14,37 @@ import io.opensphere.core.util.DateTimeFormats;
 import io.opensphere.core.util.lang.StringUtilities;
 import io.opensphere.csvcommon.config.v2.CSVParseParameters;
 import io.opensphere.csvcommon.format.CellFormatter;
+import io.opensphere.csvcommon.format.datetime.CompiledDateParser;
 import io.opensphere.csvcommon.format.factory.CellFormatterFactory;
 import io.opensphere.csvcommon.parse.PointExtract;
 import io.opensphere.importer.config.ColumnType;
 import io.opensphere.importer.config.SpecialColumn;
 import io.opensphere.mantle.data.element.impl.MDILinkedMetaDataProvider;
 
-/** Extracts time fields from a CSV row. */
+/**
+ * Extracts time fields from a CSV row. The shared formats and parsers are
+ * thread-safe, so rows may be extracted concurrently by the parallel CSV
+ * extraction.
+ */
 public class CSVTimeExtractor
 {
     /** The date format. */
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat(DateTimeFormats.DATE_FORMAT);
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern(DateTimeFormats.DATE_FORMAT)
+            .withZone(ZoneId.systemDefault());
+
+    /** The pattern used to combine a down time with the date of a timestamp. */
+    private static final String DAY_PATTERN = "yyyyMMdd";
+
+    /** The format used to combine a down time with the date of a timestamp. */
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern(DAY_PATTERN)
+            .withZone(ZoneId.systemDefault());
 
     /** Logger reference. */
     private static final Logger LOGGER = Logger.getLogger(CSVTimeExtractor.class);
 
     /** The time format. */
-    private static final SimpleDateFormat TIME_FORMAT = new SimpleDateFormat("HH:mm:ss");
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss")
+            .withZone(ZoneId.systemDefault());
 
     /** The cell formatter factory. */
     private final transient CellFormatterFactory myCellFormatterFactory = new CellFormatterFactory();
@@ -181,12 +197,7 @@ public class CSVTimeExtractor
         Serializable formattedValue = formatCell(cellValue, specialColumn, colName);
         if (formattedValue instanceof Date)
         {
-            String value;
-            synchronized (DATE_FORMAT)
-            {
-                value = DATE_FORMAT.format((Date)formattedValue);
-            }
-            metaDataProvider.setValue(colName, value);
+            metaDataProvider.setValue(colName, DATE_FORMAT.format(((Date)formattedValue).toInstant()));
         }
     }
 
@@ -204,12 +215,7 @@ public class CSVTimeExtractor
         Serializable formattedValue = formatCell(cellValue, specialColumn, colName);
         if (formattedValue instanceof Date)
         {
-            String value;
-            synchronized (TIME_FORMAT)
-            {
-                value = TIME_FORMAT.format((Date)formattedValue);
-            }
-            metaDataProvider.setValue(colName, value);
+            metaDataProvider.setValue(colName, TIME_FORMAT.format(((Date)formattedValue).toInstant()));
         }
     }
 
@@ -257,11 +263,10 @@ public class CSVTimeExtractor
         if (!params.hasType(ColumnType.DOWN_DATE)
                 && params.hasType(ColumnType.DOWN_TIME))
         {
-            SimpleDateFormat formatter = new SimpleDateFormat("yyyyMMdd");
             SpecialColumn downTimeColumn = params.getSpecialColumn(ColumnType.DOWN_TIME);
-            String combinedValue = StringUtilities.concat(formatter.format(ptData.getDate()), " ",
+            String combinedValue = StringUtilities.concat(DAY_FORMAT.format(ptData.getDate().toInstant()), " ",
                     parts[downTimeColumn.getColumnIndex()]);
-            String combinedFormat = StringUtilities.concat(formatter.toPattern(), " ", downTimeColumn.getFormat());
+            String combinedFormat = StringUtilities.concat(DAY_PATTERN, " ", downTimeColumn.getFormat());
             SpecialColumn combinedColumn = new SpecialColumn(-1, ColumnType.TIMESTAMP, combinedFormat);
             Serializable formattedValue = formatCell(combinedValue, combinedColumn, "down date/time");
             if (formattedValue instanceof Date)
@@ -273,6 +278,8 @@ public class CSVTimeExtractor
 
     /**
      * Formats the cell value using the default formatter for the column type.
+     * Temporal values are parsed by the shared {@link CompiledDateParser} for
+     * the format, which is what the date/time cell formatters do.
      *
      * @param cellValue the cell value
      * @param specialColumn the special column
@@ -282,7 +289,23 @@ public class CSVTimeExtractor
     private Serializable formatCell(String cellValue, SpecialColumn specialColumn, String colName)
     {
         Serializable formattedValue = cellValue;
-        if (specialColumn.getFormat() != null)
+        if (specialColumn.getFormat() == null)
+        {
+            LOGGER.error("No format specified for " + colName);
+        }
+        else if (specialColumn.getColumnType().getCategory() == ColumnType.Category.TEMPORAL)
+        {
+            try
+            {
+                formattedValue = StringUtils.isEmpty(specialColumn.getFormat()) ? null
+                        : CompiledDateParser.get(specialColumn.getFormat()).parse(cellValue);
+            }
+            catch (ParseException e)
+            {
+                LOGGER.error(e.getMessage(), e);
+            }
+        }
+        else
         {
             CellFormatter formatter = myCellFormatterFactory.getFormatter(specialColumn.getColumnType(), myPreferencesRegistry);
             if (formatter != null)
@@ -301,10 +324,6 @@ public class CSVTimeExtractor
                 LOGGER.error("No formatter found for " + colName);
             }
         }
-        else
-        {
-            LOGGER.error("No format specified for " + colName);
-        }
         return formattedValue;
     }
 }
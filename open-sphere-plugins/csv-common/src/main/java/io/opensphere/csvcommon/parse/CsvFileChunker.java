@@ -0,0 +1,345 @@
+package io.opensphere.csvcommon.parse;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import io.opensphere.core.util.QuotingBufferedReader;
+
+/**
+ * Splits a text file into chunks of whole records so that the chunks can be
+ * parsed independently. Records are separated the same way as
+ * {@link QuotingBufferedReader#readLine()} separates them: a record ends at a
+ * carriage return, a line feed, or one of each in either order, that is not
+ * within quotes.
+ * <p>
+ * The file is scanned through memory mappings without decoding it, so the
+ * quote and line separator characters must each be encoded as the same single
+ * byte in the file's character set. Use {@link #isSupported(Charset, char[])}
+ * to check this before creating a chunker.
+ * <p>
+ * Finding the chunks is not thread-safe, but once a chunk has been found it
+ * may be {@link #read(Chunk) read} from any thread.
+ */
+public class CsvFileChunker implements Closeable
+{
+    /** The maximum size of the mapping used to scan for record boundaries. */
+    private static final int SCAN_WINDOW = 16 << 20;
+
+    /** The file channel. */
+    private final FileChannel myChannel;
+
+    /** The character set of the file. */
+    private final Charset myCharset;
+
+    /** The position of the start of the next record. */
+    private long myPosition;
+
+    /** The quote characters, as bytes. */
+    private final byte[] myQuotes;
+
+    /** The number of records before {@link #myPosition}. */
+    private long myRecordCount;
+
+    /** The size of the file. */
+    private final long mySize;
+
+    /** The size in bytes that chunks are extended to. */
+    private final int myTargetChunkSize;
+
+    /**
+     * Determine if files in a character set can be split by a chunker.
+     *
+     * @param charset the character set
+     * @param quotes the quote characters
+     * @return true if the line separators and the quotes are single bytes
+     */
+    public static boolean isSupported(Charset charset, char[] quotes)
+    {
+        char[] chars = Arrays.copyOf(quotes, quotes.length + 2);
+        chars[quotes.length] = '\r';
+        chars[quotes.length + 1] = '\n';
+        for (char ch : chars)
+        {
+            if (ch > 0x7F)
+            {
+                return false;
+            }
+        }
+        String text = new String(chars);
+        return charset.canEncode() && Arrays.equals(text.getBytes(charset), text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param file the file
+     * @param charset the character set of the file
+     * @param quotes the quote characters, which must be supported by the
+     *            character set
+     * @param targetChunkSize the size in bytes that chunks are extended to;
+     *            a chunk ends at the first record boundary at or after this
+     *            size, or at the end of the file
+     * @throws IOException if the file cannot be opened
+     */
+    public CsvFileChunker(Path file, Charset charset, char[] quotes, int targetChunkSize) throws IOException
+    {
+        myCharset = charset;
+        myQuotes = new byte[quotes.length];
+        for (int index = 0; index < quotes.length; ++index)
+        {
+            myQuotes[index] = (byte)quotes[index];
+        }
+        myTargetChunkSize = targetChunkSize;
+        myChannel = FileChannel.open(file, StandardOpenOption.READ);
+        mySize = myChannel.size();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        myChannel.close();
+    }
+
+    /**
+     * Get the position of the start of the next chunk.
+     *
+     * @return the position in bytes
+     */
+    public long getPosition()
+    {
+        return myPosition;
+    }
+
+    /**
+     * Get the size of the file.
+     *
+     * @return the size in bytes
+     */
+    public long getSize()
+    {
+        return mySize;
+    }
+
+    /**
+     * Find the next chunk of records.
+     *
+     * @return the chunk, or {@code null} if the end of the file has been
+     *         reached
+     * @throws IOException if the file cannot be read or a record is too large
+     *             to be read as one chunk
+     */
+    public Chunk nextChunk() throws IOException
+    {
+        if (myPosition >= mySize)
+        {
+            return null;
+        }
+        long start = myPosition;
+        long firstRecord = myRecordCount;
+        scan(Long.MAX_VALUE, start + myTargetChunkSize);
+        if (myPosition - start > Integer.MAX_VALUE)
+        {
+            throw new IOException("Record at byte " + start + " is too large.");
+        }
+        return new Chunk(start, myPosition, firstRecord, myRecordCount - firstRecord);
+    }
+
+    /**
+     * Read the text of a chunk.
+     *
+     * @param chunk the chunk
+     * @return the decoded text, which is backed by an array
+     * @throws IOException if the file cannot be read
+     */
+    public CharBuffer read(Chunk chunk) throws IOException
+    {
+        MappedByteBuffer buffer = myChannel.map(MapMode.READ_ONLY, chunk.getStart(), chunk.getEnd() - chunk.getStart());
+        return myCharset.decode(buffer);
+    }
+
+    /**
+     * Skip records at the start of the next chunk.
+     *
+     * @param count the number of records to skip
+     * @return the number of records skipped, which is less than the count if
+     *         the end of the file was reached
+     * @throws IOException if the file cannot be read
+     */
+    public long skipRecords(long count) throws IOException
+    {
+        long before = myRecordCount;
+        if (count > 0)
+        {
+            scan(count, Long.MAX_VALUE);
+        }
+        return myRecordCount - before;
+    }
+
+    /**
+     * Scan records starting at the current position, stopping at the first
+     * record boundary where either limit has been reached, or at the end of
+     * the file.
+     *
+     * @param maxRecords the maximum number of records to scan
+     * @param minEnd the position at which to stop at the next record boundary
+     * @throws IOException if the file cannot be read
+     */
+    private void scan(long maxRecords, long minEnd) throws IOException
+    {
+        long records = 0;
+        byte quote = 0;
+        boolean endOfLine = false;
+        boolean sawCarriageReturn = false;
+        boolean sawLineFeed = false;
+        long position = myPosition;
+        while (position < mySize)
+        {
+            MappedByteBuffer buffer = myChannel.map(MapMode.READ_ONLY, position, Math.min(SCAN_WINDOW, mySize - position));
+            int limit = buffer.limit();
+            for (int index = 0; index < limit; ++index)
+            {
+                byte b = buffer.get(index);
+                boolean separator = quote == 0 && (b == '\n' && !sawLineFeed || b == '\r' && !sawCarriageReturn);
+                if (endOfLine && !separator)
+                {
+                    ++records;
+                    long end = position + index;
+                    if (records >= maxRecords || end >= minEnd)
+                    {
+                        myPosition = end;
+                        myRecordCount += records;
+                        return;
+                    }
+                    endOfLine = false;
+                    sawCarriageReturn = false;
+                    sawLineFeed = false;
+                    separator = b == '\n' || b == '\r';
+                }
+
+                if (separator)
+                {
+                    endOfLine = true;
+                    sawLineFeed |= b == '\n';
+                    sawCarriageReturn |= b == '\r';
+                }
+                else if (quote != 0)
+                {
+                    if (b == quote)
+                    {
+                        quote = 0;
+                    }
+                }
+                else if (isQuote(b))
+                {
+                    quote = b;
+                }
+            }
+            position += limit;
+        }
+        if (mySize > myPosition)
+        {
+            ++records;
+        }
+        myPosition = mySize;
+        myRecordCount += records;
+    }
+
+    /**
+     * Determine if a byte is one of the quotes.
+     *
+     * @param b the byte
+     * @return true if the byte is a quote
+     */
+    private boolean isQuote(byte b)
+    {
+        for (byte quote : myQuotes)
+        {
+            if (quote == b)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** A range of the file that contains whole records. */
+    public static final class Chunk
+    {
+        /** The position after the last byte. */
+        private final long myEnd;
+
+        /** The index of the first record in the file. */
+        private final long myFirstRecord;
+
+        /** The number of records in the chunk. */
+        private final long myRecordCount;
+
+        /** The position of the first byte. */
+        private final long myStart;
+
+        /**
+         * Constructor.
+         *
+         * @param start the position of the first byte
+         * @param end the position after the last byte
+         * @param firstRecord the index of the first record in the file
+         * @param recordCount the number of records in the chunk
+         */
+        Chunk(long start, long end, long firstRecord, long recordCount)
+        {
+            myStart = start;
+            myEnd = end;
+            myFirstRecord = firstRecord;
+            myRecordCount = recordCount;
+        }
+
+        /**
+         * Get the position after the last byte.
+         *
+         * @return the position
+         */
+        public long getEnd()
+        {
+            return myEnd;
+        }
+
+        /**
+         * Get the index of the first record of the chunk in the file.
+         *
+         * @return the index
+         */
+        public long getFirstRecord()
+        {
+            return myFirstRecord;
+        }
+
+        /**
+         * Get the number of records in the chunk.
+         *
+         * @return the number of records
+         */
+        public long getRecordCount()
+        {
+            return myRecordCount;
+        }
+
+        /**
+         * Get the position of the first byte.
+         *
+         * @return the position
+         */
+        public long getStart()
+        {
+            return myStart;
+        }
+    }
+}
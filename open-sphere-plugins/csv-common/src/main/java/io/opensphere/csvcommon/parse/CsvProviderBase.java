@@ -1,15 +1,23 @@
 package io.opensphere.csvcommon.parse;
 
 import java.awt.Color;
+import java.io.CharArrayReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Serializable;
 import java.net.URI;
+import java.nio.CharBuffer;
 import java.util.Date;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang3.StringUtils;
@@ -24,6 +32,7 @@ import io.opensphere.core.units.length.Length;
 import io.opensphere.core.util.QuotingBufferedReader;
 import io.opensphere.core.util.Utilities;
 import io.opensphere.core.util.collections.New;
+import io.opensphere.core.util.lang.StringUtilities;
 import io.opensphere.core.util.lang.TextDelimitedStringTokenizer;
 import io.opensphere.csvcommon.config.v1.CSVColumnInfo;
 import io.opensphere.csvcommon.config.v2.CSVDelimitedColumnFormat;
@@ -63,6 +72,18 @@ public abstract class CsvProviderBase implements DataElementProvider
     /** The Constant TO_PERCENT. */
     private static final double TO_PERCENT = 100.0;
 
+    /** The size in bytes of the chunks read by the parallel extraction. */
+    private static final int CHUNK_SIZE = Integer.getInteger("opensphere.csv.chunkSizeBytes", 8 << 20).intValue();
+
+    /**
+     * Whether local files may be read by the parallel extraction. It is off
+     * unless {@code opensphere.csv.parallelExtraction} is set.
+     */
+    private static final boolean PARALLEL_EXTRACTION = Boolean.getBoolean("opensphere.csv.parallelExtraction");
+
+    /** The number of bytes in a kilobyte, used for progress reporting. */
+    private static final int BYTES_PER_KB = 1024;
+
     /** Saves the config. */
     protected Runnable myConfigSaver;
 
@@ -84,9 +105,6 @@ public abstract class CsvProviderBase implements DataElementProvider
     /** The next element to return. */
     protected DataElement myNextElementToReturn;
 
-    /** The parts. */
-    protected String[] myParts;
-
     /** The reader. */
     protected QuotingBufferedReader myReader;
 
@@ -114,6 +132,18 @@ public abstract class CsvProviderBase implements DataElementProvider
     /** Support for generating geometries. */
     protected GeomSupportFactory geomFact;
 
+    /** The elements of the chunk being returned by the parallel extraction. */
+    private Iterator<DataElement> myChunkElements;
+
+    /** The chunker used by the parallel extraction, or {@code null}. */
+    private CsvFileChunker myChunker;
+
+    /**
+     * The chunks being converted by the parallel extraction, in the order of
+     * the file.
+     */
+    private Deque<ForkJoinTask<ChunkResult>> myChunkTasks;
+
     /** The Column analyzer. */
     private ColumnClassAnalyzer myColumnAnalyzer;
 
@@ -311,20 +341,48 @@ public abstract class CsvProviderBase implements DataElementProvider
      */
     protected QuotingBufferedReader createCSVLineReader(CSVParseParameters params, InputStreamReader streamReader)
     {
-        char[] quotes;
-        if (params.getColumnFormat() instanceof CSVDelimitedColumnFormat)
+        return new QuotingBufferedReader(streamReader, getQuotes(params), null);
+    }
+
+    /**
+     * Starts reading the records of a local file in chunks that are converted
+     * to data elements in parallel, instead of reading them one line at a time
+     * from {@link #myReader}. The rows before {@link #myFirstDataRowNum} are
+     * skipped. The elements are still returned in the order of the file.
+     * <p>
+     * This must be called after {@link #setupExtraction(String)}. If it
+     * returns {@code false}, the caller must set up {@link #myReader} instead.
+     *
+     * @param file the file
+     * @return true if the parallel extraction was started, false if the file
+     *         cannot be read that way
+     * @throws IOException if the file cannot be read
+     */
+    protected boolean startParallelExtraction(File file) throws IOException
+    {
+        char[] quotes = getQuotes(getParseParams());
+        if (!PARALLEL_EXTRACTION || !CsvFileChunker.isSupported(StringUtilities.DEFAULT_CHARSET, quotes))
         {
-            CSVDelimitedColumnFormat columnFormat = (CSVDelimitedColumnFormat)params.getColumnFormat();
-            char quoteChar = StringUtils.isEmpty(columnFormat.getTextDelimiter()) ? '"'
-                    : columnFormat.getTextDelimiter().charAt(0);
-            quotes = new char[] { quoteChar };
+            return false;
         }
-        else
+
+        myChunker = new CsvFileChunker(file.toPath(), StringUtilities.DEFAULT_CHARSET, quotes, CHUNK_SIZE);
+        myChunkTasks = New.deque();
+        try
         {
-            quotes = new char[0];
+            myLineIndex += (int)myChunker.skipRecords(myFirstDataRowNum);
+            int window = Math.max(2, ForkJoinPool.getCommonPoolParallelism() * 2);
+            while (myChunkTasks.size() < window && submitNextChunk())
+            {
+                // keep submitting until the window is full
+            }
         }
-
-        return new QuotingBufferedReader(streamReader, quotes, null);
+        catch (IOException e)
+        {
+            closeChunker();
+            throw e;
+        }
+        return true;
     }
 
     /**
@@ -421,66 +479,241 @@ public abstract class CsvProviderBase implements DataElementProvider
      */
     public DataElement getNextDataElement() throws IOException
     {
+        if (myChunker != null)
+        {
+            return getNextParallelDataElement();
+        }
+
         DataElement de = null;
         if (myReader.ready())
         {
             myCurrLine = myReader.readLine();
             if (myCurrLine != null)
             {
-                myTotalLineCount++;
-                myParts = generateParts();
-                if (myParts == null || myParts.length == 0)
-                {
-                    return DISCARDED_DATAELEMENT;
-                }
+                ChunkResult result = new ChunkResult();
+                de = convertLine(myCurrLine, myLineIndex, ourIDCounter.incrementAndGet(), result);
+                mergeResult(result);
+            }
+        }
+        return de;
+    }
 
-                if (myParts.length != myNumColumns)
+    /**
+     * Gets the next data element from the parallel extraction, waiting for
+     * its chunk to be converted if necessary.
+     *
+     * @return the next data element, or {@code null} if there are no more
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private DataElement getNextParallelDataElement() throws IOException
+    {
+        try
+        {
+            while (myChunkElements == null || !myChunkElements.hasNext())
+            {
+                ForkJoinTask<ChunkResult> task = myChunkTasks.poll();
+                if (task == null)
                 {
-                    if (checkAllowWarning(myParts))
-                    {
-                        String logEntry = "Line " + (myLineIndex + 1) + " in CSV had unexpected number of columns "
-                                + Integer.valueOf(myParts.length) + " of " + myNumColumns + ": " + myCurrLine;
-                        if (!myHasBeenWarned)
-                        {
-                            UserMessageEvent.warn(myToolbox.getEventManager(), getSourceUri() + "\n" + logEntry);
-                            myHasBeenWarned = true;
-                        }
-                        LOGGER.info(logEntry);
-                    }
-                    return DISCARDED_DATAELEMENT;
+                    closeChunker();
+                    return null;
                 }
+                ChunkResult result = task.get();
+                submitNextChunk();
+                mergeResult(result);
+                myChunkElements = result.myElements.iterator();
+                myTaskActivity.monitorUpdate((int)(myChunker.getPosition() / BYTES_PER_KB),
+                        (int)(myChunker.getSize() / BYTES_PER_KB));
+            }
+            return myChunkElements.next();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            closeChunker();
+            throw new IOException("Interrupted while reading " + getSourceUri(), e);
+        }
+        catch (ExecutionException e)
+        {
+            closeChunker();
+            if (e.getCause() instanceof IOException)
+            {
+                throw (IOException)e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+        catch (IOException | RuntimeException e)
+        {
+            closeChunker();
+            throw e;
+        }
+    }
 
-                if (myColumnAnalyzer != null)
+    /**
+     * Submits the next chunk of the file to be converted. An id is reserved
+     * for each record of the chunk here, so the ids of the elements follow the
+     * order of the file even though the chunks are converted in parallel.
+     *
+     * @return true if a chunk was submitted, false if the end of the file has
+     *         been reached
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private boolean submitNextChunk() throws IOException
+    {
+        CsvFileChunker.Chunk chunk = myChunker.nextChunk();
+        if (chunk == null)
+        {
+            return false;
+        }
+        long firstId = ourIDCounter.getAndAdd(chunk.getRecordCount()) + 1;
+        myChunkTasks.add(ForkJoinPool.commonPool().submit(() -> convertChunk(chunk, firstId)));
+        return true;
+    }
+
+    /**
+     * Converts the lines in a chunk of the file to data elements.
+     *
+     * @param chunk the chunk
+     * @param firstId the id reserved for the first record of the chunk
+     * @return the result
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private ChunkResult convertChunk(CsvFileChunker.Chunk chunk, long firstId) throws IOException
+    {
+        ChunkResult result = new ChunkResult();
+        CharBuffer text = myChunker.read(chunk);
+        try (QuotingBufferedReader reader = new QuotingBufferedReader(
+                new CharArrayReader(text.array(), text.arrayOffset() + text.position(), text.remaining()),
+                getQuotes(getParseParams()), null))
+        {
+            int lineIndex = (int)chunk.getFirstRecord();
+            long id = firstId;
+            long endId = firstId + chunk.getRecordCount();
+            for (String line = reader.readLine(); line != null; line = reader.readLine())
+            {
+                if (id == endId)
                 {
-                    myColumnAnalyzer.considerValues(myParts);
+                    throw new IOException("More records were read than were found in chunk at byte " + chunk.getStart()
+                            + " of " + getSourceUri());
                 }
-                MDILinkedMetaDataProvider metaDataProvider = new MDILinkedMetaDataProvider(myTypeInfo.getMetaDataInfo());
-                PointExtract ptData = extractDataAndUpdateMetaDataProvider(myTypeInfo.getTypeKey(), myLineIndex, myCurrLine,
-                        myParts, metaDataProvider);
-                if (ptData == null)
+                DataElement element = convertLine(line, lineIndex++, id++, result);
+                if (!Utilities.sameInstance(element, DISCARDED_DATAELEMENT))
                 {
-                    de = DISCARDED_DATAELEMENT;
-                    myDiscardedLineCount++;
+                    result.myElements.add(element);
                 }
-                else
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Cancels any outstanding chunk conversions and closes the chunker.
+     */
+    private void closeChunker()
+    {
+        for (ForkJoinTask<ChunkResult> task : myChunkTasks)
+        {
+            task.cancel(false);
+        }
+        myChunkTasks.clear();
+        myChunkElements = null;
+        try
+        {
+            myChunker.close();
+        }
+        catch (IOException e)
+        {
+            LOGGER.warn("Failed to close " + getSourceUri() + ": " + e, e);
+        }
+    }
+
+    /**
+     * Converts one line of the file to a data element. This may be called
+     * concurrently for different lines; the counts and the time extent are
+     * accumulated in the result, to be merged by
+     * {@link #mergeResult(ChunkResult)} in the order of the file.
+     *
+     * @param line the line
+     * @param lineIndex the index of the line, used in log messages
+     * @param id the id for the data element
+     * @param result the result that accumulates the counts
+     * @return the data element, or {@link #DISCARDED_DATAELEMENT}
+     */
+    private DataElement convertLine(String line, int lineIndex, long id, ChunkResult result)
+    {
+        result.myLineCount++;
+        String[] parts = generateParts(line);
+        if (parts == null || parts.length == 0)
+        {
+            return DISCARDED_DATAELEMENT;
+        }
+
+        if (parts.length != myNumColumns)
+        {
+            if (checkAllowWarning(parts))
+            {
+                String logEntry = "Line " + (lineIndex + 1) + " in CSV had unexpected number of columns "
+                        + Integer.valueOf(parts.length) + " of " + myNumColumns + ": " + line;
+                if (result.myWarning == null)
                 {
-                    TimeSpan ts = determineTimeSpan(ptData);
-                    if (ts != null && !ts.isUnboundedStart())
-                    {
-                        metaDataProvider.setValue("TIME", ts.getStartDate());
-                    }
-                    if (ts != null)
-                    {
-                        updateOveralTimeExtent(ts);
-                    }
-                    de = getDataElement(metaDataProvider, ptData, ts);
+                    result.myWarning = logEntry;
                 }
-                myLineIndex++;
+                LOGGER.info(logEntry);
             }
+            return DISCARDED_DATAELEMENT;
         }
+
+        if (myColumnAnalyzer != null)
+        {
+            synchronized (myColumnAnalyzer)
+            {
+                myColumnAnalyzer.considerValues(parts);
+            }
+        }
+        DataElement de;
+        MDILinkedMetaDataProvider metaDataProvider = new MDILinkedMetaDataProvider(myTypeInfo.getMetaDataInfo());
+        PointExtract ptData = extractDataAndUpdateMetaDataProvider(myTypeInfo.getTypeKey(), lineIndex, line, parts,
+                metaDataProvider);
+        if (ptData == null)
+        {
+            de = DISCARDED_DATAELEMENT;
+            result.myDiscardedLineCount++;
+        }
+        else
+        {
+            TimeSpan ts = determineTimeSpan(ptData);
+            if (ts != null && !ts.isUnboundedStart())
+            {
+                metaDataProvider.setValue("TIME", ts.getStartDate());
+            }
+            if (ts != null)
+            {
+                result.myTimeExtent = extendTimeExtent(result.myTimeExtent, ts);
+            }
+            de = getDataElement(id, metaDataProvider, ptData, ts);
+        }
+        result.myConvertedLineCount++;
         return de;
     }
 
+    /**
+     * Merges the counts and the time extent from converting some lines, and
+     * shows the first column count warning.
+     *
+     * @param result the result
+     */
+    private void mergeResult(ChunkResult result)
+    {
+        myTotalLineCount += result.myLineCount;
+        myDiscardedLineCount += result.myDiscardedLineCount;
+        myLineIndex += result.myConvertedLineCount;
+        myOverallTimeExtent = extendTimeExtent(myOverallTimeExtent, result.myTimeExtent);
+        if (result.myWarning != null && !myHasBeenWarned)
+        {
+            UserMessageEvent.warn(myToolbox.getEventManager(), getSourceUri() + "\n" + result.myWarning);
+            myHasBeenWarned = true;
+        }
+    }
+
     /**
      * Determine column classes.
      *
@@ -798,25 +1031,26 @@ public abstract class CsvProviderBase implements DataElementProvider
     /**
      * Generate parts.
      *
+     * @param line the line
      * @return the string[]
      */
-    private String[] generateParts()
+    private String[] generateParts(String line)
     {
         String[] parts = null;
         if (myUsesFixedWidthColumns)
         {
-            parts = io.opensphere.mantle.util.StringUtils.explode(myCurrLine, myColumnBreaks, true);
+            parts = io.opensphere.mantle.util.StringUtils.explode(line, myColumnBreaks, true);
         }
         else if (myIsDelimited)
         {
             CSVDelimitedColumnFormat columnFormat = (CSVDelimitedColumnFormat)getParseParams().getColumnFormat();
             if (myIsQuoted)
             {
-                parts = New.array(myTokenizer.tokenize(myCurrLine), String.class);
+                parts = New.array(myTokenizer.tokenize(line), String.class);
             }
             else
             {
-                parts = myCurrLine.split(columnFormat.getTokenDelimiter(), -1);
+                parts = line.split(columnFormat.getTokenDelimiter(), -1);
             }
         }
         return parts;
@@ -825,17 +1059,18 @@ public abstract class CsvProviderBase implements DataElementProvider
     /**
      * Create a data element.
      *
+     * @param id The id for the data element.
      * @param metaDataProvider The metadata provider.
      * @param ptData The point data.
      * @param ts The time span.
      * @return The data element.
      */
-    private DataElement getDataElement(MDILinkedMetaDataProvider metaDataProvider, PointExtract ptData, TimeSpan ts)
+    private DataElement getDataElement(long id, MDILinkedMetaDataProvider metaDataProvider, PointExtract ptData, TimeSpan ts)
     {
         DataElement de;
         if (!getParseParams().hasCategory(ColumnType.Category.SPATIAL))
         {
-            de = createNonMapElement(metaDataProvider, ts);
+            de = createNonMapElement(id, metaDataProvider, ts);
         }
         else if (getParseParams().hasType(ColumnType.WKT_GEOMETRY))
         {
@@ -845,12 +1080,12 @@ public abstract class CsvProviderBase implements DataElementProvider
             if (geomSupport != null)
             {
                 geomSupport.setTimeSpan(ts);
-                de = new DefaultMapDataElement(ourIDCounter.incrementAndGet(), ts, myTypeInfo, metaDataProvider, geomSupport);
+                de = new DefaultMapDataElement(id, ts, myTypeInfo, metaDataProvider, geomSupport);
                 de.getVisualizationState().setColor(getLayerColor());
             }
             else
             {
-                de = createNonMapElement(metaDataProvider, ts);
+                de = createNonMapElement(id, metaDataProvider, ts);
             }
         }
         else
@@ -858,7 +1093,7 @@ public abstract class CsvProviderBase implements DataElementProvider
             MapLocationGeometrySupport geomSupport = geomFact.createGeometrySupport(
                     myTypeInfo.getMapVisualizationInfo(), ptData, getLayerColor());
             geomSupport.setTimeSpan(ts);
-            de = new DefaultMapDataElement(ourIDCounter.incrementAndGet(), ts, myTypeInfo, metaDataProvider, geomSupport);
+            de = new DefaultMapDataElement(id, ts, myTypeInfo, metaDataProvider, geomSupport);
             de.getVisualizationState().setColor(getLayerColor());
         }
         return de;
@@ -867,35 +1102,85 @@ public abstract class CsvProviderBase implements DataElementProvider
     /**
      * Creates a {@link DataElement} that does not have a geometry or location.
      *
+     * @param id The id for the data element.
      * @param metaDataProvider The metadata provider.
      * @param ts The time span.
      * @return The data element.
      */
-    private DataElement createNonMapElement(MDILinkedMetaDataProvider metaDataProvider, TimeSpan ts)
+    private DataElement createNonMapElement(long id, MDILinkedMetaDataProvider metaDataProvider, TimeSpan ts)
     {
-        DataElement de = new DefaultDataElement(ourIDCounter.incrementAndGet(), ts, myTypeInfo, metaDataProvider);
+        DataElement de = new DefaultDataElement(id, ts, myTypeInfo, metaDataProvider);
         de.getVisualizationState().setColor(getLayerColor());
 
         return de;
     }
 
     /**
-     * Update overall time extent.
+     * Gets the quote characters for the records.
      *
+     * @param params the parameters
+     * @return the quote characters
+     */
+    private static char[] getQuotes(CSVParseParameters params)
+    {
+        char[] quotes;
+        if (params.getColumnFormat() instanceof CSVDelimitedColumnFormat)
+        {
+            CSVDelimitedColumnFormat columnFormat = (CSVDelimitedColumnFormat)params.getColumnFormat();
+            char quoteChar = StringUtils.isEmpty(columnFormat.getTextDelimiter()) ? '"'
+                    : columnFormat.getTextDelimiter().charAt(0);
+            quotes = new char[] { quoteChar };
+        }
+        else
+        {
+            quotes = new char[0];
+        }
+        return quotes;
+    }
+
+    /**
+     * Extend a time extent to include a time span.
+     *
+     * @param extent the extent
      * @param ts the ts
+     * @return the extended extent
      */
-    private void updateOveralTimeExtent(TimeSpan ts)
+    private static TimeSpan extendTimeExtent(TimeSpan extent, TimeSpan ts)
     {
+        TimeSpan result = extent;
         if (!ts.isTimeless())
         {
-            if (myOverallTimeExtent.isTimeless())
+            if (extent.isTimeless())
             {
-                myOverallTimeExtent = ts;
+                result = ts;
             }
-            else if (!myOverallTimeExtent.contains(ts))
+            else if (!extent.contains(ts))
             {
-                myOverallTimeExtent = myOverallTimeExtent.simpleUnion(ts);
+                result = extent.simpleUnion(ts);
             }
         }
+        return result;
+    }
+
+    /** The data elements and counts from converting some lines. */
+    private static class ChunkResult
+    {
+        /** The number of lines that reached conversion. */
+        private int myConvertedLineCount;
+
+        /** The number of lines discarded because they could not be parsed. */
+        private int myDiscardedLineCount;
+
+        /** The data elements, not including discarded lines. */
+        private final List<DataElement> myElements = New.list();
+
+        /** The number of lines read. */
+        private int myLineCount;
+
+        /** The time extent of the data elements. */
+        private TimeSpan myTimeExtent = TimeSpan.TIMELESS;
+
+        /** The first column count warning, or {@code null}. */
+        private String myWarning;
     }
 }
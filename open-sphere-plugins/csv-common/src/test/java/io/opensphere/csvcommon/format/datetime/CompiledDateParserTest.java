@@ -0,0 +1,223 @@
+package io.opensphere.csvcommon.format.datetime;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.opensphere.core.util.DateTimeUtilities;
+import io.opensphere.core.util.collections.New;
+
+/** Tests for {@link CompiledDateParser}. */
+public class CompiledDateParserTest
+{
+    /** Patterns and values that are parsed by the scanner. */
+    private static final String[][] SCANNED = {
+        { "yyyy-M-d'T'HH:mm:ss'Z'", "2014-05-19T12:06:33Z", "2014-5-9T01:02:03Z", "2014-05-19T12:06:33", "2014-02-30T00:00:00Z",
+            "2014-05-19T24:00:00Z", "2014-05-19T12:06:33Zextra", "1492-10-12T00:00:00Z", "2014-05-19 12:06:33Z",
+            " 2014-05-19T12:06:33Z", "2014-5-19T1:2:3Z", "", }, //
+        { "yyyy-M-d HH:mm:ss.SSS", "2013-04-09 13:38:15.9999", "2013-04-09 13:38:15.12345678901", "2013-04-09 13:38:15.5",
+            "2013-04-09 13:38:15.0123", "2013-04-09 13:38:15.", "2013-04-09 13:38:15.999\n", "2012-02-29 23:59:59.1000", }, //
+        { "yyyyMMddHHmmss", "20140519120633", "2014051912063", "201405191206334", "20140519x20633", }, //
+        { "yyyyMMdd HHmmss", "20140519 000000", "20140519 235959", "2014519 235959", }, //
+        { "yyyyMMddHHmmssSSS", "20140519120633123", "201405191206331234", }, //
+        { "dd.MM.yyyy HH:mm:ss.SSSS", "19.05.2014 12:06:33.1234", "19.05.20141 12:06:33.1234", }, //
+        { "'td'M/d/yyyy HH:mm:ss", "td5/19/2014 12:06:33", "5/19/2014 12:06:33", }, //
+        { "HH:mm:ss", "12:06:33", "23:59:60", }, //
+        { "M/d,HHmm'z'", "5/19,1206z", "5/19,126z", }, //
+        { "yyyy/M/d", "2014/5/19", "2014/13/1", "2014/0/1", }, //
+        { "'It''s' yyyy", "It's 2014", "Its 2014", }, //
+    };
+
+    /** Patterns that are only parsed by the date format. */
+    private static final String[][] NOT_SCANNED = {
+        { "dd MMM yyyy HH:mm:ss", "19 May 2014 12:06:33", "19 Foo 2014 12:06:33", }, //
+        { "yy-M-d", "14-5-19", "2014-5-19", }, //
+        { "yyyy-MM-dd'T'HH:mm:ssZ", "2014-05-19T12:06:33+0100", }, //
+    };
+
+    /**
+     * Test that the scanned patterns give the same results as the date
+     * format. The scanner is only used in time zones without daylight saving
+     * time.
+     *
+     * @throws ParseException if a parse fails unexpectedly
+     */
+    @Test
+    public void testScanned() throws ParseException
+    {
+        for (String[] values : SCANNED)
+        {
+            CompiledDateParser parser = CompiledDateParser.get(values[0]);
+            Assert.assertEquals(values[0], Boolean.valueOf(TimeZone.getDefault().toZoneId().getRules().isFixedOffset()),
+                    Boolean.valueOf(parser.isScanned()));
+            Assert.assertSame(parser, CompiledDateParser.get(values[0]));
+            for (int index = 1; index < values.length; ++index)
+            {
+                assertParse(parser, values[index]);
+            }
+        }
+    }
+
+    /**
+     * Test that the other patterns give the same results as the date format.
+     *
+     * @throws ParseException if a parse fails unexpectedly
+     */
+    @Test
+    public void testNotScanned() throws ParseException
+    {
+        for (String[] values : NOT_SCANNED)
+        {
+            CompiledDateParser parser = CompiledDateParser.get(values[0]);
+            Assert.assertFalse(values[0], parser.isScanned());
+            for (int index = 1; index < values.length; ++index)
+            {
+                assertParse(parser, values[index]);
+            }
+        }
+    }
+
+    /**
+     * Test some scanned values directly.
+     *
+     * @throws ParseException if a parse fails unexpectedly
+     */
+    @Test
+    public void testValues() throws ParseException
+    {
+        CompiledDateParser parser = CompiledDateParser.get("yyyy-M-d'T'HH:mm:ss.SSS'Z'");
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(2014, Calendar.MAY, 19, 12, 6, 33);
+        calendar.set(Calendar.MILLISECOND, 250);
+        Assert.assertEquals(calendar.getTime(), parser.parse("2014-05-19T12:06:33.250Z"));
+
+        // Fractions longer than milliseconds are rounded.
+        calendar.set(Calendar.MILLISECOND, 251);
+        Assert.assertEquals(calendar.getTime(), parser.parse("2014-05-19T12:06:33.2505Z"));
+    }
+
+    /**
+     * Test that a parser is obtained for the default time zone when it
+     * changes.
+     *
+     * @throws ParseException if a parse fails unexpectedly
+     */
+    @Test
+    public void testTimeZoneChange() throws ParseException
+    {
+        TimeZone original = TimeZone.getDefault();
+        try
+        {
+            TimeZone.setDefault(TimeZone.getTimeZone("GMT"));
+            CompiledDateParser gmt = CompiledDateParser.get("yyyy-M-d HH:mm:ss");
+            Assert.assertEquals(1400501193000L, gmt.parse("2014-05-19 12:06:33").getTime());
+
+            TimeZone.setDefault(TimeZone.getTimeZone("GMT+05:00"));
+            CompiledDateParser shifted = CompiledDateParser.get("yyyy-M-d HH:mm:ss");
+            Assert.assertNotSame(gmt, shifted);
+            Assert.assertEquals(1400483193000L, shifted.parse("2014-05-19 12:06:33").getTime());
+            Assert.assertEquals(1400483193000L, CompiledDateParser.get("dd MMM yyyy HH:mm:ss")
+                    .parse("19 May 2014 12:06:33").getTime());
+        }
+        finally
+        {
+            TimeZone.setDefault(original);
+        }
+    }
+
+    /**
+     * Test sharing a parser between threads.
+     *
+     * @throws InterruptedException if the test is interrupted
+     * @throws ExecutionException if a parse fails
+     */
+    @Test
+    public void testThreads() throws InterruptedException, ExecutionException
+    {
+        CompiledDateParser scanned = CompiledDateParser.get("yyyy-M-d HH:mm:ss");
+        CompiledDateParser formatted = CompiledDateParser.get("dd MMM yyyy HH:mm:ss");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            List<Future<Boolean>> results = New.list();
+            for (int task = 0; task < 8; ++task)
+            {
+                final int offset = task;
+                results.add(executor.submit((Callable<Boolean>)() ->
+                {
+                    for (int day = 1; day <= 28; ++day)
+                    {
+                        int hour = (day + offset) % 24;
+                        String text = "2014-2-" + day + " " + hour + ":00:00";
+                        Date expected = new SimpleDateFormat("yyyy-M-d HH:mm:ss").parse(text);
+                        if (!expected.equals(scanned.parse(text))
+                                || !expected.equals(formatted.parse(day + " Feb 2014 " + hour + ":00:00")))
+                        {
+                            return Boolean.FALSE;
+                        }
+                    }
+                    return Boolean.TRUE;
+                }));
+            }
+            for (Future<Boolean> result : results)
+            {
+                Assert.assertTrue(result.get().booleanValue());
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Assert that a parser gives the same result as a date format, including
+     * failing to parse.
+     *
+     * @param parser the parser
+     * @param text the value
+     * @throws ParseException if the date format parses the value but the
+     *             parser does not
+     */
+    private static void assertParse(CompiledDateParser parser, String text) throws ParseException
+    {
+        String pattern = parser.getPattern();
+        Date expected;
+        try
+        {
+            expected = new SimpleDateFormat(pattern).parse(pattern.contains("S") ? DateTimeUtilities.fixMillis(text) : text);
+        }
+        catch (ParseException e)
+        {
+            expected = null;
+        }
+
+        if (expected == null)
+        {
+            try
+            {
+                Assert.fail(pattern + " [" + text + "] gave " + parser.parse(text));
+            }
+            catch (ParseException e)
+            {
+                // expected
+            }
+        }
+        else
+        {
+            Assert.assertEquals(pattern + " [" + text + "]", expected, parser.parse(text));
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package io.opensphere.csvcommon.parse;
+
+import java.io.CharArrayReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.opensphere.core.util.QuotingBufferedReader;
+import io.opensphere.core.util.collections.New;
+
+/** Tests for {@link CsvFileChunker}. */
+public class CsvFileChunkerTest
+{
+    /** The quote characters. */
+    private static final char[] QUOTES = { '"' };
+
+    /** The test records, with a mix of line separators and quoting. */
+    private static final String TEXT = "name,value\r\n" + "a,1\r\n" + "\"b\nwith a line feed\",2\n" + "\"c\r\n,\",3\n\r"
+            + "d,\"4\"\n" + "\n" + "e,5\r" + "\"f\"\"\",6\n" + "g,\u00e9\u00e8\n" + "h,\"unterminated\n,7";
+
+    /**
+     * Test that every chunk size splits the file into the same records as
+     * {@link QuotingBufferedReader}.
+     *
+     * @throws IOException if the test file cannot be written
+     */
+    @Test
+    public void testChunks() throws IOException
+    {
+        List<String> expected = readLines(new QuotingBufferedReader(new StringReader(TEXT), QUOTES, null));
+        File file = writeFile(TEXT);
+        try
+        {
+            for (int chunkSize = 1; chunkSize <= TEXT.length() + 1; ++chunkSize)
+            {
+                List<String> actual = New.list();
+                try (CsvFileChunker chunker = new CsvFileChunker(file.toPath(), StandardCharsets.UTF_8, QUOTES, chunkSize))
+                {
+                    Assert.assertEquals(1, chunker.skipRecords(1));
+                    for (CsvFileChunker.Chunk chunk = chunker.nextChunk(); chunk != null; chunk = chunker.nextChunk())
+                    {
+                        Assert.assertEquals(actual.size() + 1, chunk.getFirstRecord());
+                        CharBuffer text = chunker.read(chunk);
+                        List<String> lines = readLines(new QuotingBufferedReader(
+                                new CharArrayReader(text.array(), text.arrayOffset() + text.position(), text.remaining()),
+                                QUOTES, null));
+                        Assert.assertEquals(lines.size(), chunk.getRecordCount());
+                        actual.addAll(lines);
+                    }
+                    Assert.assertEquals(chunker.getSize(), chunker.getPosition());
+                }
+                Assert.assertEquals(expected.subList(1, expected.size()), actual);
+            }
+        }
+        finally
+        {
+            Assert.assertTrue(file.delete());
+        }
+    }
+
+    /**
+     * Test skipping more records than the file has.
+     *
+     * @throws IOException if the test file cannot be written
+     */
+    @Test
+    public void testSkipPastEnd() throws IOException
+    {
+        File file = writeFile("a\r\nb\n");
+        try (CsvFileChunker chunker = new CsvFileChunker(file.toPath(), StandardCharsets.UTF_8, QUOTES, 1))
+        {
+            Assert.assertEquals(2, chunker.skipRecords(5));
+            Assert.assertNull(chunker.nextChunk());
+        }
+        finally
+        {
+            Assert.assertTrue(file.delete());
+        }
+    }
+
+    /** Test which character sets can be chunked. */
+    @Test
+    public void testIsSupported()
+    {
+        Assert.assertTrue(CsvFileChunker.isSupported(StandardCharsets.UTF_8, QUOTES));
+        Assert.assertTrue(CsvFileChunker.isSupported(StandardCharsets.ISO_8859_1, new char[0]));
+        Assert.assertFalse(CsvFileChunker.isSupported(StandardCharsets.UTF_16, QUOTES));
+        Assert.assertFalse(CsvFileChunker.isSupported(StandardCharsets.UTF_8, new char[] { '\u00ab' }));
+    }
+
+    /**
+     * Read all of the lines from a reader.
+     *
+     * @param reader the reader
+     * @return the lines
+     * @throws IOException if the reader fails
+     */
+    private static List<String> readLines(QuotingBufferedReader reader) throws IOException
+    {
+        List<String> lines = New.list();
+        for (String line = reader.readLine(); line != null; line = reader.readLine())
+        {
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    /**
+     * Write text to a temporary file.
+     *
+     * @param text the text
+     * @return the file
+     * @throws IOException if the file cannot be written
+     */
+    private static File writeFile(String text) throws IOException
+    {
+        File file = File.createTempFile(CsvFileChunkerTest.class.getSimpleName(), ".csv");
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -66,16 +66,18 @@ public class CSVDataElementProvider extends CsvProviderBase
 
         myTaskActivity = new InputStreamMonitorTaskActivity("Loading CSV File", "Loading CSV File");
         LOGGER.info("Reading CSV file: " + aFile);
-        myReader = createCSVLineReader(myFileSource.getParseParameters(), new InputStreamReader(
-                new MonitorInputStream(new FileInputStream(aFile), myTaskActivity), StringUtilities.DEFAULT_CHARSET));
-
         tb.getUIRegistry().getMenuBarRegistry().addTaskActivity(myTaskActivity);
-        if (myReader.ready())
+        if (!startParallelExtraction(aFile))
         {
-            while (myLineIndex < myFirstDataRowNum)
+            myReader = createCSVLineReader(myFileSource.getParseParameters(), new InputStreamReader(
+                    new MonitorInputStream(new FileInputStream(aFile), myTaskActivity), StringUtilities.DEFAULT_CHARSET));
+            if (myReader.ready())
             {
-                myCurrLine = myReader.readLine();
-                myLineIndex++;
+                while (myLineIndex < myFirstDataRowNum)
+                {
+                    myCurrLine = myReader.readLine();
+                    myLineIndex++;
+                }
             }
         }
 
@@ -1,5 +1,6 @@
 package io.opensphere.featureactions.controller;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashSet;
@@ -159,7 +160,10 @@ public class FeatureActionsController extends EventListenerService
         DataFilterEvaluator evaluator = featureAction.getEvaluator();
         if (evaluator == null)
         {
-            evaluator = new DataFilterEvaluator(featureAction.getFilter(), myMantleToolbox.getDynamicEnumerationRegistry());
+            String typeKey = featureAction.getFilter().getTypeKey();
+            DataTypeInfo dataType = myMantleToolbox.getDataTypeController().getDataTypeInfoForType(typeKey);
+            evaluator = new DataFilterEvaluator(featureAction.getFilter(), dataType == null ? null : dataType.getMetaDataInfo(),
+                    myMantleToolbox.getDynamicEnumerationRegistry());
             featureAction.setEvaluator(evaluator);
         }
     }
@@ -239,18 +243,22 @@ public class FeatureActionsController extends EventListenerService
     }
 
     /**
-     * Gets the actions that need to be applied to the data element.
+     * Gets the actions that need to be applied to a data element.
      *
-     * @param element the data element
+     * @param elementIndex the index of the data element
      * @param featureActions collection of all possible actions
+     * @param passingElements the indices of the elements that pass the filter
+     *            of each action, in the same order as the actions
      * @return the passing actions
      */
-    private Collection<FeatureAction> getPassingActions(DataElement element, Collection<? extends FeatureAction> featureActions)
+    private Collection<FeatureAction> getPassingActions(int elementIndex, Collection<? extends FeatureAction> featureActions,
+            List<BitSet> passingElements)
     {
         Collection<FeatureAction> passingActions = New.list();
+        int actionIndex = 0;
         for (FeatureAction featureAction : featureActions)
         {
-            if (featureAction.getEvaluator().accepts(element))
+            if (passingElements.get(actionIndex++).get(elementIndex))
             {
                 passingActions.add(featureAction);
             }
@@ -422,14 +430,22 @@ public class FeatureActionsController extends EventListenerService
         Set<String> groupsToSatisfy = featureActions.stream().map(a -> a.getGroupName()).distinct()
                 .filter(g -> myRegistry.getActionCreator(g) != null).collect(Collectors.toSet());
 
-        Collection<DataElement> elements = FeatureActionUtilities.getDataElements(myMantleToolbox, ids, dataType);
-        for (DataElement element : elements)
+        List<DataElement> elements = CollectionUtilities
+                .getList(FeatureActionUtilities.getDataElements(myMantleToolbox, ids, dataType));
+        List<BitSet> passingElements = New.list(featureActions.size());
+        for (FeatureAction action : featureActions)
+        {
+            passingElements.add(action.getEvaluator().filter(elements));
+        }
+
+        for (int index = 0; index < elements.size(); ++index)
         {
+            DataElement element = elements.get(index);
             if (element instanceof MapDataElement)
             {
                 MapDataElement mapElement = (MapDataElement)element;
 
-                Collection<FeatureAction> passingFeatureActions = getPassingActions(mapElement, featureActions);
+                Collection<FeatureAction> passingFeatureActions = getPassingActions(index, featureActions, passingElements);
 
                 handleGroupUnsatisfaction(mapElement, passingFeatureActions, groupsToSatisfy, dataType);
 
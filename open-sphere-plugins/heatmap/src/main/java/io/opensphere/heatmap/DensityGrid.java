@@ -0,0 +1,295 @@
+package io.opensphere.heatmap;
+
+import java.awt.image.DataBufferByte;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A grid of density values, one per image pixel. Values are splatted into the
+ * grid, spread with a separable Gaussian kernel, and then mapped to gradient
+ * colors. The passes over the grid are split into tiles of rows or columns
+ * that are processed in parallel on the common fork-join pool.
+ */
+class DensityGrid
+{
+    /** The number of rows processed by one tile of a row pass. */
+    private static final int TILE_ROWS = 32;
+
+    /** The number of columns processed by one tile of the vertical blur. */
+    private static final int TILE_COLUMNS = 32;
+
+    /** The height of the grid. */
+    private final int myHeight;
+
+    /** The values, in row-major order. */
+    private final float[] myValues;
+
+    /** The width of the grid. */
+    private final int myWidth;
+
+    /**
+     * Creates a Gaussian kernel with a peak of 1, so that an isolated value
+     * keeps its magnitude at its own pixel.
+     *
+     * @param radius the radius of the kernel in pixels
+     * @return the kernel, of length {@code 2 * radius + 1}
+     */
+    static float[] createKernel(int radius)
+    {
+        float[] kernel = new float[2 * radius + 1];
+        double sigma = Math.max(radius / 3., .5);
+        double denominator = 2 * sigma * sigma;
+        for (int offset = -radius; offset <= radius; ++offset)
+        {
+            kernel[offset + radius] = (float)Math.exp(-offset * offset / denominator);
+        }
+        return kernel;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param width the width of the grid
+     * @param height the height of the grid
+     */
+    public DensityGrid(int width, int height)
+    {
+        myWidth = width;
+        myHeight = height;
+        myValues = new float[width * height];
+    }
+
+    /**
+     * Adds a value to one cell of the grid. Values outside of the grid are
+     * ignored.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param value the value
+     */
+    public void add(int x, int y, float value)
+    {
+        if (x >= 0 && x < myWidth && y >= 0 && y < myHeight)
+        {
+            myValues[y * myWidth + x] += value;
+        }
+    }
+
+    /**
+     * Adds a value to every cell covered by a mask, scaled by the coverage.
+     *
+     * @param mask the mask, a gray image of the same size as the grid
+     * @param value the value for a fully covered cell
+     */
+    public void addMask(DataBufferByte mask, float value)
+    {
+        byte[] coverage = mask.getData();
+        float scale = value / 255f;
+        processRows((startRow, endRow) ->
+        {
+            for (int index = startRow * myWidth, end = endRow * myWidth; index < end; ++index)
+            {
+                int alpha = coverage[index] & 0xFF;
+                if (alpha != 0)
+                {
+                    myValues[index] += alpha * scale;
+                }
+            }
+        });
+    }
+
+    /**
+     * Spreads the values with a separable Gaussian kernel, first along the
+     * rows and then along the columns.
+     *
+     * @param kernel the kernel, as created by {@link #createKernel(int)}
+     */
+    public void blur(float[] kernel)
+    {
+        int radius = kernel.length / 2;
+        processRows((startRow, endRow) -> blurRows(kernel, radius, startRow, endRow));
+
+        int tiles = (myWidth + TILE_COLUMNS - 1) / TILE_COLUMNS;
+        ForkJoinPool.commonPool().invoke(new TileAction(0, tiles, 1, (startTile, endTile) ->
+        {
+            for (int tile = startTile; tile < endTile; ++tile)
+            {
+                int startColumn = tile * TILE_COLUMNS;
+                blurColumns(kernel, radius, startColumn, Math.min(startColumn + TILE_COLUMNS, myWidth));
+            }
+        }));
+    }
+
+    /**
+     * Maps the values to gradient colors, writing them into the pixels of an
+     * image. Cells whose value is too small to be visible are left
+     * transparent.
+     *
+     * @param pixels the ARGB pixels, in row-major order
+     * @param gradient the gradient colors
+     */
+    public void colorize(int[] pixels, int[] gradient)
+    {
+        final float minimum = 1f / 0xFFFFFF;
+        processRows((startRow, endRow) ->
+        {
+            for (int index = startRow * myWidth, end = endRow * myWidth; index < end; ++index)
+            {
+                float value = myValues[index];
+                if (value >= minimum)
+                {
+                    pixels[index] = HeatmapCreator.getColor(Math.min(value, 1.), gradient);
+                }
+            }
+        });
+    }
+
+    /**
+     * Gets the value of a cell.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the value
+     */
+    public float get(int x, int y)
+    {
+        return myValues[y * myWidth + x];
+    }
+
+    /**
+     * Convolves a range of rows with the kernel, in place.
+     *
+     * @param kernel the kernel
+     * @param radius the radius of the kernel
+     * @param startRow the first row
+     * @param endRow the row after the last row
+     */
+    private void blurRows(float[] kernel, int radius, int startRow, int endRow)
+    {
+        float[] row = new float[myWidth];
+        for (int y = startRow; y < endRow; ++y)
+        {
+            int rowStart = y * myWidth;
+            System.arraycopy(myValues, rowStart, row, 0, myWidth);
+            for (int x = 0; x < myWidth; ++x)
+            {
+                float sum = 0f;
+                for (int k = Math.max(-radius, -x), kEnd = Math.min(radius, myWidth - 1 - x); k <= kEnd; ++k)
+                {
+                    sum += row[x + k] * kernel[k + radius];
+                }
+                myValues[rowStart + x] = sum;
+            }
+        }
+    }
+
+    /**
+     * Convolves a range of columns with the kernel, in place. The columns are
+     * copied into a block first so that the inner loop reads contiguous
+     * memory.
+     *
+     * @param kernel the kernel
+     * @param radius the radius of the kernel
+     * @param startColumn the first column
+     * @param endColumn the column after the last column
+     */
+    private void blurColumns(float[] kernel, int radius, int startColumn, int endColumn)
+    {
+        int columns = endColumn - startColumn;
+        float[] block = new float[columns * myHeight];
+        for (int y = 0; y < myHeight; ++y)
+        {
+            System.arraycopy(myValues, y * myWidth + startColumn, block, y * columns, columns);
+        }
+        float[] sums = new float[columns];
+        for (int y = 0; y < myHeight; ++y)
+        {
+            Arrays.fill(sums, 0f);
+            for (int k = Math.max(-radius, -y), kEnd = Math.min(radius, myHeight - 1 - y); k <= kEnd; ++k)
+            {
+                float weight = kernel[k + radius];
+                int blockRow = (y + k) * columns;
+                for (int c = 0; c < columns; ++c)
+                {
+                    sums[c] += block[blockRow + c] * weight;
+                }
+            }
+            System.arraycopy(sums, 0, myValues, y * myWidth + startColumn, columns);
+        }
+    }
+
+    /**
+     * Processes the rows of the grid in parallel tiles.
+     *
+     * @param processor the processor for a range of rows
+     */
+    private void processRows(RangeProcessor processor)
+    {
+        ForkJoinPool.commonPool().invoke(new TileAction(0, myHeight, TILE_ROWS, processor));
+    }
+
+    /** Processes a range of rows, columns, or tiles. */
+    @FunctionalInterface
+    private interface RangeProcessor
+    {
+        /**
+         * Processes a range.
+         *
+         * @param start the start of the range
+         * @param end the end of the range, exclusive
+         */
+        void process(int start, int end);
+    }
+
+    /** A fork-join action that splits a range until it is a single tile. */
+    private static class TileAction extends RecursiveAction
+    {
+        /** serialVersionUID. */
+        private static final long serialVersionUID = 1L;
+
+        /** The end of the range, exclusive. */
+        private final int myEnd;
+
+        /** The processor. */
+        private final transient RangeProcessor myProcessor;
+
+        /** The start of the range. */
+        private final int myStart;
+
+        /** The maximum size of a range that is processed without splitting. */
+        private final int myTileSize;
+
+        /**
+         * Constructor.
+         *
+         * @param start the start of the range
+         * @param end the end of the range, exclusive
+         * @param tileSize the maximum size of a range that is processed
+         *            without splitting
+         * @param processor the processor
+         */
+        public TileAction(int start, int end, int tileSize, RangeProcessor processor)
+        {
+            myStart = start;
+            myEnd = end;
+            myTileSize = tileSize;
+            myProcessor = processor;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (myEnd - myStart <= myTileSize)
+            {
+                myProcessor.process(myStart, myEnd);
+            }
+            else
+            {
+                int middle = myStart + myEnd >>> 1;
+                invokeAll(new TileAction(myStart, middle, myTileSize, myProcessor),
+                        new TileAction(middle, myEnd, myTileSize, myProcessor));
+            }
+        }
+    }
+}
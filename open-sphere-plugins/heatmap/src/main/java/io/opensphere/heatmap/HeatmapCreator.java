@@ -2,18 +2,26 @@ package io.opensphere.heatmap;
 
 import java.awt.BasicStroke;
 import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Polygon;
-import java.awt.RadialGradientPaint;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
 
-import org.jdesktop.swingx.image.AbstractFilter;
-import org.jdesktop.swingx.image.GaussianBlurFilter;
-
-/** Creates heat maps. */
+/**
+ * Creates heat maps. The points are accumulated into a {@link DensityGrid},
+ * smoothed, and colored directly into the pixels of the image.
+ */
 public class HeatmapCreator
 {
+    /**
+     * The radius of the smoothing that is applied in addition to the size of
+     * the points.
+     */
+    private static final int SMOOTHING_RADIUS = 8;
+
     /**
      * Creates a buffered image from the model.
      *
@@ -26,19 +34,19 @@ public class HeatmapCreator
         int width = model.getImageSize().width;
         int height = model.getImageSize().height;
 
-        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_4BYTE_ABGR);
-        Graphics2D g = (Graphics2D)image.getGraphics();
-
         double altitude = model.getMapManager().getStandardViewer().getAltitude() / 1000;
         double sizeAdjustment = 1 + Math.pow(altitude, .4) / 25.0;
 
         int size = (int)(options.getSize() * sizeAdjustment) / 10;
 
-        combineGradients(model, g, size, options.getIntensity());
-        mapToGradient(image, options.getGradient().getGradients());
-        BufferedImage blur = blur(image);
+        DensityGrid grid = new DensityGrid(width, height);
+        addPoints(model, grid, options.getIntensity());
+        addShapes(model, grid, size, options.getIntensity());
+        grid.blur(DensityGrid.createKernel(size + SMOOTHING_RADIUS));
 
-        return blur;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        grid.colorize(((DataBufferInt)image.getRaster().getDataBuffer()).getData(), options.getGradient().getGradients());
+        return image;
     }
 
     /**
@@ -72,114 +80,57 @@ public class HeatmapCreator
     }
 
     /**
-     * Paints a gradient around each pixel, combining them additively to produce
-     * a new image representing pixel values.
+     * Adds the point counts to the grid, scaled so that the maximum intensity
+     * is 1.
      *
      * @param model the model
-     * @param g the image graphics
-     * @param size the size of the element boundary used to generate
-     *            intersections.
+     * @param grid the grid
      * @param intensity the number of points needed for the maximum intensity.
      */
-    private void combineGradients(HeatmapModel model, Graphics2D g, float size, int intensity)
+    private void addPoints(HeatmapModel model, DensityGrid grid, int intensity)
     {
-        int radius = (int)size;
-        int diameter = radius * 2;
-        float[] gradientFractions = { 0f, 1f };
-        Color[] gradientColors = new Color[] { null, Color.BLACK };
-        double maxCount = intensity;
-
-        // composite function: just keep adding color
-        g.setComposite(new AddComposite());
-
-        // Render points
-        model.forEachValue((Point coord, Integer count) ->
-        {
-            double percent = count.intValue() / maxCount;
-            gradientColors[0] = new Color(rgbFromPercent(percent));
-
-            g.setPaint(new RadialGradientPaint(coord, size, gradientFractions, gradientColors));
-            g.fillOval(coord.x - radius, coord.y - radius, diameter, diameter);
-        });
-
-        // Render lines & polygons
-        if (!model.getPolylines().isEmpty() || !model.getPolygons().isEmpty())
-        {
-            final double lowColorPercent = 1.05 - .1 * (intensity / 50.0);
-            Color shapeColor = new Color(rgbFromPercent(lowColorPercent));
-            g.setColor(shapeColor);
-
-            for (Polygon polygon : model.getPolygons())
-            {
-                g.fillPolygon(polygon);
-            }
-
-            g.setStroke(new BasicStroke(size, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-            for (Polygon polygon : model.getPolylines())
-            {
-                g.drawPolyline(polygon.xpoints, polygon.ypoints, polygon.npoints);
-            }
-        }
+        float scale = 1f / intensity;
+        model.forEachValue((Point coord, Integer count) -> grid.add(coord.x, coord.y, count.intValue() * scale));
     }
 
     /**
-     * Maps the value of each pixel to a gradient color and updates the image.
+     * Rasterizes the lines and polygons and adds them to the grid with a low
+     * intensity.
      *
-     * @param image the image
-     * @param gradient the gradient
+     * @param model the model
+     * @param grid the grid
+     * @param size the width of the lines
+     * @param intensity the number of points needed for the maximum intensity.
      */
-    private void mapToGradient(BufferedImage image, int[] gradient)
+    private void addShapes(HeatmapModel model, DensityGrid grid, float size, int intensity)
     {
-        for (int y = 0, h = image.getHeight(); y < h; y++)
+        if (!model.getPolylines().isEmpty() || !model.getPolygons().isEmpty())
         {
-            for (int x = 0, w = image.getWidth(); x < w; x++)
+            Dimension imageSize = model.getImageSize();
+            BufferedImage mask = new BufferedImage(imageSize.width, imageSize.height, BufferedImage.TYPE_BYTE_GRAY);
+            Graphics2D g = mask.createGraphics();
+            try
             {
-                int rgb = image.getRGB(x, y);
-                if (rgb > 0)
+                g.setColor(Color.WHITE);
+                for (Polygon polygon : model.getPolygons())
                 {
-                    double percent = percentFromRgb(rgb);
-                    int color = getColor(percent, gradient);
-                    image.setRGB(x, y, color);
+                    g.fillPolygon(polygon);
                 }
-            }
-        }
-    }
 
-    /**
-     * Blurs the image using a filter.
-     *
-     * @param image the image to blur.
-     * @return a new {@link BufferedImage} in which the contents of the supplied
-     *         image have been blurred.
-     */
-    private BufferedImage blur(BufferedImage image)
-    {
-        BufferedImage filteredImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_4BYTE_ABGR);
-        AbstractFilter filter = new GaussianBlurFilter(8);
-        filteredImage = filter.filter(image, filteredImage);
-        return filteredImage;
-    }
-
-    /**
-     * Converts a percent into an rgb value.
-     *
-     * @param percent the percent
-     * @return the rgb value
-     */
-    private static int rgbFromPercent(double percent)
-    {
-        return (int)Math.round(0xFFFFFF * percent);
-    }
+                g.setStroke(new BasicStroke(size, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+                for (Polygon polygon : model.getPolylines())
+                {
+                    g.drawPolyline(polygon.xpoints, polygon.ypoints, polygon.npoints);
+                }
+            }
+            finally
+            {
+                g.dispose();
+            }
 
-    /**
-     * Converts an rgb value into a percent.
-     *
-     * @param rgb the rgb value
-     * @return the percent
-     */
-    private static double percentFromRgb(int rgb)
-    {
-        return (rgb & 0x00FFFFFF) / (double)0xFFFFFF;
+            final double lowColorPercent = 1.05 - .1 * (intensity / 50.0);
+            grid.addMask((DataBufferByte)mask.getRaster().getDataBuffer(), (float)lowColorPercent);
+        }
     }
 
     /**
@@ -189,7 +140,7 @@ public class HeatmapCreator
      * @param gradient the gradients
      * @return the color in rgb
      */
-    private static int getColor(double percent, int[] gradient)
+    static int getColor(double percent, int[] gradient)
     {
         int gradientIndex = (int)(gradient.length * percent);
         int color1 = gradient[Math.min(gradientIndex, gradient.length - 1)];
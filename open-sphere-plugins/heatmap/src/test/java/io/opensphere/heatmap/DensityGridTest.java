@@ -0,0 +1,90 @@
+package io.opensphere.heatmap;
+
+import java.awt.image.DataBufferByte;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Tests for {@link DensityGrid}. */
+public class DensityGridTest
+{
+    /** Test creating a kernel. */
+    @Test
+    public void testCreateKernel()
+    {
+        float[] kernel = DensityGrid.createKernel(6);
+        Assert.assertEquals(13, kernel.length);
+        Assert.assertEquals(1f, kernel[6], 0f);
+        for (int offset = 1; offset <= 6; ++offset)
+        {
+            Assert.assertEquals(kernel[6 - offset], kernel[6 + offset], 0f);
+            Assert.assertTrue(kernel[6 + offset] < kernel[6 + offset - 1]);
+        }
+    }
+
+    /**
+     * Test that the separable blur matches a direct two-dimensional
+     * convolution, including at the edges of the grid.
+     */
+    @Test
+    public void testBlur()
+    {
+        int width = 150;
+        int height = 90;
+        int[][] points = { { 0, 0 }, { 75, 45 }, { 76, 45 }, { 149, 3 }, { 10, 89 }, { 75, 45 } };
+        DensityGrid grid = new DensityGrid(width, height);
+        for (int[] point : points)
+        {
+            grid.add(point[0], point[1], .25f);
+        }
+        grid.add(-1, 0, 1f);
+        grid.add(0, height, 1f);
+
+        float[] kernel = DensityGrid.createKernel(5);
+        grid.blur(kernel);
+
+        for (int y = 0; y < height; ++y)
+        {
+            for (int x = 0; x < width; ++x)
+            {
+                float expected = 0f;
+                for (int[] point : points)
+                {
+                    int dx = point[0] - x;
+                    int dy = point[1] - y;
+                    if (Math.abs(dx) <= 5 && Math.abs(dy) <= 5)
+                    {
+                        expected += .25f * kernel[dx + 5] * kernel[dy + 5];
+                    }
+                }
+                Assert.assertEquals(expected, grid.get(x, y), 1e-6f);
+            }
+        }
+    }
+
+    /** Test adding a mask and mapping the values to colors. */
+    @Test
+    public void testAddMaskAndColorize()
+    {
+        DensityGrid grid = new DensityGrid(4, 2);
+        byte[] mask = new byte[8];
+        mask[1] = (byte)255;
+        mask[6] = (byte)51;
+        grid.addMask(new DataBufferByte(mask, mask.length), .5f);
+        grid.add(3, 1, 3f);
+        Assert.assertEquals(.5f, grid.get(1, 0), 1e-6f);
+        Assert.assertEquals(.1f, grid.get(2, 1), 1e-6f);
+
+        int[] gradient = new int[256];
+        for (int index = 0; index < gradient.length; ++index)
+        {
+            gradient[index] = 0xFF000000 | index;
+        }
+        int[] pixels = new int[8];
+        grid.colorize(pixels, gradient);
+        Assert.assertEquals(0, pixels[0]);
+        Assert.assertEquals(HeatmapCreator.getColor(.5, gradient), pixels[1]);
+        Assert.assertEquals(HeatmapCreator.getColor(.1f, gradient), pixels[6]);
+        Assert.assertEquals(0xFF0000FF, pixels[7]);
+    }
+}
@@ -89,6 +89,7 @@ class KMLMasterController extends EventListenerService
         myRegionController = new KMLRegionController(toolbox, myMantleController);
 
         myKMLToolbox.setDataSourceController(myDataSourceController);
+        myKMLToolbox.setStreamedFeatureHandler(myMantleController);
 
         addService(myDataSourceController);
         addService(myMantleController);
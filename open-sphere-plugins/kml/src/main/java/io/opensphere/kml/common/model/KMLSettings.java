@@ -21,6 +21,10 @@ public class KMLSettings implements Serializable, Resettable
     @XmlElement(name = "scalingMethod")
     private volatile ScalingMethod myScalingMethod = ScalingMethod.GOOGLE_EARTH;
 
+    /** Whether the placemarks of large documents are streamed. */
+    @XmlElement(name = "streamLargeDocuments")
+    private volatile boolean myStreamLargeDocuments;
+
     /**
      * Sets the scaling method.
      *
@@ -41,9 +45,32 @@ public class KMLSettings implements Serializable, Resettable
         return myScalingMethod;
     }
 
+    /**
+     * Sets whether the placemarks of large documents are streamed.
+     *
+     * @param streamLargeDocuments whether to stream large documents
+     */
+    public void setStreamLargeDocuments(boolean streamLargeDocuments)
+    {
+        myStreamLargeDocuments = streamLargeDocuments;
+    }
+
+    /**
+     * Gets whether the placemarks of large documents are streamed. Streamed
+     * placemarks are shown while the document loads, but they are not listed
+     * in the KML tree and get no labels or regions.
+     *
+     * @return whether to stream large documents
+     */
+    public boolean isStreamLargeDocuments()
+    {
+        return myStreamLargeDocuments;
+    }
+
     @Override
     public void reset()
     {
         myScalingMethod = ScalingMethod.GOOGLE_EARTH;
+        myStreamLargeDocuments = false;
     }
 }
@@ -0,0 +1,36 @@
+package io.opensphere.kml.common.model;
+
+import java.util.List;
+
+/**
+ * An interface for something that takes placemarks from a KML document while
+ * it is being parsed. Streamed placemarks are not part of the feature tree of
+ * their data source.
+ */
+public interface KMLStreamedFeatureHandler
+{
+    /**
+     * Adds a batch of placemarks streamed from a data source. This is called
+     * on the parsing thread.
+     *
+     * @param dataSource The data source
+     * @param features The placemarks
+     */
+    void addStreamedFeatures(KMLDataSource dataSource, List<? extends KMLFeature> features);
+
+    /**
+     * Notifies the handler that a data source is about to be streamed. Any
+     * placemarks streamed from it before are discarded.
+     *
+     * @param dataSource The data source
+     */
+    void beginStream(KMLDataSource dataSource);
+
+    /**
+     * Discards the placemarks streamed from a data source, for instance if
+     * the data source has to be reloaded without streaming.
+     *
+     * @param dataSource The data source
+     */
+    void cancelStream(KMLDataSource dataSource);
+}
@@ -10,6 +10,7 @@ import io.opensphere.core.util.lang.NamedThreadFactory;
 import io.opensphere.core.util.swing.AbstractHUDPanel;
 import io.opensphere.kml.common.model.KMLDataSourceController;
 import io.opensphere.kml.common.model.KMLSettings;
+import io.opensphere.kml.common.model.KMLStreamedFeatureHandler;
 import io.opensphere.mantle.data.DataGroupInfo;
 
 /**
@@ -38,6 +39,9 @@ public class KMLToolbox implements PluginToolbox
     /** The data source controller. */
     private volatile KMLDataSourceController myDataSourceController;
 
+    /** The handler for placemarks streamed from large documents. */
+    private volatile KMLStreamedFeatureHandler myStreamedFeatureHandler;
+
     /**
      * Constructor.
      *
@@ -97,6 +101,16 @@ public class KMLToolbox implements PluginToolbox
         return myStyleCache;
     }
 
+    /**
+     * Gets the handler for placemarks streamed from large documents.
+     *
+     * @return the streamed feature handler, or null
+     */
+    public KMLStreamedFeatureHandler getStreamedFeatureHandler()
+    {
+        return myStreamedFeatureHandler;
+    }
+
     /**
      * Getter for treePanel.
      *
@@ -147,6 +161,16 @@ public class KMLToolbox implements PluginToolbox
         myMasterGroup = masterGroup;
     }
 
+    /**
+     * Sets the handler for placemarks streamed from large documents.
+     *
+     * @param streamedFeatureHandler the streamed feature handler
+     */
+    public void setStreamedFeatureHandler(KMLStreamedFeatureHandler streamedFeatureHandler)
+    {
+        myStreamedFeatureHandler = streamedFeatureHandler;
+    }
+
     /**
      * Setter for treePanel.
      *
@@ -472,7 +472,7 @@ public class KMLEnvoy extends AbstractEnvoy implements DataRegistryDataProvider
         }
         else
         {
-            processor.process(is, dataSourcesToLoad);
+            processor.process(is, contentLengthBytes, dataSourcesToLoad);
         }
     }
 
@@ -563,9 +563,13 @@ public class KMLEnvoy extends AbstractEnvoy implements DataRegistryDataProvider
             {
                 if (!foundKML)
                 {
+                    // The uncompressed size is often missing from the local
+                    // header, but the compressed size is a lower bound.
+                    long size = entry.getSize() >= 0 ? entry.getSize() : entry.getCompressedSize();
+
                     // Use an un-closeable input stream to make sure the zip
                     // stream stays open.
-                    processor.process(new UncloseableInputStream(zipStream), dataSourcesToLoad);
+                    processor.process(new UncloseableInputStream(zipStream), size, dataSourcesToLoad);
                     foundKML = true;
                 }
             }
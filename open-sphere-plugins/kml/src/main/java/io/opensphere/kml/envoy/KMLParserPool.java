@@ -73,6 +73,32 @@ public final class KMLParserPool implements Processor<InputStream, Kml>
         return null;
     }
 
+    /**
+     * Replaces the jak geometry of a placemark with our custom one, if we have
+     * created one for that type of geometry.
+     *
+     * @param placemark The placemark.
+     */
+    static void replaceGeometry(Placemark placemark)
+    {
+        if (placemark.getGeometry() instanceof Track)
+        {
+            Track jakTrack = (Track)placemark.getGeometry();
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            try
+            {
+                XMLUtilities.writeXMLObject(jakTrack, output);
+                io.opensphere.kml.gx.Track customTrack = XMLUtilities
+                        .readXMLObject(new ByteArrayInputStream(output.toByteArray()), io.opensphere.kml.gx.Track.class);
+                placemark.setGeometry(customTrack);
+            }
+            catch (JAXBException e)
+            {
+                LOGGER.error(e, e);
+            }
+        }
+    }
+
     /**
      * Takes a parser, blocking until one is available.
      *
@@ -198,23 +224,7 @@ public final class KMLParserPool implements Processor<InputStream, Kml>
                 }
                 else if (feature instanceof Placemark)
                 {
-                    Placemark placemark = (Placemark)feature;
-                    if (placemark.getGeometry() instanceof Track)
-                    {
-                        Track jakTrack = (Track)placemark.getGeometry();
-                        ByteArrayOutputStream output = new ByteArrayOutputStream();
-                        try
-                        {
-                            XMLUtilities.writeXMLObject(jakTrack, output);
-                            io.opensphere.kml.gx.Track customTrack = XMLUtilities.readXMLObject(
-                                    new ByteArrayInputStream(output.toByteArray()), io.opensphere.kml.gx.Track.class);
-                            placemark.setGeometry(customTrack);
-                        }
-                        catch (JAXBException e)
-                        {
-                            LOGGER.error(e, e);
-                        }
-                    }
+                    replaceGeometry((Placemark)feature);
                 }
             }
         }
@@ -48,9 +48,11 @@ import io.opensphere.kml.common.model.KMLDataSource.FailureReason;
 import io.opensphere.kml.common.model.KMLDataSource.Type;
 import io.opensphere.kml.common.model.KMLFeature;
 import io.opensphere.kml.common.model.KMLFeatureUtils;
+import io.opensphere.kml.common.model.KMLStreamedFeatureHandler;
 import io.opensphere.kml.common.util.KMLFeatureAccumulator;
 import io.opensphere.kml.common.util.KMLLinkHelper;
 import io.opensphere.kml.common.util.KMLSpatialTemporalUtils;
+import io.opensphere.kml.common.util.KMLStyleCache;
 import io.opensphere.kml.common.util.KMLToolboxUtils;
 
 /**
@@ -60,6 +62,11 @@ import io.opensphere.kml.common.util.KMLToolboxUtils;
  * load KMZ: Parses the internal KML file, and adds other files to the KMZ cache
  * Overlays: Adds them to the KMZ cache
  *
+ * When the user has turned streaming on, large root KML documents are
+ * streamed: their placemarks are handed to the
+ * {@link KMLStreamedFeatureHandler} in batches while the rest of the document
+ * is parsed into the result.
+ *
  * Also takes care of doing XSLT transformations for Schema data.
  */
 @SuppressWarnings("PMD.GodClass")
@@ -71,6 +78,12 @@ public class KMLProcessor
     /** The parser pool. */
     public static final KMLParserPool PARSER_POOL = new KMLParserPool();
 
+    /** The size at or above which a KML document is streamed. */
+    static final long STREAMING_THRESHOLD_BYTES = 32L << 20;
+
+    /** The number of placemarks in a streamed batch. */
+    private static final int STREAMING_BATCH_SIZE = 2000;
+
     /** The data source. */
     private final KMLDataSource myDataSource;
 
@@ -98,7 +111,27 @@ public class KMLProcessor
      */
     public void process(InputStream inputStream, Collection<? super KMLDataSource> dataSourcesToLoad) throws IOException
     {
-        KMLFeature rootFeature = parseKMLInputStream(inputStream);
+        process(inputStream, -1L, dataSourcesToLoad);
+    }
+
+    /**
+     * Process an input stream, streaming its placemarks if streaming is turned
+     * on and the content is known to be large enough. The input stream may be
+     * closed by this operation.
+     *
+     * @param inputStream The input stream.
+     * @param contentLengthBytes The length of the content, or -1 if unknown.
+     * @param dataSourcesToLoad Return collection of additional data sources to
+     *            load.
+     * @throws IOException If the input stream cannot be parsed as KML.
+     */
+    public void process(InputStream inputStream, long contentLengthBytes, Collection<? super KMLDataSource> dataSourcesToLoad)
+            throws IOException
+    {
+        KMLStreamedFeatureHandler streamHandler = isStreamable(contentLengthBytes)
+                ? KMLToolboxUtils.getKmlToolbox().getStreamedFeatureHandler() : null;
+        KMLFeature rootFeature = streamHandler == null ? parseKMLInputStream(inputStream)
+                : streamKMLInputStream(inputStream, streamHandler);
         if (rootFeature != null)
         {
             // Accumulate all the schemas
@@ -118,6 +151,10 @@ public class KMLProcessor
             {
                 LOGGER.info("Found " + schemata.size() + " KML schemata in " + myDataSource.getPath() + "; reloading.");
                 myDataSource.setSchemata(schemata);
+                if (streamHandler != null)
+                {
+                    streamHandler.cancelStream(myDataSource);
+                }
                 dataSourcesToLoad.add(myDataSource);
             }
             else
@@ -134,6 +171,10 @@ public class KMLProcessor
         }
         else
         {
+            if (streamHandler != null)
+            {
+                streamHandler.cancelStream(myDataSource);
+            }
             myDataSource.setErrorMessage("File contains invalid KML: " + myDataSource.getPath());
             if (myDataSource.getFailureReason() == FailureReason.NAMESPACE_PARSE_ERROR)
             {
@@ -166,8 +207,6 @@ public class KMLProcessor
      */
     private KMLFeature parseKMLInputStream(final InputStream inputStream)
     {
-        KMLFeature rootFeature = null;
-
         InputStream transformedInputStream = StreamUtilities.bufferifyInputStream(inputStream);
 
         // If the data source contains schemas, transform the data to be
@@ -193,18 +232,97 @@ public class KMLProcessor
         }
         catch (JAXBException e)
         {
-            Throwable le = e.getLinkedException();
+            handleParseException(e, namespacesRemoved);
+        }
 
-            LOGGER.error(le);
+        return toRootFeature(kml);
+    }
 
-            if (!namespacesRemoved && le instanceof SAXParseException && le.getMessage() != null
-                    && le.getMessage().startsWith("The prefix "))
+    /**
+     * Parses a KML input stream, handing its placemarks to a handler in
+     * batches as they are parsed.
+     *
+     * @param inputStream The input stream
+     * @param handler The handler for the placemarks
+     * @return The root feature, without the placemarks
+     */
+    private KMLFeature streamKMLInputStream(final InputStream inputStream, KMLStreamedFeatureHandler handler)
+    {
+        handler.beginStream(myDataSource);
+        KMLStyleCache styleCache = KMLToolboxUtils.getKmlToolbox().getStyleCache();
+        KMLStreamingParser parser = new KMLStreamingParser(myDataSource, STREAMING_BATCH_SIZE, batch ->
+        {
+            for (KMLFeature feature : batch)
             {
-                myDataSource.setFailureReason(FailureReason.NAMESPACE_PARSE_ERROR);
-                Notify.error(myDataSource.getName() + ": Unable to parse KML input stream", Method.ALERT_HIDDEN);
+                feature.setShowBalloon(styleCache.supportsBalloon(feature));
             }
+            handler.addStreamedFeatures(myDataSource, batch);
+        });
+
+        Kml kml = null;
+        try
+        {
+            kml = parser.parse(StreamUtilities.bufferifyInputStream(inputStream));
+        }
+        catch (JAXBException e)
+        {
+            handleParseException(e, false);
         }
 
+        LOGGER.info(StringUtilities.concat("Streamed ", Integer.valueOf(parser.getPlacemarkCount()), " placemarks from ",
+                myDataSource.getPath()));
+
+        return toRootFeature(kml);
+    }
+
+    /**
+     * Determines if the data source can be streamed. Streaming is off unless
+     * the user turns it on. Only root documents without schemata that are
+     * known to be large are streamed, since the placemarks of anything else
+     * have to be in the feature tree; a document of unknown length is parsed
+     * whole.
+     *
+     * @param contentLengthBytes The length of the content, or -1 if unknown.
+     * @return Whether the data source can be streamed
+     */
+    private boolean isStreamable(long contentLengthBytes)
+    {
+        return KMLToolboxUtils.getKmlToolbox().getSettings().isStreamLargeDocuments()
+                && contentLengthBytes >= STREAMING_THRESHOLD_BYTES && myDataSource.getCreatingFeature() == null
+                && !myDataSource.isStyleSource() && myDataSource.getSchemata().isEmpty()
+                && myDataSource.getFailureReason() != FailureReason.NAMESPACE_PARSE_ERROR;
+    }
+
+    /**
+     * Handles an exception from parsing, noting if the document has to be
+     * reloaded without namespaces.
+     *
+     * @param e The exception
+     * @param namespacesRemoved Whether the namespaces were already removed
+     */
+    private void handleParseException(JAXBException e, boolean namespacesRemoved)
+    {
+        Throwable le = e.getLinkedException();
+
+        LOGGER.error(le);
+
+        if (!namespacesRemoved && le instanceof SAXParseException && le.getMessage() != null
+                && le.getMessage().startsWith("The prefix "))
+        {
+            myDataSource.setFailureReason(FailureReason.NAMESPACE_PARSE_ERROR);
+            Notify.error(myDataSource.getName() + ": Unable to parse KML input stream", Method.ALERT_HIDDEN);
+        }
+    }
+
+    /**
+     * Converts a parsed Kml object to a KMLFeature tree.
+     *
+     * @param kml The Kml object, or null
+     * @return The root feature, or null
+     */
+    private KMLFeature toRootFeature(Kml kml)
+    {
+        KMLFeature rootFeature = null;
         if (kml != null && kml.getFeature() != null)
         {
             // Convert the Kml tree to a KMLFeature tree
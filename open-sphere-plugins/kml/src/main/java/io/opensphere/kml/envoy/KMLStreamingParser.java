@@ -0,0 +1,598 @@
+package io.opensphere.kml.envoy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.JAXBIntrospector;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.UnmarshallerHandler;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.sax.SAXSource;
+
+import org.apache.log4j.Logger;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import de.micromata.opengis.kml.v_2_2_0.Document;
+import de.micromata.opengis.kml.v_2_2_0.Feature;
+import de.micromata.opengis.kml.v_2_2_0.Folder;
+import de.micromata.opengis.kml.v_2_2_0.Kml;
+import de.micromata.opengis.kml.v_2_2_0.Placemark;
+import de.micromata.opengis.kml.v_2_2_0.StyleSelector;
+import io.opensphere.core.util.collections.New;
+import io.opensphere.core.util.xml.WrappedContentHandler;
+import io.opensphere.core.util.xml.WrappedXMLReader;
+import io.opensphere.kml.common.model.KMLDataSource;
+import io.opensphere.kml.common.model.KMLFeature;
+
+/**
+ * Parses a KML document without building the whole object tree. Placemarks
+ * are unmarshalled one at a time as the SAX events arrive and are handed to a
+ * consumer in batches while the parse continues; they are not part of the
+ * returned {@link Kml}, which holds everything else in the document (folders,
+ * shared styles, overlays, network links). The events pass through the same
+ * {@link KMLNamespaceFilterHandler} as the {@link KMLParserPool} parsers.
+ * <p>
+ * Each streamed placemark is wrapped in a {@link KMLFeature} whose parent
+ * chain holds the shared styles of its enclosing containers that were parsed
+ * before it, so that internal style URLs resolve. The parent features are
+ * not linked to their children.
+ * <p>
+ * Placemarks with a remote style URL are not streamed. They are put back in
+ * their containers in the returned {@link Kml}, so that they are in the feature
+ * tree and get their styles once the remote style documents are loaded.
+ * <p>
+ * This class is not thread-safe; use one instance per parse.
+ */
+final class KMLStreamingParser
+{
+    /** Logger. */
+    private static final Logger LOGGER = Logger.getLogger(KMLStreamingParser.class);
+
+    /** The JAXB context, which is thread-safe and expensive to create. */
+    private static volatile JAXBContext ourContext;
+
+    /** The consumer for the batches of placemarks. */
+    private final Consumer<? super List<KMLFeature>> myBatchConsumer;
+
+    /** The number of placemarks in a batch. */
+    private final int myBatchSize;
+
+    /** The data source being parsed. */
+    private final KMLDataSource myDataSource;
+
+    /**
+     * The features for the containers of the kept placemarks, by the preorder
+     * index of the container in the document.
+     */
+    private final Map<Integer, KMLFeature> myKeptContainers = New.map();
+
+    /**
+     * The placemarks that are kept in the document, by the preorder index of
+     * their container.
+     */
+    private final Map<Integer, List<Placemark>> myKeptPlacemarks = New.map();
+
+    /** The placemarks that have not been handed to the consumer. */
+    private List<KMLFeature> myBatch;
+
+    /** The number of placemarks that have been handed to the consumer. */
+    private int myPlacemarkCount;
+
+    /**
+     * Gets the JAXB context for KML.
+     *
+     * @return The context.
+     * @throws JAXBException If the context cannot be created.
+     */
+    private static JAXBContext getContext() throws JAXBException
+    {
+        JAXBContext context = ourContext;
+        if (context == null)
+        {
+            context = JAXBContext.newInstance(Kml.class);
+            ourContext = context;
+        }
+        return context;
+    }
+
+    /**
+     * Determines if a placemark has a remote style URL.
+     *
+     * @param placemark The placemark.
+     * @return If the style URL is remote.
+     */
+    private static boolean hasRemoteStyle(Placemark placemark)
+    {
+        String styleUrl = placemark.getStyleUrl();
+        return styleUrl != null && styleUrl.trim().indexOf('#') > 0;
+    }
+
+    /**
+     * Adds the Document and Folder features in a feature tree to a list, in
+     * preorder.
+     *
+     * @param feature The root of the tree.
+     * @param containers The list of containers.
+     */
+    private static void addContainers(Feature feature, List<Feature> containers)
+    {
+        List<Feature> children;
+        if (feature instanceof Document)
+        {
+            children = ((Document)feature).getFeature();
+        }
+        else if (feature instanceof Folder)
+        {
+            children = ((Folder)feature).getFeature();
+        }
+        else
+        {
+            return;
+        }
+        containers.add(feature);
+        for (Feature child : children)
+        {
+            addContainers(child, containers);
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param dataSource The data source being parsed.
+     * @param batchSize The number of placemarks in a batch.
+     * @param batchConsumer The consumer for the batches of placemarks, which
+     *            is called on the parsing thread.
+     */
+    public KMLStreamingParser(KMLDataSource dataSource, int batchSize, Consumer<? super List<KMLFeature>> batchConsumer)
+    {
+        myDataSource = dataSource;
+        myBatchSize = batchSize;
+        myBatchConsumer = batchConsumer;
+        myBatch = New.list(batchSize);
+    }
+
+    /**
+     * Gets the number of placemarks that have been handed to the consumer.
+     *
+     * @return The number of placemarks.
+     */
+    public int getPlacemarkCount()
+    {
+        return myPlacemarkCount;
+    }
+
+    /**
+     * Parses a KML input stream. The stream must support mark/reset.
+     *
+     * @param content The input stream.
+     * @return The document without its streamed placemarks, or {@code null} if
+     *         it could not be parsed.
+     * @throws JAXBException If the document cannot be unmarshalled.
+     */
+    public Kml parse(InputStream content) throws JAXBException
+    {
+        Unmarshaller documentUnmarshaller = getContext().createUnmarshaller();
+        Unmarshaller fragmentUnmarshaller = getContext().createUnmarshaller();
+
+        String encoding = "UTF-8";
+        try
+        {
+            encoding = StreamUtilities.getEncoding(content);
+        }
+        catch (IOException e)
+        {
+            LOGGER.error(e.getMessage(), e);
+        }
+        InputSource input = new InputSource(content);
+        input.setEncoding(encoding);
+
+        Kml kml;
+        try
+        {
+            WrappedXMLReader reader = new WrappedXMLReader(false,
+                    handler -> new KMLNamespaceFilterHandler(new SplittingHandler(handler, fragmentUnmarshaller)));
+            kml = (Kml)documentUnmarshaller.unmarshal(new SAXSource(reader, input));
+        }
+        catch (ParserConfigurationException | SAXException e)
+        {
+            LOGGER.error(e, e);
+            kml = null;
+        }
+        insertKeptPlacemarks(kml);
+        flush();
+        return kml;
+    }
+
+    /**
+     * Adds a placemark to the current batch, handing the batch to the
+     * consumer if it is full.
+     *
+     * @param placemark The placemark.
+     * @param parent The feature for the placemark's container.
+     */
+    private void addPlacemark(Placemark placemark, KMLFeature parent)
+    {
+        Predicate<Feature> pruner = myDataSource.getFeaturePruner();
+        if (pruner == null || pruner.test(placemark))
+        {
+            KMLParserPool.replaceGeometry(placemark);
+            KMLFeature feature = new KMLFeature(placemark, myDataSource);
+            feature.setParent(parent);
+            myBatch.add(feature);
+            if (myBatch.size() >= myBatchSize)
+            {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Puts the kept placemarks in their containers in the document. Any whose
+     * container cannot be found are streamed after all.
+     *
+     * @param kml The document, or {@code null} if it could not be parsed.
+     */
+    private void insertKeptPlacemarks(Kml kml)
+    {
+        List<Feature> containers = New.list();
+        if (kml != null)
+        {
+            addContainers(kml.getFeature(), containers);
+        }
+        for (Map.Entry<Integer, List<Placemark>> entry : myKeptPlacemarks.entrySet())
+        {
+            int index = entry.getKey().intValue();
+            Feature container = index < containers.size() ? containers.get(index) : null;
+            if (container instanceof Document)
+            {
+                ((Document)container).getFeature().addAll(entry.getValue());
+            }
+            else if (container instanceof Folder)
+            {
+                ((Folder)container).getFeature().addAll(entry.getValue());
+            }
+            else
+            {
+                KMLFeature parent = myKeptContainers.get(entry.getKey());
+                for (Placemark placemark : entry.getValue())
+                {
+                    addPlacemark(placemark, parent);
+                }
+            }
+        }
+        myKeptPlacemarks.clear();
+        myKeptContainers.clear();
+    }
+
+    /**
+     * Keeps a placemark to be put back in its container in the document.
+     *
+     * @param placemark The placemark.
+     * @param container The feature for the placemark's container.
+     * @param containerIndex The preorder index of the container in the
+     *            document.
+     */
+    private void keepPlacemark(Placemark placemark, KMLFeature container, int containerIndex)
+    {
+        KMLParserPool.replaceGeometry(placemark);
+        Integer key = Integer.valueOf(containerIndex);
+        myKeptPlacemarks.computeIfAbsent(key, k -> New.list()).add(placemark);
+        myKeptContainers.put(key, container);
+    }
+
+    /** Hands the current batch to the consumer if it is not empty. */
+    private void flush()
+    {
+        if (!myBatch.isEmpty())
+        {
+            myPlacemarkCount += myBatch.size();
+            myBatchConsumer.accept(myBatch);
+            myBatch = New.list(myBatchSize);
+        }
+    }
+
+    /**
+     * Routes the SAX events for placemarks to a fragment unmarshaller, and
+     * everything else to the document unmarshaller. The shared styles of the
+     * containers go to both.
+     */
+    private final class SplittingHandler extends WrappedContentHandler
+    {
+        /** The features for the open containers, innermost last. */
+        private final Deque<KMLFeature> myContainers = new LinkedList<>();
+
+        /**
+         * The preorder indices of the open containers in the document, or -1
+         * for containers that are not in the feature tree, innermost last.
+         */
+        private final Deque<Integer> myContainerIndices = new LinkedList<>();
+
+        /** The number of containers in the feature tree so far. */
+        private int myContainerCount;
+
+        /** The element depth. */
+        private int myDepth;
+
+        /** The handler for the fragment being unmarshalled, if any. */
+        private UnmarshallerHandler myFragmentHandler;
+
+        /** The depth of the root element of the fragment. */
+        private int myFragmentDepth;
+
+        /** Whether the fragment is a placemark, rather than a style. */
+        private boolean myFragmentIsPlacemark;
+
+        /** The unmarshaller for the fragments. */
+        private final Unmarshaller myFragmentUnmarshaller;
+
+        /** The depths of the open containers, innermost last. */
+        private final Deque<Integer> myContainerDepths = new LinkedList<>();
+
+        /** The prefixes in scope, outermost first, as prefix/URI pairs. */
+        private final List<String[]> myPrefixes = New.list();
+
+        /** The number of prefixes in scope at each open element. */
+        private final Deque<Integer> myPrefixCounts = new LinkedList<>();
+
+        /** The prefix mappings for the next element. */
+        private final List<String[]> myPendingPrefixes = New.list();
+
+        /**
+         * Constructor.
+         *
+         * @param contentHandler The handler for the document.
+         * @param fragmentUnmarshaller The unmarshaller for the fragments.
+         */
+        public SplittingHandler(ContentHandler contentHandler, Unmarshaller fragmentUnmarshaller)
+        {
+            super(contentHandler);
+            myFragmentUnmarshaller = fragmentUnmarshaller;
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException
+        {
+            if (myFragmentHandler != null)
+            {
+                myFragmentHandler.characters(ch, start, length);
+            }
+            if (!isInPlacemark())
+            {
+                super.characters(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException
+        {
+            if (myFragmentHandler != null)
+            {
+                myFragmentHandler.endElement(uri, localName, qName);
+            }
+            boolean inPlacemark = isInPlacemark();
+            if (!inPlacemark)
+            {
+                super.endElement(uri, localName, qName);
+            }
+
+            int prefixCount = myPrefixCounts.removeLast().intValue();
+            while (myPrefixes.size() > prefixCount)
+            {
+                String prefix = myPrefixes.remove(myPrefixes.size() - 1)[0];
+                if (myFragmentHandler != null)
+                {
+                    myFragmentHandler.endPrefixMapping(prefix);
+                }
+                if (!inPlacemark)
+                {
+                    super.endPrefixMapping(prefix);
+                }
+            }
+
+            if (myFragmentHandler != null && myDepth == myFragmentDepth)
+            {
+                endFragment();
+            }
+            if (!myContainerDepths.isEmpty() && myContainerDepths.peekLast().intValue() == myDepth)
+            {
+                myContainerDepths.removeLast();
+                myContainers.removeLast();
+                myContainerIndices.removeLast();
+            }
+            myDepth--;
+        }
+
+        @Override
+        public void endPrefixMapping(String prefix)
+        {
+            // Prefix mappings are ended when their elements end.
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException
+        {
+            if (myFragmentHandler != null)
+            {
+                myFragmentHandler.ignorableWhitespace(ch, start, length);
+            }
+            if (!isInPlacemark())
+            {
+                super.ignorableWhitespace(ch, start, length);
+            }
+        }
+
+        @Override
+        public void processingInstruction(String target, String data) throws SAXException
+        {
+            if (!isInPlacemark())
+            {
+                super.processingInstruction(target, data);
+            }
+        }
+
+        @Override
+        public void skippedEntity(String name) throws SAXException
+        {
+            if (!isInPlacemark())
+            {
+                super.skippedEntity(name);
+            }
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException
+        {
+            myDepth++;
+            boolean isContainerChild = !myContainerDepths.isEmpty() && myContainerDepths.peekLast().intValue() == myDepth - 1
+                    && KMLNamespaceFilterHandler.KML_DEFAULT_NAMESPACE.equals(uri);
+            boolean startPlacemark = false;
+            boolean startStyle = false;
+            if (myFragmentHandler == null && isContainerChild)
+            {
+                startPlacemark = "Placemark".equals(localName);
+                startStyle = "Style".equals(localName) || "StyleMap".equals(localName);
+            }
+
+            boolean inPlacemark = startPlacemark || isInPlacemark();
+            myPrefixCounts.addLast(Integer.valueOf(myPrefixes.size()));
+            for (String[] mapping : myPendingPrefixes)
+            {
+                myPrefixes.add(mapping);
+                if (myFragmentHandler != null)
+                {
+                    myFragmentHandler.startPrefixMapping(mapping[0], mapping[1]);
+                }
+                if (!inPlacemark)
+                {
+                    super.startPrefixMapping(mapping[0], mapping[1]);
+                }
+            }
+            myPendingPrefixes.clear();
+
+            if (startPlacemark || startStyle)
+            {
+                startFragment(startPlacemark);
+            }
+
+            if (myFragmentHandler != null)
+            {
+                myFragmentHandler.startElement(uri, localName, qName, atts);
+            }
+            if (!inPlacemark)
+            {
+                super.startElement(uri, localName, qName, atts);
+            }
+
+            if (myFragmentHandler == null && KMLNamespaceFilterHandler.KML_DEFAULT_NAMESPACE.equals(uri)
+                    && ("Document".equals(localName) || "Folder".equals(localName)))
+            {
+                Feature container = "Document".equals(localName) ? new Document() : new Folder();
+                KMLFeature containerFeature = new KMLFeature(container, myDataSource);
+                containerFeature.setParent(myContainers.peekLast());
+                myContainers.addLast(containerFeature);
+                myContainerDepths.addLast(Integer.valueOf(myDepth));
+
+                // Only containers under the root or another container are in
+                // the feature tree of the document.
+                boolean inTree = myDepth == 2 && myContainerDepths.size() == 1
+                        || isContainerChild && myContainerIndices.peekLast().intValue() >= 0;
+                myContainerIndices.addLast(Integer.valueOf(inTree ? myContainerCount++ : -1));
+            }
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri)
+        {
+            myPendingPrefixes.add(new String[] { prefix, uri });
+        }
+
+        /**
+         * Finishes the current fragment and delivers its result.
+         *
+         * @throws SAXException If the fragment could not be unmarshalled.
+         */
+        private void endFragment() throws SAXException
+        {
+            UnmarshallerHandler handler = myFragmentHandler;
+            myFragmentHandler = null;
+            for (int index = myPrefixes.size(); index-- > 0;)
+            {
+                handler.endPrefixMapping(myPrefixes.get(index)[0]);
+            }
+            handler.endDocument();
+
+            Object result;
+            try
+            {
+                result = JAXBIntrospector.getValue(handler.getResult());
+            }
+            catch (JAXBException e)
+            {
+                throw new SAXException(e);
+            }
+            KMLFeature container = myContainers.peekLast();
+            if (myFragmentIsPlacemark)
+            {
+                if (result instanceof Placemark)
+                {
+                    Placemark placemark = (Placemark)result;
+                    int containerIndex = myContainerIndices.peekLast().intValue();
+                    if (containerIndex >= 0 && hasRemoteStyle(placemark))
+                    {
+                        keepPlacemark(placemark, container, containerIndex);
+                    }
+                    else
+                    {
+                        addPlacemark(placemark, container);
+                    }
+                }
+            }
+            else if (result instanceof StyleSelector)
+            {
+                container.getStyleSelector().add((StyleSelector)result);
+            }
+        }
+
+        /**
+         * Determines if the events are for a placemark, which the document
+         * handler does not get.
+         *
+         * @return If the events are for a placemark.
+         */
+        private boolean isInPlacemark()
+        {
+            return myFragmentHandler != null && myFragmentIsPlacemark;
+        }
+
+        /**
+         * Starts a fragment at the current element, giving it the prefix
+         * mappings in scope.
+         *
+         * @param placemark If the fragment is a placemark.
+         * @throws SAXException If the fragment handler fails.
+         */
+        private void startFragment(boolean placemark) throws SAXException
+        {
+            myFragmentHandler = myFragmentUnmarshaller.getUnmarshallerHandler();
+            myFragmentDepth = myDepth;
+            myFragmentIsPlacemark = placemark;
+            myFragmentHandler.startDocument();
+            for (String[] mapping : myPrefixes)
+            {
+                myFragmentHandler.startPrefixMapping(mapping[0], mapping[1]);
+            }
+        }
+    }
+}
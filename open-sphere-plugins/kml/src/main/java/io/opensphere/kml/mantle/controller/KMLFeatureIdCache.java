@@ -125,6 +125,19 @@ public final class KMLFeatureIdCache
         return ids;
     }
 
+    /**
+     * Removes the mappings for ids.
+     *
+     * @param ids The ids
+     */
+    public synchronized void removeIds(long[] ids)
+    {
+        for (long id : ids)
+        {
+            disassociate(Long.valueOf(id));
+        }
+    }
+
     /**
      * Replaces existing features with new equivalent objects.
      *
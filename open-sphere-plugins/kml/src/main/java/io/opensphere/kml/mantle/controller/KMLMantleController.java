@@ -3,6 +3,7 @@ package io.opensphere.kml.mantle.controller;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import net.jcip.annotations.ThreadSafe;
@@ -16,9 +17,11 @@ import io.opensphere.core.Toolbox;
 import io.opensphere.core.event.EventListenerService;
 import io.opensphere.core.model.Altitude;
 import io.opensphere.core.model.GeographicBoundingBox;
+import io.opensphere.core.model.time.TimeSpan;
 import io.opensphere.core.preferences.Preferences;
 import io.opensphere.core.util.ThreadConfined;
 import io.opensphere.core.util.collections.CollectionUtilities;
+import io.opensphere.core.util.collections.New;
 import io.opensphere.core.util.lang.StringUtilities;
 import io.opensphere.core.util.swing.EventQueueUtilities;
 import io.opensphere.kml.common.model.KMLDataEvent;
@@ -26,6 +29,7 @@ import io.opensphere.kml.common.model.KMLDataSource;
 import io.opensphere.kml.common.model.KMLFeature;
 import io.opensphere.kml.common.model.KMLFeatureUtils;
 import io.opensphere.kml.common.model.KMLMapController;
+import io.opensphere.kml.common.model.KMLStreamedFeatureHandler;
 import io.opensphere.kml.common.util.KMLSpatialTemporalUtils;
 import io.opensphere.kml.mantle.view.KMLBalloonDialog;
 import io.opensphere.mantle.MantleToolbox;
@@ -35,6 +39,7 @@ import io.opensphere.mantle.data.TimeExtents;
 import io.opensphere.mantle.data.element.event.DataElementDoubleClickedEvent;
 import io.opensphere.mantle.data.impl.DefaultDataTypeInfo;
 import io.opensphere.mantle.data.impl.DefaultMetaDataInfo;
+import io.opensphere.mantle.data.impl.DefaultTimeExtents;
 import io.opensphere.mantle.data.util.impl.DataTypeActionUtils;
 
 /**
@@ -42,7 +47,7 @@ import io.opensphere.mantle.data.util.impl.DataTypeActionUtils;
  */
 @SuppressWarnings("PMD.GodClass")
 @ThreadSafe
-public class KMLMantleController extends EventListenerService implements KMLMapController
+public class KMLMantleController extends EventListenerService implements KMLMapController, KMLStreamedFeatureHandler
 {
     /** Logger. */
     private static final Logger LOGGER = Logger.getLogger(KMLMantleController.class);
@@ -59,6 +64,13 @@ public class KMLMantleController extends EventListenerService implements KMLMapC
     /** The feature to ID cache. */
     private final KMLFeatureIdCache myFeatureIdCache;
 
+    /**
+     * The elements added from streamed placemarks, by data type key. These
+     * are not in the feature id cache, so that the placemarks can be
+     * collected once their elements are created.
+     */
+    private final Map<String, StreamedElements> myStreamedElements = new ConcurrentHashMap<>();
+
     /** The bundle preferences. */
     private final Preferences myBundlePreferences;
 
@@ -98,16 +110,7 @@ public class KMLMantleController extends EventListenerService implements KMLMapC
         // Add the data types to the DataTypeController
         if (dataSource.getCreatingFeature() == null && !reload)
         {
-            for (DataTypeInfo dataType : dataSource.getDataGroupInfo().getMembers(false))
-            {
-                if (KMLMantleUtilities.KML.equals(dataType.getTypeName()))
-                {
-                    addExtendedData(dataType.getMetaDataInfo(), newFeatures);
-
-                    String source = "KML:" + dataType.getTypeKey();
-                    myMantleToolbox.getDataTypeController().addDataType(source, dataType.getDisplayName(), dataType, null);
-                }
-            }
+            addDataTypes(dataSource, newFeatures);
         }
 
         // Handle reactivation
@@ -140,6 +143,40 @@ public class KMLMantleController extends EventListenerService implements KMLMapC
         }
     }
 
+    @Override
+    public void addStreamedFeatures(KMLDataSource dataSource, List<? extends KMLFeature> features)
+    {
+        addDataTypes(dataSource, features);
+
+        DataTypeInfo dataType = myMantleToolbox.getDataTypeController().getDataTypeInfoForType(dataSource.getDataTypeKey());
+        if (dataType == null)
+        {
+            LOGGER.error("No DataTypeInfo found for type: " + dataSource.getDataTypeKey());
+            return;
+        }
+
+        List<KMLFeature> mantleAdditions = features.stream().filter(f -> f.isVisibility().booleanValue())
+                .collect(Collectors.toList());
+        long[] ids = null;
+        if (!mantleAdditions.isEmpty())
+        {
+            KMLDataElementProvider provider = new KMLDataElementProvider(myToolbox.getServerProviderRegistry(), myMantleToolbox,
+                    myToolbox.getDataRegistry(), dataSource, dataType, mantleAdditions);
+            if (provider.hasNext())
+            {
+                ids = CollectionUtilities
+                        .toLongArray(myMantleToolbox.getDataTypeController().addDataElements(provider, null, null, this));
+                addBalloonFeatures(mantleAdditions, ids);
+            }
+        }
+
+        TimeSpan extent = KMLSpatialTemporalUtils.getTimeExtents(New.list(features)).getTimespans().stream().findAny()
+                .orElse(null);
+        myStreamedElements.computeIfAbsent(dataType.getTypeKey(), k -> new StreamedElements()).add(ids, extent);
+
+        updateDataType(dataType, dataSource.getRootDataSource().getAllFeatures(), mantleAdditions);
+    }
+
     @Override
     public void addFeatures(Collection<? extends KMLFeature> features)
     {
@@ -183,6 +220,18 @@ public class KMLMantleController extends EventListenerService implements KMLMapC
         }
     }
 
+    @Override
+    public void beginStream(KMLDataSource dataSource)
+    {
+        removeStreamedElements(dataSource);
+    }
+
+    @Override
+    public void cancelStream(KMLDataSource dataSource)
+    {
+        removeStreamedElements(dataSource);
+    }
+
     /**
      * Getter for transformer.
      *
@@ -209,6 +258,7 @@ public class KMLMantleController extends EventListenerService implements KMLMapC
         {
             Collection<KMLFeature> features = dataSource.getAllFeatures();
             removeFeatures(features);
+            removeStreamedElements(dataSource);
         }
     }
 
@@ -274,6 +324,50 @@ public class KMLMantleController extends EventListenerService implements KMLMapC
         }
     }
 
+    /**
+     * Maps the ids of streamed features that have balloons, so that their
+     * balloons are shown when they are double-clicked.
+     *
+     * @param features The features
+     * @param ids The element ids of the features
+     */
+    private void addBalloonFeatures(List<KMLFeature> features, long[] ids)
+    {
+        List<KMLFeature> balloonFeatures = New.list();
+        List<Long> balloonIds = New.list();
+        for (int index = 0, n = Math.min(features.size(), ids.length); index < n; ++index)
+        {
+            KMLFeature feature = features.get(index);
+            if (feature.isShowBalloon())
+            {
+                balloonFeatures.add(feature);
+                balloonIds.add(Long.valueOf(ids[index]));
+            }
+        }
+        myFeatureIdCache.addFeatures(balloonFeatures, balloonIds);
+    }
+
+    /**
+     * Adds the KML data types of a root data source to the data type
+     * controller, along with any extended data keys of the features.
+     *
+     * @param dataSource The KML data source
+     * @param features The features
+     */
+    private void addDataTypes(KMLDataSource dataSource, Collection<? extends KMLFeature> features)
+    {
+        for (DataTypeInfo dataType : dataSource.getDataGroupInfo().getMembers(false))
+        {
+            if (KMLMantleUtilities.KML.equals(dataType.getTypeName()))
+            {
+                addExtendedData(dataType.getMetaDataInfo(), features);
+
+                String source = "KML:" + dataType.getTypeKey();
+                myMantleToolbox.getDataTypeController().addDataType(source, dataType.getDisplayName(), dataType, null);
+            }
+        }
+    }
+
     /**
      * Removes data elements.
      *
@@ -312,6 +406,27 @@ public class KMLMantleController extends EventListenerService implements KMLMapC
         }
     }
 
+    /**
+     * Removes the elements added from placemarks streamed from a data source.
+     *
+     * @param dataSource The KML data source
+     */
+    private void removeStreamedElements(KMLDataSource dataSource)
+    {
+        StreamedElements streamed = myStreamedElements.remove(dataSource.getDataTypeKey());
+        if (streamed != null)
+        {
+            long[] ids = streamed.getIds();
+            if (ids.length > 0)
+            {
+                myFeatureIdCache.removeIds(ids);
+                DataTypeInfo dataType = myMantleToolbox.getDataTypeController()
+                        .getDataTypeInfoForType(dataSource.getDataTypeKey());
+                myMantleToolbox.getDataTypeController().removeDataElements(dataType, ids);
+            }
+        }
+    }
+
     /**
      * Updates the data type in mantle.
      *
@@ -330,6 +445,12 @@ public class KMLMantleController extends EventListenerService implements KMLMapC
             allFeatures.addAll(newFeatures);
 
             TimeExtents timeExtents = KMLSpatialTemporalUtils.getTimeExtents(allFeatures);
+            StreamedElements streamed = myStreamedElements.get(dataType.getTypeKey());
+            TimeSpan streamedExtent = streamed == null ? null : streamed.getExtent();
+            if (streamedExtent != null && timeExtents instanceof DefaultTimeExtents)
+            {
+                ((DefaultTimeExtents)timeExtents).addTimeSpan(streamedExtent);
+            }
             ((DefaultDataTypeInfo)dataType).setTimeExtents(timeExtents, this);
 
             GeographicBoundingBox bbox = allFeatures.stream().filter(f -> f.getGeoBoundingBox() != null)
@@ -419,4 +540,67 @@ public class KMLMantleController extends EventListenerService implements KMLMapC
     {
         return features.stream().collect(Collectors.<KMLFeature, KMLDataSource>groupingBy(f -> f.getDataSource()));
     }
+
+    /**
+     * The element ids and time extent of the placemarks streamed from a data
+     * source.
+     */
+    private static class StreamedElements
+    {
+        /** The element ids, in the order they were added. */
+        private final List<long[]> myIds = New.list();
+
+        /** The union of the time spans of the placemarks. */
+        private TimeSpan myExtent;
+
+        /**
+         * Adds a batch of elements.
+         *
+         * @param ids The element ids, or null
+         * @param extent The time span of the batch, or null
+         */
+        public synchronized void add(long[] ids, TimeSpan extent)
+        {
+            if (ids != null && ids.length > 0)
+            {
+                myIds.add(ids);
+            }
+            if (extent != null)
+            {
+                myExtent = myExtent == null ? extent : myExtent.simpleUnion(extent);
+            }
+        }
+
+        /**
+         * Gets the union of the time spans of the placemarks.
+         *
+         * @return The time span, or null
+         */
+        public synchronized TimeSpan getExtent()
+        {
+            return myExtent;
+        }
+
+        /**
+         * Gets the element ids.
+         *
+         * @return The ids
+         */
+        public synchronized long[] getIds()
+        {
+            int count = 0;
+            for (long[] ids : myIds)
+            {
+                count += ids.length;
+            }
+            long[] result = new long[count];
+            int offset = 0;
+            for (long[] ids : myIds)
+            {
+                System.arraycopy(ids, 0, result, offset, ids.length);
+                offset += ids.length;
+            }
+            return result;
+        }
+    }
 }
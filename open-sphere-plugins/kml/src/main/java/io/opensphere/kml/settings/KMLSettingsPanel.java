@@ -1,6 +1,7 @@
 package io.opensphere.kml.settings;
 
 import io.opensphere.core.quantify.Quantify;
+import io.opensphere.core.util.swing.binding.CheckBox;
 import io.opensphere.core.util.swing.binding.ComboBox;
 import io.opensphere.core.util.swing.input.ViewPanel;
 import io.opensphere.kml.common.model.ScalingMethod;
@@ -23,5 +24,8 @@ class KMLSettingsPanel extends ViewPanel
         comboBox.setToolTipText("How to scale icons and labels");
         comboBox.addActionListener(e -> Quantify.collectMetric("mist3d.settings.kml.scaling-method-selection"));
         addLabelComponent("Scaling Method:", comboBox);
+        addComponent(new CheckBox(model.streamLargeDocumentsProperty(),
+                "Show the placemarks of large KML documents while they load. Streamed placemarks are not listed in the KML"
+                        + " tree and get no labels or regions."));
     }
 }
@@ -5,7 +5,9 @@ import java.util.Collection;
 import java.util.EnumSet;
 import java.util.Observable;
 
+import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.value.ChangeListener;
 
@@ -19,6 +21,9 @@ class KMLSettingsViewModel
     /** The scaling method. */
     private final ObjectProperty<ScalingMethod> myScalingMethod = new SimpleObjectProperty<>(this, "scalingMethod");
 
+    /** Whether the placemarks of large documents are streamed. */
+    private final BooleanProperty myStreamLargeDocuments = new SimpleBooleanProperty(this, "Stream large documents");
+
     /** The changed observable. */
     private final transient Observable myChanged = new NonSuckingObservable();
 
@@ -29,6 +34,7 @@ class KMLSettingsViewModel
     {
         ChangeListener<Object> listener = (observable, oldValue, newValue) -> myChanged.notifyObservers();
         myScalingMethod.addListener(listener);
+        myStreamLargeDocuments.addListener(listener);
     }
 
     /**
@@ -71,6 +77,17 @@ class KMLSettingsViewModel
         return EnumSet.of(ScalingMethod.GOOGLE_EARTH, ScalingMethod.FIXED_SIZE);
     }
 
+    /**
+     * Gets the property for whether the placemarks of large documents are
+     * streamed.
+     *
+     * @return the stream large documents property
+     */
+    public BooleanProperty streamLargeDocumentsProperty()
+    {
+        return myStreamLargeDocuments;
+    }
+
     /**
      * Gets the changed observable.
      *
@@ -91,6 +108,7 @@ class KMLSettingsViewModel
         assert EventQueue.isDispatchThread();
 
         setScalingMethod(model.getScalingMethod());
+        myStreamLargeDocuments.set(model.isStreamLargeDocuments());
     }
 
     /**
@@ -103,5 +121,6 @@ class KMLSettingsViewModel
         assert EventQueue.isDispatchThread();
 
         model.setScalingMethod(getScalingMethod());
+        model.setStreamLargeDocuments(myStreamLargeDocuments.get());
     }
 }
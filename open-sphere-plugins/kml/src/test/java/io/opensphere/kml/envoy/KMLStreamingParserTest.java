@@ -0,0 +1,152 @@
+package io.opensphere.kml.envoy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import javax.xml.bind.JAXBException;
+
+import org.junit.Test;
+
+import de.micromata.opengis.kml.v_2_2_0.Document;
+import de.micromata.opengis.kml.v_2_2_0.Folder;
+import de.micromata.opengis.kml.v_2_2_0.Kml;
+import de.micromata.opengis.kml.v_2_2_0.Placemark;
+import de.micromata.opengis.kml.v_2_2_0.Style;
+import io.opensphere.core.util.collections.New;
+import io.opensphere.kml.common.model.KMLDataSource;
+import io.opensphere.kml.common.model.KMLFeature;
+import io.opensphere.kml.gx.Track;
+
+/**
+ * Unit test for {@link KMLStreamingParser}.
+ */
+public class KMLStreamingParserTest
+{
+    /**
+     * Tests that placemarks are streamed in batches and left out of the
+     * returned document, and that they can see the shared styles of their
+     * containers.
+     *
+     * @throws JAXBException bad jaxb.
+     */
+    @Test
+    public void testBatches() throws JAXBException
+    {
+        StringBuilder kml = new StringBuilder(
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?><kml xmlns=\"http://www.opengis.net/kml/2.2\"><Document>"
+                        + "<name>doc</name><Style id=\"red\"><LineStyle><color>ff0000ff</color></LineStyle></Style><Folder>"
+                        + "<name>folder</name>");
+        for (int index = 0; index < 5; ++index)
+        {
+            kml.append("<Placemark><name>p").append(index).append("</name><styleUrl>#red</styleUrl>"
+                    + "<Point><coordinates>1,2</coordinates></Point></Placemark>");
+        }
+        kml.append("</Folder></Document></kml>");
+
+        KMLDataSource dataSource = new KMLDataSource();
+        List<List<KMLFeature>> batches = New.list();
+        KMLStreamingParser parser = new KMLStreamingParser(dataSource, 2, batches::add);
+        Kml result = parser.parse(toStream(kml.toString()));
+
+        assertEquals(3, batches.size());
+        assertEquals(2, batches.get(0).size());
+        assertEquals(1, batches.get(2).size());
+        assertEquals(5, parser.getPlacemarkCount());
+
+        KMLFeature feature = batches.get(2).get(0);
+        assertEquals("p4", feature.getName());
+        assertSame(dataSource, feature.getDataSource());
+        KMLFeature folder = feature.getParent();
+        assertTrue(folder.getFeature() instanceof Folder);
+        KMLFeature document = folder.getParent();
+        assertTrue(document.getFeature() instanceof Document);
+        assertNull(document.getParent());
+        assertEquals(1, document.getStyleSelector().size());
+        assertEquals("red", ((Style)document.getStyleSelector().get(0)).getId());
+
+        Document resultDocument = (Document)result.getFeature();
+        assertEquals("doc", resultDocument.getName());
+        assertEquals(1, resultDocument.getStyleSelector().size());
+        Folder resultFolder = (Folder)resultDocument.getFeature().get(0);
+        assertEquals("folder", resultFolder.getName());
+        assertTrue(resultFolder.getFeature().isEmpty());
+    }
+
+    /**
+     * Tests that placemarks with remote style URLs are put back in their
+     * containers in the returned document instead of being streamed.
+     *
+     * @throws JAXBException bad jaxb.
+     */
+    @Test
+    public void testRemoteStyles() throws JAXBException
+    {
+        String kml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><kml xmlns=\"http://www.opengis.net/kml/2.2\"><Document>"
+                + "<Style id=\"red\"><LineStyle><color>ff0000ff</color></LineStyle></Style>"
+                + "<Placemark><name>local</name><styleUrl>#red</styleUrl><Point><coordinates>1,2</coordinates></Point>"
+                + "</Placemark>"
+                + "<Folder><name>first</name></Folder><Folder><name>second</name>"
+                + "<Placemark><name>remote</name><styleUrl> styles.kml#blue</styleUrl><Point><coordinates>3,4</coordinates>"
+                + "</Point></Placemark></Folder></Document></kml>";
+
+        List<KMLFeature> features = New.list();
+        KMLStreamingParser parser = new KMLStreamingParser(new KMLDataSource(), 10, features::addAll);
+        Kml result = parser.parse(toStream(kml));
+
+        assertEquals(1, features.size());
+        assertEquals("local", features.get(0).getName());
+        assertEquals(1, parser.getPlacemarkCount());
+
+        Document document = (Document)result.getFeature();
+        assertEquals(2, document.getFeature().size());
+        assertTrue(((Folder)document.getFeature().get(0)).getFeature().isEmpty());
+        Folder second = (Folder)document.getFeature().get(1);
+        assertEquals("second", second.getName());
+        assertEquals(1, second.getFeature().size());
+        assertEquals("remote", second.getFeature().get(0).getName());
+    }
+
+    /**
+     * Tests streaming a prefixed kml with tracks and verifies the track
+     * geometry is replaced with our custom geometry.
+     *
+     * @throws JAXBException bad jaxb.
+     */
+    @Test
+    public void testTracks() throws JAXBException
+    {
+        List<KMLFeature> features = New.list();
+        KMLStreamingParser parser = new KMLStreamingParser(new KMLDataSource(), 10, features::addAll);
+        Kml kml = parser.parse(new BufferedInputStream(KMLStreamingParserTest.class.getResourceAsStream("/track.kml")));
+
+        assertEquals(1, features.size());
+        Placemark placemark = (Placemark)features.get(0).getFeature();
+        Track track = (Track)placemark.getGeometry();
+        assertEquals(42, track.getCoordinates().size());
+        assertEquals(42, track.getWhen().size());
+        assertEquals(1, placemark.getStyleSelector().size());
+
+        Folder folder = (Folder)((Folder)((Document)kml.getFeature()).getFeature().get(0)).getFeature().get(0);
+        assertEquals("Flight Radar 24 Tracks", folder.getName());
+        assertTrue(folder.getFeature().isEmpty());
+    }
+
+    /**
+     * Creates an input stream for a string.
+     *
+     * @param text The string.
+     * @return The input stream.
+     */
+    private static InputStream toStream(String text)
+    {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
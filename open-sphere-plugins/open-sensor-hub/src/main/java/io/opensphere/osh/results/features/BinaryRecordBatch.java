@@ -0,0 +1,345 @@
+package io.opensphere.osh.results.features;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A batch of records decoded from a binary result stream, stored in primitive
+ * columns. The rows are available as lists of values, which are boxed as they
+ * are read.
+ */
+public class BinaryRecordBatch
+{
+    /** The initial number of rows the columns can hold. */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /** The number of rows the columns can hold. */
+    private int myCapacity = INITIAL_CAPACITY;
+
+    /** The double columns, or null for the columns of other types. */
+    private final double[][] myDoubles;
+
+    /** The float columns, or null for the columns of other types. */
+    private final float[][] myFloats;
+
+    /** The int columns, or null for the columns of other types. */
+    private final int[][] myInts;
+
+    /** The long columns, or null for the columns of other types. */
+    private final long[][] myLongs;
+
+    /** The number of rows. */
+    private int mySize;
+
+    /** The column types. */
+    private final ColumnType[] myTypes;
+
+    /**
+     * Constructor.
+     *
+     * @param types the column types
+     */
+    public BinaryRecordBatch(List<ColumnType> types)
+    {
+        myTypes = types.toArray(new ColumnType[types.size()]);
+        myDoubles = new double[myTypes.length][];
+        myFloats = new float[myTypes.length][];
+        myInts = new int[myTypes.length][];
+        myLongs = new long[myTypes.length][];
+        for (int column = 0; column < myTypes.length; ++column)
+        {
+            switch (myTypes[column])
+            {
+                case DOUBLE:
+                    myDoubles[column] = new double[myCapacity];
+                    break;
+                case FLOAT:
+                    myFloats[column] = new float[myCapacity];
+                    break;
+                case INT:
+                    myInts[column] = new int[myCapacity];
+                    break;
+                case LONG:
+                    myLongs[column] = new long[myCapacity];
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown column type: " + myTypes[column]);
+            }
+        }
+    }
+
+    /**
+     * Adds a row. The values of the row are zero until they are set.
+     *
+     * @return the index of the row
+     */
+    public int addRow()
+    {
+        if (mySize == myCapacity)
+        {
+            grow();
+        }
+        return mySize++;
+    }
+
+    /**
+     * Copies the first values of a row of another batch with the same leading
+     * column types to a row of this batch.
+     *
+     * @param source the other batch
+     * @param sourceRow the row in the other batch
+     * @param row the row in this batch
+     * @param columnCount the number of values to copy
+     */
+    public void copyValues(BinaryRecordBatch source, int sourceRow, int row, int columnCount)
+    {
+        for (int column = 0; column < columnCount; ++column)
+        {
+            switch (myTypes[column])
+            {
+                case DOUBLE:
+                    myDoubles[column][row] = source.myDoubles[column][sourceRow];
+                    break;
+                case FLOAT:
+                    myFloats[column][row] = source.myFloats[column][sourceRow];
+                    break;
+                case INT:
+                    myInts[column][row] = source.myInts[column][sourceRow];
+                    break;
+                case LONG:
+                    myLongs[column][row] = source.myLongs[column][sourceRow];
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown column type: " + myTypes[column]);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of columns.
+     *
+     * @return the number of columns
+     */
+    public int getColumnCount()
+    {
+        return myTypes.length;
+    }
+
+    /**
+     * Gets the rows as lists of values. The lists are views of the batch.
+     *
+     * @return the rows
+     */
+    public List<List<Serializable>> getRows()
+    {
+        return new AbstractRandomAccessList<List<Serializable>>()
+        {
+            @Override
+            public List<Serializable> get(int index)
+            {
+                checkIndex(index, mySize);
+                return new Row(index);
+            }
+
+            @Override
+            public int size()
+            {
+                return mySize;
+            }
+        };
+    }
+
+    /**
+     * Gets a value, boxed.
+     *
+     * @param row the row
+     * @param column the column
+     * @return the value
+     */
+    public Serializable getValue(int row, int column)
+    {
+        checkIndex(row, mySize);
+        switch (myTypes[column])
+        {
+            case DOUBLE:
+                return Double.valueOf(myDoubles[column][row]);
+            case FLOAT:
+                return Float.valueOf(myFloats[column][row]);
+            case INT:
+                return Integer.valueOf(myInts[column][row]);
+            case LONG:
+                return Long.valueOf(myLongs[column][row]);
+            default:
+                throw new IllegalStateException("Unknown column type: " + myTypes[column]);
+        }
+    }
+
+    /**
+     * Sets a value in a double column.
+     *
+     * @param row the row
+     * @param column the column
+     * @param value the value
+     */
+    public void setDouble(int row, int column, double value)
+    {
+        myDoubles[column][row] = value;
+    }
+
+    /**
+     * Sets a value in a float column.
+     *
+     * @param row the row
+     * @param column the column
+     * @param value the value
+     */
+    public void setFloat(int row, int column, float value)
+    {
+        myFloats[column][row] = value;
+    }
+
+    /**
+     * Sets a value in an int column.
+     *
+     * @param row the row
+     * @param column the column
+     * @param value the value
+     */
+    public void setInt(int row, int column, int value)
+    {
+        myInts[column][row] = value;
+    }
+
+    /**
+     * Sets a value in a long column.
+     *
+     * @param row the row
+     * @param column the column
+     * @param value the value
+     */
+    public void setLong(int row, int column, long value)
+    {
+        myLongs[column][row] = value;
+    }
+
+    /**
+     * Sets the number of rows, discarding the rows after it.
+     *
+     * @param size the new number of rows, no more than the current number
+     */
+    public void setSize(int size)
+    {
+        if (size < 0 || size > mySize)
+        {
+            throw new IllegalArgumentException("Size " + size + " is not within [0, " + mySize + "]");
+        }
+        mySize = size;
+    }
+
+    /**
+     * Gets the number of rows.
+     *
+     * @return the number of rows
+     */
+    public int size()
+    {
+        return mySize;
+    }
+
+    /**
+     * Checks that an index is within a size.
+     *
+     * @param index the index
+     * @param size the size
+     */
+    private static void checkIndex(int index, int size)
+    {
+        if (index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("Index " + index + " is not within [0, " + size + ")");
+        }
+    }
+
+    /** Doubles the capacity of the columns. */
+    private void grow()
+    {
+        myCapacity *= 2;
+        for (int column = 0; column < myTypes.length; ++column)
+        {
+            if (myDoubles[column] != null)
+            {
+                myDoubles[column] = Arrays.copyOf(myDoubles[column], myCapacity);
+            }
+            else if (myFloats[column] != null)
+            {
+                myFloats[column] = Arrays.copyOf(myFloats[column], myCapacity);
+            }
+            else if (myInts[column] != null)
+            {
+                myInts[column] = Arrays.copyOf(myInts[column], myCapacity);
+            }
+            else
+            {
+                myLongs[column] = Arrays.copyOf(myLongs[column], myCapacity);
+            }
+        }
+    }
+
+    /** The types of the columns. */
+    public enum ColumnType
+    {
+        /** Values stored as doubles. */
+        DOUBLE,
+
+        /** Values stored as floats. */
+        FLOAT,
+
+        /** Values stored as ints. */
+        INT,
+
+        /** Values stored as longs. */
+        LONG,
+    }
+
+    /**
+     * A random access list.
+     *
+     * @param <E> the type of the elements
+     */
+    private abstract static class AbstractRandomAccessList<E> extends AbstractList<E> implements RandomAccess
+    {
+    }
+
+    /** A view of a row. */
+    private class Row extends AbstractRandomAccessList<Serializable>
+    {
+        /** The row. */
+        private final int myRow;
+
+        /**
+         * Constructor.
+         *
+         * @param row the row
+         */
+        public Row(int row)
+        {
+            myRow = row;
+        }
+
+        @Override
+        public Serializable get(int index)
+        {
+            checkIndex(index, myTypes.length);
+            return getValue(myRow, index);
+        }
+
+        @Override
+        public int size()
+        {
+            return myTypes.length;
+        }
+    }
+}
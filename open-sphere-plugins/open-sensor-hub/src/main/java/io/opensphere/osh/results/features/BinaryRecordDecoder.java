@@ -0,0 +1,441 @@
+package io.opensphere.osh.results.features;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import io.opensphere.core.util.collections.New;
+import io.opensphere.mantle.data.impl.specialkey.LatitudeKey;
+import io.opensphere.mantle.data.impl.specialkey.LongitudeKey;
+import io.opensphere.mantle.data.impl.specialkey.TimeKey;
+import io.opensphere.osh.model.ArrayField;
+import io.opensphere.osh.model.Field;
+import io.opensphere.osh.model.Output;
+import io.opensphere.osh.model.PropertyInfo;
+import io.opensphere.osh.model.VectorField;
+import io.opensphere.osh.results.features.BinaryRecordBatch.ColumnType;
+
+/**
+ * Decodes the records of a binary result stream into
+ * {@link BinaryRecordBatch}es. The record layout is compiled once from the
+ * result template into a reader per field, each with a fixed byte offset and
+ * its conversion already chosen, so decoding a record is a run of absolute
+ * reads from a {@link ByteBuffer} into primitive columns.
+ * <p>
+ * A record is a run of fixed size fields, optionally followed by an array of
+ * fixed size elements. Each array element becomes a row holding the values of
+ * the fixed fields followed by the values of the element. The element count is
+ * not supplied in the data, so the array ends at the first element with a
+ * latitude or longitude out of range, which is taken to be the start of the
+ * next record.
+ * <p>
+ * The decoder keeps its place in the current record between calls, so one
+ * decoder must be used for one stream.
+ */
+public class BinaryRecordDecoder
+{
+    /** The OGC double data type. */
+    private static final String DOUBLE_TYPE = "http://www.opengis.net/def/dataType/OGC/0/double";
+
+    /** The OGC float data type. */
+    private static final String FLOAT_TYPE = "http://www.opengis.net/def/dataType/OGC/0/float";
+
+    /** The OGC signed byte data type. */
+    private static final String SIGNED_BYTE_TYPE = "http://www.opengis.net/def/dataType/OGC/0/signedByte";
+
+    /** The OGC signed int data type. */
+    private static final String SIGNED_INT_TYPE = "http://www.opengis.net/def/dataType/OGC/0/signedInt";
+
+    /** The OGC signed long data type. */
+    private static final String SIGNED_LONG_TYPE = "http://www.opengis.net/def/dataType/OGC/0/signedLong";
+
+    /** The OGC signed short data type. */
+    private static final String SIGNED_SHORT_TYPE = "http://www.opengis.net/def/dataType/OGC/0/signedShort";
+
+    /** The column types. */
+    private final List<ColumnType> myColumnTypes = New.list();
+
+    /** The readers for the fields of an array element, or null. */
+    private final FieldReader[] myElementReaders;
+
+    /** The number of bytes in an array element. */
+    private final int myElementSize;
+
+    /** The number of columns of the fixed fields. */
+    private final int myFixedColumnCount;
+
+    /** The readers for the fixed fields. */
+    private final FieldReader[] myFixedReaders;
+
+    /** The number of bytes in the fixed fields. */
+    private final int myFixedSize;
+
+    /** The values of the fixed fields of the current record. */
+    private final BinaryRecordBatch myFixedValues;
+
+    /** Whether the fixed fields of the current record are valid. */
+    private boolean myFixedValid;
+
+    /** Whether the array of the current record is being decoded. */
+    private boolean myInArray;
+
+    /**
+     * Constructor.
+     *
+     * @param resultTemplate the result template
+     * @throws IllegalArgumentException if the layout of the records is not
+     *             supported
+     */
+    public BinaryRecordDecoder(Output resultTemplate)
+    {
+        List<FieldReader> fixedReaders = New.list();
+        int fixedSize = 0;
+        ArrayField arrayField = null;
+        for (Field field : resultTemplate.getFields())
+        {
+            if (arrayField != null)
+            {
+                throw new IllegalArgumentException("Fields after the array field " + arrayField.getName() + " are not supported");
+            }
+            if (field instanceof ArrayField)
+            {
+                arrayField = (ArrayField)field;
+            }
+            else
+            {
+                fixedSize = addReaders(field, fixedSize, fixedReaders);
+            }
+        }
+        if (fixedSize == 0)
+        {
+            throw new IllegalArgumentException("The records have no fixed fields to read");
+        }
+        myFixedReaders = fixedReaders.toArray(new FieldReader[fixedReaders.size()]);
+        myFixedSize = fixedSize;
+        myFixedColumnCount = myColumnTypes.size();
+
+        if (arrayField != null)
+        {
+            if (arrayField.getField() == null)
+            {
+                throw new IllegalArgumentException("The array field " + arrayField.getName() + " has no element type");
+            }
+            List<FieldReader> elementReaders = New.list();
+            myElementSize = addReaders(arrayField.getField(), 0, elementReaders);
+            if (myElementSize == 0)
+            {
+                throw new IllegalArgumentException("The array field " + arrayField.getName() + " has no fields to read");
+            }
+            myElementReaders = elementReaders.toArray(new FieldReader[elementReaders.size()]);
+        }
+        else
+        {
+            myElementReaders = null;
+            myElementSize = 0;
+        }
+
+        myFixedValues = new BinaryRecordBatch(myColumnTypes);
+    }
+
+    /**
+     * Creates an empty batch for the records.
+     *
+     * @return the batch
+     */
+    public BinaryRecordBatch createBatch()
+    {
+        return new BinaryRecordBatch(myColumnTypes);
+    }
+
+    /**
+     * Decodes the data between the position and the limit of the buffer into
+     * the batch, and advances the position past the data that was used. Data
+     * at the end of the buffer that is not enough for the next part of a
+     * record is left in the buffer.
+     *
+     * @param buffer the buffer
+     * @param batch the batch
+     */
+    public void decode(ByteBuffer buffer, BinaryRecordBatch batch)
+    {
+        int position = buffer.position();
+        int limit = buffer.limit();
+        while (true)
+        {
+            if (myInArray)
+            {
+                if (limit - position < myElementSize)
+                {
+                    break;
+                }
+                int row = batch.addRow();
+                if (!readFields(myElementReaders, buffer, position, batch, row))
+                {
+                    // This is the start of the next record.
+                    batch.setSize(row);
+                    myInArray = false;
+                    continue;
+                }
+                if (myFixedValid)
+                {
+                    batch.copyValues(myFixedValues, 0, row, myFixedColumnCount);
+                }
+                else
+                {
+                    batch.setSize(row);
+                }
+                position += myElementSize;
+            }
+            else
+            {
+                if (limit - position < myFixedSize)
+                {
+                    break;
+                }
+                if (myElementReaders == null)
+                {
+                    int row = batch.addRow();
+                    if (!readFields(myFixedReaders, buffer, position, batch, row))
+                    {
+                        batch.setSize(row);
+                    }
+                }
+                else
+                {
+                    myFixedValues.setSize(0);
+                    myFixedValid = readFields(myFixedReaders, buffer, position, myFixedValues, myFixedValues.addRow());
+                    myInArray = true;
+                }
+                position += myFixedSize;
+            }
+        }
+        buffer.position(position);
+    }
+
+    /**
+     * Reads fields into a row.
+     *
+     * @param readers the field readers
+     * @param buffer the buffer
+     * @param position the position of the first field in the buffer
+     * @param batch the batch
+     * @param row the row
+     * @return whether all the values are valid
+     */
+    private static boolean readFields(FieldReader[] readers, ByteBuffer buffer, int position, BinaryRecordBatch batch, int row)
+    {
+        boolean valid = true;
+        for (FieldReader reader : readers)
+        {
+            valid &= reader.read(buffer, position, batch, row);
+        }
+        return valid;
+    }
+
+    /**
+     * Adds the readers for a field (recursively).
+     *
+     * @param field the field
+     * @param offset the offset of the field in its part of the record
+     * @param readers the readers
+     * @return the offset after the field
+     */
+    private int addReaders(Field field, int offset, List<FieldReader> readers)
+    {
+        int end = offset;
+        if (field instanceof VectorField)
+        {
+            for (Field child : ((VectorField)field).getFields())
+            {
+                end = addReaders(child, end, readers);
+            }
+        }
+        else if (field instanceof ArrayField)
+        {
+            throw new IllegalArgumentException("The nested array field " + field.getName() + " is not supported");
+        }
+        else if (!PropertyInfo.isExcluded(field))
+        {
+            ValueReader valueReader = getValueReader(field.getDataType());
+            // Fields of unknown types are not in the data.
+            if (valueReader != null)
+            {
+                readers.add(createReader(field, valueReader, offset, myColumnTypes.size()));
+                end += getSize(field.getDataType());
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Creates the reader for a field, choosing the column type and the
+     * conversion for mantle.
+     *
+     * @param field the field
+     * @param valueReader the reader of the raw value
+     * @param offset the offset of the field
+     * @param column the column of the field
+     * @return the reader
+     */
+    private FieldReader createReader(Field field, ValueReader valueReader, int offset, int column)
+    {
+        PropertyInfo propertyInfo = PropertyInfo.getProperty(field);
+        String dataType = field.getDataType();
+        FieldReader reader;
+        if (propertyInfo != null && propertyInfo.getSpecialKey() == TimeKey.DEFAULT)
+        {
+            // Convert to milliseconds since epoch
+            myColumnTypes.add(ColumnType.LONG);
+            reader = (buffer, position, batch, row) ->
+            {
+                batch.setLong(row, column, (long)(valueReader.read(buffer, position + offset) * 1000));
+                return true;
+            };
+        }
+        else if (DOUBLE_TYPE.equals(dataType) && (propertyInfo == null || propertyInfo.getPropertyClass() != Float.class))
+        {
+            myColumnTypes.add(ColumnType.DOUBLE);
+            reader = (buffer, position, batch, row) ->
+            {
+                batch.setDouble(row, column, buffer.getDouble(position + offset));
+                return true;
+            };
+        }
+        else if (DOUBLE_TYPE.equals(dataType) || FLOAT_TYPE.equals(dataType))
+        {
+            // Doubles are shrunk to floats where mantle wants floats, to save
+            // memory.
+            myColumnTypes.add(ColumnType.FLOAT);
+            reader = (buffer, position, batch, row) ->
+            {
+                batch.setFloat(row, column, (float)valueReader.read(buffer, position + offset));
+                return true;
+            };
+        }
+        else if (SIGNED_LONG_TYPE.equals(dataType))
+        {
+            myColumnTypes.add(ColumnType.LONG);
+            reader = (buffer, position, batch, row) ->
+            {
+                batch.setLong(row, column, buffer.getLong(position + offset));
+                return true;
+            };
+        }
+        else
+        {
+            myColumnTypes.add(ColumnType.INT);
+            reader = (buffer, position, batch, row) ->
+            {
+                batch.setInt(row, column, (int)valueReader.read(buffer, position + offset));
+                return true;
+            };
+        }
+
+        if (propertyInfo != null
+                && (propertyInfo.getSpecialKey() == LatitudeKey.DEFAULT || propertyInfo.getSpecialKey() == LongitudeKey.DEFAULT))
+        {
+            // A value out of range means a non lat/lon was read.
+            FieldReader valueWriter = reader;
+            reader = (buffer, position, batch, row) -> valueWriter.read(buffer, position, batch, row)
+                    && !(valueReader.read(buffer, position + offset) > 180);
+        }
+        return reader;
+    }
+
+    /**
+     * Gets the reader of the raw values of a data type.
+     *
+     * @param dataType the data type
+     * @return the reader, or null if the data type is not supported
+     */
+    private static ValueReader getValueReader(String dataType)
+    {
+        ValueReader reader;
+        if (DOUBLE_TYPE.equals(dataType))
+        {
+            reader = (buffer, index) -> buffer.getDouble(index);
+        }
+        else if (FLOAT_TYPE.equals(dataType))
+        {
+            reader = (buffer, index) -> buffer.getFloat(index);
+        }
+        else if (SIGNED_LONG_TYPE.equals(dataType))
+        {
+            reader = (buffer, index) -> buffer.getLong(index);
+        }
+        else if (SIGNED_INT_TYPE.equals(dataType))
+        {
+            reader = (buffer, index) -> buffer.getInt(index);
+        }
+        else if (SIGNED_SHORT_TYPE.equals(dataType))
+        {
+            reader = (buffer, index) -> buffer.getShort(index);
+        }
+        else if (SIGNED_BYTE_TYPE.equals(dataType))
+        {
+            reader = (buffer, index) -> buffer.get(index);
+        }
+        else
+        {
+            reader = null;
+        }
+        return reader;
+    }
+
+    /**
+     * Gets the number of bytes in a value of a supported data type.
+     *
+     * @param dataType the data type
+     * @return the number of bytes
+     */
+    private static int getSize(String dataType)
+    {
+        int size;
+        if (DOUBLE_TYPE.equals(dataType) || SIGNED_LONG_TYPE.equals(dataType))
+        {
+            size = Long.BYTES;
+        }
+        else if (FLOAT_TYPE.equals(dataType) || SIGNED_INT_TYPE.equals(dataType))
+        {
+            size = Integer.BYTES;
+        }
+        else if (SIGNED_SHORT_TYPE.equals(dataType))
+        {
+            size = Short.BYTES;
+        }
+        else
+        {
+            size = Byte.BYTES;
+        }
+        return size;
+    }
+
+    /** Reads a field into a column of a batch. */
+    @FunctionalInterface
+    private interface FieldReader
+    {
+        /**
+         * Reads the field.
+         *
+         * @param buffer the buffer
+         * @param position the position of the record part holding the field
+         * @param batch the batch
+         * @param row the row
+         * @return whether the value is valid
+         */
+        boolean read(ByteBuffer buffer, int position, BinaryRecordBatch batch, int row);
+    }
+
+    /** Reads a raw value. */
+    @FunctionalInterface
+    private interface ValueReader
+    {
+        /**
+         * Reads the value.
+         *
+         * @param buffer the buffer
+         * @param index the index of the value in the buffer
+         * @return the value
+         */
+        double read(ByteBuffer buffer, int index);
+    }
+}
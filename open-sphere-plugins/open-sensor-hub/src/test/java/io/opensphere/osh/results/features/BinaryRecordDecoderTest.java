@@ -0,0 +1,145 @@
+package io.opensphere.osh.results.features;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.opensphere.osh.model.ArrayField;
+import io.opensphere.osh.model.Field;
+import io.opensphere.osh.model.Output;
+import io.opensphere.osh.model.VectorField;
+
+/** Tests for {@link BinaryRecordDecoder}. */
+public class BinaryRecordDecoderTest
+{
+    /** The OGC double data type. */
+    private static final String DOUBLE_TYPE = "http://www.opengis.net/def/dataType/OGC/0/double";
+
+    /** The OGC signed int data type. */
+    private static final String INT_TYPE = "http://www.opengis.net/def/dataType/OGC/0/signedInt";
+
+    /** The sampling time property. */
+    private static final String TIME_PROPERTY = "http://www.opengis.net/def/property/OGC/0/SamplingTime";
+
+    /**
+     * Tests decoding records of fixed fields, given a few bytes at a time.
+     */
+    @Test
+    public void testDecode()
+    {
+        Output output = new Output("output");
+        output.getFields().add(createField("time", TIME_PROPERTY, DOUBLE_TYPE));
+        output.getFields().add(createField("lat", null, DOUBLE_TYPE));
+        output.getFields().add(createField("lon", null, DOUBLE_TYPE));
+        output.getFields().add(createField("num_pos", null, DOUBLE_TYPE));
+        output.getFields().add(createField("count", null, INT_TYPE));
+        output.getFields().add(createField("image", null, "H264"));
+
+        ByteBuffer data = ByteBuffer.allocate(3 * 28);
+        data.putDouble(1500000000.5).putDouble(10.5).putDouble(-20.25).putInt(3);
+        // A latitude out of range drops the record.
+        data.putDouble(1500000001.).putDouble(200.).putDouble(-20.25).putInt(4);
+        data.putDouble(1500000002.).putDouble(11.).putDouble(-21.).putInt(5);
+
+        BinaryRecordBatch batch = decode(new BinaryRecordDecoder(output), data.array(), 5);
+
+        Assert.assertEquals(2, batch.size());
+        List<List<Serializable>> rows = batch.getRows();
+        Assert.assertEquals(Arrays.asList(Long.valueOf(1500000000500L), Float.valueOf(10.5f), Float.valueOf(-20.25f),
+                Integer.valueOf(3)), rows.get(0));
+        Assert.assertEquals(Arrays.asList(Long.valueOf(1500000002000L), Float.valueOf(11f), Float.valueOf(-21f),
+                Integer.valueOf(5)), rows.get(1));
+    }
+
+    /**
+     * Tests decoding records that end with an array of unknown length, given
+     * one byte at a time.
+     */
+    @Test
+    public void testDecodeArray()
+    {
+        VectorField point = new VectorField(new Field("point"));
+        point.getFields().add(createField("lat", null, DOUBLE_TYPE));
+        point.getFields().add(createField("lon", null, DOUBLE_TYPE));
+        ArrayField points = new ArrayField(new Field("points"));
+        points.setField(point);
+
+        Output output = new Output("output");
+        output.getFields().add(createField("time", TIME_PROPERTY, DOUBLE_TYPE));
+        output.getFields().add(points);
+
+        ByteBuffer data = ByteBuffer.allocate(8 * 8);
+        data.putDouble(1500000000.).putDouble(1.).putDouble(2.).putDouble(3.).putDouble(4.);
+        data.putDouble(1500000001.).putDouble(5.).putDouble(6.);
+
+        BinaryRecordBatch batch = decode(new BinaryRecordDecoder(output), data.array(), 1);
+
+        Assert.assertEquals(3, batch.size());
+        List<List<Serializable>> rows = batch.getRows();
+        Assert.assertEquals(Arrays.asList(Long.valueOf(1500000000000L), Float.valueOf(1f), Float.valueOf(2f)), rows.get(0));
+        Assert.assertEquals(Arrays.asList(Long.valueOf(1500000000000L), Float.valueOf(3f), Float.valueOf(4f)), rows.get(1));
+        Assert.assertEquals(Arrays.asList(Long.valueOf(1500000001000L), Float.valueOf(5f), Float.valueOf(6f)), rows.get(2));
+    }
+
+    /**
+     * Tests that fields after an array are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testFieldAfterArray()
+    {
+        ArrayField points = new ArrayField(new Field("points"));
+        points.setField(createField("lat", null, DOUBLE_TYPE));
+
+        Output output = new Output("output");
+        output.getFields().add(createField("time", TIME_PROPERTY, DOUBLE_TYPE));
+        output.getFields().add(points);
+        output.getFields().add(createField("count", null, INT_TYPE));
+
+        new BinaryRecordDecoder(output);
+    }
+
+    /**
+     * Creates a field.
+     *
+     * @param name the name
+     * @param property the property
+     * @param dataType the data type
+     * @return the field
+     */
+    private static Field createField(String name, String property, String dataType)
+    {
+        Field field = new Field(name);
+        field.setProperty(property);
+        field.setDataType(dataType);
+        return field;
+    }
+
+    /**
+     * Decodes data given to the decoder a few bytes at a time, the way
+     * {@link BinaryFeatureProcessor} reads a stream.
+     *
+     * @param decoder the decoder
+     * @param data the data
+     * @param chunkSize the number of bytes to add at a time
+     * @return the decoded records
+     */
+    private static BinaryRecordBatch decode(BinaryRecordDecoder decoder, byte[] data, int chunkSize)
+    {
+        BinaryRecordBatch batch = decoder.createBatch();
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        buffer.flip();
+        for (int offset = 0; offset < data.length; offset += chunkSize)
+        {
+            buffer.compact();
+            buffer.put(data, offset, Math.min(chunkSize, data.length - offset));
+            buffer.flip();
+            decoder.decode(buffer, batch);
+        }
+        Assert.assertEquals(0, buffer.remaining());
+        return batch;
+    }
+}
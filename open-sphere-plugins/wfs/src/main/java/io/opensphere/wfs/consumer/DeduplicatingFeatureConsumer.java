@@ -0,0 +1,88 @@
+package io.opensphere.wfs.consumer;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import io.opensphere.mantle.data.element.MapDataElement;
+
+/**
+ * A consumer that passes features to another consumer, dropping any feature
+ * whose id has been seen already. This is used when the results of
+ * overlapping requests are merged, which is only correct if the ids identify
+ * the features across requests. Features without an id (an id of zero) are
+ * always passed on. This is thread safe.
+ */
+public class DeduplicatingFeatureConsumer extends FeatureConsumer
+{
+    /** The consumer that receives the unique features. */
+    private final FeatureConsumer myConsumer;
+
+    /** The ids of the features passed on so far. */
+    private final Set<Long> myIds = ConcurrentHashMap.newKeySet();
+
+    /** The number of features passed on so far. */
+    private final AtomicInteger myAddedCount = new AtomicInteger();
+
+    /**
+     * Constructor.
+     *
+     * @param consumer The consumer that receives the unique features.
+     */
+    public DeduplicatingFeatureConsumer(FeatureConsumer consumer)
+    {
+        super(Integer.MAX_VALUE);
+        myConsumer = consumer;
+    }
+
+    @Override
+    public void addFeature(MapDataElement feature)
+    {
+        if (isNew(feature))
+        {
+            myConsumer.addFeature(feature);
+        }
+    }
+
+    @Override
+    public int addFeatures(Collection<MapDataElement> features)
+    {
+        List<MapDataElement> newFeatures = features.stream().filter(this::isNew).collect(Collectors.toList());
+        return myConsumer.addFeatures(newFeatures);
+    }
+
+    @Override
+    public void flush()
+    {
+        myConsumer.flush();
+    }
+
+    /**
+     * Gets the number of features passed on to the wrapped consumer.
+     *
+     * @return The number of unique features.
+     */
+    public int getAddedCount()
+    {
+        return myAddedCount.get();
+    }
+
+    /**
+     * Determines if a feature has not been seen before, and records it.
+     *
+     * @param feature The feature.
+     * @return True if the feature should be passed on.
+     */
+    private boolean isNew(MapDataElement feature)
+    {
+        boolean isNew = feature.getId() == 0 || myIds.add(Long.valueOf(feature.getId()));
+        if (isNew)
+        {
+            myAddedCount.incrementAndGet();
+        }
+        return isNew;
+    }
+}
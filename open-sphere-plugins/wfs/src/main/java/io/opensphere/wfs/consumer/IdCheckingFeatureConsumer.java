@@ -0,0 +1,73 @@
+package io.opensphere.wfs.consumer;
+
+import java.util.Collection;
+
+import io.opensphere.mantle.data.element.MapDataElement;
+
+/**
+ * A consumer that passes features on to another consumer as they arrive and
+ * records whether every feature had an id. Features without an id have an id
+ * of zero. This is thread safe.
+ */
+public class IdCheckingFeatureConsumer extends FeatureConsumer
+{
+    /** The consumer that receives the features. */
+    private final FeatureConsumer myConsumer;
+
+    /** Whether a feature without an id has been seen. */
+    private volatile boolean myMissingId;
+
+    /**
+     * Constructor.
+     *
+     * @param consumer The consumer that receives the features.
+     */
+    public IdCheckingFeatureConsumer(FeatureConsumer consumer)
+    {
+        super(Integer.MAX_VALUE);
+        myConsumer = consumer;
+    }
+
+    @Override
+    public void addFeature(MapDataElement feature)
+    {
+        check(feature);
+        myConsumer.addFeature(feature);
+    }
+
+    @Override
+    public int addFeatures(Collection<MapDataElement> features)
+    {
+        features.forEach(this::check);
+        return myConsumer.addFeatures(features);
+    }
+
+    @Override
+    public void flush()
+    {
+        myConsumer.flush();
+    }
+
+    /**
+     * Determines if every feature passed on so far has an id.
+     *
+     * @return True if all of the features have ids.
+     */
+    public boolean hasIds()
+    {
+        return !myMissingId;
+    }
+
+    /**
+     * Records whether a feature has an id.
+     *
+     * @param feature The feature.
+     */
+    private void check(MapDataElement feature)
+    {
+        if (feature.getId() == 0)
+        {
+            myMissingId = true;
+        }
+    }
+}
@@ -11,6 +11,10 @@ import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.xml.bind.JAXBElement;
 import javax.xml.parsers.ParserConfigurationException;
@@ -39,7 +43,7 @@ import io.opensphere.core.util.XMLUtilities;
 import io.opensphere.core.util.collections.New;
 import io.opensphere.core.util.collections.StreamUtilities;
 import io.opensphere.core.util.io.CancellableInputStream;
-import io.opensphere.core.util.io.StreamReader;
+import io.opensphere.core.util.lang.NamedThreadFactory;
 import io.opensphere.core.util.lang.StringUtilities;
 import io.opensphere.core.util.lang.ThreadControl;
 import io.opensphere.core.util.taskactivity.TaskActivity;
@@ -54,7 +58,9 @@ import io.opensphere.server.util.OGCServerConnector;
 import io.opensphere.server.util.OGCServerException;
 import io.opensphere.wfs.config.WFSServerConfig;
 import io.opensphere.wfs.config.WFSServerConfig.WFSServerState;
+import io.opensphere.wfs.consumer.DeduplicatingFeatureConsumer;
 import io.opensphere.wfs.consumer.FeatureConsumer;
+import io.opensphere.wfs.consumer.IdCheckingFeatureConsumer;
 import io.opensphere.wfs.filter.WFSTimeFieldGetter;
 import io.opensphere.wfs.gml311.GmlSaxFeatureResponseHandler;
 import io.opensphere.wfs.layer.WFSDataType;
@@ -83,6 +89,9 @@ public class WFSEnvoy extends AbstractWFSEnvoy
      */
     private static final int MAX_POINTS = (8000 - 500) / 50;
 
+    /** How long an idle request thread is kept, in seconds. */
+    private static final long REQUEST_THREAD_KEEP_ALIVE_SECONDS = 30L;
+
     /**
      * The preferred output format at the server level. This is used by any
      * layer that does not specify its own list of output formats.
@@ -104,6 +113,12 @@ public class WFSEnvoy extends AbstractWFSEnvoy
     /** The WFS preferences. */
     private final Preferences myPreferences;
 
+    /**
+     * The executor for feature requests, which limits the number of requests
+     * sent to the server at once. This is created on the first request.
+     */
+    private ThreadPoolExecutor myRequestExecutor;
+
     /** The WFS GetCapabilities object. */
     private WFSCapabilitiesType myWfsCapabilities;
 
@@ -155,6 +170,12 @@ public class WFSEnvoy extends AbstractWFSEnvoy
 
         myPlaceNamesManager.removeServer(getServerConfig().getServerTitle());
 
+        if (myRequestExecutor != null)
+        {
+            myRequestExecutor.shutdownNow();
+            myRequestExecutor = null;
+        }
+
         myWfsCapabilities = null;
     }
 
@@ -213,9 +234,79 @@ public class WFSEnvoy extends AbstractWFSEnvoy
         return addedDescribeFeatureData ? super.activateLayers(typesToActivate) : false;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Requests that hit the maximum number of features are split and
+     * requested again concurrently, and the results are merged by feature id.
+     * Features are passed on as they are read, so only GML responses whose
+     * features all have numeric ids are split, since other ids do not identify
+     * a feature across requests and the duplicates could not be removed. If
+     * any request fails, -1 is returned even though the features of the other
+     * requests were added.
+     * </p>
+     */
     @Override
     protected int getFeatures(WFSDataType wfsType, TimeSpan timeSpan, Geometry geometry, DataFilter userFilter)
         throws OGCServerException
+    {
+        int maxFeatures = WFSPreferenceUtilities.getMaxFeaturesFromPreferences(myPreferences);
+        DeduplicatingFeatureConsumer consumer = new DeduplicatingFeatureConsumer(
+                getConsumerManager().requestConsumer(wfsType, true));
+        boolean gml = !isAvro(getOutputFormat(wfsType));
+        WFSRequestPlanner planner = new WFSRequestPlanner(getRequestExecutor(), maxFeatures, (span, region) ->
+        {
+            IdCheckingFeatureConsumer checker = new IdCheckingFeatureConsumer(consumer);
+            int count = getFeatures(wfsType, span, region, userFilter, maxFeatures, checker);
+            checker.flush();
+            return new FeatureResponse(count, gml && checker.hasIds());
+        });
+        try
+        {
+            planner.retrieve(timeSpan, geometry);
+        }
+        catch (InterruptedException e)
+        {
+            throw new OGCServerException("Cancelled requesting " + wfsType.getDisplayName(), e);
+        }
+
+        if (LOGGER.isDebugEnabled() && planner.getRequestCount() > 1)
+        {
+            LOGGER.debug("Retrieved " + consumer.getAddedCount() + " unique features of type [" + wfsType.getDisplayName()
+                    + "] in " + planner.getRequestCount() + " requests.");
+        }
+        if (planner.isTruncated())
+        {
+            UserMessageEvent.warn(getToolbox().getEventManager(), "Some features of layer " + wfsType.getDisplayName()
+                    + " may be missing because a request returned the maximum of " + maxFeatures + " features.");
+        }
+        if (planner.getFailedCount() > 0)
+        {
+            UserMessageEvent.warn(getToolbox().getEventManager(), "Some features of layer " + wfsType.getDisplayName()
+                    + " may be missing because " + planner.getFailedCount() + " of " + planner.getRequestCount()
+                    + " requests failed.");
+            return -1;
+        }
+        return consumer.getAddedCount();
+    }
+
+    /**
+     * Makes a single feature request.
+     *
+     * @param wfsType the {@link WFSDataType} for the layer
+     * @param timeSpan the time span of the request
+     * @param geometry the region of the request
+     * @param userFilter the user filter, or {@code null}
+     * @param maxFeatures the maximum number of features for the server to
+     *            return
+     * @param consumer the consumer of the features
+     * @return a count of {@link MapDataElement}s returned from the server, or
+     *         -1 if the request could not be made
+     * @throws OGCServerException the server exception
+     */
+    protected int getFeatures(WFSDataType wfsType, TimeSpan timeSpan, Geometry geometry, DataFilter userFilter,
+            int maxFeatures, FeatureConsumer consumer)
+        throws OGCServerException
     {
         OGCOutputFormat format = getOutputFormat(wfsType);
 
@@ -227,7 +318,6 @@ public class WFSEnvoy extends AbstractWFSEnvoy
                 : userFilter.applyFieldNameTransform(WFSTimeFieldGetter.getTimeFieldTransform(wfsType)));
         filterParams.setSrs(getServerConfig().getServerCustomization().getSrsName());
         filterParams.setOutputFormat(format.getFormatString());
-        int maxFeatures = WFSPreferenceUtilities.getMaxFeaturesFromPreferences(myPreferences);
         filterParams.setMaxFeatures(BigInteger.valueOf(maxFeatures));
         filterParams.setGeometryTagName(wfsType.getMetaDataInfo().getGeometryColumn());
         filterParams.setTimeFieldNames(WFSTimeFieldGetter.getTimeFieldNames(wfsType));
@@ -270,7 +360,7 @@ public class WFSEnvoy extends AbstractWFSEnvoy
         }
 
         OGCServerConnector connector = getConnector(url, postRequest, getToolbox().getServerProviderRegistry());
-        return getFeatures(wfsType, connector, format);
+        return getFeatures(wfsType, connector, format, consumer);
     }
 
     /**
@@ -297,24 +387,45 @@ public class WFSEnvoy extends AbstractWFSEnvoy
      * @param wfsType the {@link WFSDataType} for the layer
      * @param connector a configured connection to the server
      * @param format the output format string for the request
+     * @param consumer the consumer of the features
      * @return a count of {@link MapDataElement}s returned from the server
      * @throws OGCServerException the server exception
      */
-    protected int getFeatures(WFSDataType wfsType, OGCServerConnector connector, OGCOutputFormat format) throws OGCServerException
+    protected int getFeatures(WFSDataType wfsType, OGCServerConnector connector, OGCOutputFormat format,
+            FeatureConsumer consumer)
+        throws OGCServerException
     {
         switch (format)
         {
             case AVRO_DEFLATE:
             case AVRO:
-                return getAvroStreaming(wfsType, connector);
+                return getAvroStreaming(wfsType, connector, consumer);
             case AVRO_B_DEFLATE:
             case AVRO_B:
-                return getAvroFeatures(wfsType, connector);
+                return getAvroFeatures(wfsType, connector, consumer);
             case GML_311:
-                return getFeaturesGml(wfsType, connector, format.getFormatString());
+                return getFeaturesGml(wfsType, connector, format.getFormatString(), consumer);
             default:
-                return getFeaturesGml(wfsType, connector, format.getFormatString());
+                return getFeaturesGml(wfsType, connector, format.getFormatString(), consumer);
+        }
+    }
+
+    /**
+     * Gets the executor for feature requests, creating it if necessary.
+     *
+     * @return the executor
+     */
+    private synchronized ExecutorService getRequestExecutor()
+    {
+        if (myRequestExecutor == null)
+        {
+            int threads = WFSPreferenceUtilities.getMaxConcurrentRequestsFromPreferences(myPreferences,
+                    getServerConfig().getServerId(OGCServerSource.WFS_SERVICE));
+            myRequestExecutor = new ThreadPoolExecutor(threads, threads, REQUEST_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("WFS-Request"));
+            myRequestExecutor.allowCoreThreadTimeOut(true);
         }
+        return myRequestExecutor;
     }
 
     @Override
@@ -475,10 +586,12 @@ public class WFSEnvoy extends AbstractWFSEnvoy
      * @param wfsType the {@link WFSDataType} for the layer
      * @param connector a configured connection to the server
      * @param format the output format string for the request
+     * @param consumer the consumer of the features
      * @return a count of {@link MapDataElement}s returned from the server
      * @throws OGCServerException the server exception
      */
-    private int getFeaturesGml(WFSDataType wfsType, OGCServerConnector connector, String format) throws OGCServerException
+    private int getFeaturesGml(WFSDataType wfsType, OGCServerConnector connector, String format, FeatureConsumer consumer)
+        throws OGCServerException
     {
         InputStream is = connector.requestStream();
         long t0 = System.nanoTime();
@@ -491,9 +604,7 @@ public class WFSEnvoy extends AbstractWFSEnvoy
             SAXParser saxParser = factory.newSAXParser();
 
             // parse the WFS response
-            FeatureConsumer consumer = getConsumerManager().requestConsumer(wfsType, true);
             GmlSaxFeatureResponseHandler handler = new GmlSaxFeatureResponseHandler(wfsType, consumer);
-            is = new StreamReader(is).copyStream(System.out);
             saxParser.parse(is, handler);
             // consumer.flush();
             count = handler.getProcessedCount();
@@ -527,9 +638,10 @@ public class WFSEnvoy extends AbstractWFSEnvoy
      *
      * @param type the layer
      * @param connector a connector
+     * @param featureConsumer the consumer of the features
      * @return the number of records inserted
      */
-    private int getAvroFeatures(WFSDataType type, OGCServerConnector connector)
+    private int getAvroFeatures(WFSDataType type, OGCServerConnector connector, FeatureConsumer featureConsumer)
     {
         try
         {
@@ -546,7 +658,6 @@ public class WFSEnvoy extends AbstractWFSEnvoy
                 {
                     elements.add(myEnvoyHelper.createDataElement(dataFileStream.next(), help));
                 }
-                FeatureConsumer featureConsumer = getConsumerManager().requestConsumer(type, true);
                 featureConsumer.addFeatures(elements);
                 featureConsumer.flush();
                 return elements.size();
@@ -568,10 +679,12 @@ public class WFSEnvoy extends AbstractWFSEnvoy
      *
      * @param type the layer
      * @param conn connector
+     * @param featureConsumer the consumer of the features
      * @return the number of data elements inserted
      * @throws OGCServerException if cancelled or any kind of error occurs
      */
-    private int getAvroStreaming(WFSDataType type, OGCServerConnector conn) throws OGCServerException
+    private int getAvroStreaming(WFSDataType type, OGCServerConnector conn, FeatureConsumer featureConsumer)
+        throws OGCServerException
     {
         CancellableInputStream in = conn.requestStream();
         if (in == null)
@@ -581,7 +694,6 @@ public class WFSEnvoy extends AbstractWFSEnvoy
 
         int count = 0;
         boolean cancelled = false;
-        FeatureConsumer featureConsumer = getConsumerManager().requestConsumer(type, true);
         AvroTimeHelper help = new AvroTimeHelper(type);
         try
         {
@@ -701,6 +813,54 @@ public class WFSEnvoy extends AbstractWFSEnvoy
         return finalGeom;
     }
 
+    /**
+     * Determines if an output format is one of the Avro formats, whose
+     * features are given ids from a counter rather than by the server.
+     *
+     * @param format the output format
+     * @return true if the format is Avro
+     */
+    private static boolean isAvro(OGCOutputFormat format)
+    {
+        return format == OGCOutputFormat.AVRO || format == OGCOutputFormat.AVRO_DEFLATE || format == OGCOutputFormat.AVRO_B
+                || format == OGCOutputFormat.AVRO_B_DEFLATE;
+    }
+
+    /** The outcome of one feature request. */
+    private static class FeatureResponse implements WFSRequestPlanner.Response
+    {
+        /** The number of features the server returned. */
+        private final int myCount;
+
+        /** Whether the features have stable ids. */
+        private final boolean myStableIds;
+
+        /**
+         * Constructor.
+         *
+         * @param count the number of features the server returned, or -1 if
+         *            the request failed
+         * @param stableIds whether the features have stable ids
+         */
+        public FeatureResponse(int count, boolean stableIds)
+        {
+            myCount = count;
+            myStableIds = stableIds;
+        }
+
+        @Override
+        public int getCount()
+        {
+            return myCount;
+        }
+
+        @Override
+        public boolean hasStableIds()
+        {
+            return myStableIds;
+        }
+    }
+
     /**
      * Extension of {@link TaskActivity} that counts concurrent placenames
      * requests.
@@ -0,0 +1,468 @@
+package io.opensphere.wfs.envoy;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.util.PolygonExtracter;
+
+import io.opensphere.core.model.time.TimeSpan;
+import io.opensphere.core.util.collections.New;
+import io.opensphere.core.util.lang.ThreadControl;
+import io.opensphere.server.util.OGCServerException;
+
+/**
+ * Plans the feature requests for a query. The query is requested as a whole
+ * first. A request that returns the maximum number of features may have been
+ * truncated by the server, so its region (or its time span, alternately) is
+ * split and the parts are requested concurrently, and so on until no request
+ * is truncated. The executor determines how many requests run at once.
+ * <p>
+ * The features of a request are passed on as they are read, so a request
+ * that is split has already passed on features that its parts return again,
+ * and the parts overlap at their boundaries. A request is therefore only split
+ * if its features have stable ids, so that the consumer of the features can
+ * remove the duplicates. A request that fails does not stop the others; the
+ * failures are counted instead.
+ */
+public class WFSRequestPlanner
+{
+    /** Logger reference. */
+    private static final Logger LOGGER = Logger.getLogger(WFSRequestPlanner.class);
+
+    /** The maximum number of times a request is split. */
+    private static final int MAX_DEPTH = 8;
+
+    /** The smallest region width or height (in degrees) that is split. */
+    private static final double MIN_SPLIT_DEGREES = 1e-4;
+
+    /** The shortest time span (in milliseconds) that is split. */
+    private static final long MIN_SPLIT_MILLIS = 1000L;
+
+    /** The executor for the requests. */
+    private final Executor myExecutor;
+
+    /** The number of requests that failed. */
+    private final AtomicInteger myFailedCount = new AtomicInteger();
+
+    /** The feature limit for one request. */
+    private final int myMaxFeatures;
+
+    /** The number of requests made so far. */
+    private final AtomicInteger myRequestCount = new AtomicInteger();
+
+    /** The runner that makes a request. */
+    private final RequestRunner myRunner;
+
+    /** Flag indicating if any request could not be split further. */
+    private volatile boolean myTruncated;
+
+    /** The threads currently making requests. */
+    private final Set<Thread> myWorkers = New.set();
+
+    /** Flag indicating if the requests have been cancelled. */
+    private boolean myCancelled;
+
+    /**
+     * Constructor.
+     *
+     * @param executor The executor for the requests. This should limit the
+     *            number of requests sent to the server at once.
+     * @param maxFeatures The feature limit for one request.
+     * @param runner The runner that makes a request.
+     */
+    public WFSRequestPlanner(Executor executor, int maxFeatures, RequestRunner runner)
+    {
+        myExecutor = executor;
+        myMaxFeatures = maxFeatures;
+        myRunner = runner;
+    }
+
+    /**
+     * Gets the number of requests that failed. The features of the other
+     * requests are still retrieved, so a failure means some features may be
+     * missing.
+     *
+     * @return The number of failed requests.
+     */
+    public int getFailedCount()
+    {
+        return myFailedCount.get();
+    }
+
+    /**
+     * Gets the number of requests made.
+     *
+     * @return The number of requests.
+     */
+    public int getRequestCount()
+    {
+        return myRequestCount.get();
+    }
+
+    /**
+     * Gets if any request returned the maximum number of features but could
+     * not be split further, meaning some features may be missing.
+     *
+     * @return True if the results may be incomplete.
+     */
+    public boolean isTruncated()
+    {
+        return myTruncated;
+    }
+
+    /**
+     * Requests the features for a time span and region, blocking until all
+     * of the requests are done. If the calling thread is interrupted, the
+     * outstanding requests are cancelled.
+     *
+     * @param timeSpan The time span.
+     * @param geometry The region.
+     * @throws OGCServerException If a request fails.
+     * @throws InterruptedException If the calling thread is interrupted.
+     */
+    public void retrieve(TimeSpan timeSpan, Geometry geometry) throws OGCServerException, InterruptedException
+    {
+        CompletionService<List<Request>> completionService = new ExecutorCompletionService<>(myExecutor);
+        Set<Future<List<Request>>> pending = New.set();
+        Request root = new Request(timeSpan, geometry, 0);
+        pending.add(completionService.submit(() -> run(root)));
+        boolean completed = false;
+        try
+        {
+            while (!pending.isEmpty())
+            {
+                Future<List<Request>> done = completionService.take();
+                pending.remove(done);
+                for (Request request : getResult(done))
+                {
+                    pending.add(completionService.submit(() -> run(request)));
+                }
+            }
+            completed = true;
+        }
+        finally
+        {
+            if (!completed)
+            {
+                cancel(pending);
+            }
+        }
+    }
+
+    /**
+     * Cancels the outstanding requests, including the ones already reading
+     * from the server.
+     *
+     * @param pending The outstanding requests.
+     */
+    private void cancel(Collection<? extends Future<?>> pending)
+    {
+        synchronized (myWorkers)
+        {
+            myCancelled = true;
+            for (Future<?> future : pending)
+            {
+                future.cancel(false);
+            }
+            for (Thread worker : myWorkers)
+            {
+                ThreadControl.cancelThread(worker);
+            }
+        }
+    }
+
+    /**
+     * Gets the result of a finished request, rethrowing its failure.
+     *
+     * @param future The future for the request.
+     * @return The requests that replace it.
+     * @throws OGCServerException If the request failed.
+     * @throws InterruptedException If the request was interrupted.
+     */
+    private List<Request> getResult(Future<List<Request>> future) throws OGCServerException, InterruptedException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof OGCServerException)
+            {
+                throw (OGCServerException)cause;
+            }
+            else if (cause instanceof InterruptedException)
+            {
+                throw (InterruptedException)cause;
+            }
+            else if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException)cause;
+            }
+            else if (cause instanceof Error)
+            {
+                throw (Error)cause;
+            }
+            throw new OGCServerException("Feature request failed: " + cause, cause);
+        }
+    }
+
+    /**
+     * Makes a request and splits it if it was truncated.
+     *
+     * @param request The request.
+     * @return The requests that replace the request, if it was truncated.
+     * @throws OGCServerException If the request fails.
+     * @throws InterruptedException If the request is cancelled.
+     */
+    private List<Request> run(Request request) throws OGCServerException, InterruptedException
+    {
+        Thread thread = Thread.currentThread();
+        synchronized (myWorkers)
+        {
+            if (myCancelled)
+            {
+                throw new InterruptedException();
+            }
+            myWorkers.add(thread);
+        }
+        Response response;
+        try
+        {
+            myRequestCount.incrementAndGet();
+            response = myRunner.run(request.getTimeSpan(), request.getGeometry());
+        }
+        finally
+        {
+            synchronized (myWorkers)
+            {
+                myWorkers.remove(thread);
+                ThreadControl.clearState(thread);
+                Thread.interrupted();
+            }
+        }
+
+        int count = response.getCount();
+        if (count < 0)
+        {
+            myFailedCount.incrementAndGet();
+            LOGGER.warn("Request for " + request.getTimeSpan() + " failed; some features may be missing.");
+            return Collections.emptyList();
+        }
+        if (count < myMaxFeatures)
+        {
+            return Collections.emptyList();
+        }
+
+        List<Request> parts = request.getDepth() < MAX_DEPTH && response.hasStableIds() ? split(request)
+                : Collections.<Request>emptyList();
+        if (parts.isEmpty())
+        {
+            myTruncated = true;
+            LOGGER.warn("Request for " + request.getTimeSpan() + " returned " + count
+                    + " features and cannot be split further; some features may be missing.");
+        }
+        else if (LOGGER.isDebugEnabled())
+        {
+            LOGGER.debug("Request for " + request.getTimeSpan() + " returned " + count + " features; splitting into "
+                    + parts.size() + " requests.");
+        }
+        return parts;
+    }
+
+    /**
+     * Splits a request. Requests are split alternately by time and by region,
+     * falling back to the other when one is too small to split.
+     *
+     * @param request The request.
+     * @return The parts of the request, or an empty list if it cannot be
+     *         split.
+     */
+    private List<Request> split(Request request)
+    {
+        boolean canSplitTime = isSplittable(request.getTimeSpan());
+        boolean canSplitRegion = isSplittable(request.getGeometry());
+        if (canSplitTime && (request.getDepth() % 2 == 1 || !canSplitRegion))
+        {
+            return splitTime(request);
+        }
+        return canSplitRegion ? splitRegion(request) : Collections.<Request>emptyList();
+    }
+
+    /**
+     * Splits a request into halves of its time span.
+     *
+     * @param request The request.
+     * @return The parts of the request.
+     */
+    private static List<Request> splitTime(Request request)
+    {
+        TimeSpan span = request.getTimeSpan();
+        long middle = span.getStart() + span.getDurationMs() / 2;
+        int depth = request.getDepth() + 1;
+        return New.list(new Request(TimeSpan.get(span.getStart(), middle), request.getGeometry(), depth),
+                new Request(TimeSpan.get(middle, span.getEnd()), request.getGeometry(), depth));
+    }
+
+    /**
+     * Splits a request into the quadrants of its region.
+     *
+     * @param request The request.
+     * @return The parts of the request.
+     */
+    private static List<Request> splitRegion(Request request)
+    {
+        Geometry geometry = request.getGeometry();
+        GeometryFactory factory = geometry.getFactory();
+        Envelope envelope = geometry.getEnvelopeInternal();
+        double midX = envelope.getMinX() + envelope.getWidth() / 2;
+        double midY = envelope.getMinY() + envelope.getHeight() / 2;
+        List<Envelope> quadrants = New.list(new Envelope(envelope.getMinX(), midX, envelope.getMinY(), midY),
+                new Envelope(midX, envelope.getMaxX(), envelope.getMinY(), midY),
+                new Envelope(envelope.getMinX(), midX, midY, envelope.getMaxY()),
+                new Envelope(midX, envelope.getMaxX(), midY, envelope.getMaxY()));
+
+        List<Request> parts = New.list(quadrants.size());
+        for (Envelope quadrant : quadrants)
+        {
+            // Only polygonal regions can be used in a filter.
+            @SuppressWarnings("unchecked")
+            List<Polygon> polygons = PolygonExtracter.getPolygons(geometry.intersection(factory.toGeometry(quadrant)));
+            if (!polygons.isEmpty())
+            {
+                parts.add(new Request(request.getTimeSpan(), factory.buildGeometry(polygons), request.getDepth() + 1));
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * Determines if a time span can be split.
+     *
+     * @param span The time span.
+     * @return True if the time span can be split.
+     */
+    private static boolean isSplittable(TimeSpan span)
+    {
+        return span.isBounded() && span.getDurationMs() >= MIN_SPLIT_MILLIS;
+    }
+
+    /**
+     * Determines if a region can be split.
+     *
+     * @param geometry The region.
+     * @return True if the region can be split.
+     */
+    private static boolean isSplittable(Geometry geometry)
+    {
+        Envelope envelope = geometry.getEnvelopeInternal();
+        return Math.max(envelope.getWidth(), envelope.getHeight()) >= MIN_SPLIT_DEGREES;
+    }
+
+    /** Makes one feature request. */
+    @FunctionalInterface
+    public interface RequestRunner
+    {
+        /**
+         * Requests the features for a time span and region.
+         *
+         * @param timeSpan The time span.
+         * @param geometry The region.
+         * @return The response, once its features have been passed on.
+         * @throws OGCServerException If the request fails.
+         */
+        Response run(TimeSpan timeSpan, Geometry geometry) throws OGCServerException;
+    }
+
+    /** The outcome of one request. */
+    public interface Response
+    {
+        /**
+         * Gets the number of features the server returned.
+         *
+         * @return The number of features, or -1 if the request failed.
+         */
+        int getCount();
+
+        /**
+         * Gets if the features have ids that identify them in any response,
+         * so that the features returned by overlapping requests can be
+         * merged.
+         *
+         * @return True if the ids are stable.
+         */
+        boolean hasStableIds();
+    }
+
+    /** A planned request. */
+    private static class Request
+    {
+        /** The time span. */
+        private final TimeSpan myTimeSpan;
+
+        /** The region. */
+        private final Geometry myGeometry;
+
+        /** The number of splits that produced this request. */
+        private final int myDepth;
+
+        /**
+         * Constructor.
+         *
+         * @param timeSpan The time span.
+         * @param geometry The region.
+         * @param depth The number of splits that produced this request.
+         */
+        public Request(TimeSpan timeSpan, Geometry geometry, int depth)
+        {
+            myTimeSpan = timeSpan;
+            myGeometry = geometry;
+            myDepth = depth;
+        }
+
+        /**
+         * Gets the number of splits that produced this request.
+         *
+         * @return The depth.
+         */
+        public int getDepth()
+        {
+            return myDepth;
+        }
+
+        /**
+         * Gets the region.
+         *
+         * @return The region.
+         */
+        public Geometry getGeometry()
+        {
+            return myGeometry;
+        }
+
+        /**
+         * Gets the time span.
+         *
+         * @return The time span.
+         */
+        public TimeSpan getTimeSpan()
+        {
+            return myTimeSpan;
+        }
+    }
+}
@@ -55,6 +55,19 @@ public abstract class AbstractGmlGeometryHandler
      */
     public abstract AbstractMapGeometrySupport getGeometry();
 
+    /**
+     * Gets the tokenizer that takes the characters of the tag being parsed,
+     * if that tag holds coordinates. The characters given to the tokenizer
+     * are not collected into the value of the tag.
+     *
+     * @return the coordinate tokenizer, or {@code null} if the characters of
+     *         the current tag should be collected
+     */
+    public GmlCoordinateTokenizer getCoordinateTokenizer()
+    {
+        return null;
+    }
+
     /**
      * Handle a GML Geometry-related opening tag.
      *
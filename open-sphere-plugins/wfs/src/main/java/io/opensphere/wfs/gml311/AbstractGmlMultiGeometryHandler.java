@@ -53,6 +53,12 @@ public abstract class AbstractGmlMultiGeometryHandler extends AbstractGmlGeometr
         return myParentGeometry;
     }
 
+    @Override
+    public GmlCoordinateTokenizer getCoordinateTokenizer()
+    {
+        return myCollectState == State.COLLECT_GEOMETRY ? myCurrentGeomHandler.getCoordinateTokenizer() : null;
+    }
+
     /**
      * Gets the geometry handler for a specific GML geometry tag.
      *
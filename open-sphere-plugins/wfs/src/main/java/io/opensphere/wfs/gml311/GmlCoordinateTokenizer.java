@@ -0,0 +1,290 @@
+package io.opensphere.wfs.gml311;
+
+import java.util.Arrays;
+
+/**
+ * Parses the numbers of a GML coordinate list ({@code posList},
+ * {@code coordinates} or {@code pos}) straight from the character buffers
+ * given to a SAX handler into a primitive array. Numbers are separated by
+ * white space or commas, and may be split across buffers.
+ * <p>
+ * Numbers that cannot be parsed are stored as {@link Double#NaN}.
+ */
+public class GmlCoordinateTokenizer
+{
+    /**
+     * The largest number of significant digits that is always exactly
+     * representable in the mantissa of a double.
+     */
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    /** The powers of ten that are exactly representable as doubles. */
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13,
+        1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22, };
+
+    /** The number of values that could not be parsed. */
+    private int myErrorCount;
+
+    /** The number of values. */
+    private int mySize;
+
+    /** The characters of the current token. */
+    private char[] myToken = new char[32];
+
+    /** The number of characters in the current token. */
+    private int myTokenLength;
+
+    /** The parsed values. */
+    private double[] myValues = new double[64];
+
+    /**
+     * Parses a number. Plain decimal numbers with few enough digits are
+     * converted with a single exact multiplication or division, which gives
+     * the same result as {@link Double#parseDouble(String)}; anything else is
+     * passed to {@link Double#parseDouble(String)}.
+     *
+     * @param chars The characters.
+     * @param offset The offset of the number in the characters.
+     * @param length The number of characters in the number.
+     * @return The number, or {@link Double#NaN} if it could not be parsed.
+     */
+    public static double parseDouble(char[] chars, int offset, int length)
+    {
+        int end = offset + length;
+        int index = offset;
+        boolean negative = false;
+        if (index < end && (chars[index] == '-' || chars[index] == '+'))
+        {
+            negative = chars[index] == '-';
+            ++index;
+        }
+
+        long mantissa = 0L;
+        int significantDigits = 0;
+        int exponent = 0;
+        boolean hasDigits = false;
+        boolean inFraction = false;
+        for (; index < end; ++index)
+        {
+            char c = chars[index];
+            if (c >= '0' && c <= '9')
+            {
+                hasDigits = true;
+                if (mantissa != 0L || c != '0')
+                {
+                    if (++significantDigits > MAX_EXACT_DIGITS)
+                    {
+                        return parseSlowly(chars, offset, length);
+                    }
+                    mantissa = mantissa * 10L + (c - '0');
+                }
+                if (inFraction)
+                {
+                    --exponent;
+                }
+            }
+            else if (c == '.' && !inFraction)
+            {
+                inFraction = true;
+            }
+            else
+            {
+                break;
+            }
+        }
+
+        if (!hasDigits)
+        {
+            return parseSlowly(chars, offset, length);
+        }
+
+        if (index < end)
+        {
+            if (chars[index] != 'e' && chars[index] != 'E')
+            {
+                return parseSlowly(chars, offset, length);
+            }
+            ++index;
+            boolean negativeExponent = false;
+            if (index < end && (chars[index] == '-' || chars[index] == '+'))
+            {
+                negativeExponent = chars[index] == '-';
+                ++index;
+            }
+            if (index == end || end - index > 3)
+            {
+                return parseSlowly(chars, offset, length);
+            }
+            int explicitExponent = 0;
+            for (; index < end; ++index)
+            {
+                char c = chars[index];
+                if (c < '0' || c > '9')
+                {
+                    return parseSlowly(chars, offset, length);
+                }
+                explicitExponent = explicitExponent * 10 + (c - '0');
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+
+        double value;
+        if (mantissa == 0L)
+        {
+            value = 0.;
+        }
+        else if (exponent >= 0 && exponent < POWERS_OF_TEN.length)
+        {
+            value = mantissa * POWERS_OF_TEN[exponent];
+        }
+        else if (exponent < 0 && -exponent < POWERS_OF_TEN.length)
+        {
+            value = mantissa / POWERS_OF_TEN[-exponent];
+        }
+        else
+        {
+            return parseSlowly(chars, offset, length);
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a number using {@link Double#parseDouble(String)}.
+     *
+     * @param chars The characters.
+     * @param offset The offset of the number in the characters.
+     * @param length The number of characters in the number.
+     * @return The number, or {@link Double#NaN} if it could not be parsed.
+     */
+    private static double parseSlowly(char[] chars, int offset, int length)
+    {
+        try
+        {
+            return Double.parseDouble(new String(chars, offset, length));
+        }
+        catch (NumberFormatException e)
+        {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Adds characters to the coordinate list. A number at the end of the
+     * characters is not parsed until a separator is added or
+     * {@link #finish()} is called.
+     *
+     * @param chars The characters.
+     * @param start The offset of the first character.
+     * @param length The number of characters.
+     */
+    public void append(char[] chars, int start, int length)
+    {
+        int end = start + length;
+        for (int index = start; index < end; ++index)
+        {
+            char c = chars[index];
+            if (c == ',' || Character.isWhitespace(c))
+            {
+                if (myTokenLength > 0)
+                {
+                    addToken();
+                }
+            }
+            else
+            {
+                if (myTokenLength == myToken.length)
+                {
+                    myToken = Arrays.copyOf(myToken, myToken.length * 2);
+                }
+                myToken[myTokenLength++] = c;
+            }
+        }
+    }
+
+    /**
+     * Parses the number at the end of the characters added so far, if any.
+     */
+    public void finish()
+    {
+        if (myTokenLength > 0)
+        {
+            addToken();
+        }
+    }
+
+    /**
+     * Gets the number of values that could not be parsed since the last
+     * reset.
+     *
+     * @return The number of errors.
+     */
+    public int getErrorCount()
+    {
+        return myErrorCount;
+    }
+
+    /**
+     * Gets the parsed values. This is the live array, which may be longer
+     * than {@link #size()}; it is replaced when the tokenizer needs more
+     * room.
+     *
+     * @return The values.
+     */
+    public double[] getValues()
+    {
+        return myValues;
+    }
+
+    /**
+     * Discards the values and any partial number.
+     */
+    public void reset()
+    {
+        mySize = 0;
+        myTokenLength = 0;
+        myErrorCount = 0;
+    }
+
+    /**
+     * Sets the number of values, discarding the values after it. This can be
+     * used after the values have been rearranged in place.
+     *
+     * @param size The new number of values, no more than the current number.
+     */
+    public void setSize(int size)
+    {
+        if (size < 0 || size > mySize)
+        {
+            throw new IllegalArgumentException("Size " + size + " is not within [0, " + mySize + "]");
+        }
+        mySize = size;
+    }
+
+    /**
+     * Gets the number of parsed values.
+     *
+     * @return The number of values.
+     */
+    public int size()
+    {
+        return mySize;
+    }
+
+    /**
+     * Parses the current token and adds it to the values.
+     */
+    private void addToken()
+    {
+        double value = parseDouble(myToken, 0, myTokenLength);
+        myTokenLength = 0;
+        if (Double.isNaN(value))
+        {
+            ++myErrorCount;
+        }
+        if (mySize == myValues.length)
+        {
+            myValues = Arrays.copyOf(myValues, myValues.length * 2);
+        }
+        myValues[mySize++] = value;
+    }
+}
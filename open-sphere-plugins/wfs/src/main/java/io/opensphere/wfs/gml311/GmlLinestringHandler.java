@@ -1,13 +1,13 @@
 package io.opensphere.wfs.gml311;
 
+import java.util.AbstractList;
 import java.util.List;
+import java.util.RandomAccess;
 
-import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
 
 import io.opensphere.core.model.Altitude;
 import io.opensphere.core.model.LatLonAlt;
-import io.opensphere.core.util.collections.New;
 import io.opensphere.mantle.data.geom.AbstractMapGeometrySupport;
 import io.opensphere.mantle.data.geom.impl.DefaultMapPolylineGeometrySupport;
 
@@ -22,8 +22,20 @@ public class GmlLinestringHandler extends AbstractGmlGeometryHandler
     /** Constant XML tag for list of GML Point Positions. */
     protected static final String POSITION_LIST_TAG = "posList";
 
-    /** List or translated points. */
-    private final List<LatLonAlt> myLatLonList = New.list();
+    /** Constant XML tag for a GML 2 style list of coordinates. */
+    protected static final String COORDINATES_TAG = "coordinates";
+
+    /** Flag indicating whether a coordinate list is being parsed. */
+    private boolean myIsCollecting;
+
+    /** The index of the first value of the coordinate list being parsed. */
+    private int myListStart;
+
+    /**
+     * The tokenizer that parses the coordinates. Once a coordinate list is
+     * done, its values are latitude/longitude pairs in degrees.
+     */
+    private final GmlCoordinateTokenizer myTokenizer = new GmlCoordinateTokenizer();
 
     /**
      * Instantiates a new SAX handler for GML LineStrings.
@@ -36,77 +48,149 @@ public class GmlLinestringHandler extends AbstractGmlGeometryHandler
         super(tagName, isLatBeforeLon);
     }
 
+    @Override
+    public GmlCoordinateTokenizer getCoordinateTokenizer()
+    {
+        return myIsCollecting ? myTokenizer : null;
+    }
+
     @Override
     public AbstractMapGeometrySupport getGeometry()
     {
-        AbstractMapGeometrySupport mgs = new DefaultMapPolylineGeometrySupport(myLatLonList);
+        AbstractMapGeometrySupport mgs = new DefaultMapPolylineGeometrySupport(getPositionList(false));
         mgs.setFollowTerrain(true, this);
         return mgs;
     }
 
     /**
-     * Protected accessor for the position list.
-     *
-     * NOTE: Only intended for inherited classes because this returns the live
-     * list, not a safe copy.
+     * Protected accessor for the position list. The positions are created
+     * when the list is read, so the list should only be read once.
      *
+     * @param close if the first position should be repeated at the end of the
+     *            list, if it is not there already
      * @return the list of positions
      */
-    protected List<LatLonAlt> getPositionList()
+    protected List<LatLonAlt> getPositionList(boolean close)
     {
-        return myLatLonList;
+        int positions = myTokenizer.size() / 2;
+        double[] values = myTokenizer.getValues();
+        boolean addClosing = close && positions > 1
+                && (values[0] != values[positions * 2 - 2] || values[1] != values[positions * 2 - 1]);
+        return new PositionList(values, positions, addClosing);
     }
 
     @Override
     public void handleClosingTag(String tag, String value)
     {
-        if (POSITION_LIST_TAG.equals(tag))
+        if (myIsCollecting && (POSITION_LIST_TAG.equals(tag) || COORDINATES_TAG.equals(tag)))
         {
-            boolean isLat = isLatBeforeLong();
-            int positions = 0;
-            double lat = 0.0;
-            double lon = 0.0;
-            for (String entry : value.split(" "))
+            // The characters normally go to the tokenizer directly, but take
+            // the value when the caller has collected them.
+            if (!value.isEmpty())
             {
-                if (StringUtils.isNotEmpty(entry)) // ignore extra spaces
-                {
-                    boolean hasError = false;
-                    try
-                    {
-                        if (isLat)
-                        {
-                            lat = Double.valueOf(entry).doubleValue();
-                        }
-                        else
-                        {
-                            lon = Double.valueOf(entry).doubleValue();
-                            if (lon > 180.0)
-                            {
-                                lon = lon - 360.0;
-                            }
-                        }
-                    }
-                    catch (NumberFormatException e)
-                    {
-                        hasError = true;
-                        LOGGER.warn("Parse error in posList parsing top element: \"" + entry + "\"", e);
-                    }
-                    isLat = !isLat;
-                    if (++positions == 2)
-                    {
-                        if (!hasError)
-                        {
-                            myLatLonList.add(LatLonAlt.createFromDegrees(lat, lon, Altitude.ReferenceLevel.TERRAIN));
-                        }
-                        positions = 0;
-                    }
-                }
+                myTokenizer.append(value.toCharArray(), 0, value.length());
             }
+            finishPositionList();
+            myIsCollecting = false;
         }
     }
 
     @Override
     public void handleOpeningTag(String tag)
     {
+        if (POSITION_LIST_TAG.equals(tag) || COORDINATES_TAG.equals(tag))
+        {
+            myIsCollecting = true;
+            myListStart = myTokenizer.size();
+        }
+    }
+
+    /**
+     * Converts the values of the coordinate list just parsed to
+     * latitude/longitude pairs in place, dropping the positions that could
+     * not be parsed.
+     */
+    private void finishPositionList()
+    {
+        myTokenizer.finish();
+        double[] values = myTokenizer.getValues();
+        int end = myTokenizer.size();
+        if ((end - myListStart) % 2 != 0)
+        {
+            LOGGER.warn("Odd number of values in posList; ignoring the last value.");
+            --end;
+        }
+
+        boolean isLatBeforeLon = isLatBeforeLong();
+        int out = myListStart;
+        int errors = 0;
+        for (int index = myListStart; index < end; index += 2)
+        {
+            double lat = isLatBeforeLon ? values[index] : values[index + 1];
+            double lon = isLatBeforeLon ? values[index + 1] : values[index];
+            if (Double.isNaN(lat) || Double.isNaN(lon))
+            {
+                ++errors;
+            }
+            else
+            {
+                values[out++] = lat;
+                values[out++] = lon > 180.0 ? lon - 360.0 : lon;
+            }
+        }
+        myTokenizer.setSize(out);
+
+        if (errors > 0)
+        {
+            LOGGER.warn("Skipped " + errors + " positions in posList that could not be parsed.");
+        }
+    }
+
+    /**
+     * A list of positions backed by an array of latitude/longitude pairs. The
+     * positions are created as they are read.
+     */
+    private static class PositionList extends AbstractList<LatLonAlt> implements RandomAccess
+    {
+        /** Flag indicating if the first position is repeated at the end. */
+        private final boolean myAddClosing;
+
+        /** The number of positions in the array. */
+        private final int myPositions;
+
+        /** The latitude/longitude pairs. */
+        private final double[] myValues;
+
+        /**
+         * Constructor.
+         *
+         * @param values the latitude/longitude pairs
+         * @param positions the number of positions in the array
+         * @param addClosing if the first position is repeated at the end
+         */
+        public PositionList(double[] values, int positions, boolean addClosing)
+        {
+            myValues = values;
+            myPositions = positions;
+            myAddClosing = addClosing;
+        }
+
+        @Override
+        public LatLonAlt get(int index)
+        {
+            if (index < 0 || index >= size())
+            {
+                throw new IndexOutOfBoundsException("Index " + index + " is not within [0, " + size() + ")");
+            }
+            int position = index == myPositions ? 0 : index;
+            return LatLonAlt.createFromDegrees(myValues[position * 2], myValues[position * 2 + 1],
+                    Altitude.ReferenceLevel.TERRAIN);
+        }
+
+        @Override
+        public int size()
+        {
+            return myAddClosing ? myPositions + 1 : myPositions;
+        }
     }
 }
@@ -18,12 +18,21 @@ public class GmlPointHandler extends AbstractGmlGeometryHandler
     /** Constant for GML Point Positions. */
     private static final String POSITION_TAG = "pos";
 
+    /** Constant for GML 2 style point coordinates. */
+    private static final String COORDINATES_TAG = "coordinates";
+
+    /** Flag indicating whether the position is being parsed. */
+    private boolean myIsCollecting;
+
     /** Latitude. */
     private double myLat;
 
     /** Longitude. */
     private double myLon;
 
+    /** The tokenizer that parses the position. */
+    private final GmlCoordinateTokenizer myTokenizer = new GmlCoordinateTokenizer();
+
     /**
      * Instantiates a new SAX handler for GML points.
      *
@@ -35,6 +44,12 @@ public class GmlPointHandler extends AbstractGmlGeometryHandler
         super(tagName, isLatBeforeLon);
     }
 
+    @Override
+    public GmlCoordinateTokenizer getCoordinateTokenizer()
+    {
+        return myIsCollecting ? myTokenizer : null;
+    }
+
     @Override
     public AbstractMapGeometrySupport getGeometry()
     {
@@ -44,32 +59,37 @@ public class GmlPointHandler extends AbstractGmlGeometryHandler
     @Override
     public void handleClosingTag(String tag, String value)
     {
-        if (POSITION_TAG.equals(tag))
+        if (myIsCollecting && (POSITION_TAG.equals(tag) || COORDINATES_TAG.equals(tag)))
         {
-            try
+            myIsCollecting = false;
+            if (!value.isEmpty())
+            {
+                myTokenizer.append(value.toCharArray(), 0, value.length());
+            }
+            myTokenizer.finish();
+
+            double[] values = myTokenizer.getValues();
+            if (myTokenizer.size() < 2 || Double.isNaN(values[0]) || Double.isNaN(values[1]))
             {
-                String[] arr = value.split(" ");
-
-                if (isLatBeforeLong())
-                {
-                    myLat = Double.valueOf(arr[0]).doubleValue();
-                    myLon = Double.valueOf(arr[1]).doubleValue();
-                }
-                else
-                {
-                    myLon = Double.valueOf(arr[0]).doubleValue();
-                    myLat = Double.valueOf(arr[1]).doubleValue();
-                }
-
-                if (myLon > 180.0)
-                {
-                    LOGGER.info("Repaired large longitude [" + myLon + "].");
-                    myLon = myLon - 360.0;
-                }
+                LOGGER.warn("Error parsing position in a GML point.");
+                return;
             }
-            catch (NumberFormatException e)
+
+            if (isLatBeforeLong())
             {
-                LOGGER.warn("Error parsing position in a GML point.", e);
+                myLat = values[0];
+                myLon = values[1];
+            }
+            else
+            {
+                myLon = values[0];
+                myLat = values[1];
+            }
+
+            if (myLon > 180.0)
+            {
+                LOGGER.info("Repaired large longitude [" + myLon + "].");
+                myLon = myLon - 360.0;
             }
         }
     }
@@ -77,5 +97,10 @@ public class GmlPointHandler extends AbstractGmlGeometryHandler
     @Override
     public void handleOpeningTag(String tag)
     {
+        if (POSITION_TAG.equals(tag) || COORDINATES_TAG.equals(tag))
+        {
+            myIsCollecting = true;
+            myTokenizer.reset();
+        }
     }
 }
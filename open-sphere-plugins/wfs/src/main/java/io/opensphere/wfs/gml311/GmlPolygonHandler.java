@@ -1,8 +1,5 @@
 package io.opensphere.wfs.gml311;
 
-import java.util.List;
-
-import io.opensphere.core.model.LatLonAlt;
 import io.opensphere.mantle.data.geom.AbstractMapGeometrySupport;
 import io.opensphere.mantle.data.geom.impl.DefaultMapPolygonGeometrySupport;
 
@@ -18,6 +15,9 @@ public class GmlPolygonHandler extends GmlLinestringHandler
     /** Constant XML tag for GML Polygon exterior rings. */
     private static final String EXTERIOR_RING_TAG = "exterior";
 
+    /** Constant XML tag for GML 2 style Polygon exterior rings. */
+    private static final String OUTER_BOUNDARY_TAG = "outerBoundaryIs";
+
     /** Flag indicating whether current ring is an exterior polygon ring. */
     private boolean myIsExteriorRing;
 
@@ -35,14 +35,8 @@ public class GmlPolygonHandler extends GmlLinestringHandler
     @Override
     public AbstractMapGeometrySupport getGeometry()
     {
-        List<LatLonAlt> posList = getPositionList();
         // Make sure polygon is closed
-        if (!posList.get(0).equals(posList.get(posList.size() - 1)))
-        {
-            posList.add(posList.get(0));
-        }
-
-        AbstractMapGeometrySupport mgs = new DefaultMapPolygonGeometrySupport(posList, null);
+        AbstractMapGeometrySupport mgs = new DefaultMapPolygonGeometrySupport(getPositionList(true), null);
         mgs.setFollowTerrain(true, this);
         return mgs;
     }
@@ -50,14 +44,14 @@ public class GmlPolygonHandler extends GmlLinestringHandler
     @Override
     public void handleClosingTag(String tag, String value)
     {
-        if (POSITION_LIST_TAG.equals(tag))
+        if (POSITION_LIST_TAG.equals(tag) || COORDINATES_TAG.equals(tag))
         {
             if (myIsExteriorRing)
             {
                 super.handleClosingTag(tag, value);
             }
         }
-        else if (EXTERIOR_RING_TAG.equals(tag))
+        else if (EXTERIOR_RING_TAG.equals(tag) || OUTER_BOUNDARY_TAG.equals(tag))
         {
             myIsExteriorRing = false;
         }
@@ -66,9 +60,13 @@ public class GmlPolygonHandler extends GmlLinestringHandler
     @Override
     public void handleOpeningTag(String tag)
     {
-        if (EXTERIOR_RING_TAG.equals(tag))
+        if (EXTERIOR_RING_TAG.equals(tag) || OUTER_BOUNDARY_TAG.equals(tag))
         {
             myIsExteriorRing = true;
         }
+        else if (myIsExteriorRing)
+        {
+            super.handleOpeningTag(tag);
+        }
     }
 }
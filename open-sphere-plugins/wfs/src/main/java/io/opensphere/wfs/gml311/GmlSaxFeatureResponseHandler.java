@@ -132,6 +132,17 @@ public class GmlSaxFeatureResponseHandler extends DefaultHandler
         {
             LOGGER.trace("Adding characters for " + myCurrentProperty);
         }
+        if (myCurrentState.equals(State.COLLECT_GEOMETRY))
+        {
+            // Coordinates are parsed from the buffer without being collected
+            // into a string.
+            GmlCoordinateTokenizer tokenizer = myCurrentGeometryHandler.getCoordinateTokenizer();
+            if (tokenizer != null)
+            {
+                tokenizer.append(ch, start, length);
+                return;
+            }
+        }
         myCurrentValue.append(ch, start, length);
     }
 
@@ -295,7 +306,14 @@ public class GmlSaxFeatureResponseHandler extends DefaultHandler
         }
 
         myCurrentProperty = localName;
-        myCurrentValue = new StringBuilder();
+        if (myCurrentValue == null)
+        {
+            myCurrentValue = new StringBuilder();
+        }
+        else
+        {
+            myCurrentValue.setLength(0);
+        }
     }
 
     /**
@@ -23,6 +23,16 @@ public final class WFSConstants
     /** The maximum number of maximum features. */
     public static final int MAX_MAX_FEATURES = 2_000_000;
 
+    /**
+     * The preference key for the number of feature requests that may be sent
+     * to a server at once. A server id may be appended to the key to override
+     * the value for one server.
+     */
+    public static final String MAX_CONCURRENT_REQUESTS_PREFERENCE = "OGCServer.WFS.MaxConcurrentRequests";
+
+    /** The default number of feature requests sent to a server at once. */
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+
     /** Forbid instantiation of utility class. */
     private WFSConstants()
     {
@@ -21,6 +21,25 @@ public final class WFSPreferenceUtilities
         return maxFeatures;
     }
 
+    /**
+     * Gets the number of feature requests that may be sent to a server at
+     * once. A value set for the server overrides the value for all servers.
+     *
+     * @param preferences the WFS preferences
+     * @param serverId the id of the server
+     * @return the number of concurrent requests, at least one
+     */
+    public static int getMaxConcurrentRequestsFromPreferences(Preferences preferences, String serverId)
+    {
+        int maxRequests = preferences.getInt(WFSConstants.MAX_CONCURRENT_REQUESTS_PREFERENCE,
+                WFSConstants.DEFAULT_MAX_CONCURRENT_REQUESTS);
+        if (serverId != null)
+        {
+            maxRequests = preferences.getInt(WFSConstants.MAX_CONCURRENT_REQUESTS_PREFERENCE + "." + serverId, maxRequests);
+        }
+        return Math.max(1, maxRequests);
+    }
+
     /** Private constructor. */
     private WFSPreferenceUtilities()
     {
@@ -0,0 +1,441 @@
+package io.opensphere.wfs.envoy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+
+import io.opensphere.core.model.time.TimeSpan;
+import io.opensphere.core.util.collections.New;
+import io.opensphere.mantle.data.element.MapDataElement;
+import io.opensphere.server.util.OGCServerException;
+import io.opensphere.wfs.consumer.DeduplicatingFeatureConsumer;
+import io.opensphere.wfs.consumer.FeatureConsumer;
+
+/**
+ * Unit test for {@link WFSRequestPlanner}, using a stub server that returns
+ * at most the maximum number of features for a request.
+ */
+public class WFSRequestPlannerTest
+{
+    /** The geometry factory. */
+    private static final GeometryFactory FACTORY = new GeometryFactory();
+
+    /** The start of the query time span. */
+    private static final long START = 1_500_000_000_000L;
+
+    /** The length of the query time span. */
+    private static final long DURATION = 86_400_000L;
+
+    /**
+     * Tests that truncated requests are split until all of the features are
+     * retrieved, without exceeding the number of concurrent requests, and
+     * that the features the truncated requests passed on are not passed on
+     * again by their parts.
+     *
+     * @throws InterruptedException If the test is interrupted.
+     * @throws OGCServerException If a request fails.
+     */
+    @Test
+    public void testRetrieve() throws OGCServerException, InterruptedException
+    {
+        List<StubFeature> features = New.list();
+        for (int x = 0; x < 20; ++x)
+        {
+            for (int y = 0; y < 20; ++y)
+            {
+                features.add(new StubFeature(features.size() + 1, x + .5, y + .5, START + features.size() * 1000L));
+            }
+        }
+        StubServer server = new StubServer(features, 50);
+        CollectingConsumer collector = new CollectingConsumer();
+        DeduplicatingFeatureConsumer consumer = new DeduplicatingFeatureConsumer(collector);
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try
+        {
+            WFSRequestPlanner planner = new WFSRequestPlanner(executor, 50,
+                    (span, region) -> server.getFeatures(span, region, consumer, true));
+            planner.retrieve(TimeSpan.get(START, START + DURATION), FACTORY.toGeometry(new Envelope(0, 20, 0, 20)));
+
+            assertFalse(planner.isTruncated());
+            assertEquals(0, planner.getFailedCount());
+            assertTrue(planner.getRequestCount() > 1);
+            assertEquals(planner.getRequestCount(), server.getRequestCount());
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        // Every feature is passed on once, although the truncated requests
+        // passed theirs on before they were split.
+        assertTrue(server.getReturnedCount() > features.size());
+        assertEquals(features.size(), collector.getFeatures().size());
+        assertEquals(features.size(), New.set(collector.getFeatures()).size());
+        assertTrue(server.getMaxConcurrentRequests() <= 3);
+    }
+
+    /**
+     * Tests that a request that cannot be split far enough is reported as
+     * truncated.
+     *
+     * @throws InterruptedException If the test is interrupted.
+     * @throws OGCServerException If a request fails.
+     */
+    @Test
+    public void testTruncated() throws OGCServerException, InterruptedException
+    {
+        List<StubFeature> features = New.list();
+        for (int index = 0; index < 20; ++index)
+        {
+            features.add(new StubFeature(index + 1, 5.3, 5.3, START + 1000L));
+        }
+        StubServer server = new StubServer(features, 10);
+        DeduplicatingFeatureConsumer consumer = new DeduplicatingFeatureConsumer(new CollectingConsumer());
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            WFSRequestPlanner planner = new WFSRequestPlanner(executor, 10,
+                    (span, region) -> server.getFeatures(span, region, consumer, true));
+            planner.retrieve(TimeSpan.get(START, START + DURATION), FACTORY.toGeometry(new Envelope(0, 20, 0, 20)));
+
+            assertTrue(planner.isTruncated());
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        assertEquals(10, consumer.getAddedCount());
+    }
+
+    /**
+     * Tests that a truncated request is not split if its features do not have
+     * stable ids, since the duplicates could not be removed.
+     *
+     * @throws InterruptedException If the test is interrupted.
+     * @throws OGCServerException If a request fails.
+     */
+    @Test
+    public void testUnstableIds() throws OGCServerException, InterruptedException
+    {
+        List<StubFeature> features = New.list();
+        for (int index = 0; index < 20; ++index)
+        {
+            features.add(new StubFeature(index + 1, index + .5, index + .5, START + index * 1000L));
+        }
+        StubServer server = new StubServer(features, 10);
+        CollectingConsumer collector = new CollectingConsumer();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            WFSRequestPlanner planner = new WFSRequestPlanner(executor, 10,
+                    (span, region) -> server.getFeatures(span, region, collector, false));
+            planner.retrieve(TimeSpan.get(START, START + DURATION), FACTORY.toGeometry(new Envelope(0, 20, 0, 20)));
+
+            assertTrue(planner.isTruncated());
+            assertEquals(1, planner.getRequestCount());
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        assertEquals(10, collector.getFeatures().size());
+    }
+
+    /**
+     * Tests that a request that fails is counted without stopping the other
+     * requests.
+     *
+     * @throws InterruptedException If the test is interrupted.
+     * @throws OGCServerException If a request fails.
+     */
+    @Test
+    public void testFailedResponse() throws OGCServerException, InterruptedException
+    {
+        List<StubFeature> features = New.list();
+        for (int x = 0; x < 20; ++x)
+        {
+            for (int y = 0; y < 20; ++y)
+            {
+                features.add(new StubFeature(features.size() + 1, x + .5, y + .5, START + features.size() * 1000L));
+            }
+        }
+        StubServer server = new StubServer(features, 150);
+        DeduplicatingFeatureConsumer consumer = new DeduplicatingFeatureConsumer(new CollectingConsumer());
+        Envelope failing = new Envelope(0, 10, 0, 10);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            WFSRequestPlanner planner = new WFSRequestPlanner(executor, 150,
+                    (span, region) -> failing.equals(region.getEnvelopeInternal()) ? new StubResponse(-1, true)
+                            : server.getFeatures(span, region, consumer, true));
+            planner.retrieve(TimeSpan.get(START, START + DURATION), FACTORY.toGeometry(new Envelope(0, 20, 0, 20)));
+
+            assertEquals(1, planner.getFailedCount());
+            assertEquals(5, planner.getRequestCount());
+            assertFalse(planner.isTruncated());
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        // The features of the other quadrants are all retrieved, along with
+        // the 80 features in the failed quadrant that the first request
+        // returned before it was split.
+        assertEquals(features.size() - 100 + 80, consumer.getAddedCount());
+    }
+
+    /**
+     * Tests that a failed request fails the retrieval.
+     *
+     * @throws InterruptedException If the test is interrupted.
+     * @throws OGCServerException If a request fails.
+     */
+    @Test(expected = OGCServerException.class)
+    public void testFailure() throws OGCServerException, InterruptedException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            WFSRequestPlanner planner = new WFSRequestPlanner(executor, 10, (span, region) ->
+            {
+                throw new OGCServerException("Server failed", null);
+            });
+            planner.retrieve(TimeSpan.get(START, START + DURATION), FACTORY.toGeometry(new Envelope(0, 20, 0, 20)));
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /** A feature on the stub server. */
+    private static class StubFeature
+    {
+        /** The feature as a data element. */
+        private final MapDataElement myElement;
+
+        /** The location of the feature. */
+        private final Point myPoint;
+
+        /** The time of the feature. */
+        private final TimeSpan myTime;
+
+        /**
+         * Constructor.
+         *
+         * @param id The feature id.
+         * @param lon The longitude.
+         * @param lat The latitude.
+         * @param time The time.
+         */
+        public StubFeature(long id, double lon, double lat, long time)
+        {
+            myElement = EasyMock.createMock(MapDataElement.class);
+            EasyMock.expect(Long.valueOf(myElement.getId())).andReturn(Long.valueOf(id)).anyTimes();
+            EasyMock.replay(myElement);
+            myPoint = FACTORY.createPoint(new Coordinate(lon, lat));
+            myTime = TimeSpan.get(time);
+        }
+    }
+
+    /**
+     * A stub WFS server that returns the features in a region and time span,
+     * up to a maximum number, in the order it has them.
+     */
+    private static class StubServer
+    {
+        /** The features on the server. */
+        private final List<StubFeature> myFeatures;
+
+        /** The number of requests in progress. */
+        private final AtomicInteger myConcurrentRequests = new AtomicInteger();
+
+        /** The maximum number of features for one request. */
+        private final int myMaxFeatures;
+
+        /** The highest number of requests in progress at once. */
+        private final AtomicInteger myMaxConcurrentRequests = new AtomicInteger();
+
+        /** The number of requests made. */
+        private final AtomicInteger myRequestCount = new AtomicInteger();
+
+        /** The number of features returned by all of the requests. */
+        private final AtomicInteger myReturnedCount = new AtomicInteger();
+
+        /**
+         * Constructor.
+         *
+         * @param features The features on the server.
+         * @param maxFeatures The maximum number of features for one request.
+         */
+        public StubServer(List<StubFeature> features, int maxFeatures)
+        {
+            myFeatures = features;
+            myMaxFeatures = maxFeatures;
+        }
+
+        /**
+         * Gets the highest number of requests in progress at once.
+         *
+         * @return The number of requests.
+         */
+        public int getMaxConcurrentRequests()
+        {
+            return myMaxConcurrentRequests.get();
+        }
+
+        /**
+         * Gets the number of requests made.
+         *
+         * @return The number of requests.
+         */
+        public int getRequestCount()
+        {
+            return myRequestCount.get();
+        }
+
+        /**
+         * Gets the number of features returned by all of the requests.
+         *
+         * @return The number of features.
+         */
+        public int getReturnedCount()
+        {
+            return myReturnedCount.get();
+        }
+
+        /**
+         * Handles a GetFeature request. The features are passed on as they
+         * are found.
+         *
+         * @param span The time span of the request.
+         * @param region The region of the request.
+         * @param consumer The consumer the features are passed on to.
+         * @param stableIds Whether the features have stable ids.
+         * @return The response.
+         */
+        public WFSRequestPlanner.Response getFeatures(TimeSpan span, Geometry region, FeatureConsumer consumer,
+                boolean stableIds)
+        {
+            myRequestCount.incrementAndGet();
+            int concurrent = myConcurrentRequests.incrementAndGet();
+            myMaxConcurrentRequests.accumulateAndGet(concurrent, Math::max);
+            try
+            {
+                int count = 0;
+                for (StubFeature feature : myFeatures)
+                {
+                    if (count < myMaxFeatures && span.overlaps(feature.myTime) && region.intersects(feature.myPoint))
+                    {
+                        consumer.addFeature(feature.myElement);
+                        ++count;
+                    }
+                }
+                myReturnedCount.addAndGet(count);
+                return new StubResponse(count, stableIds);
+            }
+            finally
+            {
+                myConcurrentRequests.decrementAndGet();
+            }
+        }
+    }
+
+    /** A response from the stub server. */
+    private static class StubResponse implements WFSRequestPlanner.Response
+    {
+        /** The number of features. */
+        private final int myCount;
+
+        /** Whether the features have stable ids. */
+        private final boolean myStableIds;
+
+        /**
+         * Constructor.
+         *
+         * @param count The number of features, or -1 if the request failed.
+         * @param stableIds Whether the features have stable ids.
+         */
+        public StubResponse(int count, boolean stableIds)
+        {
+            myCount = count;
+            myStableIds = stableIds;
+        }
+
+        @Override
+        public int getCount()
+        {
+            return myCount;
+        }
+
+        @Override
+        public boolean hasStableIds()
+        {
+            return myStableIds;
+        }
+    }
+
+    /** A consumer that collects the features it is given. */
+    private static class CollectingConsumer extends FeatureConsumer
+    {
+        /** The features. */
+        private final List<MapDataElement> myCollected = Collections.synchronizedList(New.<MapDataElement>list());
+
+        /** Constructor. */
+        public CollectingConsumer()
+        {
+            super(Integer.MAX_VALUE);
+        }
+
+        @Override
+        public void addFeature(MapDataElement feature)
+        {
+            myCollected.add(feature);
+        }
+
+        @Override
+        public int addFeatures(Collection<MapDataElement> features)
+        {
+            myCollected.addAll(features);
+            return features.size();
+        }
+
+        @Override
+        public void flush()
+        {
+        }
+
+        /**
+         * Gets the collected features.
+         *
+         * @return The features.
+         */
+        public List<MapDataElement> getFeatures()
+        {
+            return myCollected;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package io.opensphere.wfs.gml311;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit test for {@link GmlCoordinateTokenizer}.
+ */
+public class GmlCoordinateTokenizerTest
+{
+    /**
+     * Tests that numbers split across buffers and separated by white space or
+     * commas are parsed.
+     */
+    @Test
+    public void testAppend()
+    {
+        GmlCoordinateTokenizer tokenizer = new GmlCoordinateTokenizer();
+        char[] chars = " 10.5 -20.25\n\t30,4e1  -5.E-1 x ".toCharArray();
+        for (int start = 0; start < chars.length; start += 3)
+        {
+            tokenizer.append(chars, start, Math.min(3, chars.length - start));
+        }
+        tokenizer.finish();
+
+        assertEquals(6, tokenizer.size());
+        double[] values = tokenizer.getValues();
+        assertEquals(10.5, values[0], 0.);
+        assertEquals(-20.25, values[1], 0.);
+        assertEquals(30., values[2], 0.);
+        assertEquals(40., values[3], 0.);
+        assertEquals(-.5, values[4], 0.);
+        assertTrue(Double.isNaN(values[5]));
+        assertEquals(1, tokenizer.getErrorCount());
+
+        tokenizer.reset();
+        assertEquals(0, tokenizer.size());
+        assertEquals(0, tokenizer.getErrorCount());
+        char[] more = "1 2".toCharArray();
+        tokenizer.append(more, 0, more.length);
+        assertEquals(1, tokenizer.size());
+        tokenizer.finish();
+        assertEquals(2, tokenizer.size());
+    }
+
+    /**
+     * Tests that numbers are parsed exactly as {@link Double#parseDouble}
+     * parses them.
+     */
+    @Test
+    public void testParseDouble()
+    {
+        String[] fixed = { "0", "-0", "0.0", "+1", "1.", ".5", "000.000120", "179.99999999999997", "-89.123456789012",
+            "1234567890123456789", "0.1234567890123456789", "1e22", "1e23", "1.5e-300", "2.5E+3", "-7e-5", "NaN",
+            "Infinity", };
+        for (String text : fixed)
+        {
+            assertParsed(text);
+        }
+
+        Random random = new Random(2L);
+        for (int index = 0; index < 100_000; ++index)
+        {
+            double value = (random.nextDouble() - .5) * 360.;
+            assertParsed(Double.toString(value));
+            assertParsed(String.format(Locale.US, "%.6f", Double.valueOf(value)));
+            assertParsed(String.format(Locale.US, "%.3e", Double.valueOf(value)));
+        }
+    }
+
+    /**
+     * Tests parsing text that is not a number.
+     */
+    @Test
+    public void testParseInvalid()
+    {
+        for (String text : new String[] { "", "-", ".", "e5", "1e", "1.2.3", "12a", "--1" })
+        {
+            assertTrue(text, Double.isNaN(GmlCoordinateTokenizer.parseDouble(text.toCharArray(), 0, text.length())));
+        }
+    }
+
+    /**
+     * Asserts that the tokenizer parses some text to the same value as
+     * {@link Double#parseDouble(String)}.
+     *
+     * @param text The text.
+     */
+    private static void assertParsed(String text)
+    {
+        char[] chars = ("  " + text + " ").toCharArray();
+        double expected = Double.parseDouble(text);
+        double actual = GmlCoordinateTokenizer.parseDouble(chars, 2, text.length());
+        assertEquals(text, Double.doubleToLongBits(expected), Double.doubleToLongBits(actual));
+    }
+}
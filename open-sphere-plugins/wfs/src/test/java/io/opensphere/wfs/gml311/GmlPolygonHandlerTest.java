@@ -0,0 +1,89 @@
+package io.opensphere.wfs.gml311;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import io.opensphere.core.model.LatLonAlt;
+import io.opensphere.mantle.data.geom.MapPathGeometrySupport;
+
+/**
+ * Unit test for {@link GmlPolygonHandler}.
+ */
+public class GmlPolygonHandlerTest
+{
+    /**
+     * Tests parsing a polygon whose exterior ring is not closed, with the
+     * characters going to the coordinate tokenizer the way
+     * {@link GmlSaxFeatureResponseHandler} sends them.
+     */
+    @Test
+    public void testExteriorRing()
+    {
+        GmlPolygonHandler handler = new GmlPolygonHandler("Polygon", true);
+        handler.handleOpeningTag("exterior");
+        handler.handleOpeningTag("LinearRing");
+        handler.handleOpeningTag("posList");
+        char[] chars = "10 20 10 21.5 11 21.5 bad 22 11 200".toCharArray();
+        handler.getCoordinateTokenizer().append(chars, 0, 9);
+        handler.getCoordinateTokenizer().append(chars, 9, chars.length - 9);
+        handler.handleClosingTag("posList", "");
+        assertNull(handler.getCoordinateTokenizer());
+        handler.handleClosingTag("LinearRing", "");
+        handler.handleClosingTag("exterior", "");
+
+        // Interior rings are ignored.
+        handler.handleOpeningTag("interior");
+        handler.handleOpeningTag("LinearRing");
+        handler.handleOpeningTag("posList");
+        assertNull(handler.getCoordinateTokenizer());
+        handler.handleClosingTag("posList", "0 0 0 1 1 1 0 0");
+        handler.handleClosingTag("LinearRing", "");
+        handler.handleClosingTag("interior", "");
+
+        List<LatLonAlt> locations = ((MapPathGeometrySupport)handler.getGeometry()).getLocations();
+        assertEquals(5, locations.size());
+        assertLocation(10., 20., locations.get(0));
+        assertLocation(10., 21.5, locations.get(1));
+        assertLocation(11., 21.5, locations.get(2));
+        assertLocation(11., -160., locations.get(3));
+        assertLocation(10., 20., locations.get(4));
+    }
+
+    /**
+     * Tests parsing GML 2 style coordinates given as the value of the tag.
+     */
+    @Test
+    public void testCoordinates()
+    {
+        GmlPolygonHandler handler = new GmlPolygonHandler("Polygon", false);
+        handler.handleOpeningTag("outerBoundaryIs");
+        handler.handleOpeningTag("LinearRing");
+        handler.handleOpeningTag("coordinates");
+        handler.handleClosingTag("coordinates", "20,10 21,10 21,11 20,10");
+        handler.handleClosingTag("LinearRing", "");
+        handler.handleClosingTag("outerBoundaryIs", "");
+
+        List<LatLonAlt> locations = ((MapPathGeometrySupport)handler.getGeometry()).getLocations();
+        assertEquals(4, locations.size());
+        assertLocation(10., 20., locations.get(0));
+        assertLocation(11., 21., locations.get(2));
+        assertLocation(10., 20., locations.get(3));
+    }
+
+    /**
+     * Asserts the position of a location.
+     *
+     * @param lat The expected latitude.
+     * @param lon The expected longitude.
+     * @param location The location.
+     */
+    private static void assertLocation(double lat, double lon, LatLonAlt location)
+    {
+        assertEquals(lat, location.getLatD(), 0.);
+        assertEquals(lon, location.getLonD(), 0.);
+    }
+}